@@ -68,6 +68,7 @@ public class GroupingBytesRefCollectorBenchmark {
         new RamAccountingContext("dummy", new NoopCircuitBreaker(CircuitBreaker.FIELDDATA));
 
     private GroupingCollector groupByMinCollector;
+    private BytesRefKeyGroupingCollector groupByMinBytesRefKeyCollector;
     private BatchIterator<Row> rowsIterator;
     private List<Row> rows;
 
@@ -77,6 +78,7 @@ public class GroupingBytesRefCollectorBenchmark {
             .createInjector().getInstance(Functions.class);
 
         groupByMinCollector = createGroupByMinBytesRefCollector(functions);
+        groupByMinBytesRefKeyCollector = createGroupByMinBytesRefKeyCollector(functions);
 
         List<BytesRef> keys = new ArrayList<>(Locale.getISOCountries().length);
         for (String s : Locale.getISOCountries()) {
@@ -110,9 +112,34 @@ public class GroupingBytesRefCollectorBenchmark {
         );
     }
 
+    private BytesRefKeyGroupingCollector createGroupByMinBytesRefKeyCollector(Functions functions) {
+        InputCollectExpression keyInput = new InputCollectExpression(0);
+        CollectExpression[] collectExpressions = new CollectExpression[]{keyInput};
+
+        AggregationFunction minAgg =
+            (AggregationFunction) functions.getBuiltin(MinimumAggregation.NAME, Collections.singletonList(DataTypes.STRING));
+
+        return BytesRefKeyGroupingCollector.create(
+            collectExpressions,
+            AggregateMode.ITER_FINAL,
+            new AggregationFunction[] { minAgg },
+            new Input[][] { new Input[] { keyInput }},
+            RAM_ACCOUNTING_CONTEXT,
+            keyInput,
+            Version.CURRENT,
+            BigArrays.NON_RECYCLING_INSTANCE
+        );
+    }
+
     @Benchmark
     public void measureGroupByMinBytesRef(Blackhole blackhole) throws Exception {
         rowsIterator = InMemoryBatchIterator.of(rows, SENTINEL);
         blackhole.consume(BatchIterators.collect(rowsIterator, groupByMinCollector).get());
     }
+
+    @Benchmark
+    public void measureGroupByMinBytesRefKeyCollector(Blackhole blackhole) throws Exception {
+        rowsIterator = InMemoryBatchIterator.of(rows, SENTINEL);
+        blackhole.consume(BatchIterators.collect(rowsIterator, groupByMinBytesRefKeyCollector).get());
+    }
 }
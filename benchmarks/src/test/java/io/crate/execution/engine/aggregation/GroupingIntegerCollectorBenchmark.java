@@ -68,6 +68,7 @@ public class GroupingIntegerCollectorBenchmark {
         new RamAccountingContext("dummy", new NoopCircuitBreaker(CircuitBreaker.FIELDDATA));
 
     private GroupingCollector groupBySumCollector;
+    private LongKeyGroupingCollector groupBySumLongKeyCollector;
     private BatchIterator<Row> rowsIterator;
     private List<Row> rows;
 
@@ -76,6 +77,7 @@ public class GroupingIntegerCollectorBenchmark {
         Functions functions = new ModulesBuilder().add(new AggregationImplModule())
             .createInjector().getInstance(Functions.class);
         groupBySumCollector = createGroupBySumCollector(functions);
+        groupBySumLongKeyCollector = createGroupBySumLongKeyCollector(functions);
 
         rows = new ArrayList<>(20_000_000);
         for (int i = 0; i < 20_000_000; i++) {
@@ -104,9 +106,36 @@ public class GroupingIntegerCollectorBenchmark {
         );
     }
 
+    private LongKeyGroupingCollector createGroupBySumLongKeyCollector(Functions functions) {
+        InputCollectExpression keyInput = new InputCollectExpression(0);
+        List<Input<?>> keyInputs = Arrays.<Input<?>>asList(keyInput);
+        CollectExpression[] collectExpressions = new CollectExpression[]{keyInput};
+
+        AggregationFunction sumAgg =
+            (AggregationFunction) functions.getBuiltin(SumAggregation.NAME, Arrays.asList(DataTypes.INTEGER));
+
+        return LongKeyGroupingCollector.create(
+            collectExpressions,
+            AggregateMode.ITER_FINAL,
+            new AggregationFunction[] { sumAgg },
+            new Input[][] { new Input[] { keyInput }},
+            RAM_ACCOUNTING_CONTEXT,
+            keyInputs,
+            Arrays.asList(DataTypes.INTEGER),
+            Version.CURRENT,
+            BigArrays.NON_RECYCLING_INSTANCE
+        );
+    }
+
     @Benchmark
     public void measureGroupBySumInteger(Blackhole blackhole) throws Exception {
         rowsIterator = InMemoryBatchIterator.of(rows, SENTINEL);
         blackhole.consume(BatchIterators.collect(rowsIterator, groupBySumCollector).get());
     }
+
+    @Benchmark
+    public void measureGroupBySumIntegerLongKeyCollector(Blackhole blackhole) throws Exception {
+        rowsIterator = InMemoryBatchIterator.of(rows, SENTINEL);
+        blackhole.consume(BatchIterators.collect(rowsIterator, groupBySumLongKeyCollector).get());
+    }
 }
@@ -31,6 +31,8 @@ import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.store.RAMDirectory;
@@ -39,13 +41,19 @@ import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.infra.Blackhole;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 @BenchmarkMode(Mode.AverageTime)
@@ -58,6 +66,14 @@ public class LuceneBatchIteratorBenchmark {
     private IndexSearcher indexSearcher;
     private List<IntegerColumnReference> columnRefs;
 
+    private static final int NUM_SEGMENTS = 8;
+
+    @Param({"1", "2", "4", "8"})
+    public int numWorkers;
+
+    private IndexSearcher multiSegmentSearcher;
+    private ExecutorService executor;
+
     @Setup
     public void createLuceneBatchIterator() throws Exception {
         IndexWriter iw = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(new StandardAnalyzer()));
@@ -77,6 +93,25 @@ public class LuceneBatchIteratorBenchmark {
             mappedFieldType -> null,
             new CollectorFieldsVisitor(0)
         );
+
+        IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+        config.setMergePolicy(NoMergePolicy.INSTANCE);
+        IndexWriter segmentsWriter = new IndexWriter(new RAMDirectory(), config);
+        for (int segment = 0; segment < NUM_SEGMENTS; segment++) {
+            for (int i = 0; i < 10_000_000 / NUM_SEGMENTS; i++) {
+                Document doc = new Document();
+                doc.add(new NumericDocValuesField(columnName, i));
+                segmentsWriter.addDocument(doc);
+            }
+            segmentsWriter.commit();
+        }
+        multiSegmentSearcher = new IndexSearcher(DirectoryReader.open(segmentsWriter));
+        executor = Executors.newFixedThreadPool(NUM_SEGMENTS);
+    }
+
+    @TearDown
+    public void shutdownExecutor() {
+        executor.shutdownNow();
     }
 
     @Benchmark
@@ -96,4 +131,41 @@ public class LuceneBatchIteratorBenchmark {
             blackhole.consume(it.currentElement().get(0));
         }
     }
+
+    /**
+     * Sums up a column of a shard with {@code numWorkers} iterators which each collect a partition of the segments,
+     * the partial sums are merged at the end.
+     */
+    @Benchmark
+    public void measureSumWithSegmentPartitions(Blackhole blackhole) throws Exception {
+        List<List<LeafReaderContext>> partitions = LeafPartitioner.partition(
+            multiSegmentSearcher.getTopReaderContext().leaves(), numWorkers, 1);
+        List<Future<Long>> partialSums = new ArrayList<>(partitions.size());
+        for (List<LeafReaderContext> leaves : partitions) {
+            partialSums.add(executor.submit(() -> {
+                List<IntegerColumnReference> refs = Collections.singletonList(new IntegerColumnReference("x"));
+                LuceneBatchIterator it = new LuceneBatchIterator(
+                    multiSegmentSearcher,
+                    new MatchAllDocsQuery(),
+                    null,
+                    false,
+                    new CollectorContext(mappedFieldType -> null, new CollectorFieldsVisitor(0)),
+                    RAM_ACCOUNTING_CONTEXT,
+                    refs,
+                    refs,
+                    leaves
+                );
+                long sum = 0;
+                while (it.moveNext()) {
+                    sum += (Integer) it.currentElement().get(0);
+                }
+                return sum;
+            }));
+        }
+        long sum = 0;
+        for (Future<Long> partialSum : partialSums) {
+            sum += partialSum.get();
+        }
+        blackhole.consume(sum);
+    }
 }
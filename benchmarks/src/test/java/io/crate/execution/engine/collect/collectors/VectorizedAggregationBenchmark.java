@@ -0,0 +1,204 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.collectors;
+
+import io.crate.breaker.RamAccountingContext;
+import io.crate.data.BatchIterators;
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.execution.dsl.projection.AggregationProjection;
+import io.crate.execution.dsl.projection.GroupProjection;
+import io.crate.execution.engine.aggregation.AggregateCollector;
+import io.crate.execution.engine.aggregation.AggregationFunction;
+import io.crate.execution.engine.aggregation.impl.SumAggregation;
+import io.crate.execution.engine.collect.InputCollectExpression;
+import io.crate.execution.engine.vector.ColumnBatchAggregation;
+import io.crate.execution.engine.vector.VectorizedAggregationBatchIterator;
+import io.crate.expression.reference.doc.lucene.CollectorContext;
+import io.crate.expression.reference.doc.lucene.LongColumnReference;
+import io.crate.expression.symbol.AggregateMode;
+import io.crate.expression.symbol.Aggregation;
+import io.crate.expression.symbol.InputColumn;
+import io.crate.expression.symbol.Symbol;
+import io.crate.metadata.Functions;
+import io.crate.metadata.RowGranularity;
+import io.crate.types.DataTypes;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.mapper.KeywordFieldMapper;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.crate.testing.TestingHelpers.createReference;
+import static io.crate.testing.TestingHelpers.getFunctions;
+
+/**
+ * Compares {@code sum(x)} over a shard computed row by row with the vectorized execution on column batches,
+ * and measures a vectorized {@code GROUP BY} on a low-cardinality string column.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class VectorizedAggregationBenchmark {
+
+    private static final RamAccountingContext RAM_ACCOUNTING_CONTEXT =
+        new RamAccountingContext("dummy", new NoopCircuitBreaker("dummy"));
+
+    private final Functions functions = getFunctions();
+    private IndexSearcher indexSearcher;
+    private AggregationFunction sum;
+    private List<Symbol> toCollect;
+    private List<AggregationProjection> projections;
+    private List<Symbol> groupByToCollect;
+    private List<GroupProjection> groupByProjections;
+    private NumberFieldMapper.NumberFieldType fieldType;
+    private KeywordFieldMapper.KeywordFieldType keywordFieldType;
+
+    @Setup
+    public void createIndex() throws Exception {
+        IndexWriter iw = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(new StandardAnalyzer()));
+        for (int i = 0; i < 10_000_000; i++) {
+            Document doc = new Document();
+            doc.add(new SortedNumericDocValuesField("x", i));
+            doc.add(new SortedSetDocValuesField("s", new BytesRef("key-" + (i % 10))));
+            iw.addDocument(doc);
+        }
+        iw.commit();
+        iw.forceMerge(1, true);
+        indexSearcher = new IndexSearcher(DirectoryReader.open(iw));
+
+        sum = (AggregationFunction) functions.getBuiltin(
+            SumAggregation.NAME, Collections.singletonList(DataTypes.LONG));
+        toCollect = Collections.singletonList(createReference("x", DataTypes.LONG));
+        projections = Collections.singletonList(new AggregationProjection(
+            Collections.singletonList(new Aggregation(
+                sum.info(), sum.info().returnType(), Collections.singletonList(new InputColumn(0, DataTypes.LONG)))),
+            RowGranularity.SHARD,
+            AggregateMode.ITER_FINAL));
+        fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+        fieldType.setName("x");
+        fieldType.setHasDocValues(true);
+
+        groupByToCollect = Arrays.asList(createReference("s", DataTypes.STRING), createReference("x", DataTypes.LONG));
+        groupByProjections = Collections.singletonList(new GroupProjection(
+            Collections.singletonList(new InputColumn(0, DataTypes.STRING)),
+            Collections.singletonList(new Aggregation(
+                sum.info(), sum.info().returnType(), Collections.singletonList(new InputColumn(1, DataTypes.LONG)))),
+            AggregateMode.ITER_FINAL,
+            RowGranularity.SHARD));
+        keywordFieldType = new KeywordFieldMapper.KeywordFieldType();
+        keywordFieldType.setName("s");
+        keywordFieldType.setHasDocValues(true);
+    }
+
+    @Benchmark
+    public Object measureRowBasedSum() throws Exception {
+        List<LongColumnReference> refs = Collections.singletonList(new LongColumnReference("x"));
+        LuceneBatchIterator it = new LuceneBatchIterator(
+            indexSearcher,
+            new MatchAllDocsQuery(),
+            null,
+            false,
+            new CollectorContext(mappedFieldType -> null, new CollectorFieldsVisitor(0)),
+            RAM_ACCOUNTING_CONTEXT,
+            refs,
+            refs
+        );
+        InputCollectExpression input = new InputCollectExpression(0);
+        AggregateCollector collector = new AggregateCollector(
+            Collections.singletonList(input),
+            RAM_ACCOUNTING_CONTEXT,
+            AggregateMode.ITER_FINAL,
+            new AggregationFunction[] { sum },
+            Version.CURRENT,
+            BigArrays.NON_RECYCLING_INSTANCE,
+            new Input[] { input }
+        );
+        return BatchIterators.collect(it, collector).get()[0];
+    }
+
+    @Benchmark
+    public Object measureVectorizedSum() throws Exception {
+        ColumnBatchAggregation aggregation = ColumnBatchAggregation.tryCreate(
+            toCollect, projections, functions, name -> fieldType);
+        VectorizedAggregationBatchIterator it = new VectorizedAggregationBatchIterator(
+            indexSearcher,
+            new MatchAllDocsQuery(),
+            indexSearcher.getTopReaderContext().leaves(),
+            aggregation,
+            RAM_ACCOUNTING_CONTEXT,
+            Version.CURRENT,
+            BigArrays.NON_RECYCLING_INSTANCE
+        );
+        it.loadNextBatch().toCompletableFuture().get();
+        it.moveNext();
+        Row row = it.currentElement();
+        return row.get(0);
+    }
+
+    /**
+     * {@code sum(x) ... GROUP BY s} on a column with 10 distinct values, using the ordinals of the doc values.
+     */
+    @Benchmark
+    public void measureVectorizedGroupBySum(Blackhole blackhole) throws Exception {
+        ColumnBatchAggregation aggregation = ColumnBatchAggregation.tryCreate(
+            groupByToCollect, groupByProjections, functions, name -> name.equals("s") ? keywordFieldType : fieldType);
+        VectorizedAggregationBatchIterator it = new VectorizedAggregationBatchIterator(
+            indexSearcher,
+            new MatchAllDocsQuery(),
+            indexSearcher.getTopReaderContext().leaves(),
+            aggregation,
+            RAM_ACCOUNTING_CONTEXT,
+            Version.CURRENT,
+            BigArrays.NON_RECYCLING_INSTANCE
+        );
+        it.loadNextBatch().toCompletableFuture().get();
+        while (it.moveNext()) {
+            blackhole.consume(it.currentElement().get(1));
+        }
+    }
+}
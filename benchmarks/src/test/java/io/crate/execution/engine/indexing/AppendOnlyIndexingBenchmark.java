@@ -0,0 +1,116 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.indexing;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the rows per second of indexing documents with generated ids into a shard the way the engine does it for
+ * regular inserts, which have to replace a possibly existing document with the same id, compared with the
+ * append-only path used for inserts into tables without primary key.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class AppendOnlyIndexingBenchmark {
+
+    private static final int NUM_ROWS = 100_000;
+
+    private String[] ids;
+    private BytesRef[] sources;
+    private IndexWriter indexWriter;
+
+    @Setup
+    public void createRows() throws Exception {
+        ids = new String[NUM_ROWS];
+        sources = new BytesRef[NUM_ROWS];
+        for (int i = 0; i < NUM_ROWS; i++) {
+            ids[i] = UUIDs.base64UUID();
+            XContentBuilder builder = XContentFactory.jsonBuilder().startObject()
+                .field("ts", 1514764800000L + i)
+                .field("sensor", "sensor-" + (i % 100))
+                .field("value", i * 0.5)
+                .endObject();
+            sources[i] = builder.bytes().toBytesRef();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void createIndexWriter() throws Exception {
+        indexWriter = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(new StandardAnalyzer()));
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeIndexWriter() throws Exception {
+        indexWriter.close();
+    }
+
+    private Document document(int i) {
+        Document doc = new Document();
+        doc.add(new StringField("_id", ids[i], Field.Store.YES));
+        doc.add(new StoredField("_source", sources[i]));
+        return doc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_ROWS)
+    public void measureInsertWithIdLookup() throws Exception {
+        for (int i = 0; i < NUM_ROWS; i++) {
+            indexWriter.updateDocument(new Term("_id", ids[i]), document(i));
+        }
+        indexWriter.commit();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_ROWS)
+    public void measureAppendOnlyInsert() throws Exception {
+        for (int i = 0; i < NUM_ROWS; i++) {
+            indexWriter.addDocument(document(i));
+        }
+        indexWriter.commit();
+    }
+}
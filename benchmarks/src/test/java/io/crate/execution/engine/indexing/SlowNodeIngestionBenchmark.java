@@ -0,0 +1,166 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.indexing;
+
+import io.crate.execution.jobs.ConcurrencyLimit;
+import io.crate.execution.jobs.NodeJobsCounter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static io.crate.execution.jobs.NodeJobsCounter.MAX_NODE_CONCURRENT_OPERATIONS;
+
+/**
+ * Simulates the ingestion of bulk requests into two fast nodes and one slow node which rejects requests once its
+ * queue is full, and compares the fixed limit of concurrent requests per node with the adaptive {@link ConcurrencyLimit}.
+ * <p>
+ * Like the {@link ShardingUpsertExecutor} the requests are issued in order and the ingestion pauses while the node of
+ * the next request has reached its limit; rejected requests are retried after a backoff delay.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class SlowNodeIngestionBenchmark {
+
+    private static final int NUM_REQUESTS = 3_000;
+    private static final int ITEMS_PER_REQUEST = 100;
+    private static final long RETRY_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long PAUSE_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    @Param({"false", "true"})
+    public boolean adaptive;
+
+    private ScheduledExecutorService scheduler;
+
+    @Setup
+    public void setupScheduler() {
+        scheduler = Executors.newScheduledThreadPool(4);
+    }
+
+    @TearDown
+    public void shutdownScheduler() throws Exception {
+        scheduler.shutdown();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private static class SimulatedNode {
+
+        private final String id;
+        private final int workers;
+        private final int queueSize;
+        private final long serviceTimeNanos;
+        private final AtomicInteger active = new AtomicInteger(0);
+
+        SimulatedNode(String id, int workers, int queueSize, long serviceTimeNanos) {
+            this.id = id;
+            this.workers = workers;
+            this.queueSize = queueSize;
+            this.serviceTimeNanos = serviceTimeNanos;
+        }
+
+        /**
+         * @return the latency of the request or -1 if it is rejected
+         */
+        long accept() {
+            int numActive = active.incrementAndGet();
+            if (numActive > workers + queueSize) {
+                active.decrementAndGet();
+                return -1;
+            }
+            // queued requests wait until the requests ahead of them have been processed
+            return serviceTimeNanos * ((numActive - 1) / workers + 1);
+        }
+
+        void complete() {
+            active.decrementAndGet();
+        }
+    }
+
+    @Benchmark
+    public long measureIngestWithSlowNode() throws Exception {
+        NodeJobsCounter nodeJobsCounter = new NodeJobsCounter();
+        SimulatedNode[] nodes = new SimulatedNode[] {
+            new SimulatedNode("n1", 8, 32, TimeUnit.MICROSECONDS.toNanos(200)),
+            new SimulatedNode("n2", 8, 32, TimeUnit.MICROSECONDS.toNanos(200)),
+            new SimulatedNode("n3", 1, 2, TimeUnit.MILLISECONDS.toNanos(2))
+        };
+        CountDownLatch completed = new CountDownLatch(NUM_REQUESTS);
+        AtomicLong numRejections = new AtomicLong(0L);
+        for (int i = 0; i < NUM_REQUESTS; i++) {
+            SimulatedNode node = nodes[i % nodes.length];
+            while (nodeJobsCounter.getInProgressJobsForNode(node.id) >= limit(nodeJobsCounter, node)) {
+                LockSupport.parkNanos(PAUSE_NANOS);
+            }
+            nodeJobsCounter.increment(node.id);
+            send(nodeJobsCounter, node, completed, numRejections);
+        }
+        completed.await();
+        return numRejections.get();
+    }
+
+    private long limit(NodeJobsCounter nodeJobsCounter, SimulatedNode node) {
+        if (adaptive) {
+            return nodeJobsCounter.getConcurrencyLimit(node.id).getLimit();
+        }
+        return MAX_NODE_CONCURRENT_OPERATIONS;
+    }
+
+    private void send(NodeJobsCounter nodeJobsCounter,
+                      SimulatedNode node,
+                      CountDownLatch completed,
+                      AtomicLong numRejections) {
+        long startNanos = System.nanoTime();
+        long inFlight = nodeJobsCounter.getInProgressJobsForNode(node.id);
+        long latencyNanos = node.accept();
+        ConcurrencyLimit limit = nodeJobsCounter.getConcurrencyLimit(node.id);
+        if (latencyNanos < 0) {
+            numRejections.incrementAndGet();
+            limit.onSample(0L, ITEMS_PER_REQUEST, inFlight, true);
+            scheduler.schedule(
+                () -> send(nodeJobsCounter, node, completed, numRejections),
+                RETRY_DELAY_NANOS,
+                TimeUnit.NANOSECONDS);
+            return;
+        }
+        scheduler.schedule(() -> {
+            node.complete();
+            limit.onSample(System.nanoTime() - startNanos, ITEMS_PER_REQUEST, inFlight, false);
+            nodeJobsCounter.decrement(node.id);
+            completed.countDown();
+        }, latencyNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -30,8 +30,12 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import static io.crate.execution.dsl.phases.FileUriCollectPhase.InputFormat.JSON;
@@ -42,9 +46,14 @@ import static io.crate.testing.TestingHelpers.createReference;
 @State(Scope.Benchmark)
 public class JsonReaderBenchmark {
 
+    private static final int NUM_READERS = 4;
+
     private String fileUri;
+    private String largeFileUri;
     private InputFactory inputFactory;
+    private ExecutorService executor;
     File tempFile;
+    File largeTempFile;
 
     @Setup
     public void create_temp_file_and_uri() throws IOException {
@@ -86,6 +95,15 @@ public class JsonReaderBenchmark {
             writer.write("{\"id\": 1, \"name\": \"Rory\"\n");
             writer.write("{\"id\": 11, \"name\": \"Martin\"\n");
         }
+        // large enough to be split into a range per reader
+        largeTempFile = File.createTempFile("temp_large", null);
+        largeFileUri = largeTempFile.toURI().getPath();
+        try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(largeTempFile), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < 500_000; i++) {
+                writer.write("{\"id\": " + (i % 100) + ", \"name\": \"Arthur" + i + "\"}\n");
+            }
+        }
+        executor = Executors.newFixedThreadPool(NUM_READERS);
     }
 
     @Benchmark()
@@ -111,8 +129,59 @@ public class JsonReaderBenchmark {
         }
     }
 
+    @Benchmark
+    public long measureLargeFileWithSingleReader() throws Exception {
+        return countRows(largeFileUri, 1, 0);
+    }
+
+    /**
+     * Each reader reads its own byte range of the file, like the nodes of a cluster do for a file on a shared storage.
+     */
+    @Benchmark
+    public long measureLargeFileSplitIntoRanges() throws Exception {
+        List<Future<Long>> futures = new ArrayList<>(NUM_READERS);
+        for (int i = 0; i < NUM_READERS; i++) {
+            int readerNumber = i;
+            futures.add(executor.submit(() -> countRows(largeFileUri, NUM_READERS, readerNumber)));
+        }
+        long numRows = 0;
+        for (Future<Long> future : futures) {
+            numRows += future.get();
+        }
+        return numRows;
+    }
+
+    private long countRows(String uri, int numReaders, int readerNumber) {
+        Reference raw = createReference("_raw", DataTypes.STRING);
+        InputFactory.Context<LineCollectorExpression<?>> ctx = inputFactory.ctxForRefs(FileLineReferenceResolver::getImplementation);
+
+        List<Input<?>> inputs = Collections.singletonList(ctx.add(raw));
+        BatchIterator<Row> batchIterator = FileReadingIterator.newInstance(
+            Collections.singletonList(uri),
+            inputs,
+            ctx.expressions(),
+            null,
+            ImmutableMap.of(
+                LocalFsFileInputFactory.NAME, new LocalFsFileInputFactory()),
+            true,
+            numReaders,
+            readerNumber,
+            JSON);
+
+        long numRows = 0;
+        while (batchIterator.moveNext()) {
+            if (batchIterator.currentElement().get(0) != null) {
+                numRows++;
+            }
+        }
+        return numRows;
+    }
+
     @TearDown
     public void cleanup() throws InterruptedException {
         tempFile.deleteOnExit();
+        largeTempFile.deleteOnExit();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
     }
 }
@@ -0,0 +1,109 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.protocols.postgres;
+
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.protocols.postgres.types.PGType;
+import io.crate.protocols.postgres.types.PGTypes;
+import io.crate.types.ArrayType;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.apache.lucene.util.BytesRef;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class DataRowBenchmark {
+
+    private static final int NUM_ROWS = 1000;
+
+    private final List<DataType> columnTypes = Arrays.asList(
+        DataTypes.LONG, DataTypes.DOUBLE, DataTypes.TIMESTAMP, DataTypes.STRING, new ArrayType(DataTypes.INTEGER));
+
+    private EmbeddedChannel channel;
+    private PGType[] pgTypes;
+    private FormatCodes.FormatCode[] textFormat;
+    private FormatCodes.FormatCode[] binaryFormat;
+    private Row[] rows;
+
+    @Setup
+    public void setup() {
+        channel = new EmbeddedChannel();
+        pgTypes = PGTypes.get(columnTypes);
+        textFormat = new FormatCodes.FormatCode[]{FormatCodes.FormatCode.TEXT};
+        binaryFormat = new FormatCodes.FormatCode[]{FormatCodes.FormatCode.BINARY};
+        rows = new Row[NUM_ROWS];
+        for (int i = 0; i < NUM_ROWS; i++) {
+            rows[i] = new RowN(new Object[]{
+                (long) i,
+                i * 0.5d,
+                1467072000000L + i,
+                new BytesRef("name-" + i),
+                new Object[]{i, i + 1, i + 2}
+            });
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public void measureSendDataRowText(Blackhole blackhole) {
+        sendRows(textFormat, blackhole);
+    }
+
+    @Benchmark
+    public void measureSendDataRowBinary(Blackhole blackhole) {
+        sendRows(binaryFormat, blackhole);
+    }
+
+    private void sendRows(FormatCodes.FormatCode[] formatCodes, Blackhole blackhole) {
+        for (Row row : rows) {
+            Messages.sendDataRow(channel, row, pgTypes, formatCodes);
+        }
+        channel.flush();
+        ByteBuf buffer;
+        while ((buffer = channel.readOutbound()) != null) {
+            blackhole.consume(buffer.readableBytes());
+            buffer.release();
+        }
+    }
+}
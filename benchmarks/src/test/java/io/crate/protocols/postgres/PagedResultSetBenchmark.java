@@ -0,0 +1,188 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.protocols.postgres;
+
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.data.ArrayBucket;
+import io.crate.data.BatchIterators;
+import io.crate.data.Bucket;
+import io.crate.data.Row;
+import io.crate.data.RowConsumer;
+import io.crate.execution.engine.distribution.merge.PassThroughPagingIterator;
+import io.crate.execution.jobs.DistResultRXTask;
+import io.crate.execution.jobs.PageResultListener;
+import io.crate.protocols.postgres.types.PGType;
+import io.crate.protocols.postgres.types.PGTypes;
+import io.crate.types.DataTypes;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.logging.Loggers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collector;
+
+/**
+ * Measures the rows per second of a large result which is received page by page from several upstreams and written
+ * to a postgres client channel.
+ * Each page takes {@link #pageLatencyMs} to arrive after it has been requested, which simulates the round trip to
+ * the upstream nodes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@OperationsPerInvocation(PagedResultSetBenchmark.NUM_ROWS)
+public class PagedResultSetBenchmark {
+
+    static final int NUM_ROWS = 2_000_000;
+    private static final int NUM_UPSTREAMS = 4;
+    private static final int ROWS_PER_BUCKET = 2_500;
+    private static final int FLUSH_EVERY_ROWS = 1_000;
+
+    @Param({"false", "true"})
+    public boolean readAhead;
+
+    @Param({"2"})
+    public int pageLatencyMs;
+
+    private ScheduledExecutorService scheduler;
+    private EmbeddedChannel channel;
+    private PGType[] pgTypes;
+    private Bucket bucket;
+
+    @Setup
+    public void setup() {
+        scheduler = Executors.newScheduledThreadPool(NUM_UPSTREAMS);
+        channel = new EmbeddedChannel();
+        pgTypes = PGTypes.get(Arrays.asList(DataTypes.LONG, DataTypes.STRING));
+        Object[][] rows = new Object[ROWS_PER_BUCKET][];
+        for (int i = 0; i < ROWS_PER_BUCKET; i++) {
+            rows[i] = new Object[]{(long) i, new BytesRef("name-" + i)};
+        }
+        bucket = new ArrayBucket(rows);
+    }
+
+    @TearDown
+    public void teardown() throws Exception {
+        scheduler.shutdown();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public long measureExportRows() throws Exception {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        RowConsumer consumer = (iterator, failure) -> {
+            if (failure != null) {
+                result.completeExceptionally(failure);
+                return;
+            }
+            BatchIterators.collect(iterator, Collector.of(
+                () -> new long[1],
+                (numRows, row) -> sendRow(numRows, row),
+                (a, b) -> a,
+                numRows -> numRows[0]
+            )).whenComplete((numRows, t) -> {
+                iterator.close();
+                if (t == null) {
+                    result.complete(numRows);
+                } else {
+                    result.completeExceptionally(t);
+                }
+            });
+        };
+        DistResultRXTask task = new DistResultRXTask(
+            Loggers.getLogger(DistResultRXTask.class),
+            "n1",
+            1,
+            "benchmark",
+            consumer,
+            PassThroughPagingIterator.oneShot(),
+            new Streamer[2],
+            new RamAccountingContext("benchmark", new NoopCircuitBreaker(CircuitBreaker.FIELDDATA)),
+            NUM_UPSTREAMS,
+            readAhead
+        );
+        int pagesPerUpstream = NUM_ROWS / NUM_UPSTREAMS / ROWS_PER_BUCKET;
+        for (int i = 0; i < NUM_UPSTREAMS; i++) {
+            new Upstream(task, i, pagesPerUpstream).sendPage();
+        }
+        return result.get(5, TimeUnit.MINUTES);
+    }
+
+    private void sendRow(long[] numRows, Row row) {
+        Messages.sendDataRow(channel, row, pgTypes, null);
+        numRows[0]++;
+        if (numRows[0] % FLUSH_EVERY_ROWS == 0) {
+            channel.flush();
+            ByteBuf buffer;
+            while ((buffer = channel.readOutbound()) != null) {
+                buffer.release();
+            }
+        }
+    }
+
+    private class Upstream implements PageResultListener {
+
+        private final DistResultRXTask task;
+        private final int bucketIdx;
+        private int remainingPages;
+
+        Upstream(DistResultRXTask task, int bucketIdx, int numPages) {
+            this.task = task;
+            this.bucketIdx = bucketIdx;
+            this.remainingPages = numPages;
+        }
+
+        void sendPage() {
+            remainingPages--;
+            boolean isLast = remainingPages == 0;
+            scheduler.schedule(
+                () -> task.setBucket(bucketIdx, bucket, isLast, this), pageLatencyMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void needMore(boolean needMore) {
+            if (needMore) {
+                sendPage();
+            }
+        }
+    }
+}
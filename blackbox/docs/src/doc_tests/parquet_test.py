@@ -0,0 +1,111 @@
+# -*- coding: utf-8; -*-
+#
+# Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+# license agreements.  See the NOTICE file distributed with this work for
+# additional information regarding copyright ownership.  Crate licenses
+# this file to you under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.  You may
+# obtain a copy of the License at
+#
+# http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+# WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+# License for the specific language governing permissions and limitations
+# under the License.
+#
+# However, if you have executed another commercial license agreement
+# with Crate these terms will supersede the license and you may use the
+# software solely pursuant to the terms of the relevant commercial agreement.
+
+import unittest
+import os
+import glob
+import shutil
+import tempfile
+from datetime import datetime
+import pyarrow.parquet as pq
+from crate.testing.layer import CrateLayer
+from crate.client import connect
+from testutils.paths import crate_path
+from testutils.ports import GLOBAL_PORT_POOL
+
+
+CRATE_HTTP_PORT = GLOBAL_PORT_POOL.get()
+CRATE_TRANSPORT_PORT = GLOBAL_PORT_POOL.get()
+
+crate_layer = CrateLayer(
+    'parquet',
+    host='localhost',
+    crate_home=crate_path(),
+    port=CRATE_HTTP_PORT,
+    transport_port=CRATE_TRANSPORT_PORT,
+    settings={
+        # The disk.watermark settings can be removed once crate-python > 0.21.1 has been released
+        'cluster.routing.allocation.disk.watermark.low': '100k',
+        'cluster.routing.allocation.disk.watermark.high': '10k',
+        'cluster.routing.allocation.disk.watermark.flood_stage': '1k',
+    }
+)
+
+
+class ParquetExportTest(unittest.TestCase):
+    """
+    read files written by ``COPY TO`` with the ``parquet`` format
+    using pyarrow to make sure other readers accept them
+    """
+
+    layer = crate_layer
+
+    def setUp(self):
+        self.export_dir = tempfile.mkdtemp()
+        self.conn = connect('localhost:{}'.format(CRATE_HTTP_PORT))
+        c = self.conn.cursor()
+        c.execute('''create table parquet_t (
+                         id long,
+                         name string,
+                         ts timestamp,
+                         details object,
+                         active boolean,
+                         score double
+                     ) clustered into 1 shards with (number_of_replicas = 0)''')
+        c.executemany('insert into parquet_t (id, name, ts, details, active, score) values (?, ?, ?, ?, ?, ?)', [
+            (1, 'Arthur', 1500000000000, {'x': 1}, True, 1.5),
+            (2, 'Trillian', None, None, False, None),
+            (3, None, 1500000000001, {'y': [1, 2]}, None, -0.25),
+        ])
+        c.execute('refresh table parquet_t')
+
+    def tearDown(self):
+        self.conn.cursor().execute('drop table parquet_t')
+        self.conn.close()
+        shutil.rmtree(self.export_dir)
+
+    def _export(self, compression=None):
+        stmt = ('copy parquet_t (id, name, ts, details, active, score) '
+                'to directory \'{}\' with (format = \'parquet\''.format(self.export_dir))
+        if compression:
+            stmt += ', compression = \'{}\''.format(compression)
+        self.conn.cursor().execute(stmt + ')')
+        files = glob.glob(os.path.join(self.export_dir, '*.parquet'))
+        self.assertEqual(len(files), 1)
+        return pq.read_table(files[0])
+
+    def _assert_rows(self, table):
+        self.assertEqual(table.column_names,
+                         ['id', 'name', 'ts', 'details', 'active', 'score'])
+        rows = sorted(zip(*(c.to_pylist() for c in table.itercolumns())),
+                      key=lambda r: r[0])
+        self.assertEqual([r[0] for r in rows], [1, 2, 3])
+        self.assertEqual([r[1] for r in rows], ['Arthur', 'Trillian', None])
+        self.assertEqual([r[4] for r in rows], [True, False, None])
+        self.assertEqual([r[5] for r in rows], [1.5, None, -0.25])
+        self.assertEqual(rows[1][2], None)
+        self.assertEqual(rows[0][2], datetime.utcfromtimestamp(1500000000))
+
+    def test_read_export_with_pyarrow(self):
+        self._assert_rows(self._export())
+
+    def test_read_gzip_export_with_pyarrow(self):
+        self._assert_rows(self._export(compression='gzip'))
@@ -34,6 +34,7 @@ import logging
 import subprocess
 from functools import partial
 from . import process_test
+from . import parquet_test
 from testutils.paths import crate_path, project_path
 from testutils.ports import GLOBAL_PORT_POOL
 from urllib.request import urlopen, Request
@@ -518,5 +519,6 @@ def create_doctest_suite():
 def test_suite():
     suite = unittest.TestSuite()
     suite.addTest(unittest.TestLoader().loadTestsFromModule(process_test))
+    suite.addTest(unittest.TestLoader().loadTestsFromModule(parquet_test))
     suite.addTests(create_doctest_suite())
     return suite
@@ -64,9 +64,9 @@ statement
     | INSERT INTO table ('(' ident (',' ident)* ')')? insertSource
         (onDuplicate | onConflict)?                                                  #insert
     | RESTORE SNAPSHOT qname (ALL | TABLE tableWithPartitions) withProperties?       #restore
-    | COPY tableWithPartition FROM path=expr withProperties?                         #copyFrom
+    | COPY tableWithPartition FROM (STDIN | path=expr) withProperties?               #copyFrom
     | COPY tableWithPartition columns? where?
-        TO DIRECTORY? path=expr withProperties?                                      #copyTo
+        TO (STDOUT | DIRECTORY? path=expr) withProperties?                           #copyTo
     | DROP BLOB TABLE (IF EXISTS)? table                                             #dropBlobTable
     | DROP TABLE (IF EXISTS)? table                                                  #dropTable
     | DROP ALIAS qname                                                               #dropAlias
@@ -622,7 +622,7 @@ nonReserved
     | ISOLATION | TRANSACTION | CHARACTERISTICS | LEVEL | LANGUAGE | OPEN | CLOSE | RENAME
     | PRIVILEGES | SCHEMA | INGEST | RULE | PREPARE
     | REROUTE | MOVE | SHARD | ALLOCATE | REPLICA | CANCEL | CLUSTER | RETRY | FAILED
-    | DO | NOTHING | CONFLICT | TRANSACTION_ISOLATION
+    | DO | NOTHING | CONFLICT | TRANSACTION_ISOLATION | STDIN | STDOUT
     ;
 
 SELECT: 'SELECT';
@@ -808,6 +808,8 @@ SET: 'SET';
 RESET: 'RESET';
 DEFAULT: 'DEFAULT';
 COPY: 'COPY';
+STDIN: 'STDIN';
+STDOUT: 'STDOUT';
 CLUSTERED: 'CLUSTERED';
 SHARDS: 'SHARDS';
 PRIMARY_KEY: 'PRIMARY KEY';
@@ -125,7 +125,11 @@ public final class SqlFormatter {
             append(indent, "COPY ");
             process(node.table(), indent);
             append(indent, " FROM ");
-            process(node.path(), indent);
+            if (node.fromStdin()) {
+                append(indent, "STDIN");
+            } else {
+                process(node.path(), indent);
+            }
             if (!node.genericProperties().isEmpty()) {
                 append(indent, " ");
                 process(node.genericProperties(), indent);
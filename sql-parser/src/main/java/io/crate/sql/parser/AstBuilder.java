@@ -400,7 +400,7 @@ class AstBuilder extends SqlBaseBaseVisitor<Node> {
     public Node visitCopyFrom(SqlBaseParser.CopyFromContext context) {
         return new CopyFrom(
             (Table) visit(context.tableWithPartition()),
-            (Expression) visit(context.path),
+            context.path == null ? null : (Expression) visit(context.path),
             extractGenericProperties(context.withProperties()));
     }
 
@@ -411,7 +411,7 @@ class AstBuilder extends SqlBaseBaseVisitor<Node> {
             context.columns() == null ? Collections.emptyList() : visitCollection(context.columns().primaryExpression(), Expression.class),
             visitIfPresent(context.where(), Expression.class),
             context.DIRECTORY() != null,
-            (Expression) visit(context.path),
+            context.path == null ? null : (Expression) visit(context.path),
             extractGenericProperties(context.withProperties()));
     }
 
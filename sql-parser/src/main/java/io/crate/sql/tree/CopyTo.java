@@ -23,24 +23,30 @@ package io.crate.sql.tree;
 
 import com.google.common.base.MoreObjects;
 
+import javax.annotation.Nullable;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 public class CopyTo extends Statement {
 
     private final Table table;
     private final boolean directoryUri;
+    @Nullable
     private final Expression targetUri;
 
     private final GenericProperties genericProperties;
     private final List<Expression> columns;
     private final Optional<Expression> whereClause;
 
+    /**
+     * @param targetUri the uri to write to or null if the rows are written to STDOUT
+     */
     public CopyTo(Table table,
                   List<Expression> columns,
                   Optional<Expression> whereClause,
                   boolean directoryUri,
-                  Expression targetUri,
+                  @Nullable Expression targetUri,
                   GenericProperties genericProperties) {
 
         this.table = table;
@@ -59,10 +65,15 @@ public class CopyTo extends Statement {
         return directoryUri;
     }
 
+    @Nullable
     public Expression targetUri() {
         return targetUri;
     }
 
+    public boolean toStdout() {
+        return targetUri == null;
+    }
+
     public List<Expression> columns() {
         return columns;
     }
@@ -86,7 +97,7 @@ public class CopyTo extends Statement {
         if (!columns.equals(copyTo.columns)) return false;
         if (!genericProperties.equals(copyTo.genericProperties)) return false;
         if (!table.equals(copyTo.table)) return false;
-        if (!targetUri.equals(copyTo.targetUri)) return false;
+        if (!Objects.equals(targetUri, copyTo.targetUri)) return false;
         if (!whereClause.equals(copyTo.whereClause)) return false;
 
         return true;
@@ -96,7 +107,7 @@ public class CopyTo extends Statement {
     public int hashCode() {
         int result = table.hashCode();
         result = 31 * result + (directoryUri ? 1 : 0);
-        result = 31 * result + targetUri.hashCode();
+        result = 31 * result + Objects.hashCode(targetUri);
         result = 31 * result + genericProperties.hashCode();
         result = 31 * result + columns.hashCode();
         result = 31 * result + whereClause.hashCode();
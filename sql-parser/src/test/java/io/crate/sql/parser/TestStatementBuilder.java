@@ -32,6 +32,7 @@ import io.crate.sql.tree.ArrayLiteral;
 import io.crate.sql.tree.Assignment;
 import io.crate.sql.tree.ComparisonExpression;
 import io.crate.sql.tree.CopyFrom;
+import io.crate.sql.tree.CopyTo;
 import io.crate.sql.tree.CreateFunction;
 import io.crate.sql.tree.CreateIngestRule;
 import io.crate.sql.tree.CreateTable;
@@ -759,6 +760,8 @@ public class TestStatementBuilder {
         printStatement("copy foo from ? with (some_property=1)");
         printStatement("copy foo from ? with (some_property=false)");
         printStatement("copy schemah.foo from '/folder/file.extension'");
+        printStatement("copy foo from stdin");
+        printStatement("copy foo partition (a='x') from stdin with (format='csv')");
 
         printStatement("copy foo (nae) to '/folder/file.extension'");
         printStatement("copy foo to '/folder/file.extension'");
@@ -769,6 +772,19 @@ public class TestStatementBuilder {
         printStatement("copy foo partition (a=?) to DIRECTORY '/folder' with (some_param=4)");
 
         printStatement("copy foo where a = 'x' to DIRECTORY '/folder'");
+        printStatement("copy foo to stdout");
+        printStatement("copy foo (a, b) where a = 'x' to stdout with (format='csv')");
+    }
+
+    @Test
+    public void testCopyFromStdinAndToStdout() throws Exception {
+        CopyFrom copyFrom = (CopyFrom) SqlParser.createStatement("copy foo from stdin with (format='text')");
+        assertTrue(copyFrom.fromStdin());
+        assertThat(copyFrom.path(), nullValue());
+
+        CopyTo copyTo = (CopyTo) SqlParser.createStatement("copy foo to stdout");
+        assertTrue(copyTo.toStdout());
+        assertFalse(copyTo.directoryUri());
     }
 
     @Test
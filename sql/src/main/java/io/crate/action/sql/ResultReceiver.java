@@ -26,6 +26,8 @@ import io.crate.concurrent.CompletionListenable;
 import io.crate.data.Row;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Used via {@link RowConsumerToResultReceiver} to receive results from the execution of a plan
@@ -36,6 +38,17 @@ public interface ResultReceiver<T> extends CompletionListenable<T> {
 
     void batchFinished();
 
+    /**
+     * Called after each row to apply backpressure, e.g. if rows are written to a client which doesn't read them fast
+     * enough. {@link RowConsumerToResultReceiver} stops pushing rows until the returned future completes.
+     *
+     * @return null if the receiver is able to receive more rows right away.
+     */
+    @Nullable
+    default CompletableFuture<?> backpressure() {
+        return null;
+    }
+
     /**
      * Called when receiver finished.
      * @param interrupted indicates whether the receiver finished because all results were pushed (false)
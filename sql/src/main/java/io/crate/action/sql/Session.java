@@ -240,7 +240,7 @@ public class Session implements AutoCloseable {
     private Portal getOrCreatePortal(String portalName) {
         Portal portal = portals.get(portalName);
         if (portal == null) {
-            portal = new SimplePortal(portalName, analyzer, executor, isReadOnly, sessionContext);
+            portal = new SimplePortal(portalName, analyzer, executor, planner.planCache(), isReadOnly, sessionContext);
             portals.put(portalName, portal);
         }
         return portal;
@@ -265,7 +265,7 @@ public class Session implements AutoCloseable {
 
         Statement statement;
         try {
-            statement = SqlParser.createStatement(query);
+            statement = planner.planCache().parse(query);
         } catch (Throwable t) {
             if ("".equals(query)) {
                 statement = EMPTY_STMT;
@@ -428,6 +428,18 @@ public class Session implements AutoCloseable {
         return portal.getLastOutputTypes();
     }
 
+    /**
+     * @return the analyzed statement of the portal or null if there is no such portal.
+     */
+    @Nullable
+    public AnalyzedStatement getAnalyzedStatement(String portalName) {
+        Portal portal = portals.get(portalName);
+        if (portal == null) {
+            return null;
+        }
+        return portal.getLastAnalyzedStatement();
+    }
+
     public String getQuery(String portalName) {
         return getSafePortal(portalName).getLastQuery();
     }
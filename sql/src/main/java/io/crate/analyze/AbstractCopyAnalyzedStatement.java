@@ -24,16 +24,20 @@ package io.crate.analyze;
 import io.crate.expression.symbol.Symbol;
 import org.elasticsearch.common.settings.Settings;
 
+import javax.annotation.Nullable;
+
 public abstract class AbstractCopyAnalyzedStatement implements AnalyzedStatement {
 
     private final Settings settings;
+    @Nullable
     private final Symbol uri;
 
-    public AbstractCopyAnalyzedStatement(Settings settings, Symbol uri) {
+    public AbstractCopyAnalyzedStatement(Settings settings, @Nullable Symbol uri) {
         this.settings = settings;
         this.uri = uri;
     }
 
+    @Nullable
     public Symbol uri() {
         return uri;
     }
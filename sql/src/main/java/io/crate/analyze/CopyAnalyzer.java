@@ -35,7 +35,9 @@ import io.crate.exceptions.PartitionUnknownException;
 import io.crate.exceptions.UnsupportedFeatureException;
 import io.crate.execution.dsl.phases.FileUriCollectPhase;
 import io.crate.execution.dsl.projection.WriterProjection;
+import io.crate.execution.engine.collect.files.StdinStreams;
 import io.crate.expression.eval.EvaluatingNormalizer;
+import io.crate.expression.symbol.Literal;
 import io.crate.expression.symbol.Symbol;
 import io.crate.expression.symbol.ValueSymbolVisitor;
 import io.crate.expression.symbol.format.SymbolPrinter;
@@ -82,13 +84,16 @@ class CopyAnalyzer {
     private static final String JSON_STRING = "json";
 
     private static final StringSetting COMPRESSION_SETTINGS =
-        new StringSetting("compression", ImmutableSet.of("gzip"));
+        new StringSetting("compression", ImmutableSet.of("gzip", "lz4"));
 
     private static final StringSetting OUTPUT_FORMAT_SETTINGS =
-        new StringSetting("format", ImmutableSet.of("json_object", "json_array"));
+        new StringSetting("format", ImmutableSet.of("json_object", "json_array", "parquet"));
 
     private static final StringSetting INPUT_FORMAT_SETTINGS =
-        new StringSetting("format", ImmutableSet.of(JSON_STRING, "csv"), JSON_STRING);
+        new StringSetting("format", ImmutableSet.of(JSON_STRING, "csv", "text"), JSON_STRING);
+
+    private static final StringSetting STDOUT_FORMAT_SETTINGS =
+        new StringSetting("format", ImmutableSet.of("text", "csv"), "text");
 
     private static final ImmutableMap<String, SettingsApplier> OUTPUT_SETTINGS_APPLIERS =
         ImmutableMap.<String, SettingsApplier>builder()
@@ -96,6 +101,11 @@ class CopyAnalyzer {
             .put(OUTPUT_FORMAT_SETTINGS.name(), new SettingsAppliers.StringSettingsApplier(OUTPUT_FORMAT_SETTINGS))
             .build();
 
+    private static final ImmutableMap<String, SettingsApplier> STDOUT_SETTINGS_APPLIERS =
+        ImmutableMap.<String, SettingsApplier>builder()
+            .put(STDOUT_FORMAT_SETTINGS.name(), new SettingsAppliers.StringSettingsApplier(STDOUT_FORMAT_SETTINGS))
+            .build();
+
     private final Schemas schemas;
     private final Functions functions;
 
@@ -133,19 +143,33 @@ class CopyAnalyzer {
             nodeFilters = discoveryNodePredicate(analysis.parameterContext().parameters(), properties.remove(NodeFilters.NAME));
             settings = settingsFromProperties(properties, expressionAnalyzer, expressionAnalysisContext);
         }
-        Symbol uri = expressionAnalyzer.convert(node.path(), expressionAnalysisContext);
-        uri = normalizer.normalize(uri, analysis.transactionContext());
+        Symbol uri;
+        if (node.fromStdin()) {
+            // the connection which receives the rows registers its stream under this uri
+            uri = Literal.of(StdinStreams.newUri().toString());
+        } else {
+            uri = expressionAnalyzer.convert(node.path(), expressionAnalysisContext);
+            uri = normalizer.normalize(uri, analysis.transactionContext());
 
-        if (!(uri.valueType() == DataTypes.STRING ||
-              uri.valueType() instanceof CollectionType &&
-              ((CollectionType) uri.valueType()).innerType() == DataTypes.STRING)) {
-            throw CopyFromAnalyzedStatement.raiseInvalidType(uri.valueType());
+            if (!(uri.valueType() == DataTypes.STRING ||
+                  uri.valueType() instanceof CollectionType &&
+                  ((CollectionType) uri.valueType()).innerType() == DataTypes.STRING)) {
+                throw CopyFromAnalyzedStatement.raiseInvalidType(uri.valueType());
+            }
         }
 
         FileUriCollectPhase.InputFormat inputFormat =
             settingAsEnum(FileUriCollectPhase.InputFormat.class, settings.get(INPUT_FORMAT_SETTINGS.name(),INPUT_FORMAT_SETTINGS.defaultValue()));
+        if (inputFormat == FileUriCollectPhase.InputFormat.TEXT && !node.fromStdin()) {
+            throw new UnsupportedFeatureException("The text format is only supported by COPY FROM STDIN");
+        }
+        if (node.fromStdin() && settings.get("compression") != null) {
+            // the data is read as it arrives, without blocking until a whole compressed block has been received
+            throw new UnsupportedFeatureException("Compression is not supported by COPY FROM STDIN");
+        }
 
-        return new CopyFromAnalyzedStatement(tableInfo, settings, uri, partitionIdent, nodeFilters, inputFormat);
+        return new CopyFromAnalyzedStatement(
+            tableInfo, settings, uri, partitionIdent, nodeFilters, inputFormat, node.fromStdin());
     }
 
     private ExpressionAnalyzer createExpressionAnalyzer(Analysis analysis, DocTableRelation tableRelation, Operation operation) {
@@ -173,7 +197,7 @@ class CopyAnalyzer {
     }
 
     CopyToAnalyzedStatement convertCopyTo(CopyTo node, Analysis analysis) {
-        if (!node.directoryUri()) {
+        if (!node.directoryUri() && !node.toStdout()) {
             throw new UnsupportedOperationException("Using COPY TO without specifying a DIRECTORY is not supported");
         }
 
@@ -190,8 +214,11 @@ class CopyAnalyzer {
         ExpressionAnalyzer expressionAnalyzer = createExpressionAnalyzer(analysis, tableRelation, Operation.READ);
         ExpressionAnalysisContext expressionAnalysisContext = new ExpressionAnalysisContext();
 
-        Symbol uri = expressionAnalyzer.convert(node.targetUri(), expressionAnalysisContext);
-        uri = normalizer.normalize(uri, analysis.transactionContext());
+        Symbol uri = null;
+        if (!node.toStdout()) {
+            uri = expressionAnalyzer.convert(node.targetUri(), expressionAnalysisContext);
+            uri = normalizer.normalize(uri, analysis.transactionContext());
+        }
         List<String> partitions = resolvePartitions(
             node.table().partitionProperties(), analysis.parameterContext().parameters(), tableRelation.tableInfo());
 
@@ -208,6 +235,13 @@ class CopyAnalyzer {
                 outputs.add(DocReferences.toSourceLookup(symbol));
             }
             columnsDefined = true;
+        } else if (node.toStdout()) {
+            // the text and csv formats write the values of the top level columns, not the source
+            outputNames = new ArrayList<>();
+            for (Reference reference : tableRelation.tableInfo().columns()) {
+                outputNames.add(reference.column().name());
+                outputs.add(DocReferences.toSourceLookup(reference));
+            }
         } else {
             Reference sourceRef;
             if (tableRelation.tableInfo().isPartitioned() && partitions.isEmpty()) {
@@ -229,16 +263,32 @@ class CopyAnalyzer {
             outputs = ImmutableList.of(sourceRef);
         }
 
-        Settings settings = GenericPropertiesConverter.settingsFromProperties(
-            node.genericProperties(), analysis.parameterContext(), OUTPUT_SETTINGS_APPLIERS).build();
+        Settings settings;
+        WriterProjection.CompressionType compressionType = null;
+        WriterProjection.OutputFormat outputFormat = null;
+        CopyToAnalyzedStatement.StdoutFormat stdoutFormat = null;
+        if (node.toStdout()) {
+            settings = GenericPropertiesConverter.settingsFromProperties(
+                node.genericProperties(), analysis.parameterContext(), STDOUT_SETTINGS_APPLIERS).build();
+            stdoutFormat = settingAsEnum(CopyToAnalyzedStatement.StdoutFormat.class,
+                settings.get(STDOUT_FORMAT_SETTINGS.name(), STDOUT_FORMAT_SETTINGS.defaultValue()));
+        } else {
+            settings = GenericPropertiesConverter.settingsFromProperties(
+                node.genericProperties(), analysis.parameterContext(), OUTPUT_SETTINGS_APPLIERS).build();
 
-        WriterProjection.CompressionType compressionType =
-            settingAsEnum(WriterProjection.CompressionType.class, settings.get(COMPRESSION_SETTINGS.name()));
-        WriterProjection.OutputFormat outputFormat =
-            settingAsEnum(WriterProjection.OutputFormat.class, settings.get(OUTPUT_FORMAT_SETTINGS.name()));
+            compressionType =
+                settingAsEnum(WriterProjection.CompressionType.class, settings.get(COMPRESSION_SETTINGS.name()));
+            outputFormat =
+                settingAsEnum(WriterProjection.OutputFormat.class, settings.get(OUTPUT_FORMAT_SETTINGS.name()));
 
-        if (!columnsDefined && outputFormat == WriterProjection.OutputFormat.JSON_ARRAY) {
-            throw new UnsupportedFeatureException("Output format not supported without specifying columns.");
+            if (!columnsDefined && (outputFormat == WriterProjection.OutputFormat.JSON_ARRAY ||
+                                    outputFormat == WriterProjection.OutputFormat.PARQUET)) {
+                throw new UnsupportedFeatureException("Output format not supported without specifying columns.");
+            }
+            if (outputFormat == WriterProjection.OutputFormat.PARQUET &&
+                compressionType == WriterProjection.CompressionType.LZ4) {
+                throw new UnsupportedFeatureException("Compression lz4 is not supported for the parquet output format.");
+            }
         }
 
         QuerySpec querySpec = new QuerySpec()
@@ -253,7 +303,7 @@ class CopyAnalyzer {
             );
         QueriedTable<DocTableRelation> subRelation = new QueriedTable<>(tableRelation, querySpec);
         return new CopyToAnalyzedStatement(
-            subRelation, settings, uri, compressionType, outputFormat, outputNames, columnsDefined, overwrites);
+            subRelation, settings, uri, compressionType, outputFormat, stdoutFormat, outputNames, columnsDefined, overwrites);
     }
 
     private static <E extends Enum<E>> E settingAsEnum(Class<E> settingsEnum, String settingValue) {
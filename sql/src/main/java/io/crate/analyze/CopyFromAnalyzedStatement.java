@@ -40,24 +40,35 @@ public class CopyFromAnalyzedStatement extends AbstractCopyAnalyzedStatement {
     private final Predicate<DiscoveryNode> nodePredicate;
     @Nullable
     private final FileUriCollectPhase.InputFormat inputFormat;
+    private final boolean fromStdin;
 
     public CopyFromAnalyzedStatement(DocTableInfo table,
                                      Settings settings,
                                      Symbol uri,
                                      @Nullable String partitionIdent,
                                      Predicate<DiscoveryNode> nodePredicate,
-                                     FileUriCollectPhase.InputFormat inputFormat) {
+                                     FileUriCollectPhase.InputFormat inputFormat,
+                                     boolean fromStdin) {
         super(settings, uri);
         this.table = table;
         this.partitionIdent = partitionIdent;
         this.nodePredicate = nodePredicate;
         this.inputFormat = inputFormat;
+        this.fromStdin = fromStdin;
     }
 
     public FileUriCollectPhase.InputFormat inputFormat() {
         return inputFormat;
     }
 
+    /**
+     * @return true if the rows are sent by the client over the connection which executes the statement.
+     *         The {@link #uri()} is the uri the stream of the connection is registered with in that case.
+     */
+    public boolean fromStdin() {
+        return fromStdin;
+    }
+
     public DocTableInfo table() {
         return table;
     }
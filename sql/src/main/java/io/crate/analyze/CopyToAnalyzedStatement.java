@@ -35,6 +35,14 @@ import java.util.Map;
 
 public class CopyToAnalyzedStatement extends AbstractCopyAnalyzedStatement {
 
+    /**
+     * Formats of the rows written by COPY TO STDOUT
+     */
+    public enum StdoutFormat {
+        TEXT,
+        CSV
+    }
+
     private final QueriedTable<?> subQueryRelation;
     private final boolean columnsDefined;
     @Nullable
@@ -42,6 +50,8 @@ public class CopyToAnalyzedStatement extends AbstractCopyAnalyzedStatement {
     @Nullable
     private final WriterProjection.OutputFormat outputFormat;
     @Nullable
+    private final StdoutFormat stdoutFormat;
+    @Nullable
     private final List<String> outputNames;
 
     /*
@@ -52,9 +62,10 @@ public class CopyToAnalyzedStatement extends AbstractCopyAnalyzedStatement {
 
     public CopyToAnalyzedStatement(QueriedTable<?> subQueryRelation,
                                    Settings settings,
-                                   Symbol uri,
+                                   @Nullable Symbol uri,
                                    @Nullable WriterProjection.CompressionType compressionType,
                                    @Nullable WriterProjection.OutputFormat outputFormat,
+                                   @Nullable StdoutFormat stdoutFormat,
                                    @Nullable List<String> outputNames,
                                    boolean columnsDefined,
                                    @Nullable Map<ColumnIdent, Symbol> overwrites) {
@@ -64,6 +75,7 @@ public class CopyToAnalyzedStatement extends AbstractCopyAnalyzedStatement {
         this.compressionType = compressionType;
         this.outputNames = outputNames;
         this.outputFormat = outputFormat;
+        this.stdoutFormat = stdoutFormat;
         this.overwrites = MoreObjects.firstNonNull(overwrites, ImmutableMap.<ColumnIdent, Symbol>of());
     }
 
@@ -85,6 +97,19 @@ public class CopyToAnalyzedStatement extends AbstractCopyAnalyzedStatement {
         return outputFormat;
     }
 
+    /**
+     * @return the format of the rows if they are written to the client connection which executes the statement,
+     *         otherwise null. The {@link #uri()} is null if the rows are written to the connection.
+     */
+    @Nullable
+    public StdoutFormat stdoutFormat() {
+        return stdoutFormat;
+    }
+
+    public boolean toStdout() {
+        return stdoutFormat != null;
+    }
+
     @Nullable
     public List<String> outputNames() {
         return outputNames;
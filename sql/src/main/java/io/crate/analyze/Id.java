@@ -94,12 +94,18 @@ public class Id {
      */
     public static Function<List<BytesRef>, String> compileWithNullValidation(final List<ColumnIdent> pkColumns, final ColumnIdent clusteredBy) {
         final int numPks = pkColumns.size();
-        if (numPks == 1 && getOnlyElement(pkColumns).equals(DocSysColumns.ID)) {
+        if (isAutoGenerated(pkColumns)) {
             return RANDOM_ID;
         }
         return compileWithNullValidation(numPks, pkColumns.indexOf(clusteredBy));
     }
 
+    /**
+     * @return true if the ids of a table with the given primary key columns are generated randomly
+     */
+    public static boolean isAutoGenerated(List<ColumnIdent> pkColumns) {
+        return pkColumns.size() == 1 && getOnlyElement(pkColumns).equals(DocSysColumns.ID);
+    }
 
     @Nonnull
     private static BytesRef ensureNonNull(@Nullable BytesRef pkValue) throws IllegalArgumentException {
@@ -47,6 +47,8 @@ public class CrateCircuitBreakerService extends CircuitBreakerService {
         "indices.breaker.query.limit", "60%", Setting.Property.Dynamic, Setting.Property.NodeScope), DataTypes.STRING);
     public static final CrateSetting<Double> QUERY_CIRCUIT_BREAKER_OVERHEAD_SETTING = CrateSetting.of(Setting.doubleSetting(
         "indices.breaker.query.overhead", 1.09d, 0.0d, Setting.Property.Dynamic, Setting.Property.NodeScope),DataTypes.DOUBLE);
+    public static final CrateSetting<Double> QUERY_CIRCUIT_BREAKER_SPILL_THRESHOLD_SETTING = CrateSetting.of(Setting.doubleSetting(
+        "indices.breaker.query.spill_threshold", 0.0d, 0.0d, Setting.Property.NodeScope), DataTypes.DOUBLE);
 
     public static final String JOBS_LOG = "jobs_log";
     public static final CrateSetting<ByteSizeValue> JOBS_LOG_CIRCUIT_BREAKER_LIMIT_SETTING = CrateSetting.of(Setting.memorySizeSetting(
@@ -92,6 +92,22 @@ public class RamAccountingContext {
         }
     }
 
+    /**
+     * Release bytes which have been added to the context before, e.g. because the accounted data has been
+     * written to disk. Unlike {@link #release()} this only releases the given amount.
+     *
+     * @param bytes bytes to be released
+     */
+    public void releaseBytes(long bytes) {
+        if (closed || bytes == 0) {
+            return;
+        }
+        long currentFlushBuffer = flushBuffer.addAndGet(-bytes);
+        if (currentFlushBuffer < 0) {
+            flushWithoutBreaking(currentFlushBuffer);
+        }
+    }
+
     /**
      * Flush the {@code bytes} to the breaker, incrementing the total
      * bytes and adjusting the buffer.
@@ -203,6 +219,13 @@ public class RamAccountingContext {
         return breaker.getLimit();
     }
 
+    /**
+     * Returns the bytes used by all contexts of the breaker which have been flushed to it
+     */
+    public long breakerUsed() {
+        return breaker.getUsed();
+    }
+
     /**
      * Returns the context id string.
      */
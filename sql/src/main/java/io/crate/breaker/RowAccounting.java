@@ -63,17 +63,20 @@ public class RowAccounting {
      * Account for the size of the values of the row.
      *
      * This should only be used if the values are stored/buffered in another in-memory data structure.
+     *
+     * @return the number of bytes which have been accounted for the row
      */
-    public void accountForAndMaybeBreak(Row row) {
+    public long accountForAndMaybeBreak(Row row) {
         assert row.numColumns() == estimators.size() : "Size of row must match the number of estimators";
 
         // Container size of the row is excluded because here it's unknown where the values will be saved to.
         // As size estimation is generally "best-effort" this should be good enough.
-        long size = 0;
+        long size = extraSizePerRow;
         for (int i = 0; i < row.numColumns(); i++) {
-            size += (estimators.get(i).estimateSize(row.get(i)) + extraSizePerRow);
+            size += estimators.get(i).estimateSize(row.get(i));
         }
         ramAccountingContext.addBytes(size);
+        return size;
     }
 
     public void close() {
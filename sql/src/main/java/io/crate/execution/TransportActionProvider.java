@@ -23,6 +23,7 @@
 package io.crate.execution;
 
 import io.crate.execution.dml.delete.TransportShardDeleteAction;
+import io.crate.execution.dml.upsert.ShardUpsertCoalescer;
 import io.crate.execution.dml.upsert.TransportShardUpsertAction;
 import io.crate.execution.engine.profile.TransportCollectProfileNodeAction;
 import io.crate.execution.jobs.transport.TransportJobAction;
@@ -49,6 +50,7 @@ public class TransportActionProvider {
     private final Provider<TransportShardDeleteAction> transportShardDeleteActionProvider;
 
     private final Provider<TransportShardUpsertAction> transportShardUpsertActionProvider;
+    private final Provider<ShardUpsertCoalescer> shardUpsertCoalescerProvider;
     private final Provider<TransportCreatePartitionsAction> transportBulkCreateIndicesActionProvider;
 
     private final Provider<TransportJobAction> transportJobInitActionProvider;
@@ -67,6 +69,7 @@ public class TransportActionProvider {
                                    Provider<TransportClusterUpdateSettingsAction> transportClusterUpdateSettingsActionProvider,
                                    Provider<TransportShardDeleteAction> transportShardDeleteActionProvider,
                                    Provider<TransportShardUpsertAction> transportShardUpsertActionProvider,
+                                   Provider<ShardUpsertCoalescer> shardUpsertCoalescerProvider,
                                    Provider<TransportKillAllNodeAction> transportKillAllNodeActionProvider,
                                    Provider<TransportJobAction> transportJobInitActionProvider,
                                    Provider<TransportCreatePartitionsAction> transportBulkCreateIndicesActionProvider,
@@ -79,6 +82,7 @@ public class TransportActionProvider {
         this.transportClusterUpdateSettingsActionProvider = transportClusterUpdateSettingsActionProvider;
         this.transportShardDeleteActionProvider = transportShardDeleteActionProvider;
         this.transportShardUpsertActionProvider = transportShardUpsertActionProvider;
+        this.shardUpsertCoalescerProvider = shardUpsertCoalescerProvider;
         this.transportKillAllNodeActionProvider = transportKillAllNodeActionProvider;
         this.transportFetchNodeActionProvider = transportFetchNodeActionProvider;
         this.transportCollectProfileNodeActionProvider = transportCollectProfileNodeActionProvider;
@@ -107,6 +111,14 @@ public class TransportActionProvider {
         return transportShardUpsertActionProvider.get();
     }
 
+    /**
+     * Executes upsert requests using the {@link #transportShardUpsertAction()}, small concurrent requests for the
+     * same shard may be combined if enabled, see {@link ShardUpsertCoalescer}.
+     */
+    public ShardUpsertCoalescer shardUpsertCoalescer() {
+        return shardUpsertCoalescerProvider.get();
+    }
+
     public TransportShardDeleteAction transportShardDeleteAction() {
         return transportShardDeleteActionProvider.get();
     }
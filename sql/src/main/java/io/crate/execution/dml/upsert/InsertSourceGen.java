@@ -0,0 +1,131 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.dml.upsert;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.metadata.ColumnIdent;
+import io.crate.metadata.GeneratedReference;
+import io.crate.metadata.Reference;
+import io.crate.metadata.RowGranularity;
+import io.crate.metadata.doc.DocTableInfo;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Generates the source of the documents inserted by a {@link ShardUpsertRequest}.
+ * <p>
+ * Everything which only depends on the table and the insert columns is resolved once per request. The values of
+ * an item are written straight into the builder in the order of the insert columns, the output buffer is sized
+ * using the size of the previous source.
+ */
+final class InsertSourceGen {
+
+    private static final int INITIAL_SOURCE_SIZE = 128;
+
+    private final Collection<ColumnIdent> notUsedNonGeneratedColumns;
+    private final boolean generatedColumnsEvaluationNeeded;
+    private final int[] sourceColumnIndices;
+    private final String[] sourceColumnNames;
+    private int lastSourceSize = INITIAL_SOURCE_SIZE;
+
+    InsertSourceGen(DocTableInfo tableInfo, ShardUpsertRequest request) {
+        Reference[] insertColumns = request.insertColumns();
+        assert insertColumns != null : "insertColumns must not be null";
+        if (request.validateConstraints()) {
+            notUsedNonGeneratedColumns = TransportShardUpsertAction.getNotUsedNonGeneratedColumns(insertColumns, tableInfo);
+        } else {
+            notUsedNonGeneratedColumns = ImmutableList.of();
+        }
+
+        boolean isRawSourceInsert = request.isRawSourceInsert();
+        int numSourceColumns = 0;
+        int numGeneratedColumnsWithValue = 0;
+        if (!isRawSourceInsert) {
+            for (Reference ref : insertColumns) {
+                // don't include values for partitions in the _source
+                // ideally columns with partition granularity shouldn't be part of the request
+                if (ref.granularity() == RowGranularity.DOC) {
+                    numSourceColumns++;
+                    if (ref instanceof GeneratedReference) {
+                        numGeneratedColumnsWithValue++;
+                    }
+                }
+            }
+        }
+        sourceColumnIndices = new int[numSourceColumns];
+        sourceColumnNames = new String[numSourceColumns];
+        if (!isRawSourceInsert) {
+            int idx = 0;
+            for (int i = 0; i < insertColumns.length; i++) {
+                Reference ref = insertColumns[i];
+                if (ref.granularity() == RowGranularity.DOC) {
+                    sourceColumnIndices[idx] = i;
+                    sourceColumnNames[idx] = ref.column().fqn();
+                    idx++;
+                }
+            }
+        }
+
+        int numGeneratedColumns = 0;
+        for (GeneratedReference reference : tableInfo.generatedColumns()) {
+            if (!tableInfo.partitionedByColumns().contains(reference)) {
+                numGeneratedColumns++;
+            }
+        }
+        generatedColumnsEvaluationNeeded = numGeneratedColumns > 0 &&
+                                           (numGeneratedColumns > numGeneratedColumnsWithValue ||
+                                            (numGeneratedColumnsWithValue > 0 && request.validateConstraints()));
+    }
+
+    /**
+     * @return the non-generated columns which have to be validated because the request contains no value for them
+     */
+    Collection<ColumnIdent> notUsedNonGeneratedColumns() {
+        return notUsedNonGeneratedColumns;
+    }
+
+    /**
+     * Generated column expressions need to be evaluated if a generated column has no value or if the supplied values
+     * of generated columns must be validated.
+     */
+    boolean generatedColumnsEvaluationNeeded() {
+        return generatedColumnsEvaluationNeeded;
+    }
+
+    BytesReference generateSource(Object[] insertValues) throws IOException {
+        XContentBuilder builder = new XContentBuilder(XContentType.JSON.xContent(), new BytesStreamOutput(lastSourceSize));
+        builder.startObject();
+        for (int i = 0; i < sourceColumnIndices.length; i++) {
+            builder.field(sourceColumnNames[i], insertValues[sourceColumnIndices[i]]);
+        }
+        builder.endObject();
+        BytesReference source = builder.bytes();
+        lastSourceSize = source.length();
+        return source;
+    }
+}
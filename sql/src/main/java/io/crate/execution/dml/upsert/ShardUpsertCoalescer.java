@@ -0,0 +1,295 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.dml.upsert;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.crate.execution.dml.ShardResponse;
+import io.crate.execution.dml.upsert.ShardUpsertRequest.DuplicateKeyAction;
+import io.crate.metadata.Reference;
+import io.crate.settings.CrateSetting;
+import io.crate.types.DataTypes;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkRequestExecutor;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces small {@link ShardUpsertRequest}s which are issued concurrently by different statements for the same
+ * shard into a single request, so that they share one primary and replica operation.
+ * <p>
+ * Coalescing is disabled by default. If enabled, a request is held back for at most
+ * {@link #COALESCE_WINDOW_SETTING} or until the pending requests of the shard contain
+ * {@link #COALESCE_MAX_ITEMS_SETTING} items. The response of the combined request is split up again, so every
+ * caller receives the results of its own items with their original locations.
+ * <p>
+ * Only requests with the same shard, columns and options are combined. The combined request continues on error;
+ * a failed single item request which must not continue on error is re-sent on its own, so that its caller receives
+ * the original failure. The combined request belongs to the job of the first request, killing another job doesn't
+ * interrupt it.
+ */
+@Singleton
+public class ShardUpsertCoalescer implements BulkRequestExecutor<ShardUpsertRequest> {
+
+    public static final CrateSetting<TimeValue> COALESCE_WINDOW_SETTING = CrateSetting.of(Setting.positiveTimeSetting(
+        "bulk.coalesce_window", TimeValue.timeValueMillis(0),
+        Setting.Property.NodeScope, Setting.Property.Dynamic), DataTypes.STRING);
+
+    public static final CrateSetting<Integer> COALESCE_MAX_ITEMS_SETTING = CrateSetting.of(Setting.intSetting(
+        "bulk.coalesce_max_items", 100, 1, Setting.Property.NodeScope, Setting.Property.Dynamic), DataTypes.INTEGER);
+
+    private final BulkRequestExecutor<ShardUpsertRequest> requestExecutor;
+    private final ScheduledExecutorService scheduler;
+    private final Map<Key, Batch> pendingBatches = new HashMap<>();
+
+    private volatile TimeValue window;
+    private volatile int maxItems;
+
+    @Inject
+    public ShardUpsertCoalescer(Settings settings,
+                                ClusterService clusterService,
+                                ThreadPool threadPool,
+                                TransportShardUpsertAction transportShardUpsertAction) {
+        this(transportShardUpsertAction::execute,
+            threadPool.scheduler(),
+            COALESCE_WINDOW_SETTING.setting().get(settings),
+            COALESCE_MAX_ITEMS_SETTING.setting().get(settings));
+        clusterService.getClusterSettings().addSettingsUpdateConsumer(COALESCE_WINDOW_SETTING.setting(), this::setWindow);
+        clusterService.getClusterSettings().addSettingsUpdateConsumer(
+            COALESCE_MAX_ITEMS_SETTING.setting(), this::setMaxItems);
+    }
+
+    @VisibleForTesting
+    ShardUpsertCoalescer(BulkRequestExecutor<ShardUpsertRequest> requestExecutor,
+                         ScheduledExecutorService scheduler,
+                         TimeValue window,
+                         int maxItems) {
+        this.requestExecutor = requestExecutor;
+        this.scheduler = scheduler;
+        this.window = window;
+        this.maxItems = maxItems;
+    }
+
+    private void setWindow(TimeValue window) {
+        this.window = window;
+    }
+
+    private void setMaxItems(int maxItems) {
+        this.maxItems = maxItems;
+    }
+
+    @Override
+    public void execute(ShardUpsertRequest request, ActionListener<ShardResponse> listener) {
+        long windowMillis = window.millis();
+        int maxItems = this.maxItems;
+        if (windowMillis <= 0 || canCoalesce(request, maxItems) == false) {
+            requestExecutor.execute(request, listener);
+            return;
+        }
+        Key key = new Key(request);
+        Batch batchToSend = null;
+        synchronized (pendingBatches) {
+            Batch batch = pendingBatches.get(key);
+            if (batch == null) {
+                batch = new Batch();
+                pendingBatches.put(key, batch);
+                Batch scheduledBatch = batch;
+                scheduler.schedule(() -> sendIfPending(key, scheduledBatch), windowMillis, TimeUnit.MILLISECONDS);
+            }
+            batch.add(request, listener);
+            if (batch.numItems >= maxItems) {
+                pendingBatches.remove(key);
+                batchToSend = batch;
+            }
+        }
+        if (batchToSend != null) {
+            batchToSend.send();
+        }
+    }
+
+    private static boolean canCoalesce(ShardUpsertRequest request, int maxItems) {
+        int numItems = request.items().size();
+        return numItems < maxItems &&
+               (numItems == 1 || request.continueOnError()) &&
+               request.isRetry() == false &&
+               request.getRefreshPolicy() == WriteRequest.RefreshPolicy.NONE;
+    }
+
+    private void sendIfPending(Key key, Batch batch) {
+        synchronized (pendingBatches) {
+            if (pendingBatches.get(key) != batch) {
+                // already sent because it reached the max number of items
+                return;
+            }
+            pendingBatches.remove(key);
+        }
+        batch.send();
+    }
+
+    private final class Batch {
+
+        private final List<ShardUpsertRequest> requests = new ArrayList<>();
+        private final List<ActionListener<ShardResponse>> listeners = new ArrayList<>();
+        private int numItems = 0;
+
+        void add(ShardUpsertRequest request, ActionListener<ShardResponse> listener) {
+            requests.add(request);
+            listeners.add(listener);
+            numItems += request.items().size();
+        }
+
+        void send() {
+            if (requests.size() == 1) {
+                requestExecutor.execute(requests.get(0), listeners.get(0));
+                return;
+            }
+            ShardUpsertRequest first = requests.get(0);
+            ShardUpsertRequest request = new ShardUpsertRequest.Builder(
+                first.timeout(),
+                first.duplicateKeyAction(),
+                true,
+                first.updateColumns(),
+                first.insertColumns(),
+                first.jobId(),
+                first.validateConstraints()
+            ).newRequest(first.shardId());
+            request.autoGeneratedTimestamp(first.autoGeneratedTimestamp());
+
+            // the items are copied, the original requests must stay untouched so that they can be re-sent
+            int[] requestIdxByLocation = new int[numItems];
+            int[] originalLocations = new int[numItems];
+            int location = 0;
+            for (int i = 0; i < requests.size(); i++) {
+                for (ShardUpsertRequest.Item item : requests.get(i).items()) {
+                    requestIdxByLocation[location] = i;
+                    originalLocations[location] = item.location();
+                    request.add(location, new ShardUpsertRequest.Item(
+                        item.id(), item.updateAssignments(), item.insertValues(), item.version()));
+                    location++;
+                }
+            }
+            requestExecutor.execute(request, new ActionListener<ShardResponse>() {
+                @Override
+                public void onResponse(ShardResponse response) {
+                    splitResponse(response, requestIdxByLocation, originalLocations);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    for (ActionListener<ShardResponse> listener : listeners) {
+                        listener.onFailure(e);
+                    }
+                }
+            });
+        }
+
+        private void splitResponse(ShardResponse response, int[] requestIdxByLocation, int[] originalLocations) {
+            ShardResponse[] responses = new ShardResponse[requests.size()];
+            boolean[] resend = new boolean[requests.size()];
+            for (int i = 0; i < responses.length; i++) {
+                responses[i] = new ShardResponse();
+                responses[i].setShardInfo(response.getShardInfo());
+                responses[i].failure(response.failure());
+            }
+            for (int i = 0; i < response.itemIndices().size(); i++) {
+                int location = response.itemIndices().get(i);
+                int requestIdx = requestIdxByLocation[location];
+                ShardResponse.Failure failure = response.failures().get(i);
+                if (failure != null && requests.get(requestIdx).continueOnError() == false) {
+                    resend[requestIdx] = true;
+                } else {
+                    responses[requestIdx].add(originalLocations[location], failure);
+                }
+            }
+            for (int i = 0; i < responses.length; i++) {
+                if (resend[i]) {
+                    requestExecutor.execute(requests.get(i), listeners.get(i));
+                } else {
+                    listeners.get(i).onResponse(responses[i]);
+                }
+            }
+        }
+    }
+
+    private static final class Key {
+
+        private final ShardId shardId;
+        private final DuplicateKeyAction duplicateKeyAction;
+        private final boolean validateConstraints;
+        private final boolean appendOnly;
+        private final TimeValue timeout;
+        private final String[] updateColumns;
+        private final Reference[] insertColumns;
+        private final int hashCode;
+
+        Key(ShardUpsertRequest request) {
+            shardId = request.shardId();
+            duplicateKeyAction = request.duplicateKeyAction();
+            validateConstraints = request.validateConstraints();
+            appendOnly = request.isAppendOnly();
+            timeout = request.timeout();
+            updateColumns = request.updateColumns();
+            insertColumns = request.insertColumns();
+            hashCode = 31 * Objects.hash(shardId, duplicateKeyAction, validateConstraints, appendOnly, timeout) +
+                       Arrays.hashCode(updateColumns) + Arrays.hashCode(insertColumns);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return validateConstraints == key.validateConstraints &&
+                   appendOnly == key.appendOnly &&
+                   duplicateKeyAction == key.duplicateKeyAction &&
+                   shardId.equals(key.shardId) &&
+                   timeout.equals(key.timeout) &&
+                   Arrays.equals(updateColumns, key.updateColumns) &&
+                   Arrays.equals(insertColumns, key.insertColumns);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
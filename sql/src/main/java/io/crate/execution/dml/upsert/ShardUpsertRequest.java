@@ -29,6 +29,7 @@ import io.crate.expression.symbol.Symbol;
 import io.crate.expression.symbol.Symbols;
 import io.crate.metadata.Reference;
 import io.crate.metadata.doc.DocSysColumns;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.support.replication.ReplicationRequest;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -55,6 +56,7 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
     private Boolean isRawSourceInsert;
     private boolean validateConstraints = true;
     private boolean isRetry;
+    private long autoGeneratedTimestamp = IndexRequest.UNSET_AUTO_ID_TIMESTAMP;
 
     /**
      * List of column names used on update
@@ -138,8 +140,30 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
         return isRawSourceInsert;
     }
 
+    /**
+     * Returns the time the request was created at if all items have auto generated ids and are only inserted,
+     * otherwise {@link IndexRequest#UNSET_AUTO_ID_TIMESTAMP}.
+     * <p>
+     * Such items cannot conflict with existing documents, so they are added to the index without a version lookup.
+     * The timestamp is used by the engine to detect whether a retried item might have been indexed before.
+     */
+    public long autoGeneratedTimestamp() {
+        return autoGeneratedTimestamp;
+    }
+
+    public ShardUpsertRequest autoGeneratedTimestamp(long autoGeneratedTimestamp) {
+        this.autoGeneratedTimestamp = autoGeneratedTimestamp;
+        return this;
+    }
+
+    public boolean isAppendOnly() {
+        return autoGeneratedTimestamp != IndexRequest.UNSET_AUTO_ID_TIMESTAMP;
+    }
+
     /**
      * Returns <code>true</code> if this request has been sent to a shard copy more than once.
+     * The flag is streamed, so a retried request that is rerouted to another node is still
+     * treated as a retry by the engine of the append-only path.
      */
     public boolean isRetry() {
         return isRetry;
@@ -172,6 +196,8 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
         continueOnError = in.readBoolean();
         duplicateKeyAction = DuplicateKeyAction.values()[in.readVInt()];
         validateConstraints = in.readBoolean();
+        autoGeneratedTimestamp = in.readLong();
+        isRetry = in.readBoolean();
 
         int numItems = in.readVInt();
         readItems(in, numItems);
@@ -200,6 +226,8 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
         out.writeBoolean(continueOnError);
         out.writeVInt(duplicateKeyAction.ordinal());
         out.writeBoolean(validateConstraints);
+        out.writeLong(autoGeneratedTimestamp);
+        out.writeBoolean(isRetry);
 
         out.writeVInt(items.size());
         for (Item item : items) {
@@ -222,6 +250,7 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
         return continueOnError == items.continueOnError &&
                duplicateKeyAction == items.duplicateKeyAction &&
                validateConstraints == items.validateConstraints &&
+               autoGeneratedTimestamp == items.autoGeneratedTimestamp &&
                Objects.equal(isRawSourceInsert, items.isRawSourceInsert) &&
                Arrays.equals(updateColumns, items.updateColumns) &&
                Arrays.equals(insertColumns, items.insertColumns) &&
@@ -230,7 +259,7 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(super.hashCode(), continueOnError, duplicateKeyAction, isRawSourceInsert, validateConstraints, updateColumns, insertColumns, insertValuesStreamer);
+        return Objects.hashCode(super.hashCode(), continueOnError, duplicateKeyAction, isRawSourceInsert, validateConstraints, autoGeneratedTimestamp, updateColumns, insertColumns, insertValuesStreamer);
     }
 
     /**
@@ -351,6 +380,7 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
         private final Reference[] missingAssignmentsColumns;
         private final UUID jobId;
         private boolean validateGeneratedColumns;
+        private boolean appendOnly = false;
 
         public Builder(TimeValue timeout,
                        DuplicateKeyAction duplicateKeyAction,
@@ -387,8 +417,18 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
             this.validateGeneratedColumns = validateGeneratedColumns;
         }
 
+        /**
+         * Marks the requests as append-only, see {@link ShardUpsertRequest#autoGeneratedTimestamp()}.
+         * Must only be used if the ids of all items are generated randomly and no update assignments are given.
+         */
+        public Builder appendOnly() {
+            assert assignmentsColumns == null : "append-only requests must not contain updates";
+            this.appendOnly = true;
+            return this;
+        }
+
         public ShardUpsertRequest newRequest(ShardId shardId) {
-            return new ShardUpsertRequest(
+            ShardUpsertRequest request = new ShardUpsertRequest(
                 shardId,
                 assignmentsColumns,
                 missingAssignmentsColumns,
@@ -397,6 +437,10 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
                 .continueOnError(continueOnError)
                 .duplicateKeyAction(duplicateKeyAction)
                 .validateConstraints(validateGeneratedColumns);
+            if (appendOnly) {
+                request.autoGeneratedTimestamp(Math.max(0, System.currentTimeMillis()));
+            }
+            return request;
         }
     }
 }
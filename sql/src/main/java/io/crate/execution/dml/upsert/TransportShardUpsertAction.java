@@ -24,7 +24,6 @@ package io.crate.execution.dml.upsert;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableList;
 import io.crate.analyze.ConstraintsValidator;
 import io.crate.data.ArrayRow;
 import io.crate.data.Input;
@@ -44,7 +43,6 @@ import io.crate.metadata.GeneratedReference;
 import io.crate.metadata.Reference;
 import io.crate.metadata.RelationName;
 import io.crate.metadata.RowContextCollectorExpression;
-import io.crate.metadata.RowGranularity;
 import io.crate.metadata.Schemas;
 import io.crate.metadata.doc.DocSysColumns;
 import io.crate.metadata.doc.DocTableInfo;
@@ -52,6 +50,7 @@ import io.crate.metadata.table.Operation;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ElasticsearchGenerationException;
+import org.elasticsearch.ElasticsearchParseException;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.support.ActionFilters;
 import org.elasticsearch.cluster.action.shard.ShardStateAction;
@@ -59,14 +58,17 @@ import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
-import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.common.xcontent.support.XContentMapValues;
 import org.elasticsearch.index.VersionType;
@@ -141,9 +143,9 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
         ShardResponse shardResponse = new ShardResponse();
         DocTableInfo tableInfo = schemas.getTableInfo(RelationName.fromIndexName(request.index()), Operation.INSERT);
 
-        Collection<ColumnIdent> notUsedNonGeneratedColumns = ImmutableList.of();
-        if (request.validateConstraints()) {
-            notUsedNonGeneratedColumns = getNotUsedNonGeneratedColumns(request.insertColumns(), tableInfo);
+        InsertSourceGen insertSourceGen = null;
+        if (request.insertColumns() != null) {
+            insertSourceGen = new InsertSourceGen(tableInfo, request);
         }
 
         Translog.Location translogLocation = null;
@@ -163,7 +165,7 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
                     item,
                     indexShard,
                     item.insertValues() != null, // try insert first
-                    notUsedNonGeneratedColumns);
+                    insertSourceGen);
                 if (translogLocation != null) {
                     shardResponse.add(location);
                 }
@@ -213,8 +215,8 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
                 item.seqNo(),
                 item.version(),
                 VersionType.EXTERNAL,
-                -1,
-                false,
+                request.autoGeneratedTimestamp(),
+                request.isRetry(),
                 sourceToParse,
                 getMappingUpdateConsumer(request)
             );
@@ -229,11 +231,11 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
                                         ShardUpsertRequest.Item item,
                                         IndexShard indexShard,
                                         boolean tryInsertFirst,
-                                        Collection<ColumnIdent> notUsedNonGeneratedColumns) throws Exception {
+                                        @Nullable InsertSourceGen insertSourceGen) throws Exception {
         VersionConflictEngineException lastException = null;
         for (int retryCount = 0; retryCount < MAX_RETRY_LIMIT; retryCount++) {
             try {
-                return indexItem(tableInfo, request, item, indexShard, tryInsertFirst, notUsedNonGeneratedColumns, retryCount > 0);
+                return indexItem(tableInfo, request, item, indexShard, tryInsertFirst, insertSourceGen, retryCount > 0);
             } catch (VersionConflictEngineException e) {
                 lastException = e;
                 if (request.duplicateKeyAction() == DuplicateKeyAction.IGNORE) {
@@ -270,7 +272,7 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
                                           ShardUpsertRequest.Item item,
                                           IndexShard indexShard,
                                           boolean tryInsertFirst,
-                                          Collection<ColumnIdent> notUsedNonGeneratedColumns,
+                                          @Nullable InsertSourceGen insertSourceGen,
                                           boolean isRetry) throws Exception {
         long version;
         // try insert first without fetching the document
@@ -278,11 +280,12 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
             // set version so it will fail if already exists (will be overwritten for updates, see below)
             version = Versions.MATCH_DELETED;
             try {
-                item.source(prepareInsert(tableInfo, notUsedNonGeneratedColumns, request, item));
+                item.source(prepareInsert(tableInfo, insertSourceGen, request, item));
             } catch (IOException e) {
                 throw ExceptionsHelper.convertToElastic(e);
             }
-            if (request.duplicateKeyAction() == DuplicateKeyAction.OVERWRITE) {
+            if (request.duplicateKeyAction() == DuplicateKeyAction.OVERWRITE || request.isAppendOnly()) {
+                // append-only items have a generated id and cannot conflict, the engine skips the version lookup
                 version = Versions.MATCH_ANY;
             }
         } else {
@@ -298,8 +301,8 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
             version,
             VersionType.INTERNAL,
             sourceToParse,
-            -1,
-            isRetry,
+            request.autoGeneratedTimestamp(),
+            isRetry || request.isRetry(),
             getMappingUpdateConsumer(request)
         );
 
@@ -425,80 +428,46 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
         // Currently the validation is done only for generated columns.
         processGeneratedColumns(tableInfo, pathsToUpdate, updatedGeneratedColumns, true, getResult);
 
-        Tuple<XContentType, Map<String, Object>> sourceAndContent =
-            XContentHelper.convertToMap(getResult.internalSourceRef(), false, XContentType.JSON);
-        final XContentType updateSourceContentType = sourceAndContent.v1();
-        final Map<String, Object> updatedSourceAsMap = sourceAndContent.v2();
-
-        updateSourceByPaths(updatedSourceAsMap, pathsToUpdate);
-
         try {
-            XContentBuilder builder = XContentFactory.contentBuilder(updateSourceContentType);
-            builder.map(updatedSourceAsMap);
-            return new SourceAndVersion(builder.bytes(), getResult.getVersion());
+            BytesReference updatedSource = patchSource(getResult.internalSourceRef(), pathsToUpdate);
+            return new SourceAndVersion(updatedSource, getResult.getVersion());
         } catch (IOException e) {
-            throw new ElasticsearchGenerationException("Failed to generate [" + updatedSourceAsMap + "]", e);
+            throw new ElasticsearchGenerationException("Failed to generate [" + pathsToUpdate + "]", e);
         }
     }
 
     private BytesReference prepareInsert(DocTableInfo tableInfo,
-                                         Collection<ColumnIdent> notUsedNonGeneratedColumns,
+                                         InsertSourceGen insertSourceGen,
                                          ShardUpsertRequest request,
                                          ShardUpsertRequest.Item item) throws IOException {
-
-        List<GeneratedReference> generatedReferencesWithValue = new ArrayList<>();
-        BytesReference source;
         Object[] insertValues = item.insertValues();
         Reference[] insertColumns = request.insertColumns();
         assert insertValues != null && insertColumns != null : "insertValues and insertColumns must not be null";
-        if (request.isRawSourceInsert()) {
+        assert insertSourceGen != null : "insertSourceGen must not be null if there are insertColumns";
+        boolean isRawSourceInsert = request.isRawSourceInsert();
+        if (isRawSourceInsert) {
             assert insertValues.length > 0 : "empty insert values array";
-            source = new BytesArray((BytesRef) insertValues[0]);
         } else {
-            XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
-
             // For direct inserts it is enough to have constraints validation on a handler.
             // validateConstraints() of ShardUpsertRequest should result in false in this case.
             if (request.validateConstraints()) {
-                ConstraintsValidator.validateConstraintsForNotUsedColumns(notUsedNonGeneratedColumns, tableInfo);
+                ConstraintsValidator.validateConstraintsForNotUsedColumns(insertSourceGen.notUsedNonGeneratedColumns(), tableInfo);
             }
-
             for (int i = 0; i < insertValues.length; i++) {
-                Object value = insertValues[i];
-                Reference ref = insertColumns[i];
-
-                ConstraintsValidator.validate(value, ref, tableInfo.notNullColumns());
-
-                if (ref.granularity() == RowGranularity.DOC) {
-                    // don't include values for partitions in the _source
-                    // ideally columns with partition granularity shouldn't be part of the request
-                    builder.field(ref.column().fqn(), value);
-                    if (ref instanceof GeneratedReference) {
-                        generatedReferencesWithValue.add((GeneratedReference) ref);
-                    }
-                }
+                ConstraintsValidator.validate(insertValues[i], insertColumns[i], tableInfo.notNullColumns());
             }
-            builder.endObject();
-            source = builder.bytes();
         }
 
-        int generatedColumnSize = 0;
-        for (GeneratedReference reference : tableInfo.generatedColumns()) {
-            if (!tableInfo.partitionedByColumns().contains(reference)) {
-                generatedColumnSize++;
-            }
+        if (insertSourceGen.generatedColumnsEvaluationNeeded()) {
+            // the source is built once from the values including the generated ones
+            Map<String, Object> sourceMap = processGeneratedColumnsOnInsert(tableInfo, insertColumns,
+                insertValues, isRawSourceInsert, request.validateConstraints());
+            return XContentFactory.jsonBuilder().map(sourceMap).bytes();
         }
-
-        int numMissingGeneratedColumns = generatedColumnSize - generatedReferencesWithValue.size();
-        if (numMissingGeneratedColumns > 0 ||
-            (generatedReferencesWithValue.size() > 0 && request.validateConstraints())) {
-            // we need to evaluate some generated column expressions
-            Map<String, Object> sourceMap = processGeneratedColumnsOnInsert(tableInfo, request.insertColumns(),
-                item.insertValues(), request.isRawSourceInsert(), request.validateConstraints());
-            source = XContentFactory.jsonBuilder().map(sourceMap).bytes();
+        if (isRawSourceInsert) {
+            return new BytesArray((BytesRef) insertValues[0]);
         }
-
-        return source;
+        return insertSourceGen.generateSource(insertValues);
     }
 
     private Map<String, Object> processGeneratedColumnsOnInsert(DocTableInfo tableInfo,
@@ -590,6 +559,65 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
         return evalNeeded;
     }
 
+    /**
+     * Applies the changes to the source without converting the whole document into a map.
+     * Top-level fields which aren't changed are copied as they are, only the values of changed top-level fields are
+     * read and updated using {@link #updateSourceByPaths(Map, Map)}. Fields which don't exist yet are appended.
+     */
+    @VisibleForTesting
+    static BytesReference patchSource(BytesReference source, Map<String, Object> changes) throws IOException {
+        Map<String, Map<String, Object>> changesByTopLevelKey = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : changes.entrySet()) {
+            String path = entry.getKey();
+            int dotIndex = path.indexOf('.');
+            String topLevelKey = dotIndex > -1 ? path.substring(0, dotIndex) : path;
+            changesByTopLevelKey.computeIfAbsent(topLevelKey, k -> new LinkedHashMap<>()).put(path, entry.getValue());
+        }
+        XContent xContent = XContentType.JSON.xContent();
+        try (XContentParser parser = xContent.createParser(NamedXContentRegistry.EMPTY, source)) {
+            if (parser.nextToken() != XContentParser.Token.START_OBJECT) {
+                throw new ElasticsearchParseException("Failed to parse source, expected an object");
+            }
+            XContentBuilder builder = new XContentBuilder(xContent, new BytesStreamOutput(source.length()));
+            builder.startObject();
+            while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                XContentParser.Token token = parser.nextToken();
+                Map<String, Object> fieldChanges = changesByTopLevelKey.remove(fieldName);
+                if (fieldChanges == null) {
+                    builder.field(fieldName);
+                    builder.copyCurrentStructure(parser);
+                } else {
+                    Map<String, Object> field = new HashMap<>(1);
+                    field.put(fieldName, readValue(parser, token));
+                    updateSourceByPaths(field, fieldChanges);
+                    builder.field(fieldName, field.get(fieldName));
+                }
+            }
+            for (Map.Entry<String, Map<String, Object>> entry : changesByTopLevelKey.entrySet()) {
+                Map<String, Object> field = new HashMap<>(1);
+                updateSourceByPaths(field, entry.getValue());
+                builder.field(entry.getKey(), field.get(entry.getKey()));
+            }
+            builder.endObject();
+            return builder.bytes();
+        }
+    }
+
+    @Nullable
+    private static Object readValue(XContentParser parser, XContentParser.Token token) throws IOException {
+        switch (token) {
+            case START_OBJECT:
+                return parser.map();
+            case START_ARRAY:
+                return parser.list();
+            case VALUE_NULL:
+                return null;
+            default:
+                return parser.objectText();
+        }
+    }
+
     /**
      * Overwrite given values on the source. If the value is a map,
      * it will not be merged but overwritten. The keys of the changes map representing a path of
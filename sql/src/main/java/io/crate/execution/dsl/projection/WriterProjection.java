@@ -66,7 +66,7 @@ public class WriterProjection extends Projection {
         new FunctionIdent(FormatFunction.NAME, Arrays.<DataType>asList(StringType.INSTANCE,
             StringType.INSTANCE, StringType.INSTANCE, StringType.INSTANCE)),
         StringType.INSTANCE),
-        Arrays.<Symbol>asList(Literal.of("%s_%s_%s.json"), TABLE_NAME_REF, SHARD_ID_REF, PARTITION_IDENT_REF)
+        Arrays.<Symbol>asList(Literal.of("%s_%s_%s"), TABLE_NAME_REF, SHARD_ID_REF, PARTITION_IDENT_REF)
     );
 
     private Symbol uri;
@@ -84,14 +84,29 @@ public class WriterProjection extends Projection {
     private OutputFormat outputFormat;
 
     public enum OutputFormat {
-        JSON_OBJECT,
-        JSON_ARRAY
+        JSON_OBJECT(".json"),
+        JSON_ARRAY(".json"),
+        PARQUET(".parquet");
+
+        private final String fileExtension;
+
+        OutputFormat(String fileExtension) {
+            this.fileExtension = fileExtension;
+        }
+
+        /**
+         * @return the extension of the files written in this format, appended to {@link WriterProjection#DIRECTORY_TO_FILENAME}
+         */
+        public String fileExtension() {
+            return fileExtension;
+        }
     }
 
     private CompressionType compressionType;
 
     public enum CompressionType {
-        GZIP
+        GZIP,
+        LZ4
     }
 
     public WriterProjection(List<Symbol> inputs,
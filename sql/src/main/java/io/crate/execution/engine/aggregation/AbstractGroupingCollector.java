@@ -0,0 +1,204 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.aggregation;
+
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.expression.symbol.AggregateMode;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.util.BigArrays;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * Base class for collectors which group rows by key and aggregate the grouped values.
+ * <p>
+ * Implementations decide how the aggregation states are stored per key, this class takes care of
+ * creating, updating and finishing the aggregation states of a group.
+ *
+ * @param <G> type of the container holding the aggregation states of all groups
+ */
+abstract class AbstractGroupingCollector<G> implements Collector<Row, G, Iterable<Row>> {
+
+    private final CollectExpression<Row, ?>[] expressions;
+    private final AggregationFunction[] aggregations;
+    private final AggregateMode mode;
+    private final Input[][] inputs;
+    private final Version indexVersionCreated;
+    private final BigArrays bigArrays;
+
+    final RamAccountingContext ramAccountingContext;
+    final int numKeyColumns;
+
+    /**
+     * Shallow size of the {@code Object[]} holding the aggregation states of one group.
+     */
+    final long statesArraySize;
+
+    AbstractGroupingCollector(CollectExpression<Row, ?>[] expressions,
+                              AggregationFunction[] aggregations,
+                              AggregateMode mode,
+                              Input[][] inputs,
+                              RamAccountingContext ramAccountingContext,
+                              int numKeyColumns,
+                              Version indexVersionCreated,
+                              BigArrays bigArrays) {
+        this.expressions = expressions;
+        this.aggregations = aggregations;
+        this.mode = mode;
+        this.inputs = inputs;
+        this.ramAccountingContext = ramAccountingContext;
+        this.numKeyColumns = numKeyColumns;
+        this.indexVersionCreated = indexVersionCreated;
+        this.bigArrays = bigArrays;
+        this.statesArraySize = RamUsageEstimator.alignObjectSize(
+            RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + (long) RamUsageEstimator.NUM_BYTES_OBJECT_REF * aggregations.length);
+    }
+
+    /**
+     * Creates the (empty) container for the aggregation states of all groups.
+     */
+    abstract G newGroups();
+
+    /**
+     * Called for each row once the collect expressions have been set to the row.
+     * Must lookup the group of the row and either create new states via {@link #newStates()}
+     * or update the existing ones via {@link #aggregate(Object[])}.
+     */
+    abstract void onNextRow(G groups, Row row);
+
+    /**
+     * Creates the result rows out of all groups.
+     * The aggregation states can be turned into their final values using {@link #finishStates(Object[], Object[])}.
+     */
+    abstract Iterable<Row> groupsToRows(G groups);
+
+    /**
+     * Calls {@code consumer} with the key columns and the aggregation states of each group.
+     * The key array is re-used between the calls.
+     */
+    abstract void forEachGroup(G groups, BiConsumer<Object[], Object[]> consumer);
+
+    @Override
+    public Supplier<G> supplier() {
+        return this::newGroups;
+    }
+
+    @Override
+    public BiConsumer<G, Row> accumulator() {
+        return this::accumulate;
+    }
+
+    @Override
+    public BinaryOperator<G> combiner() {
+        return (state1, state2) -> {
+            throw new UnsupportedOperationException("combine not supported");
+        };
+    }
+
+    @Override
+    public Function<G, Iterable<Row>> finisher() {
+        return this::groupsToRows;
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return Collections.emptySet();
+    }
+
+    private void accumulate(G groups, Row row) {
+        for (CollectExpression<Row, ?> expression : expressions) {
+            expression.setNextRow(row);
+        }
+        onNextRow(groups, row);
+    }
+
+    /**
+     * Creates the aggregation states for a new group and applies the current row to them.
+     */
+    Object[] newStates() {
+        Object[] states = new Object[aggregations.length];
+        for (int i = 0; i < aggregations.length; i++) {
+            AggregationFunction aggregation = aggregations[i];
+            states[i] = mode.onRow(
+                ramAccountingContext, aggregation,
+                aggregation.newState(ramAccountingContext, indexVersionCreated, bigArrays), inputs[i]);
+        }
+        return states;
+    }
+
+    /**
+     * Applies the current row to the aggregation states of an existing group.
+     */
+    void aggregate(Object[] states) {
+        for (int i = 0; i < aggregations.length; i++) {
+            states[i] = mode.onRow(ramAccountingContext, aggregations[i], states[i], inputs[i]);
+        }
+    }
+
+    /**
+     * Writes the final values of the aggregation states into {@code cells}, behind the key columns.
+     */
+    void finishStates(Object[] states, Object[] cells) {
+        int c = numKeyColumns;
+        for (int i = 0; i < states.length; i++) {
+            cells[c] = mode.finishCollect(ramAccountingContext, aggregations[i], states[i]);
+            c++;
+        }
+    }
+
+    /**
+     * Merges the aggregation states {@code other} into {@code states}.
+     */
+    void reduceStates(Object[] states, Object[] other) {
+        for (int i = 0; i < aggregations.length; i++) {
+            //noinspection unchecked
+            states[i] = aggregations[i].reduce(ramAccountingContext, states[i], other[i]);
+        }
+    }
+
+    /**
+     * Returns the streamers of the partial types of the aggregations, in the order of the aggregation states.
+     */
+    Streamer[] stateStreamers() {
+        Streamer[] streamers = new Streamer[aggregations.length];
+        for (int i = 0; i < aggregations.length; i++) {
+            streamers[i] = aggregations[i].partialType().streamer();
+        }
+        return streamers;
+    }
+
+    int numColumns() {
+        return numKeyColumns + aggregations.length;
+    }
+}
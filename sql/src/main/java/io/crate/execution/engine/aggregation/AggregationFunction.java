@@ -24,6 +24,7 @@ package io.crate.execution.engine.aggregation;
 
 import io.crate.breaker.RamAccountingContext;
 import io.crate.data.Input;
+import io.crate.execution.engine.vector.VectorAggregator;
 import io.crate.metadata.FunctionImplementation;
 import io.crate.types.DataType;
 import org.elasticsearch.Version;
@@ -82,4 +83,14 @@ public abstract class AggregationFunction<TPartial, TFinal> implements FunctionI
     public abstract TFinal terminatePartial(RamAccountingContext ramAccountingContext, TPartial state);
 
     public abstract DataType partialType();
+
+    /**
+     * Returns an aggregator which aggregates the values of a whole {@link io.crate.execution.engine.vector.ColumnBatch}
+     * at once, or null if the aggregation can't be executed vectorized.
+     * Implementations must return null for argument types which aren't read into numeric vectors.
+     */
+    @Nullable
+    public VectorAggregator<TPartial> vectorAggregator() {
+        return null;
+    }
 }
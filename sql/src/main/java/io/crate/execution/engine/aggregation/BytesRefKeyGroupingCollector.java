@@ -0,0 +1,188 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.aggregation;
+
+import com.google.common.collect.Iterables;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.expression.symbol.AggregateMode;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import io.crate.types.StringType;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.util.BigArrays;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Grouping collector for a single string key.
+ * <p>
+ * The key bytes are stored in a {@link PagedBytesRefHash} which assigns dense ids to the keys;
+ * the aggregation states are stored in an array indexed by these ids.
+ */
+final class BytesRefKeyGroupingCollector extends AbstractGroupingCollector<BytesRefKeyGroupingCollector.Groups> {
+
+    private final Input<?> keyInput;
+
+    static final class Groups {
+
+        /*
+         * The result rows reference the key bytes without copying them and the resulting Iterable has no release
+         * hook, so the pages must not be recycled. The memory is accounted via the RamAccountingContext instead.
+         */
+        private final PagedBytesRefHash keys = new PagedBytesRefHash(BigArrays.NON_RECYCLING_INSTANCE);
+        private Object[][] statesById = new Object[16][];
+
+        @Nullable
+        private Object[] nullKeyStates;
+
+        private long accountedBytes = 0;
+    }
+
+    static boolean supports(DataType keyType) {
+        return keyType.id() == StringType.ID;
+    }
+
+    static BytesRefKeyGroupingCollector create(CollectExpression<Row, ?>[] expressions,
+                                               AggregateMode mode,
+                                               AggregationFunction[] aggregations,
+                                               Input[][] inputs,
+                                               RamAccountingContext ramAccountingContext,
+                                               Input<?> keyInput,
+                                               Version indexVersionCreated,
+                                               BigArrays bigArrays) {
+        return new BytesRefKeyGroupingCollector(
+            expressions,
+            aggregations,
+            mode,
+            inputs,
+            ramAccountingContext,
+            keyInput,
+            indexVersionCreated,
+            bigArrays
+        );
+    }
+
+    private BytesRefKeyGroupingCollector(CollectExpression<Row, ?>[] expressions,
+                                         AggregationFunction[] aggregations,
+                                         AggregateMode mode,
+                                         Input[][] inputs,
+                                         RamAccountingContext ramAccountingContext,
+                                         Input<?> keyInput,
+                                         Version indexVersionCreated,
+                                         BigArrays bigArrays) {
+        super(expressions, aggregations, mode, inputs, ramAccountingContext, 1, indexVersionCreated, bigArrays);
+        this.keyInput = keyInput;
+    }
+
+    @Override
+    Groups newGroups() {
+        Groups groups = new Groups();
+        accountTableSize(groups);
+        return groups;
+    }
+
+    @Override
+    void onNextRow(Groups groups, Row row) {
+        Object value = keyInput.value();
+        if (value == null) {
+            if (groups.nullKeyStates == null) {
+                groups.nullKeyStates = newStates();
+                ramAccountingContext.addBytes(statesArraySize);
+            } else {
+                aggregate(groups.nullKeyStates);
+            }
+            return;
+        }
+        BytesRef key = value instanceof BytesRef ? (BytesRef) value : DataTypes.STRING.value(value);
+        int id = groups.keys.add(key);
+        if (id < 0) {
+            aggregate(groups.statesById[-1 - id]);
+        } else {
+            if (id >= groups.statesById.length) {
+                groups.statesById = ArrayUtil.grow(groups.statesById, id + 1);
+            }
+            groups.statesById[id] = newStates();
+            ramAccountingContext.addBytes(statesArraySize);
+            accountTableSize(groups);
+        }
+    }
+
+    /**
+     * Accounts the growth of the key pages, the hash table and the states array since the last call.
+     */
+    private void accountTableSize(Groups groups) {
+        long bytes = groups.keys.ramBytesUsed() + RamUsageEstimator.shallowSizeOf(groups.statesById);
+        if (bytes != groups.accountedBytes) {
+            ramAccountingContext.addBytes(bytes - groups.accountedBytes);
+            groups.accountedBytes = bytes;
+        }
+    }
+
+    @Override
+    Iterable<Row> groupsToRows(Groups groups) {
+        RowN row = new RowN(numColumns());
+        Object[] cells = new Object[row.numColumns()];
+        row.cells(cells);
+
+        Iterable<Integer> ids = () -> IntStream.range(0, groups.keys.size()).iterator();
+        Iterable<Row> rows = Iterables.transform(ids, id -> {
+            assert id != null : "id must not be null";
+            // a new BytesRef instance per row; consumers may keep a reference to the key
+            cells[0] = groups.keys.get(id, new BytesRef());
+            finishStates(groups.statesById[id], cells);
+            return row;
+        });
+        if (groups.nullKeyStates == null) {
+            return rows;
+        }
+        Iterable<Row> nullKeyRow = Iterables.transform(Collections.singletonList(groups.nullKeyStates), states -> {
+            cells[0] = null;
+            finishStates(states, cells);
+            return row;
+        });
+        return Iterables.concat(rows, nullKeyRow);
+    }
+
+    @Override
+    void forEachGroup(Groups groups, BiConsumer<Object[], Object[]> consumer) {
+        Object[] keyCells = new Object[1];
+        for (int id = 0; id < groups.keys.size(); id++) {
+            keyCells[0] = groups.keys.get(id, new BytesRef());
+            consumer.accept(keyCells, groups.statesById[id]);
+        }
+        if (groups.nullKeyStates != null) {
+            keyCells[0] = null;
+            consumer.accept(keyCells, groups.nullKeyStates);
+        }
+    }
+}
@@ -37,36 +37,26 @@ import org.elasticsearch.common.util.BigArrays;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.function.BiConsumer;
-import java.util.function.BinaryOperator;
 import java.util.function.Function;
-import java.util.function.Supplier;
-import java.util.stream.Collector;
 
 /**
  * Collector implementation which uses {@link AggregateMode}s and {@code keyInputs}
  * to group rows by key and aggregate the grouped values.
+ * <p>
+ * This is the generic implementation which works with any key type.
+ * See {@link LongKeyGroupingCollector} and {@link BytesRefKeyGroupingCollector} for key-type-specialized variants.
  *
  * @param <K> type of the key
  */
-public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, Iterable<Row>> {
+public class GroupingCollector<K> extends AbstractGroupingCollector<Map<K, Object[]>> {
 
-    private final CollectExpression<Row, ?>[] expressions;
-    private final AggregationFunction[] aggregations;
-    private final AggregateMode mode;
-    private final Input[][] inputs;
-    private final RamAccountingContext ramAccountingContext;
     private final BiConsumer<K, Object[]> applyKeyToCells;
-    private final int numKeyColumns;
     private final SizeEstimator<K> keySizeEstimator;
     private final Function<Row, K> keyExtractor;
-    private final Version indexVersionCreated;
-    private final BigArrays bigArrays;
 
     static GroupingCollector<Object> singleKey(CollectExpression<Row, ?>[] expressions,
                                                AggregateMode mode,
@@ -141,80 +131,41 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
                               Function<Row, K> keyExtractor,
                               Version indexVersionCreated,
                               BigArrays bigArrays) {
-        this.expressions = expressions;
-        this.aggregations = aggregations;
-        this.mode = mode;
-        this.inputs = inputs;
-        this.ramAccountingContext = ramAccountingContext;
+        super(expressions, aggregations, mode, inputs, ramAccountingContext, numKeyColumns, indexVersionCreated, bigArrays);
         this.applyKeyToCells = applyKeyToCells;
-        this.numKeyColumns = numKeyColumns;
         this.keySizeEstimator = keySizeEstimator;
         this.keyExtractor = keyExtractor;
-        this.indexVersionCreated = indexVersionCreated;
-        this.bigArrays = bigArrays;
     }
 
     @Override
-    public Supplier<Map<K, Object[]>> supplier() {
-        return HashMap::new;
+    Map<K, Object[]> newGroups() {
+        return new HashMap<>();
     }
 
     @Override
-    public BiConsumer<Map<K, Object[]>, Row> accumulator() {
-        return this::onNextRow;
-    }
-
-    @Override
-    public BinaryOperator<Map<K, Object[]>> combiner() {
-        return (state1, state2) -> {
-            throw new UnsupportedOperationException("combine not supported");
-        };
-    }
-
-    @Override
-    public Function<Map<K, Object[]>, Iterable<Row>> finisher() {
-        return this::mapToRows;
-    }
-
-    @Override
-    public Set<Characteristics> characteristics() {
-        return Collections.emptySet();
-    }
-
-    private void onNextRow(Map<K, Object[]> statesByKey, Row row) {
-        for (CollectExpression<Row, ?> expression : expressions) {
-            expression.setNextRow(row);
-        }
+    void onNextRow(Map<K, Object[]> statesByKey, Row row) {
         K key = keyExtractor.apply(row);
         Object[] states = statesByKey.get(key);
         if (states == null) {
             addNewEntry(statesByKey, key);
         } else {
-            for (int i = 0; i < aggregations.length; i++) {
-                states[i] = mode.onRow(ramAccountingContext, aggregations[i], states[i], inputs[i]);
-            }
+            aggregate(states);
         }
     }
 
     private void addNewEntry(Map<K, Object[]> statesByKey, K key) {
-        Object[] states;
-        states = new Object[aggregations.length];
-        for (int i = 0; i < aggregations.length; i++) {
-            AggregationFunction aggregation = aggregations[i];
-            states[i] = mode.onRow(
-                ramAccountingContext, aggregation,
-                aggregation.newState(ramAccountingContext, indexVersionCreated, bigArrays), inputs[i]);
-        }
+        Object[] states = newStates();
         // key size + 32 bytes for entry + 4 bytes for increased capacity
         ramAccountingContext.addBytes(
             RamAccountingContext.roundUp(keySizeEstimator.estimateSize(key) + 36L));
         statesByKey.put(key, states);
     }
 
-    private Iterable<Row> mapToRows(Map<K, Object[]> statesByKey) {
+    @Override
+    Iterable<Row> groupsToRows(Map<K, Object[]> statesByKey) {
         return Iterables.transform(statesByKey.entrySet(), new com.google.common.base.Function<Map.Entry<K, Object[]>, Row>() {
 
-            RowN row = new RowN(numKeyColumns + aggregations.length);
+            RowN row = new RowN(numColumns());
             Object[] cells = new Object[row.numColumns()];
 
             {
@@ -227,17 +178,20 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
                 assert input != null : "input must not be null";
 
                 applyKeyToCells.accept(input.getKey(), cells);
-                int c = numKeyColumns;
-                Object[] states = input.getValue();
-                for (int i = 0; i < states.length; i++) {
-                    cells[c] = mode.finishCollect(ramAccountingContext, aggregations[i], states[i]);
-                    c++;
-                }
+                finishStates(input.getValue(), cells);
                 return row;
             }
         });
     }
 
+    @Override
+    void forEachGroup(Map<K, Object[]> statesByKey, BiConsumer<Object[], Object[]> consumer) {
+        Object[] keyCells = new Object[numKeyColumns];
+        for (Map.Entry<K, Object[]> entry : statesByKey.entrySet()) {
+            applyKeyToCells.accept(entry.getKey(), keyCells);
+            consumer.accept(keyCells, entry.getValue());
+        }
+    }
 
     private static class MultiSizeEstimator extends SizeEstimator<List<Object>> {
 
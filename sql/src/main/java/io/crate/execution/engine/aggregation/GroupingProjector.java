@@ -27,6 +27,7 @@ import io.crate.breaker.RamAccountingContext;
 import io.crate.data.BatchIterator;
 import io.crate.data.CollectingBatchIterator;
 import io.crate.data.Input;
+import io.crate.data.ListenableBatchIterator;
 import io.crate.data.Projector;
 import io.crate.data.Row;
 import io.crate.execution.engine.collect.CollectExpression;
@@ -35,13 +36,23 @@ import io.crate.types.DataTypes;
 import org.elasticsearch.Version;
 import org.elasticsearch.common.util.BigArrays;
 
+import javax.annotation.Nullable;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class GroupingProjector implements Projector {
 
-    private final GroupingCollector<Object> collector;
+    private final AbstractGroupingCollector<?> collector;
 
+    @Nullable
+    private final SpillingGroupingCollector<?> spillingCollector;
 
+    /**
+     * @param spillThreshold fraction of the breaker limit of {@code ramAccountingContext} at which the groups are
+     *                       written to disk. 0 disables spilling.
+     * @param spillPath      directory in which the groups are written to disk, the temporary directory if null.
+     */
     public GroupingProjector(List<? extends DataType> keyTypes,
                              List<Input<?>> keyInputs,
                              CollectExpression<Row, ?>[] collectExpressions,
@@ -49,7 +60,9 @@ public class GroupingProjector implements Projector {
                              AggregationContext[] aggregations,
                              RamAccountingContext ramAccountingContext,
                              Version indexVersionCreated,
-                             BigArrays bigArrays) {
+                             BigArrays bigArrays,
+                             double spillThreshold,
+                             @Nullable Path spillPath) {
         assert keyTypes.size() == keyInputs.size() : "number of key types must match with number of key inputs";
         assert allTypesKnown(keyTypes) : "must have a known type for each key input";
 
@@ -61,7 +74,30 @@ public class GroupingProjector implements Projector {
             functions[i] = aggregation.function();
             inputs[i] = aggregation.inputs();
         }
-        if (keyInputs.size() == 1) {
+        if (LongKeyGroupingCollector.canEncode(keyTypes)) {
+            collector = LongKeyGroupingCollector.create(
+                collectExpressions,
+                mode,
+                functions,
+                inputs,
+                ramAccountingContext,
+                keyInputs,
+                keyTypes,
+                indexVersionCreated,
+                bigArrays
+            );
+        } else if (keyInputs.size() == 1 && BytesRefKeyGroupingCollector.supports(keyTypes.get(0))) {
+            collector = BytesRefKeyGroupingCollector.create(
+                collectExpressions,
+                mode,
+                functions,
+                inputs,
+                ramAccountingContext,
+                keyInputs.get(0),
+                indexVersionCreated,
+                bigArrays
+            );
+        } else if (keyInputs.size() == 1) {
             collector = GroupingCollector.singleKey(
                 collectExpressions,
                 mode,
@@ -74,8 +110,7 @@ public class GroupingProjector implements Projector {
                 bigArrays
             );
         } else {
-            //noinspection unchecked
-            collector = (GroupingCollector<Object>) (GroupingCollector) GroupingCollector.manyKeys(
+            collector = GroupingCollector.manyKeys(
                 collectExpressions,
                 mode,
                 functions,
@@ -87,6 +122,13 @@ public class GroupingProjector implements Projector {
                 bigArrays
             );
         }
+        long breakerLimit = ramAccountingContext.limit();
+        if (spillThreshold > 0.0 && breakerLimit > 0) {
+            spillingCollector = new SpillingGroupingCollector<>(
+                collector, keyTypes, (long) (breakerLimit * spillThreshold), spillPath);
+        } else {
+            spillingCollector = null;
+        }
     }
 
     private static boolean allTypesKnown(List<? extends DataType> keyTypes) {
@@ -95,7 +137,13 @@ public class GroupingProjector implements Projector {
 
     @Override
     public BatchIterator<Row> apply(BatchIterator<Row> batchIterator) {
-        return CollectingBatchIterator.newInstance(batchIterator, collector);
+        if (spillingCollector == null) {
+            return CollectingBatchIterator.newInstance(batchIterator, collector);
+        }
+        CompletableFuture<Void> onClose = new CompletableFuture<>();
+        onClose.whenComplete((result, failure) -> spillingCollector.deleteSpillFiles());
+        return new ListenableBatchIterator<>(
+            CollectingBatchIterator.newInstance(batchIterator, spillingCollector), onClose);
     }
 
     @Override
@@ -0,0 +1,418 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.aggregation;
+
+import com.carrotsearch.hppc.LongObjectHashMap;
+import com.carrotsearch.hppc.cursors.LongObjectCursor;
+import com.google.common.collect.Iterables;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.expression.symbol.AggregateMode;
+import io.crate.types.BooleanType;
+import io.crate.types.ByteType;
+import io.crate.types.DataType;
+import io.crate.types.DoubleType;
+import io.crate.types.FloatType;
+import io.crate.types.IntegerType;
+import io.crate.types.LongType;
+import io.crate.types.ShortType;
+import io.crate.types.TimestampType;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.util.BigArrays;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Grouping collector for keys which can be encoded losslessly into a primitive {@code long}.
+ * <p>
+ * The aggregation states are held in an open-addressing {@link LongObjectHashMap}, so neither the key lookup
+ * nor the insertion of a new group requires boxing the key.
+ * <p>
+ * Supported are single keys of a numeric, boolean or timestamp type and composite keys of fixed-width integral or
+ * boolean types whose (null aware) encodings fit into 64 bits in total, see {@link #canEncode(List)}.
+ */
+final class LongKeyGroupingCollector extends AbstractGroupingCollector<LongKeyGroupingCollector.Groups> {
+
+    private static final long BYTES_PER_SLOT = Long.BYTES + RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+
+    private final KeyCodec codec;
+
+    static final class Groups {
+
+        private final LongObjectHashMap<Object[]> statesByKey = new LongObjectHashMap<>();
+
+        @Nullable
+        private Object[] nullKeyStates;
+
+        private int accountedSlots = 0;
+    }
+
+    /**
+     * @return true if a key of the given types can be encoded into a long and be grouped by this collector.
+     */
+    static boolean canEncode(List<? extends DataType> keyTypes) {
+        if (keyTypes.size() == 1) {
+            return SingleKeyCodec.supports(keyTypes.get(0));
+        }
+        return PackedKeysCodec.fitsIntoLong(keyTypes);
+    }
+
+    static LongKeyGroupingCollector create(CollectExpression<Row, ?>[] expressions,
+                                           AggregateMode mode,
+                                           AggregationFunction[] aggregations,
+                                           Input[][] inputs,
+                                           RamAccountingContext ramAccountingContext,
+                                           List<Input<?>> keyInputs,
+                                           List<? extends DataType> keyTypes,
+                                           Version indexVersionCreated,
+                                           BigArrays bigArrays) {
+        assert canEncode(keyTypes) : "Key types " + keyTypes + " cannot be encoded as long";
+        KeyCodec codec;
+        if (keyTypes.size() == 1) {
+            codec = new SingleKeyCodec(keyInputs.get(0), keyTypes.get(0));
+        } else {
+            codec = new PackedKeysCodec(keyInputs, keyTypes);
+        }
+        return new LongKeyGroupingCollector(
+            expressions,
+            aggregations,
+            mode,
+            inputs,
+            ramAccountingContext,
+            codec,
+            keyInputs.size(),
+            indexVersionCreated,
+            bigArrays
+        );
+    }
+
+    private LongKeyGroupingCollector(CollectExpression<Row, ?>[] expressions,
+                                     AggregationFunction[] aggregations,
+                                     AggregateMode mode,
+                                     Input[][] inputs,
+                                     RamAccountingContext ramAccountingContext,
+                                     KeyCodec codec,
+                                     int numKeyColumns,
+                                     Version indexVersionCreated,
+                                     BigArrays bigArrays) {
+        super(expressions, aggregations, mode, inputs, ramAccountingContext, numKeyColumns, indexVersionCreated, bigArrays);
+        this.codec = codec;
+    }
+
+    @Override
+    Groups newGroups() {
+        Groups groups = new Groups();
+        accountSlots(groups);
+        return groups;
+    }
+
+    @Override
+    void onNextRow(Groups groups, Row row) {
+        if (codec.readKey() == false) {
+            if (groups.nullKeyStates == null) {
+                groups.nullKeyStates = newStates();
+                ramAccountingContext.addBytes(statesArraySize);
+            } else {
+                aggregate(groups.nullKeyStates);
+            }
+            return;
+        }
+        long key = codec.encode();
+        LongObjectHashMap<Object[]> statesByKey = groups.statesByKey;
+        int index = statesByKey.indexOf(key);
+        if (statesByKey.indexExists(index)) {
+            aggregate(statesByKey.indexGet(index));
+        } else {
+            statesByKey.indexInsert(index, key, newStates());
+            ramAccountingContext.addBytes(statesArraySize);
+            accountSlots(groups);
+        }
+    }
+
+    /**
+     * Accounts the memory of the key and value arrays of the hash table if it grew since the last call.
+     */
+    private void accountSlots(Groups groups) {
+        int slots = groups.statesByKey.keys.length;
+        if (slots != groups.accountedSlots) {
+            ramAccountingContext.addBytes((slots - groups.accountedSlots) * BYTES_PER_SLOT);
+            groups.accountedSlots = slots;
+        }
+    }
+
+    @Override
+    Iterable<Row> groupsToRows(Groups groups) {
+        RowN row = new RowN(numColumns());
+        Object[] cells = new Object[row.numColumns()];
+        row.cells(cells);
+
+        Iterable<Row> rows = Iterables.transform(groups.statesByKey, (LongObjectCursor<Object[]> cursor) -> {
+            assert cursor != null : "cursor must not be null";
+            codec.decode(cursor.key, cells);
+            finishStates(cursor.value, cells);
+            return row;
+        });
+        if (groups.nullKeyStates == null) {
+            return rows;
+        }
+        Iterable<Row> nullKeyRow = Iterables.transform(Collections.singletonList(groups.nullKeyStates), states -> {
+            for (int i = 0; i < numKeyColumns; i++) {
+                cells[i] = null;
+            }
+            finishStates(states, cells);
+            return row;
+        });
+        return Iterables.concat(rows, nullKeyRow);
+    }
+
+    @Override
+    void forEachGroup(Groups groups, BiConsumer<Object[], Object[]> consumer) {
+        Object[] keyCells = new Object[numKeyColumns];
+        for (LongObjectCursor<Object[]> cursor : groups.statesByKey) {
+            codec.decode(cursor.key, keyCells);
+            consumer.accept(keyCells, cursor.value);
+        }
+        if (groups.nullKeyStates != null) {
+            Arrays.fill(keyCells, null);
+            consumer.accept(keyCells, groups.nullKeyStates);
+        }
+    }
+
+    /**
+     * Reads the key of the current row and encodes it into a long or decodes it back into the key columns.
+     */
+    private interface KeyCodec {
+
+        /**
+         * Reads the key of the current row.
+         *
+         * @return false if the key is null and cannot be encoded, true otherwise
+         */
+        boolean readKey();
+
+        /**
+         * Encodes the key read by the last {@link #readKey()} call.
+         */
+        long encode();
+
+        void decode(long key, Object[] cells);
+    }
+
+    /**
+     * Encodes a single key. The full 64 bit are used for the value, so null keys can't be encoded.
+     */
+    private static final class SingleKeyCodec implements KeyCodec {
+
+        private final Input<?> keyInput;
+        private final int typeId;
+        private Object value;
+
+        static boolean supports(DataType type) {
+            switch (type.id()) {
+                case LongType.ID:
+                case TimestampType.ID:
+                case IntegerType.ID:
+                case ShortType.ID:
+                case ByteType.ID:
+                case DoubleType.ID:
+                case FloatType.ID:
+                case BooleanType.ID:
+                    return true;
+
+                default:
+                    return false;
+            }
+        }
+
+        SingleKeyCodec(Input<?> keyInput, DataType type) {
+            this.keyInput = keyInput;
+            this.typeId = type.id();
+        }
+
+        @Override
+        public boolean readKey() {
+            value = keyInput.value();
+            return value != null;
+        }
+
+        @Override
+        public long encode() {
+            switch (typeId) {
+                case DoubleType.ID:
+                    return Double.doubleToLongBits(((Number) value).doubleValue());
+                case FloatType.ID:
+                    return Float.floatToIntBits(((Number) value).floatValue());
+                case BooleanType.ID:
+                    return ((Boolean) value) ? 1L : 0L;
+                default:
+                    return ((Number) value).longValue();
+            }
+        }
+
+        @Override
+        public void decode(long key, Object[] cells) {
+            cells[0] = decode(typeId, key);
+        }
+
+        private static Object decode(int typeId, long key) {
+            switch (typeId) {
+                case LongType.ID:
+                case TimestampType.ID:
+                    return key;
+                case IntegerType.ID:
+                    return (int) key;
+                case ShortType.ID:
+                    return (short) key;
+                case ByteType.ID:
+                    return (byte) key;
+                case DoubleType.ID:
+                    return Double.longBitsToDouble(key);
+                case FloatType.ID:
+                    return Float.intBitsToFloat((int) key);
+                case BooleanType.ID:
+                    return key == 1L;
+
+                default:
+                    throw new IllegalStateException("Unsupported key type id: " + typeId);
+            }
+        }
+    }
+
+    /**
+     * Packs several fixed-width keys into one long.
+     * <p>
+     * Each key uses one bit more than its value range requires: the code {@code 0} represents {@code null},
+     * every other code is the value shifted into the unsigned range plus one.
+     * <pre>
+     *     GROUP BY int_col, short_col
+     *
+     *     | unused (14 bit) | int_col (33 bit) | short_col (17 bit) |
+     * </pre>
+     */
+    private static final class PackedKeysCodec implements KeyCodec {
+
+        private final Input<?>[] keyInputs;
+        private final int[] typeIds;
+        private final int[] widths;
+
+        static boolean fitsIntoLong(List<? extends DataType> keyTypes) {
+            int totalWidth = 0;
+            for (DataType keyType : keyTypes) {
+                int width = width(keyType.id());
+                if (width < 0) {
+                    return false;
+                }
+                totalWidth += width;
+            }
+            return totalWidth <= Long.SIZE;
+        }
+
+        private static int width(int typeId) {
+            switch (typeId) {
+                case IntegerType.ID:
+                    return Integer.SIZE + 1;
+                case ShortType.ID:
+                    return Short.SIZE + 1;
+                case ByteType.ID:
+                    return Byte.SIZE + 1;
+                case BooleanType.ID:
+                    return 2;
+
+                default:
+                    return -1;
+            }
+        }
+
+        private static long minValue(int typeId) {
+            switch (typeId) {
+                case IntegerType.ID:
+                    return Integer.MIN_VALUE;
+                case ShortType.ID:
+                    return Short.MIN_VALUE;
+                case ByteType.ID:
+                    return Byte.MIN_VALUE;
+
+                default:
+                    return 0L;
+            }
+        }
+
+        PackedKeysCodec(List<Input<?>> keyInputs, List<? extends DataType> keyTypes) {
+            this.keyInputs = keyInputs.toArray(new Input[0]);
+            this.typeIds = new int[keyTypes.size()];
+            this.widths = new int[keyTypes.size()];
+            for (int i = 0; i < typeIds.length; i++) {
+                typeIds[i] = keyTypes.get(i).id();
+                widths[i] = width(typeIds[i]);
+            }
+        }
+
+        @Override
+        public boolean readKey() {
+            // nulls are part of the encoding
+            return true;
+        }
+
+        @Override
+        public long encode() {
+            long key = 0L;
+            for (int i = 0; i < keyInputs.length; i++) {
+                Object value = keyInputs[i].value();
+                long code;
+                if (value == null) {
+                    code = 0L;
+                } else if (typeIds[i] == BooleanType.ID) {
+                    code = ((Boolean) value) ? 2L : 1L;
+                } else {
+                    code = ((Number) value).longValue() - minValue(typeIds[i]) + 1L;
+                }
+                key = (key << widths[i]) | code;
+            }
+            return key;
+        }
+
+        @Override
+        public void decode(long key, Object[] cells) {
+            for (int i = keyInputs.length - 1; i >= 0; i--) {
+                int typeId = typeIds[i];
+                long code = key & ((1L << widths[i]) - 1);
+                key = key >>> widths[i];
+                if (code == 0L) {
+                    cells[i] = null;
+                } else if (typeId == BooleanType.ID) {
+                    cells[i] = code == 2L;
+                } else {
+                    cells[i] = SingleKeyCodec.decode(typeId, code - 1 + minValue(typeId));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.aggregation;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.ByteArray;
+
+/**
+ * Open-addressing hash table which assigns dense ids (0, 1, 2, ...) to {@link BytesRef} keys.
+ * <p>
+ * The bytes of all keys are copied into one paged {@link ByteArray}, so the table holds a few primitive arrays
+ * instead of one object per key. Keys can't be removed.
+ */
+final class PagedBytesRefHash {
+
+    private static final float MAX_LOAD_FACTOR = 0.75f;
+    private static final int INITIAL_SLOTS = 16;
+
+    private final BigArrays bigArrays;
+    private final BytesRef spare = new BytesRef();
+
+    private ByteArray bytes;
+    private long numBytes = 0;
+
+    /**
+     * start offset of key {@code id} in {@link #bytes}; the end offset is at {@code id + 1}
+     */
+    private long[] offsets = new long[INITIAL_SLOTS + 1];
+    private int[] hashes = new int[INITIAL_SLOTS];
+
+    /**
+     * slots containing {@code id + 1} of the key which hashed to it, 0 marks an empty slot
+     */
+    private int[] slots = new int[INITIAL_SLOTS];
+    private int mask = INITIAL_SLOTS - 1;
+    private int size = 0;
+
+    PagedBytesRefHash(BigArrays bigArrays) {
+        this.bigArrays = bigArrays;
+        this.bytes = bigArrays.newByteArray(BigArrays.BYTE_PAGE_SIZE, false);
+    }
+
+    /**
+     * Adds the key if it isn't present yet.
+     *
+     * @return the id of the key if it has been added, or {@code -1 - id} if the key was already present.
+     */
+    int add(BytesRef key) {
+        int hash = key.hashCode();
+        int slot = hash & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            int id = entry - 1;
+            if (hashes[id] == hash && keyEquals(id, key)) {
+                return -1 - id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int id = size;
+        appendKey(id, hash, key);
+        slots[slot] = id + 1;
+        size++;
+        if (size > slots.length * MAX_LOAD_FACTOR) {
+            rehash(slots.length << 1);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the key with the given id.
+     * The returned {@link BytesRef} may point directly into the pages of this table.
+     */
+    BytesRef get(int id, BytesRef dest) {
+        long start = offsets[id];
+        bytes.get(start, (int) (offsets[id + 1] - start), dest);
+        return dest;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long ramBytesUsed() {
+        return bytes.ramBytesUsed()
+               + RamUsageEstimator.sizeOf(offsets)
+               + RamUsageEstimator.sizeOf(hashes)
+               + RamUsageEstimator.sizeOf(slots);
+    }
+
+    private boolean keyEquals(int id, BytesRef key) {
+        long start = offsets[id];
+        int length = (int) (offsets[id + 1] - start);
+        if (length != key.length) {
+            return false;
+        }
+        bytes.get(start, length, spare);
+        return spare.bytesEquals(key);
+    }
+
+    private void appendKey(int id, int hash, BytesRef key) {
+        bytes = bigArrays.grow(bytes, numBytes + key.length);
+        bytes.set(numBytes, key.bytes, key.offset, key.length);
+        numBytes += key.length;
+        if (id + 1 >= offsets.length) {
+            offsets = ArrayUtil.grow(offsets, id + 2);
+        }
+        if (id >= hashes.length) {
+            hashes = ArrayUtil.grow(hashes, id + 1);
+        }
+        hashes[id] = hash;
+        offsets[id + 1] = numBytes;
+    }
+
+    private void rehash(int newNumSlots) {
+        int[] newSlots = new int[newNumSlots];
+        int newMask = newNumSlots - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & newMask;
+            while (newSlots[slot] != 0) {
+                slot = (slot + 1) & newMask;
+            }
+            newSlots[slot] = id + 1;
+        }
+        slots = newSlots;
+        mask = newMask;
+    }
+}
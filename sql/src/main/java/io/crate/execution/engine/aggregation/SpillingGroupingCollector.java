@@ -0,0 +1,487 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.aggregation;
+
+import com.carrotsearch.hppc.BitMixer;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.io.CountingInputStream;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.types.DataType;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.util.IOUtils;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.logging.Loggers;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * Grouping collector which writes the groups to disk instead of tripping the circuit breaker.
+ * <p>
+ * Once the memory accounted while collecting exceeds {@code spillThresholdBytes}, or the breaker as a whole is
+ * close to its limit, the groups of the {@code delegate} are hash-partitioned by key and their partial aggregation
+ * states are appended to one file per partition, using the streamers of the partial types. The memory is released
+ * and collecting continues with empty groups.
+ * <p>
+ * If anything has been spilled, the finisher spills the remaining groups as well. The returned rows merge the
+ * partitions lazily while they are iterated, one at a time, so that at most the groups of one partition are held in
+ * memory. The merged groups are accounted as well; if a partition turns out to be too large it is split again
+ * using a different hash seed, up to {@link #MAX_REPARTITION_DEPTH} times.
+ * The spill files are kept until {@link #deleteSpillFiles()} is called.
+ */
+final class SpillingGroupingCollector<G> implements Collector<Row, SpillingGroupingCollector.State<G>, Iterable<Row>> {
+
+    private static final Logger LOGGER = Loggers.getLogger(SpillingGroupingCollector.class);
+
+    static final int NUM_PARTITIONS = 16;
+
+    /**
+     * Number of rows after which the accounted memory is compared against the threshold.
+     */
+    private static final int CHECK_INTERVAL = 256;
+
+    /**
+     * Fraction of the breaker limit above which the groups are spilled even if they're below the threshold,
+     * because other operations use most of the memory.
+     */
+    private static final double BREAKER_NEAR_LIMIT = 0.9;
+
+    /**
+     * Number of times a partition which is too large to be merged in memory is split into {@link #NUM_PARTITIONS}
+     * partitions again. Beyond this the keys are most likely not distinct enough to be split any further.
+     */
+    static final int MAX_REPARTITION_DEPTH = 3;
+
+    private static final String SPILL_DIRECTORY_PREFIX = "crate-group-by-";
+
+    private final AbstractGroupingCollector<G> delegate;
+    private final BiConsumer<G, Row> delegateAccumulator;
+    private final RamAccountingContext ramAccountingContext;
+    private final Streamer[] keyStreamers;
+    private final Streamer[] stateStreamers;
+    private final long spillThresholdBytes;
+    private final long mergedEntryOverhead;
+
+    @Nullable
+    private final Path spillPath;
+    private final List<Path> spillDirectories = new CopyOnWriteArrayList<>();
+
+    static final class State<G> {
+
+        private G groups;
+        private long accountedBytesBefore;
+        private int rowsSinceCheck = 0;
+
+        @Nullable
+        private Path spillDirectory;
+        private final int[] numEntriesPerPartition = new int[NUM_PARTITIONS];
+    }
+
+    /**
+     * @param spillPath directory in which the spill files are created, usually the data path of the node.
+     *                  If null the temporary directory of the JVM is used.
+     */
+    SpillingGroupingCollector(AbstractGroupingCollector<G> delegate,
+                              List<? extends DataType> keyTypes,
+                              long spillThresholdBytes,
+                              @Nullable Path spillPath) {
+        this.delegate = delegate;
+        this.delegateAccumulator = delegate.accumulator();
+        this.ramAccountingContext = delegate.ramAccountingContext;
+        this.keyStreamers = new Streamer[keyTypes.size()];
+        for (int i = 0; i < keyStreamers.length; i++) {
+            keyStreamers[i] = keyTypes.get(i).streamer();
+        }
+        this.stateStreamers = delegate.stateStreamers();
+        this.spillThresholdBytes = spillThresholdBytes;
+        this.spillPath = spillPath;
+        // HashMap node and table slot, the key list and the arrays holding the keys and the states
+        this.mergedEntryOverhead = 32L + 8L + 16L + 2 * 16L + 8L * (keyStreamers.length + stateStreamers.length);
+    }
+
+    @Override
+    public Supplier<State<G>> supplier() {
+        return () -> {
+            State<G> state = new State<>();
+            state.accountedBytesBefore = ramAccountingContext.totalBytes();
+            state.groups = delegate.newGroups();
+            return state;
+        };
+    }
+
+    @Override
+    public BiConsumer<State<G>, Row> accumulator() {
+        return this::accumulate;
+    }
+
+    @Override
+    public BinaryOperator<State<G>> combiner() {
+        return (state1, state2) -> {
+            throw new UnsupportedOperationException("combine not supported");
+        };
+    }
+
+    @Override
+    public Function<State<G>, Iterable<Row>> finisher() {
+        return this::finish;
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Deletes the spill files of all collect runs. Must be called once the result has been consumed or the
+     * operation failed.
+     */
+    void deleteSpillFiles() {
+        for (Path spillDirectory : spillDirectories) {
+            deleteSpillDirectory(spillDirectory);
+        }
+    }
+
+    private void accumulate(State<G> state, Row row) {
+        delegateAccumulator.accept(state.groups, row);
+        state.rowsSinceCheck++;
+        if (state.rowsSinceCheck == CHECK_INTERVAL) {
+            state.rowsSinceCheck = 0;
+            if (exceedsMemoryLimit(ramAccountingContext.totalBytes() - state.accountedBytesBefore)) {
+                spill(state);
+            }
+        }
+    }
+
+    /**
+     * @param accountedBytes the bytes accounted for the groups which are held in memory
+     */
+    private boolean exceedsMemoryLimit(long accountedBytes) {
+        if (accountedBytes >= spillThresholdBytes) {
+            return true;
+        }
+        // don't spill tiny amounts of groups just because other operations are using the memory
+        return accountedBytes >= spillThresholdBytes / NUM_PARTITIONS &&
+               ramAccountingContext.breakerUsed() >= ramAccountingContext.limit() * BREAKER_NEAR_LIMIT;
+    }
+
+    private void spill(State<G> state) {
+        long accountedBytes = ramAccountingContext.totalBytes() - state.accountedBytesBefore;
+        try {
+            if (state.spillDirectory == null) {
+                state.spillDirectory = createSpillDirectory();
+                spillDirectories.add(state.spillDirectory);
+            }
+            writePartitions(state);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Spilled groups to {}, released {} bytes", state.spillDirectory, accountedBytes);
+        }
+        // the groups are referenced only by the state, they're garbage once replaced
+        ramAccountingContext.releaseBytes(accountedBytes);
+        state.accountedBytesBefore = ramAccountingContext.totalBytes();
+        state.groups = delegate.newGroups();
+    }
+
+    private void writePartitions(State<G> state) throws IOException {
+        StreamOutput[] outputs = new StreamOutput[NUM_PARTITIONS];
+        try {
+            delegate.forEachGroup(state.groups, (keys, states) -> {
+                int partition = partition(keys);
+                try {
+                    StreamOutput out = outputs[partition];
+                    if (out == null) {
+                        out = newOutput(
+                            partitionFile(state.spillDirectory, partition),
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.APPEND);
+                        outputs[partition] = out;
+                    }
+                    writeEntry(out, keys, states);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                state.numEntriesPerPartition[partition]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            IOUtils.close(outputs);
+        }
+    }
+
+    private Path createSpillDirectory() throws IOException {
+        if (spillPath == null) {
+            return Files.createTempDirectory(SPILL_DIRECTORY_PREFIX);
+        }
+        return Files.createTempDirectory(spillPath, SPILL_DIRECTORY_PREFIX);
+    }
+
+    private static StreamOutput newOutput(Path file, OpenOption... options) throws IOException {
+        return new OutputStreamStreamOutput(new BufferedOutputStream(Files.newOutputStream(file, options)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeEntry(StreamOutput out, Object[] keys, Object[] states) throws IOException {
+        for (int i = 0; i < keyStreamers.length; i++) {
+            keyStreamers[i].writeValueTo(out, keys[i]);
+        }
+        for (int i = 0; i < stateStreamers.length; i++) {
+            stateStreamers[i].writeValueTo(out, states[i]);
+        }
+    }
+
+    private Iterable<Row> finish(State<G> state) {
+        if (state.spillDirectory == null) {
+            return delegate.groupsToRows(state.groups);
+        }
+        spill(state);
+        Path spillDirectory = state.spillDirectory;
+        int[] numEntriesPerPartition = state.numEntriesPerPartition;
+        state.groups = null;
+        // the partition files are kept until deleteSpillFiles is called, so that the result can be iterated again
+        return () -> new PartitionMergingIterator(spillDirectory, numEntriesPerPartition);
+    }
+
+    /**
+     * A spill file and the number of entries in it. {@code depth} is the number of times its groups have been
+     * re-partitioned, it's also used as hash seed so that each level distributes the keys differently.
+     */
+    private static final class Partition {
+
+        private final Path file;
+        private final int numEntries;
+        private final int depth;
+
+        Partition(Path file, int numEntries, int depth) {
+            this.file = file;
+            this.numEntries = numEntries;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Merges the spilled partitions lazily, one at a time: the states of the next partition are only read once all
+     * rows of the current partition have been emitted, and the memory of the current partition is released first.
+     */
+    private final class PartitionMergingIterator extends AbstractIterator<Row> {
+
+        private final Deque<Partition> pending = new ArrayDeque<>();
+        private long accountedBytesBefore;
+
+        @Nullable
+        private Iterator<Map.Entry<List<Object>, Object[]>> currentPartition;
+
+        PartitionMergingIterator(Path spillDirectory, int[] numEntriesPerPartition) {
+            for (int partition = 0; partition < NUM_PARTITIONS; partition++) {
+                if (numEntriesPerPartition[partition] > 0) {
+                    pending.add(new Partition(
+                        partitionFile(spillDirectory, partition), numEntriesPerPartition[partition], 0));
+                }
+            }
+        }
+
+        @Override
+        protected Row computeNext() {
+            while (currentPartition == null || currentPartition.hasNext() == false) {
+                if (currentPartition != null) {
+                    currentPartition = null;
+                    releaseMergedGroups();
+                }
+                Partition partition = pending.poll();
+                if (partition == null) {
+                    return endOfData();
+                }
+                accountedBytesBefore = ramAccountingContext.totalBytes();
+                try {
+                    Map<List<Object>, Object[]> statesByKey = mergePartition(partition, accountedBytesBefore);
+                    if (statesByKey == null) {
+                        releaseMergedGroups();
+                        List<Partition> partitions = repartition(partition);
+                        for (int i = partitions.size() - 1; i >= 0; i--) {
+                            pending.addFirst(partitions.get(i));
+                        }
+                    } else {
+                        currentPartition = statesByKey.entrySet().iterator();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            Map.Entry<List<Object>, Object[]> entry = currentPartition.next();
+            Object[] cells = new Object[delegate.numColumns()];
+            List<Object> keys = entry.getKey();
+            for (int i = 0; i < keys.size(); i++) {
+                cells[i] = keys.get(i);
+            }
+            delegate.finishStates(entry.getValue(), cells);
+            return new RowN(cells);
+        }
+
+        private void releaseMergedGroups() {
+            ramAccountingContext.releaseBytes(ramAccountingContext.totalBytes() - accountedBytesBefore);
+        }
+    }
+
+    /**
+     * @return the merged states by key or null if they'd exceed the memory limit and the partition must be split
+     */
+    @Nullable
+    private Map<List<Object>, Object[]> mergePartition(Partition partition, long accountedBytesBefore) throws IOException {
+        Map<List<Object>, Object[]> statesByKey = new HashMap<>();
+        try (CountingInputStream counting = new CountingInputStream(
+                 new BufferedInputStream(Files.newInputStream(partition.file)));
+             StreamInput in = new InputStreamStreamInput(counting)) {
+            for (int i = 0; i < partition.numEntries; i++) {
+                long bytesBefore = counting.getCount();
+                Object[] keys = readKeys(in);
+                Object[] states = readStates(in);
+                Object[] existingStates = statesByKey.putIfAbsent(Arrays.asList(keys), states);
+                if (existingStates == null) {
+                    // the serialized size is used as estimate for the size of the keys and states in memory
+                    ramAccountingContext.addBytes(
+                        RamAccountingContext.roundUp(counting.getCount() - bytesBefore + mergedEntryOverhead));
+                } else {
+                    delegate.reduceStates(existingStates, states);
+                }
+                if (partition.depth < MAX_REPARTITION_DEPTH &&
+                    exceedsMemoryLimit(ramAccountingContext.totalBytes() - accountedBytesBefore)) {
+                    return null;
+                }
+            }
+        }
+        return statesByKey;
+    }
+
+    /**
+     * Splits the entries of the partition into {@link #NUM_PARTITIONS} files without merging them.
+     * The files are overwritten if the result is iterated again.
+     */
+    private List<Partition> repartition(Partition partition) throws IOException {
+        int depth = partition.depth + 1;
+        int[] numEntriesPerPartition = new int[NUM_PARTITIONS];
+        StreamOutput[] outputs = new StreamOutput[NUM_PARTITIONS];
+        try (StreamInput in = new InputStreamStreamInput(new BufferedInputStream(Files.newInputStream(partition.file)))) {
+            for (int i = 0; i < partition.numEntries; i++) {
+                Object[] keys = readKeys(in);
+                Object[] states = readStates(in);
+                int subPartition = partition(keys, depth);
+                StreamOutput out = outputs[subPartition];
+                if (out == null) {
+                    out = newOutput(
+                        subPartitionFile(partition.file, subPartition),
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE);
+                    outputs[subPartition] = out;
+                }
+                writeEntry(out, keys, states);
+                numEntriesPerPartition[subPartition]++;
+            }
+        } finally {
+            IOUtils.close(outputs);
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Groups of {} exceed the memory limit, split them into {} partitions",
+                partition.file, NUM_PARTITIONS);
+        }
+        List<Partition> partitions = new ArrayList<>(NUM_PARTITIONS);
+        for (int subPartition = 0; subPartition < NUM_PARTITIONS; subPartition++) {
+            if (numEntriesPerPartition[subPartition] > 0) {
+                partitions.add(new Partition(
+                    subPartitionFile(partition.file, subPartition), numEntriesPerPartition[subPartition], depth));
+            }
+        }
+        return partitions;
+    }
+
+    private Object[] readKeys(StreamInput in) throws IOException {
+        Object[] keys = new Object[keyStreamers.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = keyStreamers[i].readValueFrom(in);
+        }
+        return keys;
+    }
+
+    private Object[] readStates(StreamInput in) throws IOException {
+        Object[] states = new Object[stateStreamers.length];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = stateStreamers[i].readValueFrom(in);
+        }
+        return states;
+    }
+
+    private static int partition(Object[] keys) {
+        return partition(keys, 0);
+    }
+
+    private static int partition(Object[] keys, int depth) {
+        return BitMixer.mix32(Arrays.hashCode(keys) + depth * 0x9E3779B9) & (NUM_PARTITIONS - 1);
+    }
+
+    private static Path partitionFile(Path spillDirectory, int partition) {
+        return spillDirectory.resolve("partition-" + partition);
+    }
+
+    private static Path subPartitionFile(Path partitionFile, int subPartition) {
+        return partitionFile.resolveSibling(partitionFile.getFileName() + "-" + subPartition);
+    }
+
+    private static void deleteSpillDirectory(Path spillDirectory) {
+        try {
+            IOUtils.rm(spillDirectory);
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't delete spill directory " + spillDirectory, e);
+        }
+    }
+}
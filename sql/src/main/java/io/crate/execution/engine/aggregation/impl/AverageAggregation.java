@@ -26,6 +26,7 @@ import io.crate.Streamer;
 import io.crate.breaker.RamAccountingContext;
 import io.crate.data.Input;
 import io.crate.execution.engine.aggregation.AggregationFunction;
+import io.crate.execution.engine.vector.VectorAggregator;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
 import io.crate.types.DataType;
@@ -202,6 +203,24 @@ public class AverageAggregation extends AggregationFunction<AverageAggregation.A
         return AverageStateType.INSTANCE;
     }
 
+    @Nullable
+    @Override
+    public VectorAggregator<AverageState> vectorAggregator() {
+        return (ramAccountingContext, state, values, batch) -> {
+            if (state != null) {
+                int[] selection = batch.selection();
+                for (int i = 0; i < batch.numSelected(); i++) {
+                    int position = selection[i];
+                    if (values.isNull(position) == false) {
+                        state.count++;
+                        state.sum += values.getDouble(position);
+                    }
+                }
+            }
+            return state;
+        };
+    }
+
     @Override
     public FunctionInfo info() {
         return info;
@@ -26,6 +26,8 @@ import io.crate.Streamer;
 import io.crate.breaker.RamAccountingContext;
 import io.crate.data.Input;
 import io.crate.execution.engine.aggregation.AggregationFunction;
+import io.crate.execution.engine.vector.VectorAggregator;
+import io.crate.execution.engine.vector.VectorAggregators;
 import io.crate.expression.symbol.Function;
 import io.crate.expression.symbol.Literal;
 import io.crate.expression.symbol.Symbol;
@@ -153,6 +155,17 @@ public class CountAggregation extends AggregationFunction<CountAggregation.LongS
         return LongStateType.INSTANCE;
     }
 
+    @Nullable
+    @Override
+    public VectorAggregator<LongState> vectorAggregator() {
+        return (ramAccountingContext, state, values, batch) -> {
+            if (values == null) {
+                return state.add(batch.numSelected());
+            }
+            return state.add(VectorAggregators.countNotNull(values, batch));
+        };
+    }
+
     @Override
     public LongState reduce(RamAccountingContext ramAccountingContext, LongState state1, LongState state2) {
         return state1.merge(state2);
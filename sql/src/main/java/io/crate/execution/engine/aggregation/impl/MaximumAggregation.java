@@ -29,6 +29,9 @@ import io.crate.data.Input;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
 import io.crate.execution.engine.aggregation.AggregationFunction;
+import io.crate.execution.engine.vector.VectorAggregator;
+import io.crate.execution.engine.vector.VectorAggregators;
+import io.crate.execution.engine.vector.VectorExpressions;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import io.crate.types.FixedWidthType;
@@ -88,6 +91,25 @@ public abstract class MaximumAggregation extends AggregationFunction<Comparable,
             }
             return state1;
         }
+
+        @Nullable
+        @Override
+        public VectorAggregator<Comparable> vectorAggregator() {
+            DataType type = partialType();
+            if (VectorExpressions.isLongVectorType(type)) {
+                return (ramAccountingContext, state, values, batch) -> {
+                    Long value = VectorAggregators.extremeLong(values, batch, true);
+                    return value == null ? state : reduce(ramAccountingContext, state, (Comparable) type.value(value));
+                };
+            }
+            if (VectorExpressions.isDoubleVectorType(type)) {
+                return (ramAccountingContext, state, values, batch) -> {
+                    Double value = VectorAggregators.extremeDouble(values, batch, true);
+                    return value == null ? state : reduce(ramAccountingContext, state, (Comparable) type.value(value));
+                };
+            }
+            return null;
+        }
     }
 
     private static class VariableMaximumAggregation extends MaximumAggregation {
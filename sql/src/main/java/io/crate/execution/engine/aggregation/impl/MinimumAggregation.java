@@ -30,6 +30,9 @@ import io.crate.exceptions.CircuitBreakingException;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
 import io.crate.execution.engine.aggregation.AggregationFunction;
+import io.crate.execution.engine.vector.VectorAggregator;
+import io.crate.execution.engine.vector.VectorAggregators;
+import io.crate.execution.engine.vector.VectorExpressions;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import io.crate.types.FixedWidthType;
@@ -124,6 +127,25 @@ public abstract class MinimumAggregation extends AggregationFunction<Comparable,
             }
             return state1;
         }
+
+        @Nullable
+        @Override
+        public VectorAggregator<Comparable> vectorAggregator() {
+            DataType type = partialType();
+            if (VectorExpressions.isLongVectorType(type)) {
+                return (ramAccountingContext, state, values, batch) -> {
+                    Long value = VectorAggregators.extremeLong(values, batch, false);
+                    return value == null ? state : reduce(ramAccountingContext, state, (Comparable) type.value(value));
+                };
+            }
+            if (VectorExpressions.isDoubleVectorType(type)) {
+                return (ramAccountingContext, state, values, batch) -> {
+                    Double value = VectorAggregators.extremeDouble(values, batch, false);
+                    return value == null ? state : reduce(ramAccountingContext, state, (Comparable) type.value(value));
+                };
+            }
+            return null;
+        }
     }
 
     MinimumAggregation(FunctionInfo info) {
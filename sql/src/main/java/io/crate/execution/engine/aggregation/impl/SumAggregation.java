@@ -25,6 +25,8 @@ import com.google.common.annotations.VisibleForTesting;
 import io.crate.breaker.RamAccountingContext;
 import io.crate.data.Input;
 import io.crate.execution.engine.aggregation.AggregationFunction;
+import io.crate.execution.engine.vector.VectorAggregator;
+import io.crate.execution.engine.vector.VectorAggregators;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
 import io.crate.types.DataType;
@@ -122,6 +124,24 @@ public class SumAggregation<T extends Number> extends AggregationFunction<T, T>
         return info.returnType();
     }
 
+    /**
+     * Float sums aren't vectorized, they would be computed with a different precision.
+     */
+    @Nullable
+    @Override
+    @SuppressWarnings("unchecked")
+    public VectorAggregator<T> vectorAggregator() {
+        if (returnType == DataTypes.LONG) {
+            return (ramAccountingContext, state, values, batch) ->
+                (T) VectorAggregators.sumLongs((Long) state, values, batch);
+        }
+        if (returnType == DataTypes.DOUBLE) {
+            return (ramAccountingContext, state, values, batch) ->
+                (T) VectorAggregators.sumDoubles((Double) state, values, batch);
+        }
+        return null;
+    }
+
     @Override
     public FunctionInfo info() {
         return info;
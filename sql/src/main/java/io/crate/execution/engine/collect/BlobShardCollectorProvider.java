@@ -29,6 +29,7 @@ import io.crate.execution.TransportActionProvider;
 import io.crate.execution.dsl.phases.RoutedCollectPhase;
 import io.crate.execution.engine.collect.collectors.BlobOrderedDocCollector;
 import io.crate.execution.engine.collect.collectors.OrderedDocCollector;
+import io.crate.execution.engine.export.OutputS3Limits;
 import io.crate.execution.jobs.NodeJobsCounter;
 import io.crate.execution.jobs.SharedShardContext;
 import io.crate.expression.InputFactory;
@@ -50,12 +51,14 @@ public class BlobShardCollectorProvider extends ShardCollectorProvider {
     public BlobShardCollectorProvider(BlobShard blobShard,
                                       ClusterService clusterService,
                                       NodeJobsCounter nodeJobsCounter,
+                                      OutputS3Limits s3Limits,
                                       Functions functions,
                                       ThreadPool threadPool,
                                       Settings settings,
                                       TransportActionProvider transportActionProvider,
                                       BigArrays bigArrays) {
-        super(clusterService, nodeJobsCounter, BlobShardReferenceResolver.create(blobShard, clusterService.localNode()),
+        super(clusterService, nodeJobsCounter, s3Limits,
+            BlobShardReferenceResolver.create(blobShard, clusterService.localNode()),
             functions,
             threadPool, settings, transportActionProvider, blobShard.indexShard(), bigArrays);
         inputFactory = new InputFactory(functions);
@@ -23,18 +23,24 @@ package io.crate.execution.engine.collect;
 
 import io.crate.execution.TransportActionProvider;
 import io.crate.execution.dsl.phases.RoutedCollectPhase;
+import io.crate.execution.dsl.projection.Projection;
 import io.crate.execution.engine.collect.collectors.CollectorFieldsVisitor;
 import io.crate.execution.engine.collect.collectors.CrateDocCollectorBuilder;
+import io.crate.execution.engine.collect.collectors.LeafPartitioner;
 import io.crate.execution.engine.collect.collectors.LuceneOrderedDocCollector;
 import io.crate.execution.engine.collect.collectors.OptimizeQueryForSearchAfter;
 import io.crate.execution.engine.collect.collectors.OrderedDocCollector;
+import io.crate.execution.engine.export.OutputS3Limits;
 import io.crate.execution.engine.sort.LuceneSortGenerator;
+import io.crate.execution.engine.vector.ColumnBatchAggregation;
+import io.crate.execution.engine.vector.VectorizedAggregationBatchIterator;
 import io.crate.execution.jobs.NodeJobsCounter;
 import io.crate.execution.jobs.SharedShardContext;
 import io.crate.expression.InputFactory;
 import io.crate.expression.reference.doc.lucene.CollectorContext;
 import io.crate.expression.reference.doc.lucene.LuceneCollectorExpression;
 import io.crate.expression.reference.doc.lucene.LuceneReferenceResolver;
+import io.crate.expression.symbol.Symbol;
 import io.crate.expression.symbol.Symbols;
 import io.crate.lucene.FieldTypeLookup;
 import io.crate.lucene.LuceneQueryBuilder;
@@ -43,6 +49,8 @@ import io.crate.metadata.Schemas;
 import io.crate.metadata.doc.DocSysColumns;
 import io.crate.metadata.shard.ShardReferenceResolver;
 import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.LeafReaderContext;
+import org.elasticsearch.Version;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
@@ -56,6 +64,10 @@ import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.threadpool.ThreadPool;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -63,27 +75,38 @@ public class LuceneShardCollectorProvider extends ShardCollectorProvider {
 
     private static final Logger LOGGER = Loggers.getLogger(LuceneShardCollectorProvider.class);
 
+    /**
+     * Shards with less documents than this per partition aren't split for concurrent collection.
+     */
+    private static final long MIN_DOCS_PER_PARTITION = 100_000L;
+
     private final Supplier<String> localNodeId;
     private final LuceneQueryBuilder luceneQueryBuilder;
     private final IndexShard indexShard;
     private final DocInputFactory docInputFactory;
     private final FieldTypeLookup fieldTypeLookup;
+    private final Functions functions;
+    private final BigArrays bigArrays;
 
     public LuceneShardCollectorProvider(Schemas schemas,
                                         LuceneQueryBuilder luceneQueryBuilder,
                                         ClusterService clusterService,
                                         NodeJobsCounter nodeJobsCounter,
+                                        OutputS3Limits s3Limits,
                                         Functions functions,
                                         ThreadPool threadPool,
                                         Settings settings,
                                         TransportActionProvider transportActionProvider,
                                         IndexShard indexShard,
                                         BigArrays bigArrays) {
-        super(clusterService, nodeJobsCounter, ShardReferenceResolver.create(clusterService, schemas, indexShard),
+        super(clusterService, nodeJobsCounter, s3Limits,
+            ShardReferenceResolver.create(clusterService, schemas, indexShard),
             functions, threadPool, settings, transportActionProvider, indexShard, bigArrays);
         this.luceneQueryBuilder = luceneQueryBuilder;
         this.indexShard = indexShard;
         this.localNodeId = () -> clusterService.localNode().getId();
+        this.functions = functions;
+        this.bigArrays = bigArrays;
         fieldTypeLookup = indexShard.mapperService()::fullName;
         this.docInputFactory = new DocInputFactory(functions,
             fieldTypeLookup,
@@ -94,6 +117,19 @@ public class LuceneShardCollectorProvider extends ShardCollectorProvider {
     protected CrateCollector.Builder getBuilder(RoutedCollectPhase collectPhase,
                                                 boolean requiresScroll,
                                                 CollectTask collectTask) {
+        return getBuilders(collectPhase, requiresScroll, collectTask, 1).get(0);
+    }
+
+    /**
+     * Splits the segments of the shard into up to {@code maxConcurrency} partitions, see {@link LeafPartitioner}.
+     * The collectors share the searcher and the query, but each has its own expressions and {@link CollectorContext}
+     * as these are stateful.
+     */
+    @Override
+    protected List<CrateCollector.Builder> getBuilders(RoutedCollectPhase collectPhase,
+                                                       boolean requiresScroll,
+                                                       CollectTask collectTask,
+                                                       int maxConcurrency) {
         ShardId shardId = indexShard.shardId();
         SharedShardContext sharedShardContext = collectTask.sharedShardContexts().getOrCreateContext(shardId);
         Engine.Searcher searcher = sharedShardContext.acquireSearcher();
@@ -108,19 +144,94 @@ public class LuceneShardCollectorProvider extends ShardCollectorProvider {
                 sharedShardContext.indexService().cache()
             );
             collectTask.addSearcher(sharedShardContext.readerId(), searcher);
-            InputFactory.Context<? extends LuceneCollectorExpression<?>> docCtx =
-                docInputFactory.extractImplementations(collectPhase);
-
-            return new CrateDocCollectorBuilder(
-                searcher.searcher(),
-                queryContext.query(),
-                queryContext.minScore(),
-                Symbols.containsColumn(collectPhase.toCollect(), DocSysColumns.SCORE),
-                getCollectorContext(sharedShardContext.readerId(), docCtx, queryShardContext::getForField),
-                collectTask.queryPhaseRamAccountingContext(),
-                docCtx.topLevelInputs(),
-                docCtx.expressions()
+
+            List<List<LeafReaderContext>> partitions = LeafPartitioner.partition(
+                searcher.searcher().getTopReaderContext().leaves(), maxConcurrency, MIN_DOCS_PER_PARTITION);
+            if (partitions.size() > 1 && LOGGER.isDebugEnabled()) {
+                LOGGER.debug("[{}] collecting {} segment partitions concurrently", shardId, partitions.size());
+            }
+            List<CrateCollector.Builder> builders = new ArrayList<>(partitions.size());
+            boolean doScores = Symbols.containsColumn(collectPhase.toCollect(), DocSysColumns.SCORE);
+            for (List<LeafReaderContext> leaves : partitions) {
+                InputFactory.Context<? extends LuceneCollectorExpression<?>> docCtx =
+                    docInputFactory.extractImplementations(collectPhase);
+                builders.add(new CrateDocCollectorBuilder(
+                    searcher.searcher(),
+                    queryContext.query(),
+                    queryContext.minScore(),
+                    doScores,
+                    getCollectorContext(sharedShardContext.readerId(), docCtx, queryShardContext::getForField),
+                    collectTask.queryPhaseRamAccountingContext(),
+                    docCtx.topLevelInputs(),
+                    docCtx.expressions(),
+                    leaves
+                ));
+            }
+            return builders;
+        } catch (Throwable t) {
+            searcher.close();
+            throw t;
+        }
+    }
+
+    /**
+     * Uses a {@link VectorizedAggregationBatchIterator} per segment partition if the shard projections are a
+     * global or grouped aggregation supported by {@link ColumnBatchAggregation}.
+     */
+    @Nullable
+    @Override
+    protected List<CrateCollector.Builder> getVectorizedBuilders(RoutedCollectPhase collectPhase,
+                                                                 Collection<? extends Projection> shardProjections,
+                                                                 CollectTask collectTask,
+                                                                 int maxConcurrency) {
+        List<Symbol> toCollect = collectPhase.toCollect();
+        if (ColumnBatchAggregation.tryCreate(toCollect, shardProjections, functions, fieldTypeLookup) == null) {
+            return null;
+        }
+        ShardId shardId = indexShard.shardId();
+        SharedShardContext sharedShardContext = collectTask.sharedShardContexts().getOrCreateContext(shardId);
+        Engine.Searcher searcher = sharedShardContext.acquireSearcher();
+        try {
+            QueryShardContext queryShardContext = sharedShardContext.indexService().newQueryShardContext(
+                shardId.getId(), searcher.reader(), System::currentTimeMillis, null);
+            LuceneQueryBuilder.Context queryContext = luceneQueryBuilder.convert(
+                collectPhase.where(),
+                sharedShardContext.indexShard().mapperService(),
+                queryShardContext,
+                sharedShardContext.indexService().cache()
             );
+            if (queryContext.minScore() != null) {
+                searcher.close();
+                return null;
+            }
+            collectTask.addSearcher(sharedShardContext.readerId(), searcher);
+
+            List<List<LeafReaderContext>> partitions = LeafPartitioner.partition(
+                searcher.searcher().getTopReaderContext().leaves(), maxConcurrency, MIN_DOCS_PER_PARTITION);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("[{}] collecting vectorized aggregation with {} segment partitions", shardId, partitions.size());
+            }
+            Version indexVersionCreated = indexShard.indexSettings().getIndexVersionCreated();
+            List<CrateCollector.Builder> builders = new ArrayList<>(partitions.size());
+            for (List<LeafReaderContext> leaves : partitions) {
+                // the aggregation holds the state of its expressions, each partition needs its own
+                ColumnBatchAggregation aggregation =
+                    ColumnBatchAggregation.tryCreate(toCollect, shardProjections, functions, fieldTypeLookup);
+                assert aggregation != null : "aggregation must be supported as it has been checked before";
+                builders.add(consumer -> BatchIteratorCollectorBridge.newInstance(
+                    new VectorizedAggregationBatchIterator(
+                        searcher.searcher(),
+                        queryContext.query(),
+                        leaves,
+                        aggregation,
+                        collectTask.queryPhaseRamAccountingContext(),
+                        indexVersionCreated,
+                        bigArrays
+                    ),
+                    consumer
+                ));
+            }
+            return builders;
         } catch (Throwable t) {
             searcher.close();
             throw t;
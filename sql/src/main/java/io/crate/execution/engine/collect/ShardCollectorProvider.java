@@ -31,6 +31,7 @@ import io.crate.execution.dsl.phases.RoutedCollectPhase;
 import io.crate.execution.dsl.projection.Projection;
 import io.crate.execution.dsl.projection.Projections;
 import io.crate.execution.engine.collect.collectors.OrderedDocCollector;
+import io.crate.execution.engine.export.OutputS3Limits;
 import io.crate.execution.engine.pipeline.ProjectingRowConsumer;
 import io.crate.execution.engine.pipeline.ProjectionToProjectorVisitor;
 import io.crate.execution.engine.pipeline.ProjectorFactory;
@@ -49,7 +50,9 @@ import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 public abstract class ShardCollectorProvider {
@@ -60,6 +63,7 @@ public abstract class ShardCollectorProvider {
 
     ShardCollectorProvider(ClusterService clusterService,
                            NodeJobsCounter nodeJobsCounter,
+                           OutputS3Limits s3Limits,
                            ReferenceResolver<NestableInput<?>> shardResolver,
                            Functions functions,
                            ThreadPool threadPool,
@@ -77,6 +81,7 @@ public abstract class ShardCollectorProvider {
         projectorFactory = new ProjectionToProjectorVisitor(
             clusterService,
             nodeJobsCounter,
+            s3Limits,
             functions,
             threadPool,
             settings,
@@ -87,7 +92,8 @@ public abstract class ShardCollectorProvider {
             t -> null,
             indexShard.indexSettings().getIndexVersionCreated(),
             bigArrays,
-            indexShard.shardId()
+            indexShard.shardId(),
+            indexShard.shardPath().getRootDataPath()
         );
     }
 
@@ -122,23 +128,44 @@ public abstract class ShardCollectorProvider {
     public CrateCollector.Builder getCollectorBuilder(RoutedCollectPhase collectPhase,
                                                       boolean requiresScroll,
                                                       CollectTask collectTask) throws Exception {
+        return getCollectorBuilders(collectPhase, requiresScroll, collectTask, 1).get(0);
+    }
+
+    /**
+     * Like {@link #getCollectorBuilder(RoutedCollectPhase, boolean, CollectTask)} but may split the shard into up to
+     * {@code maxConcurrency} parts which are collected by separate collectors. Each collector gets its own
+     * shard-level projectors, so these must be able to work on a part of the shard.
+     */
+    public List<CrateCollector.Builder> getCollectorBuilders(RoutedCollectPhase collectPhase,
+                                                             boolean requiresScroll,
+                                                             CollectTask collectTask,
+                                                             int maxConcurrency) throws Exception {
         assert collectPhase.orderBy() ==
                null : "getDocCollector shouldn't be called if there is an orderBy on the collectPhase";
         RoutedCollectPhase normalizedCollectNode = collectPhase.normalize(shardNormalizer, null);
 
-        final CrateCollector.Builder builder;
+        Collection<? extends Projection> shardProjections = Projections.shardProjections(collectPhase.projections());
+        final List<CrateCollector.Builder> builders;
         if (!QueryClause.canMatch(normalizedCollectNode.where())) {
-            builder = RowsCollector.emptyBuilder();
+            builders = Collections.singletonList(RowsCollector.emptyBuilder());
         } else {
             assert normalizedCollectNode.maxRowGranularity() == RowGranularity.DOC : "granularity must be DOC";
-            builder = getBuilder(normalizedCollectNode, requiresScroll, collectTask);
+            if (!shardProjections.isEmpty()) {
+                List<CrateCollector.Builder> vectorizedBuilders =
+                    getVectorizedBuilders(normalizedCollectNode, shardProjections, collectTask, maxConcurrency);
+                if (vectorizedBuilders != null) {
+                    return vectorizedBuilders;
+                }
+            }
+            builders = getBuilders(normalizedCollectNode, requiresScroll, collectTask, maxConcurrency);
         }
 
-        Collection<? extends Projection> shardProjections = Projections.shardProjections(collectPhase.projections());
         if (shardProjections.isEmpty()) {
-            return builder;
-        } else {
-            return new CrateCollector.Builder() {
+            return builders;
+        }
+        List<CrateCollector.Builder> projectingBuilders = new ArrayList<>(builders.size());
+        for (CrateCollector.Builder builder : builders) {
+            projectingBuilders.add(new CrateCollector.Builder() {
                 @Override
                 public CrateCollector build(RowConsumer rowConsumer) {
                     return builder.build(rowConsumer);
@@ -154,8 +181,34 @@ public abstract class ShardCollectorProvider {
                         projectorFactory
                     );
                 }
-            };
+            });
         }
+        return projectingBuilders;
+    }
+
+    /**
+     * Create the builders for the collectors of the shard, by default a single one.
+     * Implementations may return up to {@code maxConcurrency} builders which each collect a part of the shard.
+     */
+    protected List<CrateCollector.Builder> getBuilders(RoutedCollectPhase collectPhase,
+                                                       boolean requiresScroll,
+                                                       CollectTask collectTask,
+                                                       int maxConcurrency) {
+        return Collections.singletonList(getBuilder(collectPhase, requiresScroll, collectTask));
+    }
+
+    /**
+     * Create builders for collectors which evaluate the {@code shardProjections} themselves on batches of columns
+     * instead of rows, or null if the projections aren't supported. By default vectorized execution isn't supported.
+     * <p>
+     * The returned builders must not be wrapped with the shard-level projectors.
+     */
+    @Nullable
+    protected List<CrateCollector.Builder> getVectorizedBuilders(RoutedCollectPhase collectPhase,
+                                                                 Collection<? extends Projection> shardProjections,
+                                                                 CollectTask collectTask,
+                                                                 int maxConcurrency) {
+        return null;
     }
 
     protected abstract CrateCollector.Builder getBuilder(RoutedCollectPhase collectPhase,
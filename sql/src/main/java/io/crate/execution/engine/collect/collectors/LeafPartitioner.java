@@ -0,0 +1,82 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.collectors;
+
+import org.apache.lucene.index.LeafReaderContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Splits the leaves (segments) of a shard into partitions which can be collected concurrently.
+ * <p>
+ * The leaves are assigned to the partitions by their number of documents, largest first, each to the partition
+ * with the fewest documents so far, so that the partitions are roughly of the same size.
+ */
+public final class LeafPartitioner {
+
+    private LeafPartitioner() {
+    }
+
+    /**
+     * @param maxPartitions upper bound for the number of partitions
+     * @param minDocsPerPartition a new partition is only created for this many documents, to avoid the overhead of
+     *                            concurrent collection on small shards
+     * @return at least one partition, no partition is empty
+     */
+    public static List<List<LeafReaderContext>> partition(List<LeafReaderContext> leaves,
+                                                          int maxPartitions,
+                                                          long minDocsPerPartition) {
+        long numDocs = 0;
+        for (LeafReaderContext leaf : leaves) {
+            numDocs += leaf.reader().numDocs();
+        }
+        int numPartitions = (int) Math.min(
+            Math.min(maxPartitions, leaves.size()),
+            numDocs / Math.max(1, minDocsPerPartition));
+        if (numPartitions <= 1) {
+            return Collections.singletonList(leaves);
+        }
+        List<LeafReaderContext> sortedLeaves = new ArrayList<>(leaves);
+        sortedLeaves.sort(Comparator.comparingInt((LeafReaderContext leaf) -> leaf.reader().numDocs()).reversed());
+
+        List<List<LeafReaderContext>> partitions = new ArrayList<>(numPartitions);
+        long[] docsPerPartition = new long[numPartitions];
+        for (int i = 0; i < numPartitions; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (LeafReaderContext leaf : sortedLeaves) {
+            int smallest = 0;
+            for (int i = 1; i < numPartitions; i++) {
+                if (docsPerPartition[i] < docsPerPartition[smallest]) {
+                    smallest = i;
+                }
+            }
+            partitions.get(smallest).add(leaf);
+            docsPerPartition[smallest] += leaf.reader().numDocs();
+        }
+        return partitions;
+    }
+}
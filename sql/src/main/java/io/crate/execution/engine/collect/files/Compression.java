@@ -0,0 +1,137 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.files;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The compression formats which can be read by COPY FROM.
+ * <p>
+ * With {@link #AUTO} the compression is detected per file by its extension or by the magic bytes at its start.
+ */
+enum Compression {
+
+    GZIP(new byte[]{0x1f, (byte) 0x8b}, ".gz", ".gzip") {
+        @Override
+        InputStream decompress(InputStream in) throws IOException {
+            return new GZIPInputStream(in);
+        }
+    },
+    LZ4(new byte[]{0x04, 0x22, 0x4d, 0x18}, ".lz4") {
+        @Override
+        InputStream decompress(InputStream in) throws IOException {
+            return new LZ4FrameInputStream(in);
+        }
+    };
+
+    /**
+     * The compression name to detect the compression of each file, instead of reading all of them uncompressed.
+     */
+    static final String AUTO = "auto";
+
+    private static final int MAX_MAGIC_LENGTH = 4;
+
+    private final byte[] magic;
+    private final String[] extensions;
+
+    Compression(byte[] magic, String... extensions) {
+        this.magic = magic;
+        this.extensions = extensions;
+    }
+
+    abstract InputStream decompress(InputStream in) throws IOException;
+
+    /**
+     * @return the compression with the given name or null if the name is null or unknown
+     */
+    @Nullable
+    static Compression of(@Nullable String name) {
+        if (name == null) {
+            return null;
+        }
+        for (Compression compression : values()) {
+            if (compression.name().equalsIgnoreCase(name)) {
+                return compression;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    static Compression fromExtension(URI uri) {
+        String path = uri.toString().toLowerCase(Locale.ENGLISH);
+        for (Compression compression : values()) {
+            for (String extension : compression.extensions) {
+                if (path.endsWith(extension)) {
+                    return compression;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Detects the compression by the first bytes of the stream.
+     * The stream must support {@link InputStream#mark(int)}, it is reset to its current position.
+     */
+    @Nullable
+    static Compression fromMagicBytes(InputStream in) throws IOException {
+        assert in.markSupported() : "stream must support mark/reset";
+        byte[] head = new byte[MAX_MAGIC_LENGTH];
+        in.mark(MAX_MAGIC_LENGTH);
+        int length = 0;
+        try {
+            int read;
+            while (length < head.length && (read = in.read(head, length, head.length - length)) > 0) {
+                length += read;
+            }
+        } finally {
+            in.reset();
+        }
+        for (Compression compression : values()) {
+            if (startsWith(head, length, compression.magic)) {
+                return compression;
+            }
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] head, int length, byte[] magic) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (head[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -33,5 +33,7 @@ public class FileCollectModule extends AbstractModule {
 
         binder.addBinding(LocalFsFileInputFactory.NAME).to(LocalFsFileInputFactory.class).asEagerSingleton();
         binder.addBinding(S3FileInputFactory.NAME).to(S3FileInputFactory.class).asEagerSingleton();
+
+        bind(StdinStreams.class).asEagerSingleton();
     }
 }
@@ -21,6 +21,8 @@
 
 package io.crate.execution.engine.collect.files;
 
+import com.google.common.io.ByteStreams;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -43,5 +45,24 @@ public interface FileInput {
 
     InputStream getStream(URI uri) throws IOException;
 
+    /**
+     * @return the size of the file in bytes or -1 if it is unknown, in which case the file is never split into ranges.
+     */
+    default long size(URI uri) throws IOException {
+        return -1L;
+    }
+
+    /**
+     * Returns a stream of the file which starts at the given byte offset.
+     * This is only used for files with a known {@link #size(URI)}.
+     */
+    default InputStream getStream(URI uri, long offset) throws IOException {
+        InputStream stream = getStream(uri);
+        if (stream != null) {
+            ByteStreams.skipFully(stream, offset);
+        }
+        return stream;
+    }
+
     boolean sharedStorageDefault();
 }
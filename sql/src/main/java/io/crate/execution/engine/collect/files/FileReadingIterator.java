@@ -21,6 +21,7 @@
 
 package io.crate.execution.engine.collect.files;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
 import io.crate.concurrent.CompletableFutures;
@@ -37,6 +38,7 @@ import org.elasticsearch.common.logging.Loggers;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
@@ -57,19 +59,35 @@ import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.GZIPInputStream;
 
 import static io.crate.exceptions.Exceptions.rethrowUnchecked;
 
+/**
+ * Reads the lines of the given files.
+ *
+ * If there are several readers (one per node) and the files are on a shared storage, each file is either read entirely
+ * by one of the readers or, if it is large and uncompressed, split into one byte range per reader.
+ *
+ * Files are decompressed using the given compression. With the compression {@code auto}, it is detected per file by
+ * the file extension or the magic bytes at the start of the file, without compression all files are read as they are.
+ */
 public class FileReadingIterator implements BatchIterator<Row> {
 
     private static final Logger LOGGER = Loggers.getLogger(FileReadingIterator.class);
     public static final int MAX_SOCKET_TIMEOUT_RETRIES = 5;
+
+    /**
+     * Files are only split into ranges if every reader gets at least this many bytes.
+     */
+    static final long MIN_BYTES_PER_RANGE = 1024 * 1024;
     private final Map<String, FileInputFactory> fileInputFactories;
     private final Boolean shared;
     private final int numReaders;
     private final int readerNumber;
-    private final boolean compressed;
+    @Nullable
+    private final Compression compression;
+    private final boolean detectCompression;
+    private final long minBytesPerRange;
 
     private static final Pattern HAS_GLOBS_PATTERN = Pattern.compile("(.*)[^\\\\]\\*.*");
     private static final Predicate<URI> MATCH_ALL_PREDICATE = (URI input) -> true;
@@ -81,8 +99,12 @@ public class FileReadingIterator implements BatchIterator<Row> {
     private Tuple<FileInput, UriWithGlob> currentInput = null;
     private Iterator<URI> currentInputIterator = null;
     private URI currentUri;
+    @Nullable
+    private Compression currentCompression;
     private BufferedReader currentReader = null;
     private long currentLineNumber;
+    private long currentRangeStart;
+    private long currentRangeEnd;
     private final Row row;
     private LineProcessor lineProcessor;
 
@@ -94,8 +116,11 @@ public class FileReadingIterator implements BatchIterator<Row> {
                                 Boolean shared,
                                 int numReaders,
                                 int readerNumber,
-                                FileUriCollectPhase.InputFormat inputFormat) {
-        this.compressed = compression != null && compression.equalsIgnoreCase("gzip");
+                                FileUriCollectPhase.InputFormat inputFormat,
+                                long minBytesPerRange) {
+        this.minBytesPerRange = minBytesPerRange;
+        this.compression = Compression.of(compression);
+        this.detectCompression = Compression.AUTO.equalsIgnoreCase(compression);
         this.row = new InputRow(inputs) {
             @Override
             public Object get(int index) {
@@ -137,8 +162,23 @@ public class FileReadingIterator implements BatchIterator<Row> {
                                                  int numReaders,
                                                  int readerNumber,
                                                  FileUriCollectPhase.InputFormat inputFormat) {
+        return newInstance(fileUris, inputs, collectorExpressions, compression, fileInputFactories, shared,
+            numReaders, readerNumber, inputFormat, MIN_BYTES_PER_RANGE);
+    }
+
+    @VisibleForTesting
+    static BatchIterator<Row> newInstance(Collection<String> fileUris,
+                                          List<Input<?>> inputs,
+                                          Iterable<LineCollectorExpression<?>> collectorExpressions,
+                                          String compression,
+                                          Map<String, FileInputFactory> fileInputFactories,
+                                          Boolean shared,
+                                          int numReaders,
+                                          int readerNumber,
+                                          FileUriCollectPhase.InputFormat inputFormat,
+                                          long minBytesPerRange) {
         return new CloseAssertingBatchIterator<>(new FileReadingIterator(fileUris, inputs, collectorExpressions,
-            compression, fileInputFactories, shared, numReaders, readerNumber, inputFormat));
+            compression, fileInputFactories, shared, numReaders, readerNumber, inputFormat, minBytesPerRange));
     }
 
     private void initCollectorState() {
@@ -191,7 +231,31 @@ public class FileReadingIterator implements BatchIterator<Row> {
 
     private void advanceToNextUri(FileInput fileInput) throws IOException {
         currentUri = currentInputIterator.next();
-        initCurrentReader(fileInput, currentUri);
+        currentRangeStart = 0L;
+        currentRangeEnd = -1L;
+        Compression fileCompression = detectCompression ? Compression.fromExtension(currentUri) : compression;
+        // the stream of the start of the file, if it had to be opened to detect the compression it is read from
+        InputStream head = null;
+        if (splitFiles(fileInput)) {
+            long size = fileInput.size(currentUri);
+            boolean split = size >= numReaders * minBytesPerRange && fileCompression == null;
+            if (split && detectCompression) {
+                head = openHead(fileInput, currentUri);
+                fileCompression = head == null ? null : Compression.fromMagicBytes(head);
+                split = fileCompression == null;
+            }
+            if (split) {
+                currentRangeStart = size * readerNumber / numReaders;
+                currentRangeEnd = size * (readerNumber + 1) / numReaders;
+            } else if (isAssignedToThisReader(currentUri) == false) {
+                if (head != null) {
+                    head.close();
+                }
+                return;
+            }
+        }
+        currentCompression = fileCompression;
+        initCurrentReader(fileInput, currentUri, fileCompression, head);
     }
 
     private void advanceToNextFileInput() throws IOException {
@@ -207,12 +271,46 @@ public class FileReadingIterator implements BatchIterator<Row> {
         }
     }
 
-    private void initCurrentReader(FileInput fileInput, URI uri) throws IOException {
-        InputStream stream = fileInput.getStream(uri);
+    /**
+     * @param head the stream of the start of the file if it was already opened, which is then read from instead of
+     *             opening another stream.
+     */
+    private void initCurrentReader(FileInput fileInput,
+                                   URI uri,
+                                   @Nullable Compression fileCompression,
+                                   @Nullable InputStream head) throws IOException {
+        InputStream stream;
+        InputStream headerStream = null;
+        if (currentRangeEnd < 0) {
+            stream = head == null ? fileInput.getStream(uri) : head;
+            if (stream != null && head == null && fileCompression == null && detectCompression) {
+                stream = new BufferedInputStream(stream);
+                fileCompression = Compression.fromMagicBytes(stream);
+                currentCompression = fileCompression;
+            }
+        } else if (currentRangeStart == 0) {
+            stream = head == null
+                ? LineRangeInputStream.open(fileInput, uri, 0, currentRangeEnd)
+                : LineRangeInputStream.fromStart(head, currentRangeEnd);
+        } else {
+            stream = LineRangeInputStream.open(fileInput, uri, currentRangeStart, currentRangeEnd);
+            if (stream != null && LineParser.hasHeader(inputFormat, uri)) {
+                // the header is only contained in the first range of a file
+                headerStream = head == null ? fileInput.getStream(uri) : head;
+            } else if (head != null) {
+                head.close();
+            }
+        }
         if (stream != null) {
-            currentReader = createBufferedReader(stream);
+            currentReader = createBufferedReader(stream, fileCompression);
             currentLineNumber = 0;
-            lineProcessor.readFirstLine(currentUri, inputFormat, currentReader);
+            if (headerStream != null) {
+                try (BufferedReader headerReader = createBufferedReader(headerStream, null)) {
+                    lineProcessor.readFirstLine(currentUri, inputFormat, headerReader);
+                }
+            } else {
+                lineProcessor.readFirstLine(currentUri, inputFormat, currentReader);
+            }
         }
     }
 
@@ -248,7 +346,8 @@ public class FileReadingIterator implements BatchIterator<Row> {
             } else {
                 long startLine = currentLineNumber + 1;
                 closeCurrentReader();
-                initCurrentReader(currentInput.v1(), currentUri);
+                // the compression is known by now, the stream is reopened at the start of the file or range
+                initCurrentReader(currentInput.v1(), currentUri, currentCompression, null);
                 return getLine(currentReader, startLine, retry + 1);
             }
         } catch (Exception e) {
@@ -272,6 +371,7 @@ public class FileReadingIterator implements BatchIterator<Row> {
         currentInputIterator = null;
         currentInput = null;
         currentUri = null;
+        currentCompression = null;
     }
 
     @Override
@@ -366,15 +466,21 @@ public class FileReadingIterator implements BatchIterator<Row> {
         return new URLFileInput(fileUri);
     }
 
-    private BufferedReader createBufferedReader(InputStream inputStream) throws IOException {
-        BufferedReader reader;
-        if (compressed) {
-            reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(inputStream),
-                StandardCharsets.UTF_8));
-        } else {
-            reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    private static BufferedReader createBufferedReader(InputStream inputStream,
+                                                       @Nullable Compression fileCompression) throws IOException {
+        if (fileCompression != null) {
+            inputStream = fileCompression.decompress(inputStream);
         }
-        return reader;
+        return new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Opens the stream of the start of the file, which supports {@link Compression#fromMagicBytes(InputStream)}.
+     */
+    @Nullable
+    private static InputStream openHead(FileInput fileInput, URI uri) throws IOException {
+        InputStream stream = fileInput.getStream(uri);
+        return stream == null ? null : new BufferedInputStream(stream);
     }
 
     private static List<URI> getUris(FileInput fileInput, URI fileUri, URI preGlobUri, Predicate<URI> uriPredicate) throws IOException {
@@ -389,17 +495,29 @@ public class FileReadingIterator implements BatchIterator<Row> {
         return uris;
     }
 
+    /**
+     * Whether files may be split into ranges, in which case all readers list all files and then decide per file
+     * whether it is read in ranges or by a single reader.
+     */
+    private boolean splitFiles(FileInput fileInput) {
+        return numReaders > 1
+               && compression == null
+               && MoreObjects.firstNonNull(shared, fileInput.sharedStorageDefault());
+    }
+
+    private boolean isAssignedToThisReader(URI uri) {
+        int hash = uri.hashCode();
+        if (hash == Integer.MIN_VALUE) {
+            hash = 0; // Math.abs(Integer.MIN_VALUE) == Integer.MIN_VALUE
+        }
+        return Math.abs(hash) % numReaders == readerNumber;
+    }
+
     private Predicate<URI> generateUriPredicate(FileInput fileInput, @Nullable Predicate<URI> globPredicate) {
         Predicate<URI> moduloPredicate;
         boolean sharedStorage = MoreObjects.firstNonNull(shared, fileInput.sharedStorageDefault());
-        if (sharedStorage) {
-            moduloPredicate = input -> {
-                int hash = input.hashCode();
-                if (hash == Integer.MIN_VALUE) {
-                    hash = 0; // Math.abs(Integer.MIN_VALUE) == Integer.MIN_VALUE
-                }
-                return Math.abs(hash) % numReaders == readerNumber;
-            };
+        if (sharedStorage && splitFiles(fileInput) == false) {
+            moduloPredicate = this::isAssignedToThisReader;
         } else {
             moduloPredicate = MATCH_ALL_PREDICATE;
         }
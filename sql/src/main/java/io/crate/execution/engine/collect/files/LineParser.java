@@ -22,6 +22,7 @@
 package io.crate.execution.engine.collect.files;
 
 import io.crate.execution.dsl.phases.FileUriCollectPhase;
+import io.crate.expression.reference.file.LineContext;
 import io.crate.operation.collect.files.CSVLineParser;
 
 import java.io.BufferedReader;
@@ -33,10 +34,13 @@ public class LineParser {
 
     private CSVLineParser csvLineParser;
 
+    private TextLineParser textLineParser;
+
     private InputType inputType;
 
     private enum InputType {
         CSV,
+        TEXT,
         JSON
     }
 
@@ -45,20 +49,37 @@ public class LineParser {
             csvLineParser = new CSVLineParser();
             csvLineParser.parseHeader(currentReader);
             inputType = InputType.CSV;
+        } else if (inputFormat == FileUriCollectPhase.InputFormat.TEXT) {
+            textLineParser = new TextLineParser();
+            textLineParser.parseHeader(currentReader);
+            inputType = InputType.TEXT;
         } else {
             inputType = InputType.JSON;
         }
     }
 
-    public byte[] getByteArray(String line) throws IOException {
+    /**
+     * Sets the line as the current line of the context.
+     * CSV rows are passed on as field values, without converting them to JSON first.
+     */
+    public void parse(String line, LineContext lineContext) throws IOException {
         if (inputType == InputType.CSV) {
-            return csvLineParser.parse(line);
+            lineContext.csvRow(csvLineParser.keys(), csvLineParser.parseValues(line));
+        } else if (inputType == InputType.TEXT) {
+            lineContext.rawSource(textLineParser.parse(line));
         } else {
-            return line.getBytes(StandardCharsets.UTF_8);
+            lineContext.rawSource(line.getBytes(StandardCharsets.UTF_8));
         }
     }
 
-    private boolean isInputCsv(FileUriCollectPhase.InputFormat inputFormat, URI currentUri) {
+    /**
+     * @return true if the first line of the file is a header and not a row
+     */
+    static boolean hasHeader(FileUriCollectPhase.InputFormat inputFormat, URI uri) {
+        return isInputCsv(inputFormat, uri) || inputFormat == FileUriCollectPhase.InputFormat.TEXT;
+    }
+
+    private static boolean isInputCsv(FileUriCollectPhase.InputFormat inputFormat, URI currentUri) {
         return (inputFormat == FileUriCollectPhase.InputFormat.CSV) || currentUri.toString().endsWith(".csv");
     }
 }
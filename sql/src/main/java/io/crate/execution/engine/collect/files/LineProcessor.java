@@ -44,7 +44,6 @@ public class LineProcessor {
     }
 
     public void process(String line) throws IOException {
-        byte[] jsonByteArray = lineParser.getByteArray(line);
-        lineContext.rawSource(jsonByteArray);
+        lineParser.parse(line, lineContext);
     }
 }
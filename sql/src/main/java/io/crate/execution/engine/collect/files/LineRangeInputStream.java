@@ -0,0 +1,142 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.files;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+/**
+ * Stream of the lines of a file which start within the byte range [start, end).
+ *
+ * A line which starts before {@code start} is skipped, as it belongs to the range of the previous reader, and the line
+ * which contains the byte at {@code end - 1} is read to its end, even if that is beyond the range.
+ * Splitting a file into adjacent ranges therefore yields every line exactly once.
+ */
+final class LineRangeInputStream extends InputStream {
+
+    private final InputStream in;
+    private final long end;
+    private long position;
+    private int lastByte = '\n';
+    private boolean eof = false;
+
+    @Nullable
+    static InputStream open(FileInput fileInput, URI uri, long start, long end) throws IOException {
+        assert start >= 0 && start <= end : "range must be valid";
+        if (start == 0) {
+            InputStream stream = fileInput.getStream(uri);
+            return stream == null ? null : fromStart(stream, end);
+        }
+        // start reading at the last byte of the previous range to find out if a line starts at `start`
+        InputStream stream = fileInput.getStream(uri, start - 1);
+        if (stream == null) {
+            return null;
+        }
+        LineRangeInputStream rangeStream = new LineRangeInputStream(stream, start - 1, end);
+        rangeStream.skipPartialLine();
+        return rangeStream;
+    }
+
+    /**
+     * Limits a stream which starts at the beginning of the file to the range [0, end).
+     */
+    static InputStream fromStart(InputStream stream, long end) {
+        return new LineRangeInputStream(stream, 0, end);
+    }
+
+    private LineRangeInputStream(InputStream in, long position, long end) {
+        this.in = new BufferedInputStream(in);
+        this.position = position;
+        this.end = end;
+    }
+
+    private void skipPartialLine() throws IOException {
+        int b;
+        do {
+            b = in.read();
+            if (b == -1) {
+                eof = true;
+                return;
+            }
+            position++;
+        } while (b != '\n');
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (eof || (position >= end && lastByte == '\n')) {
+            eof = true;
+            return -1;
+        }
+        int b = in.read();
+        if (b == -1) {
+            eof = true;
+            return -1;
+        }
+        position++;
+        lastByte = b;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (eof) {
+            return -1;
+        }
+        if (position < end) {
+            int n = in.read(b, off, (int) Math.min(len, end - position));
+            if (n == -1) {
+                eof = true;
+                return -1;
+            }
+            position += n;
+            lastByte = b[off + n - 1] & 0xFF;
+            return n;
+        }
+        // beyond the range, only the current line is completed
+        int n = 0;
+        while (n < len) {
+            int c = read();
+            if (c == -1) {
+                break;
+            }
+            b[off + n] = (byte) c;
+            n++;
+            if (c == '\n') {
+                break;
+            }
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -29,12 +29,16 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
@@ -90,6 +94,24 @@ public class LocalFsFileInput implements FileInput {
         }
     }
 
+    @Override
+    public long size(URI uri) throws IOException {
+        Path path = Paths.get(uri);
+        return Files.isRegularFile(path) ? Files.size(path) : -1L;
+    }
+
+    @Override
+    public InputStream getStream(URI uri, long offset) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(Paths.get(uri), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        channel.position(offset);
+        return Channels.newInputStream(channel);
+    }
+
     @Override
     public boolean sharedStorageDefault() {
         return false;
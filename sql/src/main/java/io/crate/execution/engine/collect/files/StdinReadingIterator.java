@@ -0,0 +1,271 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.files;
+
+import io.crate.concurrent.CompletableFutures;
+import io.crate.data.BatchIterator;
+import io.crate.data.CloseAssertingBatchIterator;
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.exceptions.UnsupportedFeatureException;
+import io.crate.execution.dsl.phases.FileUriCollectPhase;
+import io.crate.expression.InputRow;
+import org.apache.lucene.util.ArrayUtil;
+import org.elasticsearch.ElasticsearchParseException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static io.crate.exceptions.Exceptions.rethrowUnchecked;
+
+/**
+ * Reads the lines of a {@code COPY ... FROM STDIN} statement from the {@link StdinStream} of the client connection.
+ * <p>
+ * Contrary to {@link FileReadingIterator} this doesn't block a thread while waiting for the client:
+ * {@link #moveNext()} returns false if no complete line has been received yet and {@link #loadNextBatch()} completes
+ * once the client sent more data. The data can only be read once, so {@link #moveToStart()} isn't supported.
+ */
+public class StdinReadingIterator implements BatchIterator<Row> {
+
+    private static final int READ_SIZE = 8 * 1024;
+
+    private final URI uri;
+    private final StdinStream stream;
+    private final FileUriCollectPhase.InputFormat inputFormat;
+    private final Executor executor;
+    private final LineProcessor lineProcessor = new LineProcessor();
+    private final Row row;
+
+    private byte[] buffer = new byte[READ_SIZE];
+    /**
+     * start of the first line which hasn't been processed yet
+     */
+    private int start = 0;
+    /**
+     * the bytes up to here have been searched for the end of the line starting at {@link #start}
+     */
+    private int scanned = 0;
+    private int end = 0;
+    private boolean eof = false;
+    private boolean headerRead = false;
+    private long currentLineNumber = 0;
+
+    @Nullable
+    private volatile CompletableFuture<Object> pendingLoad;
+    @Nullable
+    private volatile Throwable killed;
+
+    private StdinReadingIterator(URI uri,
+                                 StdinStream stream,
+                                 List<? extends Input<?>> inputs,
+                                 Iterable<LineCollectorExpression<?>> collectorExpressions,
+                                 FileUriCollectPhase.InputFormat inputFormat,
+                                 Executor executor) {
+        this.uri = uri;
+        this.stream = stream;
+        this.inputFormat = inputFormat;
+        this.executor = executor;
+        this.row = new InputRow(inputs) {
+            @Override
+            public Object get(int index) {
+                try {
+                    return inputs.get(index).value();
+                } catch (ElasticsearchParseException e) {
+                    throw new ElasticsearchParseException(String.format(Locale.ENGLISH,
+                        "Failed to parse input in line: %d of STDIN%n" +
+                        "Original error message: %s", currentLineNumber, e.getMessage()), e);
+                }
+            }
+        };
+        lineProcessor.startCollect(collectorExpressions);
+    }
+
+    /**
+     * @param executor used to continue once the client sent more data, instead of the network thread receiving it
+     */
+    public static BatchIterator<Row> newInstance(StdinStreams stdinStreams,
+                                                 String uri,
+                                                 List<? extends Input<?>> inputs,
+                                                 Iterable<LineCollectorExpression<?>> collectorExpressions,
+                                                 FileUriCollectPhase.InputFormat inputFormat,
+                                                 Executor executor) {
+        URI stdinUri = URI.create(uri);
+        StdinStream stream = stdinStreams.get(stdinUri);
+        if (stream == null) {
+            throw new UnsupportedFeatureException(
+                "COPY FROM STDIN is only supported by the simple query protocol of the PostgreSQL wire protocol");
+        }
+        return new CloseAssertingBatchIterator<>(
+            new StdinReadingIterator(stdinUri, stream, inputs, collectorExpressions, inputFormat, executor));
+    }
+
+    @Override
+    public Row currentElement() {
+        return row;
+    }
+
+    @Override
+    public void moveToStart() {
+        throw new UnsupportedOperationException("The data of COPY FROM STDIN can only be read once");
+    }
+
+    @Override
+    public boolean moveNext() {
+        try {
+            String line;
+            while ((line = nextLine()) != null) {
+                currentLineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (headerRead == false) {
+                    headerRead = true;
+                    if (LineParser.hasHeader(inputFormat, uri)) {
+                        lineProcessor.readFirstLine(uri, inputFormat, new BufferedReader(new StringReader(line)));
+                        continue;
+                    }
+                    lineProcessor.readFirstLine(uri, inputFormat, null);
+                }
+                lineProcessor.process(line);
+                return true;
+            }
+        } catch (IOException e) {
+            rethrowUnchecked(e);
+        }
+        return false;
+    }
+
+    /**
+     * @return the next line or null if no complete line has been received yet or all lines have been read.
+     */
+    @Nullable
+    private String nextLine() throws IOException {
+        while (true) {
+            for (int i = scanned; i < end; i++) {
+                if (buffer[i] == '\n') {
+                    String line = decode(start, i);
+                    start = i + 1;
+                    scanned = start;
+                    return line;
+                }
+            }
+            scanned = end;
+            if (eof) {
+                if (start < end) {
+                    // the last line doesn't end with a line break
+                    String line = decode(start, end);
+                    start = end;
+                    return line;
+                }
+                return null;
+            }
+            if (receive() == false) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Appends the data which has been received in the meantime to the buffer.
+     *
+     * @return false if there is no new data
+     */
+    private boolean receive() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            scanned -= start;
+            start = 0;
+        }
+        if (end + READ_SIZE > buffer.length) {
+            buffer = ArrayUtil.grow(buffer, end + READ_SIZE);
+        }
+        int numBytes = stream.read(buffer, end, buffer.length - end);
+        if (numBytes < 0) {
+            eof = true;
+            return true;
+        }
+        end += numBytes;
+        return numBytes > 0;
+    }
+
+    private String decode(int from, int to) {
+        // like BufferedReader#readLine lines may also end with \r\n
+        if (to > from && buffer[to - 1] == '\r') {
+            to--;
+        }
+        return new String(buffer, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        buffer = null;
+    }
+
+    @Override
+    public CompletableFuture<?> loadNextBatch() {
+        if (eof) {
+            return CompletableFutures.failedFuture(new IllegalStateException("All batches already loaded"));
+        }
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        pendingLoad = result;
+        Throwable t = killed;
+        if (t != null) {
+            result.completeExceptionally(t);
+            return result;
+        }
+        stream.whenReadable().whenComplete((r, f) -> {
+            try {
+                executor.execute(() -> result.complete(null));
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public boolean allLoaded() {
+        return eof;
+    }
+
+    @Override
+    public void kill(@Nonnull Throwable throwable) {
+        killed = throwable;
+        CompletableFuture<Object> load = pendingLoad;
+        if (load != null) {
+            // the client might never send more data
+            load.completeExceptionally(throwable);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.files;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The data a client sends for a {@code COPY ... FROM STDIN} statement, which arrives in chunks over its connection.
+ * <p>
+ * Reading never blocks: if the client hasn't sent more data yet, {@link #read(byte[], int, int)} returns 0 and
+ * {@link #whenReadable()} can be used to continue once it did.
+ */
+public interface StdinStream {
+
+    /**
+     * Reads up to {@code len} bytes of the data received so far.
+     *
+     * @return the number of bytes read, 0 if no data is available yet or -1 once the client finished sending data
+     * @throws IOException if the client aborted the COPY or the connection was lost
+     */
+    int read(byte[] b, int off, int len) throws IOException;
+
+    /**
+     * @return a future which completes once data is available or the client finished sending data.
+     *         It may be completed by a network thread.
+     */
+    CompletableFuture<?> whenReadable();
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.files;
+
+import org.elasticsearch.common.inject.Singleton;
+
+import javax.annotation.Nullable;
+import java.net.URI;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the input streams of the COPY FROM STDIN statements which are executed on this node.
+ * <p>
+ * A connection registers the stream it is receiving the rows with under the uri of the statement
+ * and the {@link StdinReadingIterator} reads from it. The uris use the {@link #SCHEME} scheme.
+ */
+@Singleton
+public class StdinStreams {
+
+    public static final String SCHEME = "stdin";
+
+    private final Map<URI, StdinStream> streams = new ConcurrentHashMap<>();
+
+    public static URI newUri() {
+        return URI.create(SCHEME + ":///" + UUID.randomUUID());
+    }
+
+    public static boolean isStdinUri(String uri) {
+        return uri.startsWith(SCHEME + ":");
+    }
+
+    public void register(URI uri, StdinStream stream) {
+        StdinStream previous = streams.putIfAbsent(uri, stream);
+        if (previous != null) {
+            throw new IllegalStateException("A stream is already registered for " + uri);
+        }
+    }
+
+    public void unregister(URI uri) {
+        streams.remove(uri);
+    }
+
+    @Nullable
+    StdinStream get(URI uri) {
+        return streams.get(uri);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.files;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses lines in the text format of the PostgreSQL COPY command into JSON objects.
+ * <p>
+ * Columns are separated by tabs, {@code \N} is a null value and backslash escapes are used for
+ * special characters, e.g. {@code \t} or {@code \n}.
+ * The first line must be a header with the column names, separated by tabs.
+ */
+class TextLineParser {
+
+    private static final char DELIMITER = '\t';
+    private static final String NULL_VALUE = "\\N";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<String> keys;
+
+    void parseHeader(BufferedReader reader) throws IOException {
+        String header = reader.readLine();
+        if (header == null || header.isEmpty()) {
+            throw new IllegalArgumentException("Invalid header: no entries present");
+        }
+        keys = Arrays.asList(header.split(String.valueOf(DELIMITER), -1));
+        if (new HashSet<>(keys).size() != keys.size() || keys.contains("")) {
+            throw new IllegalArgumentException("Invalid header: duplicate or empty entries present");
+        }
+    }
+
+    byte[] parse(String line) throws IOException {
+        List<String> values = split(line);
+        if (values.size() > keys.size()) {
+            throw new IllegalArgumentException("Number of values exceeds number of keys");
+        }
+        Map<String, Object> row = new LinkedHashMap<>(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            String value = values.get(i);
+            row.put(keys.get(i), NULL_VALUE.equals(value) ? null : unescape(value));
+        }
+        return objectMapper.writeValueAsBytes(row);
+    }
+
+    private static List<String> split(String line) {
+        List<String> values = new ArrayList<>();
+        int start = 0;
+        int idx;
+        while ((idx = line.indexOf(DELIMITER, start)) >= 0) {
+            values.add(line.substring(start, idx));
+            start = idx + 1;
+        }
+        values.add(line.substring(start));
+        return values;
+    }
+
+    static String unescape(String value) {
+        int idx = value.indexOf('\\');
+        if (idx < 0) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        sb.append(value, 0, idx);
+        int length = value.length();
+        for (int i = idx; i < length; i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i + 1 == length) {
+                sb.append(c);
+                continue;
+            }
+            char escaped = value.charAt(++i);
+            switch (escaped) {
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'v':
+                    sb.append('\u000B');
+                    break;
+                case 'x':
+                    int hexEnd = i + 1;
+                    while (hexEnd < length && hexEnd < i + 3 && Character.digit(value.charAt(hexEnd), 16) >= 0) {
+                        hexEnd++;
+                    }
+                    if (hexEnd == i + 1) {
+                        sb.append(escaped);
+                    } else {
+                        sb.append((char) Integer.parseInt(value.substring(i + 1, hexEnd), 16));
+                        i = hexEnd - 1;
+                    }
+                    break;
+                default:
+                    if (escaped >= '0' && escaped <= '7') {
+                        int octalEnd = i + 1;
+                        while (octalEnd < length && octalEnd < i + 3
+                               && value.charAt(octalEnd) >= '0' && value.charAt(octalEnd) <= '7') {
+                            octalEnd++;
+                        }
+                        sb.append((char) Integer.parseInt(value.substring(i, octalEnd), 8));
+                        i = octalEnd - 1;
+                    } else {
+                        sb.append(escaped);
+                    }
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -24,6 +24,7 @@ package io.crate.execution.engine.collect.sources;
 
 import com.google.common.collect.Iterables;
 import io.crate.execution.engine.collect.CollectTask;
+import io.crate.execution.engine.export.OutputS3Limits;
 import io.crate.expression.eval.EvaluatingNormalizer;
 import io.crate.data.RowConsumer;
 import io.crate.execution.TransportActionProvider;
@@ -52,6 +53,7 @@ import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import java.util.HashMap;
@@ -73,6 +75,7 @@ public class CollectSourceResolver {
     @Inject
     public CollectSourceResolver(ClusterService clusterService,
                                  NodeJobsCounter nodeJobsCounter,
+                                 OutputS3Limits s3Limits,
                                  Functions functions,
                                  Settings settings,
                                  ThreadPool threadPool,
@@ -86,13 +89,15 @@ public class CollectSourceResolver {
                                  SingleRowSource singleRowSource,
                                  SystemCollectSource systemCollectSource,
                                  NodeStatsCollectSource nodeStatsCollectSource,
-                                 BigArrays bigArrays) {
+                                 BigArrays bigArrays,
+                                 NodeEnvironment nodeEnvironment) {
         this.clusterService = clusterService;
 
         EvaluatingNormalizer normalizer = EvaluatingNormalizer.functionOnlyNormalizer(functions);
         ProjectorFactory projectorFactory = new ProjectionToProjectorVisitor(
             clusterService,
             nodeJobsCounter,
+            s3Limits,
             functions,
             threadPool,
             settings,
@@ -101,7 +106,8 @@ public class CollectSourceResolver {
             normalizer,
             systemCollectSource::getRowUpdater,
             systemCollectSource::tableDefinition,
-            bigArrays
+            bigArrays,
+            ProjectionToProjectorVisitor.spillPath(nodeEnvironment)
         );
         this.shardCollectSource = shardCollectSource;
         this.fileCollectSource = new ProjectorSetupCollectSource(fileCollectSource, projectorFactory);
@@ -33,6 +33,8 @@ import io.crate.execution.engine.collect.CrateCollector;
 import io.crate.execution.engine.collect.files.FileInputFactory;
 import io.crate.execution.engine.collect.files.FileReadingIterator;
 import io.crate.execution.engine.collect.files.LineCollectorExpression;
+import io.crate.execution.engine.collect.files.StdinReadingIterator;
+import io.crate.execution.engine.collect.files.StdinStreams;
 import io.crate.expression.InputFactory;
 import io.crate.expression.reference.file.FileLineReferenceResolver;
 import io.crate.expression.symbol.Symbol;
@@ -43,6 +45,7 @@ import io.crate.types.DataTypes;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.util.Arrays;
 import java.util.Collection;
@@ -56,12 +59,20 @@ public class FileCollectSource implements CollectSource {
     private final ClusterService clusterService;
     private final Map<String, FileInputFactory> fileInputFactoryMap;
     private final InputFactory inputFactory;
+    private final StdinStreams stdinStreams;
+    private final ThreadPool threadPool;
 
     @Inject
-    public FileCollectSource(Functions functions, ClusterService clusterService, Map<String, FileInputFactory> fileInputFactoryMap) {
+    public FileCollectSource(Functions functions,
+                             ClusterService clusterService,
+                             Map<String, FileInputFactory> fileInputFactoryMap,
+                             StdinStreams stdinStreams,
+                             ThreadPool threadPool) {
         this.fileInputFactoryMap = fileInputFactoryMap;
         inputFactory = new InputFactory(functions);
         this.clusterService = clusterService;
+        this.stdinStreams = stdinStreams;
+        this.threadPool = threadPool;
     }
 
     @Override
@@ -73,6 +84,18 @@ public class FileCollectSource implements CollectSource {
 
         List<String> fileUris;
         fileUris = targetUriToStringList(fileUriCollectPhase.targetUri());
+        if (fileUris.size() == 1 && StdinStreams.isStdinUri(fileUris.get(0))) {
+            // the rows arrive over the client connection, the collect continues once they're received
+            BatchIterator<Row> stdinReadingIterator = StdinReadingIterator.newInstance(
+                stdinStreams,
+                fileUris.get(0),
+                ctx.topLevelInputs(),
+                ctx.expressions(),
+                fileUriCollectPhase.inputFormat(),
+                threadPool.executor(ThreadPool.Names.SEARCH)
+            );
+            return BatchIteratorCollectorBridge.newInstance(stdinReadingIterator, consumer);
+        }
         BatchIterator<Row> fileReadingIterator = FileReadingIterator.newInstance(
             fileUris,
             ctx.topLevelInputs(),
@@ -37,6 +37,11 @@ import io.crate.exceptions.UnhandledServerException;
 import io.crate.execution.TransportActionProvider;
 import io.crate.execution.dsl.phases.CollectPhase;
 import io.crate.execution.dsl.phases.RoutedCollectPhase;
+import io.crate.execution.dsl.projection.AggregationProjection;
+import io.crate.execution.dsl.projection.EvalProjection;
+import io.crate.execution.dsl.projection.FilterProjection;
+import io.crate.execution.dsl.projection.GroupProjection;
+import io.crate.execution.dsl.projection.Projection;
 import io.crate.execution.dsl.projection.Projections;
 import io.crate.execution.engine.collect.BatchIteratorCollectorBridge;
 import io.crate.execution.engine.collect.CollectTask;
@@ -47,6 +52,7 @@ import io.crate.execution.engine.collect.ShardCollectorProvider;
 import io.crate.execution.engine.collect.collectors.CompositeCollector;
 import io.crate.execution.engine.collect.collectors.OrderedDocCollector;
 import io.crate.execution.engine.collect.collectors.OrderedLuceneBatchIteratorFactory;
+import io.crate.execution.engine.export.OutputS3Limits;
 import io.crate.execution.engine.pipeline.ProjectingRowConsumer;
 import io.crate.execution.engine.pipeline.ProjectionToProjectorVisitor;
 import io.crate.execution.engine.pipeline.ProjectorFactory;
@@ -57,6 +63,7 @@ import io.crate.execution.jobs.SharedShardContexts;
 import io.crate.expression.InputFactory;
 import io.crate.expression.eval.EvaluatingNormalizer;
 import io.crate.expression.reference.StaticTableReferenceResolver;
+import io.crate.expression.symbol.AggregateMode;
 import io.crate.expression.symbol.Symbols;
 import io.crate.lucene.LuceneQueryBuilder;
 import io.crate.metadata.Functions;
@@ -80,7 +87,9 @@ import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.IndexNotFoundException;
 import org.elasticsearch.index.IndexService;
@@ -150,6 +159,10 @@ import static io.crate.data.SentinelRow.SENTINEL;
  *                       nodeConsumer // consumes the compositeBatchIterator
  *
  * </pre>
+ * <p>
+ * If the shard projections compute partial aggregations a single shard can also be collected by several collectors,
+ * each collecting a subset of the segments of the shard with its own shard projections. The number of collectors
+ * per shard depends on the number of processors and the number of shards collected on the node.
  */
 @Singleton
 public class ShardCollectSource extends AbstractComponent implements CollectSource {
@@ -161,6 +174,7 @@ public class ShardCollectSource extends AbstractComponent implements CollectSour
     private final Executor executor;
     private final EvaluatingNormalizer nodeNormalizer;
     private final ProjectorFactory sharedProjectorFactory;
+    private final int numProcessors;
 
     private final Map<ShardId, Supplier<ShardCollectorProvider>> shards = new ConcurrentHashMap<>();
     private final ShardCollectorProviderFactory shardCollectorProviderFactory;
@@ -173,6 +187,7 @@ public class ShardCollectSource extends AbstractComponent implements CollectSour
                               Functions functions,
                               ClusterService clusterService,
                               NodeJobsCounter nodeJobsCounter,
+                              OutputS3Limits s3Limits,
                               LuceneQueryBuilder luceneQueryBuilder,
                               ThreadPool threadPool,
                               TransportActionProvider transportActionProvider,
@@ -180,7 +195,8 @@ public class ShardCollectSource extends AbstractComponent implements CollectSour
                               SystemCollectSource systemCollectSource,
                               IndexEventListenerProxy indexEventListenerProxy,
                               BlobIndicesService blobIndicesService,
-                              BigArrays bigArrays) {
+                              BigArrays bigArrays,
+                              NodeEnvironment nodeEnvironment) {
         super(settings);
         this.unassignedShardReferenceResolver = new StaticTableReferenceResolver<>(
             SysShardsTableInfo.unassignedShardsExpressions());
@@ -189,6 +205,7 @@ public class ShardCollectSource extends AbstractComponent implements CollectSour
         this.remoteCollectorFactory = remoteCollectorFactory;
         this.systemCollectSource = systemCollectSource;
         this.executor = new DirectFallbackExecutor(threadPool.executor(ThreadPool.Names.SEARCH));
+        this.numProcessors = EsExecutors.numberOfProcessors(settings);
         this.shardCollectorProviderFactory = new ShardCollectorProviderFactory(
             clusterService,
             settings,
@@ -199,6 +216,7 @@ public class ShardCollectSource extends AbstractComponent implements CollectSour
             functions,
             luceneQueryBuilder,
             nodeJobsCounter,
+            s3Limits,
             bigArrays);
         nodeNormalizer = new EvaluatingNormalizer(
             functions,
@@ -209,6 +227,7 @@ public class ShardCollectSource extends AbstractComponent implements CollectSour
         sharedProjectorFactory = new ProjectionToProjectorVisitor(
             clusterService,
             nodeJobsCounter,
+            s3Limits,
             functions,
             threadPool,
             settings,
@@ -217,7 +236,8 @@ public class ShardCollectSource extends AbstractComponent implements CollectSour
             nodeNormalizer,
             systemCollectSource::getRowUpdater,
             systemCollectSource::tableDefinition,
-            bigArrays
+            bigArrays,
+            ProjectionToProjectorVisitor.spillPath(nodeEnvironment)
         );
 
         indexEventListenerProxy.addLast(new LifecycleListener());
@@ -331,8 +351,12 @@ public class ShardCollectSource extends AbstractComponent implements CollectSour
 
         Map<String, List<Integer>> indexShards = locations.get(localNodeId);
         if (indexShards != null) {
-            builders.addAll(
-                getDocCollectors(collectTask, normalizedPhase, lastConsumer.requiresScroll(), indexShards));
+            int maxConcurrencyPerShard = 1;
+            if (lastConsumer.requiresScroll() == false && supportsConcurrentShardCollect(normalizedPhase)) {
+                maxConcurrencyPerShard = Math.max(1, numProcessors / Math.max(1, maxNumShards));
+            }
+            builders.addAll(getDocCollectors(
+                collectTask, normalizedPhase, lastConsumer.requiresScroll(), indexShards, maxConcurrencyPerShard));
         }
 
         switch (builders.size()) {
@@ -426,10 +450,43 @@ public class ShardCollectSource extends AbstractComponent implements CollectSour
         return shardCollectorProvider;
     }
 
+    /**
+     * A shard can be collected by several collectors concurrently if the shard projections compute partial
+     * aggregations. The partial results of the collectors are merged by the following projections like the partial
+     * results of different shards.
+     * <p>
+     * Other shard projections (e.g. final aggregations if the rows are grouped by the routing column, or writers
+     * creating one file per shard) rely on seeing all rows of the shard.
+     */
+    private static boolean supportsConcurrentShardCollect(RoutedCollectPhase collectPhase) {
+        if (Symbols.containsColumn(collectPhase.toCollect(), DocSysColumns.FETCHID)) {
+            return false;
+        }
+        boolean hasPartialAggregation = false;
+        for (Projection projection : Projections.shardProjections(collectPhase.projections())) {
+            if (projection instanceof AggregationProjection) {
+                if (((AggregationProjection) projection).mode() != AggregateMode.ITER_PARTIAL) {
+                    return false;
+                }
+                hasPartialAggregation = true;
+            } else if (projection instanceof GroupProjection) {
+                if (((GroupProjection) projection).mode() != AggregateMode.ITER_PARTIAL) {
+                    return false;
+                }
+                hasPartialAggregation = true;
+            } else if (hasPartialAggregation
+                       || (projection instanceof FilterProjection == false && projection instanceof EvalProjection == false)) {
+                return false;
+            }
+        }
+        return hasPartialAggregation;
+    }
+
     private Collection<CrateCollector.Builder> getDocCollectors(CollectTask collectTask,
                                                                 RoutedCollectPhase collectPhase,
                                                                 boolean requiresScroll,
-                                                                Map<String, List<Integer>> indexShards) {
+                                                                Map<String, List<Integer>> indexShards,
+                                                                int maxConcurrencyPerShard) {
 
         MetaData metaData = clusterService.state().metaData();
         List<CrateCollector.Builder> crateCollectors = new ArrayList<>();
@@ -455,12 +512,12 @@ public class ShardCollectSource extends AbstractComponent implements CollectSour
                 ShardId shardId = new ShardId(index, shardNum);
                 try {
                     ShardCollectorProvider shardCollectorProvider = getCollectorProviderSafe(shardId);
-                    CrateCollector.Builder collector = shardCollectorProvider.getCollectorBuilder(
+                    crateCollectors.addAll(shardCollectorProvider.getCollectorBuilders(
                         collectPhase,
                         requiresScroll,
-                        collectTask
-                    );
-                    crateCollectors.add(collector);
+                        collectTask,
+                        maxConcurrencyPerShard
+                    ));
                 } catch (ShardNotFoundException | IllegalIndexShardStateException e) {
                     // If toCollect contains a docId it means that this is a QueryThenFetch operation.
                     // In such a case RemoteCollect cannot be used because on that node the FetchTask is missing
@@ -28,6 +28,7 @@ import io.crate.execution.TransportActionProvider;
 import io.crate.execution.engine.collect.BlobShardCollectorProvider;
 import io.crate.execution.engine.collect.LuceneShardCollectorProvider;
 import io.crate.execution.engine.collect.ShardCollectorProvider;
+import io.crate.execution.engine.export.OutputS3Limits;
 import io.crate.execution.jobs.NodeJobsCounter;
 import io.crate.lucene.LuceneQueryBuilder;
 import io.crate.metadata.Functions;
@@ -51,6 +52,7 @@ public class ShardCollectorProviderFactory {
     private final Functions functions;
     private final LuceneQueryBuilder luceneQueryBuilder;
     private final NodeJobsCounter nodeJobsCounter;
+    private final OutputS3Limits s3Limits;
     private final BigArrays bigArrays;
     private final Settings settings;
 
@@ -63,6 +65,7 @@ public class ShardCollectorProviderFactory {
                                   Functions functions,
                                   LuceneQueryBuilder luceneQueryBuilder,
                                   NodeJobsCounter nodeJobsCounter,
+                                  OutputS3Limits s3Limits,
                                   BigArrays bigArrays) {
         this.settings = settings;
         this.schemas = schemas;
@@ -73,6 +76,7 @@ public class ShardCollectorProviderFactory {
         this.functions = functions;
         this.luceneQueryBuilder = luceneQueryBuilder;
         this.nodeJobsCounter = nodeJobsCounter;
+        this.s3Limits = s3Limits;
         this.bigArrays = bigArrays;
     }
 
@@ -83,6 +87,7 @@ public class ShardCollectorProviderFactory {
                 blobShard,
                 clusterService,
                 nodeJobsCounter,
+                s3Limits,
                 functions,
                 threadPool,
                 settings,
@@ -94,6 +99,7 @@ public class ShardCollectorProviderFactory {
                 luceneQueryBuilder,
                 clusterService,
                 nodeJobsCounter,
+                s3Limits,
                 functions,
                 threadPool,
                 settings,
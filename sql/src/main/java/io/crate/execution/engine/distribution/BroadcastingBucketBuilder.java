@@ -25,6 +25,9 @@ package io.crate.execution.engine.distribution;
 import io.crate.Streamer;
 import io.crate.data.Bucket;
 import io.crate.data.Row;
+import org.elasticsearch.common.util.BigArrays;
+
+import javax.annotation.Nullable;
 
 import java.io.IOException;
 
@@ -39,8 +42,18 @@ public class BroadcastingBucketBuilder implements MultiBucketBuilder {
     private volatile int size = 0;
 
     public BroadcastingBucketBuilder(Streamer<?>[] streamers, int numBuckets) {
+        this(streamers, numBuckets, PageFormat.ROW, null);
+    }
+
+    /**
+     * See {@link StreamBucket.Builder#Builder(Streamer[], io.crate.breaker.RamAccountingContext, PageFormat, BigArrays)}
+     */
+    public BroadcastingBucketBuilder(Streamer<?>[] streamers,
+                                     int numBuckets,
+                                     PageFormat pageFormat,
+                                     @Nullable BigArrays bigArrays) {
         this.numBuckets = numBuckets;
-        this.bucketBuilder = new StreamBucket.Builder(streamers, null);
+        this.bucketBuilder = new StreamBucket.Builder(streamers, null, pageFormat, bigArrays);
     }
 
     @Override
@@ -75,4 +88,10 @@ public class BroadcastingBucketBuilder implements MultiBucketBuilder {
         }
         size = 0;
     }
+
+    @Override
+    public synchronized void close() {
+        bucketBuilder.close();
+        size = 0;
+    }
 }
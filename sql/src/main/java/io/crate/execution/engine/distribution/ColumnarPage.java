@@ -0,0 +1,308 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.distribution;
+
+import io.crate.Streamer;
+import io.crate.types.IntegerType;
+import io.crate.types.LongType;
+import io.crate.types.ShortType;
+import io.crate.types.StringType;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.apache.lucene.util.BitUtil;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes the rows of a page per column:
+ *
+ * <pre>
+ *     compressed (boolean)
+ *     for each column:
+ *         hasNulls (boolean)
+ *         [null bitmap, one bit per row]
+ *         encoding (byte)
+ *         non-null values of the column
+ * </pre>
+ *
+ * Integral values are written as zig-zag encoded variable length deltas to the previous value.
+ * Strings are written as ordinals into a dictionary if at most every second value is distinct.
+ * All other values are written using their {@link Streamer}.
+ *
+ * If compressed, everything after the first byte is written as LZ4 frame, the same format as used by
+ * {@code COPY FROM} and {@code COPY TO} with {@code compression = 'lz4'}.
+ */
+final class ColumnarPage {
+
+    private static final byte PLAIN = 0;
+    private static final byte DELTA = 1;
+    private static final byte DICTIONARY = 2;
+
+    private ColumnarPage() {
+    }
+
+    /**
+     * @param columns the values of the rows of the page, column by column. Each column holds at least numRows values.
+     */
+    static void encode(StreamOutput out,
+                       Streamer<?>[] streamers,
+                       Object[][] columns,
+                       int numRows,
+                       boolean compress) throws IOException {
+        out.writeBoolean(compress);
+        if (compress) {
+            try (StreamOutput compressedOut = new OutputStreamStreamOutput(
+                new LZ4FrameOutputStream(new NonClosingOutputStream(out)))) {
+                writeColumns(compressedOut, streamers, columns, numRows);
+            }
+        } else {
+            writeColumns(out, streamers, columns, numRows);
+        }
+    }
+
+    /**
+     * @return the values of the page, column by column
+     */
+    static Object[][] decode(Streamer<?>[] streamers, int numRows, BytesReference bytes) throws IOException {
+        StreamInput in = bytes.streamInput();
+        if (in.readBoolean()) {
+            in = new InputStreamStreamInput(new LZ4FrameInputStream(in));
+        }
+        Object[][] columns = new Object[streamers.length][];
+        for (int c = 0; c < streamers.length; c++) {
+            columns[c] = readColumn(in, streamers[c], numRows);
+        }
+        return columns;
+    }
+
+    private static void writeColumns(StreamOutput out,
+                                     Streamer<?>[] streamers,
+                                     Object[][] columns,
+                                     int numRows) throws IOException {
+        for (int c = 0; c < streamers.length; c++) {
+            writeColumn(out, streamers[c], columns[c], numRows);
+        }
+    }
+
+    private static void writeColumn(StreamOutput out, Streamer<?> streamer, Object[] values, int numRows) throws IOException {
+        int numNonNull = 0;
+        for (int r = 0; r < numRows; r++) {
+            if (values[r] != null) {
+                numNonNull++;
+            }
+        }
+        boolean hasNulls = numNonNull < numRows;
+        out.writeBoolean(hasNulls);
+        if (hasNulls) {
+            byte[] nulls = new byte[(numRows + 7) / 8];
+            for (int r = 0; r < numRows; r++) {
+                if (values[r] == null) {
+                    nulls[r >>> 3] |= 1 << (r & 7);
+                }
+            }
+            out.writeBytes(nulls);
+        }
+        if (isIntegral(streamer)) {
+            out.writeByte(DELTA);
+            long previous = 0L;
+            for (int r = 0; r < numRows; r++) {
+                if (values[r] != null) {
+                    long value = ((Number) values[r]).longValue();
+                    writeUnsignedVLong(out, BitUtil.zigZagEncode(value - previous));
+                    previous = value;
+                }
+            }
+        } else if (streamer instanceof StringType && writeDictionary(out, values, numRows, numNonNull)) {
+            return;
+        } else {
+            out.writeByte(PLAIN);
+            for (int r = 0; r < numRows; r++) {
+                if (values[r] != null) {
+                    //noinspection unchecked
+                    ((Streamer) streamer).writeValueTo(out, values[r]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return false if there are too many distinct values for a dictionary, in which case nothing is written.
+     */
+    private static boolean writeDictionary(StreamOutput out, Object[] values, int numRows, int numNonNull) throws IOException {
+        int maxDictionarySize = numNonNull / 2;
+        Map<BytesRef, Integer> ordinals = new HashMap<>();
+        List<BytesRef> dictionary = new ArrayList<>();
+        int[] valueOrdinals = new int[numNonNull];
+        int i = 0;
+        for (int r = 0; r < numRows; r++) {
+            BytesRef value = (BytesRef) values[r];
+            if (value == null) {
+                continue;
+            }
+            Integer ordinal = ordinals.get(value);
+            if (ordinal == null) {
+                if (dictionary.size() == maxDictionarySize) {
+                    return false;
+                }
+                ordinal = dictionary.size();
+                ordinals.put(value, ordinal);
+                dictionary.add(value);
+            }
+            valueOrdinals[i++] = ordinal;
+        }
+        out.writeByte(DICTIONARY);
+        out.writeVInt(dictionary.size());
+        for (BytesRef value : dictionary) {
+            out.writeBytesRef(value);
+        }
+        for (int ordinal : valueOrdinals) {
+            out.writeVInt(ordinal);
+        }
+        return true;
+    }
+
+    private static Object[] readColumn(StreamInput in, Streamer<?> streamer, int numRows) throws IOException {
+        byte[] nulls = null;
+        if (in.readBoolean()) {
+            nulls = new byte[(numRows + 7) / 8];
+            in.readBytes(nulls, 0, nulls.length);
+        }
+        Object[] values = new Object[numRows];
+        byte encoding = in.readByte();
+        switch (encoding) {
+            case DELTA:
+                long previous = 0L;
+                for (int r = 0; r < numRows; r++) {
+                    if (isNull(nulls, r) == false) {
+                        previous += BitUtil.zigZagDecode(readUnsignedVLong(in));
+                        values[r] = toIntegral(streamer, previous);
+                    }
+                }
+                break;
+
+            case DICTIONARY:
+                BytesRef[] dictionary = new BytesRef[in.readVInt()];
+                for (int i = 0; i < dictionary.length; i++) {
+                    dictionary[i] = in.readBytesRef();
+                }
+                for (int r = 0; r < numRows; r++) {
+                    if (isNull(nulls, r) == false) {
+                        values[r] = dictionary[in.readVInt()];
+                    }
+                }
+                break;
+
+            case PLAIN:
+                for (int r = 0; r < numRows; r++) {
+                    if (isNull(nulls, r) == false) {
+                        values[r] = streamer.readValueFrom(in);
+                    }
+                }
+                break;
+
+            default:
+                throw new IllegalStateException("Unknown column encoding: " + encoding);
+        }
+        return values;
+    }
+
+    private static boolean isNull(byte[] nulls, int row) {
+        return nulls != null && (nulls[row >>> 3] & (1 << (row & 7))) != 0;
+    }
+
+    private static boolean isIntegral(Streamer<?> streamer) {
+        return streamer instanceof LongType || streamer instanceof IntegerType || streamer instanceof ShortType;
+    }
+
+    private static Object toIntegral(Streamer<?> streamer, long value) {
+        if (streamer instanceof IntegerType) {
+            return (int) value;
+        }
+        if (streamer instanceof ShortType) {
+            return (short) value;
+        }
+        return value;
+    }
+
+    private static void writeUnsignedVLong(StreamOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0L) {
+            out.writeByte((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((byte) value);
+    }
+
+    private static long readUnsignedVLong(StreamInput in) throws IOException {
+        long value = 0L;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Closing the compressed stream finishes the LZ4 frame, but the output it's written to stays open.
+     */
+    private static class NonClosingOutputStream extends OutputStream {
+
+        private final OutputStream delegate;
+
+        NonClosingOutputStream(OutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
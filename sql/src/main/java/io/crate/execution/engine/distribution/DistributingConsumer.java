@@ -31,6 +31,7 @@ import io.crate.data.RowConsumer;
 import io.crate.exceptions.SQLExceptions;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 
 import javax.annotation.Nullable;
@@ -49,6 +50,10 @@ import java.util.concurrent.atomic.AtomicInteger;
  *
  * Every time requests to the downstreams are made consumption of the source BatchIterator is stopped until a response
  * from all downstreams is received.
+ *
+ * Buckets are {@link Releasable#close() released} once the requests of a page have been sent. The MultiBucketBuilder
+ * must therefore only build buckets on pooled pages if none of the downstreams is the local node, as a local request
+ * isn't serialized and the receiver would keep referencing the bucket.
  */
 public class DistributingConsumer implements RowConsumer {
 
@@ -61,7 +66,6 @@ public class DistributingConsumer implements RowConsumer {
     private final TransportDistributedResultAction distributedResultAction;
     private final Streamer<?>[] streamers;
     private final int pageSize;
-    private final Bucket[] buckets;
     private final List<Downstream> downstreams;
     private final boolean traceEnabled;
 
@@ -92,7 +96,6 @@ public class DistributingConsumer implements RowConsumer {
         this.distributedResultAction = distributedResultAction;
         this.streamers = streamers;
         this.pageSize = pageSize;
-        this.buckets = new Bucket[downstreamNodeIds.size()];
         downstreams = new ArrayList<>(downstreamNodeIds.size());
         for (String downstreamNodeId : downstreamNodeIds) {
             downstreams.add(new Downstream(downstreamNodeId));
@@ -137,6 +140,7 @@ public class DistributingConsumer implements RowConsumer {
     }
 
     private void forwardFailure(@Nullable final BatchIterator it, final Throwable f) {
+        multiBucketBuilder.close();
         Throwable failure = SQLExceptions.unwrap(f); // make sure it's streamable
         AtomicInteger numActiveRequests = new AtomicInteger(downstreams.size());
         DistributedResultRequest request =
@@ -179,9 +183,23 @@ public class DistributingConsumer implements RowConsumer {
     }
 
     private void forwardResults(BatchIterator<Row> it, boolean isLast) {
+        // A new array per page; a listener completing early can trigger the next page before this loop is done
+        Bucket[] buckets = new Bucket[downstreams.size()];
         multiBucketBuilder.build(buckets);
 
         AtomicInteger numActiveRequests = new AtomicInteger(downstreams.size());
+        try {
+            sendPage(it, isLast, buckets, numActiveRequests);
+        } finally {
+            for (Bucket bucket : buckets) {
+                if (bucket instanceof Releasable) {
+                    ((Releasable) bucket).close();
+                }
+            }
+        }
+    }
+
+    private void sendPage(BatchIterator<Row> it, boolean isLast, Bucket[] buckets, AtomicInteger numActiveRequests) {
         for (int i = 0; i < downstreams.size(); i++) {
             Downstream downstream = downstreams.get(i);
             if (downstream.needsMoreData == false) {
@@ -28,40 +28,56 @@ import io.crate.execution.dsl.phases.ExecutionPhases;
 import io.crate.execution.dsl.phases.NodeOperation;
 import io.crate.planner.distribution.DistributionInfo;
 import io.crate.planner.node.StreamerVisitor;
+import io.crate.settings.CrateSetting;
+import io.crate.types.DataTypes;
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Locale;
 import java.util.UUID;
 import java.util.concurrent.Executor;
 
 @Singleton
 public class DistributingConsumerFactory extends AbstractComponent {
 
+    public static final CrateSetting<PageFormat> PAGE_FORMAT_SETTING = CrateSetting.of(new Setting<>(
+        "distribution.page_format", PageFormat.ROW.name().toLowerCase(Locale.ENGLISH), PageFormat::of,
+        Setting.Property.Dynamic, Setting.Property.NodeScope), DataTypes.STRING);
+
     private static final String RESPONSE_EXECUTOR_NAME = ThreadPool.Names.SEARCH;
 
     private final ClusterService clusterService;
     private final Executor responseExecutor;
     private final TransportDistributedResultAction transportDistributedResultAction;
+    private final BigArrays bigArrays;
     private final Logger distributingDownstreamLogger;
+    private volatile PageFormat pageFormat;
 
     @Inject
     public DistributingConsumerFactory(Settings settings,
                                        ClusterService clusterService,
                                        ThreadPool threadPool,
-                                       TransportDistributedResultAction transportDistributedResultAction) {
+                                       TransportDistributedResultAction transportDistributedResultAction,
+                                       BigArrays bigArrays) {
         super(settings);
         this.clusterService = clusterService;
+        this.bigArrays = bigArrays;
         this.responseExecutor = threadPool.executor(RESPONSE_EXECUTOR_NAME);
         this.transportDistributedResultAction = transportDistributedResultAction;
         distributingDownstreamLogger = Loggers.getLogger(DistributingConsumer.class, settings);
+        pageFormat = PAGE_FORMAT_SETTING.setting().get(settings);
+        clusterService.getClusterSettings().addSettingsUpdateConsumer(PAGE_FORMAT_SETTING.setting(), this::setPageFormat);
     }
 
     public RowConsumer create(NodeOperation nodeOperation,
@@ -76,18 +92,31 @@ public class DistributingConsumerFactory extends AbstractComponent {
         byte phaseInputId = nodeOperation.downstreamExecutionPhaseInputId();
         int bucketIdx = getBucketIdx(nodeOperation.executionPhase().nodeIds(), phaseInputId);
 
+        // Requests to remote nodes are serialized while they're sent, so the pages of their buckets can be recycled
+        // right away. A request to the local node hands over the bucket itself, which then must not be recycled.
+        BigArrays pageArrays = nodeOperation.downstreamNodes().contains(clusterService.localNode().getId())
+            ? null
+            : bigArrays;
+        PageFormat pageFormat = this.pageFormat;
+        DiscoveryNodes nodes = clusterService.state().nodes();
+        for (String nodeId : nodeOperation.downstreamNodes()) {
+            // all receivers get the same pages, so they must all be able to read the format
+            pageFormat = pageFormat.supportedBy(nodes.get(nodeId));
+        }
         MultiBucketBuilder multiBucketBuilder;
         switch (distributionInfo.distributionType()) {
             case MODULO:
                 if (nodeOperation.downstreamNodes().size() == 1) {
-                    multiBucketBuilder = new BroadcastingBucketBuilder(streamers, nodeOperation.downstreamNodes().size());
+                    multiBucketBuilder = new BroadcastingBucketBuilder(
+                        streamers, nodeOperation.downstreamNodes().size(), pageFormat, pageArrays);
                 } else {
-                    multiBucketBuilder = new ModuloBucketBuilder(streamers,
-                        nodeOperation.downstreamNodes().size(), distributionInfo.distributeByColumn());
+                    multiBucketBuilder = new ModuloBucketBuilder(streamers, nodeOperation.downstreamNodes().size(),
+                        distributionInfo.distributeByColumn(), pageFormat, pageArrays);
                 }
                 break;
             case BROADCAST:
-                multiBucketBuilder = new BroadcastingBucketBuilder(streamers, nodeOperation.downstreamNodes().size());
+                multiBucketBuilder = new BroadcastingBucketBuilder(
+                    streamers, nodeOperation.downstreamNodes().size(), pageFormat, pageArrays);
                 break;
             default:
                 throw new UnsupportedOperationException("Can't handle distributionInfo: " + distributionInfo);
@@ -108,6 +137,10 @@ public class DistributingConsumerFactory extends AbstractComponent {
         );
     }
 
+    private void setPageFormat(PageFormat pageFormat) {
+        this.pageFormat = pageFormat;
+    }
+
     /**
      * @return bucketIdx (= phaseInputID (8bit) | idx of localNode in nodeIds (24bit) )
      *
@@ -27,6 +27,7 @@ import io.crate.data.Bucket;
 import io.crate.data.Row;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.StringHelper;
+import org.elasticsearch.common.util.BigArrays;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
@@ -45,11 +46,22 @@ public class ModuloBucketBuilder implements MultiBucketBuilder {
     private volatile int size = 0;
 
     public ModuloBucketBuilder(Streamer<?>[] streamers, int numBuckets, int distributedByColumnIdx) {
+        this(streamers, numBuckets, distributedByColumnIdx, PageFormat.ROW, null);
+    }
+
+    /**
+     * See {@link StreamBucket.Builder#Builder(Streamer[], io.crate.breaker.RamAccountingContext, PageFormat, BigArrays)}
+     */
+    public ModuloBucketBuilder(Streamer<?>[] streamers,
+                               int numBuckets,
+                               int distributedByColumnIdx,
+                               PageFormat pageFormat,
+                               @Nullable BigArrays bigArrays) {
         this.numBuckets = numBuckets;
         this.distributedByColumnIdx = distributedByColumnIdx;
         this.bucketBuilders = new ArrayList<>(numBuckets);
         for (int i = 0; i < numBuckets; i++) {
-            bucketBuilders.add(new StreamBucket.Builder(streamers, null));
+            bucketBuilders.add(new StreamBucket.Builder(streamers, null, pageFormat, bigArrays));
         }
     }
 
@@ -86,6 +98,14 @@ public class ModuloBucketBuilder implements MultiBucketBuilder {
         size = 0;
     }
 
+    @Override
+    public synchronized void close() {
+        for (StreamBucket.Builder builder : bucketBuilders) {
+            builder.close();
+        }
+        size = 0;
+    }
+
     /**
      * get bucket number by doing modulo hashcode of the defined row-element
      */
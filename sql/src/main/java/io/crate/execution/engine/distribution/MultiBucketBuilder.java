@@ -48,4 +48,10 @@ public interface MultiBucketBuilder {
      * N is usually specified in the constructor of a specific PageBuilder implementation.
      */
     void build(Bucket[] buckets);
+
+    /**
+     * Discards the rows added since the last {@link #build(Bucket[])} call and releases the resources they hold.
+     */
+    default void close() {
+    }
 }
@@ -0,0 +1,83 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.distribution;
+
+import org.elasticsearch.cluster.node.DiscoveryNode;
+
+import javax.annotation.Nullable;
+import java.util.Locale;
+
+/**
+ * The format in which {@link StreamBucket}s of distributed pages are sent to other nodes.
+ */
+public enum PageFormat {
+
+    /**
+     * Rows are written one after another, value by value using the streamer of each column.
+     */
+    ROW,
+
+    /**
+     * Values are written per column, see {@link ColumnarPage}.
+     */
+    COLUMNAR,
+
+    /**
+     * Like {@link #COLUMNAR}, but the encoded columns are compressed.
+     */
+    COLUMNAR_COMPRESSED;
+
+    /**
+     * Node attribute holding the {@link io.crate.Version#id} of a node. It's missing on nodes of versions which can't
+     * read the columnar formats.
+     */
+    public static final String VERSION_ATTRIBUTE = "crate_version";
+
+    /**
+     * 3.1.0, the first version which can read the columnar formats
+     */
+    private static final int COLUMNAR_MIN_VERSION_ID = 3010099;
+
+    /**
+     * @return this format if the node can read it, otherwise {@link #ROW}
+     */
+    public PageFormat supportedBy(@Nullable DiscoveryNode node) {
+        if (this == ROW) {
+            return ROW;
+        }
+        String versionId = node == null ? null : node.getAttributes().get(VERSION_ATTRIBUTE);
+        if (versionId == null || Integer.parseInt(versionId) < COLUMNAR_MIN_VERSION_ID) {
+            return ROW;
+        }
+        return this;
+    }
+
+    public static PageFormat of(String value) {
+        try {
+            return valueOf(value.toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                "Invalid page format '%s', must be one of 'row', 'columnar' or 'columnar_compressed'", value));
+        }
+    }
+}
@@ -24,47 +24,104 @@ package io.crate.execution.engine.distribution;
 
 import io.crate.Streamer;
 import io.crate.breaker.RamAccountingContext;
+import io.crate.breaker.SizeEstimator;
+import io.crate.breaker.SizeEstimatorFactory;
 import io.crate.data.Bucket;
 import io.crate.data.Row;
 import io.crate.data.RowN;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.util.BigArrays;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 
-public class StreamBucket implements Bucket, Streamable {
+public class StreamBucket implements Bucket, Streamable, Releasable {
+
+    /**
+     * Written instead of the size of a bucket in {@link PageFormat#COLUMNAR} format, followed by the actual size.
+     * The sizes of row based buckets are never negative.
+     */
+    private static final int COLUMNAR_MARKER = -1;
 
     private Streamer<?>[] streamers;
     private int size = -1;
     private BytesReference bytes;
+    private boolean columnar = false;
+
+    @Nullable
+    private Releasable releasable;
 
     public static class Builder {
 
 
         private static final int INITIAL_PAGE_SIZE = 1024;
+        private static final int INITIAL_NUM_ROWS = 16;
         private final RamAccountingContext ramAccountingContext;
 
+        @Nullable
+        private final BigArrays bigArrays;
+        private final PageFormat pageFormat;
+
         private int size = 0;
         private final Streamer<?>[] streamers;
         private BytesStreamOutput out;
         private int prevOutSize = 0;
+        private int expectedOutSize = INITIAL_PAGE_SIZE;
+
+        /**
+         * The values of the added rows per column, only used by the columnar page formats
+         */
+        private Object[][] columns;
+        private int expectedNumRows = INITIAL_NUM_ROWS;
+        private SizeEstimator<Object>[] sizeEstimators;
 
         public Builder(Streamer<?>[] streamers, RamAccountingContext ramAccountingContext) {
+            this(streamers, ramAccountingContext, PageFormat.ROW, null);
+        }
+
+        /**
+         * @param pageFormat the format in which the built buckets are streamed
+         * @param bigArrays if not null the rows are written into pages obtained from bigArrays.
+         *                  The built buckets then hold on to these pages until they're {@link StreamBucket#close() closed}
+         *                  and the builder must be {@link #close() closed} if it's discarded with pending rows.
+         */
+        public Builder(Streamer<?>[] streamers,
+                       RamAccountingContext ramAccountingContext,
+                       PageFormat pageFormat,
+                       @Nullable BigArrays bigArrays) {
             this.ramAccountingContext = ramAccountingContext;
+            this.pageFormat = pageFormat;
+            this.bigArrays = bigArrays;
             assert validStreamers(streamers) : "streamers must not be null and they shouldn't be of undefinedType";
             this.streamers = streamers;
-            out = new BytesStreamOutput(INITIAL_PAGE_SIZE);
+            if (bigArrays == null && pageFormat == PageFormat.ROW) {
+                out = new BytesStreamOutput(expectedOutSize);
+            }
         }
 
         public void add(Row row) throws IOException {
             assert streamers.length == row.numColumns() : "number of streamer must match row size";
+            if (pageFormat != PageFormat.ROW) {
+                addToColumns(row);
+                return;
+            }
 
+            if (out == null) {
+                // pooled pages are only taken once there is something to write into
+                out = new ReleasableBytesStreamOutput(expectedOutSize, bigArrays);
+            }
             size++;
             for (int i = 0; i < row.numColumns(); i++) {
                 //noinspection unchecked
@@ -76,7 +133,47 @@ public class StreamBucket implements Bucket, Streamable {
             }
         }
 
+        private void addToColumns(Row row) {
+            if (columns == null) {
+                columns = new Object[streamers.length][expectedNumRows];
+            } else if (streamers.length > 0 && size == columns[0].length) {
+                for (int c = 0; c < columns.length; c++) {
+                    columns[c] = Arrays.copyOf(columns[c], size * 2);
+                }
+            }
+            long bytes = 0L;
+            for (int c = 0; c < streamers.length; c++) {
+                Object value = row.get(c);
+                if (value instanceof BytesRef) {
+                    // the row may be backed by buffers which are re-used for the next row
+                    value = BytesRef.deepCopyOf((BytesRef) value);
+                }
+                columns[c][size] = value;
+                if (ramAccountingContext != null) {
+                    bytes += estimateSize(c, value);
+                }
+            }
+            size++;
+            if (ramAccountingContext != null) {
+                ramAccountingContext.addBytes(bytes);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private long estimateSize(int column, Object value) {
+            if (sizeEstimators == null) {
+                sizeEstimators = new SizeEstimator[streamers.length];
+                for (int c = 0; c < streamers.length; c++) {
+                    // the streamers of collection types aren't the types themselves, no type info for those
+                    sizeEstimators[c] = SizeEstimatorFactory.create(
+                        streamers[c] instanceof DataType ? (DataType) streamers[c] : DataTypes.OBJECT);
+                }
+            }
+            return sizeEstimators[column].estimateSize(value);
+        }
+
         public void writeToStream(StreamOutput output) throws IOException {
+            assert pageFormat == PageFormat.ROW : "Only row based pages can be written directly";
             output.writeVInt(size);
             if (size > 0) {
                 output.writeBytesReference(out.bytes());
@@ -86,13 +183,69 @@ public class StreamBucket implements Bucket, Streamable {
         public StreamBucket build() throws IOException {
             StreamBucket sb = new StreamBucket(streamers);
             sb.size = size;
+            if (pageFormat != PageFormat.ROW) {
+                if (size > 0) {
+                    buildColumnar(sb);
+                }
+                return sb;
+            }
+            if (out == null) {
+                return sb;
+            }
             sb.bytes = out.bytes();
+            if (out instanceof Releasable) {
+                sb.releasable = (Releasable) out;
+            }
             return sb;
         }
 
+        private void buildColumnar(StreamBucket sb) throws IOException {
+            BytesStreamOutput columnarOut = bigArrays == null
+                ? new BytesStreamOutput(expectedOutSize)
+                : new ReleasableBytesStreamOutput(expectedOutSize, bigArrays);
+            ColumnarPage.encode(
+                columnarOut, streamers, columns, size, pageFormat == PageFormat.COLUMNAR_COMPRESSED);
+            sb.bytes = columnarOut.bytes();
+            sb.columnar = true;
+            if (columnarOut instanceof Releasable) {
+                sb.releasable = (Releasable) columnarOut;
+            }
+            // next bucket is probably going to have the same size
+            expectedOutSize = Math.max(columnarOut.size(), INITIAL_PAGE_SIZE);
+        }
+
+        /**
+         * Starts a new bucket. The bytes of the previously built bucket are owned by that bucket and not re-used.
+         */
         public void reset() {
-            out = new BytesStreamOutput(size); // next bucket is probably going to have the same size
+            if (pageFormat != PageFormat.ROW) {
+                expectedNumRows = Math.max(size, INITIAL_NUM_ROWS);
+                columns = null;
+                size = 0;
+                return;
+            }
+            if (out != null) {
+                // next bucket is probably going to have the same size
+                expectedOutSize = Math.max(out.size(), INITIAL_PAGE_SIZE);
+            }
+            out = bigArrays == null ? new BytesStreamOutput(expectedOutSize) : null;
             size = 0;
+            prevOutSize = 0;
+        }
+
+        /**
+         * Releases the pages holding rows that have been added since the last {@link #build()}.
+         */
+        public void close() {
+            if (out instanceof Releasable) {
+                ((Releasable) out).close();
+                out = null;
+                size = 0;
+            }
+            if (columns != null) {
+                columns = null;
+                size = 0;
+            }
         }
     }
 
@@ -138,6 +291,40 @@ public class StreamBucket implements Bucket, Streamable {
         }
     }
 
+    private static class ColumnarRowIterator implements Iterator<Row> {
+
+        private final Object[][] columns;
+        private final int size;
+        private final Object[] current;
+        private final RowN row;
+        private int pos = 0;
+
+        private ColumnarRowIterator(Object[][] columns, int size) {
+            this.columns = columns;
+            this.size = size;
+            current = new Object[columns.length];
+            row = new RowN(current);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pos < size;
+        }
+
+        @Override
+        public Row next() {
+            for (int c = 0; c < columns.length; c++) {
+                current[c] = columns[c][pos];
+            }
+            pos++;
+            return row;
+        }
+
+        @Override
+        public void remove() {
+        }
+    }
+
     private static class RowIterator implements Iterator<Row> {
 
         private final Streamer<?>[] streamers;
@@ -185,15 +372,37 @@ public class StreamBucket implements Bucket, Streamable {
         }
         assert streamers != null : "streamers must not be null";
         try {
+            if (columnar) {
+                return new ColumnarRowIterator(ColumnarPage.decode(streamers, size, bytes), size);
+            }
             return new RowIterator(bytes.streamInput(), streamers, size);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Returns the pages of a bucket that has been built using pooled pages, after which it must no longer be read.
+     * This is a no-op for any other bucket.
+     */
+    @Override
+    public void close() {
+        Releasable r = releasable;
+        if (r != null) {
+            releasable = null;
+            bytes = null;
+            size = 0;
+            r.close();
+        }
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         size = in.readVInt();
+        if (size == COLUMNAR_MARKER) {
+            columnar = true;
+            size = in.readVInt();
+        }
         if (size > 0) {
             bytes = in.readBytesReference();
         }
@@ -202,6 +411,9 @@ public class StreamBucket implements Bucket, Streamable {
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         assert size > -1 : "size must be > -1";
+        if (columnar) {
+            out.writeVInt(COLUMNAR_MARKER);
+        }
         out.writeVInt(size);
         if (size > 0) {
             out.writeBytesReference(bytes);
@@ -23,6 +23,7 @@
 package io.crate.execution.engine.export;
 
 import com.google.common.annotations.VisibleForTesting;
+import io.crate.breaker.RamAccountingContext;
 import io.crate.data.Input;
 import io.crate.data.Row;
 import io.crate.data.Row1;
@@ -35,6 +36,7 @@ import io.crate.execution.engine.export.Output;
 import io.crate.execution.engine.export.OutputFile;
 import io.crate.execution.engine.export.OutputS3;
 import io.crate.execution.dsl.projection.WriterProjection;
+import io.crate.types.DataType;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
@@ -73,35 +75,47 @@ public class FileWriterCountCollector implements Collector<Row, long[], Iterable
     private final Map<String, Object> overwrites;
     @Nullable
     private final List<String> outputNames;
+    @Nullable
+    private final List<? extends DataType> outputTypes;
     private final WriterProjection.OutputFormat outputFormat;
     private final WriterProjection.CompressionType compressionType;
+    private final RamAccountingContext ramAccountingContext;
     private Output output;
 
     private final RowWriter rowWriter;
 
     FileWriterCountCollector(ExecutorService executorService,
+                             OutputS3Limits s3Limits,
                              String uri,
                              @Nullable WriterProjection.CompressionType compressionType,
                              @Nullable List<Input<?>> inputs,
                              Iterable<CollectExpression<Row, ?>> collectExpressions,
                              Map<ColumnIdent, Object> overwrites,
                              @Nullable List<String> outputNames,
-                             WriterProjection.OutputFormat outputFormat) {
+                             @Nullable List<? extends DataType> outputTypes,
+                             WriterProjection.OutputFormat outputFormat,
+                             RamAccountingContext ramAccountingContext) {
         this.collectExpressions = collectExpressions;
         this.inputs = inputs;
         this.overwrites = toNestedStringObjectMap(overwrites);
         this.outputNames = outputNames;
+        this.outputTypes = outputTypes;
         this.outputFormat = outputFormat;
         this.compressionType = compressionType;
+        this.ramAccountingContext = ramAccountingContext;
         try {
             this.uri = new URI(uri);
         } catch (URISyntaxException e) {
             throw new SQLParseException(String.format(Locale.ENGLISH, "Invalid uri '%s'", uri), e);
         }
+        // parquet files compress their pages, not the whole file
+        WriterProjection.CompressionType streamCompressionType =
+            outputFormat == WriterProjection.OutputFormat.PARQUET ? null : compressionType;
         if (this.uri.getScheme() == null || this.uri.getScheme().equals("file")) {
-            this.output = new OutputFile(this.uri, this.compressionType);
+            this.output = new OutputFile(this.uri, streamCompressionType);
         } else if (this.uri.getScheme().equalsIgnoreCase("s3")) {
-            this.output = new OutputS3(executorService, this.uri, this.compressionType);
+            this.output = new OutputS3(
+                executorService, this.uri, streamCompressionType, s3Limits, ramAccountingContext);
         } else {
             throw new UnsupportedFeatureException(String.format(Locale.ENGLISH, "Unknown scheme '%s'", this.uri.getScheme()));
         }
@@ -153,6 +167,15 @@ public class FileWriterCountCollector implements Collector<Row, long[], Iterable
                     output.acquireOutputStream(), collectExpressions, overwrites);
             } else if (outputFormat.equals(WriterProjection.OutputFormat.JSON_ARRAY)) {
                 return new ColumnRowWriter(output.acquireOutputStream(), collectExpressions, inputs);
+            } else if (outputNames != null && outputFormat.equals(WriterProjection.OutputFormat.PARQUET)) {
+                return new ParquetRowWriter(
+                    output.acquireOutputStream(),
+                    collectExpressions,
+                    inputs,
+                    outputNames,
+                    outputTypes,
+                    compressionType,
+                    ramAccountingContext);
             } else if (outputNames != null && outputFormat.equals(WriterProjection.OutputFormat.JSON_OBJECT)) {
                 return new ColumnRowObjectWriter(output.acquireOutputStream(), collectExpressions, inputs, outputNames);
             } else {
@@ -168,8 +191,9 @@ public class FileWriterCountCollector implements Collector<Row, long[], Iterable
             if (rowWriter != null) {
                 rowWriter.close();
             }
-        } catch (IOException ignored) {
-
+        } catch (IOException e) {
+            // e.g. a failed upload to S3 surfaces only when the output is closed
+            throw new UnhandledServerException("Failed to close output", e);
         }
     }
 
@@ -348,4 +372,53 @@ public class FileWriterCountCollector implements Collector<Row, long[], Iterable
             }
         }
     }
+
+    /**
+     * Writes the values of the inputs as columns of a parquet file, see {@link ParquetFileWriter}.
+     */
+    static class ParquetRowWriter implements RowWriter {
+
+        private final Iterable<CollectExpression<Row, ?>> collectExpressions;
+        private final List<Input<?>> inputs;
+        private final ParquetFileWriter writer;
+        private final Object[] values;
+
+        ParquetRowWriter(OutputStream outputStream,
+                         Iterable<CollectExpression<Row, ?>> collectExpressions,
+                         List<Input<?>> inputs,
+                         List<String> outputNames,
+                         List<? extends DataType> outputTypes,
+                         @Nullable WriterProjection.CompressionType compressionType,
+                         RamAccountingContext ramAccountingContext) throws IOException {
+            this.collectExpressions = collectExpressions;
+            this.inputs = inputs;
+            this.writer = new ParquetFileWriter(
+                outputStream,
+                outputNames,
+                outputTypes,
+                compressionType == WriterProjection.CompressionType.GZIP,
+                ramAccountingContext);
+            this.values = new Object[inputs.size()];
+        }
+
+        @Override
+        public void write(Row row) {
+            for (CollectExpression<Row, ?> collectExpression : collectExpressions) {
+                collectExpression.setNextRow(row);
+            }
+            for (int i = 0; i < values.length; i++) {
+                values[i] = inputs.get(i).value();
+            }
+            try {
+                writer.write(values);
+            } catch (IOException e) {
+                throw new UnhandledServerException("Failed to write row to output", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
 }
@@ -22,6 +22,7 @@
 
 package io.crate.execution.engine.export;
 
+import io.crate.breaker.RamAccountingContext;
 import io.crate.data.BatchIterator;
 import io.crate.data.CollectingBatchIterator;
 import io.crate.data.Input;
@@ -30,6 +31,7 @@ import io.crate.data.Row;
 import io.crate.metadata.ColumnIdent;
 import io.crate.execution.engine.collect.CollectExpression;
 import io.crate.execution.dsl.projection.WriterProjection;
+import io.crate.types.DataType;
 
 import javax.annotation.Nullable;
 import java.util.List;
@@ -44,9 +46,13 @@ public class FileWriterProjector implements Projector {
     private final Map<ColumnIdent, Object> overwrites;
     @Nullable
     private final List<String> outputNames;
+    @Nullable
+    private final List<? extends DataType> outputTypes;
     private final WriterProjection.OutputFormat outputFormat;
     private final WriterProjection.CompressionType compressionType;
     private final ExecutorService executorService;
+    private final OutputS3Limits s3Limits;
+    private final RamAccountingContext ramAccountingContext;
 
     /**
      * @param inputs a list of {@link Input}.
@@ -55,23 +61,33 @@ public class FileWriterProjector implements Projector {
      *               That raw source is then written to the output
      *               <p/>
      *               If inputs is not null the inputs are consumed to write a JSON array to the output.
+     * @param outputTypes the types of the inputs, used to write the columns of the parquet format.
+     * @param s3Limits the limits of the upload to S3.
+     * @param ramAccountingContext accounts the data which is buffered before it's written, e.g. parquet row groups
+     *                             or the parts of an upload to S3.
      */
     public FileWriterProjector(ExecutorService executorService,
+                               OutputS3Limits s3Limits,
                                String uri,
                                @Nullable WriterProjection.CompressionType compressionType,
                                @Nullable List<Input<?>> inputs,
                                Iterable<CollectExpression<Row, ?>> collectExpressions,
                                Map<ColumnIdent, Object> overwrites,
                                @Nullable List<String> outputNames,
-                               WriterProjection.OutputFormat outputFormat) {
+                               @Nullable List<? extends DataType> outputTypes,
+                               WriterProjection.OutputFormat outputFormat,
+                               RamAccountingContext ramAccountingContext) {
         this.collectExpressions = collectExpressions;
         this.executorService = executorService;
+        this.s3Limits = s3Limits;
         this.inputs = inputs;
         this.overwrites = overwrites;
         this.outputNames = outputNames;
+        this.outputTypes = outputTypes;
         this.outputFormat = outputFormat;
         this.compressionType = compressionType;
         this.uri = uri;
+        this.ramAccountingContext = ramAccountingContext;
     }
 
     @Override
@@ -80,13 +96,16 @@ public class FileWriterProjector implements Projector {
             batchIterator,
             new FileWriterCountCollector(
                 executorService,
+                s3Limits,
                 uri.toString(),
                 compressionType,
                 inputs,
                 collectExpressions,
                 overwrites,
                 outputNames,
-                outputFormat
+                outputTypes,
+                outputFormat,
+                ramAccountingContext
             )
         );
     }
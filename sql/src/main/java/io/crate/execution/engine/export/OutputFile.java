@@ -24,7 +24,9 @@ package io.crate.execution.engine.export;
 
 import com.google.common.base.Preconditions;
 import io.crate.execution.dsl.projection.WriterProjection;
+import net.jpountz.lz4.LZ4FrameOutputStream;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -36,12 +38,13 @@ public class OutputFile extends Output {
 
     private final String path;
     private final boolean overwrite;
-    private final boolean compression;
+    @Nullable
+    private final WriterProjection.CompressionType compressionType;
 
-    public OutputFile(URI uri, WriterProjection.CompressionType compressionType) {
+    public OutputFile(URI uri, @Nullable WriterProjection.CompressionType compressionType) {
         Preconditions.checkArgument(uri.getHost() == null);
         this.path = uri.getPath();
-        compression = compressionType != null;
+        this.compressionType = compressionType;
         this.overwrite = true;
     }
 
@@ -57,8 +60,10 @@ public class OutputFile extends Output {
             }
         }
         OutputStream os = new FileOutputStream(outFile);
-        if (compression) {
+        if (compressionType == WriterProjection.CompressionType.GZIP) {
             os = new GZIPOutputStream(os);
+        } else if (compressionType == WriterProjection.CompressionType.LZ4) {
+            os = new LZ4FrameOutputStream(os);
         }
         return os;
     }
@@ -23,74 +23,129 @@
 package io.crate.execution.engine.export;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
 import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
 import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.amazonaws.services.s3.model.UploadPartResult;
-import com.google.common.util.concurrent.Futures;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
-import io.crate.external.S3ClientHelper;
+import io.crate.breaker.RamAccountingContext;
 import io.crate.execution.dsl.projection.WriterProjection;
+import io.crate.external.S3ClientHelper;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.zip.GZIPOutputStream;
 
 @NotThreadSafe
 public class OutputS3 extends Output {
 
     private final ExecutorService executorService;
     private final URI uri;
-    private final boolean compression;
+    @Nullable
+    private final WriterProjection.CompressionType compressionType;
+    private final OutputS3Limits limits;
+    private final RamAccountingContext ramAccountingContext;
+    private final S3ClientHelper s3ClientHelper;
+
+    public OutputS3(ExecutorService executorService,
+                    URI uri,
+                    @Nullable WriterProjection.CompressionType compressionType,
+                    OutputS3Limits limits,
+                    RamAccountingContext ramAccountingContext) {
+        this(executorService, uri, compressionType, limits, ramAccountingContext, new S3ClientHelper());
+    }
 
-    public OutputS3(ExecutorService executorService, URI uri, WriterProjection.CompressionType compressionType) {
+    @VisibleForTesting
+    OutputS3(ExecutorService executorService,
+             URI uri,
+             @Nullable WriterProjection.CompressionType compressionType,
+             OutputS3Limits limits,
+             RamAccountingContext ramAccountingContext,
+             S3ClientHelper s3ClientHelper) {
         this.executorService = executorService;
         this.uri = uri;
-        compression = compressionType != null;
+        this.s3ClientHelper = s3ClientHelper;
+        this.compressionType = compressionType;
+        this.limits = limits;
+        this.ramAccountingContext = ramAccountingContext;
     }
 
     @Override
     public OutputStream acquireOutputStream() throws IOException {
-        OutputStream outputStream = new S3OutputStream(executorService, uri, new S3ClientHelper());
-        if (compression) {
-            outputStream = new GZIPOutputStream(outputStream);
+        OutputStream outputStream = new S3OutputStream(
+            executorService, uri, s3ClientHelper, limits.partSize(), limits.maxConcurrentParts(), ramAccountingContext);
+        if (compressionType == WriterProjection.CompressionType.GZIP) {
+            outputStream = new ParallelGZIPOutputStream(
+                outputStream,
+                executorService,
+                ParallelGZIPOutputStream.DEFAULT_BLOCK_SIZE,
+                limits.compressionPermits(),
+                limits.maxCompressionBlocks());
+        } else if (compressionType == WriterProjection.CompressionType.LZ4) {
+            outputStream = new LZ4FrameOutputStream(outputStream);
         }
         return outputStream;
     }
 
-
+    /**
+     * Streams the data to S3 using a multipart upload.
+     * <p>
+     * Parts are uploaded in the background once {@code partSize} bytes have been written. If
+     * {@code maxConcurrentParts} uploads are pending, writing blocks until the oldest upload has finished,
+     * so that at most {@code (maxConcurrentParts + 1) * partSize} bytes are held in memory. These bytes are
+     * accounted until the upload of the part has finished. If an upload fails, the multipart upload is aborted.
+     */
     private static class S3OutputStream extends OutputStream {
 
-        private static final int PART_SIZE = 5 * 1024 * 1024;
-
         private final AmazonS3 client;
         private final InitiateMultipartUploadResult multipartUpload;
         private final String bucketName;
         private final String key;
         private final ListeningExecutorService executorService;
-        private final List<PartETag> etags = Collections.<PartETag>synchronizedList(new ArrayList<PartETag>());
-        private final List<ListenableFuture<?>> pendingUploads = new ArrayList<>();
+        private final int partSize;
+        private final int maxConcurrentParts;
+        private final RamAccountingContext ramAccountingContext;
+        private final List<PartETag> etags = Collections.synchronizedList(new ArrayList<>());
+        private final Deque<ListenableFuture<?>> pendingUploads = new ArrayDeque<>();
+        private final Deque<Integer> pendingUploadSizes = new ArrayDeque<>();
 
         private ByteArrayOutputStream outputStream;
-        long currentPartBytes = 0;
+        private long pendingBytes = 0;
+        private long accountedBytes = 0;
         int partNumber = 1;
+        private boolean closed = false;
 
-        private S3OutputStream(ExecutorService executor, URI uri, S3ClientHelper s3ClientHelper) throws IOException {
+        private S3OutputStream(ExecutorService executor,
+                               URI uri,
+                               S3ClientHelper s3ClientHelper,
+                               int partSize,
+                               int maxConcurrentParts,
+                               RamAccountingContext ramAccountingContext) throws IOException {
             bucketName = uri.getHost();
             key = uri.getPath().substring(1);
+            this.partSize = partSize;
+            this.maxConcurrentParts = maxConcurrentParts;
+            this.ramAccountingContext = ramAccountingContext;
             outputStream = new ByteArrayOutputStream();
             client = s3ClientHelper.client(uri);
             executorService = MoreExecutors.listeningDecorator(executor);
@@ -101,75 +156,117 @@ public class OutputS3 extends Output {
         @Override
         public void write(byte[] b) throws IOException {
             outputStream.write(b);
-            currentPartBytes += b.length;
             doUploadIfNeeded();
         }
 
         @Override
         public void write(byte[] b, int off, int len) throws IOException {
             outputStream.write(b, off, len);
-            currentPartBytes += len;
             doUploadIfNeeded();
         }
 
         @Override
         public void write(int b) throws IOException {
             outputStream.write(b);
-            currentPartBytes++;
             doUploadIfNeeded();
         }
 
         private void doUploadIfNeeded() throws IOException {
-            if (currentPartBytes >= PART_SIZE) {
-                final ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
-                final int currentPart = partNumber;
-                final long currentPartSize = currentPartBytes;
-
-                outputStream.close();
-                outputStream = new ByteArrayOutputStream();
-                partNumber++;
-                ListenableFuture<?> future = executorService.submit(new Runnable() {
-                    @Override
-                    public void run() {
-                        UploadPartRequest uploadPartRequest = new UploadPartRequest()
-                            .withBucketName(bucketName)
-                            .withKey(key)
-                            .withPartNumber(currentPart)
-                            .withPartSize(currentPartSize)
-                            .withUploadId(multipartUpload.getUploadId())
-                            .withInputStream(inputStream);
-                        UploadPartResult uploadPartResult = client.uploadPart(uploadPartRequest);
-                        etags.add(uploadPartResult.getPartETag());
-                    }
-                });
-                pendingUploads.add(future);
-                currentPartBytes = 0;
+            long bufferedBytes = outputStream.size() + pendingBytes;
+            if (bufferedBytes > accountedBytes) {
+                try {
+                    ramAccountingContext.addBytes(bufferedBytes - accountedBytes);
+                } catch (CircuitBreakingException e) {
+                    // closing the stream afterwards must not complete the upload with the data written so far
+                    closed = true;
+                    abort();
+                    throw e;
+                }
+                accountedBytes = bufferedBytes;
+            }
+            if (outputStream.size() >= partSize) {
+                uploadPart();
+                while (pendingUploads.size() > maxConcurrentParts) {
+                    waitForOldestUpload();
+                }
             }
         }
 
-        @Override
-        public void close() throws IOException {
-            UploadPartRequest uploadPartRequest = new UploadPartRequest()
-                .withBucketName(bucketName)
-                .withKey(key)
-                .withPartNumber(partNumber)
-                .withPartSize(outputStream.size())
-                .withUploadId(multipartUpload.getUploadId())
-                .withInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
-            UploadPartResult uploadPartResult = client.uploadPart(uploadPartRequest);
-            etags.add(uploadPartResult.getPartETag());
-            ListenableFuture<List<Object>> future = Futures.allAsList(pendingUploads);
+        private void uploadPart() {
+            final byte[] bytes = outputStream.toByteArray();
+            final int currentPart = partNumber;
+            outputStream = new ByteArrayOutputStream();
+            partNumber++;
+            ListenableFuture<?> future = executorService.submit(() -> {
+                UploadPartRequest uploadPartRequest = new UploadPartRequest()
+                    .withBucketName(bucketName)
+                    .withKey(key)
+                    .withPartNumber(currentPart)
+                    .withPartSize(bytes.length)
+                    .withUploadId(multipartUpload.getUploadId())
+                    .withInputStream(new ByteArrayInputStream(bytes));
+                UploadPartResult uploadPartResult = client.uploadPart(uploadPartRequest);
+                etags.add(uploadPartResult.getPartETag());
+            });
+            pendingUploads.add(future);
+            pendingUploadSizes.add(bytes.length);
+            pendingBytes += bytes.length;
+        }
+
+        private void waitForOldestUpload() throws IOException {
+            ListenableFuture<?> future = pendingUploads.poll();
+            int size = pendingUploadSizes.poll();
+            pendingBytes -= size;
             try {
                 future.get();
+                release(size);
             } catch (InterruptedException | ExecutionException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                abort();
                 throw new IOException(e);
             }
+        }
+
+        private void release(long bytes) {
+            long released = Math.min(bytes, accountedBytes);
+            ramAccountingContext.releaseBytes(released);
+            accountedBytes -= released;
+        }
+
+        private void abort() {
+            for (ListenableFuture<?> pendingUpload : pendingUploads) {
+                pendingUpload.cancel(false);
+            }
+            pendingUploads.clear();
+            pendingUploadSizes.clear();
+            pendingBytes = 0;
+            release(accountedBytes);
+            client.abortMultipartUpload(
+                new AbortMultipartUploadRequest(bucketName, key, multipartUpload.getUploadId()));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            // the last part may be smaller than the minimum part size of S3
+            uploadPart();
+            while (pendingUploads.isEmpty() == false) {
+                waitForOldestUpload();
+            }
+            List<PartETag> partETags = new ArrayList<>(etags);
+            // S3 requires the parts to be listed in ascending order, the uploads may finish in any order
+            partETags.sort(Comparator.comparingInt(PartETag::getPartNumber));
             client.completeMultipartUpload(
                 new CompleteMultipartUploadRequest(
                     bucketName,
                     key,
                     multipartUpload.getUploadId(),
-                    etags)
+                    partETags)
             );
             super.close();
         }
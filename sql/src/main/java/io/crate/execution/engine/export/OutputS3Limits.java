@@ -0,0 +1,107 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.export;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.crate.settings.CrateSetting;
+import io.crate.types.DataTypes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * The limits of the uploads of {@code COPY TO} to S3 on this node.
+ * <p>
+ * The part size and the number of concurrently uploaded parts of a file follow the {@code copy_to.s3} settings,
+ * which can be set in the node settings and updated at runtime as cluster settings. The blocks compressed in
+ * parallel with {@code gzip} compression are bounded for all files written by the node, not per file.
+ */
+@Singleton
+public class OutputS3Limits {
+
+    public static final CrateSetting<ByteSizeValue> PART_SIZE_SETTING = CrateSetting.of(Setting.byteSizeSetting(
+        "copy_to.s3.part_size", new ByteSizeValue(5, ByteSizeUnit.MB),
+        new ByteSizeValue(5, ByteSizeUnit.MB), new ByteSizeValue(100, ByteSizeUnit.MB),
+        Setting.Property.NodeScope, Setting.Property.Dynamic), DataTypes.STRING);
+
+    public static final CrateSetting<Integer> MAX_CONCURRENT_PARTS_SETTING = CrateSetting.of(Setting.intSetting(
+        "copy_to.s3.max_concurrent_parts", 4, 1, Setting.Property.NodeScope, Setting.Property.Dynamic),
+        DataTypes.INTEGER);
+
+    private final int maxCompressionBlocks;
+    private final Semaphore compressionPermits;
+    private volatile int partSize;
+    private volatile int maxConcurrentParts;
+
+    @Inject
+    public OutputS3Limits(Settings settings, ClusterService clusterService) {
+        this(settings, Runtime.getRuntime().availableProcessors());
+        clusterService.getClusterSettings().addSettingsUpdateConsumer(PART_SIZE_SETTING.setting(), this::setPartSize);
+        clusterService.getClusterSettings().addSettingsUpdateConsumer(
+            MAX_CONCURRENT_PARTS_SETTING.setting(), this::setMaxConcurrentParts);
+    }
+
+    @VisibleForTesting
+    public OutputS3Limits(Settings settings, int maxCompressionBlocks) {
+        this.maxCompressionBlocks = maxCompressionBlocks;
+        this.compressionPermits = new Semaphore(maxCompressionBlocks);
+        setPartSize(PART_SIZE_SETTING.setting().get(settings));
+        setMaxConcurrentParts(MAX_CONCURRENT_PARTS_SETTING.setting().get(settings));
+    }
+
+    private void setPartSize(ByteSizeValue partSize) {
+        this.partSize = (int) partSize.getBytes();
+    }
+
+    private void setMaxConcurrentParts(int maxConcurrentParts) {
+        this.maxConcurrentParts = maxConcurrentParts;
+    }
+
+    int partSize() {
+        return partSize;
+    }
+
+    int maxConcurrentParts() {
+        return maxConcurrentParts;
+    }
+
+    /**
+     * @return the maximum number of blocks compressed at the same time on this node
+     */
+    int maxCompressionBlocks() {
+        return maxCompressionBlocks;
+    }
+
+    /**
+     * Permits to compress a block on the generic pool, shared by all files written by this node.
+     */
+    Semaphore compressionPermits() {
+        return compressionPermits;
+    }
+}
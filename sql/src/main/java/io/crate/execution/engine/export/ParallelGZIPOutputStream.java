@@ -0,0 +1,178 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.export;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An OutputStream which compresses blocks of the written data concurrently.
+ * <p>
+ * Every block is compressed into a complete gzip member. The members are written to the
+ * underlying stream in order, which results in a valid multi-member gzip file that can be
+ * read by {@link java.util.zip.GZIPInputStream} and gunzip.
+ * <p>
+ * A block is only compressed on the executor if one of the {@code compressionPermits} is available,
+ * which are shared by all streams of a node. Otherwise it's compressed on the writing thread, so that
+ * the number of blocks held for compression is bounded per node and not per stream. At most
+ * {@code maxPendingBlocks} blocks of a stream are pending, writing further data blocks until the oldest
+ * block has been compressed and written.
+ */
+@NotThreadSafe
+class ParallelGZIPOutputStream extends OutputStream {
+
+    static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private final OutputStream out;
+    private final ListeningExecutorService executorService;
+    private final int blockSize;
+    private final Semaphore compressionPermits;
+    private final int maxPendingBlocks;
+    private final Deque<ListenableFuture<byte[]>> pendingBlocks = new ArrayDeque<>();
+
+    private byte[] block;
+    private int blockLength = 0;
+    private boolean wroteBlock = false;
+    private boolean closed = false;
+
+    ParallelGZIPOutputStream(OutputStream out,
+                             ExecutorService executorService,
+                             int blockSize,
+                             Semaphore compressionPermits,
+                             int maxPendingBlocks) {
+        assert blockSize > 0 : "blockSize must be greater than 0";
+        assert maxPendingBlocks > 0 : "maxPendingBlocks must be greater than 0";
+        this.out = out;
+        this.executorService = MoreExecutors.listeningDecorator(executorService);
+        this.blockSize = blockSize;
+        this.compressionPermits = compressionPermits;
+        this.maxPendingBlocks = maxPendingBlocks;
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        block[blockLength++] = (byte) b;
+        if (blockLength == blockSize) {
+            compressBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+            if (blockLength == blockSize) {
+                compressBlock();
+            }
+        }
+    }
+
+    private void compressBlock() throws IOException {
+        final byte[] data = blockLength == block.length ? block : Arrays.copyOf(block, blockLength);
+        if (compressionPermits.tryAcquire()) {
+            try {
+                pendingBlocks.add(executorService.submit(() -> {
+                    try {
+                        return compress(data);
+                    } finally {
+                        compressionPermits.release();
+                    }
+                }));
+            } catch (RuntimeException e) {
+                compressionPermits.release();
+                throw e;
+            }
+        } else {
+            pendingBlocks.add(Futures.immediateFuture(compress(data)));
+        }
+        wroteBlock = true;
+        block = new byte[blockSize];
+        blockLength = 0;
+        while (pendingBlocks.size() > maxPendingBlocks) {
+            writeOldestBlock();
+        }
+    }
+
+    private static byte[] compress(byte[] data) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(data);
+        }
+        return compressed.toByteArray();
+    }
+
+    private void writeOldestBlock() throws IOException {
+        ListenableFuture<byte[]> future = pendingBlocks.poll();
+        try {
+            out.write(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // an empty output still needs a gzip member to be a valid gzip file
+            if (blockLength > 0 || wroteBlock == false) {
+                compressBlock();
+            }
+            while (pendingBlocks.isEmpty() == false) {
+                writeOldestBlock();
+            }
+        } catch (IOException e) {
+            // the underlying stream is not closed, closing it could complete an upload with missing data
+            for (ListenableFuture<byte[]> pendingBlock : pendingBlocks) {
+                pendingBlock.cancel(false);
+            }
+            throw e;
+        }
+        out.close();
+    }
+}
@@ -0,0 +1,615 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.export;
+
+import io.crate.Version;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.types.BooleanType;
+import io.crate.types.ByteType;
+import io.crate.types.DataType;
+import io.crate.types.DoubleType;
+import io.crate.types.FloatType;
+import io.crate.types.IntegerType;
+import io.crate.types.IpType;
+import io.crate.types.LongType;
+import io.crate.types.ShortType;
+import io.crate.types.StringType;
+import io.crate.types.TimestampType;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes rows to an {@link OutputStream} in the Apache Parquet file format.
+ * <p>
+ * Every output is written as an optional column of the primitive type that matches its {@link DataType}, see
+ * {@link #parquetType(DataType)}. Objects, arrays and geo types are written as JSON documents.
+ * <p>
+ * The rows of a row group are buffered in memory, column by column, until they take up about
+ * {@link #ROW_GROUP_SIZE} bytes. The column chunks of a row group consist of data pages (v1) with the definition
+ * levels encoded using the RLE/bit-packing hybrid and the values using the PLAIN encoding. The pages are
+ * optionally compressed with GZIP. The file metadata is written as footer once the writer is closed.
+ * <p>
+ * The buffers keep their capacity when a page or a row group has been written, so the largest number of bytes they
+ * buffered is accounted on the {@link RamAccountingContext} until the writer is closed.
+ */
+final class ParquetFileWriter implements Closeable {
+
+    private static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Row groups are buffered completely in memory, per shard that is exported, and accounted on the query breaker.
+     */
+    static final int ROW_GROUP_SIZE = 16 * 1024 * 1024;
+    static final int PAGE_SIZE = 1024 * 1024;
+
+    /**
+     * Bounds the number of values of a page, so that null values, which take up no space, are also split into pages.
+     */
+    private static final int MAX_PAGE_VALUES = 20_000;
+
+    // see parquet.thrift
+    static final int TYPE_BOOLEAN = 0;
+    static final int TYPE_INT32 = 1;
+    static final int TYPE_INT64 = 2;
+    static final int TYPE_FLOAT = 4;
+    static final int TYPE_DOUBLE = 5;
+    static final int TYPE_BYTE_ARRAY = 6;
+
+    private static final int NO_CONVERTED_TYPE = -1;
+    static final int CONVERTED_TYPE_UTF8 = 0;
+    static final int CONVERTED_TYPE_TIMESTAMP_MILLIS = 9;
+    static final int CONVERTED_TYPE_INT_8 = 15;
+    static final int CONVERTED_TYPE_INT_16 = 16;
+    static final int CONVERTED_TYPE_JSON = 19;
+
+    private static final int REPETITION_OPTIONAL = 1;
+    private static final int ENCODING_PLAIN = 0;
+    private static final int ENCODING_RLE = 3;
+    private static final int PAGE_TYPE_DATA_PAGE = 0;
+    static final int CODEC_UNCOMPRESSED = 0;
+    static final int CODEC_GZIP = 2;
+
+    private final OutputStream out;
+    private final ColumnChunkWriter[] columns;
+    private final int codec;
+    private final RamAccountingContext ramAccountingContext;
+    private final ByteArrayOutputStream rowGroupsMetaData = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream pageBody = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream compressedPageBody = new ByteArrayOutputStream();
+
+    private long position = 0;
+    private long numRows = 0;
+    private int numRowGroups = 0;
+    private int rowGroupNumRows = 0;
+    private long retainedPageBytes = 0;
+    private long accountedBytes = 0;
+
+    ParquetFileWriter(OutputStream out,
+                      List<String> names,
+                      List<? extends DataType> types,
+                      boolean gzip,
+                      RamAccountingContext ramAccountingContext) throws IOException {
+        assert names.size() == types.size() : "there must be a type for every column name";
+        this.out = out;
+        this.codec = gzip ? CODEC_GZIP : CODEC_UNCOMPRESSED;
+        this.ramAccountingContext = ramAccountingContext;
+        this.columns = new ColumnChunkWriter[names.size()];
+        for (int i = 0; i < columns.length; i++) {
+            int[] parquetType = parquetType(types.get(i));
+            columns[i] = new ColumnChunkWriter(names.get(i), parquetType[0], parquetType[1]);
+        }
+        write(MAGIC, 0, MAGIC.length);
+    }
+
+    /**
+     * @return the physical type and the converted type, or {@link #NO_CONVERTED_TYPE}, a column of the given type is
+     * written as
+     */
+    static int[] parquetType(DataType type) {
+        switch (type.id()) {
+            case BooleanType.ID:
+                return new int[]{TYPE_BOOLEAN, NO_CONVERTED_TYPE};
+            case ByteType.ID:
+                return new int[]{TYPE_INT32, CONVERTED_TYPE_INT_8};
+            case ShortType.ID:
+                return new int[]{TYPE_INT32, CONVERTED_TYPE_INT_16};
+            case IntegerType.ID:
+                return new int[]{TYPE_INT32, NO_CONVERTED_TYPE};
+            case LongType.ID:
+                return new int[]{TYPE_INT64, NO_CONVERTED_TYPE};
+            case TimestampType.ID:
+                return new int[]{TYPE_INT64, CONVERTED_TYPE_TIMESTAMP_MILLIS};
+            case FloatType.ID:
+                return new int[]{TYPE_FLOAT, NO_CONVERTED_TYPE};
+            case DoubleType.ID:
+                return new int[]{TYPE_DOUBLE, NO_CONVERTED_TYPE};
+            case StringType.ID:
+            case IpType.ID:
+                return new int[]{TYPE_BYTE_ARRAY, CONVERTED_TYPE_UTF8};
+            default:
+                return new int[]{TYPE_BYTE_ARRAY, CONVERTED_TYPE_JSON};
+        }
+    }
+
+    /**
+     * Adds a row. The row group is written to the output once its buffered columns exceed {@link #ROW_GROUP_SIZE}.
+     */
+    void write(Object[] values) throws IOException {
+        assert values.length == columns.length : "there must be a value for every column";
+        long bufferedBytes = 0;
+        retainedPageBytes = Math.max(retainedPageBytes, pageBody.size() + compressedPageBody.size());
+        long retainedBytes = retainedPageBytes;
+        for (int i = 0; i < columns.length; i++) {
+            ColumnChunkWriter column = columns[i];
+            column.write(values[i]);
+            bufferedBytes += column.bufferedBytes();
+            retainedBytes += column.retainedBytes();
+        }
+        if (retainedBytes > accountedBytes) {
+            long newBytes = retainedBytes - accountedBytes;
+            accountedBytes = retainedBytes;
+            ramAccountingContext.addBytes(newBytes);
+        }
+        rowGroupNumRows++;
+        if (bufferedBytes >= ROW_GROUP_SIZE) {
+            writeRowGroup();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeRowGroup();
+            ByteArrayOutputStream footer = new ByteArrayOutputStream();
+            ThriftCompactOutput fileMetaData = new ThriftCompactOutput(footer);
+            fileMetaData.structBegin();
+            fileMetaData.i32Field(1, 1);
+            fileMetaData.listFieldBegin(2, ThriftCompactOutput.TYPE_STRUCT, columns.length + 1);
+            fileMetaData.structBegin();
+            fileMetaData.stringField(4, "schema");
+            fileMetaData.i32Field(5, columns.length);
+            fileMetaData.structEnd();
+            for (ColumnChunkWriter column : columns) {
+                column.writeSchemaElement(fileMetaData);
+            }
+            fileMetaData.i64Field(3, numRows);
+            fileMetaData.listFieldBegin(4, ThriftCompactOutput.TYPE_STRUCT, numRowGroups);
+            // the row groups are complete structs, the list elements can be copied as they are
+            rowGroupsMetaData.writeTo(footer);
+            fileMetaData.stringField(6, "CrateDB " + Version.CURRENT.number());
+            fileMetaData.structEnd();
+
+            footer.writeTo(out);
+            int footerLength = footer.size();
+            out.write(new byte[]{
+                (byte) footerLength, (byte) (footerLength >>> 8), (byte) (footerLength >>> 16), (byte) (footerLength >>> 24)});
+            out.write(MAGIC);
+        } finally {
+            ramAccountingContext.releaseBytes(accountedBytes);
+            accountedBytes = 0;
+            out.close();
+        }
+    }
+
+    private void writeRowGroup() throws IOException {
+        if (rowGroupNumRows == 0) {
+            return;
+        }
+        ThriftCompactOutput rowGroup = new ThriftCompactOutput(rowGroupsMetaData);
+        rowGroup.structBegin();
+        rowGroup.listFieldBegin(1, ThriftCompactOutput.TYPE_STRUCT, columns.length);
+        long totalByteSize = 0;
+        for (ColumnChunkWriter column : columns) {
+            column.finishPage();
+            long offset = position;
+            column.pages.writeTo(out);
+            position += column.pages.size();
+            totalByteSize += column.uncompressedSize;
+            column.writeColumnChunk(rowGroup, offset);
+            column.reset();
+        }
+        rowGroup.i64Field(2, totalByteSize);
+        rowGroup.i64Field(3, rowGroupNumRows);
+        rowGroup.structEnd();
+        numRowGroups++;
+        numRows += rowGroupNumRows;
+        rowGroupNumRows = 0;
+    }
+
+    private void write(byte[] bytes, int offset, int length) throws IOException {
+        out.write(bytes, offset, length);
+        position += length;
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    private static void writeLongLE(ByteArrayOutputStream out, long value) {
+        writeIntLE(out, (int) value);
+        writeIntLE(out, (int) (value >>> 32));
+    }
+
+    private static byte[] intLE(int value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4);
+        writeIntLE(out, value);
+        return out.toByteArray();
+    }
+
+    private static byte[] longLE(long value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8);
+        writeLongLE(out, value);
+        return out.toByteArray();
+    }
+
+    private final class ColumnChunkWriter {
+
+        private final String name;
+        private final int type;
+        private final int convertedType;
+
+        // the current page
+        private final ByteArrayOutputStream values = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream definitionLevels = new ByteArrayOutputStream();
+        private int pageNumValues = 0;
+        private int levelRunValue = -1;
+        private int levelRunLength = 0;
+        private int booleanBits = 0;
+        private int numBooleanBits = 0;
+
+        // the finished pages of the current column chunk
+        private final ByteArrayOutputStream pages = new ByteArrayOutputStream();
+        private long numValues = 0;
+        private long uncompressedSize = 0;
+        private long nullCount = 0;
+        private boolean hasMinMax = false;
+        private long min;
+        private long max;
+        private long retainedBytes = 0;
+
+        ColumnChunkWriter(String name, int type, int convertedType) {
+            this.name = name;
+            this.type = type;
+            this.convertedType = convertedType;
+        }
+
+        long bufferedBytes() {
+            return pages.size() + values.size() + definitionLevels.size();
+        }
+
+        /**
+         * @return the largest number of bytes buffered so far, as the buffers keep their capacity when they're reset
+         */
+        long retainedBytes() {
+            retainedBytes = Math.max(retainedBytes, bufferedBytes());
+            return retainedBytes;
+        }
+
+        void write(Object value) throws IOException {
+            if (value == null) {
+                addDefinitionLevel(0);
+                nullCount++;
+            } else {
+                addDefinitionLevel(1);
+                writeValue(value);
+            }
+            pageNumValues++;
+            if (pageNumValues == MAX_PAGE_VALUES || values.size() >= PAGE_SIZE) {
+                finishPage();
+            }
+        }
+
+        private void writeValue(Object value) throws IOException {
+            switch (type) {
+                case TYPE_BOOLEAN:
+                    if ((Boolean) value) {
+                        booleanBits |= 1 << numBooleanBits;
+                    }
+                    numBooleanBits++;
+                    if (numBooleanBits == 8) {
+                        flushBooleanBits();
+                    }
+                    break;
+                case TYPE_INT32:
+                    int intValue = ((Number) value).intValue();
+                    writeIntLE(values, intValue);
+                    updateMinMax(intValue);
+                    break;
+                case TYPE_INT64:
+                    long longValue = ((Number) value).longValue();
+                    writeLongLE(values, longValue);
+                    updateMinMax(longValue);
+                    break;
+                case TYPE_FLOAT:
+                    writeIntLE(values, Float.floatToIntBits(((Number) value).floatValue()));
+                    break;
+                case TYPE_DOUBLE:
+                    writeLongLE(values, Double.doubleToLongBits(((Number) value).doubleValue()));
+                    break;
+                case TYPE_BYTE_ARRAY:
+                    writeBytes(value);
+                    break;
+                default:
+                    throw new AssertionError("Unexpected parquet type " + type);
+            }
+        }
+
+        private void writeBytes(Object value) throws IOException {
+            if (convertedType == CONVERTED_TYPE_JSON) {
+                try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+                    builder.value(value);
+                    BytesRef json = builder.bytes().toBytesRef();
+                    writeIntLE(values, json.length);
+                    values.write(json.bytes, json.offset, json.length);
+                }
+            } else if (value instanceof BytesRef) {
+                BytesRef bytesRef = (BytesRef) value;
+                writeIntLE(values, bytesRef.length);
+                values.write(bytesRef.bytes, bytesRef.offset, bytesRef.length);
+            } else {
+                byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+                writeIntLE(values, bytes.length);
+                values.write(bytes, 0, bytes.length);
+            }
+        }
+
+        private void updateMinMax(long value) {
+            if (hasMinMax == false) {
+                min = value;
+                max = value;
+                hasMinMax = true;
+            } else {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+
+        private void flushBooleanBits() {
+            values.write(booleanBits);
+            booleanBits = 0;
+            numBooleanBits = 0;
+        }
+
+        /**
+         * The maximum definition level of an optional top level column is 1, so the levels are encoded with a bit
+         * width of 1, using only RLE runs: the run length shifted left by one, followed by the level in one byte.
+         */
+        private void addDefinitionLevel(int level) {
+            if (level == levelRunValue) {
+                levelRunLength++;
+            } else {
+                flushDefinitionLevelRun();
+                levelRunValue = level;
+                levelRunLength = 1;
+            }
+        }
+
+        private void flushDefinitionLevelRun() {
+            if (levelRunLength > 0) {
+                writeUnsignedVarInt(definitionLevels, levelRunLength << 1);
+                definitionLevels.write(levelRunValue);
+            }
+            levelRunValue = -1;
+            levelRunLength = 0;
+        }
+
+        void finishPage() throws IOException {
+            if (pageNumValues == 0) {
+                return;
+            }
+            flushDefinitionLevelRun();
+            if (numBooleanBits > 0) {
+                flushBooleanBits();
+            }
+            pageBody.reset();
+            writeIntLE(pageBody, definitionLevels.size());
+            definitionLevels.writeTo(pageBody);
+            values.writeTo(pageBody);
+            ByteArrayOutputStream body = pageBody;
+            if (codec == CODEC_GZIP) {
+                compressedPageBody.reset();
+                try (GZIPOutputStream gzip = new GZIPOutputStream(compressedPageBody)) {
+                    pageBody.writeTo(gzip);
+                }
+                body = compressedPageBody;
+            }
+
+            int pagesSizeBefore = pages.size();
+            ThriftCompactOutput pageHeader = new ThriftCompactOutput(pages);
+            pageHeader.structBegin();
+            pageHeader.i32Field(1, PAGE_TYPE_DATA_PAGE);
+            pageHeader.i32Field(2, pageBody.size());
+            pageHeader.i32Field(3, body.size());
+            pageHeader.structFieldBegin(5);
+            pageHeader.i32Field(1, pageNumValues);
+            pageHeader.i32Field(2, ENCODING_PLAIN);
+            pageHeader.i32Field(3, ENCODING_RLE);
+            pageHeader.i32Field(4, ENCODING_RLE);
+            pageHeader.structEnd();
+            pageHeader.structEnd();
+            uncompressedSize += pages.size() - pagesSizeBefore + pageBody.size();
+            body.writeTo(pages);
+
+            numValues += pageNumValues;
+            pageNumValues = 0;
+            values.reset();
+            definitionLevels.reset();
+        }
+
+        void writeColumnChunk(ThriftCompactOutput rowGroup, long offset) {
+            rowGroup.structBegin();
+            rowGroup.i64Field(2, offset);
+            rowGroup.structFieldBegin(3);
+            rowGroup.i32Field(1, type);
+            rowGroup.listFieldBegin(2, ThriftCompactOutput.TYPE_I32, 2);
+            rowGroup.i32Element(ENCODING_PLAIN);
+            rowGroup.i32Element(ENCODING_RLE);
+            rowGroup.listFieldBegin(3, ThriftCompactOutput.TYPE_BINARY, 1);
+            rowGroup.stringElement(name);
+            rowGroup.i32Field(4, codec);
+            rowGroup.i64Field(5, numValues);
+            rowGroup.i64Field(6, uncompressedSize);
+            rowGroup.i64Field(7, pages.size());
+            rowGroup.i64Field(9, offset);
+            rowGroup.structFieldBegin(12);
+            rowGroup.i64Field(3, nullCount);
+            if (hasMinMax) {
+                // signed integers, the order of the values is the order parquet defines for these types
+                rowGroup.binaryField(5, type == TYPE_INT32 ? intLE((int) max) : longLE(max));
+                rowGroup.binaryField(6, type == TYPE_INT32 ? intLE((int) min) : longLE(min));
+            }
+            rowGroup.structEnd();
+            rowGroup.structEnd();
+            rowGroup.structEnd();
+        }
+
+        void writeSchemaElement(ThriftCompactOutput fileMetaData) {
+            fileMetaData.structBegin();
+            fileMetaData.i32Field(1, type);
+            fileMetaData.i32Field(3, REPETITION_OPTIONAL);
+            fileMetaData.stringField(4, name);
+            if (convertedType != NO_CONVERTED_TYPE) {
+                fileMetaData.i32Field(6, convertedType);
+            }
+            fileMetaData.structEnd();
+        }
+
+        void reset() {
+            pages.reset();
+            numValues = 0;
+            uncompressedSize = 0;
+            nullCount = 0;
+            hasMinMax = false;
+        }
+    }
+
+    private static void writeUnsignedVarInt(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Writes the subset of the Thrift compact protocol needed for the parquet metadata structures.
+     */
+    static final class ThriftCompactOutput {
+
+        static final int TYPE_I32 = 5;
+        static final int TYPE_I64 = 6;
+        static final int TYPE_BINARY = 8;
+        static final int TYPE_LIST = 9;
+        static final int TYPE_STRUCT = 12;
+
+        private final ByteArrayOutputStream out;
+        private final Deque<Short> lastFieldIds = new ArrayDeque<>();
+        private short lastFieldId = 0;
+
+        ThriftCompactOutput(ByteArrayOutputStream out) {
+            this.out = out;
+        }
+
+        void structBegin() {
+            lastFieldIds.push(lastFieldId);
+            lastFieldId = 0;
+        }
+
+        void structEnd() {
+            out.write(0);
+            lastFieldId = lastFieldIds.pop();
+        }
+
+        void i32Field(int id, int value) {
+            fieldBegin(id, TYPE_I32);
+            i32Element(value);
+        }
+
+        void i64Field(int id, long value) {
+            fieldBegin(id, TYPE_I64);
+            writeUnsignedVarInt(out, (value << 1) ^ (value >> 63));
+        }
+
+        void binaryField(int id, byte[] value) {
+            fieldBegin(id, TYPE_BINARY);
+            binaryElement(value);
+        }
+
+        void stringField(int id, String value) {
+            binaryField(id, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void structFieldBegin(int id) {
+            fieldBegin(id, TYPE_STRUCT);
+            structBegin();
+        }
+
+        void listFieldBegin(int id, int elementType, int size) {
+            fieldBegin(id, TYPE_LIST);
+            if (size < 15) {
+                out.write(size << 4 | elementType);
+            } else {
+                out.write(0xF0 | elementType);
+                writeUnsignedVarInt(out, size);
+            }
+        }
+
+        void i32Element(int value) {
+            writeUnsignedVarInt(out, ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+        }
+
+        void stringElement(String value) {
+            binaryElement(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void binaryElement(byte[] value) {
+            writeUnsignedVarInt(out, value.length);
+            out.write(value, 0, value.length);
+        }
+
+        private void fieldBegin(int id, int type) {
+            int delta = id - lastFieldId;
+            if (delta > 0 && delta <= 15) {
+                out.write(delta << 4 | type);
+            } else {
+                out.write(type);
+                i32Element(id);
+            }
+            lastFieldId = (short) id;
+        }
+    }
+}
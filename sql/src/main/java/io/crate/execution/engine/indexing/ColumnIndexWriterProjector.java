@@ -22,6 +22,7 @@
 
 package io.crate.execution.engine.indexing;
 
+import io.crate.analyze.Id;
 import io.crate.execution.dml.upsert.ShardUpsertRequest.DuplicateKeyAction;
 import io.crate.expression.symbol.Assignments;
 import io.crate.expression.symbol.Symbol;
@@ -98,6 +99,9 @@ public class ColumnIndexWriterProjector implements Projector {
             updateColumnNames,
             columnReferences.toArray(new Reference[columnReferences.size()]),
             jobId);
+        if (updateAssignments == null && Id.isAutoGenerated(primaryKeyIdents)) {
+            builder.appendOnly();
+        }
 
         InputRow insertValues = new InputRow(insertInputs);
         Function<String, ShardUpsertRequest.Item> itemFactory = id -> new ShardUpsertRequest.Item(
@@ -116,7 +120,7 @@ public class ColumnIndexWriterProjector implements Projector {
             collectExpressions,
             indexNameResolver,
             autoCreateIndices,
-            transportActionProvider.transportShardUpsertAction()::execute,
+            transportActionProvider.shardUpsertCoalescer(),
             transportActionProvider.transportBulkCreateIndicesAction(),
             tableSettings
         );
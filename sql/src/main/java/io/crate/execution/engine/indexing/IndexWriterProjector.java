@@ -22,6 +22,7 @@
 
 package io.crate.execution.engine.indexing;
 
+import io.crate.analyze.Id;
 import io.crate.execution.dml.upsert.ShardUpsertRequest.DuplicateKeyAction;
 import io.crate.expression.symbol.Symbol;
 import io.crate.data.BatchIterator;
@@ -104,6 +105,9 @@ public class IndexWriterProjector implements Projector {
             new Reference[]{rawSourceReference},
             jobId,
             false);
+        if (Id.isAutoGenerated(primaryKeyIdents)) {
+            builder.appendOnly();
+        }
 
         Function<String, ShardUpsertRequest.Item> itemFactory = id ->
             new ShardUpsertRequest.Item(id, null, new Object[]{source.value()}, null);
@@ -39,6 +39,7 @@ public final class ShardedRequests<TReq extends ShardRequest<TReq, TItem>, TItem
     private final Function<ShardId, TReq> requestFactory;
 
     private int location = -1;
+    private int numItems = 0;
 
     /**
      * @param requestFactory function to create a request
@@ -50,6 +51,7 @@ public final class ShardedRequests<TReq extends ShardRequest<TReq, TItem>, TItem
     public void add(TItem item, String indexName, String routing) {
         List<ItemAndRouting<TItem>> items = itemsByMissingIndex.computeIfAbsent(indexName, k -> new ArrayList<>());
         items.add(new ItemAndRouting<>(item, routing));
+        numItems++;
     }
 
     public void add(TItem item, ShardLocation shardLocation) {
@@ -60,6 +62,14 @@ public final class ShardedRequests<TReq extends ShardRequest<TReq, TItem>, TItem
         }
         location++;
         req.add(location, item);
+        numItems++;
+    }
+
+    /**
+     * @return the number of items added, including the items of missing indices
+     */
+    int numItems() {
+        return numItems;
     }
 
     static class ItemAndRouting<TItem> {
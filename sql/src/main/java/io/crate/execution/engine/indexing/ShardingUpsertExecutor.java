@@ -32,6 +32,8 @@ import io.crate.execution.dml.ShardResponse;
 import io.crate.execution.dml.upsert.ShardUpsertRequest;
 import io.crate.execution.engine.collect.CollectExpression;
 import io.crate.execution.engine.collect.RowShardResolver;
+import io.crate.exceptions.SQLExceptions;
+import io.crate.execution.jobs.ConcurrencyLimit;
 import io.crate.execution.jobs.NodeJobsCounter;
 import io.crate.execution.support.RetryListener;
 import io.crate.settings.CrateSetting;
@@ -48,6 +50,7 @@ import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.index.shard.ShardId;
 
 import javax.annotation.Nullable;
@@ -66,8 +69,14 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
-import static io.crate.execution.jobs.NodeJobsCounter.MAX_NODE_CONCURRENT_OPERATIONS;
-
+/**
+ * Groups the rows into shard requests and executes them with backpressure.
+ * <p>
+ * The number of requests in flight towards a node is bounded by the adaptive {@link ConcurrencyLimit} of the node,
+ * which is fed with the round trip time and the rejections of every request attempt. The number of rows per bulk
+ * starts with the configured bulk size and is halved whenever a node appears overloaded, it grows back additively
+ * with every request that completes without signs of overload.
+ */
 public class ShardingUpsertExecutor
     implements Function<BatchIterator<Row>, CompletableFuture<? extends Iterable<? extends Row>>> {
 
@@ -78,11 +87,19 @@ public class ShardingUpsertExecutor
     private static final BackoffPolicy BACKOFF_POLICY = LimitedExponentialBackoff.limitedExponential(1000);
     private static final Logger LOGGER = Loggers.getLogger(ShardingUpsertExecutor.class);
 
+    /**
+     * The lower bound the adaptive bulk size is reduced to; bulk sizes configured below it are used as is.
+     */
+    static final int MIN_BULK_SIZE = 100;
+
     private final GroupRowsByShard<ShardUpsertRequest, ShardUpsertRequest.Item> grouper;
     private final NodeJobsCounter nodeJobsCounter;
     private final ScheduledExecutorService scheduler;
     private final Executor executor;
     private final int bulkSize;
+    private final int minBulkSize;
+    private final int bulkSizeIncrement;
+    private final AtomicInteger currentBulkSize;
     private final UUID jobId;
     private final Function<ShardId, ShardUpsertRequest> requestFactory;
     private final BulkRequestExecutor<ShardUpsertRequest> requestExecutor;
@@ -109,6 +126,9 @@ public class ShardingUpsertExecutor
         this.scheduler = scheduler;
         this.executor = executor;
         this.bulkSize = bulkSize;
+        this.minBulkSize = Math.min(bulkSize, MIN_BULK_SIZE);
+        this.bulkSizeIncrement = Math.max(1, bulkSize / 16);
+        this.currentBulkSize = new AtomicInteger(bulkSize);
         this.jobId = jobId;
         this.requestFactory = requestFactory;
         this.requestExecutor = requestExecutor;
@@ -154,16 +174,16 @@ public class ShardingUpsertExecutor
             ActionListener<ShardResponse> listener =
                 new ShardResponseActionListener(nodeId, rowCount, numRequests, interrupt, rowCountFuture);
 
-            listener = new RetryListener<>(
+            RetryListener<ShardResponse> retryListener = new RetryListener<>(
                 scheduler,
                 l -> {
                     LOGGER.debug("Executing retry Listener for nodeId: {} request: {}", nodeId, request);
-                    requestExecutor.execute(request, l);
+                    requestExecutor.execute(request, new SamplingActionListener(nodeId, request.items().size(), l));
                 },
                 listener,
                 BACKOFF_POLICY
             );
-            requestExecutor.execute(request, listener);
+            requestExecutor.execute(request, new SamplingActionListener(nodeId, request.items().size(), retryListener));
         }
         return rowCountFuture;
     }
@@ -185,19 +205,50 @@ public class ShardingUpsertExecutor
 
         for (ShardLocation shardLocation : requests.itemsByShard.keySet()) {
             String requestNodeId = shardLocation.nodeId;
-            if (nodeJobsCounter.getInProgressJobsForNode(requestNodeId) >= MAX_NODE_CONCURRENT_OPERATIONS) {
-                LOGGER.debug("reached maximum concurrent operations for node {}", requestNodeId);
+            int limit = nodeJobsCounter.getConcurrencyLimit(requestNodeId).getLimit();
+            if (nodeJobsCounter.getInProgressJobsForNode(requestNodeId) >= limit) {
+                LOGGER.debug("reached maximum concurrent operations ({}) for node {}", limit, requestNodeId);
                 return true;
             }
         }
         return false;
     }
 
+    private boolean reachedBulkSize(ShardedRequests<ShardUpsertRequest, ShardUpsertRequest.Item> requests) {
+        return requests.numItems() >= currentBulkSize.get();
+    }
+
+    int currentBulkSize() {
+        return currentBulkSize.get();
+    }
+
+    /**
+     * Only rejections reduce the bulk size. Slow responses only reduce the concurrency limit; reducing the bulk size
+     * on them as well would make the round trip times depend on the bulk size and let both oscillate.
+     *
+     * @param numItems number of items of the sampled request
+     * @param inFlight number of requests in flight towards the node when the sampled request was issued
+     */
+    void onSample(@Nullable String nodeId, long rttNanos, int numItems, long inFlight, boolean rejected) {
+        ConcurrencyLimit limit = nodeJobsCounter.getConcurrencyLimit(nodeId);
+        if (limit.onSample(rttNanos, numItems, inFlight, rejected)) {
+            if (rejected) {
+                int bulkSize = currentBulkSize.updateAndGet(size -> Math.max(minBulkSize, size / 2));
+                LOGGER.debug("node {} rejected a request, reduced limit to {} and bulk size to {}",
+                    nodeId, limit.getLimit(), bulkSize);
+            } else {
+                LOGGER.debug("node {} is slow, reduced limit to {}", nodeId, limit.getLimit());
+            }
+        } else {
+            currentBulkSize.updateAndGet(size -> Math.min(this.bulkSize, size + bulkSizeIncrement));
+        }
+    }
+
     @Override
     public CompletableFuture<? extends Iterable<Row>> apply(BatchIterator<Row> batchIterator) {
         BatchIterator<ShardedRequests<ShardUpsertRequest, ShardUpsertRequest.Item>> reqBatchIterator =
             BatchIterators.partition(batchIterator, bulkSize, () -> new ShardedRequests<>(requestFactory), grouper,
-                bulkShardCreationLimiter);
+                bulkShardCreationLimiter.or(this::reachedBulkSize));
 
         BatchIteratorBackpressureExecutor<ShardedRequests<ShardUpsertRequest, ShardUpsertRequest.Item>, Long> executor =
             new BatchIteratorBackpressureExecutor<>(
@@ -214,6 +265,41 @@ public class ShardingUpsertExecutor
             .thenApply(rowCount -> Collections.singletonList(new Row1(rowCount)));
     }
 
+    /**
+     * Feeds the round trip time of a single request attempt into the adaptive limits.
+     */
+    private class SamplingActionListener implements ActionListener<ShardResponse> {
+
+        private final String nodeId;
+        private final int numItems;
+        private final ActionListener<ShardResponse> delegate;
+        private final long inFlight;
+        private final long startNanos = System.nanoTime();
+
+        SamplingActionListener(@Nullable String nodeId, int numItems, ActionListener<ShardResponse> delegate) {
+            this.nodeId = nodeId;
+            this.numItems = numItems;
+            this.delegate = delegate;
+            // at completion the count only reflects what happens to be in flight then, not the load this request saw
+            this.inFlight = nodeJobsCounter.getInProgressJobsForNode(nodeId);
+        }
+
+        @Override
+        public void onResponse(ShardResponse shardResponse) {
+            onSample(nodeId, System.nanoTime() - startNanos, numItems, inFlight, false);
+            delegate.onResponse(shardResponse);
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            // other failures say nothing about the load of the node
+            if (SQLExceptions.unwrap(e) instanceof EsRejectedExecutionException) {
+                onSample(nodeId, System.nanoTime() - startNanos, numItems, inFlight, true);
+            }
+            delegate.onFailure(e);
+        }
+    }
+
     private class ShardResponseActionListener implements ActionListener<ShardResponse> {
         private final String operationNodeId;
         private final AtomicLong rowCount;
@@ -25,15 +25,20 @@ package io.crate.execution.engine.join;
 import io.crate.data.Paging;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 
-import java.util.function.Supplier;
-
-class BlockSizeCalculator implements Supplier<Integer> {
+/**
+ * Calculates the block size from the memory left on the circuit breaker and the size of the rows of the left side.
+ * <p>
+ * The planner only knows the size of the rows on disk, so once a block has been built the size the rows occupy in the
+ * serialized form of the block is used instead.
+ */
+class BlockSizeCalculator implements BlockSizeSupplier {
 
     static final int DEFAULT_BLOCK_SIZE = Paging.PAGE_SIZE;
 
     private final CircuitBreaker circuitBreaker;
     private final long estimatedRowSizeForLeft;
     private final long numberOfRowsForLeft;
+    private volatile long observedRowSizeForLeft = -1L;
 
     BlockSizeCalculator(CircuitBreaker circuitBreaker,
                         long estimatedRowSizeForLeft,
@@ -44,11 +49,12 @@ class BlockSizeCalculator implements Supplier<Integer> {
     }
 
     int calculateBlockSize() {
-        if (statisticsUnavailable(circuitBreaker, estimatedRowSizeForLeft, numberOfRowsForLeft)) {
+        long rowSizeForLeft = observedRowSizeForLeft > 0 ? observedRowSizeForLeft : estimatedRowSizeForLeft;
+        if (statisticsUnavailable(circuitBreaker, rowSizeForLeft, numberOfRowsForLeft)) {
             return DEFAULT_BLOCK_SIZE;
         }
 
-        int blockSize = (int) Math.min(Integer.MAX_VALUE, (circuitBreaker.getLimit() - circuitBreaker.getUsed()) / estimatedRowSizeForLeft);
+        int blockSize = (int) Math.min(Integer.MAX_VALUE, (circuitBreaker.getLimit() - circuitBreaker.getUsed()) / rowSizeForLeft);
         blockSize = (int) Math.min(numberOfRowsForLeft, blockSize);
 
         // for distributed hash joins, we must ensure that each parallel executed join is switching to the same relation
@@ -69,7 +75,14 @@ class BlockSizeCalculator implements Supplier<Integer> {
     }
 
     @Override
-    public Integer get() {
+    public int blockSize() {
         return calculateBlockSize();
     }
+
+    @Override
+    public void onBlockBuilt(int numRows, long numBytes) {
+        if (numRows > 0) {
+            observedRowSizeForLeft = Math.max(1L, numBytes / numRows);
+        }
+    }
 }
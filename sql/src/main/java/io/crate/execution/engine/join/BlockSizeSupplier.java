@@ -0,0 +1,39 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.join;
+
+/**
+ * Provides the number of rows of the left side which a block hash join loads into memory at once.
+ */
+@FunctionalInterface
+public interface BlockSizeSupplier {
+
+    int blockSize();
+
+    /**
+     * Called by the join with the number of rows and the number of bytes they occupied once a block has been
+     * built, so that the size of the next blocks can be based on the actual size of the rows.
+     */
+    default void onBlockBuilt(int numRows, long numBytes) {
+    }
+}
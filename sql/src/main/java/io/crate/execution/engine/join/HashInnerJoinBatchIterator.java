@@ -22,27 +22,24 @@
 
 package io.crate.execution.engine.join;
 
-import com.carrotsearch.hppc.IntObjectHashMap;
+import com.carrotsearch.hppc.IntArrayList;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
 import io.crate.data.BatchIterator;
 import io.crate.data.Paging;
 import io.crate.data.Row;
-import io.crate.data.UnsafeArrayRow;
 import io.crate.data.join.ElementCombiner;
 import io.crate.data.join.JoinBatchIterator;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
 import java.util.concurrent.CompletionStage;
 import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.function.Supplier;
 
 /**
  * <pre>
  *     Build Phase:
  *     for (leftRow in left) {
- *         calculate hash and put in Buffer (HashMap) until the blockSize is reached
+ *         calculate hash and put in Buffer ({@link PagedRowBuffer}) until the blockSize is reached
  *     }
  *
  *     Probe Phase:
@@ -75,39 +72,47 @@ import java.util.function.Supplier;
  * <p>
  * This information is not available for the {@link HashInnerJoinBatchIterator}, so it's the responsibility of the
  * caller to provide those two functions that operate on the left and right rows accordingly and return the hash values.
+ * <p>
+ * The rows of the left side are serialized into the buffer using the {@code leftStreamers} and accounted on the
+ * {@code ramAccountingContext} until the block is replaced.
  */
 public class HashInnerJoinBatchIterator<L extends Row, R extends Row, C> extends JoinBatchIterator<L, R, C> {
 
     private final Predicate<C> joinCondition;
+    private final Function<L, Integer> hashBuilderForLeft;
+    private final Function<R, Integer> hashBuilderForRight;
+    private final BlockSizeSupplier blockSizeSupplier;
+    private final Streamer[] leftStreamers;
+    private final RamAccountingContext ramAccountingContext;
 
     /**
-     * Used to avoid instantiating multiple times RowN in {@link #findMatchingRows()}
+     * Ids of the rows in {@link #buffer} which have the same hash as the current right row
      */
-    private final UnsafeArrayRow leftRow = new UnsafeArrayRow();
-    private final Function<L, Integer> hashBuilderForLeft;
-    private final Function<R, Integer> hashBuilderForRight;
-    private final Supplier<Integer> blockSizeSupplier;
+    private final IntArrayList leftMatchingRowIds = new IntArrayList();
+    private int leftMatchingRowIdx;
 
-    private IntObjectHashMap<List<Object[]>> buffer;
+    private PagedRowBuffer buffer;
     private int blockSize;
-    private int numberOfRowsInBuffer = 0;
     private boolean leftBatchHasItems = false;
     private int numberOfLeftBatchesForBlock;
     private int numberOfLeftBatchesLoadedForBlock;
-    private Iterator<Object[]> leftMatchingRowsIterator;
 
-    public HashInnerJoinBatchIterator(RamAccountingBatchIterator<L> left,
+    public HashInnerJoinBatchIterator(BatchIterator<L> left,
                                       BatchIterator<R> right,
                                       ElementCombiner<L, R, C> combiner,
                                       Predicate<C> joinCondition,
                                       Function<L, Integer> hashBuilderForLeft,
                                       Function<R, Integer> hashBuilderForRight,
-                                      Supplier<Integer> blockSizeSupplier) {
+                                      BlockSizeSupplier blockSizeSupplier,
+                                      Streamer[] leftStreamers,
+                                      RamAccountingContext ramAccountingContext) {
         super(left, right, combiner);
         this.joinCondition = joinCondition;
         this.hashBuilderForLeft = hashBuilderForLeft;
         this.hashBuilderForRight = hashBuilderForRight;
         this.blockSizeSupplier = blockSizeSupplier;
+        this.leftStreamers = leftStreamers;
+        this.ramAccountingContext = ramAccountingContext;
         recreateBuffer();
         // initially 1 page/batch is loaded
         numberOfLeftBatchesLoadedForBlock = 1;
@@ -125,8 +130,12 @@ public class HashInnerJoinBatchIterator<L extends Row, R extends Row, C> extends
         right.moveToStart();
         activeIt = left;
         recreateBuffer();
-        ((RamAccountingBatchIterator) left).releaseAccountedRows();
-        leftMatchingRowsIterator = null;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        buffer.close();
     }
 
     @Override
@@ -150,8 +159,7 @@ public class HashInnerJoinBatchIterator<L extends Row, R extends Row, C> extends
                 right.moveToStart();
                 activeIt = left;
                 recreateBuffer();
-                ((RamAccountingBatchIterator) left).releaseAccountedRows();
-            } else {
+                    } else {
                 return false;
             }
         }
@@ -161,9 +169,16 @@ public class HashInnerJoinBatchIterator<L extends Row, R extends Row, C> extends
     }
 
     private void recreateBuffer() {
-        blockSize = blockSizeSupplier.get();
-        this.buffer = new IntObjectHashMap<>(this.blockSize);
-        numberOfRowsInBuffer = 0;
+        if (buffer != null) {
+            if (buffer.size() > 0) {
+                blockSizeSupplier.onBlockBuilt(buffer.size(), buffer.rowBytes());
+            }
+            // release the memory of the previous block before the size of the next one is calculated
+            buffer.close();
+        }
+        blockSize = blockSizeSupplier.blockSize();
+        buffer = new PagedRowBuffer(leftStreamers, ramAccountingContext, blockSize);
+        leftMatchingRowIds.clear();
 
         // A batch is not guaranteed to deliver PAGE_SIZE number of rows. It could be more or less.
         // So we cannot rely on that to decide if processing 1 block is done, we must also know and track how much
@@ -175,10 +190,9 @@ public class HashInnerJoinBatchIterator<L extends Row, R extends Row, C> extends
     private boolean buildBufferAndMatchRight() {
         if (activeIt == left) {
             while (leftBatchHasItems = left.moveNext()) {
-                Object[] currentRow = left.currentElement().materialize();
-                int hash = hashBuilderForLeft.apply(left.currentElement());
-                addToBuffer(currentRow, hash);
-                if (numberOfRowsInBuffer == blockSize) {
+                L currentLeft = left.currentElement();
+                buffer.add(currentLeft, hashBuilderForLeft.apply(currentLeft));
+                if (buffer.size() == blockSize) {
                     break;
                 }
             }
@@ -194,15 +208,13 @@ public class HashInnerJoinBatchIterator<L extends Row, R extends Row, C> extends
         }
 
         // In case of multiple matches on the left side (duplicate values or hash collisions)
-        if (leftMatchingRowsIterator != null && findMatchingRows()) {
+        if (findMatchingRows()) {
             return true;
         }
-        leftMatchingRowsIterator = null;
         while (right.moveNext()) {
             int rightHash = hashBuilderForRight.apply(right.currentElement());
-            List<Object[]> leftMatchingRows = buffer.get(rightHash);
-            if (leftMatchingRows != null) {
-                leftMatchingRowsIterator = leftMatchingRows.iterator();
+            if (buffer.findRows(rightHash, leftMatchingRowIds)) {
+                leftMatchingRowIdx = 0;
                 combiner.setRight(right.currentElement());
                 if (findMatchingRows()) {
                     return true;
@@ -214,21 +226,10 @@ public class HashInnerJoinBatchIterator<L extends Row, R extends Row, C> extends
         return false;
     }
 
-    private void addToBuffer(Object[] currentRow, int hash) {
-        List<Object[]> existingRows = buffer.get(hash);
-        if (existingRows == null) {
-            existingRows = new ArrayList<>();
-            buffer.put(hash, existingRows);
-        }
-        existingRows.add(currentRow);
-        numberOfRowsInBuffer++;
-    }
-
     @SuppressWarnings("unchecked")
     private boolean findMatchingRows() {
-        while (leftMatchingRowsIterator.hasNext()) {
-            leftRow.cells(leftMatchingRowsIterator.next());
-            combiner.setLeft((L) leftRow);
+        while (leftMatchingRowIdx < leftMatchingRowIds.size()) {
+            combiner.setLeft((L) buffer.get(leftMatchingRowIds.get(leftMatchingRowIdx++)));
             if (joinCondition.test(combiner.currentElement())) {
                 return true;
             }
@@ -238,14 +239,14 @@ public class HashInnerJoinBatchIterator<L extends Row, R extends Row, C> extends
 
     private boolean mustSwitchToRight() {
         return left.allLoaded()
-               || numberOfRowsInBuffer == blockSize
+               || buffer.size() == blockSize
                || (leftBatchHasItems == false && numberOfLeftBatchesLoadedForBlock == numberOfLeftBatchesForBlock);
     }
 
     private boolean mustLoadLeftNextBatch() {
         return leftBatchHasItems == false
                && left.allLoaded() == false
-               && numberOfRowsInBuffer < blockSize
+               && buffer.size() < blockSize
                && numberOfLeftBatchesLoadedForBlock < numberOfLeftBatchesForBlock;
     }
 }
@@ -0,0 +1,349 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.join;
+
+import com.carrotsearch.hppc.IntArrayList;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.data.BatchIterator;
+import io.crate.data.Row;
+import io.crate.data.join.ElementCombiner;
+import io.crate.data.join.JoinBatchIterator;
+import io.crate.data.join.LuceneLongBitSetWrapper;
+import io.crate.planner.node.dql.join.JoinType;
+
+import java.util.BitSet;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Block hash join for the {@link JoinType#LEFT}, {@link JoinType#RIGHT}, {@link JoinType#FULL},
+ * {@link JoinType#SEMI} and {@link JoinType#ANTI} join types.
+ * <p>
+ * Like {@link HashInnerJoinBatchIterator} the left side is loaded into a hash table block by block and the right side
+ * is probed against each block. Which rows had a match is tracked with bit sets:
+ *
+ * <pre>
+ *     for (block in left) {
+ *         for (rightRow in right) {
+ *             for (leftRow in block matching hash(rightRow)) {
+ *                 if (joinCondition matches) {
+ *                     mark leftRow (by position in block) and rightRow (by position in right)
+ *                     emit(combinedRow)                                  // LEFT, RIGHT, FULL
+ *                 }
+ *             }
+ *         }
+ *         for (leftRow in block) {
+ *             emit(leftRow, null) if leftRow is not marked                // LEFT, FULL, ANTI
+ *             emit(leftRow, null) if leftRow is marked                    // SEMI
+ *         }
+ *     }
+ *     for (rightRow in right) {
+ *         emit(null, rightRow) if rightRow is not marked                  // RIGHT, FULL
+ *     }
+ * </pre>
+ *
+ * The right side must return the rows in the same order on each iteration as the positions of the right rows are
+ * used to track the matches over all blocks.
+ * <p>
+ * {@link JoinType#SEMI} and {@link JoinType#ANTI} joins emit each left row at most once, with the right side of the
+ * combined element set to null.
+ */
+public class HashJoinBatchIterator<L extends Row, R extends Row, C> extends JoinBatchIterator<L, R, C> {
+
+    private enum Phase {
+        BUILD,
+        PROBE,
+        EMIT_BLOCK_ROWS,
+        EMIT_UNMATCHED_RIGHT,
+        DONE
+    }
+
+    private final Predicate<C> joinCondition;
+    private final Function<L, Integer> hashBuilderForLeft;
+    private final Function<R, Integer> hashBuilderForRight;
+    private final BlockSizeSupplier blockSizeSupplier;
+    private final Streamer[] leftStreamers;
+    private final RamAccountingContext ramAccountingContext;
+
+    private final boolean emitMatches;
+    private final boolean emitRightRowsWithoutMatch;
+    private final boolean emitBlockRows;
+    private final boolean emitMatchedBlockRows;
+    private final boolean skipMatchedBlockRows;
+
+    private PagedRowBuffer buffer;
+    private BitSet matchedBlockRows;
+    private LuceneLongBitSetWrapper matchedRightRows;
+    private int blockSize;
+
+    private Phase phase;
+    private long rightPosition;
+    private final IntArrayList leftMatchingRowIds = new IntArrayList();
+    private int leftMatchingRowIdx;
+    private int blockRowIdx;
+
+    public HashJoinBatchIterator(BatchIterator<L> left,
+                                 BatchIterator<R> right,
+                                 ElementCombiner<L, R, C> combiner,
+                                 JoinType joinType,
+                                 Predicate<C> joinCondition,
+                                 Function<L, Integer> hashBuilderForLeft,
+                                 Function<R, Integer> hashBuilderForRight,
+                                 BlockSizeSupplier blockSizeSupplier,
+                                 Streamer[] leftStreamers,
+                                 RamAccountingContext ramAccountingContext) {
+        super(left, right, combiner);
+        this.joinCondition = joinCondition;
+        this.hashBuilderForLeft = hashBuilderForLeft;
+        this.hashBuilderForRight = hashBuilderForRight;
+        this.blockSizeSupplier = blockSizeSupplier;
+        this.leftStreamers = leftStreamers;
+        this.ramAccountingContext = ramAccountingContext;
+        switch (joinType) {
+            case LEFT:
+            case RIGHT:
+            case FULL:
+                emitMatches = true;
+                emitRightRowsWithoutMatch = joinType != JoinType.LEFT;
+                emitBlockRows = joinType != JoinType.RIGHT;
+                emitMatchedBlockRows = false;
+                skipMatchedBlockRows = false;
+                break;
+
+            case SEMI:
+            case ANTI:
+                emitMatches = false;
+                emitRightRowsWithoutMatch = false;
+                emitBlockRows = true;
+                emitMatchedBlockRows = joinType == JoinType.SEMI;
+                // one match per left row is enough to decide if it must be emitted
+                skipMatchedBlockRows = true;
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unsupported join type for " + getClass().getSimpleName() + ": " + joinType);
+        }
+        reset();
+    }
+
+    @Override
+    public void moveToStart() {
+        left.moveToStart();
+        right.moveToStart();
+        reset();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        buffer.close();
+    }
+
+    private void reset() {
+        matchedRightRows = new LuceneLongBitSetWrapper();
+        rightPosition = -1;
+        recreateBuffer();
+        phase = Phase.BUILD;
+        activeIt = left;
+    }
+
+    private void recreateBuffer() {
+        if (buffer != null) {
+            if (buffer.size() > 0) {
+                blockSizeSupplier.onBlockBuilt(buffer.size(), buffer.rowBytes());
+            }
+            // release the memory of the previous block before the size of the next one is calculated
+            buffer.close();
+        }
+        blockSize = blockSizeSupplier.blockSize();
+        buffer = new PagedRowBuffer(leftStreamers, ramAccountingContext, blockSize);
+        matchedBlockRows = new BitSet();
+        leftMatchingRowIds.clear();
+    }
+
+    @Override
+    public boolean moveNext() {
+        while (true) {
+            switch (phase) {
+                case BUILD:
+                    if (buildBlock() == false) {
+                        // left needs the next batch loaded
+                        return false;
+                    }
+                    break;
+
+                case PROBE:
+                    Boolean matched = probeRight();
+                    if (matched != null) {
+                        return matched;
+                    }
+                    break;
+
+                case EMIT_BLOCK_ROWS:
+                    if (emitBlockRow()) {
+                        return true;
+                    }
+                    break;
+
+                case EMIT_UNMATCHED_RIGHT:
+                    return emitUnmatchedRight();
+
+                case DONE:
+                    return false;
+
+                default:
+                    throw new AssertionError("Invalid phase: " + phase);
+            }
+        }
+    }
+
+    /**
+     * @return true  -> block is complete, phase switched
+     *         false -> need to load more data
+     */
+    private boolean buildBlock() {
+        while (left.moveNext()) {
+            L currentLeft = left.currentElement();
+            buffer.add(currentLeft, hashBuilderForLeft.apply(currentLeft));
+            if (buffer.size() == blockSize) {
+                startProbe();
+                return true;
+            }
+        }
+        if (left.allLoaded() == false) {
+            return false;
+        }
+        if (buffer.size() == 0) {
+            leftExhausted();
+        } else {
+            startProbe();
+        }
+        return true;
+    }
+
+    private void startProbe() {
+        phase = Phase.PROBE;
+        activeIt = right;
+    }
+
+    /**
+     * @return true  -> matched
+     *         false -> need to load more data
+     *         null  -> the right side has been probed completely against the block, phase switched
+     */
+    private Boolean probeRight() {
+        // In case of multiple matches on the left side (duplicate values or hash collisions)
+        if (findMatchingRow()) {
+            return true;
+        }
+        while (right.moveNext()) {
+            rightPosition++;
+            R currentRight = right.currentElement();
+            if (buffer.findRows(hashBuilderForRight.apply(currentRight), leftMatchingRowIds)) {
+                leftMatchingRowIdx = 0;
+                combiner.setRight(currentRight);
+                if (findMatchingRow()) {
+                    return true;
+                }
+            }
+        }
+        if (right.allLoaded() == false) {
+            return false;
+        }
+        if (emitBlockRows) {
+            phase = Phase.EMIT_BLOCK_ROWS;
+            blockRowIdx = 0;
+            combiner.nullRight();
+        } else {
+            finishBlock();
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean findMatchingRow() {
+        while (leftMatchingRowIdx < leftMatchingRowIds.size()) {
+            int id = leftMatchingRowIds.get(leftMatchingRowIdx++);
+            if (skipMatchedBlockRows && matchedBlockRows.get(id)) {
+                continue;
+            }
+            combiner.setLeft((L) buffer.get(id));
+            if (joinCondition.test(combiner.currentElement())) {
+                matchedBlockRows.set(id);
+                if (emitRightRowsWithoutMatch) {
+                    matchedRightRows.set(rightPosition);
+                }
+                if (emitMatches) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean emitBlockRow() {
+        while (blockRowIdx < buffer.size()) {
+            int id = blockRowIdx++;
+            if (matchedBlockRows.get(id) == emitMatchedBlockRows) {
+                combiner.setLeft((L) buffer.get(id));
+                return true;
+            }
+        }
+        finishBlock();
+        return false;
+    }
+
+    private void finishBlock() {
+        right.moveToStart();
+        rightPosition = -1;
+        recreateBuffer();
+        phase = Phase.BUILD;
+        activeIt = left;
+    }
+
+    private void leftExhausted() {
+        if (emitRightRowsWithoutMatch) {
+            phase = Phase.EMIT_UNMATCHED_RIGHT;
+            activeIt = right;
+            combiner.nullLeft();
+        } else {
+            phase = Phase.DONE;
+        }
+    }
+
+    private boolean emitUnmatchedRight() {
+        while (right.moveNext()) {
+            rightPosition++;
+            if (matchedRightRows.get(rightPosition) == false) {
+                combiner.setRight(right.currentElement());
+                return true;
+            }
+        }
+        if (right.allLoaded()) {
+            phase = Phase.DONE;
+        }
+        return false;
+    }
+}
@@ -22,6 +22,8 @@
 
 package io.crate.execution.engine.join;
 
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
 import io.crate.breaker.RowAccounting;
 import io.crate.concurrent.CompletionListenable;
 import io.crate.data.BatchIterator;
@@ -32,8 +34,11 @@ import io.crate.data.join.CombinedRow;
 import io.crate.execution.engine.collect.CollectExpression;
 import io.crate.expression.InputFactory;
 import io.crate.expression.symbol.Symbol;
+import io.crate.planner.node.dql.join.JoinType;
+import io.crate.types.DataType;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
@@ -42,6 +47,12 @@ import java.util.function.Predicate;
 
 public class HashJoinOperation implements CompletionListenable {
 
+    /**
+     * Extra bytes to account per row of the left side: the buffered rows are serialized, but the buffer needs an
+     * offset, the hash and hash directory entries per row.
+     */
+    public static final int BYTES_PER_ROW_OVERHEAD = PagedRowBuffer.BYTES_PER_ROW_OVERHEAD;
+
     private final CompletableFuture<BatchIterator<Row>> leftBatchIterator = new CompletableFuture<>();
     private final CompletableFuture<BatchIterator<Row>> rightBatchIterator = new CompletableFuture<>();
     private final CompletableFuture<Void> completionFuture = new CompletableFuture<>();
@@ -50,30 +61,68 @@ public class HashJoinOperation implements CompletionListenable {
                              int numRightCols,
                              RowConsumer nlResultConsumer,
                              Predicate<Row> joinPredicate,
+                             JoinType joinType,
                              List<Symbol> joinLeftInputs,
                              List<Symbol> joinRightInputs,
+                             Collection<DataType> leftOutputTypes,
+                             Collection<DataType> rightOutputTypes,
                              RowAccounting rowAccounting,
                              InputFactory inputFactory,
                              CircuitBreaker circuitBreaker,
                              long estimatedRowSizeForLeft,
-                             long numberOfRowsForLeft) {
+                             long numberOfRowsForLeft,
+                             double spillThreshold) {
+
+        // the blocks are accounted separately as the spilling iterator releases the row accounting as a whole
+        RamAccountingContext blockAccounting = new RamAccountingContext("hash-join-blocks", circuitBreaker);
+        completionFuture.whenComplete((result, failure) -> blockAccounting.close());
 
         CompletableFuture.allOf(leftBatchIterator, rightBatchIterator)
             .whenComplete((result, failure) -> {
                 if (failure == null) {
                     BatchIterator<Row> joinIterator;
                     try {
-                        joinIterator = new ListenableBatchIterator<>(createHashJoinIterator(
-                            leftBatchIterator.join(),
-                            numLeftCols,
-                            rightBatchIterator.join(),
-                            numRightCols,
-                            joinPredicate,
-                            getHashBuilderFromSymbols(inputFactory, joinLeftInputs),
-                            getHashBuilderFromSymbols(inputFactory, joinRightInputs),
-                            rowAccounting,
-                            new BlockSizeCalculator(circuitBreaker, estimatedRowSizeForLeft, numberOfRowsForLeft)
-                        ), completionFuture);
+                        CombinedRow combiner = new CombinedRow(numLeftCols, numRightCols);
+                        Streamer[] leftStreamers = streamers(leftOutputTypes);
+                        Function<Row, Integer> hashBuilderForLeft = getHashBuilderFromSymbols(inputFactory, joinLeftInputs);
+                        Function<Row, Integer> hashBuilderForRight = getHashBuilderFromSymbols(inputFactory, joinRightInputs);
+                        BlockSizeCalculator blockSizeCalculator =
+                            new BlockSizeCalculator(circuitBreaker, estimatedRowSizeForLeft, numberOfRowsForLeft);
+                        long spillThresholdBytes = spillThresholdBytes(circuitBreaker, spillThreshold);
+                        SpillingHashJoinBatchIterator.JoinIteratorFactory joinIteratorFactory =
+                            (left, right, blockSize) -> createHashJoinIterator(
+                                left,
+                                right,
+                                combiner,
+                                joinType,
+                                joinPredicate,
+                                hashBuilderForLeft,
+                                hashBuilderForRight,
+                                blockSize,
+                                leftStreamers,
+                                blockAccounting);
+
+                        BatchIterator<Row> hashJoinIterator;
+                        if (spillThresholdBytes > 0) {
+                            hashJoinIterator = new SpillingHashJoinBatchIterator(
+                                leftBatchIterator.join(),
+                                rightBatchIterator.join(),
+                                combiner,
+                                leftStreamers,
+                                streamers(rightOutputTypes),
+                                hashBuilderForLeft,
+                                hashBuilderForRight,
+                                rowAccounting,
+                                spillThresholdBytes,
+                                SpillingHashJoinBatchIterator.numPartitions(
+                                    estimatedRowSizeForLeft, numberOfRowsForLeft, spillThresholdBytes),
+                                blockSizeCalculator,
+                                joinIteratorFactory);
+                        } else {
+                            hashJoinIterator = joinIteratorFactory.create(
+                                leftBatchIterator.join(), rightBatchIterator.join(), blockSizeCalculator);
+                        }
+                        joinIterator = new ListenableBatchIterator<>(hashJoinIterator, completionFuture);
                         nlResultConsumer.accept(joinIterator, null);
                     } catch (Exception e) {
                         nlResultConsumer.accept(null, e);
@@ -112,23 +161,59 @@ public class HashJoinOperation implements CompletionListenable {
         };
     }
 
+    /**
+     * Returns the number of bytes the left side may occupy before the hash join spills to disk,
+     * or 0 if spilling is disabled or the breaker has no limit.
+     */
+    private static long spillThresholdBytes(CircuitBreaker circuitBreaker, double spillThreshold) {
+        long limit = circuitBreaker.getLimit();
+        if (spillThreshold <= 0 || limit <= 0) {
+            return 0L;
+        }
+        return (long) (limit * spillThreshold);
+    }
+
+    private static Streamer[] streamers(Collection<DataType> types) {
+        Streamer[] streamers = new Streamer[types.size()];
+        int i = 0;
+        for (DataType type : types) {
+            streamers[i++] = type.streamer();
+        }
+        return streamers;
+    }
+
     private static BatchIterator<Row> createHashJoinIterator(BatchIterator<Row> left,
-                                                             int leftNumCols,
                                                              BatchIterator<Row> right,
-                                                             int rightNumCols,
+                                                             CombinedRow combiner,
+                                                             JoinType joinType,
                                                              Predicate<Row> joinCondition,
                                                              Function<Row, Integer> hashBuilderForLeft,
                                                              Function<Row, Integer> hashBuilderForRight,
-                                                             RowAccounting rowAccounting,
-                                                             BlockSizeCalculator blockSizeCalculator) {
-        CombinedRow combiner = new CombinedRow(leftNumCols, rightNumCols);
-        return new HashInnerJoinBatchIterator<>(
-            new RamAccountingBatchIterator<>(left, rowAccounting),
+                                                             BlockSizeSupplier blockSizeSupplier,
+                                                             Streamer[] leftStreamers,
+                                                             RamAccountingContext ramAccountingContext) {
+        if (joinType == JoinType.INNER) {
+            return new HashInnerJoinBatchIterator<>(
+                left,
+                right,
+                combiner,
+                joinCondition,
+                hashBuilderForLeft,
+                hashBuilderForRight,
+                blockSizeSupplier,
+                leftStreamers,
+                ramAccountingContext);
+        }
+        return new HashJoinBatchIterator<>(
+            left,
             right,
             combiner,
+            joinType,
             joinCondition,
             hashBuilderForLeft,
             hashBuilderForRight,
-            blockSizeCalculator);
+            blockSizeSupplier,
+            leftStreamers,
+            ramAccountingContext);
     }
 }
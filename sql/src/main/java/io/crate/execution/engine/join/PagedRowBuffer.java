@@ -0,0 +1,301 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.join;
+
+import com.carrotsearch.hppc.BitMixer;
+import com.carrotsearch.hppc.IntArrayList;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.data.Row;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.ByteArray;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Buffer for the rows of a hash join block.
+ * <p>
+ * The rows are serialized with the {@link Streamer}s of the columns and appended to one paged {@link ByteArray}.
+ * Rows are identified by dense ids (0, 1, 2, ...) and chained by hash in a directory of primitive arrays, so the
+ * buffer holds a few arrays instead of a list, an array and the boxed values per row.
+ * <p>
+ * Rows with the same hash are returned in insertion order.
+ * <p>
+ * The memory used by the buffer is accounted on the {@link RamAccountingContext} while rows are added and released
+ * again when the buffer is closed. The pages are taken from {@link BigArrays#NON_RECYCLING_INSTANCE} so that they
+ * are not accounted a second time by the request circuit breaker.
+ */
+final class PagedRowBuffer implements Releasable {
+
+    /**
+     * Bytes used per row besides the serialized values: the offset, the hash, the chain pointer and on average two
+     * directory slots.
+     */
+    static final int BYTES_PER_ROW_OVERHEAD = 8 + 4 + 4 + 2 * 4;
+
+    private static final float MAX_LOAD_FACTOR = 0.75f;
+    private static final int MIN_SLOTS = 16;
+
+    /**
+     * The block size is an upper bound, the arrays are only pre-sized up to this number of rows
+     */
+    private static final int MAX_INITIAL_ROWS = 16 * 1024;
+
+    private final Streamer[] streamers;
+    private final BigArrays bigArrays = BigArrays.NON_RECYCLING_INSTANCE;
+    private final RamAccountingContext ramAccountingContext;
+    private final BytesStreamOutput scratch = new BytesStreamOutput();
+    private final BufferedRow bufferedRow;
+
+    private ByteArray bytes;
+    private long numBytes = 0;
+    private long accountedBytes = 0;
+
+    /**
+     * start offset of row {@code id} in {@link #bytes}; the end offset is at {@code id + 1}
+     */
+    private long[] offsets;
+    private int[] hashes;
+
+    /**
+     * {@code id + 1} of the previous row in the same slot, 0 marks the end of the chain
+     */
+    private int[] chain;
+
+    /**
+     * {@code id + 1} of the last row added to the slot, 0 marks an empty slot
+     */
+    private int[] slots;
+    private int mask;
+    private int size = 0;
+
+    PagedRowBuffer(Streamer[] streamers, RamAccountingContext ramAccountingContext, int expectedRows) {
+        this.streamers = streamers;
+        this.ramAccountingContext = ramAccountingContext;
+        this.bufferedRow = new BufferedRow();
+        int numRows = Math.max(1, Math.min(expectedRows, MAX_INITIAL_ROWS));
+        this.offsets = new long[numRows + 1];
+        this.hashes = new int[numRows];
+        this.chain = new int[numRows];
+        int numSlots = Math.max(MIN_SLOTS, Integer.highestOneBit((int) (numRows / MAX_LOAD_FACTOR)) << 1);
+        this.slots = new int[numSlots];
+        this.mask = numSlots - 1;
+        this.bytes = bigArrays.newByteArray(BigArrays.BYTE_PAGE_SIZE, false);
+        accountRamBytesUsed();
+    }
+
+    /**
+     * Serializes and adds the row.
+     *
+     * @return the id of the row
+     */
+    @SuppressWarnings("unchecked")
+    int add(Row row, int hash) {
+        scratch.reset();
+        try {
+            for (int i = 0; i < streamers.length; i++) {
+                streamers[i].writeValueTo(scratch, row.get(i));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        BytesRef rowBytes = scratch.bytes().toBytesRef();
+        bufferedRow.reset();
+        bytes = bigArrays.grow(bytes, numBytes + rowBytes.length);
+        bytes.set(numBytes, rowBytes.bytes, rowBytes.offset, rowBytes.length);
+        numBytes += rowBytes.length;
+
+        int id = size;
+        if (id + 1 >= offsets.length) {
+            offsets = ArrayUtil.grow(offsets, id + 2);
+        }
+        if (id >= hashes.length) {
+            hashes = ArrayUtil.grow(hashes, id + 1);
+            chain = ArrayUtil.grow(chain, id + 1);
+        }
+        offsets[id + 1] = numBytes;
+        hashes[id] = hash;
+        int slot = BitMixer.mix32(hash) & mask;
+        chain[id] = slots[slot];
+        slots[slot] = id + 1;
+        size++;
+        if (size > slots.length * MAX_LOAD_FACTOR) {
+            rehash(slots.length << 1);
+        }
+        accountRamBytesUsed();
+        return id;
+    }
+
+    /**
+     * Sets the ids of all rows which have been added with the given hash to {@code dest}, in insertion order.
+     *
+     * @return false if there is no row with the given hash
+     */
+    boolean findRows(int hash, IntArrayList dest) {
+        dest.clear();
+        int entry = slots[BitMixer.mix32(hash) & mask];
+        while (entry != 0) {
+            int id = entry - 1;
+            if (hashes[id] == hash) {
+                dest.add(id);
+            }
+            entry = chain[id];
+        }
+        if (dest.isEmpty()) {
+            return false;
+        }
+        // chains link from the last to the first added row
+        int[] ids = dest.buffer;
+        for (int i = 0, j = dest.elementsCount - 1; i < j; i++, j--) {
+            int tmp = ids[i];
+            ids[i] = ids[j];
+            ids[j] = tmp;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the row with the given id.
+     * The returned row is re-used by subsequent calls, {@link Row#materialize()} must be used to buffer it.
+     * <p>
+     * The values are deserialized lazily, up to the highest column accessed, so that probing only reads the columns
+     * used by the join condition.
+     */
+    Row get(int id) {
+        bufferedRow.setId(id);
+        return bufferedRow;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes of the serialized rows plus {@link #BYTES_PER_ROW_OVERHEAD} per row.
+     * Unlike {@link #ramBytesUsed()} this doesn't depend on how the arrays have been pre-sized.
+     */
+    long rowBytes() {
+        return numBytes + (long) size * BYTES_PER_ROW_OVERHEAD;
+    }
+
+    long ramBytesUsed() {
+        return bytes.ramBytesUsed()
+               + RamUsageEstimator.sizeOf(offsets)
+               + RamUsageEstimator.sizeOf(hashes)
+               + RamUsageEstimator.sizeOf(chain)
+               + RamUsageEstimator.sizeOf(slots);
+    }
+
+    private void rehash(int newNumSlots) {
+        int[] newSlots = new int[newNumSlots];
+        int newMask = newNumSlots - 1;
+        // re-add in insertion order so that the chains keep linking from the last to the first added row
+        for (int id = 0; id < size; id++) {
+            int slot = BitMixer.mix32(hashes[id]) & newMask;
+            chain[id] = newSlots[slot];
+            newSlots[slot] = id + 1;
+        }
+        slots = newSlots;
+        mask = newMask;
+    }
+
+    private void accountRamBytesUsed() {
+        long used = ramBytesUsed();
+        long delta = used - accountedBytes;
+        accountedBytes = used;
+        ramAccountingContext.addBytes(delta);
+    }
+
+    @Override
+    public void close() {
+        ramAccountingContext.releaseBytes(accountedBytes);
+        accountedBytes = 0;
+        bytes.close();
+    }
+
+    private final class BufferedRow implements Row {
+
+        private final Object[] cells = new Object[streamers.length];
+        private final BytesRef rowBytes = new BytesRef();
+        private int id = -1;
+        private StreamInput in;
+        private int numDecodedCells;
+
+        void setId(int id) {
+            if (this.id == id) {
+                return;
+            }
+            this.id = id;
+            long start = offsets[id];
+            bytes.get(start, (int) (offsets[id + 1] - start), rowBytes);
+            in = StreamInput.wrap(rowBytes.bytes, rowBytes.offset, rowBytes.length);
+            numDecodedCells = 0;
+        }
+
+        /**
+         * Must be called before {@link #bytes} is modified as the row may reference its pages
+         */
+        void reset() {
+            id = -1;
+            in = null;
+        }
+
+        @Override
+        public int numColumns() {
+            return cells.length;
+        }
+
+        @Override
+        public Object get(int index) {
+            if (index < 0 || index >= cells.length) {
+                throw new IndexOutOfBoundsException("Row has " + cells.length + " columns, index: " + index);
+            }
+            decodeCells(index + 1);
+            return cells[index];
+        }
+
+        @Override
+        public Object[] materialize() {
+            decodeCells(cells.length);
+            return Arrays.copyOf(cells, cells.length);
+        }
+
+        private void decodeCells(int numCells) {
+            try {
+                for (; numDecodedCells < numCells; numDecodedCells++) {
+                    cells[numDecodedCells] = streamers[numDecodedCells].readValueFrom(in);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,616 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.join;
+
+import com.carrotsearch.hppc.BitMixer;
+import io.crate.Streamer;
+import io.crate.breaker.RowAccounting;
+import io.crate.concurrent.CompletableFutures;
+import io.crate.data.BatchIterator;
+import io.crate.data.ForwardingBatchIterator;
+import io.crate.data.InMemoryBatchIterator;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.data.join.CombinedRow;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.util.IOUtils;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.logging.Loggers;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * Hash join which partitions both relations to disk if the left relation doesn't fit into memory.
+ *
+ * <pre>
+ *     Buffer Phase:
+ *     for (leftRow in left) {
+ *         buffer leftRow until the accounted memory reaches the spill threshold
+ *     }
+ *     if (left is exhausted) {
+ *         join the buffered rows with right using an in-memory hash join (a single scan of right)
+ *     }
+ *
+ *     Partition Phase (threshold reached):
+ *     for (row in bufferedRows + remaining left rows) {
+ *         append row to left partition file (hash(row) % numPartitions)
+ *     }
+ *     for (row in right) {
+ *         append row to right partition file (hash(row) % numPartitions)
+ *     }
+ *
+ *     Join Phase:
+ *     for (partition in partitions) {
+ *         join left partition with right partition using an in-memory hash join
+ *     }
+ * </pre>
+ *
+ * Rows with the same join key end up in the same partition on both sides, so each pair of partitions can be joined
+ * independently. This works for all join types supported by the in-memory hash joins.
+ * <p>
+ * Each relation is read at most twice: once from its source and once from the partition files. Only if a single
+ * left partition exceeds the block size of the in-memory join, the right partition file is re-scanned once per block.
+ * <p>
+ * Contrary to {@link HashInnerJoinBatchIterator} the left side is fully consumed before the right side is read.
+ */
+public class SpillingHashJoinBatchIterator implements BatchIterator<Row> {
+
+    private static final Logger LOGGER = Loggers.getLogger(SpillingHashJoinBatchIterator.class);
+
+    static final int MIN_PARTITIONS = 16;
+    static final int MAX_PARTITIONS = 256;
+
+    /**
+     * Creates the in-memory hash join used for the buffered rows and for each pair of partitions.
+     * The block size supplier returns the number of left rows to build the hash table from at once.
+     * <p>
+     * The created join is closed as soon as it's complete or replaced, so it must not close anything which is shared
+     * with the joins created afterwards (e.g. the row accounting).
+     */
+    @FunctionalInterface
+    public interface JoinIteratorFactory {
+
+        BatchIterator<Row> create(BatchIterator<Row> left, BatchIterator<Row> right, BlockSizeSupplier blockSize);
+    }
+
+    private enum Phase {
+        BUFFER_LEFT,
+        PARTITION_LEFT,
+        PARTITION_RIGHT,
+        JOIN_IN_MEMORY,
+        JOIN_PARTITIONS,
+        DONE
+    }
+
+    private final BatchIterator<Row> left;
+    private final BatchIterator<Row> right;
+    private final CombinedRow combiner;
+    private final Streamer[] leftStreamers;
+    private final Streamer[] rightStreamers;
+    private final Function<Row, Integer> hashBuilderForLeft;
+    private final Function<Row, Integer> hashBuilderForRight;
+    private final RowAccounting rowAccounting;
+    private final long spillThresholdBytes;
+    private final int numPartitions;
+    private final BlockSizeSupplier blockSizeSupplier;
+    private final JoinIteratorFactory joinIteratorFactory;
+    private final List<Closeable> openReaders = new ArrayList<>();
+
+    private Phase phase;
+    private List<Object[]> bufferedRows;
+    private long bufferedBytes;
+
+    @Nullable
+    private Path spillDirectory;
+    private StreamOutput[] partitionOutputs;
+    private int[] leftRowsPerPartition;
+    private int[] rightRowsPerPartition;
+    private int partition;
+
+    @Nullable
+    private volatile BatchIterator<Row> joinIterator;
+    private boolean closed = false;
+
+    public SpillingHashJoinBatchIterator(BatchIterator<Row> left,
+                                         BatchIterator<Row> right,
+                                         CombinedRow combiner,
+                                         Streamer[] leftStreamers,
+                                         Streamer[] rightStreamers,
+                                         Function<Row, Integer> hashBuilderForLeft,
+                                         Function<Row, Integer> hashBuilderForRight,
+                                         RowAccounting rowAccounting,
+                                         long spillThresholdBytes,
+                                         int numPartitions,
+                                         BlockSizeSupplier blockSizeSupplier,
+                                         JoinIteratorFactory joinIteratorFactory) {
+        assert Integer.bitCount(numPartitions) == 1 : "numPartitions must be a power of two";
+        this.left = left;
+        this.right = right;
+        this.combiner = combiner;
+        this.leftStreamers = leftStreamers;
+        this.rightStreamers = rightStreamers;
+        this.hashBuilderForLeft = hashBuilderForLeft;
+        this.hashBuilderForRight = hashBuilderForRight;
+        this.rowAccounting = rowAccounting;
+        this.spillThresholdBytes = spillThresholdBytes;
+        this.numPartitions = numPartitions;
+        this.blockSizeSupplier = blockSizeSupplier;
+        this.joinIteratorFactory = joinIteratorFactory;
+        reset();
+    }
+
+    /**
+     * Returns the number of partitions to use so that a left partition is expected to fit into
+     * {@code spillThresholdBytes}, with a factor of 2 as headroom for skew.
+     */
+    static int numPartitions(long estimatedRowSizeForLeft, long numberOfRowsForLeft, long spillThresholdBytes) {
+        if (estimatedRowSizeForLeft <= 0 || numberOfRowsForLeft <= 0 || spillThresholdBytes <= 0) {
+            return MIN_PARTITIONS;
+        }
+        double estimatedBytes = (double) estimatedRowSizeForLeft * numberOfRowsForLeft;
+        long wanted = (long) Math.ceil(2 * estimatedBytes / spillThresholdBytes);
+        if (wanted <= MIN_PARTITIONS) {
+            return MIN_PARTITIONS;
+        }
+        if (wanted >= MAX_PARTITIONS) {
+            return MAX_PARTITIONS;
+        }
+        return Integer.highestOneBit((int) wanted - 1) << 1;
+    }
+
+    private void reset() {
+        phase = Phase.BUFFER_LEFT;
+        bufferedRows = new ArrayList<>();
+        bufferedBytes = 0L;
+        partitionOutputs = null;
+        leftRowsPerPartition = new int[numPartitions];
+        rightRowsPerPartition = new int[numPartitions];
+        partition = -1;
+        closeJoinIterator();
+    }
+
+    @Override
+    public Row currentElement() {
+        return combiner.currentElement();
+    }
+
+    @Override
+    public void moveToStart() {
+        raiseIfClosed();
+        left.moveToStart();
+        right.moveToStart();
+        rowAccounting.release();
+        closeReadersAndDeleteSpillFiles();
+        reset();
+    }
+
+    @Override
+    public boolean moveNext() {
+        raiseIfClosed();
+        try {
+            while (true) {
+                switch (phase) {
+                    case BUFFER_LEFT:
+                        if (bufferLeft() == false) {
+                            return false;
+                        }
+                        break;
+
+                    case PARTITION_LEFT:
+                        if (partition(left, leftStreamers, hashBuilderForLeft, leftRowsPerPartition) == false) {
+                            return false;
+                        }
+                        closePartitionOutputs();
+                        partitionOutputs = openPartitionOutputs("right-");
+                        phase = Phase.PARTITION_RIGHT;
+                        break;
+
+                    case PARTITION_RIGHT:
+                        if (partition(right, rightStreamers, hashBuilderForRight, rightRowsPerPartition) == false) {
+                            return false;
+                        }
+                        closePartitionOutputs();
+                        phase = Phase.JOIN_PARTITIONS;
+                        nextPartition();
+                        break;
+
+                    case JOIN_IN_MEMORY:
+                        assert joinIterator != null : "joinIterator must be set for phase " + phase;
+                        return joinIterator.moveNext();
+
+                    case JOIN_PARTITIONS:
+                        assert joinIterator != null : "joinIterator must be set for phase " + phase;
+                        if (joinIterator.moveNext()) {
+                            return true;
+                        }
+                        // both partitions are read from disk, so the join of the partition is complete
+                        nextPartition();
+                        break;
+
+                    case DONE:
+                        return false;
+
+                    default:
+                        throw new AssertionError("Invalid phase: " + phase);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return true  -> phase switched
+     *         false -> need to load more data
+     */
+    private boolean bufferLeft() throws IOException {
+        while (left.moveNext()) {
+            Row row = left.currentElement();
+            bufferedBytes += rowAccounting.accountForAndMaybeBreak(row);
+            bufferedRows.add(row.materialize());
+            if (bufferedBytes >= spillThresholdBytes) {
+                spillBufferedRows();
+                return true;
+            }
+        }
+        if (left.allLoaded() == false) {
+            return false;
+        }
+        // the left side fits into memory; the join iterator accounts the rows on its own
+        rowAccounting.release();
+        List<Row> rows = new ArrayList<>(bufferedRows.size());
+        for (Object[] cells : bufferedRows) {
+            rows.add(new RowN(cells));
+        }
+        int blockSize = Math.max(1, rows.size());
+        bufferedRows = null;
+        joinIterator = joinIteratorFactory.create(
+            InMemoryBatchIterator.of(rows, null), new UnclosableBatchIterator<>(right), () -> blockSize);
+        phase = Phase.JOIN_IN_MEMORY;
+        return true;
+    }
+
+    private void spillBufferedRows() throws IOException {
+        spillDirectory = Files.createTempDirectory("crate-hash-join-");
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Left side of hash join exceeds {} bytes, partitioning both sides into {} partitions in {}",
+                spillThresholdBytes, numPartitions, spillDirectory);
+        }
+        partitionOutputs = openPartitionOutputs("left-");
+        RowN row = new RowN(leftStreamers.length);
+        for (Object[] cells : bufferedRows) {
+            row.cells(cells);
+            writeToPartition(row, leftStreamers, hashBuilderForLeft, leftRowsPerPartition);
+        }
+        bufferedRows = null;
+        rowAccounting.release();
+        phase = Phase.PARTITION_LEFT;
+    }
+
+    /**
+     * @return true  -> source is exhausted
+     *         false -> need to load more data
+     */
+    private boolean partition(BatchIterator<Row> source,
+                              Streamer[] streamers,
+                              Function<Row, Integer> hashBuilder,
+                              int[] rowsPerPartition) throws IOException {
+        while (source.moveNext()) {
+            writeToPartition(source.currentElement(), streamers, hashBuilder, rowsPerPartition);
+        }
+        return source.allLoaded();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeToPartition(Row row,
+                                  Streamer[] streamers,
+                                  Function<Row, Integer> hashBuilder,
+                                  int[] rowsPerPartition) throws IOException {
+        int partition = BitMixer.mix32(hashBuilder.apply(row)) & (numPartitions - 1);
+        StreamOutput out = partitionOutputs[partition];
+        for (int i = 0; i < streamers.length; i++) {
+            streamers[i].writeValueTo(out, row.get(i));
+        }
+        rowsPerPartition[partition]++;
+    }
+
+    private StreamOutput[] openPartitionOutputs(String prefix) throws IOException {
+        StreamOutput[] outputs = new StreamOutput[numPartitions];
+        for (int i = 0; i < numPartitions; i++) {
+            outputs[i] = new OutputStreamStreamOutput(
+                new BufferedOutputStream(Files.newOutputStream(partitionFile(prefix, i))));
+        }
+        return outputs;
+    }
+
+    private void closePartitionOutputs() throws IOException {
+        StreamOutput[] outputs = partitionOutputs;
+        partitionOutputs = null;
+        if (outputs != null) {
+            IOUtils.close(outputs);
+        }
+    }
+
+    private void nextPartition() throws IOException {
+        if (partition >= 0) {
+            // release the hash table of the previous partition
+            closeJoinIterator();
+            rowAccounting.release();
+            closeReaders();
+            Files.deleteIfExists(partitionFile("left-", partition));
+            Files.deleteIfExists(partitionFile("right-", partition));
+        }
+        partition++;
+        while (partition < numPartitions
+               && leftRowsPerPartition[partition] == 0
+               && rightRowsPerPartition[partition] == 0) {
+            partition++;
+        }
+        if (partition == numPartitions) {
+            phase = Phase.DONE;
+            return;
+        }
+        int numLeftRows = leftRowsPerPartition[partition];
+        joinIterator = joinIteratorFactory.create(
+            InMemoryBatchIterator.of(partitionRows(partitionFile("left-", partition), numLeftRows, leftStreamers), null),
+            InMemoryBatchIterator.of(
+                partitionRows(partitionFile("right-", partition), rightRowsPerPartition[partition], rightStreamers), null),
+            limitBlockSize(blockSizeSupplier, numLeftRows));
+    }
+
+    private static BlockSizeSupplier limitBlockSize(BlockSizeSupplier blockSizeSupplier, int maxBlockSize) {
+        return new BlockSizeSupplier() {
+            @Override
+            public int blockSize() {
+                return Math.max(1, Math.min(maxBlockSize, blockSizeSupplier.blockSize()));
+            }
+
+            @Override
+            public void onBlockBuilt(int numRows, long numBytes) {
+                blockSizeSupplier.onBlockBuilt(numRows, numBytes);
+            }
+        };
+    }
+
+    private Path partitionFile(String prefix, int partition) {
+        assert spillDirectory != null : "spillDirectory must be created before accessing partition files";
+        return spillDirectory.resolve(prefix + partition);
+    }
+
+    private Iterable<Row> partitionRows(Path file, int numRows, Streamer[] streamers) {
+        return () -> {
+            PartitionReader reader = new PartitionReader(file, numRows, streamers);
+            openReaders.add(reader);
+            return reader;
+        };
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            left.close();
+            right.close();
+            closeJoinIterator();
+            rowAccounting.close();
+        } finally {
+            closeReadersAndDeleteSpillFiles();
+        }
+    }
+
+    @Override
+    public CompletionStage<?> loadNextBatch() {
+        if (closed) {
+            return CompletableFutures.failedFuture(new IllegalStateException("Iterator is closed"));
+        }
+        switch (phase) {
+            case BUFFER_LEFT:
+            case PARTITION_LEFT:
+                return left.loadNextBatch();
+
+            case PARTITION_RIGHT:
+                return right.loadNextBatch();
+
+            case JOIN_IN_MEMORY:
+                assert joinIterator != null : "joinIterator must be set for phase " + phase;
+                return joinIterator.loadNextBatch();
+
+            default:
+                return CompletableFutures.failedFuture(new IllegalStateException("All batches already loaded"));
+        }
+    }
+
+    @Override
+    public boolean allLoaded() {
+        switch (phase) {
+            case BUFFER_LEFT:
+            case PARTITION_LEFT:
+                return left.allLoaded();
+
+            case PARTITION_RIGHT:
+                return right.allLoaded();
+
+            case JOIN_IN_MEMORY:
+                assert joinIterator != null : "joinIterator must be set for phase " + phase;
+                return joinIterator.allLoaded();
+
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Only signals the kill, the partition files are deleted on {@link #close()} as they might still be read by a
+     * concurrent {@link #moveNext()}.
+     */
+    @Override
+    public void kill(@Nonnull Throwable throwable) {
+        BatchIterator<Row> join = joinIterator;
+        if (join != null) {
+            // the join of the buffered rows or of a partition read from disk
+            join.kill(throwable);
+        }
+        left.kill(throwable);
+        right.kill(throwable);
+    }
+
+    private void raiseIfClosed() {
+        if (closed) {
+            throw new IllegalStateException("Iterator is closed");
+        }
+    }
+
+    private void closeJoinIterator() {
+        BatchIterator<Row> join = joinIterator;
+        joinIterator = null;
+        if (join != null) {
+            join.close();
+        }
+    }
+
+    private void closeReaders() {
+        try {
+            IOUtils.close(openReaders);
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't close hash join partition file", e);
+        }
+        openReaders.clear();
+    }
+
+    private void closeReadersAndDeleteSpillFiles() {
+        closeReaders();
+        if (partitionOutputs != null) {
+            IOUtils.closeWhileHandlingException(partitionOutputs);
+            partitionOutputs = null;
+        }
+        if (spillDirectory != null) {
+            try {
+                IOUtils.rm(spillDirectory);
+            } catch (IOException e) {
+                LOGGER.warn("Couldn't delete hash join spill directory " + spillDirectory, e);
+            }
+            spillDirectory = null;
+        }
+    }
+
+    /**
+     * Used for {@link #right} in the join of the buffered rows, which is closed on {@link #moveToStart()} while
+     * {@link #right} is re-used.
+     */
+    private static class UnclosableBatchIterator<T> extends ForwardingBatchIterator<T> {
+
+        private final BatchIterator<T> delegate;
+
+        UnclosableBatchIterator(BatchIterator<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        protected BatchIterator<T> delegate() {
+            return delegate;
+        }
+
+        @Override
+        public void close() {
+            // closed by SpillingHashJoinBatchIterator#close
+        }
+    }
+
+    /**
+     * Reads the rows of a partition file; the stream is opened lazily and closed once all rows have been read.
+     */
+    private static class PartitionReader implements Iterator<Row>, Closeable {
+
+        private final Path file;
+        private final int numRows;
+        private final Streamer[] streamers;
+        private final RowN row;
+
+        private StreamInput in;
+        private int rowsRead = 0;
+
+        PartitionReader(Path file, int numRows, Streamer[] streamers) {
+            this.file = file;
+            this.numRows = numRows;
+            this.streamers = streamers;
+            this.row = new RowN(streamers.length);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return rowsRead < numRows;
+        }
+
+        @Override
+        public Row next() {
+            if (hasNext() == false) {
+                throw new NoSuchElementException("Partition file " + file + " has no more rows");
+            }
+            try {
+                if (in == null) {
+                    in = new InputStreamStreamInput(new BufferedInputStream(Files.newInputStream(file)));
+                }
+                Object[] cells = new Object[streamers.length];
+                for (int i = 0; i < streamers.length; i++) {
+                    cells[i] = streamers[i].readValueFrom(in);
+                }
+                row.cells(cells);
+                rowsRead++;
+                if (rowsRead == numRows) {
+                    close();
+                }
+                return row;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+                in = null;
+            }
+        }
+    }
+}
@@ -24,6 +24,7 @@ package io.crate.execution.engine.pipeline;
 
 import com.google.common.collect.Iterables;
 import io.crate.action.sql.SessionContext;
+import io.crate.breaker.CrateCircuitBreakerService;
 import io.crate.breaker.RamAccountingContext;
 import io.crate.data.Input;
 import io.crate.data.Projector;
@@ -53,6 +54,7 @@ import io.crate.execution.engine.aggregation.AggregationPipe;
 import io.crate.execution.engine.aggregation.GroupingProjector;
 import io.crate.execution.engine.collect.CollectExpression;
 import io.crate.execution.engine.export.FileWriterProjector;
+import io.crate.execution.engine.export.OutputS3Limits;
 import io.crate.execution.engine.fetch.FetchProjector;
 import io.crate.execution.engine.fetch.FetchProjectorContext;
 import io.crate.execution.engine.fetch.TransportFetchOperation;
@@ -87,10 +89,12 @@ import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nullable;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -106,6 +110,7 @@ public class ProjectionToProjectorVisitor
 
     private final ClusterService clusterService;
     private final NodeJobsCounter nodeJobsCounter;
+    private final OutputS3Limits s3Limits;
     private final Functions functions;
     private final ThreadPool threadPool;
     private final Settings settings;
@@ -118,9 +123,12 @@ public class ProjectionToProjectorVisitor
     private final BigArrays bigArrays;
     @Nullable
     private final ShardId shardId;
+    @Nullable
+    private final Path spillPath;
 
     public ProjectionToProjectorVisitor(ClusterService clusterService,
                                         NodeJobsCounter nodeJobsCounter,
+                                        OutputS3Limits s3Limits,
                                         Functions functions,
                                         ThreadPool threadPool,
                                         Settings settings,
@@ -131,9 +139,11 @@ public class ProjectionToProjectorVisitor
                                         Function<RelationName, StaticTableDefinition<?>> staticTableDefinitionGetter,
                                         Version indexVersionCreated,
                                         BigArrays bigArrays,
-                                        @Nullable ShardId shardId) {
+                                        @Nullable ShardId shardId,
+                                        @Nullable Path spillPath) {
         this.clusterService = clusterService;
         this.nodeJobsCounter = nodeJobsCounter;
+        this.s3Limits = s3Limits;
         this.functions = functions;
         this.threadPool = threadPool;
         this.settings = settings;
@@ -145,10 +155,12 @@ public class ProjectionToProjectorVisitor
         this.indexVersionCreated = indexVersionCreated;
         this.bigArrays = bigArrays;
         this.shardId = shardId;
+        this.spillPath = spillPath;
     }
 
     public ProjectionToProjectorVisitor(ClusterService clusterService,
                                         NodeJobsCounter nodeJobsCounter,
+                                        OutputS3Limits s3Limits,
                                         Functions functions,
                                         ThreadPool threadPool,
                                         Settings settings,
@@ -157,9 +169,11 @@ public class ProjectionToProjectorVisitor
                                         EvaluatingNormalizer normalizer,
                                         Function<RelationName, SysRowUpdater<?>> sysUpdaterGetter,
                                         Function<RelationName, StaticTableDefinition<?>> staticTableDefinitionGetter,
-                                        BigArrays bigArrays) {
+                                        BigArrays bigArrays,
+                                        @Nullable Path spillPath) {
         this(clusterService,
             nodeJobsCounter,
+            s3Limits,
             functions,
             threadPool,
             settings,
@@ -170,10 +184,20 @@ public class ProjectionToProjectorVisitor
             staticTableDefinitionGetter,
             Version.CURRENT,
             bigArrays,
-            null
+            null,
+            spillPath
         );
     }
 
+    /**
+     * @return the data path of the node, used by projectors which write intermediate results to disk.
+     *         Null if the node has no local storage.
+     */
+    @Nullable
+    public static Path spillPath(NodeEnvironment nodeEnvironment) {
+        return nodeEnvironment.hasNodeFile() ? nodeEnvironment.nodeDataPaths()[0] : null;
+    }
+
     @Override
     public Projector visitOrderedTopN(OrderedTopNProjection projection, Context context) {
         /* OrderBy symbols are added to the rows to enable sorting on them post-collect. E.g.:
@@ -243,7 +267,9 @@ public class ProjectionToProjectorVisitor
             ctx.aggregations().toArray(new AggregationContext[0]),
             context.ramAccountingContext,
             indexVersionCreated,
-            bigArrays
+            bigArrays,
+            CrateCircuitBreakerService.QUERY_CIRCUIT_BREAKER_SPILL_THRESHOLD_SETTING.setting().get(settings),
+            spillPath
         );
     }
 
@@ -289,8 +315,14 @@ public class ProjectionToProjectorVisitor
             sb.append("/");
         }
         sb.append(fileName);
-        if (projection.compressionType() == WriterProjection.CompressionType.GZIP) {
-            sb.append(".gz");
+        sb.append(projection.outputFormat().fileExtension());
+        // parquet files compress their pages, not the whole file
+        if (projection.outputFormat() != WriterProjection.OutputFormat.PARQUET) {
+            if (projection.compressionType() == WriterProjection.CompressionType.GZIP) {
+                sb.append(".gz");
+            } else if (projection.compressionType() == WriterProjection.CompressionType.LZ4) {
+                sb.append(".lz4");
+            }
         }
         uri = sb.toString();
 
@@ -299,13 +331,16 @@ public class ProjectionToProjectorVisitor
 
         return new FileWriterProjector(
             threadPool.generic(),
+            s3Limits,
             uri,
             projection.compressionType(),
             inputs,
             ctx.expressions(),
             overwrites,
             projection.outputNames(),
-            projection.outputFormat()
+            inputs == null ? null : Symbols.typeView(projection.inputs()),
+            projection.outputFormat(),
+            context.ramAccountingContext
         );
     }
 
@@ -0,0 +1,185 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.vector;
+
+import org.apache.lucene.index.LeafReaderContext;
+
+import java.io.IOException;
+
+/**
+ * Vectorized {@code +}, {@code -} and {@code *} with the same semantics as the arithmetic scalars:
+ * the result is null if any argument is null, integer arithmetic overflows like the java operators.
+ */
+final class ArithmeticVectorExpression {
+
+    enum Operator {
+        ADD,
+        SUBTRACT,
+        MULTIPLY
+    }
+
+    private ArithmeticVectorExpression() {
+    }
+
+    static VectorExpression forLongs(Operator operator, VectorExpression left, VectorExpression right) {
+        return new LongArithmetic(operator, left, right, false);
+    }
+
+    static VectorExpression forIntegers(Operator operator, VectorExpression left, VectorExpression right) {
+        return new LongArithmetic(operator, left, right, true);
+    }
+
+    static VectorExpression forDoubles(Operator operator, VectorExpression left, VectorExpression right) {
+        return new DoubleArithmetic(operator, left, right, false);
+    }
+
+    static VectorExpression forFloats(Operator operator, VectorExpression left, VectorExpression right) {
+        return new DoubleArithmetic(operator, left, right, true);
+    }
+
+    private abstract static class BinaryVectorExpression<V extends ColumnVector> implements VectorExpression {
+
+        final Operator operator;
+        final V result;
+        private final VectorExpression left;
+        private final VectorExpression right;
+
+        BinaryVectorExpression(Operator operator, VectorExpression left, VectorExpression right, V result) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+            this.result = result;
+        }
+
+        @Override
+        public void setNextReader(LeafReaderContext context) throws IOException {
+            left.setNextReader(context);
+            right.setNextReader(context);
+        }
+
+        @Override
+        public ColumnVector evaluate(ColumnBatch batch) throws IOException {
+            ColumnVector leftValues = left.evaluate(batch);
+            ColumnVector rightValues = right.evaluate(batch);
+            int size = batch.size();
+            result.reset(size);
+            compute(leftValues, rightValues, size);
+            if (leftValues.hasNulls() || rightValues.hasNulls()) {
+                for (int i = 0; i < size; i++) {
+                    if (leftValues.isNull(i) || rightValues.isNull(i)) {
+                        result.setNull(i);
+                    }
+                }
+            }
+            return result;
+        }
+
+        abstract void compute(ColumnVector leftValues, ColumnVector rightValues, int size);
+    }
+
+    private static final class LongArithmetic extends BinaryVectorExpression<LongVector> {
+
+        private final boolean toInt;
+
+        LongArithmetic(Operator operator, VectorExpression left, VectorExpression right, boolean toInt) {
+            super(operator, left, right, new LongVector());
+            this.toInt = toInt;
+        }
+
+        @Override
+        void compute(ColumnVector leftValues, ColumnVector rightValues, int size) {
+            long[] values = result.values;
+            switch (operator) {
+                case ADD:
+                    for (int i = 0; i < size; i++) {
+                        values[i] = leftValues.getLong(i) + rightValues.getLong(i);
+                    }
+                    break;
+
+                case SUBTRACT:
+                    for (int i = 0; i < size; i++) {
+                        values[i] = leftValues.getLong(i) - rightValues.getLong(i);
+                    }
+                    break;
+
+                case MULTIPLY:
+                    for (int i = 0; i < size; i++) {
+                        values[i] = leftValues.getLong(i) * rightValues.getLong(i);
+                    }
+                    break;
+
+                default:
+                    throw new AssertionError("Invalid operator: " + operator);
+            }
+            if (toInt) {
+                // the low 32 bits are the same as if the operation was done on ints
+                for (int i = 0; i < size; i++) {
+                    values[i] = (int) values[i];
+                }
+            }
+        }
+    }
+
+    private static final class DoubleArithmetic extends BinaryVectorExpression<DoubleVector> {
+
+        private final boolean toFloat;
+
+        DoubleArithmetic(Operator operator, VectorExpression left, VectorExpression right, boolean toFloat) {
+            super(operator, left, right, new DoubleVector());
+            this.toFloat = toFloat;
+        }
+
+        @Override
+        void compute(ColumnVector leftValues, ColumnVector rightValues, int size) {
+            double[] values = result.values;
+            switch (operator) {
+                case ADD:
+                    for (int i = 0; i < size; i++) {
+                        values[i] = leftValues.getDouble(i) + rightValues.getDouble(i);
+                    }
+                    break;
+
+                case SUBTRACT:
+                    for (int i = 0; i < size; i++) {
+                        values[i] = leftValues.getDouble(i) - rightValues.getDouble(i);
+                    }
+                    break;
+
+                case MULTIPLY:
+                    for (int i = 0; i < size; i++) {
+                        values[i] = leftValues.getDouble(i) * rightValues.getDouble(i);
+                    }
+                    break;
+
+                default:
+                    throw new AssertionError("Invalid operator: " + operator);
+            }
+            if (toFloat) {
+                // floats are exact as doubles, rounding the double result gives the float result of the operation
+                for (int i = 0; i < size; i++) {
+                    values[i] = (float) values[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.vector;
+
+/**
+ * A batch of up to {@link #CAPACITY} documents of one segment, which are processed column by column.
+ * <p>
+ * The selection contains the positions of the documents which passed the filters so far, in ascending order.
+ * Filters narrow it down, aggregations only consume the selected positions.
+ */
+public final class ColumnBatch {
+
+    public static final int CAPACITY = 1024;
+
+    private final int[] docs = new int[CAPACITY];
+    private final int[] selection = new int[CAPACITY];
+    private int size = 0;
+    private int numSelected = 0;
+
+    /**
+     * @return the document ids of the batch, valid up to {@link #size()}
+     */
+    public int[] docs() {
+        return docs;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the selected positions, valid up to {@link #numSelected()}
+     */
+    public int[] selection() {
+        return selection;
+    }
+
+    public int numSelected() {
+        return numSelected;
+    }
+
+    boolean isFull() {
+        return size == CAPACITY;
+    }
+
+    void add(int doc) {
+        docs[size++] = doc;
+    }
+
+    /**
+     * Selects all documents of the batch.
+     */
+    void selectAll() {
+        for (int i = 0; i < size; i++) {
+            selection[i] = i;
+        }
+        numSelected = size;
+    }
+
+    void numSelected(int numSelected) {
+        assert numSelected <= this.numSelected : "filters can only narrow down the selection";
+        this.numSelected = numSelected;
+    }
+
+    /**
+     * Replaces the selection with {@code positions[from]} up to (excluding) {@code positions[to]}.
+     */
+    void select(int[] positions, int from, int to) {
+        numSelected = to - from;
+        System.arraycopy(positions, from, selection, 0, numSelected);
+    }
+
+    void clear() {
+        size = 0;
+        numSelected = 0;
+    }
+}
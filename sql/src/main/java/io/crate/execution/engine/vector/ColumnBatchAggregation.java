@@ -0,0 +1,289 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.vector;
+
+import io.crate.breaker.RamAccountingContext;
+import io.crate.execution.dsl.projection.AggregationProjection;
+import io.crate.execution.dsl.projection.FilterProjection;
+import io.crate.execution.dsl.projection.GroupProjection;
+import io.crate.execution.dsl.projection.Projection;
+import io.crate.execution.engine.aggregation.AggregationFunction;
+import io.crate.expression.symbol.AggregateMode;
+import io.crate.expression.symbol.Aggregation;
+import io.crate.expression.symbol.InputColumn;
+import io.crate.expression.symbol.Symbol;
+import io.crate.lucene.FieldTypeLookup;
+import io.crate.metadata.FunctionImplementation;
+import io.crate.metadata.Functions;
+import org.apache.lucene.index.LeafReaderContext;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.util.BigArrays;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An aggregation over the documents of a shard which is evaluated on {@link ColumnBatch}es instead of rows.
+ * <p>
+ * Supported are shard projections consisting of an optional {@link FilterProjection} followed by an
+ * {@link AggregationProjection} ({@link VectorizedAggregation}) or a {@link GroupProjection} with a single key
+ * ({@link VectorizedGroupByAggregation}), if all collected symbols and the filter can be compiled by
+ * {@link VectorExpressions} and all aggregations provide a {@link VectorAggregator}.
+ * <p>
+ * Instances are stateful and must only be used by one {@link DocValuesAggregationCollector}.
+ */
+public abstract class ColumnBatchAggregation {
+
+    private final VectorExpression[] toCollect;
+    final ColumnVector[] vectors;
+    @Nullable
+    private final VectorFilter filter;
+    private final AggregationFunction[] functions;
+    private final VectorAggregator[] aggregators;
+    private final int[] argumentIndices;
+    private final AggregateMode mode;
+
+    RamAccountingContext ramAccountingContext;
+    private Version indexVersionCreated;
+    private BigArrays bigArrays;
+
+    ColumnBatchAggregation(VectorExpression[] toCollect,
+                           ColumnVector[] vectors,
+                           @Nullable VectorFilter filter,
+                           AggregationFunction[] functions,
+                           VectorAggregator[] aggregators,
+                           int[] argumentIndices,
+                           AggregateMode mode) {
+        this.toCollect = toCollect;
+        this.vectors = vectors;
+        this.filter = filter;
+        this.functions = functions;
+        this.aggregators = aggregators;
+        this.argumentIndices = argumentIndices;
+        this.mode = mode;
+    }
+
+    /**
+     * @return the aggregation or null if the collect phase must be executed row by row
+     */
+    @Nullable
+    public static ColumnBatchAggregation tryCreate(List<? extends Symbol> toCollect,
+                                                   Collection<? extends Projection> shardProjections,
+                                                   Functions functions,
+                                                   FieldTypeLookup fieldTypeLookup) {
+        Iterator<? extends Projection> projections = shardProjections.iterator();
+        if (projections.hasNext() == false) {
+            return null;
+        }
+        Projection projection = projections.next();
+        FilterProjection filterProjection = null;
+        if (projection instanceof FilterProjection) {
+            filterProjection = (FilterProjection) projection;
+            if (isIdentity(filterProjection.outputs(), toCollect.size()) == false || projections.hasNext() == false) {
+                return null;
+            }
+            projection = projections.next();
+        }
+        if (projections.hasNext()) {
+            return null;
+        }
+        if (projection instanceof AggregationProjection) {
+            return VectorizedAggregation.tryCreate(
+                toCollect, filterProjection, (AggregationProjection) projection, functions, fieldTypeLookup);
+        }
+        if (projection instanceof GroupProjection) {
+            return VectorizedGroupByAggregation.tryCreate(
+                toCollect, filterProjection, (GroupProjection) projection, functions, fieldTypeLookup);
+        }
+        return null;
+    }
+
+    private static boolean isIdentity(List<? extends Symbol> outputs, int numInputs) {
+        if (outputs.size() != numInputs) {
+            return false;
+        }
+        for (int i = 0; i < numInputs; i++) {
+            Symbol output = outputs.get(i);
+            if (output instanceof InputColumn == false || ((InputColumn) output).index() != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isSupportedMode(AggregateMode mode) {
+        return mode == AggregateMode.ITER_PARTIAL || mode == AggregateMode.ITER_FINAL;
+    }
+
+    /**
+     * Compiles the collected symbols, leaving the ones at {@code skipIndex} uncompiled.
+     *
+     * @return the expressions or null if a symbol isn't supported
+     */
+    @Nullable
+    static VectorExpression[] compileToCollect(List<? extends Symbol> toCollect,
+                                               FieldTypeLookup fieldTypeLookup,
+                                               int skipIndex) {
+        VectorExpression[] expressions = new VectorExpression[toCollect.size()];
+        for (int i = 0; i < expressions.length; i++) {
+            if (i == skipIndex) {
+                continue;
+            }
+            VectorExpression expression = VectorExpressions.compile(toCollect.get(i), fieldTypeLookup, null);
+            if (expression == null) {
+                return null;
+            }
+            expressions[i] = expression;
+        }
+        return expressions;
+    }
+
+    /**
+     * Resolves the aggregation functions and their vector aggregators and the index of their argument within the
+     * collected symbols, or -1 if they have none.
+     *
+     * @return false if an aggregation isn't supported
+     */
+    static boolean compileAggregations(List<Aggregation> aggregations,
+                                       VectorExpression[] toCollect,
+                                       Functions functions,
+                                       AggregationFunction[] aggregationFunctions,
+                                       VectorAggregator[] aggregators,
+                                       int[] argumentIndices) {
+        for (int i = 0; i < aggregationFunctions.length; i++) {
+            Aggregation aggregation = aggregations.get(i);
+            FunctionImplementation implementation = functions.getQualified(aggregation.functionIdent());
+            if (implementation instanceof AggregationFunction == false) {
+                return false;
+            }
+            AggregationFunction<?, ?> function = (AggregationFunction<?, ?>) implementation;
+            VectorAggregator<?> aggregator = function.vectorAggregator();
+            if (aggregator == null) {
+                return false;
+            }
+            List<Symbol> inputs = aggregation.inputs();
+            if (inputs.isEmpty()) {
+                argumentIndices[i] = -1;
+            } else if (inputs.size() == 1 && inputs.get(0) instanceof InputColumn) {
+                int index = ((InputColumn) inputs.get(0)).index();
+                if (toCollect[index] == null) {
+                    return false;
+                }
+                argumentIndices[i] = index;
+            } else {
+                return false;
+            }
+            aggregationFunctions[i] = function;
+            aggregators[i] = aggregator;
+        }
+        return true;
+    }
+
+    /**
+     * Must be called once before the first segment is read.
+     */
+    public void start(RamAccountingContext ramAccountingContext, Version indexVersionCreated, BigArrays bigArrays) {
+        this.ramAccountingContext = ramAccountingContext;
+        this.indexVersionCreated = indexVersionCreated;
+        this.bigArrays = bigArrays;
+        onStart();
+    }
+
+    void onStart() {
+    }
+
+    public void setNextReader(LeafReaderContext context) throws IOException {
+        for (VectorExpression expression : toCollect) {
+            if (expression != null) {
+                expression.setNextReader(context);
+            }
+        }
+        if (filter != null) {
+            filter.setNextReader(context);
+        }
+    }
+
+    /**
+     * Aggregates the documents of the batch and clears the batch.
+     */
+    public void aggregate(ColumnBatch batch) throws IOException {
+        // each expression is evaluated exactly once per batch, doc values can't be read twice
+        for (int i = 0; i < toCollect.length; i++) {
+            if (toCollect[i] != null) {
+                vectors[i] = toCollect[i].evaluate(batch);
+            }
+        }
+        batch.selectAll();
+        if (filter != null) {
+            filter.filter(batch);
+        }
+        if (batch.numSelected() > 0) {
+            aggregateSelected(batch);
+        }
+        batch.clear();
+    }
+
+    /**
+     * Aggregates the selected documents of a batch, the {@link #vectors} have been evaluated for the batch.
+     */
+    abstract void aggregateSelected(ColumnBatch batch) throws IOException;
+
+    /**
+     * @return the result rows, must be called once after all segments have been read
+     */
+    public abstract List<Object[]> finish();
+
+    int numAggregations() {
+        return functions.length;
+    }
+
+    Object[] newStates() {
+        Object[] states = new Object[functions.length];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = functions[i].newState(ramAccountingContext, indexVersionCreated, bigArrays);
+        }
+        return states;
+    }
+
+    /**
+     * Aggregates the selected documents of the batch into {@code states}.
+     */
+    @SuppressWarnings("unchecked")
+    void aggregate(Object[] states, ColumnBatch batch) {
+        for (int i = 0; i < aggregators.length; i++) {
+            int argumentIndex = argumentIndices[i];
+            ColumnVector values = argumentIndex == -1 ? null : vectors[argumentIndex];
+            states[i] = aggregators[i].aggregate(ramAccountingContext, states[i], values, batch);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void finishStates(Object[] states, Object[] cells, int offset) {
+        for (int i = 0; i < states.length; i++) {
+            cells[offset + i] = mode.finishCollect(ramAccountingContext, functions[i], states[i]);
+        }
+    }
+}
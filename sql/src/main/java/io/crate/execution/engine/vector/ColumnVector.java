@@ -0,0 +1,79 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.vector;
+
+import java.util.Arrays;
+
+/**
+ * The values of one column for the documents of a {@link ColumnBatch}, stored in a primitive array with a bitmap
+ * which marks the null values.
+ * <p>
+ * Positions in the vector correspond to positions in {@link ColumnBatch#docs()}.
+ */
+public abstract class ColumnVector {
+
+    private final long[] nulls = new long[(ColumnBatch.CAPACITY + 63) >>> 6];
+    private boolean hasNulls = false;
+    int size = 0;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isNull(int position) {
+        return hasNulls && (nulls[position >>> 6] & (1L << position)) != 0;
+    }
+
+    /**
+     * @return false if none of the values are null, which allows to skip the null checks
+     */
+    public boolean hasNulls() {
+        return hasNulls;
+    }
+
+    void setNull(int position) {
+        nulls[position >>> 6] |= 1L << position;
+        hasNulls = true;
+    }
+
+    /**
+     * Prepares the vector to be filled with {@code size} new values, all of which are not null.
+     */
+    void reset(int size) {
+        if (hasNulls) {
+            Arrays.fill(nulls, 0L);
+            hasNulls = false;
+        }
+        this.size = size;
+    }
+
+    /**
+     * @return the value at the position as a long, for integral types. Not defined for null values.
+     */
+    public abstract long getLong(int position);
+
+    /**
+     * @return the value at the position as a double. Not defined for null values.
+     */
+    public abstract double getDouble(int position);
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.vector;
+
+import org.apache.lucene.index.LeafReaderContext;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * A literal as vector. The values are filled once, evaluating only adjusts the size.
+ */
+final class ConstantVectorExpression implements VectorExpression {
+
+    private final ColumnVector vector;
+
+    private ConstantVectorExpression(ColumnVector vector) {
+        this.vector = vector;
+    }
+
+    static ConstantVectorExpression ofLong(@Nullable Long value) {
+        LongVector vector = new LongVector();
+        if (value != null) {
+            Arrays.fill(vector.values, value);
+        }
+        return of(vector, value == null);
+    }
+
+    static ConstantVectorExpression ofDouble(@Nullable Double value) {
+        DoubleVector vector = new DoubleVector();
+        if (value != null) {
+            Arrays.fill(vector.values, value);
+        }
+        return of(vector, value == null);
+    }
+
+    private static ConstantVectorExpression of(ColumnVector vector, boolean isNull) {
+        vector.reset(ColumnBatch.CAPACITY);
+        if (isNull) {
+            for (int i = 0; i < ColumnBatch.CAPACITY; i++) {
+                vector.setNull(i);
+            }
+        }
+        return new ConstantVectorExpression(vector);
+    }
+
+    @Override
+    public void setNextReader(LeafReaderContext context) {
+    }
+
+    @Override
+    public ColumnVector evaluate(ColumnBatch batch) {
+        vector.size = batch.size();
+        return vector;
+    }
+}
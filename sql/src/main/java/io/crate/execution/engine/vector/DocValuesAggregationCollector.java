@@ -0,0 +1,86 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.vector;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Scorer;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Lucene {@link Collector} which computes a {@link ColumnBatchAggregation} directly on the doc values of the
+ * collected segments. Collected documents are buffered in a {@link ColumnBatch} which is aggregated once it is full
+ * or the next segment starts. No rows are materialized, only the result rows of {@link #finish()}.
+ */
+public final class DocValuesAggregationCollector implements Collector {
+
+    private final ColumnBatchAggregation aggregation;
+    private final ColumnBatch batch = new ColumnBatch();
+
+    public DocValuesAggregationCollector(ColumnBatchAggregation aggregation) {
+        this.aggregation = aggregation;
+    }
+
+    @Override
+    public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+        // a batch must not span segments as the doc values are per segment
+        flush();
+        aggregation.setNextReader(context);
+        return new LeafCollector() {
+
+            @Override
+            public void setScorer(Scorer scorer) {
+            }
+
+            @Override
+            public void collect(int doc) throws IOException {
+                batch.add(doc);
+                if (batch.isFull()) {
+                    aggregation.aggregate(batch);
+                }
+            }
+        };
+    }
+
+    @Override
+    public boolean needsScores() {
+        return false;
+    }
+
+    /**
+     * @return the result rows of the aggregation, must be called once after all segments have been collected
+     */
+    public List<Object[]> finish() throws IOException {
+        flush();
+        return aggregation.finish();
+    }
+
+    private void flush() throws IOException {
+        if (batch.size() > 0) {
+            aggregation.aggregate(batch);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.vector;
+
+import io.crate.exceptions.GroupByOnArrayUnsupportedException;
+import io.crate.exceptions.UnsupportedFeatureException;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.util.NumericUtils;
+
+import java.io.IOException;
+
+/**
+ * Reads the values of a numeric column from the doc values of the segment, a whole batch of documents at once.
+ * <p>
+ * A document with multiple values fails the execution: with a {@link GroupByOnArrayUnsupportedException} if the
+ * column is the key of a {@code GROUP BY}, otherwise with an {@link UnsupportedFeatureException}.
+ */
+abstract class DocValuesVectorExpression<V extends ColumnVector> implements VectorExpression {
+
+    private final String columnName;
+    private final boolean groupKey;
+    final V vector;
+
+    private SortedNumericDocValues values;
+    private NumericDocValues singleValues;
+
+    private DocValuesVectorExpression(String columnName, boolean groupKey, V vector) {
+        this.columnName = columnName;
+        this.groupKey = groupKey;
+        this.vector = vector;
+    }
+
+    /**
+     * For byte, short, integer, long and timestamp columns.
+     *
+     * @param groupKey whether the values are the keys of a {@code GROUP BY}
+     */
+    static VectorExpression forLongs(String columnName, boolean groupKey) {
+        return new DocValuesVectorExpression<LongVector>(columnName, groupKey, new LongVector()) {
+
+            @Override
+            void setValue(int position, long value) {
+                vector.values[position] = value;
+            }
+        };
+    }
+
+    static VectorExpression forDoubles(String columnName) {
+        return new DocValuesVectorExpression<DoubleVector>(columnName, false, new DoubleVector()) {
+
+            @Override
+            void setValue(int position, long value) {
+                vector.values[position] = NumericUtils.sortableLongToDouble(value);
+            }
+        };
+    }
+
+    static VectorExpression forFloats(String columnName) {
+        return new DocValuesVectorExpression<DoubleVector>(columnName, false, new DoubleVector()) {
+
+            @Override
+            void setValue(int position, long value) {
+                vector.values[position] = NumericUtils.sortableIntToFloat((int) value);
+            }
+        };
+    }
+
+    abstract void setValue(int position, long value);
+
+    @Override
+    public void setNextReader(LeafReaderContext context) throws IOException {
+        values = DocValues.getSortedNumeric(context.reader(), columnName);
+        singleValues = DocValues.unwrapSingleton(values);
+    }
+
+    @Override
+    public ColumnVector evaluate(ColumnBatch batch) throws IOException {
+        int[] docs = batch.docs();
+        int size = batch.size();
+        vector.reset(size);
+        if (singleValues != null) {
+            for (int i = 0; i < size; i++) {
+                if (singleValues.advanceExact(docs[i])) {
+                    setValue(i, singleValues.longValue());
+                } else {
+                    vector.setNull(i);
+                }
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                if (values.advanceExact(docs[i])) {
+                    if (values.docValueCount() != 1) {
+                        throw multipleValuesException();
+                    }
+                    setValue(i, values.nextValue());
+                } else {
+                    vector.setNull(i);
+                }
+            }
+        }
+        return vector;
+    }
+
+    private RuntimeException multipleValuesException() {
+        if (groupKey) {
+            return new GroupByOnArrayUnsupportedException(columnName);
+        }
+        return new UnsupportedFeatureException(
+            "Column \"" + columnName + "\" has a value that is an array. Aggregations and filters on the column " +
+            "only support single values");
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.vector;
+
+import io.crate.breaker.RamAccountingContext;
+
+import javax.annotation.Nullable;
+
+/**
+ * Vectorized variant of {@link io.crate.execution.engine.aggregation.AggregationFunction#iterate}, which aggregates
+ * the selected values of a {@link ColumnBatch} at once.
+ * <p>
+ * The resulting state must be the same as if {@code iterate} had been called for each selected value in order.
+ */
+@FunctionalInterface
+public interface VectorAggregator<TPartial> {
+
+    /**
+     * @param values the values of the argument, null for aggregations without arguments
+     */
+    TPartial aggregate(RamAccountingContext ramAccountingContext,
+                       TPartial state,
+                       @Nullable ColumnVector values,
+                       ColumnBatch batch);
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.vector;
+
+import javax.annotation.Nullable;
+
+/**
+ * Loops over the selected values of a vector, shared by the {@link VectorAggregator} implementations.
+ */
+public final class VectorAggregators {
+
+    private VectorAggregators() {
+    }
+
+    /**
+     * @return the sum of the selected values added to {@code sum}, or null if {@code sum} and all values are null
+     * @throws ArithmeticException on long overflow
+     */
+    @Nullable
+    public static Long sumLongs(@Nullable Long sum, ColumnVector values, ColumnBatch batch) {
+        int[] selection = batch.selection();
+        int numSelected = batch.numSelected();
+        boolean hasValue = sum != null;
+        long result = hasValue ? sum : 0L;
+        for (int i = 0; i < numSelected; i++) {
+            int position = selection[i];
+            if (values.isNull(position) == false) {
+                result = Math.addExact(result, values.getLong(position));
+                hasValue = true;
+            }
+        }
+        return hasValue ? result : null;
+    }
+
+    /**
+     * @return the sum of the selected values added to {@code sum}, or null if {@code sum} and all values are null
+     */
+    @Nullable
+    public static Double sumDoubles(@Nullable Double sum, ColumnVector values, ColumnBatch batch) {
+        int[] selection = batch.selection();
+        int numSelected = batch.numSelected();
+        boolean hasValue = sum != null;
+        double result = hasValue ? sum : 0d;
+        for (int i = 0; i < numSelected; i++) {
+            int position = selection[i];
+            if (values.isNull(position) == false) {
+                result += values.getDouble(position);
+                hasValue = true;
+            }
+        }
+        return hasValue ? result : null;
+    }
+
+    public static long countNotNull(ColumnVector values, ColumnBatch batch) {
+        int numSelected = batch.numSelected();
+        if (values.hasNulls() == false) {
+            return numSelected;
+        }
+        int[] selection = batch.selection();
+        long count = 0;
+        for (int i = 0; i < numSelected; i++) {
+            if (values.isNull(selection[i]) == false) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param max true to find the largest value, false to find the smallest value
+     * @return the extreme of the selected values, null if all are null
+     */
+    @Nullable
+    public static Long extremeLong(ColumnVector values, ColumnBatch batch, boolean max) {
+        int[] selection = batch.selection();
+        int numSelected = batch.numSelected();
+        boolean hasValue = false;
+        long result = max ? Long.MIN_VALUE : Long.MAX_VALUE;
+        for (int i = 0; i < numSelected; i++) {
+            int position = selection[i];
+            if (values.isNull(position) == false) {
+                long value = values.getLong(position);
+                result = max ? Math.max(result, value) : Math.min(result, value);
+                hasValue = true;
+            }
+        }
+        return hasValue ? result : null;
+    }
+
+    /**
+     * Like {@link #extremeLong(ColumnVector, ColumnBatch, boolean)}, comparing with {@link Double#compare(double, double)}
+     * to be consistent with {@link Double#compareTo(Double)}.
+     */
+    @Nullable
+    public static Double extremeDouble(ColumnVector values, ColumnBatch batch, boolean max) {
+        int[] selection = batch.selection();
+        int numSelected = batch.numSelected();
+        boolean hasValue = false;
+        double result = 0d;
+        for (int i = 0; i < numSelected; i++) {
+            int position = selection[i];
+            if (values.isNull(position) == false) {
+                double value = values.getDouble(position);
+                if (hasValue == false) {
+                    result = value;
+                    hasValue = true;
+                } else {
+                    int cmp = Double.compare(value, result);
+                    if (max ? cmp > 0 : cmp < 0) {
+                        result = value;
+                    }
+                }
+            }
+        }
+        return hasValue ? result : null;
+    }
+}
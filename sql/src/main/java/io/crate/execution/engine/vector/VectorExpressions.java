@@ -0,0 +1,278 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.vector;
+
+import io.crate.expression.operator.AndOperator;
+import io.crate.expression.operator.EqOperator;
+import io.crate.expression.operator.GtOperator;
+import io.crate.expression.operator.GteOperator;
+import io.crate.expression.operator.LtOperator;
+import io.crate.expression.operator.LteOperator;
+import io.crate.expression.scalar.arithmetic.ArithmeticFunctions;
+import io.crate.expression.symbol.Function;
+import io.crate.expression.symbol.InputColumn;
+import io.crate.expression.symbol.Literal;
+import io.crate.expression.symbol.Symbol;
+import io.crate.lucene.FieldTypeLookup;
+import io.crate.metadata.Reference;
+import io.crate.metadata.RowGranularity;
+import io.crate.types.ByteType;
+import io.crate.types.DataType;
+import io.crate.types.DoubleType;
+import io.crate.types.FloatType;
+import io.crate.types.IntegerType;
+import io.crate.types.LongType;
+import io.crate.types.ShortType;
+import io.crate.types.TimestampType;
+import org.apache.lucene.index.LeafReaderContext;
+import org.elasticsearch.index.mapper.MappedFieldType;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates {@link VectorExpression}s and {@link VectorFilter}s for symbols.
+ * <p>
+ * Supported are references to numeric columns with doc values, numeric literals, {@code +}, {@code -} and {@code *}
+ * and comparisons combined with {@code AND}. For anything else null is returned and the row based execution must be
+ * used.
+ */
+public final class VectorExpressions {
+
+    private VectorExpressions() {
+    }
+
+    /**
+     * @return true if values of the type are stored in a {@link LongVector}
+     */
+    public static boolean isLongVectorType(DataType type) {
+        switch (type.id()) {
+            case ByteType.ID:
+            case ShortType.ID:
+            case IntegerType.ID:
+            case LongType.ID:
+            case TimestampType.ID:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return true if values of the type are stored in a {@link DoubleVector}
+     */
+    public static boolean isDoubleVectorType(DataType type) {
+        return type.id() == DoubleType.ID || type.id() == FloatType.ID;
+    }
+
+    /**
+     * @param inputs the evaluated vectors which {@link InputColumn}s refer to, null if there are none
+     */
+    @Nullable
+    static VectorExpression compile(Symbol symbol, FieldTypeLookup fieldTypeLookup, @Nullable ColumnVector[] inputs) {
+        DataType type = symbol.valueType();
+        if (isLongVectorType(type) == false && isDoubleVectorType(type) == false) {
+            return null;
+        }
+        if (symbol instanceof Reference) {
+            return compileReference((Reference) symbol, fieldTypeLookup);
+        }
+        if (symbol instanceof Literal) {
+            Number value = (Number) ((Literal) symbol).value();
+            if (isLongVectorType(type)) {
+                return ConstantVectorExpression.ofLong(value == null ? null : value.longValue());
+            }
+            return ConstantVectorExpression.ofDouble(value == null ? null : value.doubleValue());
+        }
+        if (symbol instanceof InputColumn) {
+            if (inputs == null) {
+                return null;
+            }
+            return new InputVectorExpression(inputs, ((InputColumn) symbol).index());
+        }
+        if (symbol instanceof Function) {
+            return compileArithmetic((Function) symbol, fieldTypeLookup, inputs);
+        }
+        return null;
+    }
+
+    /**
+     * Compiles the key of a {@code GROUP BY} on a byte, short, integer, long or timestamp column.
+     *
+     * @return the expression or null if the column has no doc values
+     */
+    @Nullable
+    static VectorExpression compileGroupKey(Reference reference, FieldTypeLookup fieldTypeLookup) {
+        assert isLongVectorType(reference.valueType()) : "group key must be stored in a LongVector";
+        if (compileReference(reference, fieldTypeLookup) == null) {
+            return null;
+        }
+        return DocValuesVectorExpression.forLongs(reference.column().fqn(), true);
+    }
+
+    @Nullable
+    private static VectorExpression compileReference(Reference reference, FieldTypeLookup fieldTypeLookup) {
+        if (reference.granularity() != RowGranularity.DOC || reference.column().isSystemColumn()) {
+            return null;
+        }
+        String fqn = reference.column().fqn();
+        MappedFieldType fieldType = fieldTypeLookup.get(fqn);
+        if (fieldType == null || fieldType.hasDocValues() == false) {
+            return null;
+        }
+        switch (reference.valueType().id()) {
+            case DoubleType.ID:
+                return DocValuesVectorExpression.forDoubles(fqn);
+            case FloatType.ID:
+                return DocValuesVectorExpression.forFloats(fqn);
+            default:
+                return DocValuesVectorExpression.forLongs(fqn, false);
+        }
+    }
+
+    @Nullable
+    private static VectorExpression compileArithmetic(Function function,
+                                                      FieldTypeLookup fieldTypeLookup,
+                                                      @Nullable ColumnVector[] inputs) {
+        ArithmeticVectorExpression.Operator operator;
+        switch (function.info().ident().name()) {
+            case ArithmeticFunctions.Names.ADD:
+                operator = ArithmeticVectorExpression.Operator.ADD;
+                break;
+            case ArithmeticFunctions.Names.SUBTRACT:
+                operator = ArithmeticVectorExpression.Operator.SUBTRACT;
+                break;
+            case ArithmeticFunctions.Names.MULTIPLY:
+                operator = ArithmeticVectorExpression.Operator.MULTIPLY;
+                break;
+            default:
+                return null;
+        }
+        List<Symbol> arguments = function.arguments();
+        if (arguments.size() != 2) {
+            return null;
+        }
+        VectorExpression left = compile(arguments.get(0), fieldTypeLookup, inputs);
+        VectorExpression right = compile(arguments.get(1), fieldTypeLookup, inputs);
+        if (left == null || right == null) {
+            return null;
+        }
+        switch (function.valueType().id()) {
+            case LongType.ID:
+                return ArithmeticVectorExpression.forLongs(operator, left, right);
+            case IntegerType.ID:
+                return ArithmeticVectorExpression.forIntegers(operator, left, right);
+            case DoubleType.ID:
+                return ArithmeticVectorExpression.forDoubles(operator, left, right);
+            case FloatType.ID:
+                return ArithmeticVectorExpression.forFloats(operator, left, right);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param inputs the evaluated vectors which {@link InputColumn}s refer to, null if there are none
+     */
+    @Nullable
+    static VectorFilter compileFilter(Symbol symbol, FieldTypeLookup fieldTypeLookup, @Nullable ColumnVector[] inputs) {
+        if (symbol instanceof Function == false) {
+            return null;
+        }
+        Function function = (Function) symbol;
+        List<Symbol> arguments = function.arguments();
+        String name = function.info().ident().name();
+        if (AndOperator.NAME.equals(name)) {
+            List<VectorFilter> filters = new ArrayList<>(arguments.size());
+            for (Symbol argument : arguments) {
+                VectorFilter filter = compileFilter(argument, fieldTypeLookup, inputs);
+                if (filter == null) {
+                    return null;
+                }
+                filters.add(filter);
+            }
+            return VectorFilter.and(filters);
+        }
+        VectorFilter.Comparison comparison;
+        switch (name) {
+            case EqOperator.NAME:
+                comparison = VectorFilter.Comparison.EQ;
+                break;
+            case LtOperator.NAME:
+                comparison = VectorFilter.Comparison.LT;
+                break;
+            case LteOperator.NAME:
+                comparison = VectorFilter.Comparison.LTE;
+                break;
+            case GtOperator.NAME:
+                comparison = VectorFilter.Comparison.GT;
+                break;
+            case GteOperator.NAME:
+                comparison = VectorFilter.Comparison.GTE;
+                break;
+            default:
+                return null;
+        }
+        if (arguments.size() != 2) {
+            return null;
+        }
+        Symbol leftSymbol = arguments.get(0);
+        Symbol rightSymbol = arguments.get(1);
+        VectorExpression left = compile(leftSymbol, fieldTypeLookup, inputs);
+        VectorExpression right = compile(rightSymbol, fieldTypeLookup, inputs);
+        if (left == null || right == null) {
+            return null;
+        }
+        if (isLongVectorType(leftSymbol.valueType()) && isLongVectorType(rightSymbol.valueType())) {
+            return VectorFilter.compareLongs(comparison, left, right);
+        }
+        if (isDoubleVectorType(leftSymbol.valueType()) && isDoubleVectorType(rightSymbol.valueType())) {
+            return VectorFilter.compareDoubles(comparison, left, right);
+        }
+        return null;
+    }
+
+    /**
+     * Returns a vector which has already been evaluated for the current batch.
+     */
+    private static final class InputVectorExpression implements VectorExpression {
+
+        private final ColumnVector[] inputs;
+        private final int index;
+
+        InputVectorExpression(ColumnVector[] inputs, int index) {
+            this.inputs = inputs;
+            this.index = index;
+        }
+
+        @Override
+        public void setNextReader(LeafReaderContext context) {
+        }
+
+        @Override
+        public ColumnVector evaluate(ColumnBatch batch) {
+            return inputs[index];
+        }
+    }
+}
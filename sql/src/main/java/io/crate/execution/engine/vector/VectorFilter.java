@@ -0,0 +1,146 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.vector;
+
+import org.apache.lucene.index.LeafReaderContext;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Narrows down the selection of a {@link ColumnBatch} to the documents matching a condition.
+ * Documents for which the condition is null are removed from the selection, like in a {@code WHERE} clause.
+ */
+public abstract class VectorFilter {
+
+    public abstract void setNextReader(LeafReaderContext context) throws IOException;
+
+    public abstract void filter(ColumnBatch batch) throws IOException;
+
+    enum Comparison {
+        EQ,
+        LT,
+        LTE,
+        GT,
+        GTE;
+
+        boolean matches(int compareResult) {
+            switch (this) {
+                case EQ:
+                    return compareResult == 0;
+                case LT:
+                    return compareResult < 0;
+                case LTE:
+                    return compareResult <= 0;
+                case GT:
+                    return compareResult > 0;
+                case GTE:
+                    return compareResult >= 0;
+                default:
+                    throw new AssertionError("Invalid comparison: " + this);
+            }
+        }
+    }
+
+    static VectorFilter compareLongs(Comparison comparison, VectorExpression left, VectorExpression right) {
+        return new CompareFilter(comparison, left, right, false);
+    }
+
+    static VectorFilter compareDoubles(Comparison comparison, VectorExpression left, VectorExpression right) {
+        return new CompareFilter(comparison, left, right, true);
+    }
+
+    static VectorFilter and(List<VectorFilter> filters) {
+        return new AndFilter(filters.toArray(new VectorFilter[0]));
+    }
+
+    private static final class CompareFilter extends VectorFilter {
+
+        private final Comparison comparison;
+        private final VectorExpression left;
+        private final VectorExpression right;
+        private final boolean compareDoubles;
+
+        CompareFilter(Comparison comparison, VectorExpression left, VectorExpression right, boolean compareDoubles) {
+            this.comparison = comparison;
+            this.left = left;
+            this.right = right;
+            this.compareDoubles = compareDoubles;
+        }
+
+        @Override
+        public void setNextReader(LeafReaderContext context) throws IOException {
+            left.setNextReader(context);
+            right.setNextReader(context);
+        }
+
+        @Override
+        public void filter(ColumnBatch batch) throws IOException {
+            ColumnVector leftValues = left.evaluate(batch);
+            ColumnVector rightValues = right.evaluate(batch);
+            boolean checkNulls = leftValues.hasNulls() || rightValues.hasNulls();
+            int[] selection = batch.selection();
+            int numSelected = batch.numSelected();
+            int numMatching = 0;
+            for (int i = 0; i < numSelected; i++) {
+                int position = selection[i];
+                if (checkNulls && (leftValues.isNull(position) || rightValues.isNull(position))) {
+                    continue;
+                }
+                int compareResult = compareDoubles
+                    ? Double.compare(leftValues.getDouble(position), rightValues.getDouble(position))
+                    : Long.compare(leftValues.getLong(position), rightValues.getLong(position));
+                if (comparison.matches(compareResult)) {
+                    selection[numMatching++] = position;
+                }
+            }
+            batch.numSelected(numMatching);
+        }
+    }
+
+    private static final class AndFilter extends VectorFilter {
+
+        private final VectorFilter[] filters;
+
+        AndFilter(VectorFilter[] filters) {
+            this.filters = filters;
+        }
+
+        @Override
+        public void setNextReader(LeafReaderContext context) throws IOException {
+            for (VectorFilter filter : filters) {
+                filter.setNextReader(context);
+            }
+        }
+
+        @Override
+        public void filter(ColumnBatch batch) throws IOException {
+            for (VectorFilter filter : filters) {
+                if (batch.numSelected() == 0) {
+                    return;
+                }
+                filter.filter(batch);
+            }
+        }
+    }
+}
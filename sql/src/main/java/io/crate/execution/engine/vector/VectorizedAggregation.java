@@ -0,0 +1,104 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.vector;
+
+import io.crate.execution.dsl.projection.AggregationProjection;
+import io.crate.execution.dsl.projection.FilterProjection;
+import io.crate.execution.engine.aggregation.AggregationFunction;
+import io.crate.expression.symbol.AggregateMode;
+import io.crate.expression.symbol.Aggregation;
+import io.crate.expression.symbol.Symbol;
+import io.crate.lucene.FieldTypeLookup;
+import io.crate.metadata.Functions;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A global aggregation, emitting a single row with the (partial) aggregation results.
+ */
+final class VectorizedAggregation extends ColumnBatchAggregation {
+
+    private Object[] states;
+
+    private VectorizedAggregation(VectorExpression[] toCollect,
+                                  ColumnVector[] vectors,
+                                  @Nullable VectorFilter filter,
+                                  AggregationFunction[] functions,
+                                  VectorAggregator[] aggregators,
+                                  int[] argumentIndices,
+                                  AggregateMode mode) {
+        super(toCollect, vectors, filter, functions, aggregators, argumentIndices, mode);
+    }
+
+    @Nullable
+    static VectorizedAggregation tryCreate(List<? extends Symbol> toCollect,
+                                           @Nullable FilterProjection filterProjection,
+                                           AggregationProjection aggregationProjection,
+                                           Functions functions,
+                                           FieldTypeLookup fieldTypeLookup) {
+        AggregateMode mode = aggregationProjection.mode();
+        if (isSupportedMode(mode) == false) {
+            return null;
+        }
+        VectorExpression[] expressions = compileToCollect(toCollect, fieldTypeLookup, -1);
+        if (expressions == null) {
+            return null;
+        }
+        ColumnVector[] vectors = new ColumnVector[toCollect.size()];
+        VectorFilter filter = null;
+        if (filterProjection != null) {
+            filter = VectorExpressions.compileFilter(filterProjection.query(), fieldTypeLookup, vectors);
+            if (filter == null) {
+                return null;
+            }
+        }
+        List<Aggregation> aggregations = aggregationProjection.aggregations();
+        AggregationFunction[] aggregationFunctions = new AggregationFunction[aggregations.size()];
+        VectorAggregator[] aggregators = new VectorAggregator[aggregations.size()];
+        int[] argumentIndices = new int[aggregations.size()];
+        if (compileAggregations(aggregations, expressions, functions, aggregationFunctions, aggregators, argumentIndices) == false) {
+            return null;
+        }
+        return new VectorizedAggregation(
+            expressions, vectors, filter, aggregationFunctions, aggregators, argumentIndices, mode);
+    }
+
+    @Override
+    void onStart() {
+        states = newStates();
+    }
+
+    @Override
+    void aggregateSelected(ColumnBatch batch) {
+        aggregate(states, batch);
+    }
+
+    @Override
+    public List<Object[]> finish() {
+        Object[] cells = new Object[states.length];
+        finishStates(states, cells, 0);
+        return Collections.singletonList(cells);
+    }
+}
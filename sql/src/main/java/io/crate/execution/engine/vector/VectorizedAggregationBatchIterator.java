@@ -0,0 +1,189 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.vector;
+
+import io.crate.breaker.CrateCircuitBreakerService;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.concurrent.CompletableFutures;
+import io.crate.data.BatchIterator;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.exceptions.Exceptions;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.util.BigArrays;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * BatchIterator which computes a {@link ColumnBatchAggregation} over the documents of the {@code leaves} matching
+ * the {@code query} using a {@link DocValuesAggregationCollector} and emits the resulting rows.
+ * <p>
+ * The aggregation is computed by {@link #loadNextBatch()}.
+ */
+public final class VectorizedAggregationBatchIterator implements BatchIterator<Row> {
+
+    private final IndexSearcher indexSearcher;
+    private final Query query;
+    private final List<LeafReaderContext> leaves;
+    private final ColumnBatchAggregation aggregation;
+    private final RamAccountingContext ramAccountingContext;
+    private final Version indexVersionCreated;
+    private final BigArrays bigArrays;
+
+    private List<Object[]> rows;
+    private RowN row;
+    private int position = -1;
+    private boolean closed = false;
+    private volatile Throwable killed;
+
+    public VectorizedAggregationBatchIterator(IndexSearcher indexSearcher,
+                                              Query query,
+                                              List<LeafReaderContext> leaves,
+                                              ColumnBatchAggregation aggregation,
+                                              RamAccountingContext ramAccountingContext,
+                                              Version indexVersionCreated,
+                                              BigArrays bigArrays) {
+        this.indexSearcher = indexSearcher;
+        this.query = query;
+        this.leaves = leaves;
+        this.aggregation = aggregation;
+        this.ramAccountingContext = ramAccountingContext;
+        this.indexVersionCreated = indexVersionCreated;
+        this.bigArrays = bigArrays;
+    }
+
+    @Override
+    public Row currentElement() {
+        return row;
+    }
+
+    @Override
+    public void moveToStart() {
+        raiseIfClosedOrKilled();
+        position = -1;
+    }
+
+    @Override
+    public boolean moveNext() {
+        raiseIfClosedOrKilled();
+        if (rows == null || position + 1 >= rows.size()) {
+            return false;
+        }
+        position++;
+        Object[] cells = rows.get(position);
+        if (row == null) {
+            row = new RowN(cells.length);
+        }
+        row.cells(cells);
+        return true;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    @Override
+    public CompletionStage<?> loadNextBatch() {
+        if (closed) {
+            return CompletableFutures.failedFuture(new IllegalStateException("BatchIterator is closed"));
+        }
+        if (rows != null) {
+            return CompletableFutures.failedFuture(new IllegalStateException("BatchIterator already fully loaded"));
+        }
+        try {
+            rows = aggregate();
+        } catch (Throwable t) {
+            return CompletableFutures.failedFuture(t);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private List<Object[]> aggregate() throws IOException {
+        aggregation.start(ramAccountingContext, indexVersionCreated, bigArrays);
+        DocValuesAggregationCollector collector = new DocValuesAggregationCollector(aggregation);
+        Weight weight = indexSearcher.createNormalizedWeight(query, false);
+        int numDocs = 0;
+        for (LeafReaderContext leaf : leaves) {
+            Scorer scorer = weight.scorer(leaf);
+            if (scorer == null) {
+                continue;
+            }
+            LeafCollector leafCollector = collector.getLeafCollector(leaf);
+            Bits liveDocs = leaf.reader().getLiveDocs();
+            DocIdSetIterator docIdSetIt = scorer.iterator();
+            int doc;
+            while ((doc = docIdSetIt.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+                if (liveDocs != null && liveDocs.get(doc) == false) {
+                    continue;
+                }
+                leafCollector.collect(doc);
+                if (++numDocs % ColumnBatch.CAPACITY == 0) {
+                    raiseIfClosedOrKilled();
+                    checkCircuitBreaker();
+                }
+            }
+        }
+        return collector.finish();
+    }
+
+    @Override
+    public boolean allLoaded() {
+        return rows != null;
+    }
+
+    @Override
+    public void kill(@Nonnull Throwable throwable) {
+        killed = throwable;
+    }
+
+    private void checkCircuitBreaker() throws CircuitBreakingException {
+        if (ramAccountingContext != null && ramAccountingContext.trippedBreaker()) {
+            throw new CircuitBreakingException(
+                CrateCircuitBreakerService.breakingExceptionMessage(ramAccountingContext.contextId(),
+                    ramAccountingContext.limit()));
+        }
+    }
+
+    private void raiseIfClosedOrKilled() {
+        if (killed != null) {
+            Exceptions.rethrowUnchecked(killed);
+        }
+        if (closed) {
+            throw new IllegalStateException("BatchIterator is closed");
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.vector;
+
+import com.carrotsearch.hppc.LongIntHashMap;
+import io.crate.exceptions.GroupByOnArrayUnsupportedException;
+import io.crate.execution.dsl.projection.FilterProjection;
+import io.crate.execution.dsl.projection.GroupProjection;
+import io.crate.execution.engine.aggregation.AggregationFunction;
+import io.crate.expression.symbol.AggregateMode;
+import io.crate.expression.symbol.Aggregation;
+import io.crate.expression.symbol.InputColumn;
+import io.crate.expression.symbol.Symbol;
+import io.crate.lucene.FieldTypeLookup;
+import io.crate.metadata.Functions;
+import io.crate.metadata.Reference;
+import io.crate.metadata.RowGranularity;
+import io.crate.types.DataType;
+import io.crate.types.StringType;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.index.mapper.MappedFieldType;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@code GROUP BY} on a single column, emitting a row with the key and the (partial) aggregation results per group.
+ * <p>
+ * String keys are resolved using the ordinals of the {@link SortedSetDocValues} of the segment: the key of an
+ * ordinal is only looked up the first time the ordinal occurs in the segment. Keys of byte, short, integer, long and
+ * timestamp columns are read from the doc values.
+ * <p>
+ * The selected documents of a batch are sorted by group and each group is aggregated using the
+ * {@link VectorAggregator}s, so aggregating is cheapest if there are few groups.
+ */
+final class VectorizedGroupByAggregation extends ColumnBatchAggregation {
+
+    /**
+     * Overhead of a key in {@link OrdinalsKeyResolver#groupIdsByKey}, without the key bytes: the HashMap.Node,
+     * the boxed group id, about two table slots (load factor 0.75, the table grows by doubling) and the BytesRef
+     * with its array header.
+     */
+    private static final long KEY_ENTRY_OVERHEAD_BYTES =
+        RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_OBJECT_HEADER + Integer.BYTES
+                                          + 3 * RamUsageEstimator.NUM_BYTES_OBJECT_REF)
+        + RamUsageEstimator.shallowSizeOfInstance(Integer.class)
+        + 2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF
+        + RamUsageEstimator.shallowSizeOfInstance(BytesRef.class)
+        + RamUsageEstimator.NUM_BYTES_ARRAY_HEADER;
+
+    private final KeyResolver keyResolver;
+    private final List<Object> keys = new ArrayList<>();
+    private final List<Object[]> statesByGroup = new ArrayList<>();
+    private final long statesBytes;
+    private int nullKeyGroup = -1;
+
+    private final int[] groupIds = new int[ColumnBatch.CAPACITY];
+    private final long[] sortedGroupPositions = new long[ColumnBatch.CAPACITY];
+    private final int[] positions = new int[ColumnBatch.CAPACITY];
+
+    private VectorizedGroupByAggregation(VectorExpression[] toCollect,
+                                         ColumnVector[] vectors,
+                                         @Nullable VectorFilter filter,
+                                         AggregationFunction[] functions,
+                                         VectorAggregator[] aggregators,
+                                         int[] argumentIndices,
+                                         AggregateMode mode,
+                                         int keyIndex,
+                                         DataType keyType,
+                                         @Nullable String ordinalsColumn) {
+        super(toCollect, vectors, filter, functions, aggregators, argumentIndices, mode);
+        this.keyResolver = ordinalsColumn == null
+            ? new LongKeyResolver(keyIndex, keyType)
+            : new OrdinalsKeyResolver(ordinalsColumn);
+        this.statesBytes = RamUsageEstimator.NUM_BYTES_ARRAY_HEADER
+                           + (long) functions.length * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+    }
+
+    @Nullable
+    static VectorizedGroupByAggregation tryCreate(List<? extends Symbol> toCollect,
+                                                  @Nullable FilterProjection filterProjection,
+                                                  GroupProjection groupProjection,
+                                                  Functions functions,
+                                                  FieldTypeLookup fieldTypeLookup) {
+        AggregateMode mode = groupProjection.mode();
+        List<Symbol> groupKeys = groupProjection.keys();
+        if (isSupportedMode(mode) == false || groupKeys.size() != 1 || groupKeys.get(0) instanceof InputColumn == false) {
+            return null;
+        }
+        int keyIndex = ((InputColumn) groupKeys.get(0)).index();
+        Symbol key = toCollect.get(keyIndex);
+        if (key instanceof Reference == false) {
+            return null;
+        }
+        Reference keyRef = (Reference) key;
+        if (keyRef.granularity() != RowGranularity.DOC || keyRef.column().isSystemColumn()) {
+            return null;
+        }
+        DataType keyType = keyRef.valueType();
+        boolean isStringKey = keyType.id() == StringType.ID;
+        if (isStringKey) {
+            MappedFieldType fieldType = fieldTypeLookup.get(keyRef.column().fqn());
+            if (fieldType == null || fieldType.hasDocValues() == false) {
+                return null;
+            }
+        } else if (VectorExpressions.isLongVectorType(keyType) == false) {
+            return null;
+        }
+
+        VectorExpression[] expressions = compileToCollect(toCollect, fieldTypeLookup, isStringKey ? keyIndex : -1);
+        if (expressions == null) {
+            return null;
+        }
+        if (isStringKey == false) {
+            // compiled again as group key so that multiple values fail with a GROUP BY specific error
+            expressions[keyIndex] = VectorExpressions.compileGroupKey(keyRef, fieldTypeLookup);
+            if (expressions[keyIndex] == null) {
+                return null;
+            }
+        }
+        ColumnVector[] vectors = new ColumnVector[toCollect.size()];
+        VectorFilter filter = null;
+        if (filterProjection != null) {
+            filter = VectorExpressions.compileFilter(filterProjection.query(), fieldTypeLookup, vectors);
+            if (filter == null) {
+                return null;
+            }
+        }
+        List<Aggregation> aggregations = groupProjection.values();
+        AggregationFunction[] aggregationFunctions = new AggregationFunction[aggregations.size()];
+        VectorAggregator[] aggregators = new VectorAggregator[aggregations.size()];
+        int[] argumentIndices = new int[aggregations.size()];
+        if (compileAggregations(aggregations, expressions, functions, aggregationFunctions, aggregators, argumentIndices) == false) {
+            return null;
+        }
+        return new VectorizedGroupByAggregation(
+            expressions,
+            vectors,
+            filter,
+            aggregationFunctions,
+            aggregators,
+            argumentIndices,
+            mode,
+            keyIndex,
+            keyType,
+            isStringKey ? keyRef.column().fqn() : null);
+    }
+
+    @Override
+    public void setNextReader(LeafReaderContext context) throws IOException {
+        super.setNextReader(context);
+        keyResolver.setNextReader(context);
+    }
+
+    @Override
+    void aggregateSelected(ColumnBatch batch) throws IOException {
+        int numSelected = batch.numSelected();
+        int[] selection = batch.selection();
+        keyResolver.resolveGroups(batch);
+        // group ids are positive, sorting by (groupId, position) keeps the positions of a group in order
+        for (int i = 0; i < numSelected; i++) {
+            sortedGroupPositions[i] = ((long) groupIds[i] << 32) | selection[i];
+        }
+        Arrays.sort(sortedGroupPositions, 0, numSelected);
+        for (int i = 0; i < numSelected; i++) {
+            positions[i] = (int) sortedGroupPositions[i];
+        }
+        int start = 0;
+        while (start < numSelected) {
+            int groupId = (int) (sortedGroupPositions[start] >>> 32);
+            int end = start + 1;
+            while (end < numSelected && (int) (sortedGroupPositions[end] >>> 32) == groupId) {
+                end++;
+            }
+            batch.select(positions, start, end);
+            aggregate(statesByGroup.get(groupId), batch);
+            start = end;
+        }
+    }
+
+    @Override
+    public List<Object[]> finish() {
+        List<Object[]> rows = new ArrayList<>(keys.size());
+        for (int groupId = 0; groupId < keys.size(); groupId++) {
+            Object[] cells = new Object[1 + numAggregations()];
+            cells[0] = keys.get(groupId);
+            finishStates(statesByGroup.get(groupId), cells, 1);
+            rows.add(cells);
+        }
+        return rows;
+    }
+
+    private int newGroup(@Nullable Object key, long keyBytes) {
+        ramAccountingContext.addBytes(statesBytes + keyBytes);
+        keys.add(key);
+        statesByGroup.add(newStates());
+        return keys.size() - 1;
+    }
+
+    private int nullKeyGroup() {
+        if (nullKeyGroup == -1) {
+            nullKeyGroup = newGroup(null, 0);
+        }
+        return nullKeyGroup;
+    }
+
+    /**
+     * Sets the group ids of the selected documents of a batch.
+     */
+    private abstract class KeyResolver {
+
+        void setNextReader(LeafReaderContext context) throws IOException {
+        }
+
+        abstract void resolveGroups(ColumnBatch batch) throws IOException;
+    }
+
+    private final class OrdinalsKeyResolver extends KeyResolver {
+
+        private final String columnName;
+        private final Map<BytesRef, Integer> groupIdsByKey = new HashMap<>();
+        private SortedSetDocValues values;
+        private int[] groupIdsByOrdinal = new int[0];
+
+        OrdinalsKeyResolver(String columnName) {
+            this.columnName = columnName;
+        }
+
+        @Override
+        void setNextReader(LeafReaderContext context) throws IOException {
+            values = DocValues.getSortedSet(context.reader(), columnName);
+            int valueCount = (int) values.getValueCount();
+            ramAccountingContext.releaseBytes((long) groupIdsByOrdinal.length * Integer.BYTES);
+            ramAccountingContext.addBytes((long) valueCount * Integer.BYTES);
+            groupIdsByOrdinal = new int[valueCount];
+            Arrays.fill(groupIdsByOrdinal, -1);
+        }
+
+        @Override
+        void resolveGroups(ColumnBatch batch) throws IOException {
+            int[] docs = batch.docs();
+            int[] selection = batch.selection();
+            for (int i = 0; i < batch.numSelected(); i++) {
+                if (values.advanceExact(docs[selection[i]]) == false) {
+                    groupIds[i] = nullKeyGroup();
+                    continue;
+                }
+                int ordinal = (int) values.nextOrd();
+                if (values.nextOrd() != SortedSetDocValues.NO_MORE_ORDS) {
+                    throw new GroupByOnArrayUnsupportedException(columnName);
+                }
+                int groupId = groupIdsByOrdinal[ordinal];
+                if (groupId == -1) {
+                    BytesRef key = BytesRef.deepCopyOf(values.lookupOrd(ordinal));
+                    Integer existingGroupId = groupIdsByKey.get(key);
+                    if (existingGroupId == null) {
+                        groupId = newGroup(key, KEY_ENTRY_OVERHEAD_BYTES + key.length);
+                        groupIdsByKey.put(key, groupId);
+                    } else {
+                        groupId = existingGroupId;
+                    }
+                    groupIdsByOrdinal[ordinal] = groupId;
+                }
+                groupIds[i] = groupId;
+            }
+        }
+    }
+
+    private final class LongKeyResolver extends KeyResolver {
+
+        private final int keyIndex;
+        private final DataType keyType;
+        private final LongIntHashMap groupIdsByKey = new LongIntHashMap();
+
+        LongKeyResolver(int keyIndex, DataType keyType) {
+            this.keyIndex = keyIndex;
+            this.keyType = keyType;
+        }
+
+        @Override
+        void resolveGroups(ColumnBatch batch) {
+            ColumnVector keyValues = vectors[keyIndex];
+            int[] selection = batch.selection();
+            for (int i = 0; i < batch.numSelected(); i++) {
+                int position = selection[i];
+                if (keyValues.isNull(position)) {
+                    groupIds[i] = nullKeyGroup();
+                    continue;
+                }
+                long key = keyValues.getLong(position);
+                int slot = groupIdsByKey.indexOf(key);
+                if (groupIdsByKey.indexExists(slot)) {
+                    groupIds[i] = groupIdsByKey.indexGet(slot);
+                } else {
+                    int groupId = newGroup(keyType.value(key), Long.BYTES);
+                    groupIdsByKey.indexInsert(slot, key, groupId);
+                    groupIds[i] = groupId;
+                }
+            }
+        }
+    }
+}
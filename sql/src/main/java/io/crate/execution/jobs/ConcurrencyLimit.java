@@ -0,0 +1,126 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.jobs;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Adaptive limit of the concurrent operations which may be issued towards a single node.
+ * <p>
+ * The limit follows an additive increase / multiplicative decrease scheme driven by the round trip times and the
+ * rejections of the operations sent to the node. The round trip times are taken per item of an operation, so that
+ * operations of a different size, e.g. after the bulk size has been adapted, are not mistaken for queueing:
+ *
+ * <ul>
+ *     <li>A rejected operation halves the limit.</li>
+ *     <li>An operation which took longer than {@link #RTT_TOLERANCE} times the long-term average round trip time
+ *     is a sign of queueing on the node and decreases the limit gently.</li>
+ *     <li>Otherwise the limit is increased by one if at least half of it was in use.</li>
+ * </ul>
+ *
+ * The long-term average is an exponential moving average, so that the baseline follows a node which became slower
+ * permanently instead of throttling it down to the minimum forever.
+ */
+@ThreadSafe
+public final class ConcurrencyLimit {
+
+    static final int MIN_LIMIT = 1;
+    static final int MAX_LIMIT = 50;
+
+    static final double RTT_TOLERANCE = 2.0;
+    private static final double BACKOFF_RATIO = 0.5;
+    private static final double LATENCY_BACKOFF_RATIO = 0.9;
+    private static final int LONG_WINDOW = 100;
+
+    private final String nodeId;
+    private double limit;
+    private double longRttNanos = -1;
+    private long lastRttNanos = -1;
+    private long numRejections = 0;
+
+    ConcurrencyLimit(@Nullable String nodeId, long initialLimit) {
+        this.nodeId = nodeId;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * @return the id of the node the operations are issued to or null if the node is unknown
+     */
+    @Nullable
+    public String nodeId() {
+        return nodeId;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @param rttNanos round trip time of an operation
+     * @param numItems number of items the operation consisted of
+     * @param inFlight number of operations in flight towards the node when the operation was issued
+     * @param rejected whether the node rejected the operation
+     * @return true if the sample indicated an overloaded node and the limit has been decreased
+     */
+    public synchronized boolean onSample(long rttNanos, int numItems, long inFlight, boolean rejected) {
+        if (rejected) {
+            numRejections++;
+            limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+            return true;
+        }
+        rttNanos /= Math.max(1, numItems);
+        lastRttNanos = rttNanos;
+        if (longRttNanos < 0) {
+            longRttNanos = rttNanos;
+        } else {
+            longRttNanos += (rttNanos - longRttNanos) / LONG_WINDOW;
+        }
+        if (rttNanos > longRttNanos * RTT_TOLERANCE) {
+            limit = Math.max(MIN_LIMIT, limit * LATENCY_BACKOFF_RATIO);
+            return true;
+        }
+        if (inFlight * 2 >= limit) {
+            limit = Math.min(MAX_LIMIT, limit + 1);
+        }
+        return false;
+    }
+
+    /**
+     * @return the long-term average round trip time per item in nanoseconds or -1 if no operation completed yet
+     */
+    public synchronized long getAvgRttNanos() {
+        return (long) longRttNanos;
+    }
+
+    /**
+     * @return the round trip time per item of the last completed operation in nanoseconds or -1 if none completed yet
+     */
+    public synchronized long getLastRttNanos() {
+        return lastRttNanos;
+    }
+
+    public synchronized long getNumRejections() {
+        return numRejections;
+    }
+}
@@ -44,6 +44,12 @@ import java.util.Set;
 /**
  * A {@link DownstreamRXTask} which receives paged buckets from upstreams
  * and forwards the merged bucket results to the consumers for further processing.
+ * <p>
+ * If read-ahead is enabled, the next page is requested from the upstreams as soon as a page has been handed to the
+ * consumer, instead of once the consumer asks for more rows. At most one page is requested ahead and only while
+ * the circuit breaker isn't exceeded. The page is held back until the consumer asks for more rows.
+ * Read-ahead requires a {@link PagingIterator} which always fetches from all upstreams, so it can't be used if the
+ * pages are merged sorted.
  */
 public class DistResultRXTask extends AbstractTask implements DownstreamRXTask, PageBucketReceiver {
 
@@ -61,10 +67,18 @@ public class DistResultRXTask extends AbstractTask implements DownstreamRXTask,
     private final Map<Integer, Bucket> bucketsByIdx;
     private final RowConsumer consumer;
     private final BatchPagingIterator<Integer> batchPagingIterator;
+    private final boolean readAhead;
 
     private Throwable lastThrowable = null;
     private volatile boolean receivingFirstPage = true;
 
+    // guarded by lock
+    private boolean readingAhead = false;
+    private boolean readAheadPageReceived = false;
+
+    // guarded by buckets
+    private boolean listenersReleased = false;
+
     public DistResultRXTask(Logger logger,
                             String nodeName,
                             int id,
@@ -74,7 +88,21 @@ public class DistResultRXTask extends AbstractTask implements DownstreamRXTask,
                             Streamer<?>[] streamers,
                             RamAccountingContext ramAccountingContext,
                             int numBuckets) {
+        this(logger, nodeName, id, name, rowConsumer, pagingIterator, streamers, ramAccountingContext, numBuckets, false);
+    }
+
+    public DistResultRXTask(Logger logger,
+                            String nodeName,
+                            int id,
+                            String name,
+                            RowConsumer rowConsumer,
+                            PagingIterator<Integer, Row> pagingIterator,
+                            Streamer<?>[] streamers,
+                            RamAccountingContext ramAccountingContext,
+                            int numBuckets,
+                            boolean readAhead) {
         super(id, logger);
+        this.readAhead = readAhead;
         this.nodeName = nodeName;
         this.name = name;
         this.streamers = streamers;
@@ -89,7 +117,7 @@ public class DistResultRXTask extends AbstractTask implements DownstreamRXTask,
         batchPagingIterator = new BatchPagingIterator<>(
             pagingIterator,
             this::fetchMore,
-            this::allUpstreamsExhausted,
+            this::allLoaded,
             () -> releaseListenersAndCloseContext(null)
         );
         this.consumer = rowConsumer;
@@ -101,6 +129,8 @@ public class DistResultRXTask extends AbstractTask implements DownstreamRXTask,
                 resultListener.needMore(false);
             }
             listenersByBucketIdx.clear();
+            // pages which have been requested ahead may still arrive
+            listenersReleased = true;
         }
         close(throwable);
     }
@@ -109,11 +139,18 @@ public class DistResultRXTask extends AbstractTask implements DownstreamRXTask,
         return exhausted.size() == numBuckets;
     }
 
+    private boolean allLoaded() {
+        synchronized (lock) {
+            // a page which has been requested ahead isn't merged yet
+            return allUpstreamsExhausted() && readingAhead == false;
+        }
+    }
+
     @Override
     public void setBucket(int bucketIdx, Bucket rows, boolean isLast, PageResultListener pageResultListener) {
         synchronized (buckets) {
             buckets.add(bucketIdx);
-            if (lastThrowable == null) {
+            if (lastThrowable == null && listenersReleased == false) {
                 listenersByBucketIdx.put(bucketIdx, pageResultListener);
             } else {
                 pageResultListener.needMore(false);
@@ -133,7 +170,7 @@ public class DistResultRXTask extends AbstractTask implements DownstreamRXTask,
                 exhausted.add(bucketIdx);
             }
             if (bucketsByIdx.size() == numBuckets) {
-                shouldTriggerConsumer = true;
+                shouldTriggerConsumer = pageRequested();
             }
         }
         if (shouldTriggerConsumer) {
@@ -177,10 +214,41 @@ public class DistResultRXTask extends AbstractTask implements DownstreamRXTask,
         }
         if (allUpstreamsExhausted()) {
             pagingIterator.finish();
+        } else {
+            // must happen before the consumer is triggered, it may ask for the next page right away
+            maybeReadAhead();
         }
         triggerConsumer();
     }
 
+    private void maybeReadAhead() {
+        if (readAhead == false || ramAccountingContext.exceededBreaker()) {
+            return;
+        }
+        synchronized (lock) {
+            if (lastThrowable != null) {
+                return;
+            }
+            readingAhead = true;
+        }
+        fetchFromUnExhausted();
+    }
+
+    /**
+     * Called once a page is complete.
+     *
+     * @return true if the consumer is waiting for the page; false if the page has been requested ahead and must be
+     *         held back until the consumer asks for more rows.
+     */
+    private boolean pageRequested() {
+        assert Thread.holdsLock(lock) : "pageRequested must be called while holding the lock";
+        if (readingAhead) {
+            readAheadPageReceived = true;
+            return false;
+        }
+        return true;
+    }
+
     private void mergeBuckets() {
         List<KeyIterable<Integer, Row>> buckets = new ArrayList<>(numBuckets);
         synchronized (lock) {
@@ -193,6 +261,25 @@ public class DistResultRXTask extends AbstractTask implements DownstreamRXTask,
     }
 
     private boolean fetchMore(Integer exhaustedBucket) {
+        boolean wasReadingAhead;
+        boolean pageReceived;
+        synchronized (lock) {
+            wasReadingAhead = readingAhead;
+            pageReceived = readAheadPageReceived;
+            readingAhead = false;
+            readAheadPageReceived = false;
+        }
+        if (wasReadingAhead) {
+            if (pageReceived) {
+                if (lastThrowable == null) {
+                    mergeAndTriggerConsumer();
+                } else {
+                    triggerConsumer();
+                }
+            }
+            // otherwise the page is still in flight and triggers the consumer once it is complete
+            return true;
+        }
         if (allUpstreamsExhausted()) {
             return false;
         }
@@ -283,7 +370,7 @@ public class DistResultRXTask extends AbstractTask implements DownstreamRXTask,
 
         lastThrowable = throwable;
         exhausted.add(bucketIdx);
-        return bucketsByIdx.size() == numBuckets;
+        return bucketsByIdx.size() == numBuckets && pageRequested();
     }
 
     /**
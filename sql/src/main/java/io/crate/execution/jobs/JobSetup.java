@@ -66,6 +66,7 @@ import io.crate.execution.engine.collect.sources.SystemCollectSource;
 import io.crate.execution.engine.distribution.DistributingConsumerFactory;
 import io.crate.execution.engine.distribution.SingleBucketBuilder;
 import io.crate.execution.engine.distribution.merge.PagingIterator;
+import io.crate.execution.engine.export.OutputS3Limits;
 import io.crate.execution.engine.fetch.FetchTask;
 import io.crate.execution.engine.join.HashJoinOperation;
 import io.crate.execution.engine.join.NestedLoopOperation;
@@ -90,6 +91,7 @@ import org.elasticsearch.common.inject.Singleton;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.threadpool.ThreadPool;
 
@@ -127,6 +129,7 @@ public class JobSetup extends AbstractComponent {
                     MapSideDataCollectOperation collectOperation,
                     ClusterService clusterService,
                     NodeJobsCounter nodeJobsCounter,
+                    OutputS3Limits s3Limits,
                     CrateCircuitBreakerService breakerService,
                     CountOperation countOperation,
                     ThreadPool threadPool,
@@ -136,7 +139,8 @@ public class JobSetup extends AbstractComponent {
                     Functions functions,
                     SystemCollectSource systemCollectSource,
                     ShardCollectSource shardCollectSource,
-                    BigArrays bigArrays) {
+                    BigArrays bigArrays,
+                    NodeEnvironment nodeEnvironment) {
         super(settings);
         joinTaskLogger = Loggers.getLogger(JoinTask.class, settings);
         distResultRXTaskLogger = Loggers.getLogger(DistResultRXTask.class, settings);
@@ -152,6 +156,7 @@ public class JobSetup extends AbstractComponent {
         this.projectorFactory = new ProjectionToProjectorVisitor(
             clusterService,
             nodeJobsCounter,
+            s3Limits,
             functions,
             threadPool,
             settings,
@@ -160,7 +165,8 @@ public class JobSetup extends AbstractComponent {
             normalizer,
             systemCollectSource::getRowUpdater,
             systemCollectSource::tableDefinition,
-            bigArrays
+            bigArrays,
+            ProjectionToProjectorVisitor.spillPath(nodeEnvironment)
         );
     }
 
@@ -615,7 +621,9 @@ public class JobSetup extends AbstractComponent {
                         RamAccountingContext.forExecutionPhase(circuitBreaker, phase))),
                 DataTypes.getStreamers(phase.inputTypes()),
                 ramAccountingContext,
-                phase.numUpstreams()
+                phase.numUpstreams(),
+                // sorted merges fetch from the upstream whose rows are exhausted, the next page can't be requested ahead
+                phase.numUpstreams() == 1 || phase.orderByPositions() == null
             ));
             return true;
         }
@@ -746,17 +754,17 @@ public class JobSetup extends AbstractComponent {
                 phase.numRightOutputs(),
                 firstConsumer,
                 joinCondition,
+                phase.joinType(),
                 phase.leftJoinConditionInputs(),
                 phase.rightJoinConditionInputs(),
-                // 110 extra bytes per row =
-                //    96 bytes for each ArrayList +
-                //    7 bytes per key for the IntHashObjectHashMap  (should be 4 but the map pre-allocates more)
-                //    7 bytes perv value (pointer from the map to the list) (should be 4 but the map pre-allocates more)
-                new RowAccounting(phase.leftOutputTypes(), ramAccountingContext, 110),
+                phase.leftOutputTypes(),
+                phase.rightOutputTypes(),
+                new RowAccounting(phase.leftOutputTypes(), ramAccountingContext, HashJoinOperation.BYTES_PER_ROW_OVERHEAD),
                 inputFactory,
                 circuitBreaker,
                 phase.estimatedRowSizeForLeft(),
-                phase.numberOfRowsForLeft());
+                phase.numberOfRowsForLeft(),
+                CrateCircuitBreakerService.QUERY_CIRCUIT_BREAKER_SPILL_THRESHOLD_SETTING.setting().get(settings));
             DistResultRXTask left = pageDownstreamContextForNestedLoop(
                 phase.phaseId(),
                 context,
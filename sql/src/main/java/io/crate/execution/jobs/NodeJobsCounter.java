@@ -22,9 +22,15 @@
 
 package io.crate.execution.jobs;
 
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
 
 import javax.annotation.Nullable;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
@@ -33,12 +39,16 @@ import java.util.function.BiFunction;
  * Counts how many operations issued from the current node are in progress across the cluster.
  * If the destination node cannot be determined, it counts the in progress operations towards the unknown node.
  * Note: one job can span multiple nodes.
+ * <p>
+ * Additionally it keeps a {@link ConcurrencyLimit} per node which adapts the number of operations that may be in
+ * progress towards the node to its observed latency and rejections. The limits of nodes which left the cluster are
+ * removed.
  */
 @Singleton
-public class NodeJobsCounter {
+public class NodeJobsCounter implements ClusterStateListener {
 
     /**
-     * Represents the maximum number of concurrent operations that can be issued towards a node.
+     * Represents the initial number of concurrent operations that can be issued towards a node.
      */
     public static final long MAX_NODE_CONCURRENT_OPERATIONS = 5;
 
@@ -46,6 +56,9 @@ public class NodeJobsCounter {
     // Using single element long[] to avoid autoboxing
     private final Map<String, long[]> operationsCountPerNode = new ConcurrentHashMap<>();
 
+    private final ConcurrencyLimit unknownNodeLimit = new ConcurrencyLimit(null, MAX_NODE_CONCURRENT_OPERATIONS);
+    private final Map<String, ConcurrencyLimit> limitPerNode = new ConcurrentHashMap<>();
+
     private static final BiFunction<String, long[], long[]> INCREMENT_COUNTER_FOR_NODE = (node, count) -> {
         if (count == null) {
             count = new long[1];
@@ -66,6 +79,13 @@ public class NodeJobsCounter {
         return count;
     };
 
+    public NodeJobsCounter() {
+    }
+
+    @Inject
+    public NodeJobsCounter(ClusterService clusterService) {
+        clusterService.addListener(this);
+    }
 
     public void increment(@Nullable String nodeId) {
         if (nodeId == null) {
@@ -93,4 +113,27 @@ public class NodeJobsCounter {
         }
         return count;
     }
+
+    public ConcurrencyLimit getConcurrencyLimit(@Nullable String nodeId) {
+        if (nodeId == null) {
+            return unknownNodeLimit;
+        }
+        return limitPerNode.computeIfAbsent(nodeId, id -> new ConcurrencyLimit(id, MAX_NODE_CONCURRENT_OPERATIONS));
+    }
+
+    /**
+     * @return the concurrency limits of all nodes operations have been issued to, by node id
+     */
+    public Map<String, ConcurrencyLimit> getConcurrencyLimits() {
+        return Collections.unmodifiableMap(limitPerNode);
+    }
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        if (event.nodesChanged()) {
+            // also drops limits re-created by late responses of nodes which were removed before
+            DiscoveryNodes nodes = event.state().nodes();
+            limitPerNode.keySet().removeIf(nodeId -> nodes.nodeExists(nodeId) == false);
+        }
+    }
 }
@@ -41,5 +41,6 @@ public class ColumnExtractingLineExpression extends LineCollectorExpression<Obje
     @Override
     public void startCollect(LineContext context) {
         this.context = context;
+        context.addReferencedColumn(columnIdent);
     }
 }
@@ -23,20 +23,61 @@ package io.crate.expression.reference.file;
 
 import io.crate.metadata.ColumnIdent;
 import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.ElasticsearchParseException;
 import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+/**
+ * Holds the current line of a file which is read by COPY FROM.
+ * <p>
+ * A line is either a JSON object ({@link #rawSource(byte[])}) or the field values of a CSV row
+ * ({@link #csvRow(List, List)}). Single columns are extracted without building a map of the whole
+ * line where possible:
+ * <ul>
+ *     <li>CSV values are looked up by their position in the header, which is resolved once per file.</li>
+ *     <li>JSON objects are parsed as a stream, reading only the top-level fields registered with
+ *     {@link #addReferencedColumn(ColumnIdent)} and skipping all others.</li>
+ * </ul>
+ */
 public class LineContext {
 
+    private final Set<String> referencedColumns = new HashSet<>();
+
     private byte[] rawSource;
     private Map<String, Object> parsedSource;
+    private Map<String, Object> referencedColumnValues;
+
+    private List<String> csvKeys;
+    private Map<String, Integer> csvKeyPositions;
+    private List<String> csvValues;
+
+    /**
+     * Registers a column which will be read using {@link #get(ColumnIdent)}.
+     */
+    public void addReferencedColumn(ColumnIdent columnIdent) {
+        referencedColumns.add(columnIdent.name());
+    }
 
     @Nullable
     public BytesRef sourceAsBytesRef() {
+        if (rawSource == null && csvValues != null) {
+            rawSource = csvRowToJson();
+        }
         if (rawSource != null) {
             return new BytesRef(rawSource);
         }
@@ -45,6 +86,10 @@ public class LineContext {
 
     public Map<String, Object> sourceAsMap() {
         if (parsedSource == null) {
+            if (csvValues != null) {
+                parsedSource = csvRowToMap();
+                return parsedSource;
+            }
             try {
                 parsedSource = XContentHelper.convertToMap(new BytesArray(rawSource), false, XContentType.JSON).v2();
             } catch (NullPointerException e) {
@@ -55,7 +100,15 @@ public class LineContext {
     }
 
     public Object get(ColumnIdent columnIdent) {
-        Map<String, Object> parentMap = sourceAsMap();
+        if (csvValues != null) {
+            return csvValue(columnIdent);
+        }
+        Map<String, Object> parentMap;
+        if (parsedSource == null && referencedColumns.contains(columnIdent.name())) {
+            parentMap = referencedColumnValues();
+        } else {
+            parentMap = sourceAsMap();
+        }
         if (parentMap == null) {
             return null;
         }
@@ -69,5 +122,103 @@ public class LineContext {
     public void rawSource(byte[] bytes) {
         this.rawSource = bytes;
         this.parsedSource = null;
+        this.referencedColumnValues = null;
+        this.csvValues = null;
+    }
+
+    /**
+     * Sets the current line to a CSV row.
+     *
+     * @param keys the column names of the file header. Expected to be the same instance for all rows of a file.
+     * @param values the field values of the row, in the order of the keys. May contain fewer values than keys.
+     */
+    public void csvRow(List<String> keys, List<String> values) {
+        if (keys != csvKeys) {
+            csvKeys = keys;
+            csvKeyPositions = new HashMap<>(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                csvKeyPositions.put(keys.get(i), i);
+            }
+        }
+        this.csvValues = values;
+        this.rawSource = null;
+        this.parsedSource = null;
+        this.referencedColumnValues = null;
+    }
+
+    @Nullable
+    private Object csvValue(ColumnIdent columnIdent) {
+        // CSV values are never objects, so like ColumnIdent.get the path of the column is not followed
+        Integer position = csvKeyPositions.get(columnIdent.name());
+        if (position == null || position >= csvValues.size()) {
+            return null;
+        }
+        return new BytesRef(csvValues.get(position));
+    }
+
+    private Map<String, Object> csvRowToMap() {
+        Map<String, Object> map = new HashMap<>(csvValues.size());
+        for (int i = 0; i < csvValues.size(); i++) {
+            map.put(csvKeys.get(i), csvValues.get(i));
+        }
+        return map;
+    }
+
+    private byte[] csvRowToJson() {
+        try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+            builder.startObject();
+            for (int i = 0; i < csvValues.size(); i++) {
+                builder.field(csvKeys.get(i), csvValues.get(i));
+            }
+            builder.endObject();
+            return BytesReference.toBytes(builder.bytes());
+        } catch (IOException e) {
+            throw new ElasticsearchParseException("Failed to convert CSV row to JSON", e);
+        }
+    }
+
+    /**
+     * Reads the values of the referenced top-level columns from the raw source, skipping over all other fields.
+     * Parsing stops as soon as all referenced columns have been found.
+     */
+    @Nullable
+    private Map<String, Object> referencedColumnValues() {
+        if (referencedColumnValues != null || rawSource == null) {
+            return referencedColumnValues;
+        }
+        Map<String, Object> values = new HashMap<>(referencedColumns.size());
+        try (XContentParser parser = JsonXContent.jsonXContent.createParser(NamedXContentRegistry.EMPTY, rawSource)) {
+            if (parser.nextToken() != XContentParser.Token.START_OBJECT) {
+                throw new ElasticsearchParseException("Failed to parse content to map, expected an object");
+            }
+            while (values.size() < referencedColumns.size() &&
+                   parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                XContentParser.Token token = parser.nextToken();
+                if (referencedColumns.contains(fieldName)) {
+                    values.put(fieldName, readValue(parser, token));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new ElasticsearchParseException("Failed to parse content to map", e);
+        }
+        referencedColumnValues = values;
+        return values;
+    }
+
+    @Nullable
+    private static Object readValue(XContentParser parser, XContentParser.Token token) throws IOException {
+        switch (token) {
+            case START_OBJECT:
+                return parser.map();
+            case START_ARRAY:
+                return parser.list();
+            case VALUE_NULL:
+                return null;
+            default:
+                return parser.objectText();
+        }
     }
 }
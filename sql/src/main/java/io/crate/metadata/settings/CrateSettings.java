@@ -26,7 +26,10 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import io.crate.breaker.CrateCircuitBreakerService;
 import io.crate.cluster.gracefulstop.DecommissioningService;
+import io.crate.execution.dml.upsert.ShardUpsertCoalescer;
 import io.crate.execution.engine.collect.stats.JobsLogService;
+import io.crate.execution.engine.distribution.DistributingConsumerFactory;
+import io.crate.execution.engine.export.OutputS3Limits;
 import io.crate.execution.engine.indexing.ShardingUpsertExecutor;
 import io.crate.expression.NestableInput;
 import io.crate.expression.reference.NestedObjectExpression;
@@ -81,6 +84,7 @@ public final class CrateSettings implements ClusterStateListener {
             JobsLogService.STATS_OPERATIONS_LOG_SIZE_SETTING,
             JobsLogService.STATS_OPERATIONS_LOG_EXPIRATION_SETTING,
             TableStatsService.STATS_SERVICE_REFRESH_INTERVAL_SETTING,
+            TableStatsService.STATS_SERVICE_SAMPLE_SIZE_SETTING,
             CrateCircuitBreakerService.JOBS_LOG_CIRCUIT_BREAKER_LIMIT_SETTING,
             CrateCircuitBreakerService.JOBS_LOG_CIRCUIT_BREAKER_OVERHEAD_SETTING,
             CrateCircuitBreakerService.OPERATIONS_LOG_CIRCUIT_BREAKER_LIMIT_SETTING,
@@ -89,9 +93,19 @@ public final class CrateSettings implements ClusterStateListener {
             // INDICES
             CrateCircuitBreakerService.QUERY_CIRCUIT_BREAKER_LIMIT_SETTING,
             CrateCircuitBreakerService.QUERY_CIRCUIT_BREAKER_OVERHEAD_SETTING,
+            CrateCircuitBreakerService.QUERY_CIRCUIT_BREAKER_SPILL_THRESHOLD_SETTING,
 
             // BULK
             ShardingUpsertExecutor.BULK_REQUEST_TIMEOUT_SETTING,
+            ShardUpsertCoalescer.COALESCE_WINDOW_SETTING,
+            ShardUpsertCoalescer.COALESCE_MAX_ITEMS_SETTING,
+
+            // DISTRIBUTION
+            DistributingConsumerFactory.PAGE_FORMAT_SETTING,
+
+            // COPY TO
+            OutputS3Limits.PART_SIZE_SETTING,
+            OutputS3Limits.MAX_CONCURRENT_PARTS_SETTING,
 
             // GRACEFUL STOP
             DecommissioningService.DECOMMISSION_INTERNAL_SETTING_GROUP,
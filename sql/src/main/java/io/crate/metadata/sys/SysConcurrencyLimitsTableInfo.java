@@ -0,0 +1,122 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.metadata.sys;
+
+import com.google.common.collect.ImmutableMap;
+import io.crate.action.sql.SessionContext;
+import io.crate.analyze.WhereClause;
+import io.crate.execution.jobs.ConcurrencyLimit;
+import io.crate.execution.jobs.NodeJobsCounter;
+import io.crate.metadata.ColumnIdent;
+import io.crate.metadata.RelationName;
+import io.crate.metadata.Routing;
+import io.crate.metadata.RoutingProvider;
+import io.crate.metadata.RowGranularity;
+import io.crate.metadata.expressions.RowCollectExpressionFactory;
+import io.crate.metadata.table.ColumnRegistrar;
+import io.crate.metadata.table.StaticTableInfo;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static io.crate.metadata.RowContextCollectorExpression.forFunction;
+
+/**
+ * Exposes the adaptive limits of the concurrent operations each node issues towards the other nodes.
+ */
+public class SysConcurrencyLimitsTableInfo extends StaticTableInfo {
+
+    public static final RelationName NAME = new RelationName(SysSchemaInfo.NAME, "concurrency_limits");
+
+    static class Columns {
+        static final ColumnIdent TARGET_NODE_ID = new ColumnIdent("target_node_id");
+        static final ColumnIdent MAX_IN_FLIGHT = new ColumnIdent("max_in_flight");
+        static final ColumnIdent IN_FLIGHT = new ColumnIdent("in_flight");
+        static final ColumnIdent AVG_RTT = new ColumnIdent("avg_rtt");
+        static final ColumnIdent LAST_RTT = new ColumnIdent("last_rtt");
+        static final ColumnIdent REJECTIONS = new ColumnIdent("rejections");
+        static final ColumnIdent NODE = new ColumnIdent("node");
+        static final ColumnIdent NODE_ID = new ColumnIdent("node", "id");
+        static final ColumnIdent NODE_NAME = new ColumnIdent("node", "name");
+    }
+
+    SysConcurrencyLimitsTableInfo() {
+        super(NAME,
+            new ColumnRegistrar(NAME, RowGranularity.DOC)
+                .register(Columns.TARGET_NODE_ID, DataTypes.STRING)
+                .register(Columns.MAX_IN_FLIGHT, DataTypes.INTEGER)
+                .register(Columns.IN_FLIGHT, DataTypes.LONG)
+                .register(Columns.AVG_RTT, DataTypes.DOUBLE)
+                .register(Columns.LAST_RTT, DataTypes.DOUBLE)
+                .register(Columns.REJECTIONS, DataTypes.LONG)
+                .register(Columns.NODE, DataTypes.OBJECT)
+                .register(Columns.NODE_ID, DataTypes.STRING)
+                .register(Columns.NODE_NAME, DataTypes.STRING),
+            Collections.emptyList()
+        );
+    }
+
+    public static Map<ColumnIdent, RowCollectExpressionFactory<ConcurrencyLimit>> expressions(
+        Supplier<DiscoveryNode> localNode,
+        NodeJobsCounter nodeJobsCounter) {
+
+        return ImmutableMap.<ColumnIdent, RowCollectExpressionFactory<ConcurrencyLimit>>builder()
+            .put(Columns.TARGET_NODE_ID, () -> forFunction(l -> new BytesRef(l.nodeId())))
+            .put(Columns.MAX_IN_FLIGHT, () -> forFunction(ConcurrencyLimit::getLimit))
+            .put(Columns.IN_FLIGHT, () -> forFunction(l -> nodeJobsCounter.getInProgressJobsForNode(l.nodeId())))
+            .put(Columns.AVG_RTT, () -> forFunction(l -> toMillis(l.getAvgRttNanos())))
+            .put(Columns.LAST_RTT, () -> forFunction(l -> toMillis(l.getLastRttNanos())))
+            .put(Columns.REJECTIONS, () -> forFunction(ConcurrencyLimit::getNumRejections))
+            .put(Columns.NODE, () -> forFunction(ignored -> ImmutableMap.builder()
+                .put("id", new BytesRef(localNode.get().getId()))
+                .put("name", new BytesRef(localNode.get().getName()))
+                .build()
+            ))
+            .put(Columns.NODE_ID, () -> forFunction(ignored -> new BytesRef(localNode.get().getId())))
+            .put(Columns.NODE_NAME, () -> forFunction(ignored -> new BytesRef(localNode.get().getName())))
+            .build();
+    }
+
+    private static Double toMillis(long nanos) {
+        if (nanos < 0) {
+            return null;
+        }
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public Routing getRouting(ClusterState state, RoutingProvider routingProvider, WhereClause whereClause, RoutingProvider.ShardSelection shardSelection, SessionContext sessionContext) {
+        return Routing.forTableOnAllNodes(NAME, state.getNodes());
+    }
+
+    @Override
+    public RowGranularity rowGranularity() {
+        return RowGranularity.DOC;
+    }
+}
@@ -56,6 +56,8 @@ public class SysSchemaInfo implements SchemaInfo {
         tableInfos.put(SysAllocationsTableInfo.IDENT.name(), new SysAllocationsTableInfo());
         tableInfos.put(SysHealthTableInfo.IDENT.name(), new SysHealthTableInfo());
         tableInfos.put(SysMetricsTableInfo.NAME.name(), new SysMetricsTableInfo());
+        tableInfos.put(SysPlanCacheTableInfo.NAME.name(), new SysPlanCacheTableInfo());
+        tableInfos.put(SysConcurrencyLimitsTableInfo.NAME.name(), new SysConcurrencyLimitsTableInfo());
     }
 
     @Override
@@ -26,6 +26,7 @@ import com.google.common.annotations.VisibleForTesting;
 import io.crate.analyze.user.Privilege;
 import io.crate.execution.engine.collect.files.SummitsIterable;
 import io.crate.execution.engine.collect.stats.JobsLogs;
+import io.crate.execution.jobs.NodeJobsCounter;
 import io.crate.expression.reference.StaticTableDefinition;
 import io.crate.expression.reference.sys.check.SysCheck;
 import io.crate.expression.reference.sys.check.SysChecker;
@@ -34,10 +35,12 @@ import io.crate.expression.reference.sys.shard.SysAllocations;
 import io.crate.expression.reference.sys.snapshot.SysSnapshot;
 import io.crate.expression.reference.sys.snapshot.SysSnapshots;
 import io.crate.metadata.RelationName;
+import io.crate.planner.PlanCache;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.repositories.RepositoriesService;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -58,7 +61,9 @@ public class SysTableDefinitions {
                                RepositoriesService repositoriesService,
                                SysSnapshots sysSnapshots,
                                SysAllocations sysAllocations,
-                               TableHealthService tableHealthService) {
+                               TableHealthService tableHealthService,
+                               PlanCache planCache,
+                               NodeJobsCounter nodeJobsCounter) {
         tableDefinitions.put(SysJobsTableInfo.IDENT, new StaticTableDefinition<>(
             () -> completedFuture(jobsLogs.activeJobs()),
             SysJobsTableInfo.expressions(clusterService::localNode)
@@ -116,6 +121,14 @@ public class SysTableDefinitions {
             () -> completedFuture(jobsLogs.metrics()),
             SysMetricsTableInfo.expressions(clusterService::localNode)
         ));
+        tableDefinitions.put(SysPlanCacheTableInfo.NAME, new StaticTableDefinition<>(
+            () -> completedFuture(Collections.singletonList(planCache)),
+            SysPlanCacheTableInfo.expressions(clusterService::localNode)
+        ));
+        tableDefinitions.put(SysConcurrencyLimitsTableInfo.NAME, new StaticTableDefinition<>(
+            () -> completedFuture(nodeJobsCounter.getConcurrencyLimits().values()),
+            SysConcurrencyLimitsTableInfo.expressions(clusterService::localNode, nodeJobsCounter)
+        ));
     }
 
     public StaticTableDefinition<?> get(RelationName relationName) {
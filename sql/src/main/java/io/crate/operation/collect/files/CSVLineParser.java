@@ -30,14 +30,17 @@ import com.fasterxml.jackson.dataformat.csv.CsvParser;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 public class CSVLineParser {
 
     private List<Object> keyList;
+    private List<String> keys;
     private ObjectMapper objectMapper = new ObjectMapper();
     private CsvObjectReader csvReader = new CsvMapper().enable(CsvParser.Feature.TRIM_SPACES)
         .readerWithTypedSchemaFor(String.class);
@@ -51,19 +54,37 @@ public class CSVLineParser {
         if (keySet.size() != keyList.size() || keySet.size() == 0) {
             throw new IllegalArgumentException("Invalid header: duplicate entries or no entries present");
         }
+        keys = keyList.stream().map(String.class::cast).collect(Collectors.toList());
     }
 
-    public byte[] parse(String row) throws IOException {
-        MappingIterator<Object> iterator = csvReader.readValues(row.getBytes(StandardCharsets.UTF_8));
-        HashMap<Object, Object> csvAsMap = new HashMap<>();
-        int i = 0;
+    /**
+     * @return the column names of the header, in the order they appear in the file
+     */
+    public List<String> keys() {
+        return keys;
+    }
+
+    /**
+     * Tokenizes a row into its field values, in the order of {@link #keys()}.
+     * Rows with fewer values than keys result in a shorter list.
+     */
+    public List<String> parseValues(String row) throws IOException {
+        MappingIterator<String> iterator = csvReader.readValues(row.getBytes(StandardCharsets.UTF_8));
+        List<String> values = new ArrayList<>(keys.size());
         while (iterator.hasNext()) {
-            if (iterator.hasNext() && i >= keyList.size()) {
+            if (values.size() >= keys.size()) {
                 throw new IllegalArgumentException("Number of values exceeds number of keys");
             }
+            values.add(iterator.next());
+        }
+        return values;
+    }
 
-            csvAsMap.put(keyList.get(i), iterator.next());
-            i++;
+    public byte[] parse(String row) throws IOException {
+        List<String> values = parseValues(row);
+        HashMap<Object, Object> csvAsMap = new HashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            csvAsMap.put(keys.get(i), values.get(i));
         }
         return objectMapper.writeValueAsBytes(csvAsMap);
     }
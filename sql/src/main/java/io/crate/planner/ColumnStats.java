@@ -0,0 +1,262 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.planner;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.crate.Streamer;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of a single column, computed by {@link TableStatsService} from a sample of the rows of a table.
+ * <p>
+ * Besides the fraction of null values and an estimate of the number of distinct values it contains the most common
+ * values with their frequencies and, for numeric columns, the bounds of an equi-depth histogram over the remaining
+ * values. Each histogram bucket holds roughly the same number of rows.
+ */
+public final class ColumnStats implements Writeable {
+
+    static final int MAX_MOST_COMMON_VALUES = 10;
+    static final int NUM_HISTOGRAM_BUCKETS = 20;
+
+    private static final double[] NO_BOUNDS = new double[0];
+
+    private final double nullFraction;
+    private final double approxDistinct;
+    private final List<Object> mostCommonValues;
+    private final double[] mostCommonFrequencies;
+    private final double[] histogramBounds;
+
+    @VisibleForTesting
+    public ColumnStats(double nullFraction,
+                       double approxDistinct,
+                       List<Object> mostCommonValues,
+                       double[] mostCommonFrequencies,
+                       double[] histogramBounds) {
+        assert mostCommonValues.size() == mostCommonFrequencies.length
+            : "Each most common value must have a frequency";
+        this.nullFraction = nullFraction;
+        this.approxDistinct = approxDistinct;
+        this.mostCommonValues = mostCommonValues;
+        this.mostCommonFrequencies = mostCommonFrequencies;
+        this.histogramBounds = histogramBounds;
+    }
+
+    public ColumnStats(StreamInput in) throws IOException {
+        nullFraction = in.readDouble();
+        approxDistinct = in.readDouble();
+        Streamer<?> streamer = DataTypes.fromStream(in).streamer();
+        int numMostCommonValues = in.readVInt();
+        mostCommonValues = new ArrayList<>(numMostCommonValues);
+        mostCommonFrequencies = new double[numMostCommonValues];
+        for (int i = 0; i < numMostCommonValues; i++) {
+            mostCommonValues.add(streamer.readValueFrom(in));
+            mostCommonFrequencies[i] = in.readDouble();
+        }
+        histogramBounds = in.readDoubleArray();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeDouble(nullFraction);
+        out.writeDouble(approxDistinct);
+        // the most common values are all of the type of the sampled column
+        DataType type = mostCommonValues.isEmpty() ? DataTypes.UNDEFINED : DataTypes.guessType(mostCommonValues.get(0));
+        DataTypes.toStream(type, out);
+        Streamer streamer = type.streamer();
+        out.writeVInt(mostCommonValues.size());
+        for (int i = 0; i < mostCommonValues.size(); i++) {
+            streamer.writeValueTo(out, mostCommonValues.get(i));
+            out.writeDouble(mostCommonFrequencies[i]);
+        }
+        out.writeDoubleArray(histogramBounds);
+    }
+
+    /**
+     * Computes the statistics of a column from a sample of its values.
+     *
+     * @param samples values of the column, may contain nulls
+     * @param numDocs number of rows of the whole table; if it is larger than the sample the number of distinct
+     *                values is extrapolated.
+     */
+    public static ColumnStats fromSample(List<?> samples, long numDocs) {
+        int sampleSize = samples.size();
+        if (sampleSize == 0) {
+            return new ColumnStats(0.0, 0.0, Collections.emptyList(), NO_BOUNDS, NO_BOUNDS);
+        }
+        Map<Object, Integer> countByValue = new HashMap<>();
+        int numNulls = 0;
+        for (Object value : samples) {
+            if (value == null) {
+                numNulls++;
+            } else {
+                countByValue.merge(value, 1, Integer::sum);
+            }
+        }
+        double nullFraction = (double) numNulls / sampleSize;
+        int numNonNull = sampleSize - numNulls;
+        if (numNonNull == 0) {
+            return new ColumnStats(nullFraction, 0.0, Collections.emptyList(), NO_BOUNDS, NO_BOUNDS);
+        }
+        double totalNonNull = Math.max(numNonNull, numDocs * (1.0 - nullFraction));
+        double approxDistinct = estimateDistinct(countByValue, numNonNull, totalNonNull);
+
+        List<Map.Entry<Object, Integer>> entries = new ArrayList<>(countByValue.entrySet());
+        entries.sort((e1, e2) -> Integer.compare(e2.getValue(), e1.getValue()));
+        // if all distinct values fit they're all kept, otherwise only the values clearly above the average count
+        double minCount = countByValue.size() <= MAX_MOST_COMMON_VALUES
+            ? 2
+            : Math.max(2, 1.25 * numNonNull / countByValue.size());
+        List<Object> mostCommonValues = new ArrayList<>();
+        List<Double> frequencies = new ArrayList<>();
+        for (Map.Entry<Object, Integer> entry : entries) {
+            int count = entry.getValue();
+            if (mostCommonValues.size() == MAX_MOST_COMMON_VALUES || count < minCount) {
+                break;
+            }
+            mostCommonValues.add(entry.getKey());
+            frequencies.add((double) count / sampleSize);
+        }
+        double[] mostCommonFrequencies = new double[frequencies.size()];
+        for (int i = 0; i < mostCommonFrequencies.length; i++) {
+            mostCommonFrequencies[i] = frequencies.get(i);
+        }
+        return new ColumnStats(
+            nullFraction,
+            approxDistinct,
+            mostCommonValues,
+            mostCommonFrequencies,
+            histogramBounds(samples, mostCommonValues));
+    }
+
+    /**
+     * Estimates the number of distinct values using the Duj1 estimator of Haas et al.:
+     * <pre>
+     *     n * d / (n - f1 + f1 * n / N)
+     * </pre>
+     * where n is the sample size, d the number of distinct values in the sample, f1 the number of values seen exactly
+     * once and N the total number of rows.
+     */
+    private static double estimateDistinct(Map<Object, Integer> countByValue, int sampleSize, double totalRows) {
+        int distinct = countByValue.size();
+        if (sampleSize >= totalRows) {
+            return distinct;
+        }
+        int seenOnce = 0;
+        for (int count : countByValue.values()) {
+            if (count == 1) {
+                seenOnce++;
+            }
+        }
+        double estimate = (double) sampleSize * distinct / (sampleSize - seenOnce + seenOnce * sampleSize / totalRows);
+        return Math.max(distinct, Math.min(estimate, totalRows));
+    }
+
+    private static double[] histogramBounds(List<?> samples, List<Object> mostCommonValues) {
+        List<Double> values = new ArrayList<>(samples.size());
+        for (Object value : samples) {
+            if (value instanceof Number && mostCommonValues.contains(value) == false) {
+                values.add(((Number) value).doubleValue());
+            } else if (value != null && (value instanceof Number) == false) {
+                // not a numeric column
+                return NO_BOUNDS;
+            }
+        }
+        if (values.size() < 2) {
+            return NO_BOUNDS;
+        }
+        Collections.sort(values);
+        int numBuckets = Math.min(NUM_HISTOGRAM_BUCKETS, values.size() - 1);
+        double[] bounds = new double[numBuckets + 1];
+        for (int i = 0; i <= numBuckets; i++) {
+            bounds[i] = values.get((int) ((long) i * (values.size() - 1) / numBuckets));
+        }
+        return bounds;
+    }
+
+    /**
+     * Fraction of rows where the column is null
+     */
+    public double nullFraction() {
+        return nullFraction;
+    }
+
+    /**
+     * Estimated number of distinct non-null values in the whole table
+     */
+    public double approxDistinct() {
+        return approxDistinct;
+    }
+
+    public List<Object> mostCommonValues() {
+        return mostCommonValues;
+    }
+
+    /**
+     * Fraction of all rows (including nulls) having the most common value at the same position
+     */
+    public double[] mostCommonFrequencies() {
+        return mostCommonFrequencies;
+    }
+
+    /**
+     * Sorted bounds of the equi-depth histogram of the values which aren't part of {@link #mostCommonValues()}.
+     * Empty if the column isn't numeric or there are not enough values.
+     */
+    public double[] histogramBounds() {
+        return histogramBounds;
+    }
+
+    /**
+     * Returns the frequency of {@code value} if it is one of the most common values, otherwise null.
+     */
+    @Nullable
+    public Double mostCommonFrequency(Object value) {
+        int idx = mostCommonValues.indexOf(value);
+        return idx == -1 ? null : mostCommonFrequencies[idx];
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnStats{" +
+               "nullFraction=" + nullFraction +
+               ", approxDistinct=" + approxDistinct +
+               ", mostCommonValues=" + mostCommonValues +
+               ", mostCommonFrequencies=" + Arrays.toString(mostCommonFrequencies) +
+               ", histogramBounds=" + Arrays.toString(histogramBounds) +
+               '}';
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.planner;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import io.crate.action.sql.SessionContext;
+import io.crate.analyze.AnalyzedStatement;
+import io.crate.analyze.relations.AnalyzedRelation;
+import io.crate.analyze.relations.QueriedRelation;
+import io.crate.expression.symbol.Field;
+import io.crate.sql.parser.SqlParser;
+import io.crate.sql.tree.CurrentTime;
+import io.crate.sql.tree.DefaultTraversalVisitor;
+import io.crate.sql.tree.Query;
+import io.crate.sql.tree.Statement;
+import io.crate.types.DataTypes;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node wide cache of parsed, analyzed and planned statements.
+ * <p>
+ * Parsed statements are cached by their statement text. Analyzed statements are cached by the statement text, the
+ * session settings which influence analysis and planning (schema, user, default limit and join settings), the
+ * version of the cluster metadata and the version of the {@link TableStats}. Their plans are additionally cached by
+ * the fetch size, as it is used as limit hint for sub-selects. Any metadata change (DDL, privileges, views, ...) and
+ * any refresh of the table statistics invalidates all cached plans.
+ * <p>
+ * Only plans of SELECT statements are cached, the plans are unbound and the parameters are bound when the plan is
+ * executed. Statements using {@code CURRENT_TIMESTAMP} are not cached as it is evaluated during analysis.
+ * <p>
+ * The cached objects are shared by all sessions and used concurrently, they must not be modified once cached:
+ * <ul>
+ *     <li>Analyzed statements are only read (output types, privileges). They are never planned, as planning may
+ *     rewrite relations in place; a plan is built from a fresh analysis of the statement.</li>
+ *     <li>Plans are built into execution plans with the parameters of each execution. The logical operators are
+ *     immutable and binding creates new symbols and where clauses instead of replacing the cached ones.</li>
+ * </ul>
+ */
+@Singleton
+public class PlanCache implements ClusterStateListener {
+
+    public static final Setting<Integer> SIZE_SETTING = Setting.intSetting(
+        "node.sql.plan_cache.size", 1000, 0, Setting.Property.NodeScope);
+
+    private final ClusterService clusterService;
+    private final boolean enabled;
+    private final Cache<String, Statement> statements;
+    private final TableStats tableStats;
+    private final Cache<Key, AnalyzedStatement> analyzedStatements;
+    private final Cache<Key, Plan> plans;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong tableStatsVersion = new AtomicLong();
+
+    @Inject
+    public PlanCache(Settings settings, ClusterService clusterService, TableStats tableStats) {
+        this.clusterService = clusterService;
+        this.tableStats = tableStats;
+        int size = SIZE_SETTING.get(settings);
+        this.enabled = size > 0;
+        this.statements = CacheBuilder.newBuilder()
+            .maximumSize(size)
+            .build();
+        this.analyzedStatements = CacheBuilder.newBuilder()
+            .maximumSize(size)
+            .build();
+        this.plans = CacheBuilder.newBuilder()
+            .maximumSize(size)
+            .<Key, Plan>removalListener(notification -> {
+                if (notification.getCause() == RemovalCause.SIZE) {
+                    evictions.incrementAndGet();
+                }
+            })
+            .build();
+        clusterService.addListener(this);
+    }
+
+    /**
+     * Parses the statement or returns the statement parsed previously from the same text.
+     */
+    public Statement parse(String query) {
+        if (enabled == false) {
+            return SqlParser.createStatement(query);
+        }
+        Statement statement = statements.getIfPresent(query);
+        if (statement == null) {
+            statement = SqlParser.createStatement(query);
+            statements.put(query, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Creates the key of a statement within the current cluster state and table statistics.
+     * Use {@link Key#withFetchSize(int)} to get the key of its plan.
+     *
+     * @return the key or null if the statement must not be cached.
+     */
+    @Nullable
+    public Key createKey(String query, Statement statement, SessionContext sessionContext) {
+        if (enabled == false || isCacheable(statement) == false) {
+            return null;
+        }
+        long currentTableStatsVersion = tableStats.version();
+        long previousTableStatsVersion = tableStatsVersion.getAndSet(currentTableStatsVersion);
+        if (previousTableStatsVersion != currentTableStatsVersion) {
+            // the cached plans can't be hit anymore, as the version is part of the key, but would occupy the cache
+            invalidateAll();
+        }
+        return new Key(query, sessionContext, clusterService.state().metaData().version(), currentTableStatsVersion, 0);
+    }
+
+    @Nullable
+    public AnalyzedStatement getAnalyzedStatement(Key key) {
+        return analyzedStatements.getIfPresent(key);
+    }
+
+    public void putAnalyzedStatement(Key key, AnalyzedStatement analyzedStatement) {
+        analyzedStatements.put(key, analyzedStatement);
+    }
+
+    /**
+     * @param key the key of the statement including the fetch size the plan is built for
+     */
+    @Nullable
+    public Plan getPlan(Key key) {
+        Plan plan = plans.getIfPresent(key);
+        if (plan == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return plan;
+    }
+
+    public void putPlan(Key key, Plan plan) {
+        plans.put(key, plan);
+    }
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        if (event.metaDataChanged()) {
+            invalidateAll();
+        }
+    }
+
+    @VisibleForTesting
+    void invalidateAll() {
+        long size = plans.size();
+        analyzedStatements.invalidateAll();
+        plans.invalidateAll();
+        invalidations.addAndGet(size);
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    public long invalidations() {
+        return invalidations.get();
+    }
+
+    public long size() {
+        return plans.size();
+    }
+
+    @VisibleForTesting
+    static boolean isCacheable(Statement statement) {
+        if (statement instanceof Query == false) {
+            return false;
+        }
+        AtomicBoolean containsCurrentTime = new AtomicBoolean(false);
+        CurrentTimeFinder.INSTANCE.process(statement, containsCurrentTime);
+        return containsCurrentTime.get() == false;
+    }
+
+    /**
+     * @return true if the unbound analyzed statement can be cached. The output types of statements like
+     *         {@code select $1} depend on the parameters, they must be analyzed with the bound parameters.
+     */
+    public static boolean isCacheable(AnalyzedStatement analyzedStatement) {
+        if (analyzedStatement instanceof QueriedRelation == false) {
+            return false;
+        }
+        for (Field field : ((AnalyzedRelation) analyzedStatement).fields()) {
+            if (field.valueType().equals(DataTypes.UNDEFINED)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static final class Key {
+
+        private final String query;
+        private final String defaultSchema;
+        private final String userName;
+        private final int defaultLimit;
+        private final boolean hashJoinEnabled;
+        private final boolean semiJoinsRewriteEnabled;
+        private final long metaDataVersion;
+        private final long tableStatsVersion;
+        private final int fetchSize;
+
+        Key(String query, SessionContext sessionContext, long metaDataVersion, long tableStatsVersion, int fetchSize) {
+            this(query,
+                sessionContext.defaultSchema(),
+                sessionContext.user().name(),
+                sessionContext.defaultLimit(),
+                sessionContext.isHashJoinEnabled(),
+                sessionContext.getSemiJoinsRewriteEnabled(),
+                metaDataVersion,
+                tableStatsVersion,
+                fetchSize);
+        }
+
+        private Key(String query,
+                    String defaultSchema,
+                    String userName,
+                    int defaultLimit,
+                    boolean hashJoinEnabled,
+                    boolean semiJoinsRewriteEnabled,
+                    long metaDataVersion,
+                    long tableStatsVersion,
+                    int fetchSize) {
+            this.query = query;
+            this.defaultSchema = defaultSchema;
+            this.userName = userName;
+            this.defaultLimit = defaultLimit;
+            this.hashJoinEnabled = hashJoinEnabled;
+            this.semiJoinsRewriteEnabled = semiJoinsRewriteEnabled;
+            this.metaDataVersion = metaDataVersion;
+            this.tableStatsVersion = tableStatsVersion;
+            this.fetchSize = fetchSize;
+        }
+
+        /**
+         * Returns the key of the plan of the statement executed with the given fetch size (max rows per result batch).
+         */
+        public Key withFetchSize(int fetchSize) {
+            if (fetchSize == this.fetchSize) {
+                return this;
+            }
+            return new Key(query, defaultSchema, userName, defaultLimit, hashJoinEnabled, semiJoinsRewriteEnabled,
+                metaDataVersion, tableStatsVersion, fetchSize);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return defaultLimit == key.defaultLimit &&
+                   hashJoinEnabled == key.hashJoinEnabled &&
+                   semiJoinsRewriteEnabled == key.semiJoinsRewriteEnabled &&
+                   metaDataVersion == key.metaDataVersion &&
+                   tableStatsVersion == key.tableStatsVersion &&
+                   fetchSize == key.fetchSize &&
+                   query.equals(key.query) &&
+                   defaultSchema.equals(key.defaultSchema) &&
+                   userName.equals(key.userName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, defaultSchema, userName, defaultLimit, hashJoinEnabled,
+                semiJoinsRewriteEnabled, metaDataVersion, tableStatsVersion, fetchSize);
+        }
+    }
+
+    private static class CurrentTimeFinder extends DefaultTraversalVisitor<Void, AtomicBoolean> {
+
+        private static final CurrentTimeFinder INSTANCE = new CurrentTimeFinder();
+
+        @Override
+        protected Void visitCurrentTime(CurrentTime node, AtomicBoolean containsCurrentTime) {
+            containsCurrentTime.set(true);
+            return null;
+        }
+    }
+}
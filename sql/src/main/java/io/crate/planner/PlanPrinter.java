@@ -201,18 +201,26 @@ public final class PlanPrinter {
             return INSTANCE.process(executionPlan, null).build();
         }
 
+        private static ImmutableMap.Builder<String, Object> estimatedRows(long estimatedRows,
+                                                                          ImmutableMap.Builder<String, Object> subMap) {
+            if (estimatedRows >= 0) {
+                subMap.put("estimatedRows", estimatedRows);
+            }
+            return subMap;
+        }
+
         @Override
         public ImmutableMap.Builder<String, Object> visitCollect(Collect plan, Void context) {
-            return createMap(plan, createSubMap()
-                .put("collectPhase", phaseMap(plan.collectPhase())));
+            return createMap(plan, estimatedRows(plan.estimatedRows(), createSubMap()
+                .put("collectPhase", phaseMap(plan.collectPhase()))));
         }
 
         @Override
         public ImmutableMap.Builder<String, Object> visitJoin(Join plan, Void context) {
-            return createMap(plan, createSubMap()
+            return createMap(plan, estimatedRows(plan.estimatedRows(), createSubMap()
                 .put("left", process(plan.left(), context).build())
                 .put("right", process(plan.right(), context).build())
-                .put("joinPhase", phaseMap(plan.joinPhase())));
+                .put("joinPhase", phaseMap(plan.joinPhase()))));
         }
 
         @Override
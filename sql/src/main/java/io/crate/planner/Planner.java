@@ -94,14 +94,20 @@ public class Planner extends AnalyzedStatementVisitor<PlannerContext, Plan> {
     private final ClusterService clusterService;
     private final LogicalPlanner logicalPlanner;
     private final Functions functions;
+    private final PlanCache planCache;
 
     private String[] awarenessAttributes;
 
 
     @Inject
-    public Planner(Settings settings, ClusterService clusterService, Functions functions, TableStats tableStats) {
+    public Planner(Settings settings,
+                   ClusterService clusterService,
+                   Functions functions,
+                   TableStats tableStats,
+                   PlanCache planCache) {
         this.clusterService = clusterService;
         this.functions = functions;
+        this.planCache = planCache;
         this.logicalPlanner = new LogicalPlanner(functions, tableStats);
 
         this.awarenessAttributes =
@@ -123,6 +129,10 @@ public class Planner extends AnalyzedStatementVisitor<PlannerContext, Plan> {
         return clusterService.state();
     }
 
+    public PlanCache planCache() {
+        return planCache;
+    }
+
     /**
      * dispatch plan creation based on analyzed statement
      *
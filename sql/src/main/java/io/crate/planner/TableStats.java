@@ -25,8 +25,14 @@ package io.crate.planner;
 import com.carrotsearch.hppc.ObjectObjectHashMap;
 import com.carrotsearch.hppc.ObjectObjectMap;
 import com.google.common.annotations.VisibleForTesting;
+import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.RelationName;
 
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Holds table statistics that are updated periodically by {@link TableStatsService}.
  */
@@ -35,9 +41,41 @@ public class TableStats {
     private static final Stats EMPTY_STATS = new Stats();
 
     private volatile ObjectObjectMap<RelationName, Stats> tableStats = new ObjectObjectHashMap<>(0);
+    private volatile Map<RelationName, Map<ColumnIdent, ColumnStats>> columnStats = Collections.emptyMap();
+    private final AtomicLong version = new AtomicLong();
 
     public void updateTableStats(ObjectObjectMap<RelationName, Stats> tableStats) {
         this.tableStats = tableStats;
+        version.incrementAndGet();
+    }
+
+    public void updateColumnStats(Map<RelationName, Map<ColumnIdent, ColumnStats>> columnStats) {
+        this.columnStats = columnStats;
+        version.incrementAndGet();
+    }
+
+    /**
+     * Returns a number which is increased on every update of the statistics
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Returns the statistics of a column, computed from a sample of the table.
+     * <p>
+     * <p>
+     * The returned statistics aren't accurate real-time values but cached values that are periodically updated
+     * </p>
+     * Returns null if there are no statistics for the column
+     */
+    @Nullable
+    public ColumnStats columnStats(RelationName relationName, ColumnIdent column) {
+        Map<ColumnIdent, ColumnStats> statsByColumn = columnStats.get(relationName);
+        if (statsByColumn == null) {
+            return null;
+        }
+        return statsByColumn.get(column);
     }
 
     /**
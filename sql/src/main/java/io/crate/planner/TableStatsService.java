@@ -25,17 +25,29 @@ package io.crate.planner;
 
 import com.carrotsearch.hppc.ObjectObjectHashMap;
 import com.carrotsearch.hppc.ObjectObjectMap;
+import com.carrotsearch.hppc.cursors.ObjectObjectCursor;
 import com.google.common.annotations.VisibleForTesting;
 import io.crate.action.sql.BaseResultReceiver;
 import io.crate.action.sql.SQLOperations;
 import io.crate.action.sql.Session;
 import io.crate.data.Row;
+import io.crate.data.Row1;
+import io.crate.metadata.ColumnIdent;
+import io.crate.metadata.Reference;
 import io.crate.metadata.RelationName;
+import io.crate.metadata.Schemas;
+import io.crate.metadata.doc.DocTableInfo;
+import io.crate.metadata.table.Operation;
+import io.crate.metadata.table.TableInfo;
 import io.crate.settings.CrateSetting;
 import io.crate.sql.parser.SqlParser;
 import io.crate.sql.tree.Statement;
 import io.crate.types.DataTypes;
 import org.apache.logging.log4j.Logger;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterStateListener;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.inject.Inject;
@@ -48,70 +60,242 @@ import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Periodically refresh {@link TableStats} based on {@link #refreshInterval}.
+ * <p>
+ * After the number of docs of the tables have been retrieved, the elected master node samples up to
+ * {@link #STATS_SERVICE_SAMPLE_SIZE_SETTING} random rows of each user table, one table after the other, to compute the
+ * {@link ColumnStats} of its primitive columns. The column stats are then published to all nodes using
+ * {@link TransportPublishColumnStatsAction}.
+ * <p>
+ * Sampling reads a large part of a table, so tables whose number of docs and columns didn't change since they've
+ * been sampled keep their column stats. Nodes joining the cluster receive the column stats from the master node.
  */
 @Singleton
-public class TableStatsService extends AbstractComponent implements Runnable {
+public class TableStatsService extends AbstractComponent implements Runnable, ClusterStateListener {
 
     public static final CrateSetting<TimeValue> STATS_SERVICE_REFRESH_INTERVAL_SETTING = CrateSetting.of(Setting.timeSetting(
         "stats.service.interval", TimeValue.timeValueHours(1), Setting.Property.NodeScope, Setting.Property.Dynamic),
         DataTypes.STRING);
 
+    public static final CrateSetting<Integer> STATS_SERVICE_SAMPLE_SIZE_SETTING = CrateSetting.of(Setting.intSetting(
+        "stats.service.sample_size", 10_000, 0, Setting.Property.NodeScope, Setting.Property.Dynamic),
+        DataTypes.INTEGER);
+
     static final String STMT = "select cast(sum(num_docs) as long), cast(sum(size) as long), schema_name, table_name " +
                                "from sys.shards where primary=true group by 3, 4";
     private static final Statement PARSED_STMT = SqlParser.createStatement(STMT);
 
     private final ClusterService clusterService;
     private final ThreadPool threadPool;
-    private final TableStatsResultReceiver resultReceiver;
+    private final TableStats tableStats;
+    private final Schemas schemas;
+    private final TransportPublishColumnStatsAction publishColumnStatsAction;
     private final Session session;
 
+    /**
+     * The session is not thread-safe, so a refresh is skipped while the previous one is still running
+     */
+    private final AtomicBoolean refreshRunning = new AtomicBoolean(false);
+
+    /**
+     * The column stats published by this node and the number of docs of the tables at the time they've been sampled
+     */
+    private volatile Map<RelationName, Map<ColumnIdent, ColumnStats>> publishedColumnStats = Collections.emptyMap();
+    private volatile Map<RelationName, Long> sampledNumDocs = Collections.emptyMap();
+
     @VisibleForTesting
     ThreadPool.Cancellable refreshScheduledTask;
     @VisibleForTesting
     TimeValue refreshInterval;
+    @VisibleForTesting
+    volatile int sampleSize;
 
     @Inject
     public TableStatsService(Settings settings,
                              ThreadPool threadPool,
                              ClusterService clusterService,
                              TableStats tableStats,
-                             SQLOperations sqlOperations) {
+                             SQLOperations sqlOperations,
+                             Schemas schemas,
+                             TransportPublishColumnStatsAction publishColumnStatsAction) {
         super(settings);
         this.threadPool = threadPool;
         this.clusterService = clusterService;
-        resultReceiver = new TableStatsResultReceiver(tableStats::updateTableStats);
+        this.tableStats = tableStats;
+        this.schemas = schemas;
+        this.publishColumnStatsAction = publishColumnStatsAction;
         refreshInterval = STATS_SERVICE_REFRESH_INTERVAL_SETTING.setting().get(settings);
         refreshScheduledTask = scheduleRefresh(refreshInterval);
+        sampleSize = STATS_SERVICE_SAMPLE_SIZE_SETTING.setting().get(settings);
         session = sqlOperations.newSystemSession();
 
         clusterService.getClusterSettings().addSettingsUpdateConsumer(
             STATS_SERVICE_REFRESH_INTERVAL_SETTING.setting(), this::setRefreshInterval);
+        clusterService.getClusterSettings().addSettingsUpdateConsumer(
+            STATS_SERVICE_SAMPLE_SIZE_SETTING.setting(), this::setSampleSize);
+        clusterService.addListener(this);
     }
 
     @Override
     public void run() {
-        updateStats();
+        if (refreshRunning.compareAndSet(false, true) == false) {
+            logger.debug("Skipping the refresh of the table stats, the previous refresh is still running");
+            return;
+        }
+        updateStats().whenComplete((ignored, t) -> refreshRunning.set(false));
     }
 
-    private void updateStats() {
+    private CompletableFuture<?> updateStats() {
         if (clusterService.localNode() == null) {
             /*
               During a long startup (e.g. during an upgrade process) the localNode() may be null
               and this would lead to NullPointerException in the TransportExecutor.
              */
             logger.debug("Could not retrieve table stats. localNode is not fully available yet.");
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
+        CompletableFuture<ObjectObjectMap<RelationName, TableStats.Stats>> newStats = new CompletableFuture<>();
+        TableStatsResultReceiver resultReceiver = new TableStatsResultReceiver(newStats::complete);
         try {
             session.quickExec(STMT, stmt -> PARSED_STMT, resultReceiver, Row.EMPTY);
         } catch (Throwable t) {
             logger.error("error retrieving table stats", t);
+            return CompletableFuture.completedFuture(null);
+        }
+        return resultReceiver.completionFuture()
+            .thenCombine(newStats, (ignored, stats) -> stats)
+            .thenCompose(this::onTableStats);
+    }
+
+    /**
+     * @return a future which completes once the column stats have been sampled and sent to the other nodes
+     */
+    @VisibleForTesting
+    CompletableFuture<?> onTableStats(ObjectObjectMap<RelationName, TableStats.Stats> newStats) {
+        tableStats.updateTableStats(newStats);
+        if (clusterService.state().nodes().isLocalNodeElectedMaster() == false) {
+            // the column stats are sampled by the master node which publishes them to all nodes
+            return CompletableFuture.completedFuture(null);
+        }
+        int sampleSize = this.sampleSize;
+        Map<RelationName, Map<ColumnIdent, ColumnStats>> previousColumnStats = publishedColumnStats;
+        Map<RelationName, Long> previousNumDocs = sampledNumDocs;
+        Map<RelationName, Map<ColumnIdent, ColumnStats>> newColumnStats = new ConcurrentHashMap<>();
+        Map<RelationName, Long> newSampledNumDocs = new ConcurrentHashMap<>();
+        CompletableFuture<?> sampled = CompletableFuture.completedFuture(null);
+        for (ObjectObjectCursor<RelationName, TableStats.Stats> cursor : newStats) {
+            RelationName relationName = cursor.key;
+            long numDocs = cursor.value.numDocs;
+            if (sampleSize == 0 || numDocs <= 0) {
+                continue;
+            }
+            List<Reference> columns = columnsToSample(relationName);
+            if (columns.isEmpty()) {
+                continue;
+            }
+            Map<ColumnIdent, ColumnStats> previous = previousColumnStats.get(relationName);
+            if (previous != null
+                && Long.valueOf(numDocs).equals(previousNumDocs.get(relationName))
+                && previous.keySet().equals(columnIdents(columns))) {
+                newColumnStats.put(relationName, previous);
+                newSampledNumDocs.put(relationName, numDocs);
+                continue;
+            }
+            sampled = sampled.thenCompose(ignored -> sampleColumns(
+                relationName, columns, numDocs, sampleSize, (name, columnStats) -> {
+                    newColumnStats.put(name, columnStats);
+                    newSampledNumDocs.put(name, numDocs);
+                }));
+        }
+        return sampled.whenComplete((ignored, t) -> {
+            publishedColumnStats = newColumnStats;
+            sampledNumDocs = newSampledNumDocs;
+            publishColumnStatsAction.broadcast(
+                new PublishColumnStatsRequest(newColumnStats),
+                ActionListener.wrap(r -> {}, e -> logger.warn("error publishing column stats", e)));
+        });
+    }
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        if (event.localNodeMaster() == false || event.nodesAdded() == false) {
+            return;
+        }
+        Map<RelationName, Map<ColumnIdent, ColumnStats>> columnStats = publishedColumnStats;
+        if (columnStats.isEmpty()) {
+            return;
+        }
+        publishColumnStatsAction.publish(
+            event.nodesDelta().addedNodes(),
+            new PublishColumnStatsRequest(columnStats),
+            ActionListener.wrap(r -> {}, e -> logger.warn("error publishing column stats to joined nodes", e)));
+    }
+
+    private static Set<ColumnIdent> columnIdents(List<Reference> columns) {
+        return columns.stream().map(Reference::column).collect(Collectors.toSet());
+    }
+
+    private List<Reference> columnsToSample(RelationName relationName) {
+        if (Schemas.isDefaultOrCustomSchema(relationName.schema()) == false) {
+            return Collections.emptyList();
+        }
+        TableInfo tableInfo;
+        try {
+            tableInfo = schemas.getTableInfoOrNull(relationName, Operation.READ);
+        } catch (Exception e) {
+            // closed or read-blocked table
+            return Collections.emptyList();
+        }
+        if (!(tableInfo instanceof DocTableInfo)) {
+            return Collections.emptyList();
         }
+        List<Reference> columns = new ArrayList<>();
+        for (Reference reference : ((DocTableInfo) tableInfo).columns()) {
+            if (reference.column().isTopLevel() && DataTypes.isPrimitive(reference.valueType())) {
+                columns.add(reference);
+            }
+        }
+        return columns;
+    }
+
+    private CompletableFuture<?> sampleColumns(RelationName relationName,
+                                               List<Reference> columns,
+                                               long numDocs,
+                                               int sampleSize,
+                                               BiConsumer<RelationName, Map<ColumnIdent, ColumnStats>> consumer) {
+        String stmt = "select " +
+                      columns.stream().map(r -> r.column().quotedOutputName()).collect(Collectors.joining(", ")) +
+                      " from " + relationName.sqlFqn() +
+                      " where random() < ?" +
+                      " limit " + sampleSize;
+        // each row is picked with the same probability so that the sample spreads over all shards and segments
+        // instead of consisting of the first rows of the first shards
+        Row1 samplingProbability = new Row1(Math.min(1.0, (double) sampleSize / numDocs));
+        ColumnSampleResultReceiver receiver = new ColumnSampleResultReceiver(
+            columns, numDocs, columnStats -> consumer.accept(relationName, columnStats));
+        try {
+            session.quickExec(stmt, receiver, samplingProbability);
+        } catch (Throwable t) {
+            logger.error("error sampling column stats of " + relationName, t);
+            return CompletableFuture.completedFuture(null);
+        }
+        // a failed sample must not prevent the other tables from being sampled
+        return receiver.completionFuture().exceptionally(t -> null);
     }
 
     static class TableStatsResultReceiver extends BaseResultReceiver {
@@ -145,6 +329,56 @@ public class TableStatsService extends AbstractComponent implements Runnable {
         }
     }
 
+    static class ColumnSampleResultReceiver extends BaseResultReceiver {
+
+        private static final Logger LOGGER = Loggers.getLogger(ColumnSampleResultReceiver.class);
+
+        private final List<Reference> columns;
+        private final long numDocs;
+        private final Consumer<Map<ColumnIdent, ColumnStats>> columnStatsConsumer;
+        private final List<List<Object>> samples;
+
+        ColumnSampleResultReceiver(List<Reference> columns,
+                                   long numDocs,
+                                   Consumer<Map<ColumnIdent, ColumnStats>> columnStatsConsumer) {
+            this.columns = columns;
+            this.numDocs = numDocs;
+            this.columnStatsConsumer = columnStatsConsumer;
+            samples = new ArrayList<>(columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                samples.add(new ArrayList<>());
+            }
+        }
+
+        @Override
+        public void setNextRow(Row row) {
+            for (int i = 0; i < samples.size(); i++) {
+                Object value = row.get(i);
+                if (value instanceof BytesRef) {
+                    // the row may be backed by shared buffers
+                    value = BytesRef.deepCopyOf((BytesRef) value);
+                }
+                samples.get(i).add(value);
+            }
+        }
+
+        @Override
+        public void allFinished(boolean interrupted) {
+            Map<ColumnIdent, ColumnStats> statsByColumn = new HashMap<>();
+            for (int i = 0; i < columns.size(); i++) {
+                statsByColumn.put(columns.get(i).column(), ColumnStats.fromSample(samples.get(i), numDocs));
+            }
+            columnStatsConsumer.accept(statsByColumn);
+            super.allFinished(interrupted);
+        }
+
+        @Override
+        public void fail(@Nonnull Throwable t) {
+            LOGGER.error("error sampling column stats", t);
+            super.fail(t);
+        }
+    }
+
     private ThreadPool.Cancellable scheduleRefresh(TimeValue newRefreshInterval) {
         if (newRefreshInterval.millis() > 0) {
             return threadPool.scheduleWithFixedDelay(
@@ -155,6 +389,12 @@ public class TableStatsService extends AbstractComponent implements Runnable {
         return null;
     }
 
+    private void setSampleSize(int newSampleSize) {
+        sampleSize = newSampleSize;
+        // the previous samples have a different size, re-sample all tables on the next refresh
+        sampledNumDocs = Collections.emptyMap();
+    }
+
     private void setRefreshInterval(TimeValue newRefreshInterval) {
         if (refreshScheduledTask != null) {
             refreshScheduledTask.cancel();
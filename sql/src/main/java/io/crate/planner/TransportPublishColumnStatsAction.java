@@ -0,0 +1,112 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.planner;
+
+import io.crate.execution.support.MultiActionListener;
+import io.crate.execution.support.NodeAction;
+import io.crate.execution.support.NodeActionRequestHandler;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionListenerResponseHandler;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportResponse;
+import org.elasticsearch.transport.TransportService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Distributes the {@link ColumnStats} sampled on the elected master node to the {@link TableStats} of all nodes.
+ */
+@Singleton
+public class TransportPublishColumnStatsAction extends AbstractComponent
+    implements NodeAction<PublishColumnStatsRequest, TransportResponse> {
+
+    private static final String NAME = "crate/sql/table_stats/publish_column_stats";
+
+    private final ClusterService clusterService;
+    private final TransportService transportService;
+    private final TableStats tableStats;
+
+    @Inject
+    public TransportPublishColumnStatsAction(Settings settings,
+                                             ClusterService clusterService,
+                                             TransportService transportService,
+                                             TableStats tableStats) {
+        super(settings);
+        this.clusterService = clusterService;
+        this.transportService = transportService;
+        this.tableStats = tableStats;
+        transportService.registerRequestHandler(
+            NAME,
+            PublishColumnStatsRequest::new,
+            ThreadPool.Names.GENERIC,
+            new NodeActionRequestHandler<>(this));
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> nodeOperation(PublishColumnStatsRequest request) {
+        tableStats.updateColumnStats(request.columnStats());
+        return CompletableFuture.completedFuture(TransportResponse.Empty.INSTANCE);
+    }
+
+    /**
+     * Applies the column stats locally and sends them to all other nodes of the cluster
+     */
+    public void broadcast(PublishColumnStatsRequest request, ActionListener<Void> listener) {
+        tableStats.updateColumnStats(request.columnStats());
+        DiscoveryNodes nodes = clusterService.state().nodes();
+        List<DiscoveryNode> otherNodes = new ArrayList<>(nodes.getSize());
+        for (DiscoveryNode node : nodes) {
+            if (node.equals(nodes.getLocalNode()) == false) {
+                otherNodes.add(node);
+            }
+        }
+        publish(otherNodes, request, listener);
+    }
+
+    /**
+     * Sends the column stats to the given nodes, e.g. to nodes which joined the cluster after the last broadcast
+     */
+    public void publish(List<DiscoveryNode> nodes, PublishColumnStatsRequest request, ActionListener<Void> listener) {
+        if (nodes.isEmpty()) {
+            // single node cluster, there is nobody to respond
+            listener.onResponse(null);
+            return;
+        }
+        MultiActionListener<TransportResponse, Object, Void> multiListener = new MultiActionListener<>(
+            nodes.size(), Object::new, (state, response) -> {}, state -> null, listener);
+        ActionListenerResponseHandler<TransportResponse> responseHandler =
+            new ActionListenerResponseHandler<>(multiListener, () -> TransportResponse.Empty.INSTANCE);
+        for (DiscoveryNode node : nodes) {
+            transportService.sendRequest(node, NAME, request, responseHandler);
+        }
+    }
+}
@@ -187,7 +187,7 @@ public class LegacyUpsertById implements Plan {
             executor.clusterService(),
             executor.scheduler(),
             executor.settings(),
-            executor.transportActionProvider().transportShardUpsertAction()::execute,
+            executor.transportActionProvider().shardUpsertCoalescer(),
             executor.transportActionProvider().transportBulkCreateIndicesAction()
         );
         task.execute(consumer);
@@ -204,7 +204,7 @@ public class LegacyUpsertById implements Plan {
             executor.clusterService(),
             executor.scheduler(),
             executor.settings(),
-            executor.transportActionProvider().transportShardUpsertAction()::execute,
+            executor.transportActionProvider().shardUpsertCoalescer(),
             executor.transportActionProvider().transportBulkCreateIndicesAction()
         );
         return task.executeBulk();
@@ -53,6 +53,8 @@ public class Collect implements ExecutionPlan, ResultDescription {
     @Nullable
     private PositionalOrderBy orderBy;
 
+    private long estimatedRows = -1;
+
     /**
      * @param unfinishedLimit the limit a parent must apply after a merge to get the correct result
      * @param unfinishedOffset the offset a parent must apply after a merge to get the correct result
@@ -80,6 +82,17 @@ public class Collect implements ExecutionPlan, ResultDescription {
         return collectPhase;
     }
 
+    /**
+     * The number of rows the planner expects to be collected, or -1 if unknown. Only informational.
+     */
+    public long estimatedRows() {
+        return estimatedRows;
+    }
+
+    public void setEstimatedRows(long estimatedRows) {
+        this.estimatedRows = estimatedRows;
+    }
+
     @Override
     public <C, R> R accept(ExecutionPlanVisitor<C, R> visitor, C context) {
         return visitor.visitCollect(this, context);
@@ -69,6 +69,8 @@ public class Join implements ExecutionPlan, ResultDescription {
     @Nullable
     private PositionalOrderBy orderBy;
 
+    private long estimatedRows = -1;
+
     public Join(JoinPhase joinPhase,
                 ExecutionPlan left,
                 ExecutionPlan right,
@@ -99,6 +101,17 @@ public class Join implements ExecutionPlan, ResultDescription {
         return joinPhase;
     }
 
+    /**
+     * The number of rows the planner expects the join to produce, or -1 if unknown. Only informational.
+     */
+    public long estimatedRows() {
+        return estimatedRows;
+    }
+
+    public void setEstimatedRows(long estimatedRows) {
+        this.estimatedRows = estimatedRows;
+    }
+
     @Override
     public ResultDescription resultDescription() {
         return this;
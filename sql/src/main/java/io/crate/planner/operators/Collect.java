@@ -89,7 +89,7 @@ class Collect extends ZeroInputPlan {
 
     private static final String COLLECT_PHASE_NAME = "collect";
     final QueriedTable relation;
-    WhereClause where;
+    final WhereClause where;
 
     final TableInfo tableInfo;
     private final long numExpectedRows;
@@ -103,7 +103,10 @@ class Collect extends ZeroInputPlan {
             toCollect,
             where,
             usedColumns,
-            tableStats.numDocs(relation.tableRelation().tableInfo().ident()),
+            SelectivityEstimator.estimateRows(
+                tableStats.numDocs(relation.tableRelation().tableInfo().ident()),
+                where.queryOrFallback(),
+                tableStats),
             tableStats.estimatedSizePerRow(relation.tableRelation().tableInfo().ident()));
     }
 
@@ -199,14 +202,31 @@ class Collect extends ZeroInputPlan {
                                @Nullable Integer pageSizeHint,
                                Row params,
                                SubQueryResults subQueryResults) {
-        RoutedCollectPhase collectPhase = createPhase(plannerContext, params, subQueryResults);
+        return build(plannerContext, limit, offset, order, pageSizeHint, params, subQueryResults,
+            boundWhere(plannerContext, params, subQueryResults));
+    }
+
+    /**
+     * Like {@link #build(PlannerContext, ProjectionBuilder, int, int, OrderBy, Integer, Row, SubQueryResults)},
+     * but using a where clause which has already been bound by
+     * {@link #boundWhere(PlannerContext, Row, SubQueryResults)}.
+     */
+    ExecutionPlan build(PlannerContext plannerContext,
+                        int limit,
+                        int offset,
+                        @Nullable OrderBy order,
+                        @Nullable Integer pageSizeHint,
+                        Row params,
+                        SubQueryResults subQueryResults,
+                        WhereClause boundWhere) {
+        RoutedCollectPhase collectPhase = createPhase(plannerContext, params, subQueryResults, boundWhere);
         PositionalOrderBy positionalOrderBy = getPositionalOrderBy(order, outputs);
         if (positionalOrderBy != null) {
             collectPhase.orderBy(order.copyAndReplace(s -> SubQueryAndParamBinder.convert(s, params, subQueryResults)));
         }
         int limitAndOffset = limitAndOffset(limit, offset);
         maybeApplyPageSize(limitAndOffset, pageSizeHint, collectPhase);
-        return new io.crate.planner.node.dql.Collect(
+        io.crate.planner.node.dql.Collect collect = new io.crate.planner.node.dql.Collect(
             collectPhase,
             TopN.NO_LIMIT,
             0,
@@ -214,6 +234,28 @@ class Collect extends ZeroInputPlan {
             limitAndOffset,
             positionalOrderBy
         );
+        collect.setEstimatedRows(numExpectedRows);
+        return collect;
+    }
+
+    /**
+     * Binds all parameters and possible subQuery values and re-analyzes the query
+     * (could result in a NO_MATCH, routing could've changed, etc).
+     * <p>
+     * The {@code where} instance variable is left untouched so that the plan can be built again with different
+     * parameters (e.g. if it is cached), outer operators which rely on the bound where clause
+     * (e.g. GroupHashAggregate will build different plans based on the collect routing) must use this method
+     * and pass its result on to
+     * {@link #build(PlannerContext, int, int, OrderBy, Integer, Row, SubQueryResults, WhereClause)}.
+     */
+    WhereClause boundWhere(PlannerContext plannerContext, Row params, SubQueryResults subQueryResults) {
+        return WhereClauseAnalyzer.bindAndAnalyze(
+            where,
+            params,
+            subQueryResults,
+            relation.tableRelation(),
+            plannerContext.functions(),
+            plannerContext.transactionContext());
     }
 
     private static boolean noLuceneSortSupport(OrderBy order) {
@@ -264,19 +306,11 @@ class Collect extends ZeroInputPlan {
         }
     }
 
-    private RoutedCollectPhase createPhase(PlannerContext plannerContext, Row params, SubQueryResults subQueryResults) {
+    private RoutedCollectPhase createPhase(PlannerContext plannerContext,
+                                           Row params,
+                                           SubQueryResults subQueryResults,
+                                           WhereClause where) {
         SessionContext sessionContext = plannerContext.transactionContext().sessionContext();
-        // bind all parameters and possible subQuery values and re-analyze the query
-        // (could result in a NO_MATCH, routing could've changed, etc).
-        // the <p>where</p> instance variable must be overwritten as the plan creation of outer operators relies on it
-        // (e.g. GroupHashAggregate will build different plans based on the collect routing)
-        where = WhereClauseAnalyzer.bindAndAnalyze(
-            where,
-            params,
-            subQueryResults,
-            relation.tableRelation(),
-            plannerContext.functions(),
-            plannerContext.transactionContext());
         SubQueryAndParamBinder binder = new SubQueryAndParamBinder(params, subQueryResults);
         List<Symbol> boundOutputs = Lists2.copyAndReplace(outputs, binder);
 
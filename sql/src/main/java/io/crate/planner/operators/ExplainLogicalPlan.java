@@ -86,6 +86,10 @@ public class ExplainLogicalPlan {
 
         private static ImmutableMap.Builder<String, Object> createMap(LogicalPlan logicalPlan,
                                                                       ImmutableMap.Builder<String, Object> subMap) {
+            long numExpectedRows = logicalPlan.numExpectedRows();
+            if (numExpectedRows >= 0) {
+                subMap.put("estimatedRows", numExpectedRows);
+            }
             return ImmutableMap.<String, Object>builder()
                 .put(logicalPlan.getClass().getSimpleName(), subMap.build());
         }
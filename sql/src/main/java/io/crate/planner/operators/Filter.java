@@ -33,6 +33,7 @@ import io.crate.expression.symbol.Symbol;
 import io.crate.metadata.RowGranularity;
 import io.crate.planner.ExecutionPlan;
 import io.crate.planner.PlannerContext;
+import io.crate.planner.TableStats;
 import io.crate.types.DataTypes;
 
 import javax.annotation.Nullable;
@@ -44,6 +45,7 @@ import static io.crate.planner.operators.LogicalPlanner.extractColumns;
 class Filter extends OneInputPlan {
 
     final Symbol query;
+    private final double selectivity;
 
     static LogicalPlan.Builder create(LogicalPlan.Builder sourceBuilder, @Nullable QueryClause queryClause) {
         if (queryClause == null) {
@@ -58,26 +60,30 @@ class Filter extends OneInputPlan {
             Set<Symbol> allUsedColumns = new LinkedHashSet<>();
             allUsedColumns.addAll(columnsInQuery);
             allUsedColumns.addAll(usedColumns);
-            return new Filter(sourceBuilder.build(tableStats, allUsedColumns), query);
+            return new Filter(
+                sourceBuilder.build(tableStats, allUsedColumns),
+                query,
+                SelectivityEstimator.selectivity(query, tableStats));
         };
     }
 
-    public static LogicalPlan create(LogicalPlan source, Symbol query) {
+    public static LogicalPlan create(LogicalPlan source, Symbol query, TableStats tableStats) {
         assert query.valueType().equals(DataTypes.BOOLEAN)
             : "query must have a boolean result type, got: " + query.valueType();
         if (isMatchAll(query)) {
             return source;
         }
-        return new Filter(source, query);
+        return new Filter(source, query, SelectivityEstimator.selectivity(query, tableStats));
     }
 
     private static boolean isMatchAll(Symbol query) {
         return query instanceof Literal && ((Literal) query).value() == Boolean.TRUE;
     }
 
-    private Filter(LogicalPlan source, Symbol query) {
+    private Filter(LogicalPlan source, Symbol query, double selectivity) {
         super(source);
         this.query = query;
+        this.selectivity = selectivity;
     }
 
     @Override
@@ -102,7 +108,7 @@ class Filter extends OneInputPlan {
 
     @Override
     protected LogicalPlan updateSource(LogicalPlan newSource, SymbolMapper mapper) {
-        return new Filter(newSource, query);
+        return new Filter(newSource, query, selectivity);
     }
 
     @Override
@@ -113,7 +119,8 @@ class Filter extends OneInputPlan {
         Filter currentFilter = this;
         if (pushDown instanceof Filter) {
             Symbol ancestorQuery = mapper.apply(outputs, ((Filter) pushDown).query);
-            currentFilter = new Filter(source, AndOperator.of(ancestorQuery, query));
+            currentFilter = new Filter(
+                source, AndOperator.of(ancestorQuery, query), selectivity * ((Filter) pushDown).selectivity);
         }
         LogicalPlan newSourceWithFilter = source.tryOptimize(currentFilter, mapper);
         if (newSourceWithFilter == null) {
@@ -122,6 +129,15 @@ class Filter extends OneInputPlan {
         return newSourceWithFilter;
     }
 
+    @Override
+    public long numExpectedRows() {
+        long numRows = source.numExpectedRows();
+        if (numRows <= 0) {
+            return numRows;
+        }
+        return (long) Math.ceil(numRows * selectivity);
+    }
+
     @Override
     public <C, R> R accept(LogicalPlanVisitor<C, R> visitor, C context) {
         return visitor.visitFilter(this, context);
@@ -23,6 +23,7 @@
 package io.crate.planner.operators;
 
 import io.crate.analyze.OrderBy;
+import io.crate.analyze.WhereClause;
 import io.crate.collections.Lists2;
 import io.crate.data.Row;
 import io.crate.execution.dsl.phases.ExecutionPhases;
@@ -83,13 +84,22 @@ public class GroupHashAggregate extends OneInputPlan {
                                @Nullable Integer pageSizeHint,
                                Row params,
                                SubQueryResults subQueryResults) {
-        ExecutionPlan executionPlan = source.build(
-            plannerContext, projectionBuilder, NO_LIMIT, 0, null, null, params, subQueryResults);
+        WhereClause boundSourceWhere = null;
+        ExecutionPlan executionPlan;
+        if (source instanceof Collect) {
+            Collect collect = (Collect) source;
+            boundSourceWhere = collect.boundWhere(plannerContext, params, subQueryResults);
+            executionPlan = collect.build(
+                plannerContext, NO_LIMIT, 0, null, null, params, subQueryResults, boundSourceWhere);
+        } else {
+            executionPlan = source.build(
+                plannerContext, projectionBuilder, NO_LIMIT, 0, null, null, params, subQueryResults);
+        }
         if (executionPlan.resultDescription().hasRemainingLimitOrOffset()) {
             executionPlan = Merge.ensureOnHandler(executionPlan, plannerContext);
         }
         List<Symbol> sourceOutputs = source.outputs();
-        if (shardsContainAllGroupKeyValues()) {
+        if (shardsContainAllGroupKeyValues(boundSourceWhere)) {
             GroupProjection groupProjection = projectionBuilder.groupProjection(
                 sourceOutputs,
                 groupKeys,
@@ -167,15 +177,17 @@ public class GroupHashAggregate extends OneInputPlan {
     }
 
     /*
+     * @param boundSourceWhere the where clause the source Collect has been built with,
+     *                         null if the source isn't a Collect
      * @return true if it's guaranteed that a group-key-value doesn't occur in more than 1 shard.
      *         Each shard has "group or row authority"
      */
-    private boolean shardsContainAllGroupKeyValues() {
-        return source instanceof Collect &&
+    private boolean shardsContainAllGroupKeyValues(@Nullable WhereClause boundSourceWhere) {
+        return boundSourceWhere != null &&
                ((Collect) source).tableInfo instanceof DocTableInfo &&
                GroupByConsumer.groupedByClusteredColumnOrPrimaryKeys(
                    ((DocTableInfo) ((Collect) source).tableInfo),
-                   ((Collect) source).where,
+                   boundSourceWhere,
                    groupKeys);
     }
 
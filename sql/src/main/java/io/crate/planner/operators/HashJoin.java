@@ -60,6 +60,7 @@ import static io.crate.planner.operators.LogicalPlanner.NO_LIMIT;
 
 class HashJoin extends TwoInputPlan {
 
+    private final JoinType joinType;
     private final Symbol joinCondition;
     private final TableStats tableStats;
     @VisibleForTesting
@@ -67,19 +68,25 @@ class HashJoin extends TwoInputPlan {
 
     HashJoin(LogicalPlan lhs,
              LogicalPlan rhs,
+             JoinType joinType,
              Symbol joinCondition,
              AnalyzedRelation concreteRelation,
              TableStats tableStats) {
         super(lhs, rhs, new ArrayList<>());
         this.concreteRelation = concreteRelation;
+        this.joinType = joinType;
         this.joinCondition = joinCondition;
-        this.outputs.addAll(lhs.outputs());
-        this.outputs.addAll(rhs.outputs());
+        if (joinType == JoinType.SEMI) {
+            this.outputs.addAll(lhs.outputs());
+        } else {
+            this.outputs.addAll(lhs.outputs());
+            this.outputs.addAll(rhs.outputs());
+        }
         this.tableStats = tableStats;
     }
 
     JoinType joinType() {
-        return JoinType.INNER;
+        return joinType;
     }
 
     Symbol joinCondition() {
@@ -113,11 +120,14 @@ class HashJoin extends TwoInputPlan {
         LogicalPlan leftLogicalPlan = lhs;
         LogicalPlan rightLogicalPlan = rhs;
 
+        JoinType joinTypeForExecution = joinType;
         boolean tablesSwitched = false;
         // We move smaller table to the right side since benchmarking
         // revealed that this improves performance in most cases.
-        if (lhs.numExpectedRows() < rhs.numExpectedRows()) {
+        // Semi and anti joins must keep the relation whose rows are emitted on the left side.
+        if (joinType.supportsInversion() && lhs.numExpectedRows() < rhs.numExpectedRows()) {
             tablesSwitched = true;
+            joinTypeForExecution = joinType.invert();
             leftLogicalPlan = rhs;
             rightLogicalPlan = lhs;
 
@@ -180,13 +190,15 @@ class HashJoin extends TwoInputPlan {
             leftOutputs.size(),
             rightOutputs.size(),
             joinExecutionNodes,
+            joinTypeForExecution,
             InputColumns.create(joinCondition, joinOutputs),
             InputColumns.create(hashSymbols.v1(), new InputColumns.SourceSymbols(leftOutputs)),
             InputColumns.create(hashSymbols.v2(), new InputColumns.SourceSymbols(rightOutputs)),
             Symbols.typeView(leftOutputs),
+            Symbols.typeView(rightOutputs),
             leftLogicalPlan.estimatedRowSize(),
             leftLogicalPlan.numExpectedRows());
-        return new Join(
+        Join join = new Join(
             joinPhase,
             leftExecutionPlan,
             rightExecutionPlan,
@@ -196,6 +208,8 @@ class HashJoin extends TwoInputPlan {
             outputs.size(),
             null
         );
+        join.setEstimatedRows(numExpectedRows());
+        return join;
     }
 
     private Tuple<List<Symbol>, List<Symbol>> extractHashJoinSymbolsFromJoinSymbolsAndSplitPerSide(boolean switchedTables) {
@@ -217,12 +231,16 @@ class HashJoin extends TwoInputPlan {
 
     @Override
     protected LogicalPlan updateSources(LogicalPlan newLeftSource, LogicalPlan newRightSource) {
-        return new HashJoin(newLeftSource, newRightSource, joinCondition, concreteRelation, tableStats);
+        return new HashJoin(newLeftSource, newRightSource, joinType, joinCondition, concreteRelation, tableStats);
     }
 
     @Override
     public long numExpectedRows() {
-        // We don't have any cardinality estimates, so just take the bigger table
+        if (joinType == JoinType.INNER) {
+            return SelectivityEstimator.estimateJoinRows(
+                lhs.numExpectedRows(), rhs.numExpectedRows(), joinCondition, tableStats);
+        }
+        // We don't have any cardinality estimates for outer joins, so just take the bigger table
         return Math.max(lhs.numExpectedRows(), rhs.numExpectedRows());
     }
 
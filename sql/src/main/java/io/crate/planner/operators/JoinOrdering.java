@@ -24,13 +24,23 @@ package io.crate.planner.operators;
 
 import com.carrotsearch.hppc.ObjectIntHashMap;
 import com.google.common.annotations.VisibleForTesting;
+import io.crate.analyze.relations.AnalyzedRelation;
+import io.crate.analyze.relations.JoinPair;
+import io.crate.analyze.relations.QueriedRelation;
+import io.crate.expression.symbol.Symbol;
+import io.crate.metadata.RelationName;
+import io.crate.planner.TableStats;
 import io.crate.sql.tree.QualifiedName;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -39,9 +49,171 @@ import java.util.Set;
  */
 final class JoinOrdering {
 
+    /**
+     * Maximum number of relations for which the join order is searched exhaustively. The search considers all
+     * 2^n subsets of the relations.
+     */
+    static final int MAX_RELATIONS_FOR_COST_BASED_ORDERING = 8;
+
     private JoinOrdering() {
     }
 
+    /**
+     * Returns the order of the relations with the lowest estimated cost or null if the cost can't be estimated, e.g.
+     * because there are no statistics for a relation or there are too many relations.
+     * <p>
+     * The cost of an order is the sum of the estimated number of rows of all intermediate join results
+     * (Assuming a left-deep tree built from left to right, as done by {@link JoinPlanBuilder}).
+     * It is searched with dynamic programming over all subsets of the relations. Extending a subset with a relation
+     * which has no join condition with it is only considered if no relation with a join condition is left, so that
+     * cross joins are postponed.
+     *
+     * @param sources    all relations by their name
+     * @param joinPairs  the join conditions by the relations they refer to
+     * @param queryParts the parts of the where clause by the relations they refer to
+     */
+    @Nullable
+    static List<QualifiedName> orderByEstimatedCost(Map<QualifiedName, AnalyzedRelation> sources,
+                                                    Map<Set<QualifiedName>, JoinPair> joinPairs,
+                                                    Map<Set<QualifiedName>, Symbol> queryParts,
+                                                    TableStats tableStats) {
+        int numRelations = sources.size();
+        if (numRelations > MAX_RELATIONS_FOR_COST_BASED_ORDERING) {
+            return null;
+        }
+        List<QualifiedName> names = new ArrayList<>(sources.keySet());
+        double[] rows = new double[numRelations];
+        for (int i = 0; i < numRelations; i++) {
+            AnalyzedRelation relation = sources.get(names.get(i));
+            RelationName tableName = SelectivityEstimator.tableName(relation);
+            if (tableName == null) {
+                return null;
+            }
+            long numDocs = tableStats.numDocs(tableName);
+            if (numDocs < 0) {
+                return null;
+            }
+            long numRows = SelectivityEstimator.estimateRows(
+                numDocs, ((QueriedRelation) relation).where().queryOrFallback(), tableStats);
+            rows[i] = Math.max(1, numRows);
+        }
+
+        List<Integer> conditionMasks = new ArrayList<>();
+        List<Double> conditionSelectivities = new ArrayList<>();
+        for (Map.Entry<Set<QualifiedName>, JoinPair> entry : joinPairs.entrySet()) {
+            conditionMasks.add(toMask(names, entry.getKey()));
+            conditionSelectivities.add(SelectivityEstimator.joinSelectivity(entry.getValue().condition(), tableStats));
+        }
+        for (Map.Entry<Set<QualifiedName>, Symbol> entry : queryParts.entrySet()) {
+            conditionMasks.add(toMask(names, entry.getKey()));
+            conditionSelectivities.add(SelectivityEstimator.joinSelectivity(entry.getValue(), tableStats));
+        }
+        int[] masks = new int[conditionMasks.size()];
+        double[] selectivities = new double[masks.length];
+        for (int i = 0; i < masks.length; i++) {
+            masks[i] = conditionMasks.get(i);
+            selectivities[i] = conditionSelectivities.get(i);
+        }
+        int[] order = orderByEstimatedCost(rows, masks, selectivities);
+        List<QualifiedName> orderedNames = new ArrayList<>(numRelations);
+        for (int idx : order) {
+            orderedNames.add(names.get(idx));
+        }
+        return orderedNames;
+    }
+
+    private static int toMask(List<QualifiedName> names, Set<QualifiedName> relations) {
+        int mask = 0;
+        for (QualifiedName relation : relations) {
+            int idx = names.indexOf(relation);
+            assert idx >= 0 : "Condition must only refer to the relations of the join";
+            mask |= 1 << idx;
+        }
+        return mask;
+    }
+
+    /**
+     * @param rows          number of rows of each relation
+     * @param masks         bit set of the relations each condition refers to
+     * @param selectivities the selectivity of each condition
+     * @return the positions of the relations in the order with the lowest cost
+     */
+    @VisibleForTesting
+    static int[] orderByEstimatedCost(double[] rows, int[] masks, double[] selectivities) {
+        int numRelations = rows.length;
+        int numSubsets = 1 << numRelations;
+
+        // rows of the join of all relations of a subset, every condition is applied once all its relations are joined
+        double[] joinRows = new double[numSubsets];
+        joinRows[0] = 1.0;
+        for (int subset = 1; subset < numSubsets; subset++) {
+            int lowest = Integer.numberOfTrailingZeros(subset);
+            double result = joinRows[subset & ~(1 << lowest)] * rows[lowest];
+            for (int i = 0; i < masks.length; i++) {
+                if ((masks[i] & (1 << lowest)) != 0 && (masks[i] & subset) == masks[i]) {
+                    result *= selectivities[i];
+                }
+            }
+            joinRows[subset] = result;
+        }
+
+        double[] cost = new double[numSubsets];
+        int[] lastRelation = new int[numSubsets];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < numRelations; i++) {
+            cost[1 << i] = 0.0;
+            lastRelation[1 << i] = i;
+        }
+        for (int subset = 1; subset < numSubsets; subset++) {
+            if (Integer.bitCount(subset) < 2) {
+                continue;
+            }
+            boolean canAvoidCrossJoin = false;
+            for (int i = 0; i < numRelations; i++) {
+                int rest = subset & ~(1 << i);
+                if (rest != subset && isJoinedBy(masks, i, rest)) {
+                    canAvoidCrossJoin = true;
+                    break;
+                }
+            }
+            // iterate backwards so that on equal costs the original order of the relations is kept
+            for (int i = numRelations - 1; i >= 0; i--) {
+                int rest = subset & ~(1 << i);
+                if (rest == subset || (canAvoidCrossJoin && isJoinedBy(masks, i, rest) == false)) {
+                    continue;
+                }
+                double newCost = cost[rest] + joinRows[subset];
+                if (newCost < cost[subset]) {
+                    cost[subset] = newCost;
+                    lastRelation[subset] = i;
+                }
+            }
+        }
+
+        LinkedList<Integer> order = new LinkedList<>();
+        int subset = numSubsets - 1;
+        while (subset != 0) {
+            int relation = lastRelation[subset];
+            order.addFirst(relation);
+            subset &= ~(1 << relation);
+        }
+        return order.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return true if there is a condition between {@code relation} and the relations in {@code joined} which can be
+     *         applied once {@code relation} is joined.
+     */
+    private static boolean isJoinedBy(int[] masks, int relation, int joined) {
+        int relationBit = 1 << relation;
+        for (int mask : masks) {
+            if ((mask & relationBit) != 0 && (mask & joined) != 0 && (mask & ~(joined | relationBit)) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     static Collection<QualifiedName> getOrderedRelationNames(Collection<QualifiedName> sourceRelations,
                                                              Set<? extends Set<QualifiedName>> explicitJoinConditions,
                                                              Set<? extends Set<QualifiedName>> implicitJoinConditions) {
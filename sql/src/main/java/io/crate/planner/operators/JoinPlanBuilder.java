@@ -101,11 +101,17 @@ public class JoinPlanBuilder implements LogicalPlan.Builder {
 
         Collection<QualifiedName> orderedRelationNames;
         if (mss.sources().size() > 2) {
-            orderedRelationNames = JoinOrdering.getOrderedRelationNames(
-                mss.sources().keySet(),
-                joinPairs.keySet(),
-                queryParts.keySet()
-            );
+            // Outer joins can't be freely re-ordered; if there are no statistics the heuristic is used
+            orderedRelationNames = hasOuterJoins
+                ? null
+                : JoinOrdering.orderByEstimatedCost(mss.sources(), joinPairs, queryParts, tableStats);
+            if (orderedRelationNames == null) {
+                orderedRelationNames = JoinOrdering.getOrderedRelationNames(
+                    mss.sources().keySet(),
+                    joinPairs.keySet(),
+                    queryParts.keySet()
+                );
+            }
         } else {
             orderedRelationNames = mss.sources().keySet();
         }
@@ -163,7 +169,7 @@ public class JoinPlanBuilder implements LogicalPlan.Builder {
             txnCtx.sessionContext(),
             tableStats);
 
-        joinPlan = Filter.create(joinPlan, query);
+        joinPlan = Filter.create(joinPlan, query, tableStats);
         while (it.hasNext()) {
             QueriedRelation nextRel = (QueriedRelation) mss.sources().get(it.next());
             joinPlan = joinWithNext(
@@ -201,6 +207,7 @@ public class JoinPlanBuilder implements LogicalPlan.Builder {
             return new HashJoin(
                 lhsPlan,
                 rhsPlan,
+                joinType,
                 joinCondition,
                 rhs,
                 tableStats);
@@ -212,7 +219,8 @@ public class JoinPlanBuilder implements LogicalPlan.Builder {
                 joinCondition,
                 !query.symbolType().isValueSymbol(),
                 hasOuterJoins,
-                lhs);
+                lhs,
+                tableStats);
         }
     }
 
@@ -287,7 +295,8 @@ public class JoinPlanBuilder implements LogicalPlan.Builder {
                 hasOuterJoins,
                 txnCtx.sessionContext(),
                 tableStats),
-            query
+            query,
+            tableStats
         );
     }
 
@@ -42,6 +42,7 @@ import io.crate.planner.ExecutionPlan;
 import io.crate.planner.PlannerContext;
 import io.crate.planner.PositionalOrderBy;
 import io.crate.planner.ResultDescription;
+import io.crate.planner.TableStats;
 import io.crate.planner.distribution.DistributionInfo;
 import io.crate.planner.node.dql.join.Join;
 import io.crate.planner.node.dql.join.JoinType;
@@ -71,6 +72,7 @@ class NestedLoopJoin extends TwoInputPlan {
     private final boolean hasOuterJoins;
 
     private final boolean isFiltered;
+    private final TableStats tableStats;
 
     NestedLoopJoin(LogicalPlan lhs,
                    LogicalPlan rhs,
@@ -78,7 +80,8 @@ class NestedLoopJoin extends TwoInputPlan {
                    @Nullable Symbol joinCondition,
                    boolean isFiltered,
                    boolean hasOuterJoins,
-                   AnalyzedRelation topMostLeftRelation) {
+                   AnalyzedRelation topMostLeftRelation,
+                   TableStats tableStats) {
         super(lhs, rhs, new ArrayList<>());
         this.joinType = joinType;
         this.isFiltered = isFiltered || joinCondition != null;
@@ -91,6 +94,7 @@ class NestedLoopJoin extends TwoInputPlan {
         this.topMostLeftRelation = topMostLeftRelation;
         this.joinCondition = joinCondition;
         this.hasOuterJoins = hasOuterJoins;
+        this.tableStats = tableStats;
     }
 
     JoinType joinType() {
@@ -178,7 +182,7 @@ class NestedLoopJoin extends TwoInputPlan {
             joinType,
             joinInput
         );
-        return new Join(
+        Join join = new Join(
             nlPhase,
             left,
             right,
@@ -188,6 +192,8 @@ class NestedLoopJoin extends TwoInputPlan {
             outputs.size(),
             orderByFromLeft
         );
+        join.setEstimatedRows(numExpectedRows());
+        return join;
     }
 
     private Tuple<Collection<String>, List<MergePhase>> configureExecution(ExecutionPlan left,
@@ -238,15 +244,19 @@ class NestedLoopJoin extends TwoInputPlan {
             joinCondition,
             isFiltered,
             hasOuterJoins,
-            topMostLeftRelation);
+            topMostLeftRelation,
+            tableStats);
     }
 
     @Override
     public long numExpectedRows() {
         if (joinType == JoinType.CROSS) {
             return lhs.numExpectedRows() * rhs.numExpectedRows();
+        } else if (joinType == JoinType.INNER) {
+            return SelectivityEstimator.estimateJoinRows(
+                lhs.numExpectedRows(), rhs.numExpectedRows(), joinCondition, tableStats);
         } else {
-            // We don't have any cardinality estimates, so just take the bigger table
+            // We don't have any cardinality estimates for outer joins, so just take the bigger table
             return Math.max(lhs.numExpectedRows(), rhs.numExpectedRows());
         }
     }
@@ -0,0 +1,425 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.planner.operators;
+
+import io.crate.analyze.QueriedTable;
+import io.crate.analyze.relations.AbstractTableRelation;
+import io.crate.analyze.relations.AnalyzedRelation;
+import io.crate.analyze.relations.QueriedRelation;
+import io.crate.expression.operator.AndOperator;
+import io.crate.expression.operator.EqOperator;
+import io.crate.expression.operator.GtOperator;
+import io.crate.expression.operator.GteOperator;
+import io.crate.expression.operator.LtOperator;
+import io.crate.expression.operator.LteOperator;
+import io.crate.expression.operator.OrOperator;
+import io.crate.expression.operator.any.AnyOperators;
+import io.crate.expression.predicate.IsNullPredicate;
+import io.crate.expression.predicate.MatchPredicate;
+import io.crate.expression.predicate.NotPredicate;
+import io.crate.expression.symbol.Field;
+import io.crate.expression.symbol.Function;
+import io.crate.expression.symbol.Literal;
+import io.crate.expression.symbol.Symbol;
+import io.crate.expression.symbol.SymbolVisitor;
+import io.crate.metadata.Reference;
+import io.crate.metadata.RelationName;
+import io.crate.planner.ColumnStats;
+import io.crate.planner.TableStats;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Estimates the fraction of rows which pass a condition, based on the {@link ColumnStats} and the number of docs
+ * in {@link TableStats}.
+ * <p>
+ * The conjuncts of a condition are assumed to be independent. Conditions which can't be estimated use the
+ * {@link #DEFAULT_SELECTIVITY}.
+ */
+final class SelectivityEstimator {
+
+    static final double DEFAULT_SELECTIVITY = 1.0 / 3;
+
+    /**
+     * Selectivity of an equality if nothing is known about the involved columns
+     */
+    static final double DEFAULT_EQ_SELECTIVITY = 0.1;
+
+    /**
+     * Selectivity of a range comparison if there is no histogram of the column
+     */
+    static final double DEFAULT_RANGE_SELECTIVITY = 1.0 / 3;
+
+    static final double DEFAULT_IS_NULL_SELECTIVITY = 0.01;
+
+    /**
+     * Selectivity of a fulltext search, the terms of the search can't be estimated with the column statistics
+     */
+    static final double DEFAULT_MATCH_SELECTIVITY = 0.1;
+
+    private static final QuerySelectivity QUERY_SELECTIVITY = new QuerySelectivity();
+
+    private SelectivityEstimator() {
+    }
+
+    /**
+     * Estimates the fraction of rows matching a query.
+     *
+     * @return a value between 0.0 (no row matches) and 1.0 (all rows match)
+     */
+    static double selectivity(Symbol query, TableStats tableStats) {
+        return clamp(QUERY_SELECTIVITY.process(query, tableStats));
+    }
+
+    /**
+     * Estimates the number of rows out of {@code numRows} matching a query.
+     *
+     * @return the estimated number of rows or -1 if {@code numRows} is unknown
+     */
+    static long estimateRows(long numRows, Symbol query, TableStats tableStats) {
+        if (numRows <= 0) {
+            return numRows;
+        }
+        return (long) Math.ceil(numRows * selectivity(query, tableStats));
+    }
+
+    /**
+     * Estimates the selectivity of a join condition relative to the cartesian product of the joined relations.
+     * <p>
+     * An equality between two columns {@code a = b} is estimated as {@code 1 / max(ndv(a), ndv(b))}, with ndv being
+     * the number of distinct values. If a column has no statistics the number of docs of its table is used,
+     * assuming the column is unique.
+     */
+    static double joinSelectivity(@Nullable Symbol joinCondition, TableStats tableStats) {
+        if (joinCondition == null) {
+            return 1.0;
+        }
+        if (joinCondition instanceof Function) {
+            Function function = (Function) joinCondition;
+            String functionName = function.info().ident().name();
+            if (functionName.equals(AndOperator.NAME)) {
+                double selectivity = 1.0;
+                for (Symbol arg : function.arguments()) {
+                    selectivity *= joinSelectivity(arg, tableStats);
+                }
+                return selectivity;
+            }
+            if (functionName.equals(EqOperator.NAME)) {
+                return columnEqSelectivity(function.arguments().get(0), function.arguments().get(1), tableStats);
+            }
+        }
+        return DEFAULT_SELECTIVITY;
+    }
+
+    /**
+     * Estimates the number of rows of an inner join.
+     *
+     * @return the estimated number of rows or the number of rows of the bigger side if the size of a side is unknown.
+     */
+    static long estimateJoinRows(long lhsRows, long rhsRows, @Nullable Symbol joinCondition, TableStats tableStats) {
+        if (lhsRows < 0 || rhsRows < 0) {
+            return Math.max(lhsRows, rhsRows);
+        }
+        if (lhsRows == 0 || rhsRows == 0) {
+            return 0L;
+        }
+        double rows = (double) lhsRows * rhsRows * joinSelectivity(joinCondition, tableStats);
+        return Math.max(1L, (long) Math.ceil(rows));
+    }
+
+    private static double clamp(double selectivity) {
+        return Math.min(1.0, Math.max(0.0, selectivity));
+    }
+
+    private static class QuerySelectivity extends SymbolVisitor<TableStats, Double> {
+
+        @Override
+        protected Double visitSymbol(Symbol symbol, TableStats tableStats) {
+            return DEFAULT_SELECTIVITY;
+        }
+
+        @Override
+        public Double visitLiteral(Literal symbol, TableStats tableStats) {
+            return Boolean.TRUE.equals(symbol.value()) ? 1.0 : 0.0;
+        }
+
+        @Override
+        public Double visitMatchPredicate(io.crate.expression.symbol.MatchPredicate matchPredicate,
+                                          TableStats tableStats) {
+            return DEFAULT_MATCH_SELECTIVITY;
+        }
+
+        @Override
+        public Double visitFunction(Function function, TableStats tableStats) {
+            List<Symbol> args = function.arguments();
+            String name = function.info().ident().name();
+            if (name.equals(AnyOperators.Names.EQ)) {
+                // not a compile-time constant, so it can't be a case label
+                return inSelectivity(args.get(0), args.get(1), tableStats);
+            }
+            switch (name) {
+                case AndOperator.NAME: {
+                    double selectivity = 1.0;
+                    for (Symbol arg : args) {
+                        selectivity *= clamp(process(arg, tableStats));
+                    }
+                    return selectivity;
+                }
+                case OrOperator.NAME: {
+                    double selectivity = 0.0;
+                    for (Symbol arg : args) {
+                        double argSelectivity = clamp(process(arg, tableStats));
+                        selectivity = selectivity + argSelectivity - selectivity * argSelectivity;
+                    }
+                    return selectivity;
+                }
+                case NotPredicate.NAME:
+                    return 1.0 - clamp(process(args.get(0), tableStats));
+
+                case EqOperator.NAME:
+                    return eqSelectivity(args.get(0), args.get(1), tableStats);
+
+                case LtOperator.NAME:
+                case LteOperator.NAME:
+                    return rangeSelectivity(args.get(0), args.get(1), true, tableStats);
+
+                case GtOperator.NAME:
+                case GteOperator.NAME:
+                    return rangeSelectivity(args.get(0), args.get(1), false, tableStats);
+
+                case IsNullPredicate.NAME:
+                    return isNullSelectivity(args.get(0), tableStats);
+
+                case MatchPredicate.NAME:
+                    return DEFAULT_MATCH_SELECTIVITY;
+
+                default:
+                    return DEFAULT_SELECTIVITY;
+            }
+        }
+    }
+
+    private static double eqSelectivity(Symbol left, Symbol right, TableStats tableStats) {
+        if (left instanceof Literal) {
+            Symbol tmp = left;
+            left = right;
+            right = tmp;
+        }
+        Reference reference = resolveReference(left);
+        if (reference == null) {
+            return DEFAULT_EQ_SELECTIVITY;
+        }
+        if (right instanceof Literal) {
+            return valueSelectivity(columnStats(reference, tableStats), ((Literal) right).value());
+        }
+        return columnEqSelectivity(left, right, tableStats);
+    }
+
+    private static double columnEqSelectivity(Symbol left, Symbol right, TableStats tableStats) {
+        double ndv = Math.max(numDistinctValues(left, tableStats), numDistinctValues(right, tableStats));
+        if (ndv >= 1.0) {
+            return 1.0 / ndv;
+        }
+        return DEFAULT_EQ_SELECTIVITY;
+    }
+
+    /**
+     * @return the selectivity of {@code column = value}
+     */
+    private static double valueSelectivity(@Nullable ColumnStats columnStats, @Nullable Object value) {
+        if (value == null) {
+            return 0.0;
+        }
+        if (columnStats == null) {
+            return DEFAULT_EQ_SELECTIVITY;
+        }
+        Double frequency = columnStats.mostCommonFrequency(value);
+        if (frequency != null) {
+            return frequency;
+        }
+        double[] mostCommonFrequencies = columnStats.mostCommonFrequencies();
+        double otherDistinct = columnStats.approxDistinct() - mostCommonFrequencies.length;
+        double otherFraction = 1.0 - columnStats.nullFraction() - sum(mostCommonFrequencies);
+        if (otherDistinct >= 1.0 && otherFraction > 0.0) {
+            // the remaining values are assumed to be uniformly distributed
+            return otherFraction / otherDistinct;
+        }
+        // the value wasn't part of the sample, it must be less common than all most common values
+        double minFrequency = 0.0;
+        for (double mostCommonFrequency : mostCommonFrequencies) {
+            minFrequency = minFrequency == 0.0 ? mostCommonFrequency : Math.min(minFrequency, mostCommonFrequency);
+        }
+        return minFrequency / 2;
+    }
+
+    /**
+     * @param lessThan true for {@code column < value} and {@code column <= value},
+     *                 false for {@code column > value} and {@code column >= value}
+     */
+    private static double rangeSelectivity(Symbol left, Symbol right, boolean lessThan, TableStats tableStats) {
+        if (left instanceof Literal) {
+            // value < column  ->  column > value
+            Symbol tmp = left;
+            left = right;
+            right = tmp;
+            lessThan = !lessThan;
+        }
+        Reference reference = resolveReference(left);
+        if (reference == null || !(right instanceof Literal) || !(((Literal) right).value() instanceof Number)) {
+            return DEFAULT_RANGE_SELECTIVITY;
+        }
+        ColumnStats columnStats = columnStats(reference, tableStats);
+        if (columnStats == null) {
+            return DEFAULT_RANGE_SELECTIVITY;
+        }
+        double value = ((Number) ((Literal) right).value()).doubleValue();
+
+        double matchingMostCommon = 0.0;
+        List<Object> mostCommonValues = columnStats.mostCommonValues();
+        double[] mostCommonFrequencies = columnStats.mostCommonFrequencies();
+        for (int i = 0; i < mostCommonValues.size(); i++) {
+            Object mostCommonValue = mostCommonValues.get(i);
+            if (mostCommonValue instanceof Number) {
+                double mcv = ((Number) mostCommonValue).doubleValue();
+                if (lessThan ? mcv <= value : mcv >= value) {
+                    matchingMostCommon += mostCommonFrequencies[i];
+                }
+            }
+        }
+        double otherFraction = Math.max(0.0, 1.0 - columnStats.nullFraction() - sum(mostCommonFrequencies));
+        double[] bounds = columnStats.histogramBounds();
+        double fractionBelow = bounds.length == 0 ? DEFAULT_RANGE_SELECTIVITY : fractionBelow(bounds, value);
+        double fractionMatching = lessThan || bounds.length == 0 ? fractionBelow : 1.0 - fractionBelow;
+        return matchingMostCommon + otherFraction * fractionMatching;
+    }
+
+    /**
+     * @return the fraction of the values of the histogram which are below {@code value}, interpolated linearly
+     *         within a bucket
+     */
+    static double fractionBelow(double[] bounds, double value) {
+        int last = bounds.length - 1;
+        if (value <= bounds[0]) {
+            return 0.0;
+        }
+        if (value >= bounds[last]) {
+            return 1.0;
+        }
+        int bucket = 0;
+        while (value >= bounds[bucket + 1]) {
+            bucket++;
+        }
+        double bucketWidth = bounds[bucket + 1] - bounds[bucket];
+        double withinBucket = bucketWidth > 0 ? (value - bounds[bucket]) / bucketWidth : 0.5;
+        return (bucket + withinBucket) / last;
+    }
+
+    private static double inSelectivity(Symbol left, Symbol right, TableStats tableStats) {
+        Reference reference = resolveReference(left);
+        if (reference == null || !(right instanceof Literal) || !(((Literal) right).value() instanceof Object[])) {
+            return DEFAULT_SELECTIVITY;
+        }
+        ColumnStats columnStats = columnStats(reference, tableStats);
+        double selectivity = 0.0;
+        for (Object value : (Object[]) ((Literal) right).value()) {
+            selectivity += valueSelectivity(columnStats, value);
+        }
+        return Math.min(1.0, selectivity);
+    }
+
+    private static double isNullSelectivity(Symbol arg, TableStats tableStats) {
+        Reference reference = resolveReference(arg);
+        ColumnStats columnStats = reference == null ? null : columnStats(reference, tableStats);
+        if (columnStats == null) {
+            return DEFAULT_IS_NULL_SELECTIVITY;
+        }
+        return columnStats.nullFraction();
+    }
+
+    @Nullable
+    private static ColumnStats columnStats(Reference reference, TableStats tableStats) {
+        return tableStats.columnStats(reference.ident().tableIdent(), reference.column());
+    }
+
+    private static double sum(double[] values) {
+        double sum = 0.0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    /**
+     * @return the estimated number of distinct values of the column the symbol refers to or -1 if unknown.
+     */
+    private static double numDistinctValues(Symbol symbol, TableStats tableStats) {
+        Reference reference = resolveReference(symbol);
+        if (reference == null) {
+            return -1;
+        }
+        RelationName relationName = reference.ident().tableIdent();
+        ColumnStats columnStats = tableStats.columnStats(relationName, reference.column());
+        if (columnStats != null) {
+            return columnStats.approxDistinct();
+        }
+        return tableStats.numDocs(relationName);
+    }
+
+    /**
+     * Follows fields through the relations they're pointing to until the column of the table is found.
+     *
+     * @return the reference or null if the symbol isn't a plain column (e.g. it is a function)
+     */
+    @Nullable
+    static Reference resolveReference(Symbol symbol) {
+        while (symbol instanceof Field) {
+            Field field = (Field) symbol;
+            AnalyzedRelation relation = field.relation();
+            if (relation instanceof AbstractTableRelation) {
+                return ((AbstractTableRelation) relation).resolveField(field);
+            }
+            if (relation instanceof QueriedRelation) {
+                symbol = ((QueriedRelation) relation).outputs().get(field.index());
+            } else {
+                return null;
+            }
+        }
+        if (symbol instanceof Reference) {
+            return (Reference) symbol;
+        }
+        return null;
+    }
+
+    /**
+     * @return the name of the table a relation directly reads from or null if it is not a plain table
+     *         (e.g. a join or a union)
+     */
+    @Nullable
+    static RelationName tableName(AnalyzedRelation relation) {
+        if (relation instanceof QueriedTable) {
+            return ((QueriedTable<?>) relation).tableRelation().tableInfo().ident();
+        }
+        return null;
+    }
+}
@@ -219,11 +219,19 @@ public final class CopyStatementPlanner {
         // the partitionedBy-inputColumns created for the projection are still valid because the positions are not changed
         rewriteToCollectToUsePartitionValues(table.partitionedByColumns(), partitionValues, toCollect);
 
+        Collection<String> executionNodes;
+        if (copyFrom.fromStdin()) {
+            // the rows are received by the connection on the handler node
+            executionNodes = Collections.singletonList(context.handlerNode());
+        } else {
+            executionNodes = getExecutionNodes(
+                allNodes, copyFrom.settings().getAsInt("num_readers", allNodes.getSize()), copyFrom.nodePredicate());
+        }
         FileUriCollectPhase collectPhase = new FileUriCollectPhase(
             context.jobId(),
             context.nextExecutionPhaseId(),
             "copyFrom",
-            getExecutionNodes(allNodes, copyFrom.settings().getAsInt("num_readers", allNodes.getSize()), copyFrom.nodePredicate()),
+            executionNodes,
             copyFrom.uri(),
             toCollect,
             projections,
@@ -309,6 +317,17 @@ public final class CopyStatementPlanner {
                                              SubqueryPlanner subqueryPlanner,
                                              ProjectionBuilder projectionBuilder,
                                              Row params) {
+        LogicalPlan logicalPlan = logicalPlanner.plan(statement.subQueryRelation(), context, subqueryPlanner, FetchMode.NEVER_CLEAR);
+        if (logicalPlan == null) {
+            return null;
+        }
+        ExecutionPlan executionPlan = logicalPlan.build(
+            context, projectionBuilder, 0, 0, null, null, params, SubQueryResults.EMPTY);
+        if (statement.toStdout()) {
+            // the rows are formatted and written to the client connection by the handler
+            return Merge.ensureOnHandler(executionPlan, context);
+        }
+
         WriterProjection.OutputFormat outputFormat = statement.outputFormat();
         if (outputFormat == null) {
             outputFormat = statement.columnsDefined() ?
@@ -322,13 +341,6 @@ public final class CopyStatementPlanner {
             statement.overwrites(),
             statement.outputNames(),
             outputFormat);
-
-        LogicalPlan logicalPlan = logicalPlanner.plan(statement.subQueryRelation(), context, subqueryPlanner, FetchMode.NEVER_CLEAR);
-        if (logicalPlan == null) {
-            return null;
-        }
-        ExecutionPlan executionPlan = logicalPlan.build(
-            context, projectionBuilder, 0, 0, null, null, params, SubQueryResults.EMPTY);
         executionPlan.addProjection(projection);
         return Merge.ensureOnHandler(executionPlan, context, Collections.singletonList(MergeCountProjection.INSTANCE));
     }
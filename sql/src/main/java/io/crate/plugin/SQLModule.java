@@ -31,9 +31,11 @@ import io.crate.ingestion.TransportDropIngestRuleAction;
 import io.crate.expression.udf.TransportCreateUserDefinedFunctionAction;
 import io.crate.expression.udf.TransportDropUserDefinedFunctionAction;
 import io.crate.expression.udf.UserDefinedFunctionService;
+import io.crate.planner.PlanCache;
 import io.crate.planner.Planner;
 import io.crate.planner.TableStats;
 import io.crate.planner.TableStatsService;
+import io.crate.planner.TransportPublishColumnStatsAction;
 import io.crate.protocols.postgres.PostgresNetty;
 import io.crate.protocols.ssl.SslContextProvider;
 import io.crate.rest.action.RestSQLAction;
@@ -48,8 +50,10 @@ public class SQLModule extends AbstractModule {
         bind(FulltextAnalyzerResolver.class).asEagerSingleton();
         bind(PostgresNetty.class).asEagerSingleton();
         bind(SQLOperations.class).asEagerSingleton();
+        bind(PlanCache.class).asEagerSingleton();
         bind(Planner.class).asEagerSingleton();
         bind(TableStats.class).asEagerSingleton();
+        bind(TransportPublishColumnStatsAction.class).asEagerSingleton();
         bind(TableStatsService.class).asEagerSingleton();
         bind(UserDefinedFunctionService.class).asEagerSingleton();
         bind(TransportCreateUserDefinedFunctionAction.class).asEagerSingleton();
@@ -23,6 +23,7 @@ package io.crate.plugin;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import io.crate.Version;
 import io.crate.action.sql.SQLOperations;
 import io.crate.analyze.repositories.RepositorySettingsModule;
 import io.crate.auth.AuthSettings;
@@ -33,6 +34,7 @@ import io.crate.execution.TransportExecutorModule;
 import io.crate.execution.engine.aggregation.impl.AggregationImplModule;
 import io.crate.execution.engine.collect.CollectOperationModule;
 import io.crate.execution.engine.collect.files.FileCollectModule;
+import io.crate.execution.engine.distribution.PageFormat;
 import io.crate.execution.jobs.TasksService;
 import io.crate.execution.jobs.JobModule;
 import io.crate.execution.jobs.transport.NodeDisconnectJobMonitorService;
@@ -58,6 +60,7 @@ import io.crate.metadata.settings.CrateSettings;
 import io.crate.metadata.sys.MetaDataSysModule;
 import io.crate.metadata.view.ViewsMetaData;
 import io.crate.monitor.MonitorModule;
+import io.crate.planner.PlanCache;
 import io.crate.protocols.postgres.PostgresNetty;
 import io.crate.protocols.ssl.SslConfigSettings;
 import io.crate.settings.CrateSetting;
@@ -78,6 +81,7 @@ import org.elasticsearch.common.xcontent.NamedXContentRegistry;
 import org.elasticsearch.index.mapper.ArrayMapper;
 import org.elasticsearch.index.mapper.ArrayTypeParser;
 import org.elasticsearch.index.mapper.Mapper;
+import org.elasticsearch.node.Node;
 import org.elasticsearch.plugins.ActionPlugin;
 import org.elasticsearch.plugins.ClusterPlugin;
 import org.elasticsearch.plugins.MapperPlugin;
@@ -125,6 +129,10 @@ public class SQLPlugin extends Plugin implements ActionPlugin, MapperPlugin, Clu
         if (SearchModule.INDICES_MAX_CLAUSE_COUNT_SETTING.exists(settings) == false) {
             settingsBuilder.put(SearchModule.INDICES_MAX_CLAUSE_COUNT_SETTING.getKey(), 8192);
         }
+
+        // Exposes the version to the other nodes, so that they only send pages in formats this node can read
+        settingsBuilder.put(
+            Node.NODE_ATTRIBUTES.getKey() + PageFormat.VERSION_ATTRIBUTE, Integer.toString(Version.CURRENT.id));
         return settingsBuilder.build();
     }
 
@@ -133,6 +141,7 @@ public class SQLPlugin extends Plugin implements ActionPlugin, MapperPlugin, Clu
         List<Setting<?>> settings = new ArrayList<>();
         settings.add(AnalyzerSettings.CUSTOM_ANALYSIS_SETTING_GROUP);
         settings.add(SQLOperations.NODE_READ_ONLY_SETTING);
+        settings.add(PlanCache.SIZE_SETTING);
 
         // Postgres settings are node settings
         settings.add(PostgresNetty.PSQL_ENABLED_SETTING.setting());
@@ -25,6 +25,7 @@ package io.crate.protocols.postgres;
 import io.crate.action.sql.SessionContext;
 import io.crate.analyze.Analyzer;
 import io.crate.planner.DependencyCarrier;
+import io.crate.planner.PlanCache;
 
 abstract class AbstractPortal implements Portal {
 
@@ -33,10 +34,15 @@ abstract class AbstractPortal implements Portal {
     final SessionContext sessionContext;
     boolean synced = false;
 
-    AbstractPortal(String name, Analyzer analyzer, DependencyCarrier executor, boolean isReadOnly, SessionContext sessionContext) {
+    AbstractPortal(String name,
+                   Analyzer analyzer,
+                   DependencyCarrier executor,
+                   PlanCache planCache,
+                   boolean isReadOnly,
+                   SessionContext sessionContext) {
         this.name = name;
         this.sessionContext = sessionContext;
-        portalContext = new PortalContext(analyzer, executor, isReadOnly);
+        portalContext = new PortalContext(analyzer, executor, planCache, isReadOnly);
     }
 
     AbstractPortal(String name, SessionContext sessionContext, PortalContext portalContext) {
@@ -63,11 +69,13 @@ abstract class AbstractPortal implements Portal {
 
         private final Analyzer analyzer;
         private final DependencyCarrier executor;
+        private final PlanCache planCache;
         private final boolean isReadOnly;
 
-        private PortalContext(Analyzer analyzer, DependencyCarrier executor, boolean isReadOnly) {
+        private PortalContext(Analyzer analyzer, DependencyCarrier executor, PlanCache planCache, boolean isReadOnly) {
             this.analyzer = analyzer;
             this.executor = executor;
+            this.planCache = planCache;
             this.isReadOnly = isReadOnly;
         }
 
@@ -79,6 +87,10 @@ abstract class AbstractPortal implements Portal {
             return executor;
         }
 
+        PlanCache getPlanCache() {
+            return planCache;
+        }
+
         boolean isReadOnly() {
             return isReadOnly;
         }
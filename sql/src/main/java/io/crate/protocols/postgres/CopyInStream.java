@@ -0,0 +1,207 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.protocols.postgres;
+
+import io.crate.execution.engine.collect.files.StdinStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stream of the data a client sends with CopyData messages during {@code COPY ... FROM STDIN}.
+ * <p>
+ * The network thread adds the buffers, the thread running the file collect phase reads them without blocking and
+ * waits for more data using {@link #whenReadable()}.
+ * To limit the memory used by clients sending faster than the rows are written, auto read of the channel is
+ * disabled once more than {@link #HIGH_WATERMARK} bytes are pending and enabled again once they've been consumed
+ * down to {@link #LOW_WATERMARK}.
+ */
+class CopyInStream implements StdinStream {
+
+    static final long HIGH_WATERMARK = 4 * 1024 * 1024;
+    static final long LOW_WATERMARK = 1024 * 1024;
+
+    private static final ByteBuf EOF = Unpooled.EMPTY_BUFFER;
+
+    private final Channel channel;
+    private final ConcurrentLinkedQueue<ByteBuf> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingBytes = new AtomicLong(0);
+
+    @Nullable
+    private ByteBuf current;
+    private volatile Throwable failure;
+    private volatile boolean closed = false;
+    private boolean eof = false;
+
+    /**
+     * Completed once the next buffer is added, guarded by {@code this}
+     */
+    @Nullable
+    private CompletableFuture<Void> readable;
+
+    CopyInStream(Channel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Adds the data of a CopyData message. The stream takes over the ownership of the buffer.
+     */
+    void add(ByteBuf buffer) {
+        if (closed) {
+            buffer.release();
+            return;
+        }
+        buffers.add(buffer);
+        if (closed) {
+            // raced with close
+            releasePending();
+            return;
+        }
+        if (pendingBytes.addAndGet(buffer.readableBytes()) > HIGH_WATERMARK) {
+            channel.config().setAutoRead(false);
+        }
+        signalReadable();
+    }
+
+    /**
+     * Called on CopyDone
+     */
+    void finish() {
+        buffers.add(EOF);
+        signalReadable();
+    }
+
+    /**
+     * Called on CopyFail or if the connection is lost; the reader fails with the given cause.
+     */
+    void fail(Throwable t) {
+        failure = t;
+        buffers.add(EOF);
+        signalReadable();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int numBytes = 0;
+        while (numBytes < len) {
+            ByteBuf buffer = nextReadable();
+            if (buffer == null) {
+                break;
+            }
+            int n = Math.min(len - numBytes, buffer.readableBytes());
+            buffer.readBytes(b, off + numBytes, n);
+            numBytes += n;
+        }
+        if (numBytes > 0) {
+            pendingBytesConsumed(numBytes);
+            return numBytes;
+        }
+        return eof ? -1 : 0;
+    }
+
+    @Override
+    public synchronized CompletableFuture<?> whenReadable() {
+        if (closed || buffers.isEmpty() == false) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (readable == null) {
+            readable = new CompletableFuture<>();
+        }
+        return readable;
+    }
+
+    private void signalReadable() {
+        CompletableFuture<Void> future;
+        synchronized (this) {
+            future = readable;
+            readable = null;
+        }
+        if (future != null) {
+            future.complete(null);
+        }
+    }
+
+    /**
+     * @return the buffer to read from or null if no data has been received yet or the client finished sending data
+     */
+    @Nullable
+    private ByteBuf nextReadable() throws IOException {
+        while (current == null || current.isReadable() == false) {
+            if (current != null) {
+                current.release();
+                current = null;
+            }
+            if (eof) {
+                return null;
+            }
+            ByteBuf next = buffers.poll();
+            if (next == null) {
+                return null;
+            }
+            if (next == EOF) {
+                eof = true;
+                if (failure != null) {
+                    throw new IOException("COPY FROM STDIN failed: " + failure.getMessage(), failure);
+                }
+                return null;
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    private void pendingBytesConsumed(int numBytes) {
+        long pending = pendingBytes.addAndGet(-numBytes);
+        if (pending <= LOW_WATERMARK && pending + numBytes > LOW_WATERMARK) {
+            channel.config().setAutoRead(true);
+        }
+    }
+
+    void close() {
+        closed = true;
+        if (current != null) {
+            current.release();
+            current = null;
+        }
+        releasePending();
+        pendingBytes.set(0);
+        channel.config().setAutoRead(true);
+        signalReadable();
+    }
+
+    private void releasePending() {
+        ByteBuf buffer;
+        while ((buffer = buffers.poll()) != null) {
+            buffer.release();
+        }
+    }
+}
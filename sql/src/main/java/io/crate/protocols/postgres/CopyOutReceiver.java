@@ -0,0 +1,220 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.protocols.postgres;
+
+import io.crate.action.sql.BaseResultReceiver;
+import io.crate.analyze.CopyToAnalyzedStatement;
+import io.crate.auth.user.ExceptionAuthorizedValidator;
+import io.crate.data.Row;
+import io.crate.exceptions.SQLExceptions;
+import io.crate.protocols.postgres.types.PGType;
+import io.crate.protocols.postgres.types.PGTypes;
+import io.crate.types.DataType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Receiver for {@code COPY ... TO STDOUT}.
+ * <p>
+ * Each row is sent as a CopyData message, formatted like the text or csv format of PostgreSQL.
+ * Once all rows are sent CopyDone and CommandComplete follow.
+ * <p>
+ * If the channel isn't writable anymore because the client doesn't keep up, {@link #backpressure()} pauses the
+ * consumption of the rows until the pending data has been flushed.
+ */
+class CopyOutReceiver extends BaseResultReceiver {
+
+    private static final byte[] TEXT_NULL = new byte[]{'\\', 'N'};
+
+    private final String query;
+    private final Channel channel;
+    private final ExceptionAuthorizedValidator exceptionAuthorizedValidator;
+    private final List<? extends DataType> columnTypes;
+    private final CopyToAnalyzedStatement.StdoutFormat format;
+    private final byte delimiter;
+    private final ByteBuf scratch = Unpooled.buffer();
+
+    private long rowCount = 0;
+
+    CopyOutReceiver(String query,
+                    Channel channel,
+                    ExceptionAuthorizedValidator exceptionAuthorizedValidator,
+                    List<? extends DataType> columnTypes,
+                    List<String> columnNames,
+                    CopyToAnalyzedStatement.StdoutFormat format) {
+        this.query = query;
+        this.channel = channel;
+        this.exceptionAuthorizedValidator = exceptionAuthorizedValidator;
+        this.columnTypes = columnTypes;
+        this.format = format;
+        this.delimiter = format == CopyToAnalyzedStatement.StdoutFormat.CSV ? (byte) ',' : (byte) '\t';
+        if (format == CopyToAnalyzedStatement.StdoutFormat.CSV) {
+            // the header is required to be able to import the data again with COPY FROM
+            sendHeader(columnNames);
+        }
+    }
+
+    private void sendHeader(List<String> columnNames) {
+        ByteBuf data = channel.alloc().buffer();
+        for (int i = 0; i < columnNames.size(); i++) {
+            if (i > 0) {
+                data.writeByte(delimiter);
+            }
+            writeCsvValue(data, columnNames.get(i).getBytes(StandardCharsets.UTF_8));
+        }
+        data.writeByte('\n');
+        Messages.sendCopyData(channel, data);
+    }
+
+    @Override
+    public void setNextRow(Row row) {
+        rowCount++;
+        ByteBuf data = channel.alloc().buffer();
+        for (int i = 0; i < row.numColumns(); i++) {
+            if (i > 0) {
+                data.writeByte(delimiter);
+            }
+            Object value = row.get(i);
+            if (value == null) {
+                if (format == CopyToAnalyzedStatement.StdoutFormat.TEXT) {
+                    data.writeBytes(TEXT_NULL);
+                }
+                // csv: null is an unquoted empty value
+            } else {
+                byte[] bytes = encodeAsText(columnTypes.get(i), value);
+                if (format == CopyToAnalyzedStatement.StdoutFormat.CSV) {
+                    writeCsvValue(data, bytes);
+                } else {
+                    writeTextValue(data, bytes);
+                }
+            }
+        }
+        data.writeByte('\n');
+        Messages.sendCopyData(channel, data);
+    }
+
+    private byte[] encodeAsText(DataType dataType, Object value) {
+        PGType pgType = PGTypes.get(dataType);
+        scratch.clear();
+        pgType.writeAsText(scratch, value);
+        byte[] bytes = new byte[scratch.readInt()];
+        scratch.readBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Escapes backslash, newline, carriage return and tab; all other bytes are written as they are.
+     * This is safe on UTF-8 encoded values as multi-byte sequences never contain ASCII bytes.
+     */
+    static void writeTextValue(ByteBuf out, byte[] bytes) {
+        for (byte b : bytes) {
+            switch (b) {
+                case '\\':
+                    out.writeByte('\\').writeByte('\\');
+                    break;
+                case '\n':
+                    out.writeByte('\\').writeByte('n');
+                    break;
+                case '\r':
+                    out.writeByte('\\').writeByte('r');
+                    break;
+                case '\t':
+                    out.writeByte('\\').writeByte('t');
+                    break;
+                default:
+                    out.writeByte(b);
+            }
+        }
+    }
+
+    /**
+     * Quotes the value if it is empty (to distinguish it from null) or if it contains a delimiter, a quote or a line
+     * break. Quotes within quoted values are doubled.
+     */
+    static void writeCsvValue(ByteBuf out, byte[] bytes) {
+        if (requiresQuotes(bytes) == false) {
+            out.writeBytes(bytes);
+            return;
+        }
+        out.writeByte('"');
+        for (byte b : bytes) {
+            if (b == '"') {
+                out.writeByte('"');
+            }
+            out.writeByte(b);
+        }
+        out.writeByte('"');
+    }
+
+    private static boolean requiresQuotes(byte[] bytes) {
+        if (bytes.length == 0) {
+            return true;
+        }
+        for (byte b : bytes) {
+            if (b == ',' || b == '"' || b == '\n' || b == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    @Override
+    public CompletableFuture<?> backpressure() {
+        if (channel.isWritable()) {
+            return null;
+        }
+        CompletableFuture<Void> writable = new CompletableFuture<>();
+        channel.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(f -> {
+            if (f.isSuccess()) {
+                writable.complete(null);
+            } else {
+                writable.completeExceptionally(f.cause());
+            }
+        });
+        return writable;
+    }
+
+    @Override
+    public void allFinished(boolean interrupted) {
+        if (interrupted) {
+            super.allFinished(true);
+        } else {
+            Messages.sendCopyDone(channel);
+            Messages.sendCommandComplete(channel, query, rowCount).addListener(f -> super.allFinished(false));
+        }
+    }
+
+    @Override
+    public void fail(@Nonnull Throwable throwable) {
+        Messages.sendErrorResponse(channel, SQLExceptions.createSQLActionException(throwable, exceptionAuthorizedValidator))
+            .addListener(f -> super.fail(throwable));
+    }
+}
@@ -37,8 +37,8 @@ import org.elasticsearch.common.logging.Loggers;
 
 import javax.annotation.Nullable;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
 import java.util.Locale;
 import java.util.SortedSet;
 
@@ -286,10 +286,10 @@ public class Messages {
      * ByteN
      * The value of the column, in the format indicated by the associated format code. n is the above length.
      */
-    static void sendDataRow(Channel channel, Row row, List<? extends DataType> columnTypes, @Nullable FormatCodes.FormatCode[] formatCodes) {
+    static void sendDataRow(Channel channel, Row row, PGType[] columnTypes, @Nullable FormatCodes.FormatCode[] formatCodes) {
         int length = 4 + 2;
-        assert columnTypes.size() == row.numColumns()
-            : "Number of columns in the row must match number of columnTypes. Row: " + row + " types: " + columnTypes;
+        assert columnTypes.length == row.numColumns()
+            : "Number of columns in the row must match number of columnTypes. Row: " + row + " types: " + Arrays.toString(columnTypes);
 
         ByteBuf buffer = channel.alloc().buffer();
         buffer.writeByte('D');
@@ -297,8 +297,7 @@ public class Messages {
         buffer.writeShort(row.numColumns());
 
         for (int i = 0; i < row.numColumns(); i++) {
-            DataType dataType = columnTypes.get(i);
-            PGType pgType = PGTypes.get(dataType);
+            PGType pgType = columnTypes[i];
             Object value = row.get(i);
             if (value == null) {
                 buffer.writeInt(-1);
@@ -471,6 +470,64 @@ public class Messages {
         sendShortMsg(channel, '3', "sentCloseComplete");
     }
 
+    /**
+     * CopyInResponse
+     * | 'G' | int32 len | int8 format | int16 numColumns | int16 formatCode * numColumns
+     * <p>
+     * Starts the copy-in mode, the client sends the rows with CopyData messages followed by CopyDone or CopyFail.
+     */
+    static void sendCopyInResponse(Channel channel, int numColumns) {
+        sendCopyResponse(channel, 'G', numColumns, "sentCopyInResponse");
+        channel.flush();
+    }
+
+    /**
+     * CopyOutResponse
+     * | 'H' | int32 len | int8 format | int16 numColumns | int16 formatCode * numColumns
+     * <p>
+     * Starts the copy-out mode, the rows are sent with CopyData messages followed by CopyDone.
+     */
+    static void sendCopyOutResponse(Channel channel, int numColumns) {
+        sendCopyResponse(channel, 'H', numColumns, "sentCopyOutResponse");
+    }
+
+    private static void sendCopyResponse(Channel channel, char msgType, int numColumns, String traceLogMsg) {
+        int length = 4 + 1 + 2 + numColumns * 2;
+        ByteBuf buffer = channel.alloc().buffer(length + 1);
+        buffer.writeByte(msgType);
+        buffer.writeInt(length);
+        buffer.writeByte(0); // overall format: textual
+        buffer.writeShort(numColumns);
+        for (int i = 0; i < numColumns; i++) {
+            buffer.writeShort(FormatCodes.FormatCode.TEXT.ordinal());
+        }
+        ChannelFuture channelFuture = channel.write(buffer);
+        if (LOGGER.isTraceEnabled()) {
+            channelFuture.addListener((ChannelFutureListener) future -> LOGGER.trace(traceLogMsg));
+        }
+    }
+
+    /**
+     * CopyData
+     * | 'd' | int32 len | byteN data
+     *
+     * @param data the data of one row. The buffer is released once it has been written.
+     */
+    static ChannelFuture sendCopyData(Channel channel, ByteBuf data) {
+        ByteBuf header = channel.alloc().buffer(5);
+        header.writeByte('d');
+        header.writeInt(4 + data.readableBytes());
+        return channel.write(channel.alloc().compositeBuffer(2).addComponents(true, header, data));
+    }
+
+    /**
+     * CopyDone
+     * | 'c' | int32 len |
+     */
+    static void sendCopyDone(Channel channel) {
+        sendShortMsg(channel, 'c', "sentCopyDone");
+    }
+
     /**
      * AuthenticationCleartextPassword (B)
      *
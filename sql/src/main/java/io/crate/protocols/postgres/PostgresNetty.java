@@ -26,6 +26,7 @@ import com.carrotsearch.hppc.IntHashSet;
 import com.carrotsearch.hppc.IntSet;
 import io.crate.action.sql.SQLOperations;
 import io.crate.auth.Authentication;
+import io.crate.execution.engine.collect.files.StdinStreams;
 import io.crate.netty.CrateChannelBootstrapFactory;
 import io.crate.protocols.ssl.SslConfigSettings;
 import io.crate.protocols.ssl.SslContextProvider;
@@ -83,6 +84,7 @@ public class PostgresNetty extends AbstractLifecycleComponent {
     private final String port;
     private final Authentication authentication;
     private final SslContextProvider sslContextProvider;
+    private final StdinStreams stdinStreams;
     private final Logger namedLogger;
 
     private ServerBootstrap bootstrap;
@@ -97,13 +99,15 @@ public class PostgresNetty extends AbstractLifecycleComponent {
                          SQLOperations sqlOperations,
                          NetworkService networkService,
                          Authentication authentication,
-                         SslContextProvider sslContextProvider) {
+                         SslContextProvider sslContextProvider,
+                         StdinStreams stdinStreams) {
         super(settings);
         namedLogger = Loggers.getLogger("psql", settings);
         this.sqlOperations = sqlOperations;
         this.networkService = networkService;
         this.authentication = authentication;
         this.sslContextProvider = sslContextProvider;
+        this.stdinStreams = stdinStreams;
 
         enabled = PSQL_ENABLED_SETTING.setting().get(settings);
         bindHosts = NetworkService.GLOBAL_NETWORK_BINDHOST_SETTING.get(settings).toArray(new String[0]);
@@ -136,7 +140,7 @@ public class PostgresNetty extends AbstractLifecycleComponent {
             protected void initChannel(Channel ch) throws Exception {
                 ChannelPipeline pipeline = ch.pipeline();
                 PostgresWireProtocol postgresWireProtocol =
-                    new PostgresWireProtocol(sqlOperations, authentication, sslContext);
+                    new PostgresWireProtocol(sqlOperations, authentication, sslContext, stdinStreams);
                 pipeline.addLast("frame-decoder", postgresWireProtocol.decoder);
                 pipeline.addLast("handler", postgresWireProtocol.handler);
             }
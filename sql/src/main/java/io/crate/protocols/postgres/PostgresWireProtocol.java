@@ -25,6 +25,9 @@ package io.crate.protocols.postgres;
 import com.google.common.annotations.VisibleForTesting;
 import io.crate.Version;
 import io.crate.action.sql.ResultReceiver;
+import io.crate.analyze.AnalyzedStatement;
+import io.crate.analyze.CopyFromAnalyzedStatement;
+import io.crate.analyze.CopyToAnalyzedStatement;
 import io.crate.action.sql.SQLOperations;
 import io.crate.action.sql.Session;
 import io.crate.auth.Authentication;
@@ -32,12 +35,18 @@ import io.crate.auth.AuthenticationMethod;
 import io.crate.auth.Protocol;
 import io.crate.auth.user.User;
 import io.crate.collections.Lists2;
+import io.crate.exceptions.UnsupportedFeatureException;
+import io.crate.execution.dsl.phases.FileUriCollectPhase;
+import io.crate.execution.engine.collect.files.StdinStreams;
+import io.crate.expression.symbol.ValueSymbolVisitor;
+import io.crate.metadata.Reference;
 import io.crate.expression.symbol.Field;
 import io.crate.protocols.http.CrateNettyHttpServerTransport;
 import io.crate.protocols.postgres.types.PGType;
 import io.crate.protocols.postgres.types.PGTypes;
 import io.crate.types.DataType;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
@@ -50,6 +59,7 @@ import org.elasticsearch.common.logging.Loggers;
 import javax.annotation.Nullable;
 import javax.net.ssl.SSLSession;
 import java.net.InetAddress;
+import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -58,6 +68,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
+import java.util.StringJoiner;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
 
@@ -168,6 +179,34 @@ import static io.crate.protocols.postgres.PostgresWireProtocol.State.STARTUP_HEA
  *          |                                  |
  *          |  ReadyForQuery                   |
  *          |<---------------------------------|
+ *
+ * Copy (COPY FROM STDIN / COPY TO STDOUT, simple query only)
+ *
+ *          +                                  +
+ *          |   Q (COPY t FROM STDIN)          |
+ *          |--------------------------------->|
+ *          |                                  |
+ *          |     CopyInResponse               |
+ *          |<---------------------------------|
+ *          |                                  |
+ *          |   CopyData                       |
+ *          |--------------------------------->|
+ *          |   CopyDone or CopyFail           |
+ *          |--------------------------------->|
+ *          |                                  |
+ *          |     CommandComplete              |
+ *          |     ReadyForQuery                |
+ *          |<---------------------------------|
+ *
+ *          |   Q (COPY t TO STDOUT)           |
+ *          |--------------------------------->|
+ *          |                                  |
+ *          |     CopyOutResponse              |
+ *          |     CopyData                     |
+ *          |     CopyDone                     |
+ *          |     CommandComplete              |
+ *          |     ReadyForQuery                |
+ *          |<---------------------------------|
  * </pre>
  * <p>
  * Take a look at {@link Messages} to see how the messages are structured.
@@ -185,6 +224,7 @@ class PostgresWireProtocol {
     private final SQLOperations sqlOperations;
     private final Authentication authService;
     private final SslReqHandler sslReqHandler;
+    private final StdinStreams stdinStreams;
 
     private int msgLength;
     private byte msgType;
@@ -193,6 +233,13 @@ class PostgresWireProtocol {
     private AuthenticationContext authContext;
     private Properties properties;
 
+    /**
+     * Stream of the CopyData messages, only set while a COPY FROM STDIN is in progress.
+     * It's reset by the thread completing the statement.
+     */
+    @Nullable
+    private volatile CopyInStream copyIn;
+
     enum State {
         PRE_STARTUP,
         STARTUP_HEADER,
@@ -203,10 +250,14 @@ class PostgresWireProtocol {
 
     private State state = PRE_STARTUP;
 
-    PostgresWireProtocol(SQLOperations sqlOperations, Authentication authService, @Nullable SslContext sslContext) {
+    PostgresWireProtocol(SQLOperations sqlOperations,
+                         Authentication authService,
+                         @Nullable SslContext sslContext,
+                         StdinStreams stdinStreams) {
         this.sqlOperations = sqlOperations;
         this.authService = authService;
         this.sslReqHandler = new SslReqHandler(sslContext);
+        this.stdinStreams = stdinStreams;
         this.decoder = new MessageDecoder();
         this.handler = new MessageHandler();
     }
@@ -349,6 +400,15 @@ class PostgresWireProtocol {
                 case 'C':
                     handleClose(buffer, channel);
                     return;
+                case 'd':
+                    handleCopyData(buffer);
+                    return;
+                case 'c':
+                    handleCopyDone();
+                    return;
+                case 'f':
+                    handleCopyFail(buffer);
+                    return;
                 case 'X': // Terminate (called when jdbc connection is closed)
                     closeSession();
                     channel.close();
@@ -374,6 +434,10 @@ class PostgresWireProtocol {
         @Override
         public void channelUnregistered(ChannelHandlerContext ctx) throws Exception {
             LOGGER.trace("channelDisconnected");
+            CopyInStream stream = copyIn;
+            if (stream != null) {
+                stream.fail(new IllegalStateException("Connection closed during COPY FROM STDIN"));
+            }
             closeSession();
             super.channelUnregistered(ctx);
         }
@@ -431,6 +495,7 @@ class PostgresWireProtocol {
         Messages.sendParameterStatus(channel, "server_encoding", "UTF8");
         Messages.sendParameterStatus(channel, "client_encoding", "UTF8");
         Messages.sendParameterStatus(channel, "datestyle", "ISO");
+        Messages.sendParameterStatus(channel, "integer_datetimes", "on");
         Messages.sendReadyForQuery(channel);
     }
 
@@ -601,6 +666,10 @@ class PostgresWireProtocol {
             Messages.sendEmptyQueryResponse(channel);
             return;
         }
+        if (isCopyFromStdinOrToStdout(session.getAnalyzedStatement(portalName))) {
+            throw new UnsupportedFeatureException(
+                "COPY FROM STDIN and COPY TO STDOUT are only supported using the simple query protocol");
+        }
         List<? extends DataType> outputTypes = session.getOutputTypes(portalName);
         ResultReceiver resultReceiver;
         if (outputTypes == null) {
@@ -615,6 +684,43 @@ class PostgresWireProtocol {
         session.execute(portalName, maxRows, resultReceiver);
     }
 
+    /**
+     * CopyData
+     * | 'd' | int32 len | byteN data
+     * <p>
+     * Like PostgreSQL, copy messages received outside of the copy-in mode are ignored.
+     */
+    private void handleCopyData(ByteBuf buffer) {
+        CopyInStream stream = copyIn;
+        if (stream != null) {
+            // the MessageHandler releases the buffer after channelRead0, the stream releases it once consumed
+            stream.add(buffer.retain());
+        }
+    }
+
+    /**
+     * CopyDone
+     * | 'c' | int32 len
+     */
+    private void handleCopyDone() {
+        CopyInStream stream = copyIn;
+        if (stream != null) {
+            stream.finish();
+        }
+    }
+
+    /**
+     * CopyFail
+     * | 'f' | int32 len | string errorMessage
+     */
+    private void handleCopyFail(ByteBuf buffer) {
+        String errorMessage = readCString(buffer);
+        CopyInStream stream = copyIn;
+        if (stream != null) {
+            stream.fail(new IllegalStateException("COPY FROM STDIN failed: " + errorMessage));
+        }
+    }
+
     private void handleSync(final Channel channel) {
         if (ignoreTillSync) {
             ignoreTillSync = false;
@@ -670,7 +776,15 @@ class PostgresWireProtocol {
             session.bind("", "", Collections.emptyList(), null);
             Session.DescribeResult describeResult = session.describe('P', "");
             List<Field> fields = describeResult.getFields();
-            if (fields == null) {
+            AnalyzedStatement analyzedStatement = session.getAnalyzedStatement("");
+            if (analyzedStatement instanceof CopyFromAnalyzedStatement
+                && ((CopyFromAnalyzedStatement) analyzedStatement).fromStdin()) {
+                return copyFromStdin(query, (CopyFromAnalyzedStatement) analyzedStatement, channel);
+            }
+            if (analyzedStatement instanceof CopyToAnalyzedStatement
+                && ((CopyToAnalyzedStatement) analyzedStatement).toStdout()) {
+                copyToStdout(query, (CopyToAnalyzedStatement) analyzedStatement, channel);
+            } else if (fields == null) {
                 RowCountReceiver rowCountReceiver = new RowCountReceiver(query, channel, session.sessionContext());
                 session.execute("", 0, rowCountReceiver);
             } else {
@@ -693,6 +807,64 @@ class PostgresWireProtocol {
     }
 
 
+    private static boolean isCopyFromStdinOrToStdout(@Nullable AnalyzedStatement analyzedStatement) {
+        return (analyzedStatement instanceof CopyFromAnalyzedStatement
+                && ((CopyFromAnalyzedStatement) analyzedStatement).fromStdin())
+               || (analyzedStatement instanceof CopyToAnalyzedStatement
+                   && ((CopyToAnalyzedStatement) analyzedStatement).toStdout());
+    }
+
+    /**
+     * Registers the stream of the CopyData messages under the uri of the statement, starts the execution and
+     * switches into the copy-in mode. The execution reads from the stream until the client sends CopyDone.
+     */
+    private CompletableFuture<?> copyFromStdin(String query, CopyFromAnalyzedStatement statement, Channel channel) {
+        CopyInStream stream = new CopyInStream(channel);
+        if (statement.inputFormat() == FileUriCollectPhase.InputFormat.TEXT) {
+            // the text format has no header, the values are in the order of the table columns
+            StringJoiner header = new StringJoiner("\t", "", "\n");
+            for (Reference reference : statement.table().columns()) {
+                header.add(reference.column().name());
+            }
+            stream.add(Unpooled.copiedBuffer(header.toString(), StandardCharsets.UTF_8));
+        }
+        URI uri = URI.create(ValueSymbolVisitor.STRING.process(statement.uri()));
+        stdinStreams.register(uri, stream);
+        copyIn = stream;
+
+        // errors are sent as ErrorResponse within the copy-in mode, the client stops sending data once it receives one
+        Messages.sendCopyInResponse(channel, statement.table().columns().size());
+        CompletableFuture<?> result;
+        try {
+            session.execute("", 0, new RowCountReceiver(query, channel, session.sessionContext()));
+            result = session.sync();
+        } catch (Throwable t) {
+            finishCopyIn(uri, stream);
+            throw t;
+        }
+        return result.whenComplete((r, t) -> finishCopyIn(uri, stream));
+    }
+
+    private void finishCopyIn(URI uri, CopyInStream stream) {
+        stdinStreams.unregister(uri);
+        stream.close();
+        copyIn = null;
+    }
+
+    private void copyToStdout(String query, CopyToAnalyzedStatement statement, Channel channel) {
+        List<Field> fields = statement.subQueryRelation().fields();
+        Messages.sendCopyOutResponse(channel, fields.size());
+        CopyOutReceiver copyOutReceiver = new CopyOutReceiver(
+            query,
+            channel,
+            session.sessionContext(),
+            Lists2.copyAndReplace(fields, Field::valueType),
+            statement.outputNames(),
+            statement.stdoutFormat()
+        );
+        session.execute("", 0, copyOutReceiver);
+    }
+
     /**
      * FrameDecoder that makes sure that a full message is in the buffer before delegating work to the MessageHandler
      */
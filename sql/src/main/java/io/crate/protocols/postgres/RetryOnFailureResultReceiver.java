@@ -82,6 +82,11 @@ public class RetryOnFailureResultReceiver implements ResultReceiver {
         delegate.batchFinished();
     }
 
+    @Override
+    public CompletableFuture<?> backpressure() {
+        return delegate.backpressure();
+    }
+
     @Override
     public void allFinished(boolean interrupted) {
         delegate.allFinished(interrupted);
@@ -28,6 +28,7 @@ import io.crate.action.sql.SessionContext;
 import io.crate.analyze.Analysis;
 import io.crate.analyze.AnalyzedStatement;
 import io.crate.analyze.Analyzer;
+import io.crate.analyze.ParamTypeHints;
 import io.crate.analyze.ParameterContext;
 import io.crate.analyze.relations.AnalyzedRelation;
 import io.crate.collections.Lists2;
@@ -41,6 +42,7 @@ import io.crate.metadata.RoutingProvider;
 import io.crate.metadata.TransactionContext;
 import io.crate.planner.DependencyCarrier;
 import io.crate.planner.Plan;
+import io.crate.planner.PlanCache;
 import io.crate.planner.Planner;
 import io.crate.planner.PlannerContext;
 import io.crate.planner.operators.StatementClassifier;
@@ -76,13 +78,16 @@ public class SimplePortal extends AbstractPortal {
     private int defaultLimit;
     private Row rowParams;
     private TransactionContext transactionContext;
+    @Nullable
+    private PlanCache.Key planCacheKey;
 
     public SimplePortal(String name,
                         Analyzer analyzer,
                         DependencyCarrier executor,
+                        PlanCache planCache,
                         boolean isReadOnly,
                         SessionContext sessionContext) {
-        super(name, analyzer, executor, isReadOnly, sessionContext);
+        super(name, analyzer, executor, planCache, isReadOnly, sessionContext);
         this.defaultLimit = sessionContext.defaultLimit();
     }
 
@@ -146,6 +151,10 @@ public class SimplePortal extends AbstractPortal {
         if (transactionContext == null) {
             transactionContext = new TransactionContext(sessionContext);
         }
+        planCacheKey = null;
+        if (analyzedStatement == null) {
+            analyzedStatement = analyzeUsingPlanCache(query, statement);
+        }
         if (analyzedStatement == null || analyzedStatement.isUnboundPlanningSupported() == false) {
             Analysis analysis = portalContext.getAnalyzer().boundAnalyze(
                 statement,
@@ -162,6 +171,36 @@ public class SimplePortal extends AbstractPortal {
         return this;
     }
 
+    /**
+     * Looks up the unbound analyzed statement in the {@link PlanCache}.
+     * If the statement can be cached but isn't, it's analyzed unbound and added to the cache.
+     * Its plan is looked up on sync, once the fetch size is known.
+     * <p>
+     * The returned statement may be shared with other sessions and must not be modified or planned.
+     *
+     * @return the unbound analyzed statement or null if the statement must be analyzed with the bound parameters.
+     */
+    @Nullable
+    private AnalyzedStatement analyzeUsingPlanCache(String query, Statement statement) {
+        PlanCache planCache = portalContext.getPlanCache();
+        PlanCache.Key key = planCache.createKey(query, statement, sessionContext);
+        if (key == null) {
+            return null;
+        }
+        AnalyzedStatement analyzedStatement = planCache.getAnalyzedStatement(key);
+        if (analyzedStatement == null) {
+            analyzedStatement = portalContext.getAnalyzer()
+                .unboundAnalyze(statement, sessionContext, ParamTypeHints.EMPTY);
+            if (PlanCache.isCacheable(analyzedStatement) == false) {
+                return null;
+            }
+            planCache.putAnalyzedStatement(key, analyzedStatement);
+        }
+        sessionContext.ensureStatementAuthorized(analyzedStatement);
+        planCacheKey = key;
+        return analyzedStatement;
+    }
+
     @Override
     public List<Field> describe() {
         return fields();
@@ -189,12 +228,23 @@ public class SimplePortal extends AbstractPortal {
             defaultLimit,
             maxRows
         );
-        Plan plan;
-        try {
-            plan = planner.plan(analyzedStatement, plannerContext);
-        } catch (Throwable t) {
-            jobsLogs.logPreExecutionFailure(jobId, query, SQLExceptions.messageOf(t), sessionContext.user());
-            throw t;
+        PlanCache.Key planKey = planCacheKey == null ? null : planCacheKey.withFetchSize(maxRows);
+        Plan plan = planKey == null ? null : portalContext.getPlanCache().getPlan(planKey);
+        if (plan == null) {
+            try {
+                // the cached analyzed statement is shared with other sessions and planning may rewrite relations
+                // in place, so the plan to cache is built from a fresh analysis
+                AnalyzedStatement toPlan = planKey == null
+                    ? analyzedStatement
+                    : portalContext.getAnalyzer().unboundAnalyze(statement, sessionContext, ParamTypeHints.EMPTY);
+                plan = planner.plan(toPlan, plannerContext);
+            } catch (Throwable t) {
+                jobsLogs.logPreExecutionFailure(jobId, query, SQLExceptions.messageOf(t), sessionContext.user());
+                throw t;
+            }
+            if (planKey != null) {
+                portalContext.getPlanCache().putPlan(planKey, plan);
+            }
         }
 
         DependencyCarrier dependencyCarrier = portalContext.getExecutor();
@@ -31,6 +31,7 @@ import org.elasticsearch.common.xcontent.json.JsonXContent;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 class JsonType extends PGType {
@@ -41,6 +42,11 @@ class JsonType extends PGType {
     private static final int TYPE_LEN = -1;
     private static final int TYPE_MOD = -1;
 
+    /**
+     * The binary format of jsonb is the json text prefixed with this version byte.
+     */
+    private static final byte JSONB_VERSION = 1;
+
     private JsonType() {
         super(OID, TYPE_LEN, TYPE_MOD, "json");
     }
@@ -64,6 +70,12 @@ class JsonType extends PGType {
                     builder.value(o);
                 }
                 builder.endArray();
+            } else if (value instanceof List) {
+                builder.startArray();
+                for (Object o : (List) value) {
+                    builder.value(o);
+                }
+                builder.endArray();
             } else {
                 builder.map((Map) value);
             }
@@ -74,8 +86,16 @@ class JsonType extends PGType {
         }
     }
 
+    /**
+     * Reads json which is sent in the binary format of json or jsonb. Json text never starts with the jsonb version
+     * byte, so both can be accepted.
+     */
     @Override
     public Object readBinaryValue(ByteBuf buffer, int valueLength) {
+        if (valueLength > 0 && buffer.getByte(buffer.readerIndex()) == JSONB_VERSION) {
+            buffer.skipBytes(1);
+            valueLength--;
+        }
         byte[] bytes = new byte[valueLength];
         buffer.readBytes(bytes);
         return decodeUTF8Text(bytes);
@@ -58,6 +58,14 @@ class PGArray extends PGType {
 
     @Override
     public int writeAsBinary(ByteBuf buffer, @Nonnull Object value) {
+        if (((Object[]) value).length == 0) {
+            // postgres represents empty arrays with zero dimensions
+            buffer.writeInt(4 + 4 + 4);
+            buffer.writeInt(0);
+            buffer.writeInt(0);
+            buffer.writeInt(typElem());
+            return INT32_BYTE_SIZE + 4 + 4 + 4;
+        }
         int dimensions = getDimensions(value);
 
         List<Integer> dimensionsList = new ArrayList<>();
@@ -67,12 +75,13 @@ class PGArray extends PGType {
         final int lenIndex = buffer.writerIndex();
         buffer.writeInt(0);
         buffer.writeInt(dimensions);
-        buffer.writeInt(1); // flags bit 0: 0=no-nulls, 1=has-nulls
+        // flags bit 0: 0=no-nulls, 1=has-nulls
+        buffer.writeInt(hasNulls((Object[]) value, dimensionsList, 1) ? 1 : 0);
         buffer.writeInt(typElem());
 
         for (Integer dim : dimensionsList) {
-            buffer.writeInt(dim); // upper bound
-            buffer.writeInt(dim); // lower bound
+            buffer.writeInt(dim); // number of elements
+            buffer.writeInt(1); // lower bound, arrays are 1-based
             bytesWritten += 8;
         }
         int len = bytesWritten + writeArrayAsBinary(buffer, (Object[]) value, dimensionsList, 1);
@@ -289,6 +298,26 @@ class PGArray extends PGType {
         return array.length;
     }
 
+    /**
+     * @return true if null values are written for the array, either because it contains nulls or because a
+     *         sub-array is shorter than the dimension and padded with nulls.
+     */
+    private static boolean hasNulls(Object[] array, List<Integer> dimensionsList, int currentDimension) {
+        if (array == null) {
+            return dimensionsList.get(currentDimension - 1) > 0;
+        }
+        if (array.length < dimensionsList.get(currentDimension - 1)) {
+            return true;
+        }
+        boolean lastDimension = currentDimension == dimensionsList.size();
+        for (Object o : array) {
+            if (lastDimension ? o == null : hasNulls((Object[]) o, dimensionsList, currentDimension + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private int writeArrayAsBinary(ByteBuf buffer, Object[] array, List<Integer> dimensionsList, int currentDimension) {
         int bytesWritten = 0;
 
@@ -50,8 +50,11 @@ import static io.crate.testing.SymbolMatchers.isFunction;
 import static io.crate.testing.SymbolMatchers.isLiteral;
 import static io.crate.testing.SymbolMatchers.isReference;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
 import static org.hamcrest.core.IsEqual.equalTo;
 
 public class CopyAnalyzerTest extends CrateDummyClusterServiceUnitTest {
@@ -136,6 +139,46 @@ public class CopyAnalyzerTest extends CrateDummyClusterServiceUnitTest {
         assertThat(analysis.inputFormat(), is(FileUriCollectPhase.InputFormat.JSON));
     }
 
+    @Test
+    public void testCopyFromStdin() throws Exception {
+        CopyFromAnalyzedStatement analysis = e.analyze("copy users from stdin with (format='text')");
+        assertThat(analysis.fromStdin(), is(true));
+        assertThat(analysis.inputFormat(), is(FileUriCollectPhase.InputFormat.TEXT));
+        String uri = BytesRefs.toString(((Literal) analysis.uri()).value());
+        assertThat(uri, startsWith("stdin:///"));
+    }
+
+    @Test
+    public void testCopyFromFileWithTextFormatIsNotSupported() throws Exception {
+        expectedException.expect(UnsupportedFeatureException.class);
+        expectedException.expectMessage("The text format is only supported by COPY FROM STDIN");
+        e.analyze("copy users from '/some/distant/file.ext' with (format='text')");
+    }
+
+    @Test
+    public void testCopyFromStdinWithCompressionIsNotSupported() throws Exception {
+        expectedException.expect(UnsupportedFeatureException.class);
+        expectedException.expectMessage("Compression is not supported by COPY FROM STDIN");
+        e.analyze("copy users from stdin with (compression='gzip')");
+    }
+
+    @Test
+    public void testCopyToStdoutOutputsAllColumns() throws Exception {
+        CopyToAnalyzedStatement analysis = e.analyze("copy users to stdout");
+        assertThat(analysis.toStdout(), is(true));
+        assertThat(analysis.uri(), nullValue());
+        assertThat(analysis.stdoutFormat(), is(CopyToAnalyzedStatement.StdoutFormat.TEXT));
+        assertThat(analysis.outputNames(), hasItems("id", "name"));
+        assertThat(analysis.subQueryRelation().querySpec().outputs().size(), is(analysis.outputNames().size()));
+    }
+
+    @Test
+    public void testCopyToStdoutWithCsvFormat() throws Exception {
+        CopyToAnalyzedStatement analysis = e.analyze("copy users (id, name) to stdout with (format='csv')");
+        assertThat(analysis.stdoutFormat(), is(CopyToAnalyzedStatement.StdoutFormat.CSV));
+        assertThat(analysis.outputNames(), contains("id", "name"));
+    }
+
     @Test
     public void testCopyToFile() throws Exception {
         expectedException.expect(UnsupportedOperationException.class);
@@ -274,6 +317,35 @@ public class CopyAnalyzerTest extends CrateDummyClusterServiceUnitTest {
         e.analyze("copy users to directory '/blah' with (format='json_array')");
     }
 
+    @Test
+    public void testCopyToFileWithLz4Compression() throws Exception {
+        CopyToAnalyzedStatement analysis = e.analyze("copy users to directory '/blah' with (compression='lz4')");
+        assertThat(analysis.compressionType(), is(WriterProjection.CompressionType.LZ4));
+    }
+
+    @Test
+    public void testCopyToFileWithParquetOutputFormat() throws Exception {
+        CopyToAnalyzedStatement analysis = e.analyze(
+            "copy users (id, name) to directory '/blah' with (format='parquet', compression='gzip')");
+        assertThat(analysis.outputFormat(), is(WriterProjection.OutputFormat.PARQUET));
+        assertThat(analysis.compressionType(), is(WriterProjection.CompressionType.GZIP));
+        assertThat(analysis.outputNames(), contains("id", "name"));
+    }
+
+    @Test
+    public void testCopyToFileWithParquetOutputFormatRequiresColumns() throws Exception {
+        expectedException.expect(UnsupportedFeatureException.class);
+        expectedException.expectMessage("Output format not supported without specifying columns.");
+        e.analyze("copy users to directory '/blah' with (format='parquet')");
+    }
+
+    @Test
+    public void testCopyToFileWithParquetOutputFormatAndLz4Compression() throws Exception {
+        expectedException.expect(UnsupportedFeatureException.class);
+        expectedException.expectMessage("Compression lz4 is not supported for the parquet output format.");
+        e.analyze("copy users (id, name) to directory '/blah' with (format='parquet', compression='lz4')");
+    }
+
     @Test
     public void testCopyFromWithReferenceAssignedToProperty() throws Exception {
         expectedException.expect(IllegalArgumentException.class);
@@ -180,7 +180,8 @@ public class SetAnalyzerTest extends CrateDummyClusterServiceUnitTest {
                 "stats.jobs_log_expiration",
                 "stats.operations_log_size",
                 "stats.operations_log_expiration",
-                "stats.service.interval")
+                "stats.service.interval",
+                "stats.service.sample_size")
         );
     }
 
@@ -97,4 +97,14 @@ public class RamAccountingContextTest extends CrateUnitTest {
         assertThat(ramAccountingContext.totalBytes(), is(0L));
         assertThat(breaker.getUsed(), is(0L));
     }
+
+    @Test
+    public void testReleaseBytesAdjustsBreakerImmediately() {
+        ramAccountingContext.addBytes(20);
+        ramAccountingContext.addBytesWithoutBreaking(10);
+        ramAccountingContext.releaseBytes(25);
+
+        assertThat(ramAccountingContext.totalBytes(), is(5L));
+        assertThat(breaker.getUsed(), is(5L));
+    }
 }
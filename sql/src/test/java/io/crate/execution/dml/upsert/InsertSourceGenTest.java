@@ -0,0 +1,91 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.dml.upsert;
+
+import io.crate.execution.dml.upsert.ShardUpsertRequest.DuplicateKeyAction;
+import io.crate.metadata.GeneratedReference;
+import io.crate.metadata.Reference;
+import io.crate.metadata.ReferenceIdent;
+import io.crate.metadata.RelationName;
+import io.crate.metadata.RowGranularity;
+import io.crate.metadata.Schemas;
+import io.crate.metadata.doc.DocTableInfo;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class InsertSourceGenTest extends CrateUnitTest {
+
+    private static final RelationName TABLE_IDENT = new RelationName(Schemas.DOC_SCHEMA_NAME, "t");
+
+    private static final Reference X_REF = new Reference(
+        new ReferenceIdent(TABLE_IDENT, "x"), RowGranularity.DOC, DataTypes.INTEGER);
+    private static final Reference NAME_REF = new Reference(
+        new ReferenceIdent(TABLE_IDENT, "o", Arrays.asList("name")), RowGranularity.DOC, DataTypes.STRING);
+    private static final Reference PARTITION_REF = new Reference(
+        new ReferenceIdent(TABLE_IDENT, "p"), RowGranularity.PARTITION, DataTypes.STRING);
+
+    private static ShardUpsertRequest newRequest(Reference[] insertColumns, boolean validateConstraints) {
+        return new ShardUpsertRequest.Builder(
+            DuplicateKeyAction.UPDATE_OR_FAIL,
+            false,
+            null,
+            insertColumns,
+            UUID.randomUUID(),
+            validateConstraints
+        ).newRequest(new ShardId(TABLE_IDENT.indexName(), UUIDs.randomBase64UUID(), 0));
+    }
+
+    @Test
+    public void testSourceContainsDocColumnsInInsertColumnOrder() throws Exception {
+        DocTableInfo tableInfo = mock(DocTableInfo.class);
+        InsertSourceGen sourceGen = new InsertSourceGen(
+            tableInfo, newRequest(new Reference[]{NAME_REF, PARTITION_REF, X_REF}, false));
+
+        assertThat(sourceGen.generatedColumnsEvaluationNeeded(), is(false));
+        assertThat(sourceGen.generateSource(new Object[]{"Arthur", "p1", 42}).utf8ToString(),
+            is("{\"o.name\":\"Arthur\",\"x\":42}"));
+        assertThat(sourceGen.generateSource(new Object[]{null, "p1", 1}).utf8ToString(),
+            is("{\"o.name\":null,\"x\":1}"));
+    }
+
+    @Test
+    public void testGeneratedColumnsEvaluationNeededIfGeneratedColumnHasNoValue() throws Exception {
+        DocTableInfo tableInfo = mock(DocTableInfo.class);
+        GeneratedReference generatedRef = mock(GeneratedReference.class);
+        when(tableInfo.generatedColumns()).thenReturn(Collections.singletonList(generatedRef));
+
+        InsertSourceGen sourceGen = new InsertSourceGen(tableInfo, newRequest(new Reference[]{X_REF}, false));
+        assertThat(sourceGen.generatedColumnsEvaluationNeeded(), is(true));
+    }
+}
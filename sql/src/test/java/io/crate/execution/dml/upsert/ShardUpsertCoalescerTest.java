@@ -0,0 +1,193 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.dml.upsert;
+
+import io.crate.execution.dml.ShardResponse;
+import io.crate.execution.dml.upsert.ShardUpsertRequest.DuplicateKeyAction;
+import io.crate.metadata.Reference;
+import io.crate.metadata.ReferenceIdent;
+import io.crate.metadata.RelationName;
+import io.crate.metadata.RowGranularity;
+import io.crate.metadata.Schemas;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataTypes;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.engine.VersionConflictEngineException;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ShardUpsertCoalescerTest extends CrateUnitTest {
+
+    private static final RelationName TABLE_IDENT = new RelationName(Schemas.DOC_SCHEMA_NAME, "t");
+    private static final Reference ID_REF = new Reference(
+        new ReferenceIdent(TABLE_IDENT, "id"), RowGranularity.DOC, DataTypes.INTEGER);
+    private static final ShardId SHARD_ID = new ShardId(TABLE_IDENT.indexName(), UUIDs.randomBase64UUID(), 0);
+
+    private ScheduledExecutorService scheduler;
+    private final List<ShardUpsertRequest> sentRequests = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> failingIds = new HashSet<>();
+
+    @Before
+    public void initScheduler() throws Exception {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void shutdownScheduler() throws Exception {
+        // pending requests which are still waiting for the end of the window are discarded
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private void execute(ShardUpsertRequest request, ActionListener<ShardResponse> listener) {
+        sentRequests.add(request);
+        ShardResponse response = new ShardResponse();
+        for (ShardUpsertRequest.Item item : request.items()) {
+            if (failingIds.contains(item.id())) {
+                if (request.continueOnError()) {
+                    response.add(item.location(), new ShardResponse.Failure(item.id(), "failed", true));
+                } else {
+                    response.failure(new VersionConflictEngineException(SHARD_ID, "default", item.id(), "failed"));
+                    break;
+                }
+            } else {
+                response.add(item.location());
+            }
+        }
+        listener.onResponse(response);
+    }
+
+    private static ShardUpsertRequest newRequest(boolean continueOnError, String... ids) {
+        ShardUpsertRequest request = new ShardUpsertRequest.Builder(
+            DuplicateKeyAction.UPDATE_OR_FAIL,
+            continueOnError,
+            null,
+            new Reference[]{ID_REF},
+            UUID.randomUUID(),
+            false
+        ).newRequest(SHARD_ID);
+        for (int i = 0; i < ids.length; i++) {
+            request.add(i, new ShardUpsertRequest.Item(ids[i], null, new Object[]{Integer.valueOf(ids[i])}, null));
+        }
+        return request;
+    }
+
+    @Test
+    public void testRequestsArePassedThroughIfDisabled() throws Exception {
+        ShardUpsertCoalescer coalescer = new ShardUpsertCoalescer(this::execute, scheduler, TimeValue.timeValueMillis(0), 10);
+        ShardUpsertRequest request = newRequest(false, "1");
+        PlainActionFuture<ShardResponse> future = new PlainActionFuture<>();
+        coalescer.execute(request, future);
+
+        assertThat(future.actionGet().itemIndices().size(), is(1));
+        assertThat(sentRequests, contains(request));
+    }
+
+    @Test
+    public void testRequestsAreCombinedAndResponsesAreSplit() throws Exception {
+        ShardUpsertCoalescer coalescer = new ShardUpsertCoalescer(this::execute, scheduler, TimeValue.timeValueMinutes(1), 3);
+        PlainActionFuture<ShardResponse> first = new PlainActionFuture<>();
+        PlainActionFuture<ShardResponse> second = new PlainActionFuture<>();
+        coalescer.execute(newRequest(true, "1", "2"), first);
+        assertThat(first.isDone(), is(false));
+        coalescer.execute(newRequest(false, "3"), second);
+
+        assertThat(sentRequests.size(), is(1));
+        ShardUpsertRequest combined = sentRequests.get(0);
+        assertThat(combined.items().size(), is(3));
+        assertThat(combined.continueOnError(), is(true));
+
+        ShardResponse firstResponse = first.actionGet();
+        assertThat(firstResponse.itemIndices().toArray(), is(new int[]{0, 1}));
+        ShardResponse secondResponse = second.actionGet();
+        assertThat(secondResponse.itemIndices().toArray(), is(new int[]{0}));
+        assertThat(secondResponse.failures().get(0), nullValue());
+    }
+
+    @Test
+    public void testPendingRequestsAreSentAfterWindow() throws Exception {
+        ShardUpsertCoalescer coalescer = new ShardUpsertCoalescer(this::execute, scheduler, TimeValue.timeValueMillis(5), 100);
+        PlainActionFuture<ShardResponse> first = new PlainActionFuture<>();
+        PlainActionFuture<ShardResponse> second = new PlainActionFuture<>();
+        coalescer.execute(newRequest(false, "1"), first);
+        coalescer.execute(newRequest(false, "2"), second);
+
+        assertThat(first.get(10, TimeUnit.SECONDS).itemIndices().size(), is(1));
+        assertThat(second.get(10, TimeUnit.SECONDS).itemIndices().size(), is(1));
+        assertThat(sentRequests.size(), is(1));
+    }
+
+    @Test
+    public void testFailedItemOfRequestWhichMustNotContinueOnErrorIsSentAgainAlone() throws Exception {
+        failingIds.add("2");
+        ShardUpsertCoalescer coalescer = new ShardUpsertCoalescer(this::execute, scheduler, TimeValue.timeValueMinutes(1), 2);
+        PlainActionFuture<ShardResponse> first = new PlainActionFuture<>();
+        PlainActionFuture<ShardResponse> second = new PlainActionFuture<>();
+        ShardUpsertRequest failingRequest = newRequest(false, "2");
+        coalescer.execute(newRequest(false, "1"), first);
+        coalescer.execute(failingRequest, second);
+
+        assertThat(first.actionGet().failure(), nullValue());
+        assertThat(second.actionGet().failure(), instanceOf(VersionConflictEngineException.class));
+        assertThat(sentRequests.size(), is(2));
+        assertThat(sentRequests.get(1), is(failingRequest));
+    }
+
+    @Test
+    public void testRequestsWithDifferentColumnsAreNotCombined() throws Exception {
+        ShardUpsertCoalescer coalescer = new ShardUpsertCoalescer(this::execute, scheduler, TimeValue.timeValueMinutes(1), 2);
+        ShardUpsertRequest update = new ShardUpsertRequest.Builder(
+            DuplicateKeyAction.UPDATE_OR_FAIL,
+            false,
+            new String[]{"id"},
+            new Reference[]{ID_REF},
+            UUID.randomUUID(),
+            false
+        ).newRequest(SHARD_ID);
+        update.add(0, new ShardUpsertRequest.Item("1", null, new Object[]{1}, null));
+        coalescer.execute(update, new PlainActionFuture<>());
+        coalescer.execute(newRequest(false, "2"), new PlainActionFuture<>());
+
+        assertThat(sentRequests.size(), is(0));
+    }
+}
@@ -42,6 +42,7 @@ import org.junit.Test;
 import java.util.UUID;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
 
 public class ShardUpsertRequestTest extends CrateUnitTest {
 
@@ -94,4 +95,53 @@ public class ShardUpsertRequestTest extends CrateUnitTest {
         assertThat(request, equalTo(request2));
     }
 
+    @Test
+    public void testStreamingOfAppendOnlyRequest() throws Exception {
+        ShardId shardId = new ShardId("test", UUIDs.randomBase64UUID(), 1);
+        ShardUpsertRequest request = new ShardUpsertRequest.Builder(
+            DuplicateKeyAction.UPDATE_OR_FAIL,
+            true,
+            null,
+            new Reference[]{ID_REF, NAME_REF},
+            UUID.randomUUID(),
+            false
+        ).appendOnly().newRequest(shardId);
+        request.add(0, new ShardUpsertRequest.Item("AWH4", null, new Object[]{1, new BytesRef("Arthur")}, null));
+        assertThat(request.isAppendOnly(), is(true));
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        request.writeTo(out);
+
+        StreamInput in = out.bytes().streamInput();
+        ShardUpsertRequest request2 = new ShardUpsertRequest();
+        request2.readFrom(in);
+
+        assertThat(request2.autoGeneratedTimestamp(), is(request.autoGeneratedTimestamp()));
+        assertThat(request, equalTo(request2));
+    }
+
+    @Test
+    public void testStreamingOfRetriedRequest() throws Exception {
+        ShardId shardId = new ShardId("test", UUIDs.randomBase64UUID(), 1);
+        ShardUpsertRequest request = new ShardUpsertRequest.Builder(
+            DuplicateKeyAction.UPDATE_OR_FAIL,
+            true,
+            null,
+            new Reference[]{ID_REF, NAME_REF},
+            UUID.randomUUID(),
+            false
+        ).appendOnly().newRequest(shardId);
+        request.add(0, new ShardUpsertRequest.Item("AWH4", null, new Object[]{1, new BytesRef("Arthur")}, null));
+        request.onRetry();
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        request.writeTo(out);
+
+        StreamInput in = out.bytes().streamInput();
+        ShardUpsertRequest request2 = new ShardUpsertRequest();
+        request2.readFrom(in);
+
+        assertThat(request2.isRetry(), is(true));
+        assertThat(request2.autoGeneratedTimestamp(), is(request.autoGeneratedTimestamp()));
+    }
 }
@@ -27,7 +27,6 @@ import io.crate.execution.ddl.SchemaUpdateClient;
 import io.crate.execution.dml.ShardResponse;
 import io.crate.execution.dml.upsert.ShardUpsertRequest.DuplicateKeyAction;
 import io.crate.execution.jobs.TasksService;
-import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.Functions;
 import io.crate.metadata.PartitionName;
 import io.crate.metadata.Reference;
@@ -53,12 +52,18 @@ import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.MapBuilder;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.engine.VersionConflictEngineException;
 import org.elasticsearch.index.mapper.ContentPath;
 import org.elasticsearch.index.mapper.Mapper;
@@ -75,9 +80,9 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -135,7 +140,7 @@ public class TransportShardUpsertActionTest extends CrateDummyClusterServiceUnit
                                               ShardUpsertRequest.Item item,
                                               IndexShard indexShard,
                                               boolean tryInsertFirst,
-                                              Collection<ColumnIdent> notUsedNonGeneratedColumns,
+                                              InsertSourceGen insertSourceGen,
                                               boolean isRetry) throws ElasticsearchException {
             throw new VersionConflictEngineException(
                 indexShard.shardId(),
@@ -448,6 +453,48 @@ public class TransportShardUpsertActionTest extends CrateDummyClusterServiceUnit
         TransportShardUpsertAction.updateSourceByPaths(source, changes);
     }
 
+    @Test
+    public void testPatchSourceCopiesUnchangedFieldsAndAppendsNewFields() throws Exception {
+        BytesReference source = new BytesArray("{\"a\":1,\"b\":[1,2],\"c\":{\"x\":\"foo\"},\"d\":null}");
+
+        Map<String, Object> changes = new LinkedHashMap<>();
+        changes.put("a", 10);
+        changes.put("e", "bar");
+
+        BytesReference patched = TransportShardUpsertAction.patchSource(source, changes);
+        assertThat(patched.utf8ToString(),
+            is("{\"a\":10,\"b\":[1,2],\"c\":{\"x\":\"foo\"},\"d\":null,\"e\":\"bar\"}"));
+    }
+
+    @Test
+    public void testPatchSourceUpdatesNestedPaths() throws Exception {
+        BytesReference source = new BytesArray("{\"o\":{\"x\":1,\"y\":{\"z\":2}},\"a\":3}");
+
+        Map<String, Object> changes = new LinkedHashMap<>();
+        changes.put("o.x", 10);
+        changes.put("o.y.z", 20);
+        changes.put("n.m", "new");
+
+        Map<String, Object> patched = XContentHelper.convertToMap(
+            TransportShardUpsertAction.patchSource(source, changes), false, XContentType.JSON).v2();
+        assertThat(patched.get("a"), is(3));
+        assertThat(XContentMapValues.extractValue("o.x", patched), is(10));
+        assertThat(XContentMapValues.extractValue("o.y.z", patched), is(20));
+        assertThat(XContentMapValues.extractValue("n.m", patched), is("new"));
+    }
+
+    @Test
+    public void testPatchSourceUpdateNullObject() throws Exception {
+        BytesReference source = new BytesArray("{\"o\":null}");
+
+        Map<String, Object> changes = new HashMap<>();
+        changes.put("o.o", 5);
+
+        expectedException.expect(NullPointerException.class);
+        expectedException.expectMessage("Object o is null, cannot write {o=5} onto it");
+        TransportShardUpsertAction.patchSource(source, changes);
+    }
+
     @Test
     public void testKilledSetWhileProcessingItemsDoesNotThrowException() throws Exception {
         ShardId shardId = new ShardId(TABLE_IDENT.indexName(), charactersIndexUUID, 0);
@@ -488,4 +535,30 @@ public class TransportShardUpsertActionTest extends CrateDummyClusterServiceUnit
             anyLong(), anyLong(), any(VersionType.class), anyLong(), anyBoolean(), any(SourceToParse.class),
             any(Consumer.class));
     }
+
+    @Test
+    public void testAppendOnlyItemsArePassedWithAutoGeneratedTimestampToReplica() throws Exception {
+        ShardId shardId = new ShardId(TABLE_IDENT.indexName(), charactersIndexUUID, 0);
+        ShardUpsertRequest request = new ShardUpsertRequest.Builder(
+            DuplicateKeyAction.UPDATE_OR_FAIL,
+            true,
+            null,
+            new Reference[]{ID_REF},
+            UUID.randomUUID(),
+            false
+        ).appendOnly().newRequest(shardId);
+        ShardUpsertRequest.Item item = new ShardUpsertRequest.Item("AWH4", null, new Object[]{1}, null);
+        item.source(XContentFactory.jsonBuilder().startObject().field("id", 1).endObject().bytes());
+        request.add(1, item);
+
+        reset(indexShard);
+        when(indexShard.applyIndexOperationOnReplica(
+            anyLong(), anyLong(), any(VersionType.class), anyLong(), anyBoolean(), any(SourceToParse.class),
+            any(Consumer.class))).thenReturn(mock(Engine.IndexResult.class));
+
+        transportShardUpsertAction.processRequestItemsOnReplica(indexShard, request);
+        verify(indexShard, times(1)).applyIndexOperationOnReplica(
+            anyLong(), anyLong(), eq(VersionType.EXTERNAL), eq(request.autoGeneratedTimestamp()), eq(false),
+            any(SourceToParse.class), any(Consumer.class));
+    }
 }
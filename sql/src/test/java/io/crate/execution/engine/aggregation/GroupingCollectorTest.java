@@ -0,0 +1,218 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.aggregation;
+
+import io.crate.breaker.RamAccountingContext;
+import io.crate.data.BatchIterators;
+import io.crate.data.InMemoryBatchIterator;
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.execution.engine.aggregation.impl.SumAggregation;
+import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.execution.engine.collect.InputCollectExpression;
+import io.crate.expression.symbol.AggregateMode;
+import io.crate.metadata.Functions;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.util.BigArrays;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static io.crate.data.SentinelRow.SENTINEL;
+import static io.crate.testing.TestingHelpers.getFunctions;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+public class GroupingCollectorTest extends CrateUnitTest {
+
+    private Functions functions;
+    private RamAccountingContext ramAccountingContext;
+
+    @Before
+    public void prepare() throws Exception {
+        functions = getFunctions();
+        ramAccountingContext = new RamAccountingContext("dummy", new NoopCircuitBreaker(CircuitBreaker.FIELDDATA));
+    }
+
+    /**
+     * Creates a collector which groups by the first {@code keyTypes.size()} columns and sums up the last column.
+     */
+    private AbstractGroupingCollector<?> createSumCollector(List<? extends DataType> keyTypes) {
+        List<Input<?>> keyInputs = new ArrayList<>(keyTypes.size());
+        CollectExpression[] expressions = new CollectExpression[keyTypes.size() + 1];
+        for (int i = 0; i < keyTypes.size(); i++) {
+            InputCollectExpression keyInput = new InputCollectExpression(i);
+            keyInputs.add(keyInput);
+            expressions[i] = keyInput;
+        }
+        InputCollectExpression valueInput = new InputCollectExpression(keyTypes.size());
+        expressions[keyTypes.size()] = valueInput;
+        AggregationFunction sum =
+            (AggregationFunction) functions.getBuiltin(SumAggregation.NAME, Collections.singletonList(DataTypes.LONG));
+
+        AggregationFunction[] aggregations = new AggregationFunction[]{sum};
+        Input[][] inputs = new Input[][]{new Input[]{valueInput}};
+        if (LongKeyGroupingCollector.canEncode(keyTypes)) {
+            return LongKeyGroupingCollector.create(expressions, AggregateMode.ITER_FINAL, aggregations, inputs,
+                ramAccountingContext, keyInputs, keyTypes, Version.CURRENT, BigArrays.NON_RECYCLING_INSTANCE);
+        }
+        if (keyTypes.size() == 1 && BytesRefKeyGroupingCollector.supports(keyTypes.get(0))) {
+            return BytesRefKeyGroupingCollector.create(expressions, AggregateMode.ITER_FINAL, aggregations, inputs,
+                ramAccountingContext, keyInputs.get(0), Version.CURRENT, BigArrays.NON_RECYCLING_INSTANCE);
+        }
+        return GroupingCollector.manyKeys(expressions, AggregateMode.ITER_FINAL, aggregations, inputs,
+            ramAccountingContext, keyInputs, keyTypes, Version.CURRENT, BigArrays.NON_RECYCLING_INSTANCE);
+    }
+
+    private static List<Object[]> collect(AbstractGroupingCollector<?> collector, Object[]... rows) throws Exception {
+        List<Row> sourceRows = new ArrayList<>(rows.length);
+        for (Object[] row : rows) {
+            sourceRows.add(new RowN(row));
+        }
+        Iterable<Row> result = BatchIterators.collect(InMemoryBatchIterator.of(sourceRows, SENTINEL), collector).get();
+        List<Object[]> materialized = new ArrayList<>();
+        for (Row row : result) {
+            materialized.add(row.materialize());
+        }
+        return materialized;
+    }
+
+    @Test
+    public void testSingleLongKeyIsGroupedWithLongKeyCollector() throws Exception {
+        AbstractGroupingCollector<?> collector = createSumCollector(Collections.singletonList(DataTypes.LONG));
+        assertThat(collector, instanceOf(LongKeyGroupingCollector.class));
+
+        List<Object[]> result = collect(collector,
+            new Object[]{1L, 10L},
+            new Object[]{Long.MIN_VALUE, 1L},
+            new Object[]{null, 5L},
+            new Object[]{1L, 20L},
+            new Object[]{null, 5L},
+            new Object[]{0L, 3L});
+        assertThat(result, containsInAnyOrder(
+            new Object[]{1L, 30L},
+            new Object[]{Long.MIN_VALUE, 1L},
+            new Object[]{0L, 3L},
+            new Object[]{null, 10L}));
+    }
+
+    @Test
+    public void testSingleDoubleKeyIsDecodedToDouble() throws Exception {
+        AbstractGroupingCollector<?> collector = createSumCollector(Collections.singletonList(DataTypes.DOUBLE));
+        List<Object[]> result = collect(collector,
+            new Object[]{1.5d, 1L},
+            new Object[]{-0.25d, 2L},
+            new Object[]{1.5d, 3L});
+        assertThat(result, containsInAnyOrder(
+            new Object[]{1.5d, 4L},
+            new Object[]{-0.25d, 2L}));
+    }
+
+    @Test
+    public void testSingleBooleanKey() throws Exception {
+        AbstractGroupingCollector<?> collector = createSumCollector(Collections.singletonList(DataTypes.BOOLEAN));
+        List<Object[]> result = collect(collector,
+            new Object[]{true, 1L},
+            new Object[]{false, 2L},
+            new Object[]{true, 3L});
+        assertThat(result, containsInAnyOrder(
+            new Object[]{true, 4L},
+            new Object[]{false, 2L}));
+    }
+
+    @Test
+    public void testCompositeKeysArePackedIntoLong() throws Exception {
+        List<DataType> keyTypes = Arrays.asList(DataTypes.INTEGER, DataTypes.SHORT, DataTypes.BOOLEAN);
+        AbstractGroupingCollector<?> collector = createSumCollector(keyTypes);
+        assertThat(collector, instanceOf(LongKeyGroupingCollector.class));
+
+        List<Object[]> result = collect(collector,
+            new Object[]{Integer.MIN_VALUE, (short) -1, true, 1L},
+            new Object[]{Integer.MAX_VALUE, Short.MAX_VALUE, false, 2L},
+            new Object[]{null, (short) 0, null, 4L},
+            new Object[]{Integer.MIN_VALUE, (short) -1, true, 8L},
+            new Object[]{0, null, false, 16L});
+        assertThat(result, containsInAnyOrder(
+            new Object[]{Integer.MIN_VALUE, (short) -1, true, 9L},
+            new Object[]{Integer.MAX_VALUE, Short.MAX_VALUE, false, 2L},
+            new Object[]{null, (short) 0, null, 4L},
+            new Object[]{0, null, false, 16L}));
+    }
+
+    @Test
+    public void testCompositeKeysWhichDoNotFitIntoLongUseGenericCollector() throws Exception {
+        List<DataType> keyTypes = Arrays.asList(DataTypes.INTEGER, DataTypes.INTEGER);
+        assertThat(LongKeyGroupingCollector.canEncode(keyTypes), is(false));
+        assertThat(LongKeyGroupingCollector.canEncode(Arrays.asList(DataTypes.LONG, DataTypes.BYTE)), is(false));
+
+        AbstractGroupingCollector<?> collector = createSumCollector(keyTypes);
+        assertThat(collector, instanceOf(GroupingCollector.class));
+    }
+
+    @Test
+    public void testBytesRefKeyIsGroupedWithBytesRefKeyCollector() throws Exception {
+        AbstractGroupingCollector<?> collector = createSumCollector(Collections.singletonList(DataTypes.STRING));
+        assertThat(collector, instanceOf(BytesRefKeyGroupingCollector.class));
+
+        List<Object[]> result = collect(collector,
+            new Object[]{new BytesRef("foo"), 1L},
+            new Object[]{new BytesRef(""), 2L},
+            new Object[]{null, 4L},
+            new Object[]{new BytesRef("bar"), 8L},
+            new Object[]{new BytesRef("foo"), 16L});
+        assertThat(result, containsInAnyOrder(
+            new Object[]{new BytesRef("foo"), 17L},
+            new Object[]{new BytesRef(""), 2L},
+            new Object[]{new BytesRef("bar"), 8L},
+            new Object[]{null, 4L}));
+    }
+
+    @Test
+    public void testBytesRefKeyCollectorWithManyGroups() throws Exception {
+        AbstractGroupingCollector<?> collector = createSumCollector(Collections.singletonList(DataTypes.STRING));
+        int numKeys = 5_000;
+        Object[][] rows = new Object[numKeys * 2][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{new BytesRef("key-" + (i % numKeys)), 1L};
+        }
+        List<Object[]> result = collect(collector, rows);
+        assertThat(result.size(), is(numKeys));
+        for (Object[] row : result) {
+            assertThat(row[1], is(2L));
+        }
+        assertThat(ramAccountingContext.totalBytes(), greaterThan((long) numKeys * 8));
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.aggregation;
+
+import io.crate.breaker.RamAccountingContext;
+import io.crate.data.BatchIterators;
+import io.crate.data.InMemoryBatchIterator;
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.execution.engine.aggregation.impl.SumAggregation;
+import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.execution.engine.collect.InputCollectExpression;
+import io.crate.expression.symbol.AggregateMode;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.BigArrays;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.crate.data.SentinelRow.SENTINEL;
+import static io.crate.testing.TestingHelpers.getFunctions;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.hamcrest.Matchers.lessThan;
+
+public class SpillingGroupingCollectorTest extends CrateUnitTest {
+
+    private static final long LONG_KEY_SPILL_THRESHOLD = 4 * 1024;
+
+    // the key hash of the string collector starts with a full page of key bytes
+    private static final long STRING_KEY_SPILL_THRESHOLD = 32 * 1024;
+
+    private MemoryCircuitBreaker breaker;
+    private RamAccountingContext ramAccountingContext;
+    private AggregationFunction sum;
+    private Path spillPath;
+
+    @Before
+    public void prepare() throws Exception {
+        breaker = new MemoryCircuitBreaker(
+            new ByteSizeValue(1, ByteSizeUnit.MB), 1.0, Loggers.getLogger(SpillingGroupingCollectorTest.class));
+        ramAccountingContext = new RamAccountingContext("test", breaker);
+        spillPath = createTempDir();
+        sum = (AggregationFunction) getFunctions().getBuiltin(
+            SumAggregation.NAME, Collections.singletonList(DataTypes.LONG));
+    }
+
+    private SpillingGroupingCollector<?> createSpillingSumCollector(DataType keyType, long spillThreshold) {
+        InputCollectExpression keyInput = new InputCollectExpression(0);
+        InputCollectExpression valueInput = new InputCollectExpression(1);
+        CollectExpression[] expressions = new CollectExpression[]{keyInput, valueInput};
+        AggregationFunction[] aggregations = new AggregationFunction[]{sum};
+        Input[][] inputs = new Input[][]{new Input[]{valueInput}};
+
+        AbstractGroupingCollector<?> delegate;
+        if (keyType.equals(DataTypes.STRING)) {
+            delegate = BytesRefKeyGroupingCollector.create(expressions, AggregateMode.ITER_FINAL, aggregations, inputs,
+                ramAccountingContext, keyInput, Version.CURRENT, BigArrays.NON_RECYCLING_INSTANCE);
+        } else {
+            delegate = LongKeyGroupingCollector.create(expressions, AggregateMode.ITER_FINAL, aggregations, inputs,
+                ramAccountingContext, Collections.<Input<?>>singletonList(keyInput), Collections.singletonList(keyType),
+                Version.CURRENT, BigArrays.NON_RECYCLING_INSTANCE);
+        }
+        return new SpillingGroupingCollector<>(delegate, Collections.singletonList(keyType), spillThreshold, spillPath);
+    }
+
+    private static Map<Object, Object> collect(SpillingGroupingCollector<?> collector, List<Row> rows) throws Exception {
+        Iterable<Row> result = BatchIterators.collect(InMemoryBatchIterator.of(rows, SENTINEL), collector).get();
+        Map<Object, Object> sumByKey = new HashMap<>();
+        for (Row row : result) {
+            assertThat("every key must be emitted once", sumByKey.put(row.get(0), row.get(1)) == null, is(true));
+        }
+        return sumByKey;
+    }
+
+    @Test
+    public void testGroupsAreSpilledAndMergedWithLongKeys() throws Exception {
+        int numKeys = 2_000;
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < numKeys * 5; i++) {
+            rows.add(new RowN(new Object[]{(long) (i % numKeys), 1L}));
+        }
+        rows.add(new RowN(new Object[]{null, 3L}));
+
+        SpillingGroupingCollector<?> collector = createSpillingSumCollector(DataTypes.LONG, LONG_KEY_SPILL_THRESHOLD);
+        Map<Object, Object> sumByKey = collect(collector, rows);
+
+        assertThat(sumByKey.size(), is(numKeys + 1));
+        for (long key = 0; key < numKeys; key++) {
+            assertThat(sumByKey.get(key), is(5L));
+        }
+        assertThat(sumByKey.get(null), is(3L));
+        assertThat(ramAccountingContext.totalBytes(), lessThan(LONG_KEY_SPILL_THRESHOLD));
+        collector.deleteSpillFiles();
+    }
+
+    @Test
+    public void testGroupsAreSpilledAndMergedWithStringKeys() throws Exception {
+        int numKeys = 5_000;
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < numKeys * 3; i++) {
+            rows.add(new RowN(new Object[]{new BytesRef("key-" + (i % numKeys)), 2L}));
+        }
+
+        SpillingGroupingCollector<?> collector = createSpillingSumCollector(DataTypes.STRING, STRING_KEY_SPILL_THRESHOLD);
+        Map<Object, Object> sumByKey = collect(collector, rows);
+
+        assertThat(sumByKey.size(), is(numKeys));
+        for (int i = 0; i < numKeys; i++) {
+            assertThat(sumByKey.get(new BytesRef("key-" + i)), is(6L));
+        }
+        assertThat(ramAccountingContext.totalBytes(), lessThan(STRING_KEY_SPILL_THRESHOLD));
+        collector.deleteSpillFiles();
+    }
+
+    @Test
+    public void testMergedRowsCanBeIteratedAgainUntilSpillFilesAreDeleted() throws Exception {
+        int numKeys = 2_000;
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < numKeys * 2; i++) {
+            rows.add(new RowN(new Object[]{(long) (i % numKeys), 1L}));
+        }
+        SpillingGroupingCollector<?> collector = createSpillingSumCollector(DataTypes.LONG, LONG_KEY_SPILL_THRESHOLD);
+        Iterable<Row> result = BatchIterators.collect(InMemoryBatchIterator.of(rows, SENTINEL), collector).get();
+
+        int numRows = 0;
+        for (Row row : result) {
+            assertThat(row.get(1), is(2L));
+            numRows++;
+        }
+        assertThat(numRows, is(numKeys));
+        int numRowsSecondRun = 0;
+        for (Row ignored : result) {
+            numRowsSecondRun++;
+        }
+        assertThat(numRowsSecondRun, is(numKeys));
+        collector.deleteSpillFiles();
+    }
+
+    @Test
+    public void testNothingIsSpilledBelowThreshold() throws Exception {
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            rows.add(new RowN(new Object[]{(long) (i % 3), 1L}));
+        }
+        SpillingGroupingCollector<?> collector = createSpillingSumCollector(DataTypes.LONG, LONG_KEY_SPILL_THRESHOLD);
+        Map<Object, Object> sumByKey = collect(collector, rows);
+
+        assertThat(sumByKey.size(), is(3));
+        assertThat(sumByKey.get(0L), is(334L));
+    }
+
+    @Test
+    public void testSpillFilesAreWrittenToTheSpillPath() throws Exception {
+        SpillingGroupingCollector<?> collector = createSpillingSumCollector(DataTypes.LONG, LONG_KEY_SPILL_THRESHOLD);
+        collect(collector, longKeyRows(2_000, 2));
+
+        List<String> spillDirectories = list(spillPath);
+        assertThat(spillDirectories.size(), is(1));
+        assertThat(spillDirectories.get(0), startsWith("crate-group-by-"));
+
+        collector.deleteSpillFiles();
+        assertThat(list(spillPath), empty());
+    }
+
+    @Test
+    public void testPartitionWhichExceedsTheThresholdIsSplitWhileMerging() throws Exception {
+        // each of the 16 partitions has ~500 groups, which don't fit into the threshold once merged
+        int numKeys = 8_000;
+        SpillingGroupingCollector<?> collector = createSpillingSumCollector(DataTypes.LONG, LONG_KEY_SPILL_THRESHOLD);
+        Map<Object, Object> sumByKey = collect(collector, longKeyRows(numKeys, 2));
+
+        assertThat(sumByKey.size(), is(numKeys));
+        for (long key = 0; key < numKeys; key++) {
+            assertThat(sumByKey.get(key), is(2L));
+        }
+        List<String> spillFiles = list(spillPath.resolve(list(spillPath).get(0)));
+        assertThat(spillFiles, hasItem("partition-0-0"));
+        assertThat(ramAccountingContext.totalBytes(), lessThan(LONG_KEY_SPILL_THRESHOLD));
+        collector.deleteSpillFiles();
+    }
+
+    @Test
+    public void testGroupsAreSpilledIfTheBreakerIsNearItsLimit() throws Exception {
+        long spillThreshold = 512 * 1024;
+        SpillingGroupingCollector<?> collector = createSpillingSumCollector(DataTypes.LONG, spillThreshold);
+        collect(collector, longKeyRows(2_000, 2));
+        assertThat("groups are below the threshold", list(spillPath), empty());
+
+        // other operations use most of the memory
+        breaker.addWithoutBreaking(950 * 1024);
+        collector = createSpillingSumCollector(DataTypes.LONG, spillThreshold);
+        Map<Object, Object> sumByKey = collect(collector, longKeyRows(2_000, 2));
+
+        assertThat(sumByKey.size(), is(2_000));
+        assertThat(list(spillPath).size(), is(1));
+        collector.deleteSpillFiles();
+    }
+
+    private static List<Row> longKeyRows(int numKeys, int rowsPerKey) {
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < numKeys * rowsPerKey; i++) {
+            rows.add(new RowN(new Object[]{(long) (i % numKeys), 1L}));
+        }
+        return rows;
+    }
+
+    private static List<String> list(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .map(file -> file.getFileName().toString())
+                // the test file system adds extra files to new directories
+                .filter(name -> name.startsWith("extra") == false)
+                .collect(Collectors.toList());
+        }
+    }
+}
@@ -103,7 +103,7 @@ public class BlobShardCollectorProviderTest extends SQLHttpIntegrationTest {
                 BlobIndicesService blobIndicesService = internalCluster().getDataNodeInstance(BlobIndicesService.class);
                 BlobShard blobShard = blobIndicesService.blobShard(new ShardId(".blob_b1", indexUUID, 0));
                 assertNotNull(blobShard);
-                collectorProvider = new BlobShardCollectorProvider(blobShard, clusterService, null, null, null, null, null,
+                collectorProvider = new BlobShardCollectorProvider(blobShard, clusterService, null, null, null, null, null, null,
                     BigArrays.NON_RECYCLING_INSTANCE);
                 assertNotNull(collectorProvider);
             } catch (Exception e) {
@@ -0,0 +1,111 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.collectors;
+
+import io.crate.test.integration.CrateUnitTest;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+
+public class LeafPartitionerTest extends CrateUnitTest {
+
+    private DirectoryReader reader;
+
+    @Before
+    public void createSegments() throws Exception {
+        IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+        config.setMergePolicy(NoMergePolicy.INSTANCE);
+        IndexWriter iw = new IndexWriter(new RAMDirectory(), config);
+        // segments with 50, 40, 30, 20 and 10 documents
+        for (int segment = 5; segment > 0; segment--) {
+            for (int i = 0; i < segment * 10; i++) {
+                Document doc = new Document();
+                doc.add(new NumericDocValuesField("x", i));
+                iw.addDocument(doc);
+            }
+            iw.commit();
+        }
+        reader = DirectoryReader.open(iw);
+        iw.close();
+    }
+
+    @After
+    public void closeReader() throws Exception {
+        reader.close();
+    }
+
+    @Test
+    public void testLeavesAreDistributedByNumberOfDocs() {
+        List<LeafReaderContext> leaves = reader.leaves();
+        assertThat(leaves.size(), is(5));
+
+        List<List<LeafReaderContext>> partitions = LeafPartitioner.partition(leaves, 2, 10);
+        assertThat(partitions.size(), is(2));
+        // 50 + 20 + 10 and 40 + 30
+        assertThat(numDocs(partitions.get(0)), is(80));
+        assertThat(numDocs(partitions.get(1)), is(70));
+
+        Set<LeafReaderContext> allLeaves = new HashSet<>();
+        for (List<LeafReaderContext> partition : partitions) {
+            allLeaves.addAll(partition);
+        }
+        assertThat(allLeaves, containsInAnyOrder(leaves.toArray()));
+    }
+
+    @Test
+    public void testNumberOfPartitionsIsLimitedByNumberOfLeaves() {
+        List<List<LeafReaderContext>> partitions = LeafPartitioner.partition(reader.leaves(), 8, 1);
+        assertThat(partitions.size(), is(5));
+    }
+
+    @Test
+    public void testSmallShardIsNotSplit() {
+        List<List<LeafReaderContext>> partitions = LeafPartitioner.partition(reader.leaves(), 4, 100);
+        assertThat(partitions.size(), is(1));
+        assertThat(partitions.get(0), is(reader.leaves()));
+    }
+
+    private static int numDocs(List<LeafReaderContext> leaves) {
+        int numDocs = 0;
+        for (LeafReaderContext leaf : leaves) {
+            numDocs += leaf.reader().numDocs();
+        }
+        return numDocs;
+    }
+}
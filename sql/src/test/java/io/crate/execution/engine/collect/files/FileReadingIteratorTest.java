@@ -22,6 +22,7 @@
 
 package io.crate.execution.engine.collect.files;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import io.crate.data.BatchIterator;
 import io.crate.data.Input;
@@ -36,29 +37,43 @@ import io.crate.expression.InputFactory;
 import io.crate.expression.reference.file.FileLineReferenceResolver;
 import io.crate.test.integration.CrateUnitTest;
 import io.crate.testing.BatchIteratorTester;
+import io.crate.testing.TestingRowConsumer;
 import io.crate.types.DataTypes;
+import net.jpountz.lz4.LZ4FrameOutputStream;
 import org.apache.lucene.util.BytesRef;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.net.SocketTimeoutException;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
 
 import static io.crate.execution.dsl.phases.FileUriCollectPhase.InputFormat.CSV;
 import static io.crate.execution.dsl.phases.FileUriCollectPhase.InputFormat.JSON;
 import static io.crate.testing.TestingHelpers.createReference;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
 
 public class FileReadingIteratorTest extends CrateUnitTest {
 
     private InputFactory inputFactory;
+    private InputFactory.Context<LineCollectorExpression<?>> rawCtx;
     private Path tempFilePath;
     private String fileUri;
     private File tmpFile;
@@ -162,6 +177,253 @@ public class FileReadingIteratorTest extends CrateUnitTest {
         tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
     }
 
+    @Test
+    public void testLargeSharedFileIsSplitIntoOneRangePerReader() throws Exception {
+        tempFilePath = createTempFile("tempfile", ".json");
+        tmpFile = tempFilePath.toFile();
+        List<Object[]> expectedResult = new ArrayList<>();
+        try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < 50; i++) {
+                String line = "{\"id\": " + i + ", \"name\": \"" + Strings.repeat("x", i % 7) + "\"}";
+                writer.write(line + "\n");
+                expectedResult.add(new Object[]{new BytesRef(line)});
+            }
+        }
+        fileUri = tempFilePath.toUri().toString();
+
+        List<Object[]> result = new ArrayList<>();
+        for (int readerNumber = 0; readerNumber < 3; readerNumber++) {
+            List<Object[]> rows = readAsSharedFile(readerNumber, 3, 100, JSON);
+            assertThat(rows.isEmpty(), is(false));
+            result.addAll(rows);
+        }
+        assertThat(result, contains(expectedResult.toArray()));
+    }
+
+    @Test
+    public void testEveryRangeOfASplitCSVFileUsesTheHeader() throws Exception {
+        tempFilePath = createTempFile("tempfile", ".csv");
+        tmpFile = tempFilePath.toFile();
+        try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+            writer.write("name,id,age\n");
+            writer.write("Arthur,4,38\n");
+            writer.write("Trillian,5,33\n");
+        }
+        fileUri = tempFilePath.toUri().toString();
+
+        List<Object[]> result = new ArrayList<>();
+        result.addAll(readAsSharedFile(0, 2, 1, CSV));
+        List<Object[]> secondRange = readAsSharedFile(1, 2, 1, CSV);
+        assertThat(secondRange, contains(new Object[][]{new Object[]{new BytesRef(CSV_AS_MAP_SECOND_LINE)}}));
+        result.addAll(secondRange);
+
+        assertThat(result, contains(
+            new Object[]{new BytesRef(CSV_AS_MAP_FIRST_LINE)},
+            new Object[]{new BytesRef(CSV_AS_MAP_SECOND_LINE)}));
+    }
+
+    @Test
+    public void testSmallSharedFileIsReadByASingleReader() throws Exception {
+        tempFilePath = createTempFile("tempfile", ".json");
+        tmpFile = tempFilePath.toFile();
+        try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+            writer.write("{\"name\": \"Arthur\", \"id\": 4, \"details\": {\"age\": 38}}\n");
+            writer.write("{\"id\": 5, \"name\": \"Trillian\", \"details\": {\"age\": 33}}\n");
+        }
+        fileUri = tempFilePath.toUri().toString();
+
+        int numReadersWithRows = 0;
+        for (int readerNumber = 0; readerNumber < 3; readerNumber++) {
+            List<Object[]> rows = readAsSharedFile(readerNumber, 3, FileReadingIterator.MIN_BYTES_PER_RANGE, JSON);
+            if (rows.isEmpty() == false) {
+                assertThat(rows.size(), is(2));
+                numReadersWithRows++;
+            }
+        }
+        assertThat(numReadersWithRows, is(1));
+    }
+
+    private void writeCompressedJsonLines(OutputStream compressedOut) throws Exception {
+        try (OutputStreamWriter writer = new OutputStreamWriter(compressedOut, StandardCharsets.UTF_8)) {
+            writer.write("{\"name\": \"Arthur\", \"id\": 4, \"details\": {\"age\": 38}}\n");
+            writer.write("{\"id\": 5, \"name\": \"Trillian\", \"details\": {\"age\": 33}}\n");
+        }
+    }
+
+    @Test
+    public void testLz4CompressionIsDetectedByFileExtension() throws Exception {
+        tempFilePath = createTempFile("tempfile", ".json.lz4");
+        writeCompressedJsonLines(new LZ4FrameOutputStream(new FileOutputStream(tempFilePath.toFile())));
+        fileUri = tempFilePath.toUri().toString();
+
+        Supplier<BatchIterator<Row>> batchIteratorSupplier = () -> createBatchIterator(
+            Collections.singletonList(fileUri), "auto", JSON
+        );
+
+        List<Object[]> expectedResult = Arrays.asList(
+            new Object[]{new BytesRef(JSON_AS_MAP_FIRST_LINE)},
+            new Object[]{new BytesRef(JSON_AS_MAP_SECOND_LINE)});
+        BatchIteratorTester tester = new BatchIteratorTester(batchIteratorSupplier);
+        tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
+    }
+
+    @Test
+    public void testCompressionIsOnlyDetectedIfEnabled() throws Exception {
+        tempFilePath = createTempFile("tempfile", ".json.gz");
+        tmpFile = tempFilePath.toFile();
+        try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+            writer.write("{\"name\": \"Arthur\", \"id\": 4, \"details\": {\"age\": 38}}\n");
+            writer.write("{\"id\": 5, \"name\": \"Trillian\", \"details\": {\"age\": 33}}\n");
+        }
+        fileUri = tempFilePath.toUri().toString();
+
+        Supplier<BatchIterator<Row>> batchIteratorSupplier = () -> createBatchIterator(
+            Collections.singletonList(fileUri), null, JSON
+        );
+
+        List<Object[]> expectedResult = Arrays.asList(
+            new Object[]{new BytesRef(JSON_AS_MAP_FIRST_LINE)},
+            new Object[]{new BytesRef(JSON_AS_MAP_SECOND_LINE)});
+        BatchIteratorTester tester = new BatchIteratorTester(batchIteratorSupplier);
+        tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
+    }
+
+    @Test
+    public void testCompressedSharedFileIsDetectedByMagicBytesAndNotSplit() throws Exception {
+        tempFilePath = createTempFile("tempfile", ".json");
+        writeCompressedJsonLines(new GZIPOutputStream(new FileOutputStream(tempFilePath.toFile())));
+        fileUri = tempFilePath.toUri().toString();
+
+        int numReadersWithRows = 0;
+        for (int readerNumber = 0; readerNumber < 3; readerNumber++) {
+            // a minimum of one byte per range would split the file if it weren't compressed
+            List<Object[]> rows = readAsSharedFile(readerNumber, 3, 1, JSON, "auto", new LocalFsFileInputFactory());
+            if (rows.isEmpty() == false) {
+                assertThat(rows, contains(
+                    new Object[]{new BytesRef(JSON_AS_MAP_FIRST_LINE)},
+                    new Object[]{new BytesRef(JSON_AS_MAP_SECOND_LINE)}));
+                numReadersWithRows++;
+            }
+        }
+        assertThat(numReadersWithRows, is(1));
+    }
+
+    @Test
+    public void testStartOfASplitFileIsOnlyOpenedOnceToDetectTheCompression() throws Exception {
+        tempFilePath = createTempFile("tempfile", ".json");
+        tmpFile = tempFilePath.toFile();
+        List<Object[]> expectedResult = new ArrayList<>();
+        try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < 50; i++) {
+                String line = "{\"id\": " + i + "}";
+                writer.write(line + "\n");
+                expectedResult.add(new Object[]{new BytesRef(line)});
+            }
+        }
+        fileUri = tempFilePath.toUri().toString();
+
+        List<Object[]> result = new ArrayList<>();
+        for (int readerNumber = 0; readerNumber < 3; readerNumber++) {
+            List<Integer> openedOffsets = new ArrayList<>();
+            FileInputFactory countingFactory = () -> new LocalFsFileInput() {
+                @Override
+                public InputStream getStream(URI uri) {
+                    openedOffsets.add(0);
+                    return super.getStream(uri);
+                }
+
+                @Override
+                public InputStream getStream(URI uri, long offset) throws IOException {
+                    openedOffsets.add((int) offset);
+                    return super.getStream(uri, offset);
+                }
+            };
+            List<Object[]> rows = readAsSharedFile(readerNumber, 3, 100, JSON, "auto", countingFactory);
+            assertThat(rows.isEmpty(), is(false));
+            result.addAll(rows);
+
+            // the first range is read from the stream which was opened to detect the compression
+            assertThat(Collections.frequency(openedOffsets, 0), is(1));
+            assertThat(openedOffsets.size(), is(readerNumber == 0 ? 1 : 2));
+        }
+        assertThat(result, contains(expectedResult.toArray()));
+    }
+
+    @Test
+    public void testDetectedCompressionIsKeptWhenRetryingAfterSocketTimeout() throws Exception {
+        tempFilePath = createTempFile("tempfile", ".json");
+        writeCompressedJsonLines(new GZIPOutputStream(new FileOutputStream(tempFilePath.toFile())));
+        fileUri = tempFilePath.toUri().toString();
+
+        AtomicInteger numStreams = new AtomicInteger(0);
+        FileInputFactory timingOutOnce = () -> new LocalFsFileInput() {
+            @Override
+            public InputStream getStream(URI uri) {
+                InputStream stream = super.getStream(uri);
+                if (numStreams.getAndIncrement() > 0) {
+                    return stream;
+                }
+                // the first stream times out after the magic bytes and the start of the compressed data were read
+                return new FilterInputStream(stream) {
+                    private int remaining = 30;
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        if (remaining == 0) {
+                            throw new SocketTimeoutException("Read timed out");
+                        }
+                        int n = super.read(b, off, Math.min(len, remaining));
+                        if (n > 0) {
+                            remaining -= n;
+                        }
+                        return n;
+                    }
+                };
+            }
+        };
+        List<Object[]> rows = readAsSharedFile(0, 1, FileReadingIterator.MIN_BYTES_PER_RANGE, JSON, "auto", timingOutOnce);
+
+        assertThat(numStreams.get(), is(2));
+        assertThat(rows, contains(
+            new Object[]{new BytesRef(JSON_AS_MAP_FIRST_LINE)},
+            new Object[]{new BytesRef(JSON_AS_MAP_SECOND_LINE)}));
+    }
+
+    private List<Object[]> readAsSharedFile(int readerNumber,
+                                            int numReaders,
+                                            long minBytesPerRange,
+                                            FileUriCollectPhase.InputFormat format) throws Exception {
+        return readAsSharedFile(readerNumber, numReaders, minBytesPerRange, format, null, new LocalFsFileInputFactory());
+    }
+
+    private List<Object[]> readAsSharedFile(int readerNumber,
+                                            int numReaders,
+                                            long minBytesPerRange,
+                                            FileUriCollectPhase.InputFormat format,
+                                            String compression,
+                                            FileInputFactory fileInputFactory) throws Exception {
+        BatchIterator<Row> iterator = FileReadingIterator.newInstance(
+            Collections.singletonList(fileUri),
+            rawInputs(),
+            rawCtx.expressions(),
+            compression,
+            ImmutableMap.of(LocalFsFileInputFactory.NAME, fileInputFactory),
+            true,
+            numReaders,
+            readerNumber,
+            format,
+            minBytesPerRange);
+        TestingRowConsumer consumer = new TestingRowConsumer();
+        consumer.accept(iterator, null);
+        return consumer.getResult();
+    }
+
+    private List<Input<?>> rawInputs() {
+        Reference raw = createReference("_raw", DataTypes.STRING);
+        rawCtx = inputFactory.ctxForRefs(FileLineReferenceResolver::getImplementation);
+        return Collections.singletonList(rawCtx.add(raw));
+    }
+
     private BatchIterator<Row> createBatchIterator(Collection<String> fileUris, String compression, FileUriCollectPhase.InputFormat format) {
         Reference raw = createReference("_raw", DataTypes.STRING);
         InputFactory.Context<LineCollectorExpression<?>> ctx =
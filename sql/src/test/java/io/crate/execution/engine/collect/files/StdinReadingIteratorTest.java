@@ -0,0 +1,210 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.files;
+
+import com.google.common.collect.ImmutableMap;
+import io.crate.data.BatchIterator;
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.exceptions.UnsupportedFeatureException;
+import io.crate.execution.dsl.phases.FileUriCollectPhase;
+import io.crate.expression.InputFactory;
+import io.crate.expression.reference.file.FileLineReferenceResolver;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionImplementation;
+import io.crate.metadata.FunctionResolver;
+import io.crate.metadata.Functions;
+import io.crate.metadata.Reference;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.testing.TestingRowConsumer;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static io.crate.execution.dsl.phases.FileUriCollectPhase.InputFormat.JSON;
+import static io.crate.execution.dsl.phases.FileUriCollectPhase.InputFormat.TEXT;
+import static io.crate.testing.TestingHelpers.createReference;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+public class StdinReadingIteratorTest extends CrateUnitTest {
+
+    private final StdinStreams stdinStreams = new StdinStreams();
+    private final URI uri = StdinStreams.newUri();
+    private final ChunkedStdinStream stream = new ChunkedStdinStream();
+    private InputFactory inputFactory;
+
+    @Before
+    public void prepare() {
+        Functions functions = new Functions(
+            ImmutableMap.<FunctionIdent, FunctionImplementation>of(),
+            ImmutableMap.<String, FunctionResolver>of()
+        );
+        inputFactory = new InputFactory(functions);
+        stdinStreams.register(uri, stream);
+    }
+
+    @Test
+    public void testRowsAreReadOnceTheirLineHasBeenReceived() throws Exception {
+        TestingRowConsumer consumer = new TestingRowConsumer();
+        consumer.accept(createBatchIterator(TEXT), null);
+
+        stream.add("name\tid\tage\nArth");
+        stream.add("ur\t4\t38\r\nTrillian\t5");
+        stream.add("\t33");
+        stream.finish();
+
+        assertThat(consumer.getResult(), contains(
+            new Object[]{new BytesRef("{\"name\":\"Arthur\",\"id\":\"4\",\"age\":\"38\"}")},
+            new Object[]{new BytesRef("{\"name\":\"Trillian\",\"id\":\"5\",\"age\":\"33\"}")}));
+    }
+
+    @Test
+    public void testReadJsonLinesWithoutHeader() throws Exception {
+        stream.add("{\"id\": 1}\n\n{\"id\": 2}\n");
+        stream.finish();
+        TestingRowConsumer consumer = new TestingRowConsumer();
+        consumer.accept(createBatchIterator(JSON), null);
+
+        assertThat(consumer.getResult(), contains(
+            new Object[]{new BytesRef("{\"id\": 1}")},
+            new Object[]{new BytesRef("{\"id\": 2}")}));
+    }
+
+    @Test
+    public void testLoadNextBatchCompletesOnceDataIsReceived() throws Exception {
+        BatchIterator<Row> iterator = createBatchIterator(JSON);
+        assertThat(iterator.moveNext(), is(false));
+        assertThat(iterator.allLoaded(), is(false));
+
+        CompletableFuture<?> load = iterator.loadNextBatch().toCompletableFuture();
+        assertThat(load.isDone(), is(false));
+
+        stream.add("{\"id\": 1}\n");
+        assertThat(load.isDone(), is(true));
+        assertThat(iterator.moveNext(), is(true));
+        iterator.close();
+    }
+
+    @Test
+    public void testKillFailsThePendingLoad() throws Exception {
+        BatchIterator<Row> iterator = createBatchIterator(JSON);
+        assertThat(iterator.moveNext(), is(false));
+        CompletableFuture<?> load = iterator.loadNextBatch().toCompletableFuture();
+
+        iterator.kill(new InterruptedException("Job killed"));
+
+        assertThat(load.isCompletedExceptionally(), is(true));
+        iterator.close();
+    }
+
+    @Test
+    public void testReadingAnUnregisteredStreamIsNotSupported() throws Exception {
+        expectedException.expect(UnsupportedFeatureException.class);
+        expectedException.expectMessage("COPY FROM STDIN is only supported by the simple query protocol");
+        StdinReadingIterator.newInstance(
+            stdinStreams,
+            StdinStreams.newUri().toString(),
+            Collections.emptyList(),
+            Collections.emptyList(),
+            JSON,
+            Runnable::run);
+    }
+
+    private BatchIterator<Row> createBatchIterator(FileUriCollectPhase.InputFormat format) {
+        Reference raw = createReference("_raw", DataTypes.STRING);
+        InputFactory.Context<LineCollectorExpression<?>> ctx =
+            inputFactory.ctxForRefs(FileLineReferenceResolver::getImplementation);
+        List<Input<?>> inputs = Collections.singletonList(ctx.add(raw));
+        return StdinReadingIterator.newInstance(stdinStreams, uri.toString(), inputs, ctx.expressions(), format, Runnable::run);
+    }
+
+    /**
+     * Receives the data in chunks, like the CopyData messages of a client.
+     */
+    private static class ChunkedStdinStream implements StdinStream {
+
+        private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+        private boolean finished = false;
+        private CompletableFuture<Void> readable;
+
+        void add(String data) {
+            CompletableFuture<Void> future;
+            synchronized (this) {
+                chunks.add(data.getBytes(StandardCharsets.UTF_8));
+                future = readable;
+                readable = null;
+            }
+            if (future != null) {
+                future.complete(null);
+            }
+        }
+
+        void finish() {
+            CompletableFuture<Void> future;
+            synchronized (this) {
+                finished = true;
+                future = readable;
+                readable = null;
+            }
+            if (future != null) {
+                future.complete(null);
+            }
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            byte[] chunk = chunks.poll();
+            if (chunk == null) {
+                return finished ? -1 : 0;
+            }
+            int n = Math.min(len, chunk.length);
+            System.arraycopy(chunk, 0, b, off, n);
+            if (n < chunk.length) {
+                byte[] rest = new byte[chunk.length - n];
+                System.arraycopy(chunk, n, rest, 0, rest.length);
+                chunks.addFirst(rest);
+            }
+            return n;
+        }
+
+        @Override
+        public synchronized CompletableFuture<?> whenReadable() {
+            if (finished || chunks.isEmpty() == false) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (readable == null) {
+                readable = new CompletableFuture<>();
+            }
+            return readable;
+        }
+    }
+}
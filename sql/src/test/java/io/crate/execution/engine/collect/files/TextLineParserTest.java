@@ -0,0 +1,101 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.files;
+
+import io.crate.test.integration.CrateUnitTest;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.is;
+
+public class TextLineParserTest extends CrateUnitTest {
+
+    private TextLineParser parser;
+
+    @Before
+    public void setup() {
+        parser = new TextLineParser();
+    }
+
+    private void parseHeader(String header) throws IOException {
+        parser.parseHeader(new BufferedReader(new StringReader(header)));
+    }
+
+    private String parse(String line) throws IOException {
+        return new String(parser.parse(line), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testParseTabSeparatedValues() throws Exception {
+        parseHeader("id\tname\n");
+        assertThat(parse("1\tArthur"), is("{\"id\":\"1\",\"name\":\"Arthur\"}"));
+    }
+
+    @Test
+    public void testNullMarkerIsParsedToNull() throws Exception {
+        parseHeader("id\tname\n");
+        assertThat(parse("1\t\\N"), is("{\"id\":\"1\",\"name\":null}"));
+    }
+
+    @Test
+    public void testEmptyValueIsAnEmptyString() throws Exception {
+        parseHeader("id\tname\n");
+        assertThat(parse("1\t"), is("{\"id\":\"1\",\"name\":\"\"}"));
+    }
+
+    @Test
+    public void testEscapesAreUnescaped() throws Exception {
+        parseHeader("id\tname\n");
+        assertThat(parse("1\ta\\tb\\nc\\\\d"), is("{\"id\":\"1\",\"name\":\"a\\tb\\nc\\\\d\"}"));
+    }
+
+    @Test
+    public void testOctalAndHexEscapes() throws Exception {
+        assertThat(TextLineParser.unescape("\\101\\x42"), is("AB"));
+    }
+
+    @Test
+    public void testMissingValuesAreOmitted() throws Exception {
+        parseHeader("id\tname\tage\n");
+        assertThat(parse("1\tArthur"), is("{\"id\":\"1\",\"name\":\"Arthur\"}"));
+    }
+
+    @Test
+    public void testMoreValuesThanKeysThrowsException() throws Exception {
+        parseHeader("id\n");
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Number of values exceeds number of keys");
+        parse("1\tArthur");
+    }
+
+    @Test
+    public void testDuplicateKeysInHeaderThrowsException() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        parseHeader("id\tid\n");
+    }
+}
@@ -29,6 +29,7 @@ import io.crate.core.collections.TreeMapBuilder;
 import io.crate.data.RowConsumer;
 import io.crate.metadata.Routing;
 import io.crate.metadata.RowGranularity;
+import io.crate.plugin.SQLPlugin;
 import io.crate.execution.dsl.phases.NodeOperation;
 import io.crate.data.Paging;
 import io.crate.planner.distribution.DistributionInfo;
@@ -37,11 +38,14 @@ import io.crate.execution.dsl.phases.RoutedCollectPhase;
 import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
 import io.crate.types.DataType;
 import io.crate.types.LongType;
+import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -54,13 +58,19 @@ public class DistributingConsumerFactoryTest extends CrateDummyClusterServiceUni
 
     private DistributingConsumerFactory rowDownstreamFactory;
 
+    @Override
+    protected Collection<Setting<?>> additionalClusterSettings() {
+        return new SQLPlugin(Settings.EMPTY).getSettings();
+    }
+
     @Before
     public void prepare() {
         rowDownstreamFactory = new DistributingConsumerFactory(
             Settings.EMPTY,
             clusterService,
             THREAD_POOL,
-            mock(TransportDistributedResultAction.class)
+            mock(TransportDistributedResultAction.class),
+            BigArrays.NON_RECYCLING_INSTANCE
         );
     }
 
@@ -0,0 +1,221 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.distribution;
+
+import io.crate.Streamer;
+import io.crate.data.Bucket;
+import io.crate.data.Row1;
+import io.crate.data.RowN;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static io.crate.testing.TestingHelpers.printedTable;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+public class StreamBucketTest extends CrateUnitTest {
+
+    private static final Streamer<?>[] STREAMERS = new Streamer[]{DataTypes.INTEGER.streamer()};
+
+    private CircuitBreaker breaker;
+    private BigArrays bigArrays;
+
+    @Before
+    public void setUpBigArrays() {
+        CircuitBreakerService breakerService = new HierarchyCircuitBreakerService(
+            Settings.EMPTY, new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        breaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
+        bigArrays = new BigArrays(Settings.EMPTY, breakerService);
+    }
+
+    @Test
+    public void testBucketOnPooledPagesIsStreamedAndReleasedOnClose() throws Exception {
+        StreamBucket.Builder builder = new StreamBucket.Builder(STREAMERS, null, PageFormat.ROW, bigArrays);
+        builder.add(new Row1(1));
+        builder.add(new Row1(2));
+        StreamBucket bucket = builder.build();
+        builder.reset();
+        assertThat(breaker.getUsed(), greaterThan(0L));
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        bucket.writeTo(out);
+        bucket.close();
+        assertThat(breaker.getUsed(), is(0L));
+
+        // closing twice is fine, a broadcasted bucket is closed once per downstream
+        bucket.close();
+        assertThat(breaker.getUsed(), is(0L));
+
+        StreamBucket received = new StreamBucket(STREAMERS);
+        received.readFrom(out.bytes().streamInput());
+        assertThat(printedTable(received), is("1\n2\n"));
+    }
+
+    @Test
+    public void testCloseBuilderReleasesPendingRows() throws Exception {
+        StreamBucket.Builder builder = new StreamBucket.Builder(STREAMERS, null, PageFormat.ROW, bigArrays);
+        builder.add(new Row1(1));
+        builder.build().close();
+        builder.reset();
+        assertThat(breaker.getUsed(), is(0L));
+
+        builder.add(new Row1(2));
+        assertThat(breaker.getUsed(), greaterThan(0L));
+        builder.close();
+        assertThat(breaker.getUsed(), is(0L));
+    }
+
+    @Test
+    public void testBuildWithoutRowsAfterResetReturnsEmptyBucket() throws Exception {
+        StreamBucket.Builder builder = new StreamBucket.Builder(STREAMERS, null, PageFormat.ROW, bigArrays);
+        builder.add(new Row1(1));
+        builder.build().close();
+        builder.reset();
+
+        Bucket bucket = builder.build();
+        assertThat(bucket.size(), is(0));
+        assertThat(bucket.iterator().hasNext(), is(false));
+        assertThat(breaker.getUsed(), is(0L));
+    }
+
+    private static final Streamer<?>[] MIXED_STREAMERS = new Streamer[]{
+        DataTypes.LONG.streamer(),
+        DataTypes.INTEGER.streamer(),
+        DataTypes.STRING.streamer(),
+        DataTypes.DOUBLE.streamer()
+    };
+
+    private static StreamBucket buildMixedBucket(PageFormat pageFormat, BigArrays bigArrays) throws Exception {
+        StreamBucket.Builder builder = new StreamBucket.Builder(MIXED_STREAMERS, null, pageFormat, bigArrays);
+        for (int i = 0; i < 100; i++) {
+            builder.add(new RowN(new Object[]{
+                i % 7 == 0 ? null : 1_500_000_000_000L + i,
+                i % 2 == 0 ? -i : i,
+                i % 5 == 0 ? null : new BytesRef("value_" + (i % 3)),
+                i * 0.5d
+            }));
+        }
+        StreamBucket bucket = builder.build();
+        builder.reset();
+        return bucket;
+    }
+
+    private static StreamBucket streamed(StreamBucket bucket, Streamer<?>[] streamers) throws Exception {
+        BytesStreamOutput out = new BytesStreamOutput();
+        bucket.writeTo(out);
+        StreamBucket received = new StreamBucket(streamers);
+        received.readFrom(out.bytes().streamInput());
+        return received;
+    }
+
+    @Test
+    public void testColumnarBucketsContainSameRowsAsRowBucket() throws Exception {
+        String expected = printedTable(streamed(buildMixedBucket(PageFormat.ROW, null), MIXED_STREAMERS));
+
+        StreamBucket columnar = buildMixedBucket(PageFormat.COLUMNAR, null);
+        assertThat(printedTable(columnar), is(expected));
+        assertThat(printedTable(streamed(columnar, MIXED_STREAMERS)), is(expected));
+
+        StreamBucket compressed = buildMixedBucket(PageFormat.COLUMNAR_COMPRESSED, null);
+        assertThat(printedTable(streamed(compressed, MIXED_STREAMERS)), is(expected));
+    }
+
+    @Test
+    public void testColumnarBucketIsSmallerThanRowBucket() throws Exception {
+        BytesStreamOutput rowOut = new BytesStreamOutput();
+        buildMixedBucket(PageFormat.ROW, null).writeTo(rowOut);
+        BytesStreamOutput columnarOut = new BytesStreamOutput();
+        buildMixedBucket(PageFormat.COLUMNAR, null).writeTo(columnarOut);
+        BytesStreamOutput compressedOut = new BytesStreamOutput();
+        buildMixedBucket(PageFormat.COLUMNAR_COMPRESSED, null).writeTo(compressedOut);
+
+        assertThat(columnarOut.size(), lessThan(rowOut.size()));
+        assertThat(compressedOut.size(), lessThan(columnarOut.size()));
+    }
+
+    @Test
+    public void testColumnarBucketOnPooledPagesIsReleasedOnClose() throws Exception {
+        StreamBucket bucket = buildMixedBucket(PageFormat.COLUMNAR_COMPRESSED, bigArrays);
+        assertThat(breaker.getUsed(), greaterThan(0L));
+        String expected = printedTable(streamed(buildMixedBucket(PageFormat.ROW, null), MIXED_STREAMERS));
+        assertThat(printedTable(streamed(bucket, MIXED_STREAMERS)), is(expected));
+
+        bucket.close();
+        assertThat(breaker.getUsed(), is(0L));
+    }
+
+    @Test
+    public void testColumnarBucketCopiesValuesOfReusedRows() throws Exception {
+        StreamBucket.Builder builder = new StreamBucket.Builder(
+            new Streamer[]{DataTypes.STRING.streamer()}, null, PageFormat.COLUMNAR, null);
+        BytesRef value = new BytesRef("foo");
+        Object[] cells = new Object[]{value};
+        RowN row = new RowN(cells);
+        builder.add(row);
+        value.bytes[0] = 'b';
+        builder.add(row);
+
+        assertThat(printedTable(builder.build()), is("foo\nboo\n"));
+    }
+
+    @Test
+    public void testColumnarFormatIsOnlyUsedIfReceiverSupportsIt() {
+        DiscoveryNode oldNode = new DiscoveryNode(
+            "n1", buildNewFakeTransportAddress(), Collections.emptyMap(), Collections.emptySet(), Version.CURRENT);
+        DiscoveryNode newNode = new DiscoveryNode(
+            "n2",
+            buildNewFakeTransportAddress(),
+            Collections.singletonMap(PageFormat.VERSION_ATTRIBUTE, Integer.toString(io.crate.Version.CURRENT.id)),
+            Collections.emptySet(),
+            Version.CURRENT);
+
+        assertThat(PageFormat.COLUMNAR.supportedBy(newNode), is(PageFormat.COLUMNAR));
+        assertThat(PageFormat.COLUMNAR_COMPRESSED.supportedBy(newNode), is(PageFormat.COLUMNAR_COMPRESSED));
+        assertThat(PageFormat.COLUMNAR.supportedBy(oldNode), is(PageFormat.ROW));
+        assertThat(PageFormat.COLUMNAR.supportedBy(null), is(PageFormat.ROW));
+        assertThat(PageFormat.ROW.supportedBy(newNode), is(PageFormat.ROW));
+    }
+
+    @Test
+    public void testInvalidPageFormat() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage(
+            "Invalid page format 'csv', must be one of 'row', 'columnar' or 'columnar_compressed'");
+        PageFormat.of("csv");
+    }
+}
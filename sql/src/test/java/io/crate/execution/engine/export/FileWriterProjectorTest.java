@@ -23,24 +23,38 @@
 package io.crate.execution.engine.export;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import io.crate.breaker.RamAccountingContext;
 import io.crate.data.BatchIterator;
 import io.crate.data.InMemoryBatchIterator;
+import io.crate.data.Row;
+import io.crate.data.RowN;
 import io.crate.exceptions.UnhandledServerException;
 import io.crate.execution.dsl.projection.WriterProjection;
+import io.crate.execution.engine.collect.InputCollectExpression;
 import io.crate.metadata.ColumnIdent;
 import io.crate.test.integration.CrateUnitTest;
 import io.crate.testing.RowGenerator;
 import io.crate.testing.TestingHelpers;
 import io.crate.testing.TestingRowConsumer;
+import io.crate.types.DataTypes;
+import net.jpountz.lz4.LZ4FrameInputStream;
 import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.settings.Settings;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
@@ -54,6 +68,10 @@ import static org.hamcrest.core.Is.is;
 
 public class FileWriterProjectorTest extends CrateUnitTest {
 
+    private static final OutputS3Limits S3_LIMITS = new OutputS3Limits(Settings.EMPTY, 1);
+    private static final RamAccountingContext RAM_ACCOUNTING_CONTEXT =
+        new RamAccountingContext("dummy", new NoopCircuitBreaker("dummy"));
+
     private ExecutorService executorService = Executors.newSingleThreadExecutor();
 
     @Rule
@@ -79,9 +97,9 @@ public class FileWriterProjectorTest extends CrateUnitTest {
     public void testWriteRawToFile() throws Exception {
         Path file = createTempFile("out", "json");
 
-        FileWriterProjector fileWriterProjector = new FileWriterProjector(executorService, file.toUri().toString(),
-            null, null, ImmutableSet.of(), new HashMap<>(),
-            null, WriterProjection.OutputFormat.JSON_OBJECT);
+        FileWriterProjector fileWriterProjector = new FileWriterProjector(executorService, S3_LIMITS,
+            file.toUri().toString(), null, null, ImmutableSet.of(), new HashMap<>(),
+            null, null, WriterProjection.OutputFormat.JSON_OBJECT, RAM_ACCOUNTING_CONTEXT);
 
         new TestingRowConsumer().accept(fileWriterProjector.apply(sourceSupplier.get()), null);
 
@@ -99,9 +117,9 @@ public class FileWriterProjectorTest extends CrateUnitTest {
 
         Path directory = createTempDir();
 
-        FileWriterProjector fileWriterProjector = new FileWriterProjector(executorService, directory.toUri().toString(),
-            null, null, ImmutableSet.of(), new HashMap<>(),
-            null, WriterProjection.OutputFormat.JSON_OBJECT);
+        FileWriterProjector fileWriterProjector = new FileWriterProjector(executorService, S3_LIMITS,
+            directory.toUri().toString(), null, null, ImmutableSet.of(), new HashMap<>(),
+            null, null, WriterProjection.OutputFormat.JSON_OBJECT, RAM_ACCOUNTING_CONTEXT);
 
         new TestingRowConsumer().accept(fileWriterProjector.apply(sourceSupplier.get()), null);
     }
@@ -113,10 +131,52 @@ public class FileWriterProjectorTest extends CrateUnitTest {
 
         String uri = Paths.get(folder.newFile().toURI()).resolve("out.json").toUri().toString();
 
-        FileWriterProjector fileWriterProjector = new FileWriterProjector(executorService, uri,
-            null, null, ImmutableSet.of(), new HashMap<>(),
-            null, WriterProjection.OutputFormat.JSON_OBJECT);
+        FileWriterProjector fileWriterProjector = new FileWriterProjector(executorService, S3_LIMITS,
+            uri, null, null, ImmutableSet.of(), new HashMap<>(),
+            null, null, WriterProjection.OutputFormat.JSON_OBJECT, RAM_ACCOUNTING_CONTEXT);
 
         new TestingRowConsumer().accept(fileWriterProjector.apply(sourceSupplier.get()), null);
     }
+
+    @Test
+    public void testWriteColumnsAsParquet() throws Exception {
+        Path file = createTempFile("out", "parquet");
+
+        List<InputCollectExpression> inputs = Arrays.asList(new InputCollectExpression(0), new InputCollectExpression(1));
+        FileWriterProjector fileWriterProjector = new FileWriterProjector(executorService, S3_LIMITS,
+            file.toUri().toString(), WriterProjection.CompressionType.GZIP, new ArrayList<>(inputs),
+            new ArrayList<>(inputs), new HashMap<>(), Arrays.asList("id", "name"),
+            Arrays.asList(DataTypes.INTEGER, DataTypes.STRING), WriterProjection.OutputFormat.PARQUET, RAM_ACCOUNTING_CONTEXT);
+
+        BatchIterator<Row> source = InMemoryBatchIterator.of(Arrays.asList(
+            new RowN(new Object[]{1, new BytesRef("Arthur")}),
+            new RowN(new Object[]{2, null})), SENTINEL);
+        TestingRowConsumer consumer = new TestingRowConsumer();
+        consumer.accept(fileWriterProjector.apply(source), null);
+        assertThat(consumer.getResult().get(0)[0], is(2L));
+
+        // the pages are compressed, the file itself is not
+        byte[] bytes = Files.readAllBytes(file);
+        assertThat(new String(bytes, 0, 4, StandardCharsets.US_ASCII), is("PAR1"));
+        assertThat(new String(bytes, bytes.length - 4, 4, StandardCharsets.US_ASCII), is("PAR1"));
+    }
+
+    @Test
+    public void testWriteRawToLz4CompressedFile() throws Exception {
+        Path file = createTempFile("out", "json.lz4");
+
+        FileWriterProjector fileWriterProjector = new FileWriterProjector(executorService, S3_LIMITS,
+            file.toUri().toString(), WriterProjection.CompressionType.LZ4, null, ImmutableSet.of(), new HashMap<>(),
+            null, null, WriterProjection.OutputFormat.JSON_OBJECT, RAM_ACCOUNTING_CONTEXT);
+
+        new TestingRowConsumer().accept(fileWriterProjector.apply(sourceSupplier.get()), null);
+
+        try (InputStream in = new LZ4FrameInputStream(Files.newInputStream(file))) {
+            assertEquals("input line 00\n" +
+                         "input line 01\n" +
+                         "input line 02\n" +
+                         "input line 03\n" +
+                         "input line 04\n", new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8));
+        }
+    }
 }
@@ -0,0 +1,65 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.export;
+
+import io.crate.test.integration.CrateUnitTest;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.set.Sets;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OutputS3LimitsTest extends CrateUnitTest {
+
+    @Test
+    public void testNodeSettingsApplyAndCanBeUpdatedAtRuntime() {
+        Settings nodeSettings = Settings.builder()
+            .put(OutputS3Limits.PART_SIZE_SETTING.getKey(), "10mb")
+            .put(OutputS3Limits.MAX_CONCURRENT_PARTS_SETTING.getKey(), 2)
+            .build();
+        ClusterSettings clusterSettings = new ClusterSettings(nodeSettings, Sets.newHashSet(
+            OutputS3Limits.PART_SIZE_SETTING.setting(), OutputS3Limits.MAX_CONCURRENT_PARTS_SETTING.setting()));
+        ClusterService clusterService = mock(ClusterService.class);
+        when(clusterService.getClusterSettings()).thenReturn(clusterSettings);
+
+        OutputS3Limits limits = new OutputS3Limits(nodeSettings, clusterService);
+        assertThat(limits.partSize(), is(10 * 1024 * 1024));
+        assertThat(limits.maxConcurrentParts(), is(2));
+
+        clusterSettings.applySettings(Settings.builder()
+            .put(OutputS3Limits.PART_SIZE_SETTING.getKey(), "20mb")
+            .build());
+        assertThat(limits.partSize(), is(20 * 1024 * 1024));
+        assertThat(limits.maxConcurrentParts(), is(2));
+    }
+
+    @Test
+    public void testPartSizeIsLimitedTo100mb() {
+        expectedException.expect(IllegalArgumentException.class);
+        new OutputS3Limits(Settings.builder().put(OutputS3Limits.PART_SIZE_SETTING.getKey(), "1gb").build(), 1);
+    }
+}
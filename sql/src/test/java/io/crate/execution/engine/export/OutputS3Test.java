@@ -0,0 +1,191 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.export;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.google.common.io.ByteStreams;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.execution.dsl.projection.WriterProjection;
+import io.crate.external.S3ClientHelper;
+import io.crate.test.integration.CrateUnitTest;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OutputS3Test extends CrateUnitTest {
+
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+    private static final RamAccountingContext RAM_ACCOUNTING_CONTEXT =
+        new RamAccountingContext("dummy", new NoopCircuitBreaker("dummy"));
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(4);
+    private final Map<Integer, byte[]> uploadedParts = new TreeMap<>();
+    private AmazonS3 client;
+    private S3ClientHelper clientHelper;
+    private URI uri;
+
+    @Before
+    public void setupClient() throws Exception {
+        uri = new URI("s3://bucket/dir/file.json");
+        client = mock(AmazonS3.class);
+        clientHelper = mock(S3ClientHelper.class);
+        when(clientHelper.client(uri)).thenReturn(client);
+
+        InitiateMultipartUploadResult initResult = new InitiateMultipartUploadResult();
+        initResult.setUploadId("upload-1");
+        when(client.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).thenReturn(initResult);
+        // stores the parts like S3 would, the uploads may complete in any order
+        when(client.uploadPart(any(UploadPartRequest.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = (UploadPartRequest) invocation.getArguments()[0];
+            byte[] bytes = ByteStreams.toByteArray(request.getInputStream());
+            assertThat((long) bytes.length, is(request.getPartSize()));
+            synchronized (uploadedParts) {
+                uploadedParts.put(request.getPartNumber(), bytes);
+            }
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("etag-" + request.getPartNumber());
+            return result;
+        });
+    }
+
+    @After
+    public void shutdownExecutor() throws Exception {
+        executorService.shutdown();
+        executorService.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private byte[] uploadedBytes() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : uploadedParts.values()) {
+            out.write(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] randomData(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) randomIntBetween('a', 'z');
+        }
+        return data;
+    }
+
+    private static OutputS3Limits limits(int maxConcurrentParts) {
+        return new OutputS3Limits(Settings.builder()
+            .put(OutputS3Limits.PART_SIZE_SETTING.getKey(), "5mb")
+            .put(OutputS3Limits.MAX_CONCURRENT_PARTS_SETTING.getKey(), maxConcurrentParts)
+            .build(), 4);
+    }
+
+    @Test
+    public void testPartsAreUploadedConcurrentlyAndCompletedInOrder() throws Exception {
+        byte[] data = randomData(PART_SIZE * 3 + 100);
+        RamAccountingContext ramAccountingContext = new RamAccountingContext("dummy", new NoopCircuitBreaker("dummy"));
+        OutputS3 output = new OutputS3(executorService, uri, null, limits(2), ramAccountingContext, clientHelper);
+        try (OutputStream out = output.acquireOutputStream()) {
+            for (int pos = 0; pos < data.length; pos += 4096) {
+                out.write(data, pos, Math.min(4096, data.length - pos));
+                assertThat(ramAccountingContext.totalBytes() >= (pos % PART_SIZE), is(true));
+            }
+        }
+        assertThat(ramAccountingContext.totalBytes(), is(0L));
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> captor =
+            ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(client).completeMultipartUpload(captor.capture());
+        CompleteMultipartUploadRequest request = captor.getValue();
+        assertThat(request.getUploadId(), is("upload-1"));
+        assertThat(request.getPartETags().size(), is(4));
+        for (int i = 0; i < request.getPartETags().size(); i++) {
+            PartETag partETag = request.getPartETags().get(i);
+            assertThat(partETag.getPartNumber(), is(i + 1));
+        }
+        assertThat(uploadedBytes(), is(data));
+    }
+
+    @Test
+    public void testCompressedOutputIsAValidGzipFile() throws Exception {
+        byte[] data = randomData(PART_SIZE * 2);
+        OutputS3 output = new OutputS3(
+            executorService,
+            uri,
+            WriterProjection.CompressionType.GZIP,
+            limits(4),
+            RAM_ACCOUNTING_CONTEXT,
+            clientHelper);
+        try (OutputStream out = output.acquireOutputStream()) {
+            out.write(data);
+        }
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(uploadedBytes()))) {
+            assertThat(ByteStreams.toByteArray(in), is(data));
+        }
+    }
+
+    @Test
+    public void testFailedUploadAbortsTheMultipartUpload() throws Exception {
+        // doThrow doesn't invoke the answer stubbed in setupClient, which would fail on the missing request
+        doThrow(new IllegalStateException("upload failed")).when(client).uploadPart(any(UploadPartRequest.class));
+        OutputS3 output = new OutputS3(executorService, uri, null, limits(1), RAM_ACCOUNTING_CONTEXT, clientHelper);
+        OutputStream out = output.acquireOutputStream();
+        out.write(randomData(PART_SIZE));
+
+        expectedException.expect(IOException.class);
+        try {
+            out.close();
+        } finally {
+            verify(client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+            verify(client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        }
+    }
+}
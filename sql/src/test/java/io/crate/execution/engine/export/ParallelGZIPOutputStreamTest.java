@@ -0,0 +1,107 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.export;
+
+import com.google.common.io.ByteStreams;
+import io.crate.test.integration.CrateUnitTest;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.is;
+
+public class ParallelGZIPOutputStreamTest extends CrateUnitTest {
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+    @After
+    public void shutdownExecutor() throws Exception {
+        executorService.shutdown();
+        executorService.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private static byte[] decompress(byte[] bytes) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return ByteStreams.toByteArray(in);
+        }
+    }
+
+    private static byte[] randomData() {
+        byte[] data = new byte[10_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) randomIntBetween('a', 'z');
+        }
+        return data;
+    }
+
+    @Test
+    public void testBlocksAreWrittenAsGzipMembersInOrder() throws Exception {
+        byte[] data = randomData();
+        Semaphore compressionPermits = new Semaphore(3);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new ParallelGZIPOutputStream(compressed, executorService, 128, compressionPermits, 3)) {
+            int pos = 0;
+            while (pos < data.length) {
+                int len = Math.min(randomIntBetween(0, 300), data.length - pos);
+                if (len == 0) {
+                    out.write(data[pos]);
+                    pos++;
+                } else {
+                    out.write(data, pos, len);
+                    pos += len;
+                }
+            }
+        }
+        assertThat(decompress(compressed.toByteArray()), is(data));
+        assertThat(compressionPermits.availablePermits(), is(3));
+    }
+
+    @Test
+    public void testBlocksAreCompressedOnWritingThreadWithoutPermits() throws Exception {
+        byte[] data = randomData();
+        // another stream of the node holds all permits
+        Semaphore compressionPermits = new Semaphore(0);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new ParallelGZIPOutputStream(compressed, executorService, 128, compressionPermits, 3)) {
+            out.write(data);
+        }
+        assertThat(decompress(compressed.toByteArray()), is(data));
+        assertThat(compressionPermits.availablePermits(), is(0));
+    }
+
+    @Test
+    public void testEmptyOutputIsAValidGzipFile() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new ParallelGZIPOutputStream(compressed, executorService, 128, new Semaphore(3), 3).close();
+        assertThat(decompress(compressed.toByteArray()).length, is(0));
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.export;
+
+import com.google.common.io.ByteStreams;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+public class ParquetFileWriterTest extends CrateUnitTest {
+
+    private static byte[] write(List<String> names, List<DataType> types, boolean gzip, List<Object[]> rows) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RamAccountingContext ramAccountingContext = new RamAccountingContext("dummy", new NoopCircuitBreaker("dummy"));
+        ParquetFileWriter writer = new ParquetFileWriter(out, names, types, gzip, ramAccountingContext);
+        for (Object[] row : rows) {
+            writer.write(row);
+        }
+        writer.close();
+        return out.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Integer, Object> readFileMetaData(byte[] file) {
+        assertThat(new String(file, 0, 4, StandardCharsets.US_ASCII), is("PAR1"));
+        assertThat(new String(file, file.length - 4, 4, StandardCharsets.US_ASCII), is("PAR1"));
+        ByteBuffer buffer = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+        int footerLength = buffer.getInt(file.length - 8);
+        buffer.position(file.length - 8 - footerLength);
+        Map<Integer, Object> fileMetaData = readStruct(buffer);
+        assertThat(buffer.position(), is(file.length - 8));
+        return fileMetaData;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Integer, Object> columnMetaData(Map<Integer, Object> fileMetaData, int rowGroup, int column) {
+        Map<Integer, Object> group = (Map<Integer, Object>) ((List<Object>) fileMetaData.get(4)).get(rowGroup);
+        Map<Integer, Object> chunk = (Map<Integer, Object>) ((List<Object>) group.get(1)).get(column);
+        return (Map<Integer, Object>) chunk.get(3);
+    }
+
+    /**
+     * Reads the values of all pages of a column chunk, with null for undefined values
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Object> readColumnChunk(byte[] file, Map<Integer, Object> columnMetaData) throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position((int) (long) columnMetaData.get(9));
+        long numValues = (long) columnMetaData.get(5);
+        boolean gzip = (long) columnMetaData.get(4) == ParquetFileWriter.CODEC_GZIP;
+        int type = (int) (long) columnMetaData.get(1);
+        List<Object> values = new ArrayList<>();
+        while (values.size() < numValues) {
+            Map<Integer, Object> pageHeader = readStruct(buffer);
+            int pageNumValues = (int) (long) ((Map<Integer, Object>) pageHeader.get(5)).get(1);
+            byte[] body = new byte[(int) (long) pageHeader.get(3)];
+            buffer.get(body);
+            if (gzip) {
+                body = ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(body)));
+            }
+            assertThat(body.length, is((int) (long) pageHeader.get(2)));
+
+            ByteBuffer page = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+            int levelsEnd = page.getInt() + 4;
+            List<Integer> levels = new ArrayList<>();
+            while (page.position() < levelsEnd) {
+                long runHeader = readVarInt(page);
+                assertThat("only RLE runs are written", runHeader & 1, is(0L));
+                int level = page.get();
+                for (long i = 0; i < runHeader >>> 1; i++) {
+                    levels.add(level);
+                }
+            }
+            assertThat(levels.size(), is(pageNumValues));
+            int numBooleans = 0;
+            for (int level : levels) {
+                if (level == 0) {
+                    values.add(null);
+                } else if (type == ParquetFileWriter.TYPE_INT32) {
+                    values.add(page.getInt());
+                } else if (type == ParquetFileWriter.TYPE_INT64) {
+                    values.add(page.getLong());
+                } else if (type == ParquetFileWriter.TYPE_DOUBLE) {
+                    values.add(page.getDouble());
+                } else if (type == ParquetFileWriter.TYPE_BOOLEAN) {
+                    values.add((page.get(page.position() + numBooleans / 8) & (1 << (numBooleans % 8))) != 0);
+                    numBooleans++;
+                } else {
+                    byte[] bytes = new byte[page.getInt()];
+                    page.get(bytes);
+                    values.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return values;
+    }
+
+    private static Map<Integer, Object> readStruct(ByteBuffer in) {
+        Map<Integer, Object> fields = new HashMap<>();
+        int lastFieldId = 0;
+        while (true) {
+            int header = in.get() & 0xFF;
+            if (header == 0) {
+                return fields;
+            }
+            int delta = header >>> 4;
+            int fieldId = delta == 0 ? (int) zigZag(readVarInt(in)) : lastFieldId + delta;
+            fields.put(fieldId, readValue(in, header & 0x0F));
+            lastFieldId = fieldId;
+        }
+    }
+
+    private static Object readValue(ByteBuffer in, int type) {
+        switch (type) {
+            case ParquetFileWriter.ThriftCompactOutput.TYPE_I32:
+            case ParquetFileWriter.ThriftCompactOutput.TYPE_I64:
+                return zigZag(readVarInt(in));
+            case ParquetFileWriter.ThriftCompactOutput.TYPE_BINARY:
+                byte[] bytes = new byte[(int) readVarInt(in)];
+                in.get(bytes);
+                return bytes;
+            case ParquetFileWriter.ThriftCompactOutput.TYPE_LIST:
+                int header = in.get() & 0xFF;
+                int size = header >>> 4 == 15 ? (int) readVarInt(in) : header >>> 4;
+                List<Object> elements = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    elements.add(readValue(in, header & 0x0F));
+                }
+                return elements;
+            case ParquetFileWriter.ThriftCompactOutput.TYPE_STRUCT:
+                return readStruct(in);
+            default:
+                throw new AssertionError("Unexpected thrift type " + type);
+        }
+    }
+
+    private static long readVarInt(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    private static long zigZag(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    private static String string(Object bytes) {
+        return new String((byte[]) bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWriteColumnsOfDifferentTypes() throws Exception {
+        List<String> names = Arrays.asList("id", "name", "ts", "details", "active", "score");
+        List<DataType> types = Arrays.asList(
+            DataTypes.INTEGER, DataTypes.STRING, DataTypes.TIMESTAMP, DataTypes.OBJECT, DataTypes.BOOLEAN, DataTypes.DOUBLE);
+        byte[] file = write(names, types, false, Arrays.asList(
+            new Object[]{1, new BytesRef("Arthur"), 1514764800000L, Collections.singletonMap("a", 1), true, 1.5},
+            new Object[]{-2, null, null, null, false, null},
+            new Object[]{3, new BytesRef("Trillian"), 1514764801000L, new Object[]{1, 2}, null, 0.25}));
+
+        Map<Integer, Object> fileMetaData = readFileMetaData(file);
+        assertThat(fileMetaData.get(3), is(3L));
+
+        List<Object> schema = (List<Object>) fileMetaData.get(2);
+        assertThat(schema.size(), is(names.size() + 1));
+        assertThat(((Map<Integer, Object>) schema.get(0)).get(5), is((long) names.size()));
+        Map<Integer, Object> tsSchema = (Map<Integer, Object>) schema.get(3);
+        assertThat(string(tsSchema.get(4)), is("ts"));
+        assertThat(tsSchema.get(1), is((long) ParquetFileWriter.TYPE_INT64));
+        assertThat(tsSchema.get(6), is((long) ParquetFileWriter.CONVERTED_TYPE_TIMESTAMP_MILLIS));
+        Map<Integer, Object> detailsSchema = (Map<Integer, Object>) schema.get(4);
+        assertThat(detailsSchema.get(1), is((long) ParquetFileWriter.TYPE_BYTE_ARRAY));
+        assertThat(detailsSchema.get(6), is((long) ParquetFileWriter.CONVERTED_TYPE_JSON));
+
+        assertThat(readColumnChunk(file, columnMetaData(fileMetaData, 0, 0)), contains(1, -2, 3));
+        assertThat(readColumnChunk(file, columnMetaData(fileMetaData, 0, 1)), contains("Arthur", null, "Trillian"));
+        assertThat(readColumnChunk(file, columnMetaData(fileMetaData, 0, 2)), contains(1514764800000L, null, 1514764801000L));
+        assertThat(readColumnChunk(file, columnMetaData(fileMetaData, 0, 3)), contains("{\"a\":1}", null, "[1,2]"));
+        assertThat(readColumnChunk(file, columnMetaData(fileMetaData, 0, 4)), contains(true, false, null));
+        assertThat(readColumnChunk(file, columnMetaData(fileMetaData, 0, 5)), contains(1.5, null, 0.25));
+
+        Map<Integer, Object> idStatistics = (Map<Integer, Object>) columnMetaData(fileMetaData, 0, 0).get(12);
+        assertThat(idStatistics.get(3), is(0L));
+        assertThat(ByteBuffer.wrap((byte[]) idStatistics.get(5)).order(ByteOrder.LITTLE_ENDIAN).getInt(), is(3));
+        assertThat(ByteBuffer.wrap((byte[]) idStatistics.get(6)).order(ByteOrder.LITTLE_ENDIAN).getInt(), is(-2));
+        Map<Integer, Object> nameStatistics = (Map<Integer, Object>) columnMetaData(fileMetaData, 0, 1).get(12);
+        assertThat(nameStatistics.get(3), is(1L));
+    }
+
+    @Test
+    public void testGzipCompressedPagesAreSplitByNumberOfValues() throws Exception {
+        int numRows = 50_000;
+        List<Object[]> rows = new ArrayList<>(numRows);
+        List<Object> expected = new ArrayList<>(numRows);
+        for (long i = 0; i < numRows; i++) {
+            Long value = i % 7 == 0 ? null : i;
+            rows.add(new Object[]{value});
+            expected.add(value);
+        }
+        byte[] file = write(Collections.singletonList("x"), Collections.singletonList(DataTypes.LONG), true, rows);
+
+        Map<Integer, Object> fileMetaData = readFileMetaData(file);
+        assertThat(fileMetaData.get(3), is((long) numRows));
+        Map<Integer, Object> columnMetaData = columnMetaData(fileMetaData, 0, 0);
+        assertThat(columnMetaData.get(4), is((long) ParquetFileWriter.CODEC_GZIP));
+        assertThat(readColumnChunk(file, columnMetaData), is(expected));
+    }
+
+    @Test
+    public void testBufferedRowGroupIsAccountedUntilClose() throws Exception {
+        RamAccountingContext ramAccountingContext = new RamAccountingContext("dummy", new NoopCircuitBreaker("dummy"));
+        ParquetFileWriter writer = new ParquetFileWriter(
+            new ByteArrayOutputStream(),
+            Collections.singletonList("name"),
+            Collections.singletonList(DataTypes.STRING),
+            false,
+            ramAccountingContext);
+        for (int i = 0; i < 10_000; i++) {
+            writer.write(new Object[]{new BytesRef("value-" + i)});
+        }
+        assertThat(ramAccountingContext.totalBytes(), greaterThan(10_000L * "value-".length()));
+        writer.close();
+        assertThat(ramAccountingContext.totalBytes(), is(0L));
+    }
+}
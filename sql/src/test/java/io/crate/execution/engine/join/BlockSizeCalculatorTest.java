@@ -83,4 +83,15 @@ public class BlockSizeCalculatorTest {
         BlockSizeCalculator blockSizeCalculator = new BlockSizeCalculator(circuitBreaker, 1, DEFAULT_BLOCK_SIZE * 2L);
         assertThat(blockSizeCalculator.calculateBlockSize(), is(DEFAULT_BLOCK_SIZE));
     }
+
+    @Test
+    public void testObservedRowSizeIsUsedOnceABlockHasBeenBuilt() {
+        when(circuitBreaker.getLimit()).thenReturn(110L);
+        when(circuitBreaker.getUsed()).thenReturn(10L);
+        BlockSizeCalculator blockSizeCalculator = new BlockSizeCalculator(circuitBreaker, 5, 100);
+        assertThat(blockSizeCalculator.blockSize(), is(20));
+
+        blockSizeCalculator.onBlockBuilt(20, 200);
+        assertThat(blockSizeCalculator.blockSize(), is(10));
+    }
 }
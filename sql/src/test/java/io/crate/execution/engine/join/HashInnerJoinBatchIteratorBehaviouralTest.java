@@ -22,7 +22,8 @@
 
 package io.crate.execution.engine.join;
 
-import io.crate.breaker.RowAccounting;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
 import io.crate.data.BatchIterator;
 import io.crate.data.Paging;
 import io.crate.data.Row;
@@ -30,6 +31,8 @@ import io.crate.data.join.CombinedRow;
 import io.crate.testing.BatchSimulatingIterator;
 import io.crate.testing.TestingBatchIterators;
 import io.crate.testing.TestingRowConsumer;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -41,10 +44,12 @@ import java.util.Objects;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
-import static org.mockito.Mockito.mock;
 
 public class HashInnerJoinBatchIteratorBehaviouralTest {
 
+    private static final RamAccountingContext RAM_ACCOUNTING_CONTEXT =
+        new RamAccountingContext("dummy", new NoopCircuitBreaker("dummy"));
+
     private int originalPageSize = Paging.PAGE_SIZE;
 
     @Before
@@ -61,20 +66,19 @@ public class HashInnerJoinBatchIteratorBehaviouralTest {
     public void testDistributed_SwitchToRightEvenIfLeftBatchDoesNotDeliverAllRowsExpectedByOneBatch() throws Exception {
         BatchSimulatingIterator<Row> leftSimulatingIterator = new BatchSimulatingIterator<>(
             TestingBatchIterators.ofValues(Arrays.asList(1, 2, 4)), 1, 2, null);
-        RamAccountingBatchIterator<Row> leftIterator = new RamAccountingBatchIterator<>(
-            leftSimulatingIterator,
-            mock(RowAccounting.class));
-        BatchSimulatingIterator<Row> rightIterator = new BatchSimulatingIterator<>(
+                BatchSimulatingIterator<Row> rightIterator = new BatchSimulatingIterator<>(
             TestingBatchIterators.ofValues(Arrays.asList(2, 0, 4, 5)), 2, 1, null);
 
         BatchIterator<Row> batchIterator = new HashInnerJoinBatchIterator<>(
-                leftIterator,
+                leftSimulatingIterator,
                 rightIterator,
                 new CombinedRow(1, 1),
                 row -> Objects.equals(row.get(0), row.get(1)),
                 row -> Objects.hash(row.get(0)),
                 row -> Objects.hash(row.get(0)),
-                () -> 2
+                () -> 2,
+                new Streamer[]{DataTypes.INTEGER.streamer()},
+                RAM_ACCOUNTING_CONTEXT
             );
 
         TestingRowConsumer consumer = new TestingRowConsumer();
@@ -93,20 +97,19 @@ public class HashInnerJoinBatchIteratorBehaviouralTest {
     public void test_SwitchToRightWhenLeftExhausted() throws Exception {
         BatchSimulatingIterator<Row> leftSimulatingIterator = new BatchSimulatingIterator<>(
             TestingBatchIterators.ofValues(Arrays.asList(1, 2, 3, 4)), 2, 1, null);
-        RamAccountingBatchIterator<Row> leftIterator = new RamAccountingBatchIterator<>(
-            leftSimulatingIterator,
-            mock(RowAccounting.class));
-        BatchSimulatingIterator<Row> rightIterator = new BatchSimulatingIterator<>(
+                BatchSimulatingIterator<Row> rightIterator = new BatchSimulatingIterator<>(
             TestingBatchIterators.ofValues(Arrays.asList(2, 0, 4, 5)), 2, 1, null);
 
         BatchIterator<Row> batchIterator = new HashInnerJoinBatchIterator<>(
-            leftIterator,
+            leftSimulatingIterator,
             rightIterator,
             new CombinedRow(1, 1),
             row -> Objects.equals(row.get(0), row.get(1)),
             row -> Objects.hash(row.get(0)),
             row -> Objects.hash(row.get(0)),
-            () -> 500000
+            () -> 500000,
+            new Streamer[]{DataTypes.INTEGER.streamer()},
+            RAM_ACCOUNTING_CONTEXT
         );
 
         TestingRowConsumer consumer = new TestingRowConsumer();
@@ -22,14 +22,17 @@
 
 package io.crate.execution.engine.join;
 
-import io.crate.breaker.RowAccounting;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
 import io.crate.data.BatchIterator;
 import io.crate.data.Row;
 import io.crate.data.join.CombinedRow;
 import io.crate.testing.BatchSimulatingIterator;
 import io.crate.testing.TestingBatchIterators;
 import io.crate.testing.TestingRowConsumer;
+import io.crate.types.DataTypes;
 import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
 import org.junit.Test;
 
 import java.util.Objects;
@@ -59,13 +62,12 @@ public class HashInnerJoinBatchIteratorMemoryTest {
 
     @Test
     public void testReleaseAccountingRows() throws Exception {
-        TestRamAccountingBatchIterator leftIterator = new TestRamAccountingBatchIterator(
-            new BatchSimulatingIterator<>(TestingBatchIterators.range(0, 12), 3, 3, null),
-            mock(RowAccounting.class));
+        BatchIterator<Row> leftIterator = new BatchSimulatingIterator<>(TestingBatchIterators.range(0, 12), 3, 3, null);
         BatchIterator<Row> rightIterator = new BatchSimulatingIterator<>(TestingBatchIterators.range(0, 10), 2, 4, null);
 
         when(circuitBreaker.getLimit()).thenReturn(110L);
         when(circuitBreaker.getUsed()).thenReturn(10L);
+        TestRamAccountingContext ramAccountingContext = new TestRamAccountingContext();
 
         BatchIterator<Row> it = new HashInnerJoinBatchIterator<>(
             leftIterator,
@@ -74,26 +76,31 @@ public class HashInnerJoinBatchIteratorMemoryTest {
             getCol0EqCol1JoinCondition(),
             getHashForLeft(),
             getHashForRight(),
-            () -> 2
+            () -> 2,
+            new Streamer[]{DataTypes.INTEGER.streamer()},
+            ramAccountingContext
         );
         TestingRowConsumer consumer = new TestingRowConsumer();
         consumer.accept(it, null);
         consumer.getResult();
-        assertThat(leftIterator.countCallsForReleaseMem, is(7));
+        // the buffers of the 6 blocks and of the empty block probed after the left side is exhausted are released when
+        // they are replaced, the last buffer on close
+        assertThat(ramAccountingContext.countCallsForReleaseMem, is(8));
+        assertThat(ramAccountingContext.totalBytes(), is(0L));
     }
 
-    private class TestRamAccountingBatchIterator extends RamAccountingBatchIterator<Row> {
+    private static class TestRamAccountingContext extends RamAccountingContext {
 
         private int countCallsForReleaseMem = 0;
 
-        private TestRamAccountingBatchIterator(BatchIterator<Row> delegatePagingIterator, RowAccounting rowAccounting) {
-            super(delegatePagingIterator, rowAccounting);
+        private TestRamAccountingContext() {
+            super("test", new NoopCircuitBreaker("dummy"));
         }
 
         @Override
-        public void releaseAccountedRows() {
+        public void releaseBytes(long bytes) {
             countCallsForReleaseMem++;
-            super.releaseAccountedRows();
+            super.releaseBytes(bytes);
         }
     }
 }
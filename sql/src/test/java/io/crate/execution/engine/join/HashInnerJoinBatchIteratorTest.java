@@ -26,14 +26,17 @@ import com.carrotsearch.randomizedtesting.RandomizedRunner;
 import com.carrotsearch.randomizedtesting.annotations.Name;
 import com.carrotsearch.randomizedtesting.annotations.ParametersFactory;
 import com.carrotsearch.randomizedtesting.annotations.ThreadLeakScope;
-import io.crate.breaker.RowAccounting;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
 import io.crate.data.BatchIterator;
 import io.crate.data.Row;
 import io.crate.data.join.CombinedRow;
 import io.crate.testing.BatchIteratorTester;
 import io.crate.testing.BatchSimulatingIterator;
 import io.crate.testing.TestingBatchIterators;
+import io.crate.types.DataTypes;
 import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -52,10 +55,13 @@ import static org.mockito.Mockito.when;
 @ThreadLeakScope(ThreadLeakScope.Scope.NONE)
 public class HashInnerJoinBatchIteratorTest {
 
+    private static final RamAccountingContext RAM_ACCOUNTING_CONTEXT =
+        new RamAccountingContext("dummy", new NoopCircuitBreaker("dummy"));
+
     private final CircuitBreaker circuitBreaker = mock(CircuitBreaker.class);
     private final List<Object[]> expectedResult;
-    private final Supplier<RamAccountingBatchIterator<Row>> leftIterator;
-    private final Supplier<RamAccountingBatchIterator<Row>> rightIterator;
+    private final Supplier<BatchIterator<Row>> leftIterator;
+    private final Supplier<BatchIterator<Row>> rightIterator;
 
     private static Predicate<Row> getCol0EqCol1JoinCondition() {
         return row -> Objects.equals(row.get(0), row.get(1));
@@ -74,8 +80,8 @@ public class HashInnerJoinBatchIteratorTest {
     }
 
     public HashInnerJoinBatchIteratorTest(@SuppressWarnings("unused") @Name("dataSetName") String testName,
-                                          @Name("dataForLeft") Supplier<RamAccountingBatchIterator<Row>> leftIterator,
-                                          @Name("dataForRight") Supplier<RamAccountingBatchIterator<Row>> rightIterator,
+                                          @Name("dataForLeft") Supplier<BatchIterator<Row>> leftIterator,
+                                          @Name("dataForRight") Supplier<BatchIterator<Row>> rightIterator,
                                           @Name("expectedResult") List<Object[]> expectedResult) {
         this.leftIterator = leftIterator;
         this.rightIterator = rightIterator;
@@ -97,40 +103,35 @@ public class HashInnerJoinBatchIteratorTest {
 
         return Arrays.asList(
             $("UniqueValues-plain",
-              (Supplier<RamAccountingBatchIterator<Row>>) () -> of(TestingBatchIterators.range(0, 5)),
+              (Supplier<BatchIterator<Row>>) () -> TestingBatchIterators.range(0, 5),
               (Supplier<BatchIterator<Row>>) () -> TestingBatchIterators.range(2, 6),
               resultForUniqueValues),
             $("UniqueValues-batchedSource",
-              (Supplier<RamAccountingBatchIterator<Row>>) () -> of(
-                  new BatchSimulatingIterator<>(TestingBatchIterators.range(0, 5), 2, 2, null)),
+              (Supplier<BatchIterator<Row>>) () ->
+                  new BatchSimulatingIterator<>(TestingBatchIterators.range(0, 5), 2, 2, null),
               (Supplier<BatchIterator<Row>>) () ->
                   new BatchSimulatingIterator<>(TestingBatchIterators.range(2, 6), 2, 2, null),
               resultForUniqueValues),
             $("DuplicateValues-plain",
-              (Supplier<RamAccountingBatchIterator<Row>>) () -> of(
-                  TestingBatchIterators.ofValues(Arrays.asList(0, 0, 1, 2, 2, 3, 4, 4))),
+              (Supplier<BatchIterator<Row>>) () ->
+                  TestingBatchIterators.ofValues(Arrays.asList(0, 0, 1, 2, 2, 3, 4, 4)),
               (Supplier<BatchIterator<Row>>) () ->
                   TestingBatchIterators.ofValues(Arrays.asList(1, 1, 2, 3, 4, 4, 5, 5, 6)),
               resultForDuplicateValues),
             $("DuplicateValues-batchedSource",
-              (Supplier<RamAccountingBatchIterator<Row>>) () -> of(
-                  new BatchSimulatingIterator<>(
-                      TestingBatchIterators.ofValues(Arrays.asList(0, 0, 1, 2, 2, 3, 4, 4)), 2, 4, null)),
+              (Supplier<BatchIterator<Row>>) () -> new BatchSimulatingIterator<>(
+                  TestingBatchIterators.ofValues(Arrays.asList(0, 0, 1, 2, 2, 3, 4, 4)), 2, 4, null),
               (Supplier<BatchIterator<Row>>) () -> new BatchSimulatingIterator<>(
                 TestingBatchIterators.ofValues(Arrays.asList(1, 1, 2, 3, 4, 4, 5, 5, 6)), 2, 4, null),
               resultForDuplicateValues),
             $("DuplicateValues-leftLoadedRightBatched",
-              (Supplier<RamAccountingBatchIterator<Row>>) () -> of(
-                  TestingBatchIterators.ofValues(Arrays.asList(0, 0, 1, 2, 2, 3, 4, 4))),
+              (Supplier<BatchIterator<Row>>) () ->
+                  TestingBatchIterators.ofValues(Arrays.asList(0, 0, 1, 2, 2, 3, 4, 4)),
               (Supplier<BatchIterator<Row>>) () -> new BatchSimulatingIterator<>(
               TestingBatchIterators.ofValues(Arrays.asList(1, 1, 2, 3, 4, 4, 5, 5, 6)), 2, 4, null),
               resultForDuplicateValues));
     }
 
-    private static RamAccountingBatchIterator<Row> of(BatchIterator<Row> batchIterator) {
-        return new RamAccountingBatchIterator<>(batchIterator, mock(RowAccounting.class));
-    }
-
     @Test
     public void testInnerHashJoin() throws Exception {
         Supplier<BatchIterator<Row>> batchIteratorSupplier = () -> new HashInnerJoinBatchIterator<>(
@@ -140,7 +141,9 @@ public class HashInnerJoinBatchIteratorTest {
             getCol0EqCol1JoinCondition(),
             getHashForLeft(),
             getHashForRight(),
-            () -> 5
+            () -> 5,
+            new Streamer[]{DataTypes.INTEGER.streamer()},
+            RAM_ACCOUNTING_CONTEXT
         );
         BatchIteratorTester tester = new BatchIteratorTester(batchIteratorSupplier);
         tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
@@ -155,7 +158,9 @@ public class HashInnerJoinBatchIteratorTest {
             getCol0EqCol1JoinCondition(),
             getHashWithCollisions(),
             getHashWithCollisions(),
-            () -> 5
+            () -> 5,
+            new Streamer[]{DataTypes.INTEGER.streamer()},
+            RAM_ACCOUNTING_CONTEXT
         );
         BatchIteratorTester tester = new BatchIteratorTester(batchIteratorSupplier);
         tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
@@ -170,7 +175,9 @@ public class HashInnerJoinBatchIteratorTest {
             getCol0EqCol1JoinCondition(),
             getHashForLeft(),
             getHashForRight(),
-            () -> 1
+            () -> 1,
+            new Streamer[]{DataTypes.INTEGER.streamer()},
+            RAM_ACCOUNTING_CONTEXT
         );
         BatchIteratorTester tester = new BatchIteratorTester(batchIteratorSupplier);
         tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
@@ -185,7 +192,9 @@ public class HashInnerJoinBatchIteratorTest {
             getCol0EqCol1JoinCondition(),
             getHashForLeft(),
             getHashForRight(),
-            () -> 3
+            () -> 3,
+            new Streamer[]{DataTypes.INTEGER.streamer()},
+            RAM_ACCOUNTING_CONTEXT
         );
         BatchIteratorTester tester = new BatchIteratorTester(batchIteratorSupplier);
         tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
@@ -0,0 +1,209 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.join;
+
+import com.carrotsearch.randomizedtesting.RandomizedRunner;
+import com.carrotsearch.randomizedtesting.annotations.Name;
+import com.carrotsearch.randomizedtesting.annotations.ParametersFactory;
+import com.carrotsearch.randomizedtesting.annotations.ThreadLeakScope;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.data.BatchIterator;
+import io.crate.data.Row;
+import io.crate.data.join.CombinedRow;
+import io.crate.planner.node.dql.join.JoinType;
+import io.crate.testing.BatchIteratorTester;
+import io.crate.testing.BatchSimulatingIterator;
+import io.crate.testing.TestingBatchIterators;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static com.carrotsearch.randomizedtesting.RandomizedTest.$;
+
+@RunWith(RandomizedRunner.class)
+@ThreadLeakScope(ThreadLeakScope.Scope.NONE)
+public class HashJoinBatchIteratorTest {
+
+    private static final RamAccountingContext RAM_ACCOUNTING_CONTEXT =
+        new RamAccountingContext("dummy", new NoopCircuitBreaker("dummy"));
+
+    private final Supplier<BatchIterator<Row>> leftIterator;
+    private final Supplier<BatchIterator<Row>> rightIterator;
+
+    public HashJoinBatchIteratorTest(@SuppressWarnings("unused") @Name("dataSetName") String testName,
+                                     @Name("dataForLeft") Supplier<BatchIterator<Row>> leftIterator,
+                                     @Name("dataForRight") Supplier<BatchIterator<Row>> rightIterator) {
+        this.leftIterator = leftIterator;
+        this.rightIterator = rightIterator;
+    }
+
+    @ParametersFactory
+    public static Iterable<Object[]> testParameters() {
+        return Arrays.asList(
+            $("plain",
+              (Supplier<BatchIterator<Row>>) () -> TestingBatchIterators.range(0, 5),
+              (Supplier<BatchIterator<Row>>) () -> TestingBatchIterators.range(2, 6)),
+            $("batchedSource",
+              (Supplier<BatchIterator<Row>>) () ->
+                  new BatchSimulatingIterator<>(TestingBatchIterators.range(0, 5), 2, 2, null),
+              (Supplier<BatchIterator<Row>>) () ->
+                  new BatchSimulatingIterator<>(TestingBatchIterators.range(2, 6), 2, 2, null)),
+            $("leftLoadedRightBatched",
+              (Supplier<BatchIterator<Row>>) () -> TestingBatchIterators.range(0, 5),
+              (Supplier<BatchIterator<Row>>) () ->
+                  new BatchSimulatingIterator<>(TestingBatchIterators.range(2, 6), 2, 2, null)));
+    }
+
+    private static Predicate<Row> getCol0EqCol1JoinCondition() {
+        return row -> Objects.equals(row.get(0), row.get(1));
+    }
+
+    private static Function<Row, Integer> getHash() {
+        return row -> Objects.hash(row.get(0));
+    }
+
+    private static Function<Row, Integer> getHashWithCollisions() {
+        return row -> (Integer) row.get(0) % 3;
+    }
+
+    private void assertJoinResult(JoinType joinType,
+                                  Function<Row, Integer> hashBuilder,
+                                  int blockSize,
+                                  List<Object[]> expectedResult) throws Exception {
+        Supplier<BatchIterator<Row>> batchIteratorSupplier = () -> new HashJoinBatchIterator<>(
+            leftIterator.get(),
+            rightIterator.get(),
+            new CombinedRow(1, 1),
+            joinType,
+            getCol0EqCol1JoinCondition(),
+            hashBuilder,
+            hashBuilder,
+            () -> blockSize,
+            new Streamer[]{DataTypes.INTEGER.streamer()},
+            RAM_ACCOUNTING_CONTEXT
+        );
+        BatchIteratorTester tester = new BatchIteratorTester(batchIteratorSupplier);
+        tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
+    }
+
+    @Test
+    public void testLeftHashJoin() throws Exception {
+        assertJoinResult(JoinType.LEFT, getHash(), 10, Arrays.asList(
+            new Object[] { 2, 2 }, new Object[] { 3, 3 }, new Object[] { 4, 4 },
+            new Object[] { 0, null }, new Object[] { 1, null }));
+    }
+
+    @Test
+    public void testLeftHashJoinWithHashCollisionsAndBlockSizeSmallerThanDataSet() throws Exception {
+        // blocks: [0, 1], [2, 3], [4]
+        assertJoinResult(JoinType.LEFT, getHashWithCollisions(), 2, Arrays.asList(
+            new Object[] { 0, null }, new Object[] { 1, null },
+            new Object[] { 2, 2 }, new Object[] { 3, 3 },
+            new Object[] { 4, 4 }));
+    }
+
+    @Test
+    public void testRightHashJoin() throws Exception {
+        assertJoinResult(JoinType.RIGHT, getHash(), 10, Arrays.asList(
+            new Object[] { 2, 2 }, new Object[] { 3, 3 }, new Object[] { 4, 4 },
+            new Object[] { null, 5 }));
+    }
+
+    @Test
+    public void testRightHashJoinWithBlockSizeSmallerThanDataSet() throws Exception {
+        assertJoinResult(JoinType.RIGHT, getHash(), 2, Arrays.asList(
+            new Object[] { 2, 2 }, new Object[] { 3, 3 }, new Object[] { 4, 4 },
+            new Object[] { null, 5 }));
+    }
+
+    @Test
+    public void testFullHashJoin() throws Exception {
+        assertJoinResult(JoinType.FULL, getHash(), 10, Arrays.asList(
+            new Object[] { 2, 2 }, new Object[] { 3, 3 }, new Object[] { 4, 4 },
+            new Object[] { 0, null }, new Object[] { 1, null },
+            new Object[] { null, 5 }));
+    }
+
+    @Test
+    public void testFullHashJoinWithHashCollisionsAndBlockSizeSmallerThanDataSet() throws Exception {
+        assertJoinResult(JoinType.FULL, getHashWithCollisions(), 2, Arrays.asList(
+            new Object[] { 0, null }, new Object[] { 1, null },
+            new Object[] { 2, 2 }, new Object[] { 3, 3 },
+            new Object[] { 4, 4 },
+            new Object[] { null, 5 }));
+    }
+
+    @Test
+    public void testSemiHashJoin() throws Exception {
+        assertJoinResult(JoinType.SEMI, getHashWithCollisions(), 10, Arrays.asList(
+            new Object[] { 2, null }, new Object[] { 3, null }, new Object[] { 4, null }));
+    }
+
+    @Test
+    public void testSemiHashJoinWithBlockSizeSmallerThanDataSet() throws Exception {
+        assertJoinResult(JoinType.SEMI, getHash(), 2, Arrays.asList(
+            new Object[] { 2, null }, new Object[] { 3, null }, new Object[] { 4, null }));
+    }
+
+    @Test
+    public void testAntiHashJoin() throws Exception {
+        assertJoinResult(JoinType.ANTI, getHashWithCollisions(), 10, Arrays.asList(
+            new Object[] { 0, null }, new Object[] { 1, null }));
+    }
+
+    @Test
+    public void testAntiHashJoinWithBlockSizeSmallerThanDataSet() throws Exception {
+        assertJoinResult(JoinType.ANTI, getHash(), 2, Arrays.asList(
+            new Object[] { 0, null }, new Object[] { 1, null }));
+    }
+
+    @Test
+    public void testSemiHashJoinEmitsEachLeftRowOnce() throws Exception {
+        Supplier<BatchIterator<Row>> batchIteratorSupplier = () -> new HashJoinBatchIterator<>(
+            TestingBatchIterators.ofValues(Arrays.asList(0, 0, 1, 2, 2, 3, 4, 4)),
+            TestingBatchIterators.ofValues(Arrays.asList(1, 1, 2, 3, 4, 4, 5, 5, 6)),
+            new CombinedRow(1, 1),
+            JoinType.SEMI,
+            getCol0EqCol1JoinCondition(),
+            getHash(),
+            getHash(),
+            () -> 5,
+            new Streamer[]{DataTypes.INTEGER.streamer()},
+            RAM_ACCOUNTING_CONTEXT
+        );
+        BatchIteratorTester tester = new BatchIteratorTester(batchIteratorSupplier);
+        // blocks: [0, 0, 1, 2, 2], [3, 4, 4]
+        tester.verifyResultAndEdgeCaseBehaviour(Arrays.asList(
+            new Object[] { 1, null }, new Object[] { 2, null }, new Object[] { 2, null },
+            new Object[] { 3, null }, new Object[] { 4, null }, new Object[] { 4, null }));
+    }
+}
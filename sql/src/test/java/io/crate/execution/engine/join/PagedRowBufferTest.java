@@ -0,0 +1,130 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.join;
+
+import com.carrotsearch.hppc.IntArrayList;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.is;
+
+public class PagedRowBufferTest extends CrateUnitTest {
+
+    private static final Streamer[] STREAMERS = new Streamer[]{
+        DataTypes.INTEGER.streamer(), DataTypes.STRING.streamer()};
+
+    private final RamAccountingContext ramAccountingContext =
+        new RamAccountingContext("dummy", new NoopCircuitBreaker("dummy"));
+
+    @Test
+    public void testRowsAreReadBackAndFoundByHashInInsertionOrder() {
+        int numRows = 1000;
+        IntArrayList ids = new IntArrayList();
+        try (PagedRowBuffer buffer = new PagedRowBuffer(STREAMERS, ramAccountingContext, 4)) {
+            for (int i = 0; i < numRows; i++) {
+                String value = i % 10 == 0 ? null : "value-" + i;
+                // every hash is shared by 3 rows to have duplicates
+                int id = buffer.add(new RowN(new Object[]{i, value == null ? null : new BytesRef(value)}), i % 333);
+                assertThat(id, is(i));
+            }
+            assertThat(buffer.size(), is(numRows));
+
+            assertThat(buffer.findRows(7, ids), is(true));
+            assertThat(ids.toArray(), is(new int[]{7, 340, 673}));
+            assertThat(buffer.findRows(-1, ids), is(false));
+            assertThat(ids.isEmpty(), is(true));
+
+            for (int i = 0; i < numRows; i++) {
+                Object[] cells = buffer.get(i).materialize();
+                assertThat(cells[0], is(i));
+                assertThat(cells[1], is(i % 10 == 0 ? null : new BytesRef("value-" + i)));
+            }
+        }
+    }
+
+    @Test
+    public void testValuesAreOnlyDeserializedUpToTheAccessedColumn() {
+        CountingStreamer first = new CountingStreamer();
+        CountingStreamer second = new CountingStreamer();
+        try (PagedRowBuffer buffer = new PagedRowBuffer(new Streamer[]{first, second}, ramAccountingContext, 4)) {
+            buffer.add(new RowN(new Object[]{1, 10}), 1);
+            buffer.add(new RowN(new Object[]{2, 20}), 2);
+
+            Row row = buffer.get(1);
+            assertThat(row.get(0), is(2));
+            assertThat(first.numReads, is(1));
+            assertThat(second.numReads, is(0));
+
+            // the same row is not deserialized again
+            row = buffer.get(1);
+            assertThat(row.get(0), is(2));
+            assertThat(row.get(1), is(20));
+            assertThat(first.numReads, is(1));
+            assertThat(second.numReads, is(1));
+
+            row = buffer.get(0);
+            assertThat(row.materialize(), is(new Object[]{1, 10}));
+            assertThat(first.numReads, is(2));
+            assertThat(second.numReads, is(2));
+        }
+    }
+
+    @Test
+    public void testMemoryIsAccountedWhileAddingAndReleasedOnClose() {
+        PagedRowBuffer buffer = new PagedRowBuffer(STREAMERS, ramAccountingContext, 4);
+        for (int i = 0; i < 1000; i++) {
+            buffer.add(new RowN(new Object[]{i, new BytesRef("value-" + i)}), i);
+        }
+        assertThat(ramAccountingContext.totalBytes(), is(buffer.ramBytesUsed()));
+
+        buffer.close();
+        assertThat(ramAccountingContext.totalBytes(), is(0L));
+    }
+
+    private static class CountingStreamer implements Streamer<Integer> {
+
+        private int numReads = 0;
+
+        @Override
+        public Integer readValueFrom(StreamInput in) throws IOException {
+            numReads++;
+            return in.readVInt();
+        }
+
+        @Override
+        public void writeValueTo(StreamOutput out, Integer v) throws IOException {
+            out.writeVInt(v);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.join;
+
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.breaker.RowAccounting;
+import io.crate.data.BatchIterator;
+import io.crate.data.Row;
+import io.crate.data.join.CombinedRow;
+import io.crate.planner.node.dql.join.JoinType;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.testing.BatchIteratorTester;
+import io.crate.testing.BatchSimulatingIterator;
+import io.crate.testing.TestingBatchIterators;
+import io.crate.testing.TestingRowConsumer;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+
+public class SpillingHashJoinBatchIteratorTest extends CrateUnitTest {
+
+    private static final Streamer[] STREAMERS = new Streamer[]{DataTypes.INTEGER.streamer()};
+
+    private static Function<Row, Integer> getHash() {
+        return row -> Objects.hash(row.get(0));
+    }
+
+    private final RamAccountingContext blockAccounting =
+        new RamAccountingContext("blocks", new NoopCircuitBreaker("dummy"));
+
+    private static RowAccounting rowAccounting() {
+        return new RowAccounting(
+            Collections.singletonList(DataTypes.INTEGER),
+            new RamAccountingContext("dummy", new NoopCircuitBreaker("dummy")));
+    }
+
+    private BatchIterator<Row> createJoinIterator(BatchIterator<Row> left,
+                                                  BatchIterator<Row> right,
+                                                  JoinType joinType,
+                                                  Function<Row, Integer> hashBuilder,
+                                                  long spillThresholdBytes) {
+        CombinedRow combiner = new CombinedRow(1, 1);
+        return new SpillingHashJoinBatchIterator(
+            left,
+            right,
+            combiner,
+            STREAMERS,
+            STREAMERS,
+            hashBuilder,
+            hashBuilder,
+            rowAccounting(),
+            spillThresholdBytes,
+            SpillingHashJoinBatchIterator.MIN_PARTITIONS,
+            () -> 10,
+            (l, r, blockSize) -> {
+                if (joinType == JoinType.INNER) {
+                    return new HashInnerJoinBatchIterator<>(l, r, combiner,
+                        row -> Objects.equals(row.get(0), row.get(1)), hashBuilder, hashBuilder, blockSize,
+                        STREAMERS, blockAccounting);
+                }
+                return new HashJoinBatchIterator<>(l, r, combiner, joinType,
+                    row -> Objects.equals(row.get(0), row.get(1)), hashBuilder, hashBuilder, blockSize,
+                    STREAMERS, blockAccounting);
+            });
+    }
+
+    private static List<Object[]> consume(BatchIterator<Row> it) throws Exception {
+        TestingRowConsumer consumer = new TestingRowConsumer();
+        consumer.accept(it, null);
+        return consumer.getResult();
+    }
+
+    @Test
+    public void testLeftJoinWithoutSpilling() throws Exception {
+        Supplier<BatchIterator<Row>> batchIteratorSupplier = () -> createJoinIterator(
+            new BatchSimulatingIterator<>(TestingBatchIterators.range(0, 5), 2, 2, null),
+            new BatchSimulatingIterator<>(TestingBatchIterators.range(2, 6), 2, 2, null),
+            JoinType.LEFT,
+            getHash(),
+            Long.MAX_VALUE);
+        BatchIteratorTester tester = new BatchIteratorTester(batchIteratorSupplier);
+        tester.verifyResultAndEdgeCaseBehaviour(Arrays.asList(
+            new Object[] { 2, 2 }, new Object[] { 3, 3 }, new Object[] { 4, 4 },
+            new Object[] { 0, null }, new Object[] { 1, null }));
+        assertThat(blockAccounting.totalBytes(), is(0L));
+    }
+
+    @Test
+    public void testInnerJoinWithSpilling() throws Exception {
+        // a constant hash puts all rows into the same partition which makes the order of the result predictable
+        Supplier<BatchIterator<Row>> batchIteratorSupplier = () -> createJoinIterator(
+            new BatchSimulatingIterator<>(TestingBatchIterators.range(0, 5), 2, 2, null),
+            new BatchSimulatingIterator<>(TestingBatchIterators.range(2, 6), 2, 2, null),
+            JoinType.INNER,
+            row -> 0,
+            1L);
+        BatchIteratorTester tester = new BatchIteratorTester(batchIteratorSupplier);
+        tester.verifyResultAndEdgeCaseBehaviour(Arrays.asList(
+            new Object[] { 2, 2 }, new Object[] { 3, 3 }, new Object[] { 4, 4 }));
+        assertThat(blockAccounting.totalBytes(), is(0L));
+    }
+
+    @Test
+    public void testFullJoinWithSpillingAcrossPartitions() throws Exception {
+        List<Object[]> expectedResult = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            expectedResult.add(new Object[] { i, null });
+        }
+        for (int i = 100; i < 200; i++) {
+            expectedResult.add(new Object[] { i, i });
+        }
+        for (int i = 200; i < 300; i++) {
+            expectedResult.add(new Object[] { null, i });
+        }
+        BatchIterator<Row> it = createJoinIterator(
+            new BatchSimulatingIterator<>(TestingBatchIterators.range(0, 200), 7, 30, null),
+            new BatchSimulatingIterator<>(TestingBatchIterators.range(100, 300), 11, 20, null),
+            JoinType.FULL,
+            getHash(),
+            64L);
+        assertThat(consume(it), containsInAnyOrder(expectedResult.toArray(new Object[0])));
+        assertThat(blockAccounting.totalBytes(), is(0L));
+    }
+
+    @Test
+    public void testJoinOfThePartitionIsClosedOnMoveToStart() throws Exception {
+        BatchIterator<Row> it = createJoinIterator(
+            TestingBatchIterators.range(0, 5),
+            TestingBatchIterators.range(2, 6),
+            JoinType.INNER,
+            row -> 0,
+            1L);
+        assertThat(it.moveNext(), is(true));
+
+        it.moveToStart();
+
+        assertThat(consume(it), containsInAnyOrder(new Object[] { 2, 2 }, new Object[] { 3, 3 }, new Object[] { 4, 4 }));
+        assertThat(blockAccounting.totalBytes(), is(0L));
+    }
+
+    @Test
+    public void testKillIsForwardedToTheJoinOfThePartition() throws Exception {
+        BatchIterator<Row> it = createJoinIterator(
+            TestingBatchIterators.range(0, 5),
+            TestingBatchIterators.range(2, 6),
+            JoinType.INNER,
+            row -> 0,
+            1L);
+        assertThat(it.moveNext(), is(true));
+
+        it.kill(new InterruptedException("killed"));
+
+        try {
+            expectedException.expect(InterruptedException.class);
+            it.moveNext();
+        } finally {
+            it.close();
+            assertThat(blockAccounting.totalBytes(), is(0L));
+        }
+    }
+
+    @Test
+    public void testNumPartitionsIsPowerOfTwoWithinBounds() {
+        assertThat(SpillingHashJoinBatchIterator.numPartitions(-1, -1, 1024), is(16));
+        assertThat(SpillingHashJoinBatchIterator.numPartitions(100, 10, 1024), is(16));
+        assertThat(SpillingHashJoinBatchIterator.numPartitions(100, 10_000, 20_000), is(128));
+        assertThat(SpillingHashJoinBatchIterator.numPartitions(100, 10_000_000, 1024), is(256));
+    }
+}
@@ -23,6 +23,7 @@
 package io.crate.execution.engine.pipeline;
 
 import com.google.common.collect.ImmutableList;
+import io.crate.execution.engine.export.OutputS3Limits;
 import io.crate.expression.eval.EvaluatingNormalizer;
 import io.crate.expression.symbol.AggregateMode;
 import io.crate.expression.symbol.Function;
@@ -88,6 +89,7 @@ public class ProjectingRowConsumerTest extends CrateUnitTest {
         projectorFactory = new ProjectionToProjectorVisitor(
             mock(ClusterService.class),
             new NodeJobsCounter(),
+            new OutputS3Limits(Settings.EMPTY, 1),
             functions,
             threadPool,
             Settings.EMPTY,
@@ -102,7 +104,8 @@ public class ProjectingRowConsumerTest extends CrateUnitTest {
             t-> null,
             Version.CURRENT,
             BigArrays.NON_RECYCLING_INSTANCE,
-            new ShardId("dummy", UUID.randomUUID().toString(), 0)
+            new ShardId("dummy", UUID.randomUUID().toString(), 0),
+            null
         );
     }
 
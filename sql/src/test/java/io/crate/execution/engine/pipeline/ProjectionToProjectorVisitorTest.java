@@ -23,6 +23,7 @@
 package io.crate.execution.engine.pipeline;
 
 import com.google.common.collect.ImmutableList;
+import io.crate.execution.engine.export.OutputS3Limits;
 import io.crate.expression.eval.EvaluatingNormalizer;
 import io.crate.expression.symbol.AggregateMode;
 import io.crate.expression.symbol.Aggregation;
@@ -109,6 +110,7 @@ public class ProjectionToProjectorVisitorTest extends CrateUnitTest {
         visitor = new ProjectionToProjectorVisitor(
             mock(ClusterService.class),
             new NodeJobsCounter(),
+            new OutputS3Limits(Settings.EMPTY, 1),
             functions,
             threadPool,
             Settings.EMPTY,
@@ -117,7 +119,8 @@ public class ProjectionToProjectorVisitorTest extends CrateUnitTest {
             EvaluatingNormalizer.functionOnlyNormalizer(functions),
             t -> null,
             t -> null,
-            BigArrays.NON_RECYCLING_INSTANCE
+            BigArrays.NON_RECYCLING_INSTANCE,
+            null
         );
 
         countInfo = new FunctionInfo(
@@ -0,0 +1,427 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.vector;
+
+import io.crate.breaker.RamAccountingContext;
+import io.crate.data.BatchIterator;
+import io.crate.data.BatchIterators;
+import io.crate.data.Row;
+import io.crate.exceptions.GroupByOnArrayUnsupportedException;
+import io.crate.exceptions.UnsupportedFeatureException;
+import io.crate.execution.dsl.projection.AggregationProjection;
+import io.crate.execution.dsl.projection.FilterProjection;
+import io.crate.execution.dsl.projection.GroupProjection;
+import io.crate.execution.dsl.projection.Projection;
+import io.crate.execution.engine.aggregation.impl.AverageAggregation;
+import io.crate.execution.engine.aggregation.impl.CollectSetAggregation;
+import io.crate.execution.engine.aggregation.impl.CountAggregation;
+import io.crate.execution.engine.aggregation.impl.MaximumAggregation;
+import io.crate.execution.engine.aggregation.impl.MinimumAggregation;
+import io.crate.execution.engine.aggregation.impl.SumAggregation;
+import io.crate.expression.operator.GtOperator;
+import io.crate.expression.scalar.arithmetic.ArithmeticFunctions;
+import io.crate.expression.symbol.AggregateMode;
+import io.crate.expression.symbol.Aggregation;
+import io.crate.expression.symbol.Function;
+import io.crate.expression.symbol.InputColumn;
+import io.crate.expression.symbol.Literal;
+import io.crate.expression.symbol.Symbol;
+import io.crate.lucene.FieldTypeLookup;
+import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.Functions;
+import io.crate.metadata.RowGranularity;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.testing.BatchIteratorTester;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.mapper.KeywordFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static io.crate.testing.TestingHelpers.createReference;
+import static io.crate.testing.TestingHelpers.getFunctions;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class VectorizedAggregationBatchIteratorTest extends CrateUnitTest {
+
+    private static final int NUM_DOCS = 3000;
+
+    private final Functions functions = getFunctions();
+    private final Symbol x = createReference("x", DataTypes.LONG);
+    private final Symbol y = createReference("y", DataTypes.DOUBLE);
+    private final Symbol g = createReference("g", DataTypes.INTEGER);
+    private final Symbol s = createReference("s", DataTypes.STRING);
+    private IndexSearcher indexSearcher;
+    private FieldTypeLookup fieldTypeLookup;
+
+    @Before
+    public void prepareSearcher() throws Exception {
+        IndexWriter iw = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(new StandardAnalyzer()));
+        for (int i = 0; i < NUM_DOCS; i++) {
+            Document doc = new Document();
+            doc.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+            // every 10th document has no value for x
+            if (i % 10 != 0) {
+                doc.add(new SortedNumericDocValuesField("x", i));
+            }
+            doc.add(new SortedNumericDocValuesField("y", NumericUtils.doubleToSortableLong(i * 0.5)));
+            // every 7th document has no value for s
+            if (i % 7 != 0) {
+                doc.add(new SortedSetDocValuesField("s", new BytesRef("k" + (i % 3))));
+            }
+            doc.add(new SortedNumericDocValuesField("g", i % 4));
+            doc.add(new SortedSetDocValuesField("m", new BytesRef("a")));
+            doc.add(new SortedSetDocValuesField("m", new BytesRef("b" + i)));
+            doc.add(new SortedNumericDocValuesField("n", i));
+            doc.add(new SortedNumericDocValuesField("n", i + 1));
+            iw.addDocument(doc);
+            if (i == NUM_DOCS / 2) {
+                // creates a second segment
+                iw.commit();
+            }
+        }
+        iw.deleteDocuments(new Term("id", "5"));
+        iw.commit();
+        indexSearcher = new IndexSearcher(DirectoryReader.open(iw));
+
+        Map<String, MappedFieldType> fieldTypes = new HashMap<>();
+        fieldTypes.put("x", fieldType("x", NumberFieldMapper.NumberType.LONG));
+        fieldTypes.put("y", fieldType("y", NumberFieldMapper.NumberType.DOUBLE));
+        fieldTypes.put("g", fieldType("g", NumberFieldMapper.NumberType.INTEGER));
+        fieldTypes.put("s", keywordFieldType("s"));
+        fieldTypes.put("m", keywordFieldType("m"));
+        fieldTypes.put("n", fieldType("n", NumberFieldMapper.NumberType.LONG));
+        fieldTypeLookup = fieldTypes::get;
+    }
+
+    private static MappedFieldType fieldType(String name, NumberFieldMapper.NumberType type) {
+        NumberFieldMapper.NumberFieldType fieldType = new NumberFieldMapper.NumberFieldType(type);
+        fieldType.setName(name);
+        fieldType.setHasDocValues(true);
+        return fieldType;
+    }
+
+    private static MappedFieldType keywordFieldType(String name) {
+        KeywordFieldMapper.KeywordFieldType fieldType = new KeywordFieldMapper.KeywordFieldType();
+        fieldType.setName(name);
+        fieldType.setHasDocValues(true);
+        return fieldType;
+    }
+
+    private Aggregation aggregation(String name, DataType... argumentTypes) {
+        FunctionInfo info = functions.getBuiltin(name, Arrays.asList(argumentTypes)).info();
+        List<Symbol> inputs = argumentTypes.length == 0
+            ? Collections.emptyList()
+            : Collections.singletonList(new InputColumn(0, argumentTypes[0]));
+        return new Aggregation(info, info.returnType(), inputs);
+    }
+
+    private Aggregation aggregation(String name, int inputIndex, DataType argumentType) {
+        FunctionInfo info = functions.getBuiltin(name, Collections.singletonList(argumentType)).info();
+        return new Aggregation(info, info.returnType(), Collections.singletonList(new InputColumn(inputIndex, argumentType)));
+    }
+
+    private Function function(String name, Symbol... arguments) {
+        List<DataType> argumentTypes = Arrays.stream(arguments).map(Symbol::valueType).collect(Collectors.toList());
+        return new Function(functions.getBuiltin(name, argumentTypes).info(), Arrays.asList(arguments));
+    }
+
+    private ColumnBatchAggregation create(List<Symbol> toCollect, List<Projection> projections) {
+        return ColumnBatchAggregation.tryCreate(toCollect, projections, functions, fieldTypeLookup);
+    }
+
+    private BatchIterator<Row> batchIterator(ColumnBatchAggregation aggregation) {
+        return new VectorizedAggregationBatchIterator(
+            indexSearcher,
+            new MatchAllDocsQuery(),
+            indexSearcher.getTopReaderContext().leaves(),
+            aggregation,
+            new RamAccountingContext("dummy", new NoopCircuitBreaker("dummy")),
+            Version.CURRENT,
+            BigArrays.NON_RECYCLING_INSTANCE
+        );
+    }
+
+    private Object[] aggregate(List<Symbol> toCollect, List<Projection> projections) throws Exception {
+        List<Object[]> rows = aggregateRows(toCollect, projections);
+        assertThat(rows.size(), is(1));
+        return rows.get(0);
+    }
+
+    private List<Object[]> aggregateRows(List<Symbol> toCollect, List<Projection> projections) throws Exception {
+        ColumnBatchAggregation aggregation = create(toCollect, projections);
+        assertThat(aggregation, notNullValue());
+        return BatchIterators.collect(
+            batchIterator(aggregation), Collectors.mapping(Row::materialize, Collectors.toList())).get();
+    }
+
+    @Test
+    public void testAggregationsMatchRowBasedResults() throws Exception {
+        List<Projection> projections = Collections.singletonList(new AggregationProjection(Arrays.asList(
+            aggregation(SumAggregation.NAME, DataTypes.LONG),
+            aggregation(CountAggregation.NAME, DataTypes.LONG),
+            aggregation(CountAggregation.NAME),
+            aggregation(MaximumAggregation.NAME, DataTypes.LONG),
+            aggregation(MinimumAggregation.NAME, 1, DataTypes.DOUBLE),
+            aggregation(AverageAggregation.NAME, 1, DataTypes.DOUBLE)
+        ), RowGranularity.SHARD, AggregateMode.ITER_FINAL));
+
+        long sum = 0;
+        long count = 0;
+        long countAll = 0;
+        long max = Long.MIN_VALUE;
+        double min = Double.MAX_VALUE;
+        double sumY = 0;
+        for (int i = 0; i < NUM_DOCS; i++) {
+            if (i == 5) {
+                continue;
+            }
+            countAll++;
+            if (i % 10 != 0) {
+                sum += i;
+                count++;
+                max = Math.max(max, i);
+            }
+            min = Math.min(min, i * 0.5);
+            sumY += i * 0.5;
+        }
+
+        Object[] result = aggregate(Arrays.asList(x, y), projections);
+        assertThat(result[0], is(sum));
+        assertThat(result[1], is(count));
+        assertThat(result[2], is(countAll));
+        assertThat(result[3], is(max));
+        assertThat(result[4], is(min));
+        assertThat((Double) result[5], closeTo(sumY / countAll, 0.0001));
+    }
+
+    @Test
+    public void testFilterAndArithmeticOnInputs() throws Exception {
+        Symbol twoX = function(ArithmeticFunctions.Names.MULTIPLY, x, Literal.of(2L));
+        List<Symbol> toCollect = Arrays.asList(x, twoX);
+        InputColumn xInput = new InputColumn(0, DataTypes.LONG);
+        List<Projection> projections = Arrays.asList(
+            new FilterProjection(function(GtOperator.NAME, xInput, Literal.of(100L)), InputColumn.fromSymbols(toCollect)),
+            new AggregationProjection(Arrays.asList(
+                aggregation(SumAggregation.NAME, 1, DataTypes.LONG),
+                aggregation(CountAggregation.NAME)
+            ), RowGranularity.SHARD, AggregateMode.ITER_FINAL)
+        );
+
+        long sum = 0;
+        long count = 0;
+        for (int i = 101; i < NUM_DOCS; i++) {
+            if (i % 10 != 0) {
+                sum += 2 * i;
+                count++;
+            }
+        }
+
+        Object[] result = aggregate(toCollect, projections);
+        assertThat(result[0], is(sum));
+        assertThat(result[1], is(count));
+    }
+
+    @Test
+    public void testUnsupportedAggregationIsNotVectorized() {
+        List<Projection> projections = Collections.singletonList(new AggregationProjection(
+            Collections.singletonList(aggregation(CollectSetAggregation.NAME, DataTypes.LONG)),
+            RowGranularity.SHARD,
+            AggregateMode.ITER_FINAL));
+        assertThat(create(Collections.singletonList(x), projections), nullValue());
+    }
+
+    @Test
+    public void testColumnWithoutDocValuesIsNotVectorized() {
+        List<Projection> projections = Collections.singletonList(new AggregationProjection(
+            Collections.singletonList(aggregation(SumAggregation.NAME, DataTypes.LONG)),
+            RowGranularity.SHARD,
+            AggregateMode.ITER_FINAL));
+        assertThat(create(Collections.singletonList(createReference("z", DataTypes.LONG)), projections), nullValue());
+    }
+
+    private static List<Projection> groupBy(DataType keyType, Aggregation... aggregations) {
+        return Collections.singletonList(new GroupProjection(
+            Collections.singletonList(new InputColumn(0, keyType)),
+            Arrays.asList(aggregations),
+            AggregateMode.ITER_FINAL,
+            RowGranularity.SHARD));
+    }
+
+    private static Map<Object, Object[]> byKey(List<Object[]> rows) {
+        Map<Object, Object[]> rowsByKey = new HashMap<>();
+        for (Object[] row : rows) {
+            assertThat("every key must be emitted once", rowsByKey.put(row[0], row) == null, is(true));
+        }
+        return rowsByKey;
+    }
+
+    @Test
+    public void testGroupByStringColumnUsingOrdinals() throws Exception {
+        List<Projection> projections = groupBy(
+            DataTypes.STRING,
+            aggregation(CountAggregation.NAME),
+            aggregation(SumAggregation.NAME, 1, DataTypes.LONG));
+
+        long[] counts = new long[4];
+        long[] sums = new long[4];
+        for (int i = 0; i < NUM_DOCS; i++) {
+            if (i == 5) {
+                continue;
+            }
+            int group = i % 7 == 0 ? 3 : i % 3;
+            counts[group]++;
+            if (i % 10 != 0) {
+                sums[group] += i;
+            }
+        }
+
+        Map<Object, Object[]> rowsByKey = byKey(aggregateRows(Arrays.asList(s, x), projections));
+        assertThat(rowsByKey.size(), is(4));
+        for (int group = 0; group < 3; group++) {
+            Object[] row = rowsByKey.get(new BytesRef("k" + group));
+            assertThat(row[1], is(counts[group]));
+            assertThat(row[2], is(sums[group]));
+        }
+        assertThat(rowsByKey.get(null)[1], is(counts[3]));
+        assertThat(rowsByKey.get(null)[2], is(sums[3]));
+    }
+
+    @Test
+    public void testGroupByIntegerColumn() throws Exception {
+        List<Projection> projections = groupBy(
+            DataTypes.INTEGER,
+            aggregation(MaximumAggregation.NAME, 1, DataTypes.LONG),
+            aggregation(CountAggregation.NAME));
+
+        Map<Object, Object[]> rowsByKey = byKey(aggregateRows(Arrays.asList(g, x), projections));
+        assertThat(rowsByKey.size(), is(4));
+        for (int key = 0; key < 4; key++) {
+            Object[] row = rowsByKey.get(key);
+            long expectedMax = NUM_DOCS - 4 + key;
+            if (expectedMax % 10 == 0) {
+                expectedMax -= 4;
+            }
+            assertThat(row[1], is(expectedMax));
+            assertThat(row[2], is(key == 1 ? NUM_DOCS / 4L - 1 : NUM_DOCS / 4L));
+        }
+    }
+
+    @Test
+    public void testGroupByOnMultiValuedColumnFails() throws Exception {
+        Symbol m = createReference("m", DataTypes.STRING);
+        ColumnBatchAggregation aggregation = create(
+            Collections.singletonList(m), groupBy(DataTypes.STRING, aggregation(CountAggregation.NAME)));
+        CompletableFuture<?> result = batchIterator(aggregation).loadNextBatch().toCompletableFuture();
+        assertThat(result.isCompletedExceptionally(), is(true));
+        expectedException.expectCause(instanceOf(GroupByOnArrayUnsupportedException.class));
+        result.get();
+    }
+
+    @Test
+    public void testGroupByOnMultiValuedNumericColumnFails() throws Exception {
+        Symbol n = createReference("n", DataTypes.LONG);
+        ColumnBatchAggregation aggregation = create(
+            Collections.singletonList(n), groupBy(DataTypes.LONG, aggregation(CountAggregation.NAME)));
+        CompletableFuture<?> result = batchIterator(aggregation).loadNextBatch().toCompletableFuture();
+        assertThat(result.isCompletedExceptionally(), is(true));
+        expectedException.expectCause(instanceOf(GroupByOnArrayUnsupportedException.class));
+        result.get();
+    }
+
+    @Test
+    public void testAggregationOnMultiValuedNumericColumnFailsWithoutGroupByError() throws Exception {
+        Symbol n = createReference("n", DataTypes.LONG);
+        ColumnBatchAggregation aggregation = create(
+            Collections.singletonList(n),
+            Collections.singletonList(new AggregationProjection(
+                Collections.singletonList(aggregation(SumAggregation.NAME, DataTypes.LONG)),
+                RowGranularity.SHARD,
+                AggregateMode.ITER_FINAL)));
+        CompletableFuture<?> result = batchIterator(aggregation).loadNextBatch().toCompletableFuture();
+        assertThat(result.isCompletedExceptionally(), is(true));
+        expectedException.expectCause(instanceOf(UnsupportedFeatureException.class));
+        result.get();
+    }
+
+    @Test
+    public void testCollectorCanBeUsedWithIndexSearcher() throws Exception {
+        ColumnBatchAggregation aggregation = create(
+            Collections.singletonList(g), groupBy(DataTypes.INTEGER, aggregation(CountAggregation.NAME)));
+        aggregation.start(
+            new RamAccountingContext("dummy", new NoopCircuitBreaker("dummy")),
+            Version.CURRENT,
+            BigArrays.NON_RECYCLING_INSTANCE);
+        DocValuesAggregationCollector collector = new DocValuesAggregationCollector(aggregation);
+        indexSearcher.search(new MatchAllDocsQuery(), collector);
+
+        long total = 0;
+        for (Object[] row : collector.finish()) {
+            total += (Long) row[1];
+        }
+        assertThat(total, is((long) NUM_DOCS - 1));
+    }
+
+    @Test
+    public void testBatchIteratorContract() throws Exception {
+        List<Projection> projections = Collections.singletonList(new AggregationProjection(
+            Collections.singletonList(aggregation(CountAggregation.NAME)),
+            RowGranularity.SHARD,
+            AggregateMode.ITER_FINAL));
+        BatchIteratorTester tester = new BatchIteratorTester(
+            () -> batchIterator(create(Collections.singletonList(x), projections)));
+        tester.verifyResultAndEdgeCaseBehaviour(Collections.singletonList(new Object[]{(long) NUM_DOCS - 1}));
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.jobs;
+
+import io.crate.test.integration.CrateUnitTest;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+
+public class ConcurrencyLimitTest extends CrateUnitTest {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    public void testLimitIncreasesWhileInUseAndInTime() {
+        ConcurrencyLimit limit = new ConcurrencyLimit("n1", 5);
+        for (int i = 0; i < 10; i++) {
+            assertThat(limit.onSample(RTT, 1, limit.getLimit(), false), is(false));
+        }
+        assertThat(limit.getLimit(), is(15));
+        assertThat(limit.getAvgRttNanos(), is(RTT));
+    }
+
+    @Test
+    public void testLimitDoesNotIncreaseIfMostlyUnused() {
+        ConcurrencyLimit limit = new ConcurrencyLimit("n1", 5);
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(RTT, 1, 1, false);
+        }
+        assertThat(limit.getLimit(), is(5));
+    }
+
+    @Test
+    public void testLimitIsBoundedByMaxLimit() {
+        ConcurrencyLimit limit = new ConcurrencyLimit("n1", 5);
+        for (int i = 0; i < ConcurrencyLimit.MAX_LIMIT * 2; i++) {
+            limit.onSample(RTT, 1, limit.getLimit(), false);
+        }
+        assertThat(limit.getLimit(), is(ConcurrencyLimit.MAX_LIMIT));
+    }
+
+    @Test
+    public void testRejectionHalvesLimit() {
+        ConcurrencyLimit limit = new ConcurrencyLimit("n1", 20);
+        assertThat(limit.onSample(RTT, 1, 20, true), is(true));
+        assertThat(limit.getLimit(), is(10));
+        assertThat(limit.getNumRejections(), is(1L));
+
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(RTT, 1, 1, true);
+        }
+        assertThat(limit.getLimit(), is(ConcurrencyLimit.MIN_LIMIT));
+    }
+
+    @Test
+    public void testSlowResponseDecreasesLimit() {
+        ConcurrencyLimit limit = new ConcurrencyLimit("n1", 10);
+        limit.onSample(RTT, 1, 1, false);
+
+        long slowRtt = (long) (RTT * ConcurrencyLimit.RTT_TOLERANCE * 2);
+        assertThat(limit.onSample(slowRtt, 1, 10, false), is(true));
+        assertThat(limit.getLimit(), is(9));
+        assertThat(limit.getLastRttNanos(), is(slowRtt));
+    }
+
+    @Test
+    public void testAverageFollowsPermanentlySlowerNode() {
+        ConcurrencyLimit limit = new ConcurrencyLimit("n1", 10);
+        limit.onSample(RTT, 1, 1, false);
+
+        long slowRtt = RTT * 10;
+        for (int i = 0; i < 1000; i++) {
+            limit.onSample(slowRtt, 1, limit.getLimit(), false);
+        }
+        // once the average caught up, the slow responses are in time again and the limit recovers
+        assertThat(limit.onSample(slowRtt, 1, limit.getLimit(), false), is(false));
+        assertThat(limit.getLimit() > ConcurrencyLimit.MIN_LIMIT, is(true));
+    }
+
+    @Test
+    public void testLatencyScalingWithBulkSizeDoesNotDecreaseLimit() {
+        // a fixed overhead per request plus a constant time per item
+        long overheadNanos = TimeUnit.MILLISECONDS.toNanos(1);
+        long perItemNanos = TimeUnit.MICROSECONDS.toNanos(10);
+        ConcurrencyLimit limit = new ConcurrencyLimit("n1", 5);
+
+        int bulkSize = 100;
+        for (int i = 0; i < 200; i++) {
+            assertThat(limit.onSample(overheadNanos + perItemNanos * bulkSize, bulkSize, limit.getLimit(), false), is(false));
+        }
+        // the bulk size grows back in steps, which makes every request slower than the average
+        for (; bulkSize <= 10_000; bulkSize += 625) {
+            assertThat(limit.onSample(overheadNanos + perItemNanos * bulkSize, bulkSize, limit.getLimit(), false), is(false));
+        }
+        // and shrinks again
+        for (; bulkSize >= 100; bulkSize /= 2) {
+            assertThat(limit.onSample(overheadNanos + perItemNanos * bulkSize, bulkSize, limit.getLimit(), false), is(false));
+        }
+        assertThat(limit.getLimit(), is(ConcurrencyLimit.MAX_LIMIT));
+    }
+}
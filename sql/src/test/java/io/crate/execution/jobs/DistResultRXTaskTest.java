@@ -156,6 +156,61 @@ public class DistResultRXTaskTest extends CrateUnitTest {
                "4\n"));
     }
 
+    @Test
+    public void testNextPageIsRequestedAheadAndMergedOnceConsumerAsksForMore() throws Exception {
+        TestingRowConsumer batchConsumer = new TestingRowConsumer();
+        DistResultRXTask ctx = new DistResultRXTask(
+            Loggers.getLogger(DistResultRXTask.class),
+            "n1",
+            1,
+            "dummy",
+            batchConsumer,
+            PassThroughPagingIterator.oneShot(),
+            new Streamer[1],
+            RAM_ACCOUNTING_CONTEXT,
+            1,
+            true
+        );
+        Bucket b2 = new ArrayBucket(new Object[][]{new Object[]{2}});
+        // the next page is delivered right away, before the consumer processed the first page
+        ctx.setBucket(0, new ArrayBucket(new Object[][]{new Object[]{1}}), false, needMore -> {
+            if (needMore) {
+                ctx.setBucket(0, b2, true, mock(PageResultListener.class));
+            }
+        });
+
+        List<Object[]> result = batchConsumer.getResult();
+        assertThat(TestingHelpers.printedTable(new CollectionBucket(result)),
+            is("1\n" +
+               "2\n"));
+    }
+
+    @Test
+    public void testConsumerWaitsForPageRequestedAhead() throws Exception {
+        TestingRowConsumer batchConsumer = new TestingRowConsumer();
+        DistResultRXTask ctx = new DistResultRXTask(
+            Loggers.getLogger(DistResultRXTask.class),
+            "n1",
+            1,
+            "dummy",
+            batchConsumer,
+            PassThroughPagingIterator.oneShot(),
+            new Streamer[1],
+            RAM_ACCOUNTING_CONTEXT,
+            1,
+            true
+        );
+        PageResultListener listener = mock(PageResultListener.class);
+        ctx.setBucket(0, new ArrayBucket(new Object[][]{new Object[]{1}}), false, listener);
+        verify(listener, times(1)).needMore(true);
+
+        ctx.setBucket(0, new ArrayBucket(new Object[][]{new Object[]{2}}), true, mock(PageResultListener.class));
+        List<Object[]> result = batchConsumer.getResult();
+        assertThat(TestingHelpers.printedTable(new CollectionBucket(result)),
+            is("1\n" +
+               "2\n"));
+    }
+
     @Test
     public void testListenersCalledWhenOtherUpstreamIsFailing() throws Exception {
         TestingRowConsumer consumer = new TestingRowConsumer();
@@ -23,9 +23,17 @@
 package io.crate.execution.jobs;
 
 import io.crate.test.integration.CrateUnitTest;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.core.Is.is;
 
 public class NodeJobsCounterTest extends CrateUnitTest {
@@ -74,4 +82,32 @@ public class NodeJobsCounterTest extends CrateUnitTest {
             fail("Did not expect unregistering a job for a null node to fail but got: " + e.getMessage());
         }
     }
+
+    @Test
+    public void testConcurrencyLimitIsCreatedPerNode() {
+        ConcurrencyLimit limit = nodeJobsCounter.getConcurrencyLimit("node1");
+        assertThat(limit.getLimit(), is((int) NodeJobsCounter.MAX_NODE_CONCURRENT_OPERATIONS));
+        assertThat(nodeJobsCounter.getConcurrencyLimit("node1") == limit, is(true));
+        assertThat(nodeJobsCounter.getConcurrencyLimit(null).nodeId(), is(nullValue()));
+        assertThat(nodeJobsCounter.getConcurrencyLimits().keySet(), contains("node1"));
+    }
+
+    private static ClusterState clusterStateWithNodes(String... nodeIds) {
+        DiscoveryNodes.Builder nodes = DiscoveryNodes.builder();
+        for (String nodeId : nodeIds) {
+            nodes.add(new DiscoveryNode(nodeId, buildNewFakeTransportAddress(), Version.CURRENT));
+        }
+        return ClusterState.builder(ClusterName.DEFAULT).nodes(nodes).build();
+    }
+
+    @Test
+    public void testConcurrencyLimitsOfRemovedNodesAreEvicted() {
+        nodeJobsCounter.getConcurrencyLimit("node1");
+        nodeJobsCounter.getConcurrencyLimit("node2");
+
+        nodeJobsCounter.clusterChanged(new ClusterChangedEvent(
+            "node2 left", clusterStateWithNodes("node1"), clusterStateWithNodes("node1", "node2")));
+
+        assertThat(nodeJobsCounter.getConcurrencyLimits().keySet(), contains("node1"));
+    }
 }
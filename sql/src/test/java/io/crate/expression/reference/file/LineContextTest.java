@@ -23,8 +23,16 @@ package io.crate.expression.reference.file;
 
 import io.crate.metadata.ColumnIdent;
 import io.crate.test.integration.CrateUnitTest;
+import org.apache.lucene.util.BytesRef;
 import org.junit.Test;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 
 public class LineContextTest extends CrateUnitTest {
     @Test
@@ -38,4 +46,52 @@ public class LineContextTest extends CrateUnitTest {
         assertNull(context.get(new ColumnIdent("details", "invalid")));
         assertEquals(43, context.get(new ColumnIdent("details", "age")));
     }
+
+    @Test
+    public void testGetReferencedColumnsWithoutParsingWholeSource() {
+        LineContext context = new LineContext();
+        context.addReferencedColumn(new ColumnIdent("name"));
+        context.addReferencedColumn(new ColumnIdent("details", "age"));
+
+        String source = "{\"tags\": [\"a\", \"b\"], \"name\": \"foo\", \"other\": {\"x\": 1}, \"details\": {\"age\": 43}}";
+        context.rawSource(source.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(context.get(new ColumnIdent("name")), is(new BytesRef("foo")));
+        assertThat(context.get(new ColumnIdent("details", "age")), is(43));
+        assertThat(context.get(new ColumnIdent("details", "invalid")), is(nullValue()));
+        assertThat(context.get(new ColumnIdent("tags")), is(Arrays.asList("a", "b")));
+
+        context.rawSource("{\"name\": null}".getBytes(StandardCharsets.UTF_8));
+        assertThat(context.get(new ColumnIdent("name")), is(nullValue()));
+        assertThat(context.get(new ColumnIdent("details", "age")), is(nullValue()));
+    }
+
+    @Test
+    public void testCsvRow() {
+        LineContext context = new LineContext();
+        List<String> keys = Arrays.asList("id", "name", "age");
+
+        context.csvRow(keys, Arrays.asList("1", "Arthur", "38"));
+        assertThat(context.get(new ColumnIdent("name")), is(new BytesRef("Arthur")));
+        assertThat(context.get(new ColumnIdent("age")), is(new BytesRef("38")));
+        assertThat(context.get(new ColumnIdent("invalid")), is(nullValue()));
+        assertThat(context.sourceAsBytesRef().utf8ToString(), is("{\"id\":\"1\",\"name\":\"Arthur\",\"age\":\"38\"}"));
+
+        context.csvRow(keys, Collections.singletonList("2"));
+        assertThat(context.get(new ColumnIdent("id")), is(new BytesRef("2")));
+        assertThat(context.get(new ColumnIdent("name")), is(nullValue()));
+        assertThat(context.sourceAsMap(), is(Collections.<String, Object>singletonMap("id", "2")));
+        assertThat(context.sourceAsBytesRef().utf8ToString(), is("{\"id\":\"2\"}"));
+    }
+
+    @Test
+    public void testRawSourceReplacesCsvRow() {
+        LineContext context = new LineContext();
+        context.csvRow(Collections.singletonList("name"), Collections.singletonList("Arthur"));
+        context.rawSource("{\"name\": \"Trillian\"}".getBytes(StandardCharsets.UTF_8));
+
+        Map<String, Object> source = context.sourceAsMap();
+        assertThat(source.get("name"), is("Trillian"));
+        assertThat(context.get(new ColumnIdent("name")), is(new BytesRef("Trillian")));
+    }
 }
@@ -22,7 +22,9 @@
 
 package io.crate.integrationtests;
 
+import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.RelationName;
+import io.crate.planner.ColumnStats;
 import io.crate.planner.TableStats;
 import org.elasticsearch.test.ESIntegTestCase;
 import org.junit.After;
@@ -32,6 +34,7 @@ import org.junit.Test;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
 
 
 @ESIntegTestCase.ClusterScope(supportsDedicatedMasters = false, numDataNodes = 2, numClientNodes = 0)
@@ -61,4 +64,20 @@ public class TableStatsServiceIntegrationTest extends SQLTransportIntegrationTes
                 // to run this test.
             }, 5, TimeUnit.SECONDS);
     }
+
+    @Test
+    public void testColumnStatsArePublishedToAllNodes() throws Exception {
+        execute("create table t2(a int) with (number_of_replicas = 0)");
+        ensureGreen();
+        execute("insert into t2(a) values(1), (1), (2), (3)");
+        execute("refresh table t2");
+        RelationName relationName = new RelationName(sqlExecutor.getDefaultSchema(), "t2");
+        assertBusy(() -> {
+                for (TableStats tableStats : internalCluster().getInstances(TableStats.class)) {
+                    ColumnStats columnStats = tableStats.columnStats(relationName, new ColumnIdent("a"));
+                    assertThat(columnStats, notNullValue());
+                    assertThat(columnStats.mostCommonFrequency(1), is(0.5));
+                }
+            }, 5, TimeUnit.SECONDS);
+    }
 }
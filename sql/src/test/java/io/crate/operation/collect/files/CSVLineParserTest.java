@@ -7,6 +7,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -152,4 +154,15 @@ public class CSVLineParserTest {
 
         assertThat(result, is("{\"Country\":\"Germany\",\"Code\":\"GER\"}".getBytes(StandardCharsets.UTF_8)));
     }
+
+    @Test
+    public void parseValues_givenCSVInput_thenReturnsValuesInHeaderOrder() throws IOException {
+        String header = "Code,Country,City\n";
+        BufferedReader bufferedReader = new BufferedReader(new StringReader(header));
+        subjectUnderTest.parseHeader(bufferedReader);
+
+        assertThat(subjectUnderTest.keys(), is(Arrays.asList("Code", "Country", "City")));
+        assertThat(subjectUnderTest.parseValues("GER, Germany,\n"), is(Arrays.asList("GER", "Germany", "")));
+        assertThat(subjectUnderTest.parseValues("GER\n"), is(Collections.singletonList("GER")));
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.planner;
+
+import io.crate.metadata.ColumnIdent;
+import io.crate.metadata.RelationName;
+import io.crate.test.integration.CrateUnitTest;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ColumnStatsTest extends CrateUnitTest {
+
+    @Test
+    public void testStatsOfCompleteSample() {
+        List<Object> samples = Arrays.asList(1, 1, 1, 2, 2, 3, null, null);
+        ColumnStats stats = ColumnStats.fromSample(samples, samples.size());
+
+        assertThat(stats.nullFraction(), is(0.25));
+        assertThat(stats.approxDistinct(), is(3.0));
+        assertThat(stats.mostCommonValues(), contains(1, 2));
+        assertThat(stats.mostCommonFrequency(1), is(3.0 / 8));
+        assertThat(stats.mostCommonFrequency(3), nullValue());
+    }
+
+    @Test
+    public void testDistinctValuesAreExtrapolatedForUniqueColumns() {
+        List<Object> samples = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            samples.add((long) i);
+        }
+        ColumnStats stats = ColumnStats.fromSample(samples, 100_000);
+
+        assertThat(stats.approxDistinct(), closeTo(100_000, 1.0));
+        assertThat(stats.mostCommonValues().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testDistinctValuesAreNotExtrapolatedIfAllValuesRepeat() {
+        List<Object> samples = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            samples.add(i % 5);
+        }
+        ColumnStats stats = ColumnStats.fromSample(samples, 100_000);
+
+        assertThat(stats.approxDistinct(), is(5.0));
+        assertThat(stats.mostCommonValues().size(), is(5));
+    }
+
+    @Test
+    public void testHistogramIsEquiDepth() {
+        List<Object> samples = new ArrayList<>();
+        for (int i = 0; i <= 1000; i++) {
+            samples.add((double) i);
+        }
+        ColumnStats stats = ColumnStats.fromSample(samples, samples.size());
+
+        double[] bounds = stats.histogramBounds();
+        assertThat(bounds.length, is(ColumnStats.NUM_HISTOGRAM_BUCKETS + 1));
+        assertThat(bounds[0], is(0.0));
+        assertThat(bounds[1], is(50.0));
+        assertThat(bounds[bounds.length - 1], is(1000.0));
+    }
+
+    @Test
+    public void testNoHistogramForNonNumericValues() {
+        ColumnStats stats = ColumnStats.fromSample(Arrays.asList("a", "b", "c"), 3);
+        assertThat(stats.histogramBounds().length, is(0));
+        assertThat(stats.approxDistinct(), greaterThan(2.0));
+        assertThat(stats.approxDistinct(), lessThan(4.0));
+    }
+
+    @Test
+    public void testStreamingOfPublishColumnStatsRequest() throws Exception {
+        List<Object> longSamples = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            longSamples.add(i % 3 == 0 ? -1L : (long) i);
+        }
+        Map<ColumnIdent, ColumnStats> statsByColumn = new HashMap<>();
+        statsByColumn.put(new ColumnIdent("x"), ColumnStats.fromSample(longSamples, 1000));
+        statsByColumn.put(new ColumnIdent("name"), ColumnStats.fromSample(
+            Arrays.asList(new BytesRef("a"), new BytesRef("a"), new BytesRef("b"), null), 4));
+        statsByColumn.put(new ColumnIdent("empty"), ColumnStats.fromSample(Arrays.asList(null, null), 2));
+        RelationName relationName = new RelationName("doc", "t1");
+        Map<RelationName, Map<ColumnIdent, ColumnStats>> columnStats = new HashMap<>();
+        columnStats.put(relationName, statsByColumn);
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        new PublishColumnStatsRequest(columnStats).writeTo(out);
+        StreamInput in = out.bytes().streamInput();
+        PublishColumnStatsRequest request = new PublishColumnStatsRequest();
+        request.readFrom(in);
+
+        assertThat(request.columnStats().size(), is(1));
+        Map<ColumnIdent, ColumnStats> streamed = request.columnStats().get(relationName);
+        for (Map.Entry<ColumnIdent, ColumnStats> entry : statsByColumn.entrySet()) {
+            ColumnStats expected = entry.getValue();
+            ColumnStats actual = streamed.get(entry.getKey());
+            assertThat(actual.toString(), is(expected.toString()));
+        }
+        assertThat(streamed.get(new ColumnIdent("x")).mostCommonFrequency(-1L), is(34.0 / 100));
+        assertThat(streamed.get(new ColumnIdent("name")).mostCommonFrequency(new BytesRef("a")), is(0.5));
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.planner;
+
+import io.crate.action.sql.SessionContext;
+import io.crate.analyze.AnalyzedStatement;
+import io.crate.analyze.ParamTypeHints;
+import io.crate.data.Row;
+import io.crate.data.Row1;
+import io.crate.execution.dsl.phases.RoutedCollectPhase;
+import io.crate.execution.dsl.projection.GroupProjection;
+import io.crate.execution.dsl.projection.builder.ProjectionBuilder;
+import io.crate.expression.symbol.AggregateMode;
+import io.crate.metadata.RoutingProvider;
+import io.crate.metadata.TransactionContext;
+import io.crate.planner.node.dql.Collect;
+import io.crate.planner.node.dql.QueryThenFetch;
+import io.crate.planner.operators.LogicalPlan;
+import io.crate.planner.operators.SubQueryResults;
+import io.crate.sql.parser.SqlParser;
+import io.crate.sql.tree.Statement;
+import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
+import io.crate.testing.SQLExecutor;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.Randomness;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.test.ClusterServiceUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import static io.crate.testing.TestingHelpers.isSQL;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class PlanCacheTest extends CrateDummyClusterServiceUnitTest {
+
+    private SQLExecutor e;
+    private TableStats tableStats;
+    private PlanCache planCache;
+    private SessionContext sessionContext;
+
+    @Before
+    public void prepare() {
+        e = SQLExecutor.builder(clusterService).enableDefaultTables().build();
+        tableStats = new TableStats();
+        planCache = new PlanCache(Settings.EMPTY, clusterService, tableStats);
+        sessionContext = SessionContext.systemSessionContext();
+    }
+
+    /**
+     * Plans the statement analyzed without parameters, like the statements which are cached.
+     */
+    private LogicalPlan unboundPlan(String query) {
+        AnalyzedStatement analyzedStatement = e.analyzer.unboundAnalyze(
+            SqlParser.createStatement(query), sessionContext, ParamTypeHints.EMPTY);
+        return (LogicalPlan) e.planner.plan(analyzedStatement, e.getPlannerContext(clusterService.state()));
+    }
+
+    private PlanCache.Key createKey(String query) {
+        return planCache.createKey(query, SqlParser.createStatement(query), sessionContext);
+    }
+
+    @Test
+    public void testParsedStatementsAreCached() {
+        Statement statement = planCache.parse("select name from users");
+        assertThat(planCache.parse("select name from users"), sameInstance(statement));
+    }
+
+    @Test
+    public void testOnlySelectStatementsWithoutCurrentTimestampAreCached() {
+        assertThat(createKey("select name from users where id = ?"), notNullValue());
+        assertThat(createKey("insert into users (id, name) values (?, ?)"), nullValue());
+        assertThat(createKey("explain select name from users"), nullValue());
+        assertThat(createKey("select current_timestamp from users"), nullValue());
+    }
+
+    @Test
+    public void testStatementsWithUndefinedOutputTypesAreNotCached() {
+        AnalyzedStatement analyzedStatement = e.analyzer.unboundAnalyze(
+            SqlParser.createStatement("select ?"), sessionContext, ParamTypeHints.EMPTY);
+        assertThat(PlanCache.isCacheable(analyzedStatement), is(false));
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        String query = "select name from users where name = ?";
+        PlanCache.Key key = createKey(query);
+        assertThat(planCache.getAnalyzedStatement(key), nullValue());
+        assertThat(planCache.getPlan(key), nullValue());
+
+        AnalyzedStatement analyzedStatement = e.analyzer.unboundAnalyze(
+            SqlParser.createStatement(query), sessionContext, ParamTypeHints.EMPTY);
+        Plan plan = unboundPlan(query);
+        planCache.putAnalyzedStatement(key, analyzedStatement);
+        planCache.putPlan(key, plan);
+
+        assertThat(planCache.getAnalyzedStatement(createKey(query)), sameInstance(analyzedStatement));
+        assertThat(planCache.getPlan(createKey(query)), sameInstance(plan));
+        assertThat(planCache.hits(), is(1L));
+        assertThat(planCache.misses(), is(1L));
+        assertThat(planCache.size(), is(1L));
+
+        sessionContext.setDefaultSchema("custom");
+        assertThat(planCache.getPlan(createKey(query)), nullValue());
+    }
+
+    @Test
+    public void testMetaDataChangeInvalidatesPlans() {
+        String query = "select name from users";
+        planCache.putPlan(createKey(query), unboundPlan(query));
+
+        MetaData metaData = clusterService.state().metaData();
+        ClusterServiceUtils.setState(clusterService, ClusterState.builder(clusterService.state())
+            .metaData(MetaData.builder(metaData).version(metaData.version() + 1))
+            .build());
+
+        assertThat(planCache.size(), is(0L));
+        assertThat(planCache.invalidations(), is(1L));
+        assertThat(planCache.getPlan(createKey(query)), nullValue());
+    }
+
+    @Test
+    public void testPlansAreCachedPerFetchSize() {
+        String query = "select name from users";
+        PlanCache.Key key = createKey(query);
+        Plan plan = unboundPlan(query);
+        planCache.putPlan(key.withFetchSize(0), plan);
+
+        assertThat(planCache.getPlan(createKey(query).withFetchSize(10)), nullValue());
+        assertThat(planCache.getPlan(createKey(query).withFetchSize(0)), sameInstance(plan));
+    }
+
+    @Test
+    public void testTableStatsRefreshInvalidatesPlans() {
+        String query = "select name from users";
+        planCache.putAnalyzedStatement(createKey(query), e.analyze(query));
+        planCache.putPlan(createKey(query), unboundPlan(query));
+
+        tableStats.updateColumnStats(Collections.emptyMap());
+
+        PlanCache.Key key = createKey(query);
+        assertThat(planCache.size(), is(0L));
+        assertThat(planCache.invalidations(), is(1L));
+        assertThat(planCache.getAnalyzedStatement(key), nullValue());
+        assertThat(planCache.getPlan(key), nullValue());
+    }
+
+    @Test
+    public void testPlansAreEvictedIfCacheIsFull() {
+        planCache = new PlanCache(
+            Settings.builder().put(PlanCache.SIZE_SETTING.getKey(), 1).build(), clusterService, tableStats);
+        String query1 = "select name from users";
+        String query2 = "select id from users";
+        planCache.putPlan(createKey(query1), unboundPlan(query1));
+        planCache.putPlan(createKey(query2), unboundPlan(query2));
+
+        assertThat(planCache.size(), is(1L));
+        assertThat(planCache.evictions(), is(1L));
+    }
+
+    @Test
+    public void testCachedPlanIsBoundToTheParametersOnEachExecution() {
+        LogicalPlan plan = unboundPlan("select name from users where name = ?");
+
+        assertThat(buildCollectPhase(plan, new Row1("Arthur")).where(), isSQL("(doc.users.name = 'Arthur')"));
+        assertThat(buildCollectPhase(plan, new Row1("Trillian")).where(), isSQL("(doc.users.name = 'Trillian')"));
+    }
+
+    @Test
+    public void testCachedGroupByPlanIsBoundToTheParametersOnEachExecution() {
+        LogicalPlan plan = unboundPlan("select id, count(*) from users where name = ? group by id");
+
+        for (String name : new String[] { "Arthur", "Trillian" }) {
+            RoutedCollectPhase collectPhase = buildCollectPhase(plan, new Row1(name));
+            assertThat(collectPhase.where(), isSQL("(doc.users.name = '" + name + "')"));
+            // grouped by the primary key, each shard has all rows of a group
+            GroupProjection groupProjection = (GroupProjection) collectPhase.projections().get(0);
+            assertThat(groupProjection.mode(), is(AggregateMode.ITER_FINAL));
+        }
+    }
+
+    private RoutedCollectPhase buildCollectPhase(LogicalPlan plan, Row params) {
+        PlannerContext plannerContext = new PlannerContext(
+            clusterService.state(),
+            new RoutingProvider(Randomness.get().nextInt(), new String[0]),
+            UUID.randomUUID(),
+            e.functions(),
+            new TransactionContext(sessionContext),
+            0,
+            0);
+        ExecutionPlan executionPlan = plan.build(
+            plannerContext, new ProjectionBuilder(e.functions()), -1, 0, null, null, params, SubQueryResults.EMPTY);
+        while (executionPlan instanceof Collect == false) {
+            executionPlan = executionPlan instanceof Merge
+                ? ((Merge) executionPlan).subPlan()
+                : ((QueryThenFetch) executionPlan).subPlan();
+        }
+        return (RoutedCollectPhase) ((Collect) executionPlan).collectPhase();
+    }
+}
@@ -22,8 +22,11 @@
 
 package io.crate.planner;
 
+import com.carrotsearch.hppc.ObjectObjectHashMap;
+import io.crate.metadata.RelationName;
 import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
 import io.crate.testing.SQLExecutor;
+import io.crate.testing.T3;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -175,4 +178,16 @@ public class PlanPrinterTest extends CrateDummyClusterServiceUnitTest {
                    "distribution={distributedByColumn=0, type=BROADCAST}, " +
                "projections=[{type=MERGE_COUNT_AGGREGATION}]}}}"));
     }
+
+    @Test
+    public void testEstimatedRowsArePrintedIfTableStatsAreAvailable() {
+        TableStats tableStats = new TableStats();
+        ObjectObjectHashMap<RelationName, TableStats.Stats> rowCountByTable = new ObjectObjectHashMap<>();
+        rowCountByTable.put(T3.T1_INFO.ident(), new TableStats.Stats(100, 0));
+        tableStats.updateTableStats(rowCountByTable);
+        e = SQLExecutor.builder(clusterService).enableDefaultTables().setTableStats(tableStats).build();
+
+        Map<String, Object> map = printPlan("select x from t1 where x = 10");
+        assertThat(map.toString(), containsString("estimatedRows=10"));
+    }
 }
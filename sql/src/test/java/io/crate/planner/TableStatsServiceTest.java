@@ -22,13 +22,30 @@
 
 package io.crate.planner;
 
+import com.carrotsearch.hppc.ObjectObjectHashMap;
 import com.carrotsearch.hppc.ObjectObjectMap;
+import io.crate.action.sql.ResultReceiver;
 import io.crate.action.sql.SQLOperations;
 import io.crate.action.sql.Session;
+import io.crate.data.Row1;
 import io.crate.data.RowN;
+import io.crate.metadata.ColumnIdent;
+import io.crate.metadata.Reference;
+import io.crate.metadata.ReferenceIdent;
 import io.crate.metadata.RelationName;
+import io.crate.metadata.RowGranularity;
+import io.crate.metadata.Schemas;
+import io.crate.metadata.table.Operation;
+import io.crate.metadata.table.TestingTableInfo;
 import io.crate.plugin.SQLPlugin;
 import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Setting;
@@ -37,7 +54,11 @@ import org.elasticsearch.common.unit.TimeValue;
 import org.junit.Test;
 import org.mockito.Answers;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -51,7 +72,9 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.anyObject;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -71,7 +94,9 @@ public class TableStatsServiceTest extends CrateDummyClusterServiceUnitTest {
             THREAD_POOL,
             clusterService,
             new TableStats(),
-            mock(SQLOperations.class, Answers.RETURNS_MOCKS.get()));
+            mock(SQLOperations.class, Answers.RETURNS_MOCKS.get()),
+            mock(Schemas.class),
+            mock(TransportPublishColumnStatsAction.class));
 
         assertThat(statsService.refreshInterval,
             is(TimeValue.timeValueMinutes(0)));
@@ -83,7 +108,9 @@ public class TableStatsServiceTest extends CrateDummyClusterServiceUnitTest {
             THREAD_POOL,
             clusterService,
             new TableStats(),
-            mock(SQLOperations.class, Answers.RETURNS_MOCKS.get()));
+            mock(SQLOperations.class, Answers.RETURNS_MOCKS.get()),
+            mock(Schemas.class),
+            mock(TransportPublishColumnStatsAction.class));
 
         assertThat(statsService.refreshInterval,
             is(TableStatsService.STATS_SERVICE_REFRESH_INTERVAL_SETTING.getDefault()));
@@ -115,6 +142,77 @@ public class TableStatsServiceTest extends CrateDummyClusterServiceUnitTest {
         assertThat(statsService.refreshScheduledTask, is(notNullValue()));
     }
 
+    @Test
+    public void testSampleSizeSettingChanges() {
+        TableStatsService statsService = new TableStatsService(
+            Settings.EMPTY,
+            THREAD_POOL,
+            clusterService,
+            new TableStats(),
+            mock(SQLOperations.class, Answers.RETURNS_MOCKS.get()),
+            mock(Schemas.class),
+            mock(TransportPublishColumnStatsAction.class));
+        assertThat(statsService.sampleSize, is(10_000));
+
+        ClusterSettings clusterSettings = clusterService.getClusterSettings();
+        clusterSettings.applySettings(Settings.builder()
+            .put(TableStatsService.STATS_SERVICE_SAMPLE_SIZE_SETTING.getKey(), 0).build());
+        assertThat(statsService.sampleSize, is(0));
+
+        clusterSettings.applySettings(Settings.builder().build());
+        assertThat(statsService.sampleSize, is(10_000));
+    }
+
+    @Test
+    public void testColumnStatsArePublishedByMasterNode() {
+        TransportPublishColumnStatsAction publishAction = mock(TransportPublishColumnStatsAction.class);
+        TableStatsService statsService = new TableStatsService(
+            Settings.EMPTY,
+            THREAD_POOL,
+            clusterService,
+            new TableStats(),
+            mock(SQLOperations.class, Answers.RETURNS_MOCKS.get()),
+            mock(Schemas.class),
+            publishAction);
+
+        ObjectObjectMap<RelationName, TableStats.Stats> stats = new ObjectObjectHashMap<>();
+        stats.put(new RelationName("doc", "t1"), new TableStats.Stats(10L, 100L));
+        statsService.onTableStats(stats);
+
+        verify(publishAction, times(1)).broadcast(any(), any());
+    }
+
+    @Test
+    public void testColumnsAreNotSampledOnOtherNodes() {
+        DiscoveryNode localNode = new DiscoveryNode("n1", buildNewFakeTransportAddress(), Version.CURRENT);
+        DiscoveryNode masterNode = new DiscoveryNode("n2", buildNewFakeTransportAddress(), Version.CURRENT);
+        ClusterState state = ClusterState.builder(ClusterState.EMPTY_STATE)
+            .nodes(DiscoveryNodes.builder().add(localNode).add(masterNode).localNodeId("n1").masterNodeId("n2"))
+            .build();
+        ClusterService clusterService = mock(ClusterService.class);
+        when(clusterService.state()).thenReturn(state);
+        when(clusterService.getClusterSettings()).thenReturn(this.clusterService.getClusterSettings());
+        SQLOperations sqlOperations = mock(SQLOperations.class);
+        Session session = mock(Session.class);
+        when(sqlOperations.newSystemSession()).thenReturn(session);
+        TransportPublishColumnStatsAction publishAction = mock(TransportPublishColumnStatsAction.class);
+        TableStatsService statsService = new TableStatsService(
+            Settings.EMPTY,
+            THREAD_POOL,
+            clusterService,
+            new TableStats(),
+            sqlOperations,
+            mock(Schemas.class),
+            publishAction);
+
+        ObjectObjectMap<RelationName, TableStats.Stats> stats = new ObjectObjectHashMap<>();
+        stats.put(new RelationName("doc", "t1"), new TableStats.Stats(10L, 100L));
+        statsService.onTableStats(stats);
+
+        verify(session, never()).quickExec(anyString(), any(), any());
+        verify(publishAction, never()).broadcast(any(), any());
+    }
+
     @Test
     public void testRowsToTableStatConversion() throws InterruptedException, ExecutionException, TimeoutException {
         CompletableFuture<ObjectObjectMap<RelationName, TableStats.Stats>> statsFuture = new CompletableFuture<>();
@@ -140,6 +238,32 @@ public class TableStatsServiceTest extends CrateDummyClusterServiceUnitTest {
         assertThat(tableStats.estimatedSizePerRow(new RelationName("notInCache", "foo")), is(-1L));
     }
 
+    @Test
+    public void testSampleRowsToColumnStatsConversion() throws Exception {
+        RelationName relationName = new RelationName("doc", "foo");
+        List<Reference> columns = Arrays.asList(
+            new Reference(new ReferenceIdent(relationName, "id"), RowGranularity.DOC, DataTypes.INTEGER),
+            new Reference(new ReferenceIdent(relationName, "name"), RowGranularity.DOC, DataTypes.STRING));
+        CompletableFuture<Map<ColumnIdent, ColumnStats>> statsFuture = new CompletableFuture<>();
+        TableStatsService.ColumnSampleResultReceiver receiver =
+            new TableStatsService.ColumnSampleResultReceiver(columns, 4L, statsFuture::complete);
+
+        receiver.setNextRow(new RowN(new Object[]{1, new BytesRef("a")}));
+        receiver.setNextRow(new RowN(new Object[]{2, new BytesRef("a")}));
+        receiver.setNextRow(new RowN(new Object[]{3, null}));
+        receiver.setNextRow(new RowN(new Object[]{4, null}));
+        receiver.allFinished(false);
+
+        Map<ColumnIdent, ColumnStats> stats = statsFuture.get(10, TimeUnit.SECONDS);
+        ColumnStats idStats = stats.get(new ColumnIdent("id"));
+        assertThat(idStats.nullFraction(), is(0.0));
+        assertThat(idStats.approxDistinct(), is(4.0));
+        ColumnStats nameStats = stats.get(new ColumnIdent("name"));
+        assertThat(nameStats.nullFraction(), is(0.5));
+        assertThat(nameStats.approxDistinct(), is(1.0));
+        assertThat(nameStats.mostCommonFrequency(new BytesRef("a")), is(0.5));
+    }
+
     @Test
     public void testStatsQueriesCorrectly() {
         SQLOperations sqlOperations = mock(SQLOperations.class);
@@ -151,7 +275,9 @@ public class TableStatsServiceTest extends CrateDummyClusterServiceUnitTest {
             THREAD_POOL,
             clusterService,
             new TableStats(),
-            sqlOperations
+            sqlOperations,
+            mock(Schemas.class),
+            mock(TransportPublishColumnStatsAction.class)
         );
         statsService.run();
 
@@ -172,10 +298,107 @@ public class TableStatsServiceTest extends CrateDummyClusterServiceUnitTest {
             THREAD_POOL,
             clusterService,
             new TableStats(),
-            sqlOperations
+            sqlOperations,
+            mock(Schemas.class),
+            mock(TransportPublishColumnStatsAction.class)
         );
 
         statsService.run();
         verify(session, times(0)).sync();
     }
+
+    @Test
+    public void testRefreshIsSkippedWhileThePreviousRefreshIsRunning() {
+        SQLOperations sqlOperations = mock(SQLOperations.class);
+        Session session = mock(Session.class);
+        when(sqlOperations.newSystemSession()).thenReturn(session);
+
+        TableStatsService statsService = new TableStatsService(
+            Settings.EMPTY,
+            THREAD_POOL,
+            clusterService,
+            new TableStats(),
+            sqlOperations,
+            mock(Schemas.class),
+            mock(TransportPublishColumnStatsAction.class)
+        );
+        // the mocked session never finishes the first refresh
+        statsService.run();
+        statsService.run();
+
+        verify(session, times(1)).quickExec(eq(TableStatsService.STMT), any(), any(), any());
+    }
+
+    @Test
+    public void testTablesAreOnlySampledAgainIfTheirNumberOfDocsChanged() {
+        RelationName relationName = new RelationName("doc", "t1");
+        Schemas schemas = mock(Schemas.class);
+        when(schemas.getTableInfoOrNull(relationName, Operation.READ))
+            .thenReturn(TestingTableInfo.builder(relationName, null).add("id", DataTypes.INTEGER).build());
+        SQLOperations sqlOperations = mock(SQLOperations.class);
+        Session session = mock(Session.class);
+        when(sqlOperations.newSystemSession()).thenReturn(session);
+        doAnswer(invocation -> {
+            ResultReceiver receiver = (ResultReceiver) invocation.getArguments()[1];
+            receiver.setNextRow(new Row1(1));
+            receiver.allFinished(false);
+            return null;
+        }).when(session).quickExec(anyString(), any(ResultReceiver.class), any());
+        TransportPublishColumnStatsAction publishAction = mock(TransportPublishColumnStatsAction.class);
+        TableStatsService statsService = new TableStatsService(
+            Settings.EMPTY,
+            THREAD_POOL,
+            clusterService,
+            new TableStats(),
+            sqlOperations,
+            schemas,
+            publishAction);
+
+        ObjectObjectMap<RelationName, TableStats.Stats> stats = new ObjectObjectHashMap<>();
+        stats.put(relationName, new TableStats.Stats(10L, 100L));
+        statsService.onTableStats(stats);
+        statsService.onTableStats(stats);
+        verify(session, times(1)).quickExec(anyString(), any(ResultReceiver.class), any());
+        verify(publishAction, times(2)).broadcast(any(), any());
+
+        stats.put(relationName, new TableStats.Stats(11L, 110L));
+        statsService.onTableStats(stats);
+        verify(session, times(2)).quickExec(anyString(), any(ResultReceiver.class), any());
+    }
+
+    @Test
+    public void testColumnStatsArePublishedToJoinedNodes() {
+        RelationName relationName = new RelationName("doc", "t1");
+        Schemas schemas = mock(Schemas.class);
+        when(schemas.getTableInfoOrNull(relationName, Operation.READ))
+            .thenReturn(TestingTableInfo.builder(relationName, null).add("id", DataTypes.INTEGER).build());
+        SQLOperations sqlOperations = mock(SQLOperations.class);
+        Session session = mock(Session.class);
+        when(sqlOperations.newSystemSession()).thenReturn(session);
+        doAnswer(invocation -> {
+            ((ResultReceiver) invocation.getArguments()[1]).allFinished(false);
+            return null;
+        }).when(session).quickExec(anyString(), any(ResultReceiver.class), any());
+        TransportPublishColumnStatsAction publishAction = mock(TransportPublishColumnStatsAction.class);
+        TableStatsService statsService = new TableStatsService(
+            Settings.EMPTY,
+            THREAD_POOL,
+            clusterService,
+            new TableStats(),
+            sqlOperations,
+            schemas,
+            publishAction);
+        ObjectObjectMap<RelationName, TableStats.Stats> stats = new ObjectObjectHashMap<>();
+        stats.put(relationName, new TableStats.Stats(10L, 100L));
+        statsService.onTableStats(stats);
+
+        ClusterState previousState = clusterService.state();
+        DiscoveryNode newNode = new DiscoveryNode("n2", buildNewFakeTransportAddress(), Version.CURRENT);
+        ClusterState newState = ClusterState.builder(previousState)
+            .nodes(DiscoveryNodes.builder(previousState.nodes()).add(newNode))
+            .build();
+        statsService.clusterChanged(new ClusterChangedEvent("node joined", newState, previousState));
+
+        verify(publishAction, times(1)).publish(eq(Collections.singletonList(newNode)), any(), any());
+    }
 }
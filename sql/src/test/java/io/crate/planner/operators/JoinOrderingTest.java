@@ -80,4 +80,34 @@ public class JoinOrderingTest {
         );
         assertThat(qualifiedNames, contains(T3.T1, T3.T2, T3.T3));
     }
+
+    @Test
+    public void testCostBasedOrderingStartsWithTheMostSelectiveJoin() {
+        // t0 (1M rows) -- t1 (100 rows) -- t2 (10 rows)
+        int[] order = JoinOrdering.orderByEstimatedCost(
+            new double[]{1_000_000, 100, 10},
+            new int[]{0b011, 0b110},
+            new double[]{1.0 / 1_000_000, 1.0 / 100});
+        assertThat(order, is(new int[]{1, 2, 0}));
+    }
+
+    @Test
+    public void testCostBasedOrderingAvoidsCrossJoins() {
+        // star schema: t0 is the fact table, t1, t2 and t3 are only joined with t0
+        // joining the small tables first would be a cross join
+        int[] order = JoinOrdering.orderByEstimatedCost(
+            new double[]{100_000, 10, 10, 10},
+            new int[]{0b0011, 0b0101, 0b1001},
+            new double[]{0.1, 0.1, 0.1});
+        assertThat(order[0] == 0 || order[1] == 0, is(true));
+    }
+
+    @Test
+    public void testCostBasedOrderingKeepsOrderOnEqualCosts() {
+        int[] order = JoinOrdering.orderByEstimatedCost(
+            new double[]{10, 10, 10},
+            new int[]{0b011, 0b110},
+            new double[]{0.1, 0.1});
+        assertThat(order, is(new int[]{0, 1, 2}));
+    }
 }
@@ -38,6 +38,7 @@ import io.crate.planner.SubqueryPlanner;
 import io.crate.planner.TableStats;
 import io.crate.planner.node.dql.Collect;
 import io.crate.planner.node.dql.join.Join;
+import io.crate.planner.node.dql.join.JoinType;
 import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
 import io.crate.testing.SQLExecutor;
 import io.crate.testing.T3;
@@ -211,7 +212,7 @@ public class JoinTest extends CrateDummyClusterServiceUnitTest {
     public void testMixedHashJoinNestedLoop() {
         MultiSourceSelect mss = e.analyze("select * " +
                                           "from t1 inner join t2 on t1.a = t2.b " +
-                                          "left join t3 on t3.c = t2.b");
+                                          "left join t3 on t3.c > t2.b");
 
         LogicalPlan operator = createLogicalPlan(mss, new TableStats());
         assertThat(operator, instanceOf(NestedLoopJoin.class));
@@ -223,4 +224,61 @@ public class JoinTest extends CrateDummyClusterServiceUnitTest {
         assertThat(join.left(), instanceOf(Join.class));
         assertThat(((Join)join.left()).joinPhase(), instanceOf(HashJoinPhase.class));
     }
+
+    @Test
+    public void testHashJoinIsUsedForOuterEquiJoin() {
+        MultiSourceSelect mss = e.analyze("select * " +
+                                          "from t1 left join t2 on t1.a = t2.b");
+
+        LogicalPlan operator = createLogicalPlan(mss, new TableStats());
+        assertThat(operator, instanceOf(HashJoin.class));
+        assertThat(((HashJoin) operator).joinType(), is(JoinType.LEFT));
+
+        Join join = buildJoin(operator);
+        assertThat(join.joinPhase(), instanceOf(HashJoinPhase.class));
+        assertThat(join.joinPhase().joinType(), is(JoinType.LEFT));
+    }
+
+    @Test
+    public void testMultipleHashJoinsAreOrderedByEstimatedCost() {
+        MultiSourceSelect mss = e.analyze("select * " +
+                                          "from t1, t2, t3 " +
+                                          "where t1.a = t2.b and t2.b = t3.c");
+
+        TableStats tableStats = new TableStats();
+        ObjectObjectHashMap<RelationName, TableStats.Stats> rowCountByTable = new ObjectObjectHashMap<>();
+        rowCountByTable.put(T3.T1_INFO.ident(), new TableStats.Stats(1_000_000, 0));
+        rowCountByTable.put(T3.T2_INFO.ident(), new TableStats.Stats(100, 0));
+        rowCountByTable.put(T3.T3_INFO.ident(), new TableStats.Stats(10, 0));
+        tableStats.updateTableStats(rowCountByTable);
+
+        LogicalPlan operator = createLogicalPlan(mss, tableStats);
+        assertThat(operator, instanceOf(HashJoin.class));
+        assertThat(((HashJoin) operator).concreteRelation.toString(), is("QueriedTable{DocTableRelation{doc.t1}}"));
+        LogicalPlan leftPlan = ((HashJoin) operator).lhs;
+        assertThat(leftPlan, instanceOf(HashJoin.class));
+        assertThat(((HashJoin) leftPlan).concreteRelation.toString(), is("QueriedTable{DocTableRelation{doc.t3}}"));
+    }
+
+    @Test
+    public void testHashJoin_JoinTypeIsInvertedWhenTablesSwitch() {
+        MultiSourceSelect mss = e.analyze("select users.name, locations.id " +
+                                          "from users " +
+                                          "left join locations on users.id = locations.id");
+
+        TableStats tableStats = new TableStats();
+        ObjectObjectHashMap<RelationName, TableStats.Stats> rowCountByTable = new ObjectObjectHashMap<>();
+        rowCountByTable.put(TableDefinitions.USER_TABLE_IDENT, new TableStats.Stats(10, 0));
+        rowCountByTable.put(TableDefinitions.TEST_DOC_LOCATIONS_TABLE_IDENT, new TableStats.Stats(100, 0));
+        tableStats.updateTableStats(rowCountByTable);
+
+        LogicalPlan operator = createLogicalPlan(mss, tableStats);
+        assertThat(operator, instanceOf(HashJoin.class));
+        assertThat(((HashJoin) operator).joinType(), is(JoinType.LEFT));
+
+        Join join = buildJoin(operator);
+        // users is on the right side now, its rows must still be preserved
+        assertThat(join.joinPhase().leftMergePhase().inputTypes(), Matchers.contains(DataTypes.LONG));
+        assertThat(join.joinPhase().joinType(), is(JoinType.RIGHT));
+    }
 }
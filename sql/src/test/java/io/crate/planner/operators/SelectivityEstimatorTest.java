@@ -0,0 +1,125 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.planner.operators;
+
+import io.crate.expression.symbol.Symbol;
+import io.crate.metadata.ColumnIdent;
+import io.crate.planner.ColumnStats;
+import io.crate.planner.TableStats;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.testing.SqlExpressions;
+import io.crate.testing.T3;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+
+public class SelectivityEstimatorTest extends CrateUnitTest {
+
+    private static final SqlExpressions SQL_EXPRESSIONS = new SqlExpressions(T3.SOURCES);
+    private static final double DELTA = 0.0001;
+
+    private TableStats tableStats;
+
+    @Before
+    public void prepareStats() {
+        tableStats = new TableStats();
+        // t1.x: 10% null, 50% are 1, the rest are 100 distinct values evenly distributed between 0 and 100
+        ColumnStats xStats = new ColumnStats(
+            0.1,
+            101,
+            Collections.<Object>singletonList(1),
+            new double[]{0.5},
+            new double[]{0, 10, 20, 30, 40, 50, 60, 70, 80, 90, 100});
+        tableStats.updateColumnStats(Collections.singletonMap(
+            T3.T1_INFO.ident(), Collections.singletonMap(new ColumnIdent("x"), xStats)));
+    }
+
+    private double selectivity(String expression) {
+        Symbol query = SQL_EXPRESSIONS.asSymbol(expression);
+        return SelectivityEstimator.selectivity(query, tableStats);
+    }
+
+    @Test
+    public void testDefaultsWithoutColumnStats() {
+        assertThat(selectivity("t1.i = 10"), is(SelectivityEstimator.DEFAULT_EQ_SELECTIVITY));
+        assertThat(selectivity("t1.i > 10"), is(SelectivityEstimator.DEFAULT_RANGE_SELECTIVITY));
+        assertThat(selectivity("t1.i is null"), is(SelectivityEstimator.DEFAULT_IS_NULL_SELECTIVITY));
+        assertThat(selectivity("t1.i = 10 and t1.a = 'foo'"), closeTo(0.01, DELTA));
+    }
+
+    @Test
+    public void testEqualityUsesMostCommonValues() {
+        assertThat(selectivity("t1.x = 1"), closeTo(0.5, DELTA));
+        assertThat(selectivity("t1.x = 50"), closeTo(0.4 / 100, DELTA));
+    }
+
+    @Test
+    public void testRangeUsesHistogramAndMostCommonValues() {
+        assertThat(selectivity("t1.x < 50"), closeTo(0.5 + 0.4 * 0.5, DELTA));
+        assertThat(selectivity("50 > t1.x"), closeTo(0.5 + 0.4 * 0.5, DELTA));
+        assertThat(selectivity("t1.x > 75"), closeTo(0.4 * 0.25, DELTA));
+        assertThat(selectivity("t1.x >= 1000"), closeTo(0.0, DELTA));
+    }
+
+    @Test
+    public void testIsNullUsesNullFraction() {
+        assertThat(selectivity("t1.x is null"), closeTo(0.1, DELTA));
+        assertThat(selectivity("not t1.x is null"), closeTo(0.9, DELTA));
+    }
+
+    @Test
+    public void testInIsTheSumOfTheEqualities() {
+        assertThat(selectivity("t1.x in (1, 50)"), closeTo(0.5 + 0.4 / 100, DELTA));
+    }
+
+    @Test
+    public void testOrCombinesIndependentSelectivities() {
+        assertThat(selectivity("t1.x = 1 or t1.x > 50"), closeTo(0.5 + 0.2 - 0.5 * 0.2, DELTA));
+    }
+
+    @Test
+    public void testLiteralQueries() {
+        assertThat(selectivity("true"), is(1.0));
+        assertThat(selectivity("false"), is(0.0));
+    }
+
+    @Test
+    public void testEstimateRows() {
+        Symbol query = SQL_EXPRESSIONS.asSymbol("t1.x = 1");
+        assertThat(SelectivityEstimator.estimateRows(1000, query, tableStats), is(500L));
+        assertThat(SelectivityEstimator.estimateRows(-1, query, tableStats), is(-1L));
+    }
+
+    @Test
+    public void testFractionBelowInterpolatesWithinBucket() {
+        double[] bounds = new double[]{0, 10, 20};
+        assertThat(SelectivityEstimator.fractionBelow(bounds, -1), is(0.0));
+        assertThat(SelectivityEstimator.fractionBelow(bounds, 5), is(0.25));
+        assertThat(SelectivityEstimator.fractionBelow(bounds, 15), is(0.75));
+        assertThat(SelectivityEstimator.fractionBelow(bounds, 25), is(1.0));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.protocols.postgres;
+
+import io.crate.analyze.CopyToAnalyzedStatement;
+import io.crate.data.RowN;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataTypes;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.carrotsearch.randomizedtesting.RandomizedTest.$;
+import static org.hamcrest.Matchers.is;
+
+public class CopyOutReceiverTest extends CrateUnitTest {
+
+    private static String readCopyData(EmbeddedChannel channel) {
+        ByteBuf buffer = channel.readOutbound();
+        try {
+            assertThat((char) buffer.readByte(), is('d'));
+            assertThat(buffer.readInt(), is(buffer.readableBytes() + 4));
+            return buffer.toString(StandardCharsets.UTF_8);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private static CopyOutReceiver newReceiver(EmbeddedChannel channel, CopyToAnalyzedStatement.StdoutFormat format) {
+        return new CopyOutReceiver(
+            "copy t to stdout",
+            channel,
+            t -> { },
+            Arrays.asList(DataTypes.INTEGER, DataTypes.STRING),
+            Arrays.asList("id", "name"),
+            format);
+    }
+
+    @Test
+    public void testRowsInTextFormatAreEscaped() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        CopyOutReceiver receiver = newReceiver(channel, CopyToAnalyzedStatement.StdoutFormat.TEXT);
+        receiver.setNextRow(new RowN($(1, new BytesRef("a\tb\\c\nd"))));
+        receiver.setNextRow(new RowN($(2, null)));
+        channel.flush();
+
+        assertThat(readCopyData(channel), is("1\ta\\tb\\\\c\\nd\n"));
+        assertThat(readCopyData(channel), is("2\t\\N\n"));
+    }
+
+    @Test
+    public void testRowsInCsvFormatAreQuotedAndPrecededByHeader() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        CopyOutReceiver receiver = newReceiver(channel, CopyToAnalyzedStatement.StdoutFormat.CSV);
+        receiver.setNextRow(new RowN($(1, new BytesRef("Arthur, \"Dent\""))));
+        receiver.setNextRow(new RowN($(2, new BytesRef(""))));
+        receiver.setNextRow(new RowN($(3, null)));
+        channel.flush();
+
+        assertThat(readCopyData(channel), is("id,name\n"));
+        assertThat(readCopyData(channel), is("1,\"Arthur, \"\"Dent\"\"\"\n"));
+        assertThat(readCopyData(channel), is("2,\"\"\n"));
+        assertThat(readCopyData(channel), is("3,\n"));
+    }
+
+    @Test
+    public void testAllFinishedSendsCopyDoneAndCommandComplete() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        CopyOutReceiver receiver = newReceiver(channel, CopyToAnalyzedStatement.StdoutFormat.TEXT);
+        receiver.setNextRow(new RowN($(1, new BytesRef("Arthur"))));
+        receiver.allFinished(false);
+
+        readCopyData(channel);
+        ByteBuf copyDone = channel.readOutbound();
+        assertThat((char) copyDone.readByte(), is('c'));
+        copyDone.release();
+
+        ByteBuf commandComplete = channel.readOutbound();
+        assertThat((char) commandComplete.readByte(), is('C'));
+        commandComplete.skipBytes(4);
+        assertThat(PostgresWireProtocol.readCString(commandComplete), is("COPY 1"));
+        commandComplete.release();
+        assertThat(receiver.completionFuture().isDone(), is(true));
+    }
+}
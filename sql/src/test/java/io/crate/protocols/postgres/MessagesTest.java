@@ -23,13 +23,14 @@
 package io.crate.protocols.postgres;
 
 import io.crate.data.RowN;
+import io.crate.protocols.postgres.types.PGType;
+import io.crate.protocols.postgres.types.PGTypes;
 import io.crate.types.DataTypes;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.embedded.EmbeddedChannel;
 import org.junit.Test;
 
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 
 import static com.carrotsearch.randomizedtesting.RandomizedTest.$;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -43,7 +44,7 @@ public class MessagesTest {
         Messages.sendDataRow(
             channel,
             new RowN($(10, null)),
-            Arrays.asList(DataTypes.INTEGER, DataTypes.STRING), null
+            new PGType[]{PGTypes.get(DataTypes.INTEGER), PGTypes.get(DataTypes.STRING)}, null
         );
         channel.flush();
         ByteBuf buffer = channel.readOutbound();
@@ -24,6 +24,7 @@ package io.crate.protocols.postgres;
 
 import io.crate.action.sql.SQLOperations;
 import io.crate.auth.AlwaysOKNullAuthentication;
+import io.crate.execution.engine.collect.files.StdinStreams;
 import io.crate.protocols.ssl.SslContextProvider;
 import io.crate.test.integration.CrateUnitTest;
 import org.elasticsearch.common.network.NetworkService;
@@ -77,7 +78,7 @@ public class PostgresNettyPublishPortTest extends CrateUnitTest {
         // First check if binding to a local works
         NetworkService networkService = new NetworkService(Collections.emptyList());
         PostgresNetty psql = new PostgresNetty(Settings.EMPTY, Mockito.mock(SQLOperations.class),
-            networkService, new AlwaysOKNullAuthentication(), Mockito.mock(SslContextProvider.class));
+            networkService, new AlwaysOKNullAuthentication(), Mockito.mock(SslContextProvider.class), new StdinStreams());
         try {
             psql.doStart();
         } finally {
@@ -91,7 +92,7 @@ public class PostgresNettyPublishPortTest extends CrateUnitTest {
         Settings settingsWithCustomHost = Settings.builder().put("network.host", "cantbindtothis").build();
         NetworkService networkService = new NetworkService(Collections.emptyList());
         PostgresNetty psql = new PostgresNetty(settingsWithCustomHost, Mockito.mock(SQLOperations.class), networkService,
-            new AlwaysOKNullAuthentication(), Mockito.mock(SslContextProvider.class));
+            new AlwaysOKNullAuthentication(), Mockito.mock(SslContextProvider.class), new StdinStreams());
         try {
             psql.doStart();
             fail("Should have failed due to custom hostname");
@@ -109,7 +110,7 @@ public class PostgresNettyPublishPortTest extends CrateUnitTest {
         Settings settingsWithCustomBind = Settings.builder().put("network.bind_host", "cantbindtothis").build();
         NetworkService networkService = new NetworkService(Collections.emptyList());
         PostgresNetty psql = new PostgresNetty(settingsWithCustomBind, Mockito.mock(SQLOperations.class), networkService,
-            new AlwaysOKNullAuthentication(), Mockito.mock(SslContextProvider.class));
+            new AlwaysOKNullAuthentication(), Mockito.mock(SslContextProvider.class), new StdinStreams());
         try {
             psql.doStart();
             fail("Should have failed due to custom hostname");
@@ -127,7 +128,7 @@ public class PostgresNettyPublishPortTest extends CrateUnitTest {
         Settings settingsWithCustomPublish = Settings.builder().put("network.publish_host", "cantbindtothis").build();
         NetworkService networkService = new NetworkService(Collections.emptyList());
         PostgresNetty psql = new PostgresNetty(settingsWithCustomPublish, Mockito.mock(SQLOperations.class), networkService,
-            new AlwaysOKNullAuthentication(), Mockito.mock(SslContextProvider.class));
+            new AlwaysOKNullAuthentication(), Mockito.mock(SslContextProvider.class), new StdinStreams());
         try {
             psql.doStart();
             fail("Should have failed due to custom hostname");
@@ -30,6 +30,7 @@ import io.crate.auth.Authentication;
 import io.crate.auth.AuthenticationMethod;
 import io.crate.auth.user.User;
 import io.crate.auth.user.UserManager;
+import io.crate.execution.engine.collect.files.StdinStreams;
 import io.crate.execution.engine.collect.stats.JobsLogs;
 import io.crate.planner.DependencyCarrier;
 import io.crate.protocols.postgres.types.PGTypes;
@@ -111,7 +112,8 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
             new PostgresWireProtocol(
                 mock(SQLOperations.class),
                 new AlwaysOKNullAuthentication(),
-                null);
+                null,
+                new StdinStreams());
         EmbeddedChannel channel = new EmbeddedChannel(ctx.decoder, ctx.handler);
 
         ByteBuf buffer = Unpooled.buffer();
@@ -144,7 +146,8 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
             new PostgresWireProtocol(
                 sqlOperations,
                 new AlwaysOKNullAuthentication(),
-                null);
+                null,
+                new StdinStreams());
         EmbeddedChannel channel = new EmbeddedChannel(ctx.decoder, ctx.handler);
 
         ByteBuf buffer = Unpooled.buffer();
@@ -163,7 +166,8 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
             new PostgresWireProtocol(
                 sqlOperations,
                 new AlwaysOKNullAuthentication(),
-                null);
+                null,
+                new StdinStreams());
         EmbeddedChannel channel = new EmbeddedChannel(ctx.decoder, ctx.handler);
 
         ByteBuf buffer = Unpooled.buffer();
@@ -186,7 +190,8 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
             new PostgresWireProtocol(
                 sqlOperations,
                 new AlwaysOKNullAuthentication(),
-                null);
+                null,
+                new StdinStreams());
 
         EmbeddedChannel channel = new EmbeddedChannel(ctx.decoder, ctx.handler);
         {
@@ -235,7 +240,8 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
             new PostgresWireProtocol(
                 sqlOperations,
                 new AlwaysOKNullAuthentication(),
-                null);
+                null,
+                new StdinStreams());
 
         EmbeddedChannel channel = new EmbeddedChannel(ctx.decoder, ctx.handler);
         {
@@ -284,7 +290,8 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
             new PostgresWireProtocol(
                 mock(SQLOperations.class),
                 new AlwaysOKNullAuthentication(),
-                null);
+                null,
+                new StdinStreams());
 
         channel = new EmbeddedChannel(ctx.decoder, ctx.handler);
 
@@ -306,7 +313,7 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
     @Test
     public void testCrateServerVersionIsReceivedOnStartup() throws Exception {
         PostgresWireProtocol ctx = new PostgresWireProtocol(
-            sqlOperations, new AlwaysOKNullAuthentication(), null);
+            sqlOperations, new AlwaysOKNullAuthentication(), null, new StdinStreams());
         channel = new EmbeddedChannel(ctx.decoder, ctx.handler);
 
         ByteBuf buf = Unpooled.buffer();
@@ -350,7 +357,8 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
                         };
                     }
                 },
-                null);
+                null,
+                new StdinStreams());
         channel = new EmbeddedChannel(ctx.decoder, ctx.handler);
 
         ByteBuf respBuf;
@@ -378,7 +386,8 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
             new PostgresWireProtocol(
                 sqlOperations,
                 new AlwaysOKNullAuthentication(),
-                null);
+                null,
+                new StdinStreams());
         channel = new EmbeddedChannel(ctx.decoder, ctx.handler);
 
         ByteBuf buffer = Unpooled.buffer();
@@ -421,7 +430,8 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
             new PostgresWireProtocol(
                 sqlOperations,
                 new AlwaysOKNullAuthentication(),
-                null);
+                null,
+                new StdinStreams());
         channel = new EmbeddedChannel(ctx.decoder, ctx.handler);
 
         sendStartupMessage(channel);
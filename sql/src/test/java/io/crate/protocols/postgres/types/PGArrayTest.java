@@ -158,10 +158,10 @@ public class PGArrayTest extends BasePGTypeTest<PGArray> {
         byte[] bytes = new byte[] {
             0, 0, 0, 44, // length as 4 byte int (not including the length itself)
             0, 0, 0, 1,  // dimensions as 4 byte int
-            0, 0, 0, 1,  // possible nulls flag as 4 byte int
+            0, 0, 0, 0,  // possible nulls flag as 4 byte int
             0, 0, 0, 23, // oid of inner type (here is integer) as 4 byte int
             0, 0, 0, 3,  // dimension max elements as 4 byte int
-            0, 0, 0, 3,  // dimension max elements as 4 byte int
+            0, 0, 0, 1,  // dimension lower bound as 4 byte int
             0, 0, 0, 4,  // length of inner type (here is integer) as 4 type int
             0, 0, 0, 1,  // value
             0, 0, 0, 4,  // length of inner type (here is integer) as 4 type int
@@ -180,6 +180,32 @@ public class PGArrayTest extends BasePGTypeTest<PGArray> {
         assertThat(targetArray, is(sourceArray));
     }
 
+    @Test
+    public void testBinaryEncodingOfArrayWithNullsSetsNullsFlag() {
+        ByteBuf buffer = Unpooled.buffer();
+        pgArray.writeAsBinary(buffer, new Object[] {1, null});
+        assertThat(buffer.getInt(8), is(1));
+        buffer.release();
+    }
+
+    @Test
+    public void testBinaryEncodingDecodingRoundtripOfEmptyArray() {
+        byte[] bytes = new byte[] {
+            0, 0, 0, 12, // length as 4 byte int (not including the length itself)
+            0, 0, 0, 0,  // dimensions as 4 byte int
+            0, 0, 0, 0,  // possible nulls flag as 4 byte int
+            0, 0, 0, 23  // oid of inner type (here is integer) as 4 byte int
+        };
+        Object sourceArray = new Object[0];
+        assertBytesWritten(sourceArray, bytes, 16);
+
+        ByteBuf buffer = Unpooled.wrappedBuffer(bytes);
+        int length = buffer.readInt();
+        Object targetArray = pgArray.readBinaryValue(buffer, length);
+        buffer.release();
+        assertThat(targetArray, is(sourceArray));
+    }
+
     @Test
     @Ignore // For multi-dimensions -1 is used both for "padding" until the max length of the dimension,
             // but also for null handling, therefore we cannot distinguish between the two
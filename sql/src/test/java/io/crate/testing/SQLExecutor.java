@@ -77,6 +77,7 @@ import io.crate.metadata.table.TestingTableInfo;
 import io.crate.metadata.view.ViewInfoFactory;
 import io.crate.metadata.view.ViewsMetaData;
 import io.crate.planner.Plan;
+import io.crate.planner.PlanCache;
 import io.crate.planner.Planner;
 import io.crate.planner.PlannerContext;
 import io.crate.planner.TableStats;
@@ -353,7 +354,8 @@ public class SQLExecutor {
                     Settings.EMPTY,
                     clusterService,
                     functions,
-                    tableStats
+                    tableStats,
+                    new PlanCache(Settings.EMPTY, clusterService, tableStats)
                 ),
                 relationAnalyzer,
                 new SessionContext(defaultSchema, user, s -> {}, t -> {}),